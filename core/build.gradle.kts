@@ -149,6 +149,45 @@
     exclude("org/apache/calcite/runtime/Resources.java")
 }
 
+// Metadata handlers for the built-in providers are generated from the
+// compiled main classes, then compiled ahead of time into a separate source
+// set whose classes are packaged in the jar. At run time,
+// JaninoRelMetadataProvider uses them and only invokes Janino for handlers of
+// user-registered providers.
+val generatedMetadataDir = File(buildDir, "generated/sources/metadata")
+val generateMetadataHandlers by tasks.registering(JavaExec::class) {
+    description = "Generates metadata handlers for the built-in metadata providers"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("org.apache.calcite.rel.metadata.janino.RelMetadataHandlerGeneratorUtil")
+    args(generatedMetadataDir)
+    inputs.files(sourceSets.main.get().output)
+    outputs.dir(generatedMetadataDir)
+    doFirst {
+        delete(generatedMetadataDir)
+    }
+}
+
+val metadataHandlers by sourceSets.creating {
+    java.srcDir(generatedMetadataDir)
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+tasks.named<JavaCompile>(metadataHandlers.compileJavaTaskName) {
+    dependsOn(generateMetadataHandlers)
+}
+
+tasks.named<Checkstyle>("checkstyle" + metadataHandlers.name.capitalize()) {
+    enabled = false
+}
+
+tasks.jar {
+    from(metadataHandlers.output)
+}
+
+sourceSets.test {
+    runtimeClasspath += metadataHandlers.output
+}
+
 val fmppMain by tasks.registering(org.apache.calcite.buildtools.fmpp.FmppTask::class) {
     config.set(file("src/main/codegen/config.fmpp"))
     templates.set(file("src/main/codegen/templates"))
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.AbstractQueryableTable;
+import org.apache.calcite.avatica.util.ByteString;
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
@@ -30,8 +31,8 @@
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelProtoDataType;
-import org.apache.calcite.schema.ScannableTable;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.SplittableTable;
 import org.apache.calcite.schema.Statistic;
 import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTableQueryable;
@@ -45,11 +46,18 @@
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 import static java.util.Objects.requireNonNull;
 
@@ -59,7 +67,14 @@
  * values in the column; see {@link Representation} and
  * {@link RepresentationType}.
  */
-class ArrayTable extends AbstractQueryableTable implements ScannableTable {
+class ArrayTable extends AbstractQueryableTable implements SplittableTable {
+  /** Byte order of the buffers that hold off-heap data sets. */
+  static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  /** Size of the header of a buffer that holds a data set; currently, the
+   * number of values, as a {@code long}. */
+  static final int BUFFER_HEADER = 8;
+
   private final RelProtoDataType protoRowType;
   private final Supplier<Content> supplier;
 
@@ -95,6 +110,18 @@ class ArrayTable extends AbstractQueryableTable implements ScannableTable {
     };
   }
 
+  @Override public Enumerable<@Nullable Object[]> scan(DataContext root,
+      int split, int splitCount) {
+    return new AbstractEnumerable<@Nullable Object[]>() {
+      @Override public Enumerator<@Nullable Object[]> enumerator() {
+        final Content content = supplier.get();
+        final int start = (int) ((long) content.size * split / splitCount);
+        final int end = (int) ((long) content.size * (split + 1) / splitCount);
+        return content.arrayEnumerator(start, end);
+      }
+    };
+  }
+
   @Override public <T> Queryable<T> asQueryable(final QueryProvider queryProvider,
       SchemaPlus schema, String tableName) {
     return new AbstractTableQueryable<T>(queryProvider, schema, this,
@@ -171,16 +198,14 @@ enum RepresentationType {
     OBJECT_DICTIONARY,
 
     /**
-     * Compressed string table. Block of char data. Strings represented
-     * using an unsigned offset into the table (stored using one of the
-     * previous methods).
+     * Compressed string table. Block of UTF-8 data that holds each distinct
+     * string once. Strings represented using an offset into the block, one
+     * per row; the null value is represented by a negative offset.
      *
-     * <p>First 2 bytes are unsigned length; subsequent bytes are string
-     * contents. The null value, strings longer than 64k and strings that
-     * occur very commonly are held in an 'exceptions' array and are
-     * recognized by their high offsets. Other strings are created on demand
-     * (this reduces the number of objects that need to be created during
-     * deserialization from cache.</p>
+     * <p>First 4 bytes are the length; subsequent bytes are string
+     * contents. Strings are created on demand (this reduces the number of
+     * objects on the heap, and the number that need to be created during
+     * deserialization from cache).</p>
      *
      * @see StringDictionary
      */
@@ -314,8 +339,8 @@ public static class ObjectArray implements Representation {
    * primitive values. */
   public static class PrimitiveArray implements Representation {
     final int ordinal;
-    private final Primitive primitive;
-    private final Primitive p;
+    final Primitive primitive;
+    final Primitive p;
 
     PrimitiveArray(int ordinal, Primitive primitive, Primitive p) {
       this.ordinal = ordinal;
@@ -483,7 +508,10 @@ public static class ObjectDictionary implements Representation {
     }
   }
 
-  /** Representation that stores string column values. */
+  /** Representation that stores string column values.
+   *
+   * <p>The data set is a {@link ByteBuffer}, usually outside the Java heap,
+   * laid out as described in {@link RepresentationType#STRING_DICTIONARY}. */
   public static class StringDictionary implements Representation {
     StringDictionary() {
     }
@@ -497,23 +525,37 @@ public static class StringDictionary implements Representation {
     }
 
     @Override public Object freeze(ColumnLoader.ValueSet valueSet, int @Nullable [] sources) {
-      throw new UnsupportedOperationException(); // TODO:
+      return requireNonNull(
+          encode(permuteList(valueSet.values, sources),
+              ByteBuffer::allocateDirect),
+          "too large");
+    }
+
+    /** Encodes a list of strings into a buffer, or returns null if they are
+     * too large to fit in a buffer. */
+    static @Nullable ByteBuffer encode(List<? extends @Nullable Object> values,
+        IntFunction<ByteBuffer> allocator) {
+      return encodeBlock(values,
+          o -> ((String) o).getBytes(StandardCharsets.UTF_8), allocator);
     }
 
     @Override public Object permute(Object dataSet, int[] sources) {
-      throw new UnsupportedOperationException(); // TODO:
+      return freeze(valueSet(this, dataSet), sources);
     }
 
-    @Override public Object getObject(Object dataSet, int ordinal) {
-      throw new UnsupportedOperationException(); // TODO:
+    @Override public @Nullable Object getObject(Object dataSet, int ordinal) {
+      final byte[] bytes = blockBytes((ByteBuffer) dataSet, ordinal);
+      return bytes == null
+          ? null
+          : StandardCharsets.UTF_8.decode(ByteBuffer.wrap(bytes)).toString();
     }
 
     @Override public int getInt(Object dataSet, int ordinal) {
-      throw new UnsupportedOperationException(); // TODO:
+      throw new UnsupportedOperationException();
     }
 
     @Override public int size(Object dataSet) {
-      throw new UnsupportedOperationException(); // TODO:
+      return (int) ((ByteBuffer) dataSet).getLong(0);
     }
 
     @Override public String toString(Object dataSet) {
@@ -521,7 +563,10 @@ public static class StringDictionary implements Representation {
     }
   }
 
-  /** Representation that stores byte-string column values. */
+  /** Representation that stores byte-string column values.
+   *
+   * <p>Same layout as {@link StringDictionary}, but each value's contents
+   * are its bytes. */
   public static class ByteStringDictionary implements Representation {
     ByteStringDictionary() {
     }
@@ -535,23 +580,34 @@ public static class ByteStringDictionary implements Representation {
     }
 
     @Override public Object freeze(ColumnLoader.ValueSet valueSet, int @Nullable [] sources) {
-      throw new UnsupportedOperationException(); // TODO:
+      return requireNonNull(
+          encode(permuteList(valueSet.values, sources),
+              ByteBuffer::allocateDirect),
+          "too large");
+    }
+
+    /** Encodes a list of byte strings into a buffer, or returns null if they
+     * are too large to fit in a buffer. */
+    static @Nullable ByteBuffer encode(List<? extends @Nullable Object> values,
+        IntFunction<ByteBuffer> allocator) {
+      return encodeBlock(values, o -> ((ByteString) o).getBytes(), allocator);
     }
 
     @Override public Object permute(Object dataSet, int[] sources) {
-      throw new UnsupportedOperationException(); // TODO:
+      return freeze(valueSet(this, dataSet), sources);
     }
 
-    @Override public Object getObject(Object dataSet, int ordinal) {
-      throw new UnsupportedOperationException(); // TODO:
+    @Override public @Nullable Object getObject(Object dataSet, int ordinal) {
+      final byte[] bytes = blockBytes((ByteBuffer) dataSet, ordinal);
+      return bytes == null ? null : new ByteString(bytes);
     }
 
     @Override public int getInt(Object dataSet, int ordinal) {
-      throw new UnsupportedOperationException(); // TODO:
+      throw new UnsupportedOperationException();
     }
 
     @Override public int size(Object dataSet) {
-      throw new UnsupportedOperationException(); // TODO:
+      return (int) ((ByteBuffer) dataSet).getLong(0);
     }
 
     @Override public String toString(Object dataSet) {
@@ -559,6 +615,90 @@ public static class ByteStringDictionary implements Representation {
     }
   }
 
+  /** Returns the values of a data set as a value set, so that they can be
+   * frozen again. */
+  private static ColumnLoader.ValueSet valueSet(Representation representation,
+      Object dataSet) {
+    final ColumnLoader.ValueSet valueSet =
+        new ColumnLoader.ValueSet(Object.class);
+    for (Object o : Column.asList(representation, dataSet)) {
+      valueSet.add((Comparable) o);
+    }
+    return valueSet;
+  }
+
+  /** Writes a list of values into a block, each distinct value once,
+   * preceded by an offset for each value; returns null if the block would be
+   * larger than a buffer can hold. */
+  private static @Nullable ByteBuffer encodeBlock(
+      List<? extends @Nullable Object> values,
+      Function<Object, byte[]> toBytes, IntFunction<ByteBuffer> allocator) {
+    final int n = values.size();
+    final int[] offsets = new int[n];
+    final Map<Object, Integer> offsetMap = new HashMap<>();
+    final List<byte[]> blocks = new ArrayList<>();
+    long length = align8(BUFFER_HEADER + 4L * n);
+    for (int i = 0; i < n; i++) {
+      final Object value = values.get(i);
+      if (value == null) {
+        offsets[i] = -1;
+        continue;
+      }
+      Integer offset = offsetMap.get(value);
+      if (offset == null) {
+        final byte[] bytes = toBytes.apply(value);
+        if (length + 4 + bytes.length > Integer.MAX_VALUE) {
+          return null;
+        }
+        offset = (int) length;
+        offsetMap.put(value, offset);
+        blocks.add(bytes);
+        length += 4 + bytes.length;
+      }
+      offsets[i] = offset;
+    }
+    final ByteBuffer buffer = allocate(allocator, length);
+    buffer.putLong(0, n);
+    for (int i = 0; i < n; i++) {
+      buffer.putInt(BUFFER_HEADER + 4 * i, offsets[i]);
+    }
+    int offset = (int) align8(BUFFER_HEADER + 4L * n);
+    for (byte[] bytes : blocks) {
+      buffer.putInt(offset, bytes.length);
+      offset += 4;
+      for (byte b : bytes) {
+        buffer.put(offset++, b);
+      }
+    }
+    return buffer;
+  }
+
+  /** Returns the contents of the {@code ordinal}th value in a block, or null
+   * if the value is null. */
+  private static byte @Nullable [] blockBytes(ByteBuffer buffer, int ordinal) {
+    final int offset = buffer.getInt(BUFFER_HEADER + 4 * ordinal);
+    if (offset < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[buffer.getInt(offset)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(offset + 4 + i);
+    }
+    return bytes;
+  }
+
+  /** Allocates a buffer, in the byte order that all buffers in this table
+   * use. */
+  static ByteBuffer allocate(IntFunction<ByteBuffer> allocator, long length) {
+    assert length <= Integer.MAX_VALUE;
+    return allocator.apply((int) length).order(BYTE_ORDER);
+  }
+
+  /** Rounds a buffer offset up to a multiple of 8. */
+  static long align8(long offset) {
+    return (offset + 7) & ~7L;
+  }
+
   /** Representation of a column that has the same value for every row. */
   public static class Constant implements Representation {
     final int ordinal;
@@ -704,10 +844,9 @@ public static class BitSlicedPrimitiveArray implements Representation {
     }
 
     @Override public Object getObject(Object dataSet, int ordinal) {
-      final long[] longs = (long[]) dataSet;
       final int chunksPerWord = 64 / bitCount;
       final int word = ordinal / chunksPerWord;
-      final long v = longs[word];
+      final long v = word(dataSet, word);
       final int chunk = ordinal % chunksPerWord;
       final int mask = (1 << bitCount) - 1;
       final int signMask = 1 << (bitCount - 1);
@@ -736,10 +875,9 @@ public static class BitSlicedPrimitiveArray implements Representation {
     }
 
     @Override public int getInt(Object dataSet, int ordinal) {
-      final long[] longs = (long[]) dataSet;
       final int chunksPerWord = 64 / bitCount;
       final int word = ordinal / chunksPerWord;
-      final long v = longs[word];
+      final long v = word(dataSet, word);
       final int chunk = ordinal % chunksPerWord;
       final int mask = (1 << bitCount) - 1;
       final int signMask = 1 << (bitCount - 1);
@@ -785,10 +923,263 @@ public static void orLong(
       values[word] |= value << shift;
     }
 
+    /** Returns the {@code i}th word of a data set. */
+    long word(Object dataSet, int i) {
+      return ((long[]) dataSet)[i];
+    }
+
+    /** Returns the number of words in a data set. */
+    int wordCount(Object dataSet) {
+      return ((long[]) dataSet).length;
+    }
+
     @Override public int size(Object dataSet) {
-      final long[] longs = (long[]) dataSet;
       final int chunksPerWord = 64 / bitCount;
-      return longs.length * chunksPerWord; // may be slightly too high
+      return wordCount(dataSet) * chunksPerWord; // may be slightly too high
+    }
+
+    @Override public String toString(Object dataSet) {
+      return Column.asList(this, dataSet).toString();
+    }
+  }
+
+  /** Representation that stores numeric values in a bit-sliced
+   * {@link ByteBuffer}, usually outside the Java heap.
+   *
+   * <p>Same layout as {@link BitSlicedPrimitiveArray}; word {@code i} is
+   * the {@code long} at byte offset {@code 8 * i}. */
+  public static class BitSlicedPrimitiveBuffer extends BitSlicedPrimitiveArray {
+    BitSlicedPrimitiveBuffer(
+        int ordinal, int bitCount, Primitive primitive, boolean signed) {
+      super(ordinal, bitCount, primitive, signed);
+    }
+
+    @Override public String toString() {
+      return "BitSlicedPrimitiveBuffer(ordinal=" + ordinal
+          + ", bitCount=" + bitCount
+          + ", primitive=" + primitive
+          + ", signed=" + signed + ")";
+    }
+
+    @Override public Object freeze(ColumnLoader.ValueSet valueSet, int @Nullable [] sources) {
+      return encode((long[]) super.freeze(valueSet, sources),
+          ByteBuffer::allocateDirect);
+    }
+
+    /** Copies the words of a {@link BitSlicedPrimitiveArray} data set into a
+     * buffer. */
+    static ByteBuffer encode(long[] longs, IntFunction<ByteBuffer> allocator) {
+      final ByteBuffer buffer = allocate(allocator, 8L * longs.length);
+      for (int i = 0; i < longs.length; i++) {
+        buffer.putLong(8 * i, longs[i]);
+      }
+      return buffer;
+    }
+
+    @Override public Object permute(Object dataSet, int[] sources) {
+      final long[] longs = new long[wordCount(dataSet)];
+      for (int i = 0; i < longs.length; i++) {
+        longs[i] = word(dataSet, i);
+      }
+      return encode((long[]) super.permute(longs, sources),
+          ByteBuffer::allocateDirect);
+    }
+
+    @Override long word(Object dataSet, int i) {
+      return ((ByteBuffer) dataSet).getLong(8 * i);
+    }
+
+    @Override int wordCount(Object dataSet) {
+      return ((ByteBuffer) dataSet).capacity() / 8;
+    }
+  }
+
+  /** Representation that stores the values of a column in a
+   * {@link ByteBuffer}, usually outside the Java heap.
+   *
+   * <p>The buffer holds the number of values as a {@code long}, then the
+   * values, as they would be held in a {@link PrimitiveArray}. Unlike
+   * {@code PrimitiveArray}, it can hold null values; if {@code nullable},
+   * a bit set after the values records which values are null. */
+  public static class PrimitiveBuffer implements Representation {
+    final int ordinal;
+    final Primitive primitive;
+    final Primitive p;
+    final boolean nullable;
+
+    PrimitiveBuffer(int ordinal, Primitive primitive, Primitive p,
+        boolean nullable) {
+      this.ordinal = ordinal;
+      this.primitive = primitive;
+      this.p = p;
+      this.nullable = nullable;
+    }
+
+    @Override public String toString() {
+      return "PrimitiveBuffer(ordinal=" + ordinal
+          + ", primitive=" + primitive
+          + ", p=" + p
+          + ", nullable=" + nullable
+          + ")";
+    }
+
+    @Override public RepresentationType getType() {
+      return RepresentationType.PRIMITIVE_ARRAY;
+    }
+
+    @Override public Object freeze(ColumnLoader.ValueSet valueSet, int @Nullable [] sources) {
+      return requireNonNull(
+          encode(permuteList(valueSet.values, sources),
+              ByteBuffer::allocateDirect),
+          "too large");
+    }
+
+    /** Encodes a list of values into a buffer, or returns null if they are
+     * too large to fit in a buffer. */
+    @Nullable ByteBuffer encode(List<? extends @Nullable Object> values,
+        IntFunction<ByteBuffer> allocator) {
+      final int n = values.size();
+      final int width = width(primitive);
+      final long nullOffset = align8(BUFFER_HEADER + (long) width * n);
+      final long length =
+          nullable ? nullOffset + 8L * ((n + 63) / 64) : nullOffset;
+      if (length > Integer.MAX_VALUE) {
+        return null;
+      }
+      final ByteBuffer buffer = allocate(allocator, length);
+      buffer.putLong(0, n);
+      for (int i = 0; i < n; i++) {
+        final Object value = values.get(i);
+        final int offset = BUFFER_HEADER + width * i;
+        if (value == null) {
+          if (!nullable) {
+            throw new IllegalArgumentException("null value in column "
+                + ordinal);
+          }
+          final int word = (int) nullOffset + 8 * (i >> 6);
+          buffer.putLong(word, buffer.getLong(word) | (1L << i));
+          continue;
+        }
+        switch (primitive) {
+        case BOOLEAN:
+          buffer.put(offset, (byte) ((Boolean) value ? 1 : 0));
+          break;
+        case CHAR:
+          buffer.putChar(offset, (Character) value);
+          break;
+        case BYTE:
+          buffer.put(offset, ((Number) value).byteValue());
+          break;
+        case SHORT:
+          buffer.putShort(offset, ((Number) value).shortValue());
+          break;
+        case INT:
+          buffer.putInt(offset, ((Number) value).intValue());
+          break;
+        case LONG:
+          buffer.putLong(offset, ((Number) value).longValue());
+          break;
+        case FLOAT:
+          buffer.putFloat(offset, ((Number) value).floatValue());
+          break;
+        case DOUBLE:
+          buffer.putDouble(offset, ((Number) value).doubleValue());
+          break;
+        default:
+          throw new AssertionError(primitive + " unexpected");
+        }
+      }
+      return buffer;
+    }
+
+    private static int width(Primitive primitive) {
+      switch (primitive) {
+      case BOOLEAN:
+      case BYTE:
+        return 1;
+      case CHAR:
+      case SHORT:
+        return 2;
+      case INT:
+      case FLOAT:
+        return 4;
+      case LONG:
+      case DOUBLE:
+        return 8;
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    @Override public Object permute(Object dataSet, int[] sources) {
+      return requireNonNull(
+          encode(permuteList(Column.asList(this, dataSet), sources),
+              ByteBuffer::allocateDirect),
+          "too large");
+    }
+
+    @Override public @Nullable Object getObject(Object dataSet, int ordinal) {
+      final ByteBuffer buffer = (ByteBuffer) dataSet;
+      if (nullable && isNull(buffer, ordinal)) {
+        return null;
+      }
+      final int offset = BUFFER_HEADER + width(primitive) * ordinal;
+      final long x;
+      switch (primitive) {
+      case FLOAT:
+        return buffer.getFloat(offset);
+      case DOUBLE:
+        return buffer.getDouble(offset);
+      case BOOLEAN:
+        return buffer.get(offset) != 0;
+      case CHAR:
+        return buffer.getChar(offset);
+      case BYTE:
+        x = buffer.get(offset);
+        break;
+      case SHORT:
+        x = buffer.getShort(offset);
+        break;
+      case INT:
+        x = buffer.getInt(offset);
+        break;
+      case LONG:
+        x = buffer.getLong(offset);
+        break;
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+      switch (p) {
+      case BYTE:
+        return (byte) x;
+      case CHAR:
+        return (char) x;
+      case SHORT:
+        return (short) x;
+      case INT:
+        return (int) x;
+      case LONG:
+        return x;
+      default:
+        throw new AssertionError(p + " unexpected");
+      }
+    }
+
+    private boolean isNull(ByteBuffer buffer, int ordinal) {
+      final long n = buffer.getLong(0);
+      final int nullOffset =
+          (int) align8(BUFFER_HEADER + (long) width(primitive) * n);
+      return (buffer.getLong(nullOffset + 8 * (ordinal >> 6))
+          & (1L << ordinal)) != 0;
+    }
+
+    @Override public int getInt(Object dataSet, int ordinal) {
+      Number value = (Number) getObject(dataSet, ordinal);
+      return requireNonNull(value, "value").intValue();
+    }
+
+    @Override public int size(Object dataSet) {
+      return (int) ((ByteBuffer) dataSet).getLong(0);
     }
 
     @Override public String toString(Object dataSet) {
@@ -814,9 +1205,9 @@ private static <E> List<E> permuteList(
 
   /** Contents of a table. */
   public static class Content {
-    private final List<Column> columns;
-    private final int size;
-    private final ImmutableList<RelCollation> collations;
+    final List<Column> columns;
+    final int size;
+    final ImmutableList<RelCollation> collations;
 
     Content(List<? extends Column> columns, int size,
         Iterable<? extends RelCollation> collations) {
@@ -846,6 +1237,12 @@ public <T> Enumerator<T> enumerator() {
       return new ArrayEnumerator(size, columns);
     }
 
+    /** Returns an enumerator over rows {@code start} (inclusive) to
+     * {@code end} (exclusive); each element returned is an array. */
+    public Enumerator<@Nullable Object[]> arrayEnumerator(int start, int end) {
+      return new ArrayEnumerator(start, end, columns);
+    }
+
     /** Enumerator over a table with a single column; each element
      * returned is an object. */
     private static class ObjectEnumerator implements Enumerator<@Nullable Object> {
@@ -879,13 +1276,20 @@ private static class ObjectEnumerator implements Enumerator<@Nullable Object> {
     /** Enumerator over a table with more than one column; each element
      * returned is an array. */
     private static class ArrayEnumerator implements Enumerator<@Nullable Object[]> {
-      final int rowCount;
+      final int start;
+      final int end;
       final List<Column> columns;
-      int i = -1;
+      int i;
 
       ArrayEnumerator(int rowCount, List<Column> columns) {
-        this.rowCount = rowCount;
+        this(0, rowCount, columns);
+      }
+
+      ArrayEnumerator(int start, int end, List<Column> columns) {
+        this.start = start;
+        this.end = end;
         this.columns = columns;
+        this.i = start - 1;
       }
 
       @Override public @Nullable Object[] current() {
@@ -898,11 +1302,11 @@ private static class ArrayEnumerator implements Enumerator<@Nullable Object[]> {
       }
 
       @Override public boolean moveNext() {
-        return ++i < rowCount;
+        return ++i < end;
       }
 
       @Override public void reset() {
-        i = -1;
+        i = start - 1;
       }
 
       @Override public void close() {
@@ -20,6 +20,7 @@
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.model.ModelHandler;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
@@ -33,12 +34,15 @@
 import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.util.Util;
 
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -46,8 +50,18 @@
 
 import static org.apache.calcite.schema.impl.MaterializedViewTable.MATERIALIZATION_CONNECTION;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * Schema that contains in-memory copies of tables from a JDBC schema.
+ *
+ * <p>By default, the copies are held on the Java heap. If {@code offHeap},
+ * the columns are held in direct buffers, which the garbage collector does
+ * not need to scan. If {@code directory} is specified, each table is written
+ * to a file in that directory when it is first loaded, and memory-mapped from
+ * that file; a schema created later (say, when the server restarts) maps the
+ * file rather than reading the table from its source again. Delete the file
+ * to force a reload.
  */
 public class CloneSchema extends AbstractSchema {
   // TODO: implement 'driver' property
@@ -55,6 +69,8 @@ public class CloneSchema extends AbstractSchema {
   // TODO: test Factory
 
   private final SchemaPlus sourceSchema;
+  private final boolean offHeap;
+  private final @Nullable File directory;
 
   /**
    * Creates a CloneSchema.
@@ -62,8 +78,24 @@ public class CloneSchema extends AbstractSchema {
    * @param sourceSchema JDBC data source
    */
   public CloneSchema(SchemaPlus sourceSchema) {
+    this(sourceSchema, false, null);
+  }
+
+  /**
+   * Creates a CloneSchema that optionally stores its tables off-heap.
+   *
+   * @param sourceSchema JDBC data source
+   * @param offHeap Whether to store columns in direct buffers
+   * @param directory Directory in which to persist the contents of each
+   *                  table, and from which to memory-map them; if not null,
+   *                  implies {@code offHeap}
+   */
+  public CloneSchema(SchemaPlus sourceSchema, boolean offHeap,
+      @Nullable File directory) {
     super();
     this.sourceSchema = sourceSchema;
+    this.offHeap = offHeap || directory != null;
+    this.directory = directory;
   }
 
   @Override protected Map<String, Table> getTableMap() {
@@ -85,8 +117,15 @@ private Table createCloneTable(QueryProvider queryProvider,
         sourceTable.asQueryable(queryProvider, sourceSchema, name);
     final JavaTypeFactory typeFactory =
         ((CalciteConnection) queryProvider).getTypeFactory();
-    return createCloneTable(typeFactory, Schemas.proto(sourceTable),
-        ImmutableList.of(), null, queryable);
+    final RelProtoDataType protoRowType = Schemas.proto(sourceTable);
+    if (!offHeap) {
+      return createCloneTable(typeFactory, protoRowType, ImmutableList.of(),
+          null, queryable);
+    }
+    final File file =
+        directory == null ? null : new File(directory, name + ".clone");
+    return createCloneTable(typeFactory, protoRowType, ImmutableList.of(),
+        null, queryable, file);
   }
 
   @Deprecated // to be removed before 2.0
@@ -101,6 +140,55 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
   public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
       final RelProtoDataType protoRowType, final List<RelCollation> collations,
       final @Nullable List<ColumnMetaData.Rep> repList, final Enumerable<T> source) {
+    return new ArrayTable(
+        elementType(typeFactory, protoRowType, repList, source),
+        protoRowType,
+        Suppliers.memoize(() ->
+            load(typeFactory, protoRowType, collations, repList, source)));
+  }
+
+  /** Creates a table whose columns are held off-heap.
+   *
+   * <p>If {@code file} is not null, when the table is first used, maps the
+   * contents of the table from the file, if the file exists and was written
+   * for the same row type; otherwise loads the contents from {@code source}
+   * and writes them to the file. */
+  public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
+      final RelProtoDataType protoRowType, final List<RelCollation> collations,
+      final @Nullable List<ColumnMetaData.Rep> repList,
+      final Enumerable<T> source, final @Nullable File file) {
+    return new ArrayTable(
+        elementType(typeFactory, protoRowType, repList, source),
+        protoRowType,
+        Suppliers.memoize(() -> {
+          if (file == null) {
+            return OffHeapStore.toDirect(
+                load(typeFactory, protoRowType, collations, repList, source));
+          }
+          final String digest =
+              protoRowType.apply(typeFactory).getFullTypeString();
+          try {
+            if (file.exists()) {
+              final ArrayTable.Content content =
+                  OffHeapStore.map(file, digest);
+              if (content != null) {
+                return content;
+              }
+            }
+            OffHeapStore.write(
+                load(typeFactory, protoRowType, collations, repList, source),
+                digest, file);
+            return requireNonNull(OffHeapStore.map(file, digest),
+                () -> "contents of " + file);
+          } catch (IOException e) {
+            throw Util.throwAsRuntime("while cloning table to " + file, e);
+          }
+        }));
+  }
+
+  private static <T> Type elementType(JavaTypeFactory typeFactory,
+      RelProtoDataType protoRowType,
+      @Nullable List<ColumnMetaData.Rep> repList, Enumerable<T> source) {
     final Type elementType;
     if (source instanceof QueryableTable) {
       elementType = ((QueryableTable) source).getElementType();
@@ -113,21 +201,21 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
     } else {
       elementType = Object[].class;
     }
-    return new ArrayTable(
-        elementType,
-        protoRowType,
-        Suppliers.memoize(() -> {
-          final ColumnLoader loader =
-              new ColumnLoader<>(typeFactory, source, protoRowType,
-                  repList);
-          final List<RelCollation> collation2 =
-              collations.isEmpty()
-                  && loader.sortField >= 0
-                  ? RelCollations.createSingleton(loader.sortField)
-                  : collations;
-          return new ArrayTable.Content(loader.representationValues,
-              loader.size(), collation2);
-        }));
+    return elementType;
+  }
+
+  private static <T> ArrayTable.Content load(JavaTypeFactory typeFactory,
+      RelProtoDataType protoRowType, List<RelCollation> collations,
+      @Nullable List<ColumnMetaData.Rep> repList, Enumerable<T> source) {
+    final ColumnLoader loader =
+        new ColumnLoader<>(typeFactory, source, protoRowType, repList);
+    final List<RelCollation> collation2 =
+        collations.isEmpty()
+            && loader.sortField >= 0
+            ? RelCollations.createSingleton(loader.sortField)
+            : collations;
+    return new ArrayTable.Content(loader.representationValues,
+        loader.size(), collation2);
   }
 
   /** Schema factory that creates a
@@ -147,11 +235,17 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
    *         jdbcDriver: 'com.mysql.jdbc.Driver',
    *         jdbcUrl: 'jdbc:mysql://localhost/foodmart',
    *         jdbcUser: 'foodmart',
-   *         jdbcPassword: 'foodmart'
+   *         jdbcPassword: 'foodmart',
+   *         offHeap: true,
+   *         directory: '/var/cache/foodmart'
    *       }
    *     }
    *   ]
    * }</pre></blockquote>
+   *
+   * <p>The optional {@code offHeap} and {@code directory} operands are as
+   * described in {@link CloneSchema}; a relative {@code directory} is
+   * resolved against the directory of the model file.
    */
   public static class Factory implements SchemaFactory {
     @Override public Schema create(
@@ -161,7 +255,19 @@ public static class Factory implements SchemaFactory {
       SchemaPlus schema =
           parentSchema.add(name,
               JdbcSchema.create(parentSchema, name + "$source", operand));
-      return new CloneSchema(schema);
+      final boolean offHeap =
+          Boolean.TRUE.equals(operand.get("offHeap"));
+      final String directory = (String) operand.get("directory");
+      File directoryFile = null;
+      if (directory != null) {
+        directoryFile = new File(directory);
+        final File baseDirectory =
+            (File) operand.get(ModelHandler.ExtraOperand.BASE_DIRECTORY.camelName);
+        if (baseDirectory != null && !directoryFile.isAbsolute()) {
+          directoryFile = new File(baseDirectory, directory);
+        }
+      }
+      return new CloneSchema(schema, offHeap, directoryFile);
     }
   }
 }
@@ -0,0 +1,482 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.clone;
+
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.util.Pair;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Stores the contents of an {@link ArrayTable} outside the Java heap.
+ *
+ * <p>{@link #toDirect} copies the columns of a table into direct buffers,
+ * keeping the compression scheme that {@link ColumnLoader} chose for each
+ * column. Columns of strings, byte strings and nullable primitives, which
+ * would otherwise be arrays of objects, become
+ * {@link ArrayTable.StringDictionary},
+ * {@link ArrayTable.ByteStringDictionary} and
+ * {@link ArrayTable.PrimitiveBuffer}.
+ *
+ * <p>{@link #write} saves the contents of a table to a file, and
+ * {@link #map} maps such a file into memory. The file starts with a header
+ * that describes each column, followed by the buffers. Values that do not
+ * have a buffer representation (constants, dictionary values, and arrays of
+ * other objects) are held in the header, using Java serialization, and are
+ * read onto the heap; therefore only map files that you trust.
+ */
+class OffHeapStore {
+  private static final int MAGIC = 0xCA1C0DE5;
+  private static final int VERSION = 1;
+
+  /** Size of the fixed part of the file header: magic number, version and
+   * length of the column descriptions. */
+  private static final int FILE_HEADER = 12;
+
+  private OffHeapStore() {
+  }
+
+  /** Returns a copy of the contents of a table whose columns are held, where
+   * possible, in direct buffers. */
+  static ArrayTable.Content toDirect(ArrayTable.Content content) {
+    return convert(content, ByteBuffer::allocateDirect);
+  }
+
+  private static ArrayTable.Content convert(ArrayTable.Content content,
+      IntFunction<ByteBuffer> allocator) {
+    final List<ArrayTable.Column> columns = new ArrayList<>();
+    for (ArrayTable.Column column : content.columns) {
+      columns.add(convert(column, allocator));
+    }
+    return new ArrayTable.Content(columns, content.size, content.collations);
+  }
+
+  private static ArrayTable.Column convert(ArrayTable.Column column,
+      IntFunction<ByteBuffer> allocator) {
+    final ArrayTable.Representation representation = column.representation;
+    final Object dataSet = column.dataSet;
+    if (dataSet instanceof ByteBuffer) {
+      return column;
+    }
+    final @Nullable Object dataSet2;
+    final ArrayTable.Representation representation2;
+    if (representation instanceof ArrayTable.PrimitiveArray) {
+      final ArrayTable.PrimitiveArray array =
+          (ArrayTable.PrimitiveArray) representation;
+      final ArrayTable.PrimitiveBuffer buffer =
+          new ArrayTable.PrimitiveBuffer(array.ordinal, array.primitive,
+              array.p, false);
+      representation2 = buffer;
+      dataSet2 =
+          buffer.encode(ArrayTable.Column.asList(array, dataSet), allocator);
+    } else if (representation instanceof ArrayTable.BitSlicedPrimitiveArray) {
+      final ArrayTable.BitSlicedPrimitiveArray array =
+          (ArrayTable.BitSlicedPrimitiveArray) representation;
+      representation2 =
+          new ArrayTable.BitSlicedPrimitiveBuffer(array.ordinal,
+              array.bitCount, array.primitive, array.signed);
+      dataSet2 =
+          ArrayTable.BitSlicedPrimitiveBuffer.encode((long[]) dataSet,
+              allocator);
+    } else if (representation instanceof ArrayTable.ObjectDictionary) {
+      final ArrayTable.ObjectDictionary dictionary =
+          (ArrayTable.ObjectDictionary) representation;
+      @SuppressWarnings("unchecked")
+      final Pair<Object, @Nullable Comparable[]> pair =
+          (Pair<Object, @Nullable Comparable[]>) dataSet;
+      final ArrayTable.Column codes =
+          convert(
+              new ArrayTable.Column(dictionary.representation, pair.left,
+                  column.cardinality),
+              allocator);
+      representation2 =
+          new ArrayTable.ObjectDictionary(dictionary.ordinal,
+              codes.representation);
+      dataSet2 = Pair.of(codes.dataSet, pair.right);
+    } else if (representation instanceof ArrayTable.ObjectArray) {
+      final ArrayTable.ObjectArray array =
+          (ArrayTable.ObjectArray) representation;
+      final List<?> values = ArrayTable.Column.asList(array, dataSet);
+      final Class<?> clazz = commonClass(values);
+      final Primitive primitive = clazz == null ? null : Primitive.ofBox(clazz);
+      if (clazz == String.class) {
+        representation2 = new ArrayTable.StringDictionary();
+        dataSet2 = ArrayTable.StringDictionary.encode(values, allocator);
+      } else if (clazz == ByteString.class) {
+        representation2 = new ArrayTable.ByteStringDictionary();
+        dataSet2 = ArrayTable.ByteStringDictionary.encode(values, allocator);
+      } else if (primitive != null) {
+        final ArrayTable.PrimitiveBuffer buffer =
+            new ArrayTable.PrimitiveBuffer(array.ordinal, primitive,
+                primitive, true);
+        representation2 = buffer;
+        dataSet2 = buffer.encode(values, allocator);
+      } else {
+        return column;
+      }
+    } else {
+      // Constant, or a representation that is not supported off-heap
+      return column;
+    }
+    if (dataSet2 == null) {
+      // Column is too large for a buffer; leave it on the heap.
+      return column;
+    }
+    return new ArrayTable.Column(representation2, dataSet2,
+        column.cardinality);
+  }
+
+  /** Returns the class of every non-null value in a list, or null if the
+   * values have different classes or are all null. */
+  private static @Nullable Class<?> commonClass(List<?> values) {
+    Class<?> clazz = null;
+    for (Object value : values) {
+      if (value != null) {
+        if (clazz == null) {
+          clazz = value.getClass();
+        } else if (clazz != value.getClass()) {
+          return null;
+        }
+      }
+    }
+    return clazz;
+  }
+
+  /** Writes the contents of a table to a file.
+   *
+   * <p>Writes to a temporary file, then renames it, so that a concurrent or
+   * interrupted write never leaves a partial file.
+   *
+   * @param content Contents of the table
+   * @param digest Description of the table's row type; {@link #map} ignores
+   *               the file if the digest does not match
+   * @param file File to write
+   */
+  static void write(ArrayTable.Content content, String digest, File file)
+      throws IOException {
+    final ArrayTable.Content content2 = convert(content, ByteBuffer::allocate);
+    final List<ByteBuffer> buffers = new ArrayList<>();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(digest);
+      out.writeInt(content2.size);
+      out.writeInt(content2.collations.size());
+      for (RelCollation collation : content2.collations) {
+        out.writeInt(collation.getFieldCollations().size());
+        for (RelFieldCollation fieldCollation
+            : collation.getFieldCollations()) {
+          out.writeInt(fieldCollation.getFieldIndex());
+          out.writeObject(fieldCollation.direction);
+          out.writeObject(fieldCollation.nullDirection);
+        }
+      }
+      out.writeInt(content2.columns.size());
+      for (ArrayTable.Column column : content2.columns) {
+        out.writeInt(column.cardinality);
+        writeDataSet(out, column.representation, column.dataSet, buffers);
+      }
+      out.writeInt(buffers.size());
+      for (ByteBuffer buffer : buffers) {
+        out.writeInt(buffer.capacity());
+      }
+    }
+    final byte[] header = bytes.toByteArray();
+    final ByteBuffer fileHeader =
+        ByteBuffer.allocate(
+            (int) ArrayTable.align8(FILE_HEADER + header.length));
+    fileHeader.putInt(MAGIC);
+    fileHeader.putInt(VERSION);
+    fileHeader.putInt(header.length);
+    fileHeader.put(header);
+
+    final File tempFile =
+        File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile()
+            .getParentFile());
+    try {
+      try (FileChannel channel =
+               FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+        writeFully(channel, ByteBuffer.wrap(fileHeader.array()), 0);
+        long offset = fileHeader.capacity();
+        for (ByteBuffer buffer : buffers) {
+          writeFully(channel, buffer, offset);
+          offset += ArrayTable.align8(buffer.capacity());
+        }
+      }
+      Files.move(tempFile.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer,
+      long offset) throws IOException {
+    final ByteBuffer buffer2 = buffer.duplicate();
+    long position = offset;
+    while (buffer2.hasRemaining()) {
+      position += channel.write(buffer2, position);
+    }
+  }
+
+  private static void writeDataSet(ObjectOutputStream out,
+      ArrayTable.Representation representation, Object dataSet,
+      List<ByteBuffer> buffers) throws IOException {
+    out.writeObject(representation.getType());
+    out.writeBoolean(dataSet instanceof ByteBuffer);
+    if (dataSet instanceof ByteBuffer) {
+      out.writeInt(buffers.size());
+      buffers.add((ByteBuffer) dataSet);
+    }
+    switch (representation.getType()) {
+    case PRIMITIVE_ARRAY:
+      if (dataSet instanceof ByteBuffer) {
+        final ArrayTable.PrimitiveBuffer buffer =
+            (ArrayTable.PrimitiveBuffer) representation;
+        out.writeInt(buffer.ordinal);
+        out.writeObject(buffer.primitive);
+        out.writeObject(buffer.p);
+        out.writeBoolean(buffer.nullable);
+      } else {
+        final ArrayTable.PrimitiveArray array =
+            (ArrayTable.PrimitiveArray) representation;
+        out.writeInt(array.ordinal);
+        out.writeObject(array.primitive);
+        out.writeObject(array.p);
+        out.writeObject(dataSet);
+      }
+      break;
+    case BIT_SLICED_PRIMITIVE_ARRAY:
+      final ArrayTable.BitSlicedPrimitiveArray array =
+          (ArrayTable.BitSlicedPrimitiveArray) representation;
+      out.writeInt(array.ordinal);
+      out.writeInt(array.bitCount);
+      out.writeObject(array.primitive);
+      out.writeBoolean(array.signed);
+      if (!(dataSet instanceof ByteBuffer)) {
+        out.writeObject(dataSet);
+      }
+      break;
+    case OBJECT_DICTIONARY:
+      final ArrayTable.ObjectDictionary dictionary =
+          (ArrayTable.ObjectDictionary) representation;
+      final Pair<?, ?> pair = (Pair<?, ?>) dataSet;
+      out.writeInt(dictionary.ordinal);
+      out.writeObject(pair.right);
+      writeDataSet(out, dictionary.representation, pair.left, buffers);
+      break;
+    case CONSTANT:
+      final Pair<?, ?> constant = (Pair<?, ?>) dataSet;
+      out.writeInt(((ArrayTable.Constant) representation).ordinal);
+      out.writeObject(constant.left);
+      out.writeObject(constant.right);
+      break;
+    case OBJECT_ARRAY:
+      out.writeInt(((ArrayTable.ObjectArray) representation).ordinal);
+      out.writeObject(dataSet);
+      break;
+    case STRING_DICTIONARY:
+    case BYTE_STRING_DICTIONARY:
+      break;
+    default:
+      throw new AssertionError("cannot write " + representation);
+    }
+  }
+
+  /** Maps the contents of a table from a file written by {@link #write},
+   * or returns null if the file was written for a different row type or
+   * by an incompatible version. */
+  static ArrayTable.@Nullable Content map(File file, String digest)
+      throws IOException {
+    try (FileChannel channel =
+             FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER);
+      readFully(channel, fileHeader, 0);
+      if (fileHeader.getInt(0) != MAGIC
+          || fileHeader.getInt(4) != VERSION) {
+        return null;
+      }
+      final ByteBuffer header = ByteBuffer.allocate(fileHeader.getInt(8));
+      readFully(channel, header, FILE_HEADER);
+      try (ObjectInputStream in =
+               new ObjectInputStream(
+                   new ByteArrayInputStream(header.array()))) {
+        if (!digest.equals(in.readObject())) {
+          return null;
+        }
+        final int size = in.readInt();
+        final List<RelCollation> collations = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+          final List<RelFieldCollation> fieldCollations = new ArrayList<>();
+          for (int j = in.readInt(); j > 0; j--) {
+            final int fieldIndex = in.readInt();
+            final RelFieldCollation.Direction direction =
+                (RelFieldCollation.Direction) in.readObject();
+            final RelFieldCollation.NullDirection nullDirection =
+                (RelFieldCollation.NullDirection) in.readObject();
+            fieldCollations.add(
+                new RelFieldCollation(fieldIndex, direction, nullDirection));
+          }
+          collations.add(RelCollations.of(fieldCollations));
+        }
+        final List<Pair<Integer, DataSet>> dataSets = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+          final int cardinality = in.readInt();
+          dataSets.add(Pair.of(cardinality, readDataSet(in)));
+        }
+
+        // Map each buffer, then resolve the data sets that refer to them.
+        final List<ByteBuffer> buffers = new ArrayList<>();
+        long offset = ArrayTable.align8(FILE_HEADER + header.capacity());
+        for (int i = in.readInt(); i > 0; i--) {
+          final int length = in.readInt();
+          buffers.add(
+              channel.map(FileChannel.MapMode.READ_ONLY, offset, length)
+                  .order(ArrayTable.BYTE_ORDER));
+          offset += ArrayTable.align8(length);
+        }
+        final List<ArrayTable.Column> columns = new ArrayList<>();
+        for (Pair<Integer, DataSet> pair : dataSets) {
+          columns.add(
+              new ArrayTable.Column(pair.right.representation,
+                  pair.right.resolve(buffers), pair.left));
+        }
+        return new ArrayTable.Content(columns, size, collations);
+      } catch (ClassNotFoundException | ClassCastException e) {
+        throw new IOException("invalid file " + file, e);
+      }
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer,
+      long offset) throws IOException {
+    long position = offset;
+    while (buffer.hasRemaining()) {
+      final int n = channel.read(buffer, position);
+      if (n < 0) {
+        throw new IOException("unexpected end of file");
+      }
+      position += n;
+    }
+  }
+
+  private static DataSet readDataSet(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+    final ArrayTable.RepresentationType type =
+        (ArrayTable.RepresentationType) in.readObject();
+    final boolean buffered = in.readBoolean();
+    final int bufferIndex = buffered ? in.readInt() : -1;
+    switch (type) {
+    case PRIMITIVE_ARRAY:
+      final int ordinal = in.readInt();
+      final Primitive primitive = (Primitive) in.readObject();
+      final Primitive p = (Primitive) in.readObject();
+      if (buffered) {
+        return new DataSet(
+            new ArrayTable.PrimitiveBuffer(ordinal, primitive, p,
+                in.readBoolean()),
+            bufferIndex, null);
+      }
+      return new DataSet(new ArrayTable.PrimitiveArray(ordinal, primitive, p),
+          -1, in.readObject());
+    case BIT_SLICED_PRIMITIVE_ARRAY:
+      final int ordinal2 = in.readInt();
+      final int bitCount = in.readInt();
+      final Primitive primitive2 = (Primitive) in.readObject();
+      final boolean signed = in.readBoolean();
+      if (buffered) {
+        return new DataSet(
+            new ArrayTable.BitSlicedPrimitiveBuffer(ordinal2, bitCount,
+                primitive2, signed),
+            bufferIndex, null);
+      }
+      return new DataSet(
+          new ArrayTable.BitSlicedPrimitiveArray(ordinal2, bitCount,
+              primitive2, signed),
+          -1, in.readObject());
+    case OBJECT_DICTIONARY:
+      final int ordinal3 = in.readInt();
+      final Object codeValues = in.readObject();
+      final DataSet codes = readDataSet(in);
+      return new DataSet(
+          new ArrayTable.ObjectDictionary(ordinal3, codes.representation),
+          -1, null) {
+        @Override Object resolve(List<ByteBuffer> buffers) {
+          return Pair.of(codes.resolve(buffers), codeValues);
+        }
+      };
+    case CONSTANT:
+      final int ordinal4 = in.readInt();
+      final Object value = in.readObject();
+      final Object size = in.readObject();
+      return new DataSet(new ArrayTable.Constant(ordinal4), -1,
+          Pair.of(value, size));
+    case OBJECT_ARRAY:
+      return new DataSet(new ArrayTable.ObjectArray(in.readInt()), -1,
+          in.readObject());
+    case STRING_DICTIONARY:
+      return new DataSet(new ArrayTable.StringDictionary(), bufferIndex, null);
+    case BYTE_STRING_DICTIONARY:
+      return new DataSet(new ArrayTable.ByteStringDictionary(), bufferIndex,
+          null);
+    default:
+      throw new IOException("cannot read " + type);
+    }
+  }
+
+  /** Representation and data set of a column that has been read from the
+   * header of a file, but whose buffers may not yet be mapped. */
+  private static class DataSet {
+    final ArrayTable.Representation representation;
+    final int bufferIndex;
+    final @Nullable Object dataSet;
+
+    DataSet(ArrayTable.Representation representation, int bufferIndex,
+        @Nullable Object dataSet) {
+      this.representation = representation;
+      this.bufferIndex = bufferIndex;
+      this.dataSet = dataSet;
+    }
+
+    Object resolve(List<ByteBuffer> buffers) {
+      if (bufferIndex >= 0) {
+        return buffers.get(bufferIndex);
+      }
+      return requireNonNull(dataSet, "dataSet");
+    }
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.config.CalciteSystemProperty;
+import org.apache.calcite.jdbc.Driver;
+import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.util.Util;
+
+import com.google.common.base.Suppliers;
+import com.google.common.io.ByteStreams;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.codehaus.commons.compiler.util.reflect.ByteArrayClassLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache, in a directory of the file system, of the bytecode of the classes
+ * that {@link EnumerableInterpretable} generates for {@link Bindable} objects.
+ *
+ * <p>Each entry is a zip file containing the classes compiled from one
+ * piece of generated source code. The name of the file is a hash of the
+ * source code and the Calcite version, so the cache survives restarts, can
+ * be shared between JVMs, and is never read by a different version of
+ * Calcite.
+ *
+ * <p>Each object is loaded by a fresh class loader, so classes that have
+ * static fields can be cached; unlike the in-memory cache of
+ * {@link Bindable} objects, no state is shared between queries.
+ *
+ * <p>The cache is enabled by setting
+ * {@link CalciteSystemProperty#BINDABLE_CACHE_DIRECTORY}.
+ * {@link #warmUp(Connection, Iterable)} populates it ahead of time.
+ */
+public class BindableCodeCache {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(BindableCodeCache.class);
+
+  private static final @Nullable BindableCodeCache INSTANCE = create();
+
+  private static final Supplier<String> VERSION =
+      Suppliers.memoize(() -> new Driver().getDriverVersion().versionString)::get;
+
+  private static final String SUFFIX = ".jar";
+  private static final String CLASS_SUFFIX = ".class";
+
+  private final Path directory;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  /** Creates a BindableCodeCache that stores its entries in a given
+   * directory. The directory need not exist yet; it is created when the
+   * first entry is written. */
+  public BindableCodeCache(Path directory) {
+    this.directory = requireNonNull(directory, "directory");
+  }
+
+  private static @Nullable BindableCodeCache create() {
+    final String directory =
+        CalciteSystemProperty.BINDABLE_CACHE_DIRECTORY.value();
+    return directory == null || directory.isEmpty()
+        ? null
+        : new BindableCodeCache(Paths.get(directory));
+  }
+
+  /** Returns the cache configured by
+   * {@link CalciteSystemProperty#BINDABLE_CACHE_DIRECTORY}, or null if the
+   * on-disk cache is disabled. */
+  public static @Nullable BindableCodeCache instance() {
+    return INSTANCE;
+  }
+
+  /** Returns the directory that holds the entries of this cache. */
+  public Path directory() {
+    return directory;
+  }
+
+  /** Returns the number of times that a class was loaded from this cache
+   * instead of being compiled. */
+  public long hitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of times that a class was not in this cache and had
+   * to be compiled. */
+  public long missCount() {
+    return missCount.get();
+  }
+
+  /** Prepares each of a list of SQL statements, so that the code generated
+   * for them is compiled and, if the on-disk cache is enabled, written to
+   * it. Later statements with the same plan, in this JVM or another, do
+   * not need to invoke the Java compiler.
+   *
+   * <p>Statements are prepared but not executed.
+   *
+   * @param connection Calcite connection
+   * @param sqls SQL statements
+   * @return Number of statements prepared
+   */
+  public static int warmUp(Connection connection, Iterable<String> sqls)
+      throws SQLException {
+    int count = 0;
+    for (String sql : sqls) {
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        Util.discard(statement);
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /** Returns an instance of the class generated from a given source,
+   * loading its bytecode from this cache if present, otherwise compiling
+   * it and storing the bytecode.
+   *
+   * <p>If the bytecode cannot be stored, logs a warning and returns the
+   * compiled instance.
+   *
+   * @param cbe Evaluator that has been configured with the class name,
+   *            super-class, interfaces and parent class loader
+   * @param className Name of the generated class
+   * @param source Body of the generated class
+   * @param fieldCount Number of fields in the row type; determines which
+   *                   interfaces the class implements
+   * @param parentClassLoader Class loader to load the cached classes with
+   */
+  Bindable get(IClassBodyEvaluator cbe, String className, String source,
+      int fieldCount, ClassLoader parentClassLoader)
+      throws CompileException, IOException {
+    final Path path = directory.resolve(key(className, fieldCount, source) + SUFFIX);
+    final Map<String, byte[]> bytecodes = read(path);
+    if (bytecodes != null) {
+      try {
+        final Bindable bindable =
+            instantiate(className, bytecodes, parentClassLoader);
+        hitCount.incrementAndGet();
+        return bindable;
+      } catch (ReflectiveOperationException | LinkageError
+          | ClassCastException e) {
+        // The entry is corrupt or was written by an incompatible JVM;
+        // compile the class again and overwrite the entry.
+      }
+    }
+    missCount.incrementAndGet();
+    final Bindable bindable = (Bindable) cbe.createInstance(new StringReader(source));
+    try {
+      write(path, cbe.getBytecodes());
+    } catch (IOException e) {
+      // The directory is read-only, full or otherwise unwritable; the class
+      // has been compiled, so the query can proceed without caching it
+      LOGGER.warn("Unable to write to bindable cache: {}", path, e);
+    }
+    return bindable;
+  }
+
+  /** Computes the key of an entry, a hex-encoded SHA-256 digest of the
+   * Calcite version and everything that determines the compiled code. */
+  static String key(String className, int fieldCount, String source) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    final String s =
+        VERSION.get() + '\0' + className + '\0' + fieldCount + '\0' + source;
+    final StringBuilder buf = new StringBuilder();
+    for (byte b : digest.digest(s.getBytes(StandardCharsets.UTF_8))) {
+      buf.append(Character.forDigit((b >> 4) & 0xF, 16))
+          .append(Character.forDigit(b & 0xF, 16));
+    }
+    return buf.toString();
+  }
+
+  /** Reads the classes in an entry, or returns null if there is no entry or
+   * it cannot be read. */
+  private static @Nullable Map<String, byte[]> read(Path path) {
+    final Map<String, byte[]> bytecodes = new HashMap<>();
+    try (InputStream in = Files.newInputStream(path);
+         ZipInputStream zip = new ZipInputStream(in)) {
+      for (ZipEntry entry; (entry = zip.getNextEntry()) != null;) {
+        final String name = entry.getName();
+        if (name.endsWith(CLASS_SUFFIX)) {
+          bytecodes.put(
+              name.substring(0, name.length() - CLASS_SUFFIX.length()),
+              ByteStreams.toByteArray(zip));
+        }
+      }
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      // Truncated or otherwise unreadable; treat as a miss
+      return null;
+    }
+    return bytecodes.isEmpty() ? null : bytecodes;
+  }
+
+  /** Writes an entry. The entry is written to a temporary file and then
+   * moved into place, so that a concurrent reader, in this or another JVM,
+   * never sees a partially written entry. */
+  private void write(Path path, Map<String, byte[]> bytecodes)
+      throws IOException {
+    Files.createDirectories(directory);
+    final Path tmp = Files.createTempFile(directory, "tmp", SUFFIX);
+    try {
+      try (OutputStream out = Files.newOutputStream(tmp);
+           ZipOutputStream zip = new ZipOutputStream(out)) {
+        for (Map.Entry<String, byte[]> entry : bytecodes.entrySet()) {
+          zip.putNextEntry(new ZipEntry(entry.getKey() + CLASS_SUFFIX));
+          zip.write(entry.getValue());
+          zip.closeEntry();
+        }
+      }
+      try {
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static Bindable instantiate(String className,
+      Map<String, byte[]> bytecodes, ClassLoader parentClassLoader)
+      throws ReflectiveOperationException {
+    final ClassLoader classLoader =
+        new ByteArrayClassLoader(bytecodes, parentClassLoader);
+    final Class<?> clazz = Class.forName(className, true, classLoader);
+    return (Bindable) clazz.getDeclaredConstructor().newInstance();
+  }
+}
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.util.DateTimeUtils;
+import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
@@ -40,8 +41,10 @@
 import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.linq4j.tree.Types;
 import org.apache.calcite.linq4j.tree.UnaryExpression;
+import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexBuilder;
@@ -60,6 +63,7 @@
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
@@ -1148,6 +1152,69 @@ public static <TSource, TResult> Enumerable<TResult> tumbling(
         Expressions.constant(strength));
   }
 
+  /** Returns whether rows of a given physical type can be written to a
+   * {@link org.apache.calcite.runtime.SpillFile}; that is, whether the rows
+   * and each of their fields are serializable. */
+  static boolean canSpill(JavaTypeFactory typeFactory,
+      PhysType physType) {
+    switch (physType.getFormat()) {
+    case ARRAY:
+    case SCALAR:
+      break;
+    default:
+      return false;
+    }
+    return canSpill(typeFactory, physType.getRowType());
+  }
+
+  /** Returns whether rows of a given type can be written to a
+   * {@link org.apache.calcite.runtime.SpillFile} once they are in
+   * {@link JavaRowFormat#ARRAY} format; that is, whether each of their fields
+   * is serializable. */
+  static boolean canSpill(JavaTypeFactory typeFactory, RelDataType rowType) {
+    for (RelDataTypeField field : rowType.getFieldList()) {
+      final Type type = typeFactory.getJavaClass(field.getType());
+      if (!(type instanceof Class)
+          || !((Class) type).isPrimitive()
+          && !Serializable.class.isAssignableFrom((Class) type)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the estimated number of bytes of rows that a sort may hold in
+   * memory before it writes sorted runs to disk, or 0 if the sort should
+   * be done in memory.
+   *
+   * <p>The sort is in memory if no budget is configured, or if metadata
+   * shows that the rows the sort must hold fit within the budget.
+   *
+   * @param input Input to the sort
+   * @param maxRows Maximum number of rows the sort needs to hold, given
+   *                its offset and fetch
+   */
+  static long sortMemoryBudget(RelNode input, double maxRows) {
+    final RelOptCluster cluster = input.getCluster();
+    final long memoryBudget = cluster.getPlanner().getContext()
+        .maybeUnwrap(CalciteConnectionConfig.class)
+        .map(CalciteConnectionConfig::sortMemoryBudget)
+        .orElse(0L);
+    if (memoryBudget <= 0) {
+      return 0L;
+    }
+    final RelMetadataQuery mq = cluster.getMetadataQuery();
+    final Double maxRowCount = mq.getMaxRowCount(input);
+    if (maxRowCount != null) {
+      maxRows = Math.min(maxRows, maxRowCount);
+    }
+    final Double averageRowSize = mq.getAverageRowSize(input);
+    if (averageRowSize != null && maxRows * averageRowSize <= memoryBudget) {
+      return 0L;
+    }
+    return memoryBudget;
+  }
+
   /** Returns a function that converts an internal value to an external
    * value.
    *
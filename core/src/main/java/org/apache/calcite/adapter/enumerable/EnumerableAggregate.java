@@ -19,18 +19,23 @@
 import org.apache.calcite.adapter.enumerable.impl.AggResultContextImpl;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.linq4j.function.DoubleFunction1;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.LongFunction1;
+import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.rel.InvalidRelException;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.runtime.PrimitiveGroupBy;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
 
@@ -173,6 +178,15 @@ public EnumerableAggregate(RelOptCluster cluster, RelTraitSet traitSet,
 
     final PhysType inputPhysType = result.physType;
 
+    final Expression primitiveGroupBy =
+        implementPrimitiveGroupBy(typeFactory, inputPhysType, childExp);
+    if (primitiveGroupBy != null) {
+      builder.add(Expressions.return_(null, primitiveGroupBy));
+      return implementor.result(
+          PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY),
+          builder.toBlock());
+    }
+
     ParameterExpression parameter =
         Expressions.parameter(inputPhysType.getJavaRowType(), "a0");
 
@@ -362,4 +376,141 @@ public EnumerableAggregate(RelOptCluster cluster, RelTraitSet traitSet,
     }
     return implementor.result(physType, builder.toBlock());
   }
+
+  /** Generates a call to {@link PrimitiveGroupBy#groupBy} if this aggregate
+   * groups by one or two columns whose values are held in an {@code int} or
+   * {@code long} (such as {@code INTEGER} and {@code BIGINT}) and every
+   * aggregate function can accumulate into a primitive; otherwise returns
+   * null, and the caller generates a call to
+   * {@link org.apache.calcite.linq4j.EnumerableDefaults#groupBy}.
+   *
+   * <p>The result has {@link JavaRowFormat#ARRAY} format, so there must be
+   * at least two output fields. */
+  private @Nullable Expression implementPrimitiveGroupBy(
+      JavaTypeFactory typeFactory, PhysType inputPhysType,
+      Expression childExp) {
+    final int groupCount = getGroupCount();
+    if (getGroupType() != Group.SIMPLE
+        || groupCount < 1
+        || groupCount > 2
+        || groupCount + aggCalls.size() < 2) {
+      return null;
+    }
+    final List<Expression> keys = new ArrayList<>();
+    for (int key : groupSet) {
+      final Primitive primitive =
+          Primitive.ofBoxOr(inputPhysType.fieldClass(key));
+      if (primitive != Primitive.INT && primitive != Primitive.LONG) {
+        return null;
+      }
+      keys.add(primitiveColumn(inputPhysType, key, primitive));
+    }
+    final List<Expression> aggs = new ArrayList<>();
+    for (AggregateCall aggCall : aggCalls) {
+      final PrimitiveGroupBy.Kind kind;
+      switch (aggCall.getAggregation().getKind()) {
+      case COUNT:
+        kind = PrimitiveGroupBy.Kind.COUNT;
+        break;
+      case SUM:
+        kind = PrimitiveGroupBy.Kind.SUM;
+        break;
+      case SUM0:
+        kind = PrimitiveGroupBy.Kind.SUM0;
+        break;
+      case MIN:
+        kind = PrimitiveGroupBy.Kind.MIN;
+        break;
+      case MAX:
+        kind = PrimitiveGroupBy.Kind.MAX;
+        break;
+      default:
+        return null;
+      }
+      if (aggCall.filterArg >= 0
+          || !aggCall.collation.getFieldCollations().isEmpty()
+          || aggCall.getArgList().size() > 1
+          || aggCall.getArgList().isEmpty() && kind != PrimitiveGroupBy.Kind.COUNT) {
+        return null;
+      }
+      final Type resultType = typeFactory.getJavaClass(aggCall.type);
+      final Primitive resultPrimitive = resultType instanceof Class
+          ? Primitive.ofBoxOr((Class) resultType)
+          : null;
+      if (resultPrimitive == null
+          || kind == PrimitiveGroupBy.Kind.COUNT
+              && !resultPrimitive.isFixedNumeric()) {
+        return null;
+      }
+      final Expression arg;
+      if (aggCall.getArgList().isEmpty()) {
+        arg = Expressions.constant(null);
+      } else {
+        final int field = aggCall.getArgList().get(0);
+        final Primitive primitive =
+            Primitive.ofBoxOr(inputPhysType.fieldClass(field));
+        if (primitive == null) {
+          return null;
+        }
+        final boolean supported;
+        switch (primitive) {
+        case BYTE:
+        case SHORT:
+        case INT:
+        case LONG:
+          // Integral values accumulate into a long; the result is narrowed
+          // to the result type, which wraps exactly as arithmetic on the
+          // result type would.
+          supported = kind == PrimitiveGroupBy.Kind.COUNT
+              || resultPrimitive.isFixedNumeric();
+          break;
+        case DOUBLE:
+          supported = kind == PrimitiveGroupBy.Kind.COUNT
+              || resultPrimitive == Primitive.DOUBLE;
+          break;
+        default:
+          // REAL values are held in a float; summing them in a double would
+          // give a different result.
+          supported = false;
+        }
+        if (!supported) {
+          return null;
+        }
+        arg = primitiveColumn(inputPhysType, field, primitive);
+      }
+      aggs.add(
+          Expressions.call(BuiltInMethod.PRIMITIVE_GROUP_BY_AGG.method,
+              Expressions.constant(kind), arg,
+              Expressions.constant(resultPrimitive)));
+    }
+    return Expressions.call(BuiltInMethod.PRIMITIVE_GROUP_BY.method,
+        childExp,
+        Expressions.call(BuiltInMethod.ARRAYS_AS_LIST.method, keys),
+        Expressions.call(BuiltInMethod.ARRAYS_AS_LIST.method, aggs));
+  }
+
+  /** Generates a {@link PrimitiveGroupBy.Column} that reads a field of the
+   * input. */
+  private static Expression primitiveColumn(PhysType inputPhysType, int field,
+      Primitive primitive) {
+    final ParameterExpression row =
+        Expressions.parameter(inputPhysType.getJavaRowType(), "row");
+    final Expression ref = inputPhysType.fieldReference(row, field);
+    final Expression isNull = Primitive.is(ref.getType())
+        ? Expressions.constant(null)
+        : Expressions.lambda(Predicate1.class,
+            Expressions.equal(ref, Expressions.constant(null)), row);
+    if (primitive == Primitive.DOUBLE) {
+      return Expressions.call(
+          BuiltInMethod.PRIMITIVE_GROUP_BY_DOUBLE_COLUMN.method,
+          Expressions.lambda(DoubleFunction1.class,
+              EnumUtils.convert(ref, double.class), row),
+          isNull, Expressions.constant(primitive));
+    }
+    return Expressions.call(
+        BuiltInMethod.PRIMITIVE_GROUP_BY_LONG_COLUMN.method,
+        Expressions.lambda(LongFunction1.class,
+            EnumUtils.convert(ref, long.class), row),
+        isNull, Expressions.constant(primitive));
+  }
 }
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributionTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.metadata.SplittableRel;
+import org.apache.calcite.util.BuiltInMethod;
+
+import com.google.common.base.Preconditions;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Exchange} in
+ * {@link EnumerableConvention enumerable calling convention}.
+ *
+ * <p>The input is a fragment of a plan that is evaluated once for each of
+ * its splits (see
+ * {@link org.apache.calcite.rel.metadata.RelMetadataQuery#splitCount}),
+ * in parallel. Two distributions are supported:
+ *
+ * <ul>
+ * <li>{@link RelDistribution.Type#SINGLETON} gathers the results of all
+ * splits, in split order, into one stream;
+ * <li>{@link RelDistribution.Type#HASH_DISTRIBUTED} repartitions the results
+ * of all splits by the hash of the distribution keys, so that each split of
+ * the enclosing singleton exchange reads the rows of one bucket.
+ * </ul>
+ *
+ * @see EnumerableParallelizer
+ * @see org.apache.calcite.runtime.ParallelEnumerables
+ */
+public class EnumerableExchange extends Exchange
+    implements EnumerableRel, SplittableRel {
+  /** Creates an EnumerableExchange.
+   *
+   * <p>Use {@link #create} unless you know what you are doing. */
+  public EnumerableExchange(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelDistribution distribution) {
+    super(cluster, traitSet, input, distribution);
+    assert getConvention() instanceof EnumerableConvention;
+  }
+
+  /** Creates an EnumerableExchange. */
+  public static EnumerableExchange create(RelNode input,
+      RelDistribution distribution) {
+    Preconditions.checkArgument(
+        distribution.getType() == RelDistribution.Type.SINGLETON
+            || distribution.getType() == RelDistribution.Type.HASH_DISTRIBUTED,
+        "unsupported distribution %s", distribution);
+    final RelOptCluster cluster = input.getCluster();
+    distribution = RelDistributionTraitDef.INSTANCE.canonize(distribution);
+    RelTraitSet traitSet =
+        input.getTraitSet().replace(EnumerableConvention.INSTANCE)
+            .replace(distribution);
+    if (distribution.getType() != RelDistribution.Type.SINGLETON) {
+      // Rows from different splits are interleaved
+      traitSet = traitSet.replace(RelCollations.EMPTY);
+    }
+    return new EnumerableExchange(cluster, traitSet, input, distribution);
+  }
+
+  @Override public Exchange copy(RelTraitSet traitSet, RelNode newInput,
+      RelDistribution newDistribution) {
+    return new EnumerableExchange(getCluster(), traitSet, newInput,
+        newDistribution);
+  }
+
+  /** Returns the number of threads that may execute a query, per the
+   * {@link CalciteConnectionConfig#parallelism()} setting of the planner
+   * that created a cluster. */
+  public static int parallelism(RelOptCluster cluster) {
+    return cluster.getPlanner().getContext()
+        .maybeUnwrap(CalciteConnectionConfig.class)
+        .map(CalciteConnectionConfig::parallelism)
+        .orElse(0);
+  }
+
+  @Override public int getSplitCount() {
+    switch (distribution.getType()) {
+    case SINGLETON:
+    case BROADCAST_DISTRIBUTED:
+      return 1;
+    default:
+      // Each thread reads one partition
+      return Math.max(1, parallelism(getCluster()));
+    }
+  }
+
+  @Override public Result implement(EnumerableRelImplementor implementor,
+      Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final Result inputResult =
+        implementor.visitChild(this, 0, (EnumerableRel) getInput(), pref);
+    final RelMetadataQuery mq = getCluster().getMetadataQuery();
+    final int splitCount = mq.splitCount(getInput());
+
+    // The input is generated as a function of "root", which is bound to the
+    // context of one split when the function is called.
+    final Expression fragment =
+        Expressions.lambda(Function1.class, inputResult.block,
+            DataContext.ROOT);
+    final Expression expression;
+    switch (distribution.getType()) {
+    case SINGLETON:
+      expression =
+          Expressions.call(BuiltInMethod.PARALLEL_GATHER.method,
+              implementor.getRootExpression(),
+              Expressions.constant(parallelism(getCluster())),
+              Expressions.constant(splitCount),
+              fragment);
+      break;
+    case HASH_DISTRIBUTED:
+      expression =
+          Expressions.call(BuiltInMethod.PARALLEL_REPARTITION.method,
+              implementor.getRootExpression(),
+              implementor.stash(this, Object.class),
+              Expressions.constant(splitCount),
+              fragment,
+              inputResult.physType.generateAccessor(distribution.getKeys()));
+      break;
+    default:
+      throw new AssertionError("unsupported distribution " + distribution);
+    }
+    builder.add(Expressions.return_(null, expression));
+    return implementor.result(inputResult.physType, builder.toBlock());
+  }
+}
@@ -16,6 +16,8 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
@@ -90,10 +92,15 @@ public static EnumerableHashJoin create(
       JoinRelType joinType) {
     final RelOptCluster cluster = left.getCluster();
     final RelMetadataQuery mq = cluster.getMetadataQuery();
-    final RelTraitSet traitSet =
-        cluster.traitSetOf(EnumerableConvention.INSTANCE)
-            .replaceIfs(RelCollationTraitDef.INSTANCE,
-                () -> RelMdCollation.enumerableHashJoin(mq, left, right, joinType));
+    final RelTraitSet traitSet;
+    if (canSpill(cluster, left, right, joinType)) {
+      // A join that spills does not preserve the order of its left input
+      traitSet = cluster.traitSetOf(EnumerableConvention.INSTANCE);
+    } else {
+      traitSet = cluster.traitSetOf(EnumerableConvention.INSTANCE)
+          .replaceIfs(RelCollationTraitDef.INSTANCE,
+              () -> RelMdCollation.enumerableHashJoin(mq, left, right, joinType));
+    }
     return new EnumerableHashJoin(cluster, traitSet, left, right, condition,
         variablesSet, joinType);
   }
@@ -107,12 +114,18 @@ public static EnumerableHashJoin create(
 
   @Override public @Nullable Pair<RelTraitSet, List<RelTraitSet>> passThroughTraits(
       final RelTraitSet required) {
+    if (canSpill(getCluster(), left, right, joinType)) {
+      return null;
+    }
     return EnumerableTraitsUtils.passThroughTraitsForJoin(
         required, joinType, left.getRowType().getFieldCount(), getTraitSet());
   }
 
   @Override public @Nullable Pair<RelTraitSet, List<RelTraitSet>> deriveTraits(
       final RelTraitSet childTraits, final int childId) {
+    if (canSpill(getCluster(), left, right, joinType)) {
+      return null;
+    }
     // should only derive traits (limited to collation for now) from left join input.
     return EnumerableTraitsUtils.deriveTraitsForJoin(
         childTraits, childId, joinType, getTraitSet(), right.getTraitSet());
@@ -168,6 +181,37 @@ public static EnumerableHashJoin create(
     }
   }
 
+  /** Returns the estimated number of bytes of build rows that a join may
+   * hold in memory before it spills to disk, or 0 if it may use unlimited
+   * memory. Semi- and anti-joins never spill. */
+  private static long memoryBudget(RelOptCluster cluster, JoinRelType joinType) {
+    switch (joinType) {
+    case SEMI:
+    case ANTI:
+      return 0L;
+    default:
+      return cluster.getPlanner().getContext()
+          .maybeUnwrap(CalciteConnectionConfig.class)
+          .map(CalciteConnectionConfig::hashJoinMemoryBudget)
+          .orElse(0L);
+    }
+  }
+
+  /** Returns whether a join may spill to disk; that is, whether a memory
+   * budget applies and the rows of both inputs are serializable. A join that
+   * may spill does not preserve the collation of its left input. */
+  private static boolean canSpill(RelOptCluster cluster, RelNode left,
+      RelNode right, JoinRelType joinType) {
+    if (memoryBudget(cluster, joinType) <= 0
+        || !(cluster.getTypeFactory() instanceof JavaTypeFactory)) {
+      return false;
+    }
+    final JavaTypeFactory typeFactory =
+        (JavaTypeFactory) cluster.getTypeFactory();
+    return EnumUtils.canSpill(typeFactory, left.getRowType())
+        && EnumUtils.canSpill(typeFactory, right.getRowType());
+  }
+
   @Override public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     switch (joinType) {
     case SEMI:
@@ -235,11 +279,25 @@ private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pr
     Expression rightExpression =
         builder.append(
             "right", rightResult.block);
+    final boolean spill = canSpill(getCluster(), left, right, joinType);
+    PhysType leftPhysType = leftResult.physType;
+    PhysType rightPhysType = rightResult.physType;
+    if (spill) {
+      // The planner has assumed that this join spills, so convert rows to a
+      // format that can be written to disk
+      leftExpression =
+          spillable(implementor, builder, "left", leftExpression, leftPhysType);
+      leftPhysType = spillable(implementor, leftPhysType);
+      rightExpression =
+          spillable(implementor, builder, "right", rightExpression,
+              rightPhysType);
+      rightPhysType = spillable(implementor, rightPhysType);
+    }
     final PhysType physType =
         PhysTypeImpl.of(
             implementor.getTypeFactory(), getRowType(), pref.preferArray());
     final PhysType keyPhysType =
-        leftResult.physType.project(
+        leftPhysType.project(
             joinInfo.leftKeys, JavaRowFormat.LIST);
     Expression predicate = Expressions.constant(null);
     if (!joinInfo.nonEquiConditions.isEmpty()) {
@@ -247,9 +305,33 @@ private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pr
           getCluster().getRexBuilder(), joinInfo.nonEquiConditions, true);
       if (nonEquiCondition != null) {
         predicate = EnumUtils.generatePredicate(implementor, getCluster().getRexBuilder(),
-            left, right, leftResult.physType, rightResult.physType, nonEquiCondition);
+            left, right, leftPhysType, rightPhysType, nonEquiCondition);
       }
     }
+    if (spill) {
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.SPILLABLE_HASH_JOIN.method,
+                  Expressions.list(
+                      leftExpression,
+                      rightExpression,
+                      leftPhysType.generateAccessor(joinInfo.leftKeys),
+                      rightPhysType.generateAccessor(joinInfo.rightKeys),
+                      EnumUtils.joinSelector(joinType,
+                          physType,
+                          ImmutableList.of(
+                              leftPhysType, rightPhysType)),
+                      Util.first(keyPhysType.comparer(),
+                          Expressions.constant(null)),
+                      Expressions.constant(joinType.generatesNullsOnLeft()),
+                      Expressions.constant(joinType.generatesNullsOnRight()),
+                      predicate,
+                      Expressions.constant(
+                          memoryBudget(getCluster(), joinType)))))
+              .toBlock());
+    }
     return implementor.result(
         physType,
         builder.append(
@@ -258,12 +340,12 @@ private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pr
                 BuiltInMethod.HASH_JOIN.method,
                 Expressions.list(
                     rightExpression,
-                    leftResult.physType.generateAccessor(joinInfo.leftKeys),
-                    rightResult.physType.generateAccessor(joinInfo.rightKeys),
+                    leftPhysType.generateAccessor(joinInfo.leftKeys),
+                    rightPhysType.generateAccessor(joinInfo.rightKeys),
                     EnumUtils.joinSelector(joinType,
                         physType,
                         ImmutableList.of(
-                            leftResult.physType, rightResult.physType)))
+                            leftPhysType, rightPhysType)))
                     .append(
                         Util.first(keyPhysType.comparer(),
                             Expressions.constant(null)))
@@ -275,4 +357,29 @@ private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pr
                     .append(predicate)))
             .toBlock());
   }
+
+  /** Converts an input of a join that spills to a row format that can be
+   * written to disk, if it is not in one already. */
+  private static Expression spillable(EnumerableRelImplementor implementor,
+      BlockBuilder builder, String name, Expression expression,
+      PhysType physType) {
+    if (EnumUtils.canSpill(implementor.getTypeFactory(), physType)) {
+      return expression;
+    }
+    return builder.append(name + "Array",
+        physType.convertTo(expression, JavaRowFormat.ARRAY));
+  }
+
+  /** Returns the physical type of an input of a join that spills, in the
+   * format to which
+   * {@link #spillable(EnumerableRelImplementor, BlockBuilder, String, Expression, PhysType)}
+   * converts it. */
+  private static PhysType spillable(EnumerableRelImplementor implementor,
+      PhysType physType) {
+    if (EnumUtils.canSpill(implementor.getTypeFactory(), physType)) {
+      return physType;
+    }
+    return PhysTypeImpl.of(implementor.getTypeFactory(),
+        physType.getRowType(), JavaRowFormat.ARRAY, false);
+  }
 }
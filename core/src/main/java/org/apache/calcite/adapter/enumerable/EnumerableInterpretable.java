@@ -36,6 +36,7 @@
 import org.apache.calcite.plan.ConventionTraitDef;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.plan.volcano.CardinalityFeedback;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.convert.ConverterImpl;
 import org.apache.calcite.runtime.ArrayBindable;
@@ -47,6 +48,7 @@
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.codehaus.commons.compiler.CompileException;
@@ -107,9 +109,20 @@ protected EnumerableInterpretable(RelOptCluster cluster, RelNode input) {
   public static Bindable toBindable(Map<String, Object> parameters,
       CalcitePrepare.@Nullable SparkHandler spark, EnumerableRel rel,
       EnumerableRel.Prefer prefer) {
+    return toBindable(parameters, spark, rel, prefer, ImmutableMap.of());
+  }
+
+  /** Generates and compiles code for a plan, instrumenting some of its
+   * relational expressions with probes that count their rows; see
+   * {@link CardinalityFeedback}. */
+  public static Bindable toBindable(Map<String, Object> parameters,
+      CalcitePrepare.@Nullable SparkHandler spark, EnumerableRel rel,
+      EnumerableRel.Prefer prefer,
+      Map<RelNode, CardinalityFeedback.Probe> probes) {
     EnumerableRelImplementor relImplementor =
         new EnumerableRelImplementor(rel.getCluster().getRexBuilder(),
             parameters);
+    relImplementor.setProbes(probes);
 
     final ClassDeclaration expr = relImplementor.implementRoot(rel, prefer);
     String s = Expressions.toString(expr.memberDeclarations, "\n", false);
@@ -160,9 +173,22 @@ static Bindable getBindable(ClassDeclaration expr, String s, int fieldCount)
       StaticFieldDetector detector = new StaticFieldDetector();
       expr.accept(detector);
       if (!detector.containsStaticField) {
-        return BINDABLE_CACHE.get(s, () -> (Bindable) cbe.createInstance(new StringReader(s)));
+        return BINDABLE_CACHE.get(s,
+            () -> compile(cbe, expr.name, s, fieldCount, classLoader));
       }
     }
+    return compile(cbe, expr.name, s, fieldCount, classLoader);
+  }
+
+  /** Creates an instance of a generated class, using the on-disk code cache
+   * if it is enabled. */
+  private static Bindable compile(IClassBodyEvaluator cbe, String className,
+      String s, int fieldCount, ClassLoader classLoader)
+      throws CompileException, IOException {
+    final BindableCodeCache codeCache = BindableCodeCache.instance();
+    if (codeCache != null) {
+      return codeCache.get(cbe, className, s, fieldCount, classLoader);
+    }
     return (Bindable) cbe.createInstance(new StringReader(s));
   }
 
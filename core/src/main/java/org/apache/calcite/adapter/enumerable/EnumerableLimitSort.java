@@ -24,9 +24,11 @@
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -107,6 +109,28 @@ public static EnumerableLimitSort create(
     final Expression offsetVal = this.offset == null ? Expressions.constant(Integer.valueOf(0))
         : getExpression(this.offset);
 
+    // A sort with a literal fetch never holds more than offset + fetch rows
+    final double maxRows = this.fetch instanceof RexLiteral
+        && (this.offset == null || this.offset instanceof RexLiteral)
+        ? (double) RexLiteral.intValue(this.fetch)
+            + (this.offset == null ? 0 : RexLiteral.intValue(this.offset))
+        : Double.POSITIVE_INFINITY;
+    final long memoryBudget = EnumUtils.sortMemoryBudget(child, maxRows);
+    if (memoryBudget > 0
+        && EnumUtils.canSpill(implementor.getTypeFactory(), inputPhysType)) {
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(
+                  BuiltInMethod.EXTERNAL_ORDER_BY.method,
+                  childExp,
+                  builder.append("keySelector", pair.left),
+                  Util.first(pair.right, Expressions.constant(null)),
+                  offsetVal,
+                  fetchVal,
+                  Expressions.constant(memoryBudget))));
+      return implementor.result(physType, builder.toBlock());
+    }
+
     builder.add(
         Expressions.return_(
             null, Expressions.call(
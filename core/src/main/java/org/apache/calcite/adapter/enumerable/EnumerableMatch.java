@@ -290,12 +290,13 @@ private Expression implementMatcher(EnumerableRelImplementor implementor,
             BuiltInMethod.PATTERN_TO_AUTOMATON.method));
     Expression matcherBuilder_ = builder.append("matcherBuilder",
         Expressions.call(BuiltInMethod.MATCHER_BUILDER.method, automaton_));
-    final BlockBuilder builder2 = new BlockBuilder();
-
 
     // Wrap a MemoryEnumerable around
 
     for (Map.Entry<String, RexNode> entry : patternDefinitions.entrySet()) {
+      // Each predicate has its own body
+      final BlockBuilder builder2 = new BlockBuilder();
+
       // Translate REX to Expressions
       RexBuilder rexBuilder = new RexBuilder(implementor.getTypeFactory());
       RexProgramBuilder rexProgramBuilder =
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexVisitorImpl;
+import org.apache.calcite.sql.SqlAggFunction;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.validate.SqlUserDefinedFunction;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.ImmutableIntList;
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites a plan in
+ * {@link EnumerableConvention enumerable calling convention}
+ * so that parts of it run in parallel.
+ *
+ * <p>A <em>pipeline</em> is a chain of {@link EnumerableCalc},
+ * {@link EnumerableFilter} and {@link EnumerableProject} over an
+ * {@link EnumerableTableScan} of a
+ * {@link org.apache.calcite.schema.SplittableTable}. Its scan is replaced by
+ * an {@link EnumerableSplitTableScan}, so that the pipeline processes one
+ * morsel of the table at a time, and an {@link EnumerableExchange} gathers
+ * the results of all morsels.
+ *
+ * <p>An {@link EnumerableAggregate} over a pipeline becomes a local
+ * aggregate per morsel and a global aggregate. If there are grouping keys,
+ * the local results are repartitioned by a hash exchange and the global
+ * aggregate runs in parallel on each partition:
+ *
+ * <blockquote><pre>
+ * EnumerableExchange(distribution=[single])
+ *   EnumerableAggregate(group=[{0}], C=[$SUM0($1)])
+ *     EnumerableExchange(distribution=[hash[0]])
+ *       EnumerableAggregate(group=[{0}], C=[COUNT()])
+ *         EnumerableCalc(...)
+ *           EnumerableSplitTableScan(table=[[s, t]], splits=[16])
+ * </pre></blockquote>
+ *
+ * <p>Pipelines that reference correlation variables or call
+ * non-deterministic or user-defined functions (which may not be
+ * thread-safe) are not rewritten.
+ */
+public class EnumerableParallelizer {
+  /** Desired number of rows in a morsel. */
+  static final int MORSEL_ROW_COUNT = 10_000;
+
+  /** Maximum number of morsels per thread. */
+  static final int MAX_MORSELS_PER_THREAD = 16;
+
+  private final int parallelism;
+
+  private EnumerableParallelizer(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /** Rewrites a plan to run in parallel, if the degree of parallelism
+   * (see {@link EnumerableExchange#parallelism}) is greater than 1. */
+  public static RelNode parallelize(RelNode rel) {
+    final int parallelism = EnumerableExchange.parallelism(rel.getCluster());
+    if (parallelism <= 1) {
+      return rel;
+    }
+    return new EnumerableParallelizer(parallelism).visit(rel);
+  }
+
+  private RelNode visit(RelNode rel) {
+    if (rel instanceof EnumerableAggregate) {
+      final RelNode aggregate = aggregate((EnumerableAggregate) rel);
+      if (aggregate != null) {
+        return aggregate;
+      }
+    } else if (!(rel instanceof EnumerableTableScan)) {
+      // A scan on its own gains nothing from running in parallel
+      final RelNode pipeline = pipeline(rel);
+      if (pipeline != null) {
+        return EnumerableExchange.create(pipeline, RelDistributions.SINGLETON);
+      }
+    }
+    final List<RelNode> inputs = new ArrayList<>();
+    boolean changed = false;
+    for (RelNode input : rel.getInputs()) {
+      final RelNode newInput = visit(input);
+      inputs.add(newInput);
+      changed |= newInput != input;
+    }
+    return changed ? rel.copy(rel.getTraitSet(), inputs) : rel;
+  }
+
+  /** Returns a copy of a pipeline that reads one split of its table, or null
+   * if {@code rel} is not a pipeline. */
+  private @Nullable RelNode pipeline(RelNode rel) {
+    if (rel instanceof EnumerableTableScan) {
+      return EnumerableSplitTableScan.create((EnumerableTableScan) rel,
+          splitCount(rel));
+    }
+    final List<RexNode> exps;
+    if (rel instanceof EnumerableCalc) {
+      exps = ((EnumerableCalc) rel).getProgram().getExprList();
+    } else if (rel instanceof EnumerableFilter) {
+      exps = ImmutableList.of(((EnumerableFilter) rel).getCondition());
+    } else if (rel instanceof EnumerableProject) {
+      exps = ((EnumerableProject) rel).getProjects();
+    } else {
+      return null;
+    }
+    if (!isThreadSafe(exps)
+        || !RelOptUtil.getVariablesUsed(rel).isEmpty()) {
+      return null;
+    }
+    final RelNode input = pipeline(rel.getInput(0));
+    if (input == null) {
+      return null;
+    }
+    return rel.copy(rel.getTraitSet(), ImmutableList.of(input));
+  }
+
+  /** Returns the number of morsels in which to read a table. */
+  private int splitCount(RelNode scan) {
+    final RelMetadataQuery mq = scan.getCluster().getMetadataQuery();
+    final double rowCount = mq.getRowCount(scan);
+    final double morselCount = Math.ceil(rowCount / MORSEL_ROW_COUNT);
+    return (int) Math.max(parallelism,
+        Math.min(morselCount, (long) parallelism * MAX_MORSELS_PER_THREAD));
+  }
+
+  private static boolean isThreadSafe(List<RexNode> exps) {
+    final RexVisitorImpl<Void> visitor = new RexVisitorImpl<Void>(true) {
+      @Override public Void visitCall(RexCall call) {
+        if (!call.getOperator().isDeterministic()
+            || call.getOperator() instanceof SqlUserDefinedFunction) {
+          throw Util.FoundOne.NULL;
+        }
+        return super.visitCall(call);
+      }
+    };
+    try {
+      for (RexNode exp : exps) {
+        exp.accept(visitor);
+      }
+      return true;
+    } catch (Util.FoundOne e) {
+      return false;
+    }
+  }
+
+  /** Splits an aggregate over a pipeline into local and global aggregates,
+   * or returns null if not possible. */
+  private @Nullable RelNode aggregate(EnumerableAggregate aggregate) {
+    if (aggregate.getGroupType() != Aggregate.Group.SIMPLE) {
+      return null;
+    }
+    final int groupCount = aggregate.getGroupCount();
+    final List<AggregateCall> globalCalls = new ArrayList<>();
+    for (AggregateCall call : aggregate.getAggCallList()) {
+      final SqlAggFunction function = globalFunction(call);
+      if (function == null) {
+        return null;
+      }
+      globalCalls.add(
+          AggregateCall.create(function, false, call.isApproximate(),
+              call.ignoreNulls(),
+              ImmutableIntList.of(groupCount + globalCalls.size()), -1, null,
+              RelCollations.EMPTY, call.getType(), call.getName()));
+    }
+    final RelNode pipeline = pipeline(aggregate.getInput());
+    if (pipeline == null) {
+      return null;
+    }
+    final Aggregate local =
+        aggregate.copy(aggregate.getTraitSet(), pipeline,
+            aggregate.getGroupSet(), null, aggregate.getAggCallList());
+    final ImmutableBitSet globalGroupSet = ImmutableBitSet.range(groupCount);
+    final RelNode global;
+    if (groupCount == 0) {
+      final RelNode gather =
+          EnumerableExchange.create(local, RelDistributions.SINGLETON);
+      global =
+          aggregate.copy(aggregate.getTraitSet(), gather, globalGroupSet,
+              null, globalCalls);
+    } else {
+      final RelNode exchange =
+          EnumerableExchange.create(local,
+              RelDistributions.hash(globalGroupSet.asList()));
+      global =
+          EnumerableExchange.create(
+              aggregate.copy(exchange.getTraitSet(), exchange,
+                  globalGroupSet, null, globalCalls),
+              RelDistributions.SINGLETON);
+    }
+    if (!RelOptUtil.areRowTypesEqual(global.getRowType(),
+        aggregate.getRowType(), false)) {
+      return null;
+    }
+    return global;
+  }
+
+  /** Returns the function that combines the results of an aggregate
+   * function computed on several partitions of its input, or null if
+   * results cannot be combined. */
+  private static @Nullable SqlAggFunction globalFunction(AggregateCall call) {
+    if (call.isDistinct()
+        || !call.getCollation().getFieldCollations().isEmpty()) {
+      return null;
+    }
+    switch (call.getAggregation().getKind()) {
+    case COUNT:
+      return SqlStdOperatorTable.SUM0;
+    case SUM:
+    case SUM0:
+    case MIN:
+    case MAX:
+    case ANY_VALUE:
+      return call.getAggregation();
+    default:
+      return null;
+    }
+  }
+}
@@ -42,6 +42,8 @@
 import org.apache.calcite.linq4j.tree.UnaryExpression;
 import org.apache.calcite.linq4j.tree.VisitorImpl;
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.volcano.CardinalityFeedback;
+import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.sql.SqlExplainLevel;
@@ -52,6 +54,7 @@
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
 import java.io.Serializable;
@@ -82,6 +85,7 @@ public class EnumerableRelImplementor extends JavaRelImplementor {
       new HashMap<>();
   private final IdentityHashMap<Object, ParameterExpression> stashedParameters =
       new IdentityHashMap<>();
+  private Map<RelNode, CardinalityFeedback.Probe> probes = ImmutableMap.of();
 
   @SuppressWarnings("methodref.receiver.bound.invalid")
   protected final Function1<String, RexToLixTranslator.InputGetter> allCorrelateVariables =
@@ -101,14 +105,37 @@ public EnumerableRel.Result visitChild(
     if (parent != null) {
       assert child == parent.getInputs().get(ordinal);
     }
-    return child.implement(this, prefer);
+    return probe(child, child.implement(this, prefer));
+  }
+
+  /** Sets the probes that count the rows produced by relational
+   * expressions; see {@link CardinalityFeedback}. */
+  public void setProbes(Map<RelNode, CardinalityFeedback.Probe> probes) {
+    this.probes = probes;
+  }
+
+  /** If there is a probe for a relational expression, wraps the code that
+   * implements it so that the probe counts its rows. */
+  private EnumerableRel.Result probe(EnumerableRel rel,
+      EnumerableRel.Result result) {
+    final CardinalityFeedback.Probe probe = probes.get(rel);
+    if (probe == null) {
+      return result;
+    }
+    final BlockBuilder builder = new BlockBuilder();
+    final Expression source = builder.append("source", result.block);
+    builder.add(
+        Expressions.call(stash(probe, CardinalityFeedback.Probe.class),
+            BuiltInMethod.CARDINALITY_PROBE.method, source));
+    return new EnumerableRel.Result(builder.toBlock(), result.physType,
+        result.format);
   }
 
   public ClassDeclaration implementRoot(EnumerableRel rootRel,
       EnumerableRel.Prefer prefer) {
     EnumerableRel.Result result;
     try {
-      result = rootRel.implement(this, prefer);
+      result = probe(rootRel, rootRel.implement(this, prefer));
     } catch (RuntimeException e) {
       IllegalStateException ex = new IllegalStateException("Unable to implement "
           + RelOptUtil.toString(rootRel, SqlExplainLevel.ALL_ATTRIBUTES));
@@ -27,6 +27,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -85,6 +86,22 @@ public static EnumerableSort create(RelNode child, RelCollation collation,
         inputPhysType.generateCollationKey(
             collation.getFieldCollations());
 
+    final long memoryBudget =
+        EnumUtils.sortMemoryBudget(child, Double.POSITIVE_INFINITY);
+    if (memoryBudget > 0
+        && EnumUtils.canSpill(implementor.getTypeFactory(), inputPhysType)) {
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(
+                  BuiltInMethod.EXTERNAL_ORDER_BY.method,
+                  childExp,
+                  builder.append("keySelector", pair.left),
+                  Util.first(pair.right, Expressions.constant(null)),
+                  Expressions.constant(0),
+                  Expressions.constant(Integer.MAX_VALUE),
+                  Expressions.constant(memoryBudget))));
+      return implementor.result(physType, builder.toBlock());
+    }
     builder.add(
         Expressions.return_(null,
             Expressions.call(childExp,
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.Blocks;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.MethodCallExpression;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.SplittableRel;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.schema.SplittableTable;
+import org.apache.calcite.util.BuiltInMethod;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/** Implementation of {@link org.apache.calcite.rel.core.TableScan} in
+ * {@link EnumerableConvention enumerable calling convention} that reads one
+ * split of a {@link SplittableTable}.
+ *
+ * <p>The split is determined at run time by the enclosing
+ * {@link EnumerableExchange}; outside of an exchange, the scan reads the
+ * whole table.
+ *
+ * @see org.apache.calcite.runtime.ParallelEnumerables#scan
+ */
+public class EnumerableSplitTableScan
+    extends TableScan
+    implements EnumerableRel, SplittableRel {
+  /** Number of splits in which the table is read. */
+  public final int splitCount;
+
+  /** Creates an EnumerableSplitTableScan.
+   *
+   * <p>Use {@link #create} unless you know what you are doing. */
+  public EnumerableSplitTableScan(RelOptCluster cluster, RelTraitSet traitSet,
+      RelOptTable table, int splitCount) {
+    super(cluster, traitSet, ImmutableList.of(), table);
+    assert getConvention() instanceof EnumerableConvention;
+    assert table.unwrap(SplittableTable.class) != null;
+    assert splitCount > 0;
+    this.splitCount = splitCount;
+  }
+
+  /** Creates an EnumerableSplitTableScan that reads the same table as a
+   * given scan, or returns null if the table cannot be split. */
+  public static @Nullable EnumerableSplitTableScan create(TableScan scan,
+      int splitCount) {
+    final RelOptTable table = scan.getTable();
+    if (table.unwrap(SplittableTable.class) == null
+        || tableExpression(table) == null
+        || !canHandle(scan.getRowType())) {
+      return null;
+    }
+    return new EnumerableSplitTableScan(scan.getCluster(),
+        scan.getTraitSet().replace(EnumerableConvention.INSTANCE), table,
+        splitCount);
+  }
+
+  /** Returns whether rows of a given type, as returned by
+   * {@link SplittableTable#scan(org.apache.calcite.DataContext, int, int)},
+   * can be used without conversion. Collections of structured values would
+   * need the conversion that {@link EnumerableTableScan} applies. */
+  private static boolean canHandle(RelDataType rowType) {
+    if (rowType.getFieldCount() == 0) {
+      return false;
+    }
+    for (RelDataTypeField field : rowType.getFieldList()) {
+      switch (field.getType().getSqlTypeName()) {
+      case ARRAY:
+      case MULTISET:
+      case MAP:
+      case ROW:
+        return false;
+      default:
+        break;
+      }
+    }
+    return true;
+  }
+
+  /** Returns an expression that evaluates to a table, or null.
+   *
+   * <p>Derived from the expression with which {@link EnumerableTableScan}
+   * would scan the table, {@code Schemas.enumerable((ScannableTable) t, root)},
+   * so that the table is located in the same way. */
+  private static @Nullable Expression tableExpression(RelOptTable table) {
+    final Expression expression = table.getExpression(SplittableTable.class);
+    if (expression instanceof MethodCallExpression) {
+      final MethodCallExpression call = (MethodCallExpression) expression;
+      if (call.method.equals(BuiltInMethod.SCHEMAS_ENUMERABLE_SCANNABLE.method)) {
+        return Expressions.convert_(call.expressions.get(0),
+            SplittableTable.class);
+      }
+    }
+    return null;
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new EnumerableSplitTableScan(getCluster(), traitSet, table,
+        splitCount);
+  }
+
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    return super.explainTerms(pw)
+        .item("splits", splitCount);
+  }
+
+  @Override public int getSplitCount() {
+    return splitCount;
+  }
+
+  @Override public Result implement(EnumerableRelImplementor implementor,
+      Prefer pref) {
+    Expression expression =
+        Expressions.call(BuiltInMethod.PARALLEL_SCAN.method,
+            implementor.getRootExpression(),
+            requireNonNull(tableExpression(table), "tableExpression"));
+    final JavaRowFormat format;
+    if (getRowType().getFieldCount() == 1) {
+      expression = Expressions.call(BuiltInMethod.SLICE0.method, expression);
+      format = JavaRowFormat.SCALAR;
+    } else {
+      format = JavaRowFormat.ARRAY;
+    }
+    final PhysType physType =
+        PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(), format);
+    return implementor.result(physType, Blocks.toBlock(expression));
+  }
+}
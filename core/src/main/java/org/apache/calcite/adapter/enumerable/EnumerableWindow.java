@@ -46,6 +46,7 @@
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexWindowBound;
+import org.apache.calcite.runtime.SegmentTree;
 import org.apache.calcite.runtime.SortedMultiMap;
 import org.apache.calcite.sql.SqlAggFunction;
 import org.apache.calcite.sql.validate.SqlConformance;
@@ -62,10 +63,15 @@
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.DoubleBinaryOperator;
 import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
 
 import static org.apache.calcite.linq4j.Nullness.castNonNull;
 
@@ -307,6 +313,15 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
       declareAndResetState(typeFactory, builder, result, windowIdx, aggs,
           outputPhysType, outputRow);
 
+      final Function<AggImpState, List<RexNode>> rexArguments =
+          getRexArgumentsFunction(result);
+
+      // Aggregates over a moving frame that can be combined use segment trees
+      final List<Pair<AggImpState, Expression>> treeAggs =
+          getSegmentTreeAggs(aggs, group);
+      final List<AggImpState> loopAggs = new ArrayList<>(aggs);
+      loopAggs.removeAll(Pair.left(treeAggs));
+
       // There are assumptions that minX==0. If ever change this, look for
       // frameRowCount, bounds checking, etc
       final Expression minX = Expressions.constant(0);
@@ -316,6 +331,11 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
           Expressions.subtract(
               partitionRowCount, Expressions.constant(1)));
 
+      final List<Expression> trees =
+          buildSegmentTrees(typeFactory, implementor.getConformance(), result,
+              translatedConstants, builder3, rows_, partitionRowCount,
+              inputPhysType, treeAggs, rexArguments);
+
       final Expression startUnchecked = builder4.append("start",
           translateBound(translator, i_, row_, minX, maxX, rows_,
               group, true, inputPhysType, keySelector, keyComparator));
@@ -390,11 +410,23 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
       ParameterExpression actualStart = Expressions.parameter(
           0, int.class, builder5.newName("actualStart"));
 
+      final DeclarationStatement jDecl =
+          Expressions.declare(0, "j", actualStart);
+
+      final PhysType inputPhysTypeFinal = inputPhysType;
+      final Function<BlockBuilder, WinAggFrameResultContext>
+          resultContextBuilder =
+          getBlockBuilderWinAggFrameResultContextFunction(typeFactory,
+              implementor.getConformance(), result, translatedConstants,
+              comparator_, rows_, i_, startX, endX, minX, maxX,
+              hasRows, frameRowCount, partitionRowCount,
+              jDecl, inputPhysTypeFinal);
+
       final BlockBuilder builder6 = new BlockBuilder(true, builder5);
       builder6.add(
           Expressions.statement(Expressions.assign(actualStart, startX)));
 
-      for (final AggImpState agg : aggs) {
+      for (final AggImpState agg : loopAggs) {
         List<Expression> aggState = requireNonNull(agg.state, "agg.state");
         agg.implementor.implementReset(requireNonNull(agg.context, "agg.context"),
             new WinAggResetContextImpl(builder6, aggState, i_, startX, endX,
@@ -409,8 +441,10 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
           lowerBoundCanChange,
           Expressions.lessThan(endX, prevEnd));
 
+      final boolean slide = lowerBoundCanChange instanceof BinaryExpression
+          && supportsRemove(loopAggs);
       BlockStatement resetWindowState = builder6.toBlock();
-      if (resetWindowState.statements.size() == 1) {
+      if (!slide && resetWindowState.statements.size() == 1) {
         builder5.add(
             Expressions.declare(0, actualStart,
                 Expressions.condition(needRecomputeWindow, startX,
@@ -420,7 +454,11 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
             Expressions.declare(0, actualStart, null));
         builder5.add(
             Expressions.ifThenElse(needRecomputeWindow,
-                resetWindowState,
+                slide
+                    ? slideOrResetWindowState(loopAggs, builder5,
+                        resultContextBuilder, rexArguments, jDecl, actualStart,
+                        prevStart, prevEnd, startX, endX, resetWindowState)
+                    : resetWindowState,
                 Expressions.statement(
                     Expressions.assign(actualStart,
                     Expressions.add(prevEnd, Expressions.constant(1))))));
@@ -434,34 +472,8 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
           Expressions.statement(Expressions.assign(prevEnd, endX)));
 
       final BlockBuilder builder7 = new BlockBuilder(true, builder5);
-      final DeclarationStatement jDecl =
-          Expressions.declare(0, "j", actualStart);
-
-      final PhysType inputPhysTypeFinal = inputPhysType;
-      final Function<BlockBuilder, WinAggFrameResultContext>
-          resultContextBuilder =
-          getBlockBuilderWinAggFrameResultContextFunction(typeFactory,
-              implementor.getConformance(), result, translatedConstants,
-              comparator_, rows_, i_, startX, endX, minX, maxX,
-              hasRows, frameRowCount, partitionRowCount,
-              jDecl, inputPhysTypeFinal);
-
-      final Function<AggImpState, List<RexNode>> rexArguments = agg -> {
-        List<Integer> argList = agg.call.getArgList();
-        List<RelDataType> inputTypes =
-            EnumUtils.fieldRowTypes(
-                result.physType.getRowType(),
-                constants,
-                argList);
-        List<RexNode> args = new ArrayList<>(inputTypes.size());
-        for (int i = 0; i < argList.size(); i++) {
-          Integer idx = argList.get(i);
-          args.add(new RexInputRef(idx, inputTypes.get(i)));
-        }
-        return args;
-      };
-
-      implementAdd(aggs, builder7, resultContextBuilder, rexArguments, jDecl);
+      implementAdd(loopAggs, builder7, resultContextBuilder, rexArguments,
+          jDecl);
 
       BlockStatement forBlock = builder7.toBlock();
       if (!forBlock.statements.isEmpty()) {
@@ -477,8 +489,10 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
         builder5.add(forAggLoop);
       }
 
-      if (implementResult(aggs, builder5, resultContextBuilder, rexArguments,
-              true)) {
+      implementSegmentTreeResult(treeAggs, trees, builder5, startX, endX);
+      if (implementResult(loopAggs, builder5, resultContextBuilder,
+              rexArguments, true)
+          || !treeAggs.isEmpty()) {
         builder4.add(
             Expressions.ifThen(
                 Expressions.orElse(lowerBoundCanChange,
@@ -486,7 +500,7 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
                 builder5.toBlock()));
       }
 
-      implementResult(aggs, builder4, resultContextBuilder, rexArguments,
+      implementResult(loopAggs, builder4, resultContextBuilder, rexArguments,
           false);
 
       builder4.add(
@@ -864,20 +878,305 @@ private static void implementAdd(List<AggImpState> aggs,
       final DeclarationStatement jDecl) {
     for (final AggImpState agg : aggs) {
       final WinAggAddContext addContext =
-          new WinAggAddContextImpl(builder7, requireNonNull(agg.state, "agg.state"), frame) {
-            @Override public Expression currentPosition() {
-              return jDecl.parameter;
-            }
+          addContext(agg, builder7, frame, rexArguments, jDecl);
+      agg.implementor.implementAdd(requireNonNull(agg.context, "agg.context"), addContext);
+    }
+  }
 
-            @Override public List<RexNode> rexArguments() {
-              return rexArguments.apply(agg);
-            }
+  private static void implementRemove(List<AggImpState> aggs,
+      final BlockBuilder builder,
+      final Function<BlockBuilder, WinAggFrameResultContext> frame,
+      final Function<AggImpState, List<RexNode>> rexArguments,
+      final DeclarationStatement jDecl) {
+    for (final AggImpState agg : aggs) {
+      final WinAggAddContext removeContext =
+          addContext(agg, builder, frame, rexArguments, jDecl);
+      ((RemovableWinAggImplementor) agg.implementor).implementRemove(
+          (WinAggContext) requireNonNull(agg.context, "agg.context"),
+          removeContext);
+    }
+  }
 
-            @Override public @Nullable RexNode rexFilterArgument() {
-              return null; // REVIEW
-            }
-          };
-      agg.implementor.implementAdd(requireNonNull(agg.context, "agg.context"), addContext);
+  private static WinAggAddContext addContext(final AggImpState agg,
+      final BlockBuilder builder,
+      final Function<BlockBuilder, WinAggFrameResultContext> frame,
+      final Function<AggImpState, List<RexNode>> rexArguments,
+      final DeclarationStatement jDecl) {
+    return new WinAggAddContextImpl(builder, requireNonNull(agg.state, "agg.state"), frame) {
+      @Override public Expression currentPosition() {
+        return jDecl.parameter;
+      }
+
+      @Override public List<RexNode> rexArguments() {
+        return rexArguments.apply(agg);
+      }
+
+      @Override public @Nullable RexNode rexFilterArgument() {
+        return null; // REVIEW
+      }
+    };
+  }
+
+  private Function<AggImpState, List<RexNode>> getRexArgumentsFunction(
+      final Result result) {
+    return agg -> {
+      List<Integer> argList = agg.call.getArgList();
+      List<RelDataType> inputTypes =
+          EnumUtils.fieldRowTypes(
+              result.physType.getRowType(),
+              constants,
+              argList);
+      List<RexNode> args = new ArrayList<>(inputTypes.size());
+      for (int i = 0; i < argList.size(); i++) {
+        Integer idx = argList.get(i);
+        args.add(new RexInputRef(idx, inputTypes.get(i)));
+      }
+      return args;
+    };
+  }
+
+  /** Generates code that removes the rows that have left the frame, if the
+   * new frame overlaps or adjoins the previous frame and ends no earlier.
+   *
+   * <p>The rows that have entered the frame are added later. If the frames
+   * are disjoint, resets the accumulators:
+   *
+   * <blockquote><pre>
+   * if (prevStart &gt;= 0 &amp;&amp; start &gt;= prevStart
+   *     &amp;&amp; start &lt;= prevEnd + 1 &amp;&amp; end &gt;= prevEnd) {
+   *   for (int j = prevStart; j &lt; start; j++) {
+   *     // implementRemove
+   *   }
+   *   actualStart = prevEnd + 1;
+   * } else {
+   *   actualStart = start;
+   *   // implementReset
+   * }
+   * </pre></blockquote>
+   */
+  private static Statement slideOrResetWindowState(List<AggImpState> aggs,
+      BlockBuilder builder,
+      Function<BlockBuilder, WinAggFrameResultContext> frame,
+      Function<AggImpState, List<RexNode>> rexArguments,
+      DeclarationStatement jDecl, ParameterExpression actualStart,
+      ParameterExpression prevStart, ParameterExpression prevEnd,
+      Expression startX, Expression endX, Statement resetWindowState) {
+    final BlockBuilder removeBuilder = new BlockBuilder(true, builder);
+    implementRemove(aggs, removeBuilder, frame, rexArguments, jDecl);
+    final Expression canSlide =
+        Expressions.foldAnd(
+            ImmutableList.of(
+                Expressions.greaterThanOrEqual(prevStart,
+                    Expressions.constant(0)),
+                Expressions.greaterThanOrEqual(startX, prevStart),
+                Expressions.lessThanOrEqual(startX,
+                    Expressions.add(prevEnd, Expressions.constant(1))),
+                Expressions.greaterThanOrEqual(endX, prevEnd)));
+    return Expressions.ifThenElse(canSlide,
+        Expressions.block(
+            Expressions.for_(
+                Expressions.declare(0, jDecl.parameter, prevStart),
+                Expressions.lessThan(jDecl.parameter, startX),
+                Expressions.preIncrementAssign(jDecl.parameter),
+                removeBuilder.toBlock()),
+            Expressions.statement(
+                Expressions.assign(actualStart,
+                    Expressions.add(prevEnd, Expressions.constant(1))))),
+        resetWindowState);
+  }
+
+  /** Returns whether there is at least one aggregate, and all aggregates
+   * can remove rows from their accumulators, so that rows that leave a
+   * moving frame can be removed rather than recomputing the frame. */
+  private static boolean supportsRemove(List<AggImpState> aggs) {
+    return !aggs.isEmpty()
+        && aggs.stream().allMatch(agg ->
+            agg.implementor instanceof RemovableWinAggImplementor
+                && ((RemovableWinAggImplementor) agg.implementor).supportsRemove(
+                    (WinAggContext) requireNonNull(agg.context, "agg.context")));
+  }
+
+  /** Returns the aggregates that can be computed using a segment tree,
+   * each with its combining function; empty if the frame's lower bound is
+   * UNBOUNDED PRECEDING. */
+  private static List<Pair<AggImpState, Expression>> getSegmentTreeAggs(
+      List<AggImpState> aggs, Group group) {
+    final List<Pair<AggImpState, Expression>> list = new ArrayList<>();
+    if (group.lowerBound.isUnbounded() && group.lowerBound.isPreceding()) {
+      return list;
+    }
+    for (AggImpState agg : aggs) {
+      if (!(agg.implementor instanceof WinAggImplementor)
+          || agg.call.getArgList().size() != 1
+          || !agg.call.type.isNullable() && !group.isAlwaysNonEmpty()) {
+        // The tree returns null if the frame is empty
+        continue;
+      }
+      final Expression combiner =
+          ((WinAggImplementor) agg.implementor).implementCombiner(
+              (WinAggContext) requireNonNull(agg.context, "agg.context"));
+      if (combiner != null) {
+        list.add(Pair.of(agg, combiner));
+      }
+    }
+    return list;
+  }
+
+  /** Generates code that builds a segment tree over each partition for each
+   * aggregate that has a combining function.
+   *
+   * <p>The type of the combining function determines how the tree stores
+   * values: a {@link LongBinaryOperator} in a {@code long} array, a
+   * {@link DoubleBinaryOperator} in a {@code double} array, and otherwise
+   * in an {@code Object} array.
+   *
+   * <p>For example:
+   *
+   * <blockquote><pre>
+   * final long[] longValues = new long[rows.length];
+   * final BitSet nulls = new BitSet();
+   * for (int k = 0; k &lt; rows.length; k++) {
+   *   final Integer v = ((Employee) rows[k]).deptno;
+   *   if (v == null) {
+   *     nulls.set(k);
+   *   } else {
+   *     longValues[k] = v.longValue();
+   *   }
+   * }
+   * final SegmentTree.OfLong tree =
+   *     new SegmentTree.OfLong(longValues, nulls, SegmentTree.OfLong.MIN);
+   * </pre></blockquote>
+   */
+  private static List<Expression> buildSegmentTrees(JavaTypeFactory typeFactory,
+      SqlConformance conformance, Result result,
+      List<Expression> translatedConstants, BlockBuilder builder,
+      Expression rows_, Expression partitionRowCount, PhysType inputPhysType,
+      List<Pair<AggImpState, Expression>> treeAggs,
+      Function<AggImpState, List<RexNode>> rexArguments) {
+    if (treeAggs.isEmpty()) {
+      return ImmutableList.of();
+    }
+    // Arrays of values, by element type; each is shared by the trees that
+    // store that type, because a tree copies its values
+    final Map<Class<?>, Expression> valueArrays = new HashMap<>();
+    final List<Expression> trees = new ArrayList<>();
+    for (Pair<AggImpState, Expression> pair : treeAggs) {
+      final Class<?> treeClass = segmentTreeClass(pair.right);
+      final Class<?> elementType = treeClass == SegmentTree.OfLong.class
+          ? long.class
+          : treeClass == SegmentTree.OfDouble.class ? double.class
+          : Object.class;
+      // optimize=false to prevent inlining of object create into for-loops
+      final Expression values_ =
+          valueArrays.computeIfAbsent(elementType, c ->
+              builder.append(
+                  c == Object.class ? "values" : c.getName() + "Values",
+                  Expressions.newArrayBounds(c, 1, partitionRowCount),
+                  false));
+      final @Nullable Expression nulls_ = elementType == Object.class
+          ? null
+          : builder.append("nulls", Expressions.new_(BitSet.class), false);
+      final BlockBuilder builder2 = new BlockBuilder(true, builder);
+      final ParameterExpression k_ =
+          Expressions.parameter(int.class, builder2.newName("k"));
+      final Expression row_ =
+          builder2.append("kRow",
+              EnumUtils.convert(Expressions.arrayIndex(rows_, k_),
+                  inputPhysType.getJavaRowType()));
+      final RexToLixTranslator translator =
+          RexToLixTranslator.forAggregation(typeFactory, builder2,
+              new WindowRelInputGetter(row_, inputPhysType,
+                  result.physType.getRowType().getFieldCount(),
+                  translatedConstants),
+              conformance);
+      final Expression value =
+          translator.translate(rexArguments.apply(pair.left).get(0));
+      final Expression element_ = Expressions.arrayIndex(values_, k_);
+      if (nulls_ == null) {
+        builder2.add(
+            Expressions.statement(
+                Expressions.assign(element_,
+                    EnumUtils.convert(value,
+                        Primitive.box(value.getType())))));
+      } else if (Primitive.is(value.getType())) {
+        builder2.add(
+            Expressions.statement(
+                Expressions.assign(element_,
+                    EnumUtils.convert(value, elementType))));
+      } else {
+        final Expression v_ = builder2.append("v", value);
+        builder2.add(
+            Expressions.ifThenElse(
+                Expressions.equal(v_, RexImpTable.NULL_EXPR),
+                Expressions.statement(
+                    Expressions.call(nulls_, "set", k_)),
+                Expressions.statement(
+                    Expressions.assign(element_,
+                        EnumUtils.convert(v_, elementType)))));
+      }
+      builder.add(
+          Expressions.for_(
+              Expressions.declare(0, k_, Expressions.constant(0)),
+              Expressions.lessThan(k_, partitionRowCount),
+              Expressions.preIncrementAssign(k_),
+              builder2.toBlock()));
+      trees.add(
+          builder.append("tree",
+              nulls_ == null
+                  ? Expressions.new_(treeClass, values_, pair.right)
+                  : Expressions.new_(treeClass, values_, nulls_, pair.right),
+              false));
+    }
+    return trees;
+  }
+
+  /** Returns the class of segment tree that uses a given combining
+   * function. */
+  private static Class<?> segmentTreeClass(Expression combiner) {
+    final Class<?> combinerClass = Types.toClass(combiner.getType());
+    if (LongBinaryOperator.class.isAssignableFrom(combinerClass)) {
+      return SegmentTree.OfLong.class;
+    } else if (DoubleBinaryOperator.class.isAssignableFrom(combinerClass)) {
+      return SegmentTree.OfDouble.class;
+    } else {
+      return SegmentTree.class;
+    }
+  }
+
+  /** Generates code that computes the value of each aggregate that uses a
+   * segment tree over the current frame. */
+  private static void implementSegmentTreeResult(
+      List<Pair<AggImpState, Expression>> treeAggs, List<Expression> trees,
+      BlockBuilder builder, Expression startX, Expression endX) {
+    for (Pair<Pair<AggImpState, Expression>, Expression> pair
+        : Pair.zip(treeAggs, trees)) {
+      final AggImpState agg = pair.left.left;
+      final Expression result = requireNonNull(agg.result,
+          () -> "agg.result for " + agg.call);
+      final Class<?> treeClass = segmentTreeClass(pair.left.right);
+      final Expression query;
+      if (treeClass == SegmentTree.OfLong.class) {
+        query = builder.append("a" + agg.aggIdx + "tree",
+            Expressions.call(pair.right,
+                BuiltInMethod.SEGMENT_TREE_LONG_QUERY.method, startX, endX));
+      } else if (treeClass == SegmentTree.OfDouble.class) {
+        query = builder.append("a" + agg.aggIdx + "tree",
+            Expressions.call(pair.right,
+                BuiltInMethod.SEGMENT_TREE_DOUBLE_QUERY.method, startX, endX));
+      } else {
+        final Type type =
+            Primitive.box(
+                requireNonNull(agg.context, "agg.context").returnType());
+        query =
+            Expressions.convert_(
+                Expressions.call(pair.right,
+                    BuiltInMethod.SEGMENT_TREE_QUERY.method, startX, endX),
+                type);
+      }
+      final Expression aggRes = builder.append("a" + agg.aggIdx + "res",
+          EnumUtils.convert(query, result.getType()));
+      builder.add(
+          Expressions.statement(Expressions.assign(result, aggRes)));
     }
   }
 
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+/**
+ * Windowed aggregate function that can remove a row from its accumulator.
+ *
+ * <p>If the frame of a window moves (for example
+ * {@code ROWS BETWEEN 10 PRECEDING AND CURRENT ROW}) and every aggregate
+ * computed over the window can remove rows, the accumulators are maintained
+ * incrementally: rows that leave the frame are removed and rows that enter
+ * it are added. Otherwise, the accumulators are reset and every row in the
+ * frame is added again, for each row.
+ *
+ * @see org.apache.calcite.adapter.enumerable.RexImpTable.CountWinImplementor
+ * @see org.apache.calcite.adapter.enumerable.RexImpTable.SumWinImplementor
+ */
+public interface RemovableWinAggImplementor extends WinAggImplementor {
+  /**
+   * Returns whether this aggregate can remove rows in a given context.
+   *
+   * <p>An aggregate should return true only if adding then removing a row
+   * leaves the result exactly as it was. For example, {@code SUM} of an
+   * exact numeric type can remove rows, but {@code SUM} of a floating-point
+   * type cannot, because of rounding.
+   *
+   * <p>The default implementation returns true.
+   *
+   * @param info Aggregate context; {@link #getStateType} has already been
+   *             called
+   */
+  default boolean supportsRemove(WinAggContext info) {
+    return true;
+  }
+
+  /**
+   * Generates code to remove a row from the accumulator; the inverse of
+   * {@link #implementAdd}. Called only if {@link #supportsRemove} returned
+   * true.
+   *
+   * @param info Aggregate context
+   * @param remove Context; {@link WinAggAddContext#currentPosition()} is the
+   *               index of the row to remove
+   */
+  void implementRemove(WinAggContext info, WinAggAddContext remove);
+}
@@ -43,7 +43,9 @@
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexPatternFieldRef;
+import org.apache.calcite.runtime.SegmentTree;
 import org.apache.calcite.runtime.SqlFunctions;
+import org.apache.calcite.runtime.StringMatcher;
 import org.apache.calcite.schema.FunctionContext;
 import org.apache.calcite.schema.ImplementableAggFunction;
 import org.apache.calcite.schema.ImplementableFunction;
@@ -91,6 +93,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -483,23 +486,28 @@ public class RexImpTable {
 
     // LIKE, ILIKE and SIMILAR
     map.put(LIKE,
-        new MethodImplementor(BuiltInMethod.LIKE.method, NullPolicy.STRICT,
-            false));
+        new StringMatcherImplementor("like", null, (pattern, escape) ->
+            escape == null ? StringMatcher.like(pattern)
+                : StringMatcher.like(pattern, escape)));
     map.put(ILIKE,
-        new MethodImplementor(BuiltInMethod.ILIKE.method, NullPolicy.STRICT,
-            false));
+        new StringMatcherImplementor("ilike", null, (pattern, escape) ->
+            escape == null ? StringMatcher.ilike(pattern)
+                : StringMatcher.ilike(pattern, escape)));
     map.put(RLIKE,
-        new MethodImplementor(BuiltInMethod.RLIKE.method, NullPolicy.STRICT,
-            false));
+        new StringMatcherImplementor("rlike", null, (pattern, escape) ->
+            StringMatcher.rlike(pattern)));
     map.put(SIMILAR_TO,
-        new MethodImplementor(BuiltInMethod.SIMILAR.method, NullPolicy.STRICT,
-        false));
+        new StringMatcherImplementor("similar", null, (pattern, escape) ->
+            escape == null ? StringMatcher.similar(pattern)
+                : StringMatcher.similar(pattern, escape)));
 
     // POSIX REGEX
-    final MethodImplementor posixRegexImplementorCaseSensitive =
-        new PosixRegexMethodImplementor(true);
-    final MethodImplementor posixRegexImplementorCaseInsensitive =
-        new PosixRegexMethodImplementor(false);
+    final StringMatcherImplementor posixRegexImplementorCaseSensitive =
+        new StringMatcherImplementor("posixRegex", true, (pattern, escape) ->
+            StringMatcher.posixRegex(pattern, true));
+    final StringMatcherImplementor posixRegexImplementorCaseInsensitive =
+        new StringMatcherImplementor("posixRegex", false, (pattern, escape) ->
+            StringMatcher.posixRegex(pattern, false));
     map.put(SqlStdOperatorTable.POSIX_REGEX_CASE_INSENSITIVE,
         posixRegexImplementorCaseInsensitive);
     map.put(SqlStdOperatorTable.POSIX_REGEX_CASE_SENSITIVE,
@@ -693,6 +701,12 @@ public class RexImpTable {
     winAggMap.put(NTILE, constructorSupplier(NtileImplementor.class));
     winAggMap.put(COUNT, constructorSupplier(CountWinImplementor.class));
     winAggMap.put(REGR_COUNT, constructorSupplier(CountWinImplementor.class));
+    winAggMap.put(SUM0, constructorSupplier(SumWinImplementor.class));
+    winAggMap.put(SUM, constructorSupplier(SumWinImplementor.class));
+    final Supplier<MinMaxWinImplementor> minMaxWin =
+        constructorSupplier(MinMaxWinImplementor.class);
+    winAggMap.put(MIN, minMaxWin);
+    winAggMap.put(MAX, minMaxWin);
 
     // Functions for MATCH_RECOGNIZE
     matchMap.put(CLASSIFIER, ClassifierImplementor::new);
@@ -1026,7 +1040,8 @@ static class CountImplementor extends StrictAggImplementor {
   }
 
   /** Implementor for the {@code COUNT} windowed aggregate function. */
-  static class CountWinImplementor extends StrictWinAggImplementor {
+  static class CountWinImplementor extends StrictWinAggImplementor
+      implements RemovableWinAggImplementor {
     boolean justFrameRowCount;
 
     @Override public List<Type> getNotNullState(WinAggContext info) {
@@ -1054,6 +1069,18 @@ static class CountWinImplementor extends StrictWinAggImplementor {
               Expressions.postIncrementAssign(add.accumulator().get(0))));
     }
 
+    @Override public void implementRemove(WinAggContext info,
+        WinAggAddContext remove) {
+      implementRemove(remove, r -> {
+        if (justFrameRowCount) {
+          return;
+        }
+        r.currentBlock().add(
+            Expressions.statement(
+                Expressions.postDecrementAssign(r.accumulator().get(0))));
+      });
+    }
+
     @Override protected Expression implementNotNullResult(WinAggContext info,
         WinAggResultContext result) {
       if (justFrameRowCount) {
@@ -1095,6 +1122,43 @@ static class SumImplementor extends StrictAggImplementor {
     }
   }
 
+  /** Implementor for the {@code SUM} windowed aggregate function.
+   *
+   * <p>If the sum is of an exact numeric type, can remove rows from the
+   * accumulator, so that a moving frame does not need to be summed again for
+   * each row. A floating-point sum cannot, because subtracting a value does
+   * not exactly reverse adding it. */
+  static class SumWinImplementor extends SumImplementor
+      implements RemovableWinAggImplementor {
+    @Override public boolean needCacheWhenFrameIntact() {
+      return true;
+    }
+
+    @Override public boolean supportsRemove(WinAggContext info) {
+      final Type type = info.returnType();
+      if (type == BigDecimal.class) {
+        return true;
+      }
+      final Primitive primitive = Primitive.ofBoxOr(type);
+      return primitive != null && primitive.isFixedNumeric();
+    }
+
+    @Override public void implementRemove(WinAggContext info,
+        WinAggAddContext remove) {
+      implementRemove(remove, r -> {
+        Expression acc = r.accumulator().get(0);
+        Expression next;
+        if (info.returnType() == BigDecimal.class) {
+          next = Expressions.call(acc, "subtract", r.arguments().get(0));
+        } else {
+          next = Expressions.subtract(acc,
+              EnumUtils.convert(r.arguments().get(0), acc.type));
+        }
+        accAdvance(r, acc, next);
+      });
+    }
+  }
+
   /** Implementor for the {@code MIN} and {@code MAX} aggregate functions. */
   static class MinMaxImplementor extends StrictAggImplementor {
     @Override protected void implementNotNullReset(AggContext info,
@@ -1126,6 +1190,30 @@ static class MinMaxImplementor extends StrictAggImplementor {
     }
   }
 
+  /** Implementor for the {@code MIN} and {@code MAX} windowed aggregate
+   * functions.
+   *
+   * <p>Cannot remove rows from the accumulator, but if the frame moves, can
+   * compute the aggregate using a {@link SegmentTree}. Values of integer and
+   * floating-point types are stored in the tree as primitives. */
+  static class MinMaxWinImplementor extends MinMaxImplementor
+      implements WinAggImplementor {
+    @Override public boolean needCacheWhenFrameIntact() {
+      return true;
+    }
+
+    @Override public @Nullable Expression implementCombiner(
+        WinAggContext info) {
+      final Primitive p = Primitive.ofBoxOr(info.returnType());
+      final Class<?> treeClass = p == null || !p.isNumeric()
+          ? SegmentTree.class
+          : p.isFixedNumeric() ? SegmentTree.OfLong.class
+          : SegmentTree.OfDouble.class;
+      return Expressions.field(null, treeClass,
+          info.aggregation().kind == SqlKind.MIN ? "MIN" : "MAX");
+    }
+  }
+
   /** Implementor for the {@code SINGLE_VALUE} aggregate function. */
   static class SingleValueImplementor implements AggImplementor {
     @Override public List<Type> getStateType(AggContext info) {
@@ -2128,22 +2216,75 @@ static Expression call(Method method, @Nullable Expression target,
     }
   }
 
-  /** Implementor for {@link org.apache.calcite.sql.fun.SqlPosixRegexOperator}s. */
-  private static class PosixRegexMethodImplementor extends MethodImplementor {
-    protected final boolean caseSensitive;
-
-    PosixRegexMethodImplementor(boolean caseSensitive) {
-      super(BuiltInMethod.POSIX_REGEX.method, NullPolicy.STRICT, false);
+  /** Implementor for {@code LIKE}, {@code ILIKE}, {@code SIMILAR TO},
+   * {@code RLIKE} and {@link org.apache.calcite.sql.fun.SqlPosixRegexOperator}s.
+   *
+   * <p>Generates code such as {@code StringMatcher.like(pattern).matches(s)}.
+   * If the pattern is a constant, the code optimizer moves the creation of the
+   * {@link StringMatcher} into a static field, so the pattern is compiled once
+   * per statement rather than once per row.
+   *
+   * <p>A constant pattern that is not valid is not moved, because the error
+   * would occur when the class is initialized, even if there are no rows;
+   * instead, the code calls the {@link SqlFunctions} method of the same
+   * name, which fails when it evaluates a row. */
+  private static class StringMatcherImplementor
+      extends AbstractRexCallImplementor {
+    private final String methodName;
+    private final @Nullable Boolean caseSensitive;
+    /** Creates a matcher from a pattern and an optional escape; used to
+     * validate constant patterns at plan time. */
+    private final BiFunction<String, @Nullable String, StringMatcher> factory;
+
+    StringMatcherImplementor(String methodName,
+        @Nullable Boolean caseSensitive,
+        BiFunction<String, @Nullable String, StringMatcher> factory) {
+      super(NullPolicy.STRICT, false);
+      this.methodName = methodName;
       this.caseSensitive = caseSensitive;
+      this.factory = factory;
+    }
+
+    @Override String getVariableName() {
+      return "method_call";
     }
 
     @Override Expression implementSafe(RexToLixTranslator translator,
         RexCall call, List<Expression> argValueList) {
-      assert argValueList.size() == 2;
-      // Add extra parameter (caseSensitive boolean flag), required by SqlFunctions#posixRegex.
-      final List<Expression> newOperands = new ArrayList<>(argValueList);
-      newOperands.add(Expressions.constant(caseSensitive));
-      return super.implementSafe(translator, call, newOperands);
+      // Pattern, and escape if present
+      final List<Expression> args = new ArrayList<>(Util.skip(argValueList));
+      final boolean valid = isValid(translator, args);
+      if (caseSensitive != null) {
+        args.add(Expressions.constant(caseSensitive));
+      }
+      if (!valid) {
+        args.add(0, argValueList.get(0));
+        return EnumUtils.call(null, SqlFunctions.class, methodName, args);
+      }
+      final Expression matcher =
+          EnumUtils.call(null, StringMatcher.class, methodName, args);
+      return Expressions.call(matcher,
+          BuiltInMethod.STRING_MATCHER_MATCHES.method, argValueList.get(0));
+    }
+
+    /** Returns false if the pattern and escape are literals with which
+     * the {@link StringMatcher} factory fails; true otherwise. */
+    private boolean isValid(RexToLixTranslator translator,
+        List<Expression> args) {
+      final @Nullable Object pattern =
+          translator.getLiteralValue(args.get(0));
+      final @Nullable Object escape =
+          args.size() > 1 ? translator.getLiteralValue(args.get(1)) : null;
+      if (!(pattern instanceof String)
+          || args.size() > 1 && !(escape instanceof String)) {
+        return true;
+      }
+      try {
+        factory.apply((String) pattern, (String) escape);
+        return true;
+      } catch (IllegalArgumentException e) {
+        return false;
+      }
     }
   }
 
@@ -29,6 +29,7 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The base implementation of strict aggregate function.
@@ -38,6 +39,9 @@
 public abstract class StrictAggImplementor implements AggImplementor {
   private boolean needTrackEmptySet;
   private boolean trackNullsPerRow;
+  /** Whether to count the rows with non-null arguments, rather than just
+   * record whether there are any, so that rows can be removed. */
+  private boolean countNonNullRows;
   private int stateSize;
 
   protected boolean nonDefaultOnEmptySet(AggContext info) {
@@ -64,10 +68,16 @@ protected static void accAdvance(AggAddContext add, Expression acc,
     }
     final boolean hasNullableArgs = anyNullable(info.parameterRelTypes());
     trackNullsPerRow = !(info instanceof WinAggContext) || hasNullableArgs;
+    countNonNullRows = trackNullsPerRow
+        && info instanceof WinAggContext
+        && this instanceof RemovableWinAggImplementor
+        && ((RemovableWinAggImplementor) this).supportsRemove(
+            (WinAggContext) info);
 
     List<Type> res = new ArrayList<>(subState.size() + 1);
     res.addAll(subState);
-    res.add(boolean.class); // has not nulls
+    // number of rows with non-null arguments, or whether there are any
+    res.add(countNonNullRows ? int.class : boolean.class);
     return res;
   }
 
@@ -114,6 +124,25 @@ protected void implementNotNullReset(AggContext info,
   }
 
   @Override public final void implementAdd(AggContext info, final AggAddContext add) {
+    implementAddOrRemove(add, false, a -> implementNotNullAdd(info, a));
+  }
+
+  /** Generates code to remove a row from the accumulator, for sub-classes
+   * that implement {@link RemovableWinAggImplementor}. As
+   * {@link #implementAdd} does for rows it adds, skips rows whose arguments
+   * are null, and calls {@code notNullRemove} to remove the others.
+   *
+   * @param remove Context
+   * @param notNullRemove Generates code to remove a row whose arguments are
+   *                      not null
+   */
+  protected final void implementRemove(AggAddContext remove,
+      Consumer<AggAddContext> notNullRemove) {
+    implementAddOrRemove(remove, true, notNullRemove);
+  }
+
+  private void implementAddOrRemove(AggAddContext add, boolean remove,
+      Consumer<AggAddContext> notNullAddOrRemove) {
     final List<RexNode> args = add.rexArguments();
     final RexToLixTranslator translator = add.rowTranslator();
     final List<Expression> conditions = new ArrayList<>();
@@ -137,18 +166,22 @@ protected void implementNotNullReset(AggContext info,
         : new BlockBuilder(true, add.currentBlock());
     if (trackNullsPerRow) {
       List<Expression> acc = add.accumulator();
+      Expression flag = acc.get(acc.size() - 1);
       thenBlock.add(
           Expressions.statement(
-              Expressions.assign(acc.get(acc.size() - 1),
-                  Expressions.constant(true))));
+              !countNonNullRows
+                  ? Expressions.assign(flag, Expressions.constant(true))
+                  : remove
+                  ? Expressions.postDecrementAssign(flag)
+                  : Expressions.postIncrementAssign(flag)));
     }
     if (argsNotNull) {
-      implementNotNullAdd(info, add);
+      notNullAddOrRemove.accept(add);
       return;
     }
 
     add.nestBlock(thenBlock);
-    implementNotNullAdd(info, add);
+    notNullAddOrRemove.accept(add);
     add.exitBlock();
     add.currentBlock().add(Expressions.ifThen(condition, thenBlock.toBlock()));
   }
@@ -176,9 +209,12 @@ protected abstract void implementNotNullAdd(AggContext info,
     thenBlock.add(Expressions.statement(Expressions.assign(res, nonNull)));
     BlockStatement thenBranch = thenBlock.toBlock();
     Expression seenNotNullRows =
-        trackNullsPerRow
-        ? acc.get(acc.size() - 1)
-        : ((WinAggResultContext) result).hasRows();
+        !trackNullsPerRow
+        ? ((WinAggResultContext) result).hasRows()
+        : countNonNullRows
+        ? Expressions.greaterThan(acc.get(acc.size() - 1),
+            Expressions.constant(0))
+        : acc.get(acc.size() - 1);
 
     if (thenBranch.statements.size() == 1) {
       return Expressions.condition(seenNotNullRows,
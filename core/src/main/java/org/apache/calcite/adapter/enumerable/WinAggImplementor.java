@@ -16,6 +16,10 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.linq4j.tree.Expression;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 /**
  * Implements a windowed aggregate function by generating expressions to
  * initialize, add to, and get a result from, an accumulator.
@@ -60,4 +64,30 @@ enum SeekType {
   }
 
   boolean needCacheWhenFrameIntact();
+
+  /**
+   * Returns an expression that evaluates to a
+   * {@link java.util.function.BinaryOperator} that combines the values of
+   * this aggregate over two adjacent ranges of rows, or null if the
+   * aggregate cannot be computed that way.
+   *
+   * <p>If the expression's type is
+   * {@link java.util.function.LongBinaryOperator} or
+   * {@link java.util.function.DoubleBinaryOperator}, the values are stored
+   * in a primitive array and combined without boxing.
+   *
+   * <p>If not null, the aggregate must have one argument, must ignore nulls,
+   * and its value over a single row must be the value of the argument.
+   * If the frame of a window moves, the aggregate is computed using a
+   * {@link org.apache.calcite.runtime.SegmentTree} built over the partition,
+   * rather than by adding every row in the frame.
+   * {@code MIN} and {@code MAX} are examples of such aggregates.
+   *
+   * <p>The default implementation returns null.
+   *
+   * @param info Aggregate context
+   */
+  default @Nullable Expression implementCombiner(WinAggContext info) {
+    return null;
+  }
 }
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Utilities for converting between rows and {@link ColumnBatch}es, and for
+ * executing a tree of {@link VectorizedRel}s.
+ */
+public class Batches {
+  private Batches() {}
+
+  /** Executes a tree of vectorized relational expressions and returns its
+   * results as rows. Called from code generated by
+   * {@link VectorizedToEnumerableConverter}.
+   *
+   * @param root Data context
+   * @param rel Root of the vectorized tree
+   * @param inputs Rows read by each {@link EnumerableToVectorizedConverter}
+   *               in the tree, in the order returned by
+   *               {@link EnumerableToVectorizedConverter#collect}
+   */
+  @SuppressWarnings("unchecked")
+  public static Enumerable<@Nullable Object[]> execute(DataContext root,
+      VectorizedRel rel, Enumerable<?>[] inputs) {
+    final VectorizedRel.Implementor implementor =
+        new VectorizedRel.Implementor(root, ColumnBatch.DEFAULT_CAPACITY);
+    final List<EnumerableToVectorizedConverter> converters =
+        EnumerableToVectorizedConverter.collect(rel);
+    assert converters.size() == inputs.length;
+    for (int i = 0; i < inputs.length; i++) {
+      implementor.registerInput(converters.get(i),
+          (Enumerable<@Nullable Object[]>) inputs[i]);
+    }
+    return toRows(implementor.visitChild(rel));
+  }
+
+  /** Converts a sequence of rows into a sequence of batches. */
+  public static Enumerable<ColumnBatch> fromRows(
+      final Enumerable<@Nullable Object[]> rows, final List<VectorType> types,
+      final int capacity) {
+    return new AbstractEnumerable<ColumnBatch>() {
+      @Override public Enumerator<ColumnBatch> enumerator() {
+        final Enumerator<@Nullable Object[]> enumerator = rows.enumerator();
+        final ColumnBatch batch = ColumnBatch.create(types, capacity);
+        return new Enumerator<ColumnBatch>() {
+          /** Whether the underlying enumerator has returned false; it must
+           * not be called again. */
+          boolean done;
+
+          @Override public ColumnBatch current() {
+            return batch;
+          }
+
+          @Override public boolean moveNext() {
+            batch.clear();
+            while (!done && !batch.isFull()) {
+              if (enumerator.moveNext()) {
+                batch.add(enumerator.current());
+              } else {
+                done = true;
+              }
+            }
+            return batch.size > 0;
+          }
+
+          @Override public void reset() {
+            enumerator.reset();
+            batch.clear();
+            done = false;
+          }
+
+          @Override public void close() {
+            enumerator.close();
+          }
+        };
+      }
+    };
+  }
+
+  /** Converts a sequence of batches into a sequence of rows. */
+  public static Enumerable<@Nullable Object[]> toRows(
+      final Enumerable<ColumnBatch> batches) {
+    return new AbstractEnumerable<@Nullable Object[]>() {
+      @Override public Enumerator<@Nullable Object[]> enumerator() {
+        final Enumerator<ColumnBatch> enumerator = batches.enumerator();
+        return new Enumerator<@Nullable Object[]>() {
+          @Nullable ColumnBatch batch;
+          int j;
+          @Nullable Object @Nullable [] current;
+
+          @Override public @Nullable Object[] current() {
+            if (current == null) {
+              throw new NoSuchElementException();
+            }
+            return current;
+          }
+
+          @Override public boolean moveNext() {
+            for (;;) {
+              if (batch != null && j < batch.count()) {
+                current = batch.get(j++);
+                return true;
+              }
+              if (!enumerator.moveNext()) {
+                batch = null;
+                current = null;
+                return false;
+              }
+              batch = enumerator.current();
+              j = 0;
+            }
+          }
+
+          @Override public void reset() {
+            enumerator.reset();
+            batch = null;
+            current = null;
+          }
+
+          @Override public void close() {
+            enumerator.close();
+          }
+        };
+      }
+    };
+  }
+}
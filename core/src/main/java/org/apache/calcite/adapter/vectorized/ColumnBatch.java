@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+
+/**
+ * Batch of rows stored column by column, the unit of data exchanged by
+ * {@link VectorizedRel} operators.
+ *
+ * <p>The first {@link #size} rows of each column are valid. If
+ * {@link #selection} is not null, only the rows whose positions are in
+ * {@code selection[0 .. selectedCount - 1]} (in ascending order) belong to
+ * the batch; the others have been eliminated by a filter but have not been
+ * physically removed.
+ *
+ * <p>Operators generally re-use the batches they produce, so a batch
+ * returned by {@link org.apache.calcite.linq4j.Enumerator#current()} is only
+ * valid until the next call to
+ * {@link org.apache.calcite.linq4j.Enumerator#moveNext()}.
+ */
+public class ColumnBatch {
+  /** Default number of rows in a batch. A power of 2, so that a row in a
+   * sequence of batches can be addressed using shifts and masks. */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  public final ColumnVector[] columns;
+  public final int capacity;
+  public int size;
+  public int @Nullable [] selection;
+  public int selectedCount;
+
+  /** Buffer that filters may use to hold {@link #selection}. */
+  private final int[] selectionBuffer;
+
+  private ColumnBatch(ColumnVector[] columns, int capacity) {
+    this.columns = columns;
+    this.capacity = capacity;
+    this.selectionBuffer = new int[capacity];
+  }
+
+  /** Creates an empty batch with columns of the given types. */
+  public static ColumnBatch create(List<VectorType> types, int capacity) {
+    final ColumnVector[] columns = new ColumnVector[types.size()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = ColumnVector.create(types.get(i), capacity);
+    }
+    return new ColumnBatch(columns, capacity);
+  }
+
+  /** Creates a batch that shares the given columns. */
+  public static ColumnBatch of(ColumnVector[] columns, int capacity) {
+    return new ColumnBatch(columns, capacity);
+  }
+
+  /** Returns the number of rows in this batch, taking the selection into
+   * account. */
+  public int count() {
+    return selection == null ? size : selectedCount;
+  }
+
+  /** Returns the physical position of the {@code j}th selected row. */
+  public int row(int j) {
+    return selection == null ? j : selection[j];
+  }
+
+  /** Returns whether no more rows can be added. */
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /** Empties this batch so that it can be re-used. */
+  public void clear() {
+    size = 0;
+    selection = null;
+    selectedCount = 0;
+  }
+
+  /** Returns a buffer into which a filter can write the positions of the
+   * rows it selects before calling {@link #select(int[], int)}. */
+  public int[] selectionBuffer() {
+    return selectionBuffer;
+  }
+
+  /** Restricts the batch to the rows at the given positions. */
+  public void select(int[] positions, int count) {
+    this.selection = positions;
+    this.selectedCount = count;
+  }
+
+  /** Appends a row. */
+  public void add(@Nullable Object[] row) {
+    assert selection == null && size < capacity;
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].set(size, row[i]);
+    }
+    ++size;
+  }
+
+  /** Returns the {@code j}th selected row as an array. */
+  public @Nullable Object[] get(int j) {
+    final int i = row(j);
+    final @Nullable Object[] values = new Object[columns.length];
+    for (int c = 0; c < columns.length; c++) {
+      values[c] = columns[c].get(i);
+    }
+    return values;
+  }
+}
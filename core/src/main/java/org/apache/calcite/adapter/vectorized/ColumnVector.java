@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Column of values in a {@link ColumnBatch}.
+ *
+ * <p>Values are held in a primitive array wherever the {@link VectorType}
+ * allows, and whether each value is null is recorded in a separate bitmap,
+ * so that operators can process a column in a tight loop without boxing.
+ *
+ * <p>A vector does not know how many of its rows are valid; that is a
+ * property of the batch that contains it.
+ */
+public abstract class ColumnVector {
+  public final VectorType type;
+
+  /** Null bitmap; bit {@code i} is set if the value in row {@code i} is
+   * null. */
+  public final long[] nulls;
+
+  protected ColumnVector(VectorType type, int capacity) {
+    this.type = type;
+    this.nulls = new long[wordCount(capacity)];
+  }
+
+  /** Creates a vector of a given type. */
+  public static ColumnVector create(VectorType type, int capacity) {
+    if (type.isLong()) {
+      return new LongVector(type, capacity);
+    } else if (type.isDouble()) {
+      return new DoubleVector(type, capacity);
+    } else {
+      return new ObjectVector(type, capacity);
+    }
+  }
+
+  /** Returns the number of {@code long} words needed to hold a bitmap of
+   * {@code n} bits. */
+  static int wordCount(int n) {
+    return (n + 63) >>> 6;
+  }
+
+  /** Returns the number of rows this vector can hold. */
+  public abstract int capacity();
+
+  /** Returns whether the value in a given row is null. */
+  public final boolean isNull(int i) {
+    return (nulls[i >>> 6] & (1L << i)) != 0;
+  }
+
+  /** Sets whether the value in a given row is null. */
+  public final void setNull(int i, boolean isNull) {
+    if (isNull) {
+      nulls[i >>> 6] |= 1L << i;
+    } else {
+      nulls[i >>> 6] &= ~(1L << i);
+    }
+  }
+
+  /** Marks the first {@code size} rows as not null. */
+  public final void clearNulls(int size) {
+    Arrays.fill(nulls, 0, wordCount(size), 0L);
+  }
+
+  /** Returns whether any of the first {@code size} rows is null. */
+  public final boolean mayHaveNulls(int size) {
+    for (int w = 0, n = wordCount(size); w < n; w++) {
+      if (nulls[w] != 0L) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the value in a given row, boxed as the Java class that an
+   * enumerable operator would use for the same SQL type. */
+  public abstract @Nullable Object get(int i);
+
+  /** Sets the value in a given row from its Java representation. */
+  public abstract void set(int i, @Nullable Object o);
+
+  /** Copies row {@code fromRow} of {@code from} into row {@code i} of this
+   * vector. The vectors must have the same representation. */
+  public abstract void copy(int i, ColumnVector from, int fromRow);
+
+  /** Copies rows {@code rows[start] .. rows[start + n - 1]} of
+   * {@code from} into rows {@code offset .. offset + n - 1} of this vector.
+   * The vectors must have the same representation. */
+  public abstract void gather(ColumnVector from, int[] rows, int start,
+      int n, int offset);
+
+  /** Copies the null bits of the given rows of {@code from}. */
+  final void gatherNulls(ColumnVector from, int[] rows, int start, int n,
+      int offset) {
+    for (int j = 0; j < n; j++) {
+      setNull(offset + j, from.isNull(rows[start + j]));
+    }
+  }
+
+  /** Vector whose values are stored in a {@code long[]}. */
+  public static final class LongVector extends ColumnVector {
+    public final long[] values;
+
+    LongVector(VectorType type, int capacity) {
+      super(type, capacity);
+      assert type.isLong();
+      this.values = new long[capacity];
+    }
+
+    @Override public int capacity() {
+      return values.length;
+    }
+
+    @Override public @Nullable Object get(int i) {
+      return isNull(i) ? null : type.boxLong(values[i]);
+    }
+
+    @Override public void set(int i, @Nullable Object o) {
+      if (o == null) {
+        setNull(i, true);
+      } else {
+        setNull(i, false);
+        values[i] = VectorType.unboxLong(o);
+      }
+    }
+
+    @Override public void copy(int i, ColumnVector from, int fromRow) {
+      values[i] = ((LongVector) from).values[fromRow];
+      setNull(i, from.isNull(fromRow));
+    }
+
+    @Override public void gather(ColumnVector from, int[] rows, int start,
+        int n, int offset) {
+      final long[] source = ((LongVector) from).values;
+      for (int j = 0; j < n; j++) {
+        values[offset + j] = source[rows[start + j]];
+      }
+      gatherNulls(from, rows, start, n, offset);
+    }
+  }
+
+  /** Vector whose values are stored in a {@code double[]}. */
+  public static final class DoubleVector extends ColumnVector {
+    public final double[] values;
+
+    DoubleVector(VectorType type, int capacity) {
+      super(type, capacity);
+      assert type.isDouble();
+      this.values = new double[capacity];
+    }
+
+    @Override public int capacity() {
+      return values.length;
+    }
+
+    @Override public @Nullable Object get(int i) {
+      return isNull(i) ? null : type.boxDouble(values[i]);
+    }
+
+    @Override public void set(int i, @Nullable Object o) {
+      if (o == null) {
+        setNull(i, true);
+      } else {
+        setNull(i, false);
+        values[i] = VectorType.unboxDouble(o);
+      }
+    }
+
+    @Override public void copy(int i, ColumnVector from, int fromRow) {
+      values[i] = ((DoubleVector) from).values[fromRow];
+      setNull(i, from.isNull(fromRow));
+    }
+
+    @Override public void gather(ColumnVector from, int[] rows, int start,
+        int n, int offset) {
+      final double[] source = ((DoubleVector) from).values;
+      for (int j = 0; j < n; j++) {
+        values[offset + j] = source[rows[start + j]];
+      }
+      gatherNulls(from, rows, start, n, offset);
+    }
+  }
+
+  /** Vector whose values are stored in an {@code Object[]}. */
+  public static final class ObjectVector extends ColumnVector {
+    public final @Nullable Object[] values;
+
+    ObjectVector(VectorType type, int capacity) {
+      super(type, capacity);
+      this.values = new Object[capacity];
+    }
+
+    @Override public int capacity() {
+      return values.length;
+    }
+
+    @Override public @Nullable Object get(int i) {
+      return values[i];
+    }
+
+    @Override public void set(int i, @Nullable Object o) {
+      values[i] = o;
+      setNull(i, o == null);
+    }
+
+    @Override public void copy(int i, ColumnVector from, int fromRow) {
+      set(i, ((ObjectVector) from).values[fromRow]);
+    }
+
+    @Override public void gather(ColumnVector from, int[] rows, int start,
+        int n, int offset) {
+      final @Nullable Object[] source = ((ObjectVector) from).values;
+      for (int j = 0; j < n; j++) {
+        values[offset + j] = source[rows[start + j]];
+      }
+      gatherNulls(from, rows, start, n, offset);
+    }
+  }
+}
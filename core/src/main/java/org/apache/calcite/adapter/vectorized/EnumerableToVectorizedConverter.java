@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relational expression that converts an input of
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}
+ * into {@link VectorizedConvention vectorized calling convention}.
+ *
+ * <p>The input is implemented by generated code, as usual, and the
+ * resulting rows are passed to the vectorized tree when it is executed; see
+ * {@link VectorizedToEnumerableConverter}.
+ */
+public class EnumerableToVectorizedConverter extends ConverterImpl
+    implements VectorizedRel {
+  protected EnumerableToVectorizedConverter(RelOptCluster cluster,
+      RelTraitSet traits, RelNode input) {
+    super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new EnumerableToVectorizedConverter(getCluster(), traitSet,
+        sole(inputs));
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    return cost == null ? null : cost.multiplyBy(.1);
+  }
+
+  @Override public Enumerable<ColumnBatch> implement(Implementor implementor) {
+    return Batches.fromRows(implementor.getInput(this), getVectorTypes(),
+        implementor.batchSize);
+  }
+
+  /** Returns the converters from enumerable convention in a tree of
+   * vectorized relational expressions, in depth-first order. */
+  public static List<EnumerableToVectorizedConverter> collect(RelNode rel) {
+    final List<EnumerableToVectorizedConverter> list = new ArrayList<>();
+    collect(rel, list);
+    return list;
+  }
+
+  private static void collect(RelNode rel,
+      List<EnumerableToVectorizedConverter> list) {
+    if (rel instanceof EnumerableToVectorizedConverter) {
+      list.add((EnumerableToVectorizedConverter) rel);
+      return;
+    }
+    for (RelNode input : rel.getInputs()) {
+      collect(input, list);
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.adapter.vectorized.ColumnVector.DoubleVector;
+import org.apache.calcite.adapter.vectorized.ColumnVector.LongVector;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns a dense integer id to each distinct combination of values of a set
+ * of key columns; the basis of hash aggregation and hash join.
+ *
+ * <p>If there is a single key column held in a {@code long[]} or
+ * {@code double[]}, keys are stored in a {@link LongIntHashMap} and are
+ * never boxed; otherwise each key is a list of values in a
+ * {@link HashMap}.
+ */
+final class KeyTable {
+  /** Whether a null value is a key like any other (as in GROUP BY), or
+   * never matches (as in an equi-join). */
+  private final boolean nullIsKey;
+
+  private final @Nullable LongIntHashMap primitiveMap;
+  private long[] primitiveKeys = new long[64];
+  private long[] scratch = new long[0];
+  private int nullId = -1;
+
+  private final Map<List<@Nullable Object>, Integer> map = new HashMap<>();
+  private final List<@Nullable Object[]> keys = new ArrayList<>();
+
+  private int size;
+
+  KeyTable(VectorType[] types, boolean nullIsKey) {
+    this.nullIsKey = nullIsKey;
+    this.primitiveMap =
+        types.length == 1 && types[0] != VectorType.OBJECT
+            ? new LongIntHashMap()
+            : null;
+  }
+
+  /** Returns the number of distinct keys. */
+  int size() {
+    return size;
+  }
+
+  /** For each selected row of a batch, writes to {@code ids} (at the row's
+   * position) the id of its key, adding the key if it is new. If nulls are
+   * not keys, rows with a null key get id -1. */
+  void add(ColumnBatch batch, int[] keyColumns, int[] ids) {
+    compute(batch, keyColumns, ids, true);
+  }
+
+  /** For each selected row of a batch, writes to {@code ids} (at the row's
+   * position) the id of its key, or -1 if the key is not present. */
+  void lookup(ColumnBatch batch, int[] keyColumns, int[] ids) {
+    compute(batch, keyColumns, ids, false);
+  }
+
+  private void compute(ColumnBatch batch, int[] keyColumns, int[] ids,
+      boolean add) {
+    final int n = batch.count();
+    if (primitiveMap != null) {
+      final ColumnVector v = batch.columns[keyColumns[0]];
+      final long[] keyValues;
+      if (v instanceof LongVector) {
+        keyValues = ((LongVector) v).values;
+      } else {
+        final double[] doubles = ((DoubleVector) v).values;
+        if (scratch.length < doubles.length) {
+          scratch = new long[doubles.length];
+        }
+        keyValues = scratch;
+        for (int j = 0; j < n; j++) {
+          final int i = batch.row(j);
+          keyValues[i] = Double.doubleToLongBits(doubles[i]);
+        }
+      }
+      for (int j = 0; j < n; j++) {
+        final int i = batch.row(j);
+        if (v.isNull(i)) {
+          if (!nullIsKey) {
+            ids[i] = -1;
+          } else {
+            if (nullId < 0 && add) {
+              nullId = newKey(0L);
+            }
+            ids[i] = nullId;
+          }
+          continue;
+        }
+        final long key = keyValues[i];
+        if (add) {
+          final int id = primitiveMap.putIfAbsent(key, size);
+          ids[i] = id >= 0 ? id : newKey(key);
+        } else {
+          ids[i] = primitiveMap.get(key);
+        }
+      }
+      return;
+    }
+    final ColumnVector[] vectors = new ColumnVector[keyColumns.length];
+    for (int k = 0; k < keyColumns.length; k++) {
+      vectors[k] = batch.columns[keyColumns[k]];
+    }
+    rows:
+    for (int j = 0; j < n; j++) {
+      final int i = batch.row(j);
+      final @Nullable Object[] values = new Object[vectors.length];
+      for (int k = 0; k < vectors.length; k++) {
+        values[k] = value(vectors[k], i);
+        if (values[k] == null && !nullIsKey) {
+          ids[i] = -1;
+          continue rows;
+        }
+      }
+      final List<@Nullable Object> key = Arrays.asList(values);
+      final Integer id = map.get(key);
+      if (id != null) {
+        ids[i] = id;
+      } else if (add) {
+        map.put(key, size);
+        keys.add(values);
+        ids[i] = size++;
+      } else {
+        ids[i] = -1;
+      }
+    }
+  }
+
+  /** Returns a value in a form that is equal for equal keys, even if the
+   * vectors have different types; for example, an {@code INTEGER} and a
+   * {@code BIGINT} with the same value are both converted to a
+   * {@link Long}. */
+  private static @Nullable Object value(ColumnVector v, int i) {
+    if (v.isNull(i)) {
+      return null;
+    } else if (v instanceof LongVector) {
+      return ((LongVector) v).values[i];
+    } else if (v instanceof DoubleVector) {
+      return ((DoubleVector) v).values[i];
+    } else {
+      return v.get(i);
+    }
+  }
+
+  private int newKey(long key) {
+    if (size == primitiveKeys.length) {
+      primitiveKeys = Arrays.copyOf(primitiveKeys, size * 2);
+    }
+    primitiveKeys[size] = key;
+    return size++;
+  }
+
+  /** Writes the values of the key with a given id into row {@code row} of
+   * the given vectors. */
+  void write(int id, ColumnVector[] vectors, int offset, int row) {
+    if (primitiveMap != null) {
+      final ColumnVector v = vectors[offset];
+      if (id == nullId) {
+        v.setNull(row, true);
+      } else if (v instanceof LongVector) {
+        ((LongVector) v).values[row] = primitiveKeys[id];
+        v.setNull(row, false);
+      } else {
+        ((DoubleVector) v).values[row] =
+            Double.longBitsToDouble(primitiveKeys[id]);
+        v.setNull(row, false);
+      }
+      return;
+    }
+    final @Nullable Object[] values = keys.get(id);
+    for (int k = 0; k < values.length; k++) {
+      vectors[offset + k].set(row, values[k]);
+    }
+  }
+}
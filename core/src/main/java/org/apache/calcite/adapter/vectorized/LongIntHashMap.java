@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from {@code long} keys to non-negative {@code int} values, using
+ * open addressing with linear probing.
+ *
+ * <p>Avoids the boxed keys and per-entry objects of a
+ * {@link java.util.HashMap}.
+ */
+final class LongIntHashMap {
+  private static final int EMPTY = -1;
+
+  private long[] keys;
+  private int[] values;
+  private int mask;
+  private int size;
+
+  LongIntHashMap() {
+    this(64);
+  }
+
+  LongIntHashMap(int expectedSize) {
+    final int capacity =
+        Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+    this.keys = new long[capacity];
+    this.values = emptyValues(capacity);
+    this.mask = capacity - 1;
+  }
+
+  private static int[] emptyValues(int capacity) {
+    final int[] values = new int[capacity];
+    Arrays.fill(values, EMPTY);
+    return values;
+  }
+
+  private static int hash(long key) {
+    final long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /** Returns the number of entries. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the value for a key, or -1 if the key is not present. */
+  int get(long key) {
+    for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+      final int value = values[slot];
+      if (value == EMPTY || keys[slot] == key) {
+        return value;
+      }
+    }
+  }
+
+  /** Returns the value for a key if present; otherwise associates the key
+   * with {@code value} and returns -1. */
+  int putIfAbsent(long key, int value) {
+    assert value >= 0;
+    for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+      final int existing = values[slot];
+      if (existing == EMPTY) {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+          rehash();
+        }
+        return EMPTY;
+      }
+      if (keys[slot] == key) {
+        return existing;
+      }
+    }
+  }
+
+  private void rehash() {
+    final long[] oldKeys = keys;
+    final int[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = emptyValues(keys.length);
+    mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != EMPTY) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (values[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,665 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.adapter.vectorized.ColumnVector.DoubleVector;
+import org.apache.calcite.adapter.vectorized.ColumnVector.LongVector;
+import org.apache.calcite.adapter.vectorized.ColumnVector.ObjectVector;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexLocalRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.sql.type.SqlTypeUtil;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled form of a {@link RexNode} that evaluates the expression for all
+ * rows of a {@link ColumnBatch} at a time.
+ *
+ * <p>Only a subset of expressions can be compiled: column references,
+ * literals, {@code +}, {@code -}, {@code *} and comparisons on numeric
+ * values, comparisons on character strings and decimals, {@code AND},
+ * {@code OR}, {@code NOT}, {@code IS [NOT] NULL},
+ * {@code IS [NOT] TRUE}, {@code IS [NOT] FALSE} and numeric casts. None of
+ * these can throw, so an expression may safely be evaluated for rows that
+ * a preceding condition would have eliminated.
+ *
+ * <p>An expression holds the vector into which it writes its result, so
+ * it must not be shared between threads.
+ */
+public abstract class VectorExpression {
+  /** Representation of the result. */
+  public final VectorType type;
+
+  private @Nullable ColumnVector output;
+
+  protected VectorExpression(VectorType type) {
+    this.type = type;
+  }
+
+  /** Evaluates this expression for the selected rows of a batch.
+   *
+   * <p>The values and null bits of the result are defined only at the
+   * positions of the selected rows. The result may be one of the batch's
+   * own columns, or a vector owned by this expression that is overwritten
+   * the next time it is evaluated. */
+  public abstract ColumnVector evaluate(ColumnBatch batch);
+
+  /** Returns the vector to which this expression writes its result,
+   * allocating it if necessary. */
+  protected ColumnVector output(ColumnBatch batch) {
+    ColumnVector output = this.output;
+    if (output == null || output.capacity() < batch.capacity) {
+      output = ColumnVector.create(type, batch.capacity);
+      this.output = output;
+    }
+    return output;
+  }
+
+  /** Restricts a batch to the rows for which a boolean expression is
+   * true. */
+  public static void filter(ColumnBatch batch, VectorExpression condition) {
+    assert condition.type == VectorType.BOOLEAN;
+    final LongVector v = (LongVector) condition.evaluate(batch);
+    final int[] buffer = batch.selectionBuffer();
+    final int count =
+        VectorKernels.selectTrue(v.values, v.nulls, batch.selection,
+            batch.count(), buffer);
+    batch.select(buffer, count);
+  }
+
+  /** Returns whether the condition and projected expressions of a program
+   * can be compiled. */
+  public static boolean canCompile(RexProgram program) {
+    final RexLocalRef condition = program.getCondition();
+    if (condition != null
+        && compile(program.expandLocalRef(condition)) == null) {
+      return false;
+    }
+    for (RexLocalRef e : program.getProjectList()) {
+      if (compile(program.expandLocalRef(e)) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Compiles the conjuncts of a program's condition, or returns an empty
+   * list if it has no condition. */
+  public static List<VectorExpression> compileCondition(RexProgram program) {
+    final List<VectorExpression> list = new ArrayList<>();
+    final RexLocalRef condition = program.getCondition();
+    if (condition != null) {
+      final RexNode e = program.expandLocalRef(condition);
+      for (RexNode conjunct : RelOptUtil.conjunctions(e)) {
+        list.add(compileStrict(conjunct));
+      }
+    }
+    return list;
+  }
+
+  /** Compiles the projected expressions of a program. */
+  public static List<VectorExpression> compileProjects(RexProgram program) {
+    final List<VectorExpression> list = new ArrayList<>();
+    for (RexLocalRef e : program.getProjectList()) {
+      list.add(compileStrict(program.expandLocalRef(e)));
+    }
+    return list;
+  }
+
+  private static VectorExpression compileStrict(RexNode e) {
+    final VectorExpression expression = compile(e);
+    if (expression == null) {
+      throw new IllegalArgumentException("cannot vectorize " + e);
+    }
+    return expression;
+  }
+
+  /** Compiles an expression, or returns null if it contains a construct
+   * that cannot be vectorized. */
+  public static @Nullable VectorExpression compile(RexNode e) {
+    final VectorType type = VectorType.of(e.getType());
+    switch (e.getKind()) {
+    case INPUT_REF:
+      return new InputRef(type, ((RexInputRef) e).getIndex());
+    case LOCAL_REF:
+      return null;
+    case LITERAL:
+      return literal((RexLiteral) e);
+    default:
+      break;
+    }
+    if (!(e instanceof RexCall)) {
+      return null;
+    }
+    final RexCall call = (RexCall) e;
+    final List<VectorExpression> operands = new ArrayList<>();
+    for (RexNode operand : call.getOperands()) {
+      final VectorExpression o = compile(operand);
+      if (o == null) {
+        return null;
+      }
+      operands.add(o);
+    }
+    switch (call.getKind()) {
+    case PLUS:
+    case MINUS:
+    case TIMES:
+      if (!type.isLong() && !type.isDouble() || type == VectorType.BOOLEAN) {
+        return null;
+      }
+      final VectorExpression left = coerce(operands.get(0), type);
+      final VectorExpression right = coerce(operands.get(1), type);
+      if (left == null || right == null) {
+        return null;
+      }
+      return new Arithmetic(type, call.getKind(), left, right);
+    case PLUS_PREFIX:
+      return coerce(operands.get(0), type);
+    case MINUS_PREFIX:
+      if (!type.isLong() && !type.isDouble() || type == VectorType.BOOLEAN) {
+        return null;
+      }
+      final VectorExpression operand = coerce(operands.get(0), type);
+      return operand == null ? null : new Negate(type, operand);
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      return comparison(call, operands.get(0), operands.get(1));
+    case AND:
+    case OR:
+      for (VectorExpression o : operands) {
+        if (o.type != VectorType.BOOLEAN) {
+          return null;
+        }
+      }
+      VectorExpression result = operands.get(0);
+      for (VectorExpression o : operands.subList(1, operands.size())) {
+        result = new Logical(call.getKind(), result, o);
+      }
+      return result;
+    case NOT:
+      if (operands.get(0).type != VectorType.BOOLEAN) {
+        return null;
+      }
+      return new Not(operands.get(0));
+    case IS_NULL:
+    case IS_NOT_NULL:
+      return new NullTest(call.getKind(), operands.get(0));
+    case IS_TRUE:
+    case IS_NOT_TRUE:
+    case IS_FALSE:
+    case IS_NOT_FALSE:
+      if (operands.get(0).type != VectorType.BOOLEAN) {
+        return null;
+      }
+      return new TruthTest(call.getKind(), operands.get(0));
+    case CAST:
+      return cast(call.getOperands().get(0).getType(), call.getType(),
+          operands.get(0));
+    default:
+      return null;
+    }
+  }
+
+  private static @Nullable VectorExpression literal(RexLiteral literal) {
+    final VectorType type = VectorType.of(literal.getType());
+    final Object value;
+    if (literal.getTypeName() == SqlTypeName.SARG) {
+      return null;
+    }
+    if (literal.isNull()) {
+      return new Constant(type, null);
+    }
+    switch (literal.getType().getSqlTypeName()) {
+    case BOOLEAN:
+      value = literal.getValueAs(Boolean.class);
+      break;
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+    case TIMESTAMP:
+      value = literal.getValueAs(Long.class);
+      break;
+    case DATE:
+    case TIME:
+      value = literal.getValueAs(Integer.class);
+      break;
+    case REAL:
+    case FLOAT:
+    case DOUBLE:
+      value = literal.getValueAs(Double.class);
+      break;
+    case DECIMAL:
+      value = literal.getValueAs(BigDecimal.class);
+      break;
+    case CHAR:
+    case VARCHAR:
+      value = literal.getValueAs(String.class);
+      break;
+    default:
+      return null;
+    }
+    return new Constant(type, value);
+  }
+
+  /** Converts an expression to a different numeric representation, or
+   * returns null if that would change its value. */
+  private static @Nullable VectorExpression coerce(VectorExpression e,
+      VectorType type) {
+    if (e.type == type) {
+      return e;
+    }
+    if (e.type == VectorType.BOOLEAN || e.type == VectorType.OBJECT
+        || type == VectorType.BOOLEAN || type == VectorType.OBJECT) {
+      return null;
+    }
+    if (type.isDouble()) {
+      return e.type.isLong() ? new ToDouble(type, e) : null;
+    }
+    if (e.type.isDouble()) {
+      return null;
+    }
+    return new Narrow(type, e);
+  }
+
+  private static @Nullable VectorExpression comparison(RexCall call,
+      VectorExpression left, VectorExpression right) {
+    left = decimalAsDouble(call.getOperands().get(0), left, right);
+    right = decimalAsDouble(call.getOperands().get(1), right, left);
+    final RelDataType leftType = call.getOperands().get(0).getType();
+    final RelDataType rightType = call.getOperands().get(1).getType();
+    if (left.type == VectorType.OBJECT && right.type == VectorType.OBJECT) {
+      final SqlTypeFamily family = leftType.getSqlTypeName().getFamily();
+      if (family != rightType.getSqlTypeName().getFamily()
+          || family != SqlTypeFamily.CHARACTER
+          && family != SqlTypeFamily.NUMERIC) {
+        return null;
+      }
+      return new Comparison(call.getKind(), VectorType.OBJECT, left, right);
+    }
+    if (left.type == VectorType.BOOLEAN && right.type == VectorType.BOOLEAN) {
+      return new Comparison(call.getKind(), VectorType.BOOLEAN, left, right);
+    }
+    if (!(SqlTypeUtil.isNumeric(leftType) && SqlTypeUtil.isNumeric(rightType))
+        && leftType.getSqlTypeName() != rightType.getSqlTypeName()) {
+      // For example, DATE and INTEGER are both held in a long[],
+      // but comparing them is not meaningful.
+      return null;
+    }
+    final VectorType type = VectorType.leastRestrictive(left.type, right.type);
+    if (type == null) {
+      return null;
+    }
+    final VectorExpression left2 = type.isDouble() ? coerce(left, type) : left;
+    final VectorExpression right2 =
+        type.isDouble() ? coerce(right, type) : right;
+    if (left2 == null || right2 == null) {
+      return null;
+    }
+    return new Comparison(call.getKind(), type, left2, right2);
+  }
+
+  /** If an operand is a {@code DECIMAL} literal and the other operand is a
+   * {@code DOUBLE}, returns the literal as a {@code DOUBLE} constant, as
+   * generated code would compare them; otherwise returns the operand. */
+  private static VectorExpression decimalAsDouble(RexNode operand,
+      VectorExpression e, VectorExpression other) {
+    if (operand instanceof RexLiteral
+        && operand.getType().getSqlTypeName() == SqlTypeName.DECIMAL
+        && other.type == VectorType.DOUBLE) {
+      return new Constant(VectorType.DOUBLE,
+          ((RexLiteral) operand).getValueAs(Double.class));
+    }
+    return e;
+  }
+
+  private static @Nullable VectorExpression cast(RelDataType fromType,
+      RelDataType toType, VectorExpression e) {
+    if (fromType.isNullable() && !toType.isNullable()) {
+      // Generated code converts null to the default value of the primitive
+      // type, for example 0; do not try to emulate that.
+      return null;
+    }
+    if (fromType.getSqlTypeName() == toType.getSqlTypeName()
+        && fromType.getPrecision() == toType.getPrecision()
+        && fromType.getScale() == toType.getScale()) {
+      return e;
+    }
+    if (SqlTypeUtil.isNumeric(fromType) && SqlTypeUtil.isNumeric(toType)) {
+      final VectorType type = VectorType.of(toType);
+      if (type == VectorType.FLOAT && e.type == VectorType.DOUBLE) {
+        // Rounding to float would be required
+        return null;
+      }
+      return coerce(e, type);
+    }
+    return null;
+  }
+
+  /** Reference to a column of the input batch. */
+  private static class InputRef extends VectorExpression {
+    private final int index;
+
+    InputRef(VectorType type, int index) {
+      super(type);
+      this.index = index;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      return batch.columns[index];
+    }
+  }
+
+  /** Literal value, broadcast to every row of the batch. */
+  private static class Constant extends VectorExpression {
+    private final @Nullable Object value;
+    private @Nullable ColumnVector filled;
+
+    Constant(VectorType type, @Nullable Object value) {
+      super(type);
+      this.value = value;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      final ColumnVector output = output(batch);
+      if (output != filled) {
+        for (int i = 0; i < output.capacity(); i++) {
+          output.set(i, value);
+        }
+        filled = output;
+      }
+      return output;
+    }
+  }
+
+  /** Binary arithmetic operator. */
+  private static class Arithmetic extends VectorExpression {
+    private final SqlKind op;
+    private final VectorExpression left;
+    private final VectorExpression right;
+
+    Arithmetic(VectorType type, SqlKind op, VectorExpression left,
+        VectorExpression right) {
+      super(type);
+      this.op = op;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      final ColumnVector v0 = left.evaluate(batch);
+      final ColumnVector v1 = right.evaluate(batch);
+      final ColumnVector output = output(batch);
+      final int[] sel = batch.selection;
+      final int n = batch.count();
+      if (type.isDouble()) {
+        final double[] values = ((DoubleVector) output).values;
+        VectorKernels.arithmetic(op, ((DoubleVector) v0).values,
+            ((DoubleVector) v1).values, values, sel, n);
+        if (type == VectorType.FLOAT) {
+          VectorKernels.roundToFloat(values, sel, n);
+        }
+      } else {
+        final long[] values = ((LongVector) output).values;
+        VectorKernels.arithmetic(op, ((LongVector) v0).values,
+            ((LongVector) v1).values, values, sel, n);
+        VectorKernels.narrow(type, values, values, sel, n);
+      }
+      VectorKernels.unionNulls(v0.nulls, v1.nulls, output.nulls, batch.size);
+      return output;
+    }
+  }
+
+  /** Unary minus. */
+  private static class Negate extends VectorExpression {
+    private final VectorExpression operand;
+
+    Negate(VectorType type, VectorExpression operand) {
+      super(type);
+      this.operand = operand;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      final ColumnVector v = operand.evaluate(batch);
+      final ColumnVector output = output(batch);
+      final int[] sel = batch.selection;
+      final int n = batch.count();
+      if (type.isDouble()) {
+        VectorKernels.negate(((DoubleVector) v).values,
+            ((DoubleVector) output).values, sel, n);
+      } else {
+        final long[] values = ((LongVector) output).values;
+        VectorKernels.negate(((LongVector) v).values, values, sel, n);
+        VectorKernels.narrow(type, values, values, sel, n);
+      }
+      VectorKernels.copyNulls(v.nulls, output.nulls, batch.size);
+      return output;
+    }
+  }
+
+  /** Conversion from an integer representation to a floating-point
+   * representation. */
+  private static class ToDouble extends VectorExpression {
+    private final VectorExpression operand;
+
+    ToDouble(VectorType type, VectorExpression operand) {
+      super(type);
+      this.operand = operand;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      final ColumnVector v = operand.evaluate(batch);
+      final ColumnVector output = output(batch);
+      final double[] values = ((DoubleVector) output).values;
+      VectorKernels.toDouble(((LongVector) v).values, values,
+          batch.selection, batch.count());
+      if (type == VectorType.FLOAT) {
+        VectorKernels.roundToFloat(values, batch.selection, batch.count());
+      }
+      VectorKernels.copyNulls(v.nulls, output.nulls, batch.size);
+      return output;
+    }
+  }
+
+  /** Conversion between integer representations. */
+  private static class Narrow extends VectorExpression {
+    private final VectorExpression operand;
+
+    Narrow(VectorType type, VectorExpression operand) {
+      super(type);
+      this.operand = operand;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      final ColumnVector v = operand.evaluate(batch);
+      final ColumnVector output = output(batch);
+      VectorKernels.narrow(type, ((LongVector) v).values,
+          ((LongVector) output).values, batch.selection, batch.count());
+      VectorKernels.copyNulls(v.nulls, output.nulls, batch.size);
+      return output;
+    }
+  }
+
+  /** Comparison operator. */
+  private static class Comparison extends VectorExpression {
+    private final SqlKind op;
+    private final VectorType operandType;
+    private final VectorExpression left;
+    private final VectorExpression right;
+
+    Comparison(SqlKind op, VectorType operandType, VectorExpression left,
+        VectorExpression right) {
+      super(VectorType.BOOLEAN);
+      this.op = op;
+      this.operandType = operandType;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      final ColumnVector v0 = left.evaluate(batch);
+      final ColumnVector v1 = right.evaluate(batch);
+      final ColumnVector output = output(batch);
+      final long[] values = ((LongVector) output).values;
+      final int[] sel = batch.selection;
+      final int n = batch.count();
+      if (operandType.isDouble()) {
+        VectorKernels.compare(op, ((DoubleVector) v0).values,
+            ((DoubleVector) v1).values, values, sel, n);
+      } else if (operandType.isLong()) {
+        VectorKernels.compare(op, ((LongVector) v0).values,
+            ((LongVector) v1).values, values, sel, n);
+      } else {
+        VectorKernels.compare(op, ((ObjectVector) v0).values,
+            ((ObjectVector) v1).values, values, sel, n);
+      }
+      VectorKernels.unionNulls(v0.nulls, v1.nulls, output.nulls, batch.size);
+      return output;
+    }
+  }
+
+  /** {@code AND} or {@code OR}, using three-valued logic. */
+  private static class Logical extends VectorExpression {
+    private final boolean and;
+    private final VectorExpression left;
+    private final VectorExpression right;
+
+    Logical(SqlKind kind, VectorExpression left, VectorExpression right) {
+      super(VectorType.BOOLEAN);
+      this.and = kind == SqlKind.AND;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      final LongVector v0 = (LongVector) left.evaluate(batch);
+      final LongVector v1 = (LongVector) right.evaluate(batch);
+      final LongVector output = (LongVector) output(batch);
+      // The value that decides the result regardless of the other operand:
+      // false for AND, true for OR.
+      final long decisive = and ? 0L : 1L;
+      for (int j = 0, n = batch.count(); j < n; j++) {
+        final int i = batch.row(j);
+        final boolean null0 = v0.isNull(i);
+        final boolean null1 = v1.isNull(i);
+        if (!null0 && v0.values[i] == decisive
+            || !null1 && v1.values[i] == decisive) {
+          output.values[i] = decisive;
+          output.setNull(i, false);
+        } else if (null0 || null1) {
+          output.setNull(i, true);
+        } else {
+          output.values[i] = 1L - decisive;
+          output.setNull(i, false);
+        }
+      }
+      return output;
+    }
+  }
+
+  /** {@code NOT}. */
+  private static class Not extends VectorExpression {
+    private final VectorExpression operand;
+
+    Not(VectorExpression operand) {
+      super(VectorType.BOOLEAN);
+      this.operand = operand;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      final ColumnVector v = operand.evaluate(batch);
+      final ColumnVector output = output(batch);
+      VectorKernels.not(((LongVector) v).values, ((LongVector) output).values,
+          batch.selection, batch.count());
+      VectorKernels.copyNulls(v.nulls, output.nulls, batch.size);
+      return output;
+    }
+  }
+
+  /** {@code IS NULL} or {@code IS NOT NULL}. */
+  private static class NullTest extends VectorExpression {
+    private final boolean isNull;
+    private final VectorExpression operand;
+
+    NullTest(SqlKind kind, VectorExpression operand) {
+      super(VectorType.BOOLEAN);
+      this.isNull = kind == SqlKind.IS_NULL;
+      this.operand = operand;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      final ColumnVector v = operand.evaluate(batch);
+      final LongVector output = (LongVector) output(batch);
+      for (int j = 0, n = batch.count(); j < n; j++) {
+        final int i = batch.row(j);
+        output.values[i] = v.isNull(i) == isNull ? 1L : 0L;
+      }
+      output.clearNulls(batch.size);
+      return output;
+    }
+  }
+
+  /** {@code IS TRUE}, {@code IS NOT TRUE}, {@code IS FALSE} or
+   * {@code IS NOT FALSE}. */
+  private static class TruthTest extends VectorExpression {
+    /** Value that the operand is tested for: 1 for {@code IS [NOT] TRUE},
+     * 0 for {@code IS [NOT] FALSE}. */
+    private final long value;
+    /** Whether the test is negated; a null operand satisfies a negated
+     * test. */
+    private final boolean negated;
+    private final VectorExpression operand;
+
+    TruthTest(SqlKind kind, VectorExpression operand) {
+      super(VectorType.BOOLEAN);
+      this.value =
+          kind == SqlKind.IS_TRUE || kind == SqlKind.IS_NOT_TRUE ? 1L : 0L;
+      this.negated =
+          kind == SqlKind.IS_NOT_TRUE || kind == SqlKind.IS_NOT_FALSE;
+      this.operand = operand;
+    }
+
+    @Override public ColumnVector evaluate(ColumnBatch batch) {
+      final LongVector v = (LongVector) operand.evaluate(batch);
+      final LongVector output = (LongVector) output(batch);
+      for (int j = 0, n = batch.count(); j < n; j++) {
+        final int i = batch.row(j);
+        final boolean matches = !v.isNull(i) && v.values[i] == value;
+        output.values[i] = matches != negated ? 1L : 0L;
+      }
+      output.clearNulls(batch.size);
+      return output;
+    }
+  }
+}
@@ -0,0 +1,484 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.sql.SqlKind;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Loops over primitive arrays that implement vectorized operations.
+ *
+ * <p>Each kernel processes either the first {@code n} rows of its inputs
+ * (if {@code sel} is null) or the {@code n} rows whose positions are in
+ * {@code sel}. The operator is resolved before entering the loop, and the
+ * dense variant of each loop has no data-dependent branches, so that the
+ * JIT compiler can unroll and vectorize it.
+ */
+final class VectorKernels {
+  private VectorKernels() {}
+
+  /** Applies an arithmetic operator to two long vectors. */
+  static void arithmetic(SqlKind op, long[] a, long[] b, long[] out,
+      int @Nullable [] sel, int n) {
+    switch (op) {
+    case PLUS:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] + b[i];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] + b[i];
+        }
+      }
+      break;
+    case MINUS:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] - b[i];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] - b[i];
+        }
+      }
+      break;
+    case TIMES:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] * b[i];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] * b[i];
+        }
+      }
+      break;
+    default:
+      throw new AssertionError(op);
+    }
+  }
+
+  /** Applies an arithmetic operator to two double vectors. */
+  static void arithmetic(SqlKind op, double[] a, double[] b, double[] out,
+      int @Nullable [] sel, int n) {
+    switch (op) {
+    case PLUS:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] + b[i];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] + b[i];
+        }
+      }
+      break;
+    case MINUS:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] - b[i];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] - b[i];
+        }
+      }
+      break;
+    case TIMES:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] * b[i];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] * b[i];
+        }
+      }
+      break;
+    default:
+      throw new AssertionError(op);
+    }
+  }
+
+  /** Applies a comparison operator to two long vectors, writing 1 (true)
+   * or 0 (false) to {@code out}. */
+  static void compare(SqlKind op, long[] a, long[] b, long[] out,
+      int @Nullable [] sel, int n) {
+    switch (op) {
+    case EQUALS:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] == b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] == b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    case NOT_EQUALS:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] != b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] != b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    case LESS_THAN:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] < b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] < b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    case LESS_THAN_OR_EQUAL:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] <= b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] <= b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    case GREATER_THAN:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] > b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] > b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    case GREATER_THAN_OR_EQUAL:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] >= b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] >= b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    default:
+      throw new AssertionError(op);
+    }
+  }
+
+  /** Applies a comparison operator to two double vectors, writing 1 (true)
+   * or 0 (false) to {@code out}. */
+  static void compare(SqlKind op, double[] a, double[] b, long[] out,
+      int @Nullable [] sel, int n) {
+    switch (op) {
+    case EQUALS:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] == b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] == b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    case NOT_EQUALS:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] != b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] != b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    case LESS_THAN:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] < b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] < b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    case LESS_THAN_OR_EQUAL:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] <= b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] <= b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    case GREATER_THAN:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] > b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] > b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    case GREATER_THAN_OR_EQUAL:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i] >= b[i] ? 1L : 0L;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i] >= b[i] ? 1L : 0L;
+        }
+      }
+      break;
+    default:
+      throw new AssertionError(op);
+    }
+  }
+
+  /** Applies a comparison operator to two vectors of
+   * {@link Comparable} values, writing 1 (true) or 0 (false) to
+   * {@code out}. Rows where either value is null are skipped. */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  static void compare(SqlKind op, @Nullable Object[] a, @Nullable Object[] b,
+      long[] out, int @Nullable [] sel, int n) {
+    for (int j = 0; j < n; j++) {
+      final int i = sel == null ? j : sel[j];
+      final Comparable v0 = (Comparable) a[i];
+      final Object v1 = b[i];
+      if (v0 == null || v1 == null) {
+        continue;
+      }
+      final int c = v0.compareTo(v1);
+      final boolean result;
+      switch (op) {
+      case EQUALS:
+        result = c == 0;
+        break;
+      case NOT_EQUALS:
+        result = c != 0;
+        break;
+      case LESS_THAN:
+        result = c < 0;
+        break;
+      case LESS_THAN_OR_EQUAL:
+        result = c <= 0;
+        break;
+      case GREATER_THAN:
+        result = c > 0;
+        break;
+      case GREATER_THAN_OR_EQUAL:
+        result = c >= 0;
+        break;
+      default:
+        throw new AssertionError(op);
+      }
+      out[i] = result ? 1L : 0L;
+    }
+  }
+
+  /** Negates a long vector. */
+  static void negate(long[] a, long[] out, int @Nullable [] sel, int n) {
+    if (sel == null) {
+      for (int i = 0; i < n; i++) {
+        out[i] = -a[i];
+      }
+    } else {
+      for (int j = 0; j < n; j++) {
+        final int i = sel[j];
+        out[i] = -a[i];
+      }
+    }
+  }
+
+  /** Negates a double vector. */
+  static void negate(double[] a, double[] out, int @Nullable [] sel,
+      int n) {
+    if (sel == null) {
+      for (int i = 0; i < n; i++) {
+        out[i] = -a[i];
+      }
+    } else {
+      for (int j = 0; j < n; j++) {
+        final int i = sel[j];
+        out[i] = -a[i];
+      }
+    }
+  }
+
+  /** Computes the boolean complement of a vector of 0s and 1s. */
+  static void not(long[] a, long[] out, int @Nullable [] sel, int n) {
+    if (sel == null) {
+      for (int i = 0; i < n; i++) {
+        out[i] = 1L - a[i];
+      }
+    } else {
+      for (int j = 0; j < n; j++) {
+        final int i = sel[j];
+        out[i] = 1L - a[i];
+      }
+    }
+  }
+
+  /** Converts a long vector to double. */
+  static void toDouble(long[] a, double[] out, int @Nullable [] sel,
+      int n) {
+    if (sel == null) {
+      for (int i = 0; i < n; i++) {
+        out[i] = a[i];
+      }
+    } else {
+      for (int j = 0; j < n; j++) {
+        final int i = sel[j];
+        out[i] = a[i];
+      }
+    }
+  }
+
+  /** Wraps long values to the range of a narrower integer type, copying
+   * from {@code a} to {@code out}. */
+  static void narrow(VectorType type, long[] a, long[] out,
+      int @Nullable [] sel, int n) {
+    switch (type) {
+    case BYTE:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = (byte) a[i];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = (byte) a[i];
+        }
+      }
+      break;
+    case SHORT:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = (short) a[i];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = (short) a[i];
+        }
+      }
+      break;
+    case INT:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = (int) a[i];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = (int) a[i];
+        }
+      }
+      break;
+    default:
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          out[i] = a[i];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel[j];
+          out[i] = a[i];
+        }
+      }
+      break;
+    }
+  }
+
+  /** Rounds double values to the nearest float, in place. */
+  static void roundToFloat(double[] a, int @Nullable [] sel, int n) {
+    if (sel == null) {
+      for (int i = 0; i < n; i++) {
+        a[i] = (float) a[i];
+      }
+    } else {
+      for (int j = 0; j < n; j++) {
+        final int i = sel[j];
+        a[i] = (float) a[i];
+      }
+    }
+  }
+
+  /** Computes the union of two null bitmaps covering {@code size} rows. */
+  static void unionNulls(long[] a, long[] b, long[] out, int size) {
+    for (int w = 0, n = ColumnVector.wordCount(size); w < n; w++) {
+      out[w] = a[w] | b[w];
+    }
+  }
+
+  /** Copies a null bitmap covering {@code size} rows. */
+  static void copyNulls(long[] a, long[] out, int size) {
+    System.arraycopy(a, 0, out, 0, ColumnVector.wordCount(size));
+  }
+
+  /** Writes to {@code out} the positions of the rows whose value is true
+   * (not null and not 0), and returns how many there are. {@code out} may
+   * be the same array as {@code sel}. */
+  static int selectTrue(long[] values, long[] nulls, int @Nullable [] sel,
+      int n, int[] out) {
+    int k = 0;
+    for (int j = 0; j < n; j++) {
+      final int i = sel == null ? j : sel[j];
+      if ((nulls[i >>> 6] & (1L << i)) == 0 && values[i] != 0L) {
+        out[k++] = i;
+      }
+    }
+    return k;
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactoryImpl.JavaType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.sql.type.SqlTypeName;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.math.BigDecimal;
+
+/**
+ * Physical representation of the values in a {@link ColumnVector}.
+ *
+ * <p>Every SQL type whose Java representation is a primitive is stored in a
+ * {@code long[]} or {@code double[]}; the type remembers which Java class the
+ * value has when it is boxed, so that rows produced by a vectorized operator
+ * are indistinguishable from rows produced by an enumerable operator.
+ * All other types are stored in an {@code Object[]}.
+ */
+public enum VectorType {
+  BOOLEAN(true),
+  BYTE(true),
+  SHORT(true),
+  INT(true),
+  LONG(true),
+  FLOAT(false),
+  DOUBLE(false),
+  OBJECT(false);
+
+  private final boolean integral;
+
+  VectorType(boolean integral) {
+    this.integral = integral;
+  }
+
+  /** Returns whether values are stored in a {@code long[]}. */
+  public boolean isLong() {
+    return integral;
+  }
+
+  /** Returns whether values are stored in a {@code double[]}. */
+  public boolean isDouble() {
+    return this == FLOAT || this == DOUBLE;
+  }
+
+  /** Returns the representation of values of a given SQL type.
+   *
+   * <p>Mirrors how {@link org.apache.calcite.adapter.java.JavaTypeFactory}
+   * maps SQL types to Java classes in the
+   * {@link org.apache.calcite.adapter.enumerable.JavaRowFormat#ARRAY}
+   * row format. */
+  public static VectorType of(RelDataType type) {
+    switch (type.getSqlTypeName()) {
+    case BOOLEAN:
+      return BOOLEAN;
+    case TINYINT:
+      return BYTE;
+    case SMALLINT:
+      return SHORT;
+    case INTEGER:
+    case DATE:
+    case TIME:
+    case INTERVAL_YEAR:
+    case INTERVAL_YEAR_MONTH:
+    case INTERVAL_MONTH:
+      return INT;
+    case BIGINT:
+    case TIMESTAMP:
+    case INTERVAL_DAY:
+    case INTERVAL_DAY_HOUR:
+    case INTERVAL_DAY_MINUTE:
+    case INTERVAL_DAY_SECOND:
+    case INTERVAL_HOUR:
+    case INTERVAL_HOUR_MINUTE:
+    case INTERVAL_HOUR_SECOND:
+    case INTERVAL_MINUTE:
+    case INTERVAL_MINUTE_SECOND:
+    case INTERVAL_SECOND:
+      return LONG;
+    case REAL:
+      return FLOAT;
+    case FLOAT:
+    case DOUBLE:
+      return DOUBLE;
+    default:
+      return OBJECT;
+    }
+  }
+
+  /** Returns whether every field of a row type can be held in a vector.
+   *
+   * <p>Values of structured, collection and other complex types are not
+   * supported, because enumerable convention represents them differently
+   * depending on the row format of the relational expression that produces
+   * them. */
+  public static boolean isSupported(RelDataType rowType) {
+    for (RelDataTypeField field : rowType.getFieldList()) {
+      final RelDataType type = field.getType();
+      final VectorType vectorType = of(type);
+      final SqlTypeFamily family = type.getSqlTypeName().getFamily();
+      if (vectorType == OBJECT
+          && family != SqlTypeFamily.CHARACTER
+          && family != SqlTypeFamily.BINARY
+          && type.getSqlTypeName() != SqlTypeName.DECIMAL) {
+        return false;
+      }
+      if (type instanceof JavaType
+          && !vectorType.holds(((JavaType) type).getJavaClass(), family)) {
+        // For example, a field of type java.sql.Date in a reflective
+        // schema has SQL type DATE, but its values are not ints.
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether values of a Java class have this representation. */
+  private boolean holds(Class<?> clazz, @Nullable SqlTypeFamily family) {
+    switch (this) {
+    case BOOLEAN:
+      return clazz == boolean.class || clazz == Boolean.class;
+    case BYTE:
+      return clazz == byte.class || clazz == Byte.class;
+    case SHORT:
+      return clazz == short.class || clazz == Short.class;
+    case INT:
+      return clazz == int.class || clazz == Integer.class;
+    case LONG:
+      return clazz == long.class || clazz == Long.class;
+    case FLOAT:
+      return clazz == float.class || clazz == Float.class;
+    case DOUBLE:
+      return clazz == double.class || clazz == Double.class;
+    default:
+      return family == SqlTypeFamily.CHARACTER
+          ? clazz == String.class
+          : family == SqlTypeFamily.BINARY
+          ? clazz == ByteString.class
+          : clazz == BigDecimal.class;
+    }
+  }
+
+  /** Converts a value stored in a {@code long[]} to its Java representation. */
+  public Object boxLong(long v) {
+    switch (this) {
+    case BOOLEAN:
+      return v != 0;
+    case BYTE:
+      return (byte) v;
+    case SHORT:
+      return (short) v;
+    case INT:
+      return (int) v;
+    case LONG:
+      return v;
+    default:
+      throw new AssertionError(this);
+    }
+  }
+
+  /** Converts a value stored in a {@code double[]} to its Java
+   * representation. */
+  public Object boxDouble(double v) {
+    switch (this) {
+    case FLOAT:
+      return (float) v;
+    case DOUBLE:
+      return v;
+    default:
+      throw new AssertionError(this);
+    }
+  }
+
+  /** Converts a Java value to the representation stored in a
+   * {@code long[]}. */
+  public static long unboxLong(Object o) {
+    if (o instanceof Boolean) {
+      return (Boolean) o ? 1L : 0L;
+    }
+    return ((Number) o).longValue();
+  }
+
+  /** Converts a Java value to the representation stored in a
+   * {@code double[]}. */
+  public static double unboxDouble(Object o) {
+    return ((Number) o).doubleValue();
+  }
+
+  /** Wraps a {@code long} value as it would be stored after arithmetic on
+   * the Java type; for example, {@code INT} values overflow at 32 bits. */
+  public long narrow(long v) {
+    switch (this) {
+    case BYTE:
+      return (byte) v;
+    case SHORT:
+      return (short) v;
+    case INT:
+      return (int) v;
+    default:
+      return v;
+    }
+  }
+
+  /** Returns the type that results from combining values of two types in
+   * an arithmetic or comparison operation, or null if they cannot be
+   * combined. */
+  public static @Nullable VectorType leastRestrictive(VectorType t0,
+      VectorType t1) {
+    if (t0 == t1) {
+      return t0;
+    }
+    if (t0 == OBJECT || t1 == OBJECT || t0 == BOOLEAN || t1 == BOOLEAN) {
+      return null;
+    }
+    if (t0.isDouble() || t1.isDouble()) {
+      return DOUBLE;
+    }
+    return LONG;
+  }
+}
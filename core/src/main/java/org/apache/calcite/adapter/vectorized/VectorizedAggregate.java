@@ -0,0 +1,670 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.adapter.vectorized.ColumnVector.DoubleVector;
+import org.apache.calcite.adapter.vectorized.ColumnVector.LongVector;
+import org.apache.calcite.adapter.vectorized.ColumnVector.ObjectVector;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Aggregate} in
+ * {@link VectorizedConvention vectorized calling convention}.
+ *
+ * <p>Groups are found using a hash table of keys (see {@link KeyTable});
+ * the state of each aggregate function is held in primitive arrays indexed
+ * by group id, and is updated a batch at a time.
+ *
+ * <p>Supports a single grouping set, and the aggregate functions
+ * {@code COUNT}, {@code SUM}, {@code $SUM0}, {@code MIN} and {@code MAX}
+ * without {@code DISTINCT} or {@code FILTER}. */
+public class VectorizedAggregate extends Aggregate implements VectorizedRel {
+  /** Creates a VectorizedAggregate.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public VectorizedAggregate(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, ImmutableBitSet groupSet,
+      @Nullable List<ImmutableBitSet> groupSets, List<AggregateCall> aggCalls) {
+    super(cluster, traitSet, ImmutableList.of(), input, groupSet, groupSets,
+        aggCalls);
+    assert getConvention() instanceof VectorizedConvention;
+  }
+
+  /** Creates a VectorizedAggregate. */
+  public static VectorizedAggregate create(RelNode input,
+      ImmutableBitSet groupSet, @Nullable List<ImmutableBitSet> groupSets,
+      List<AggregateCall> aggCalls) {
+    final RelOptCluster cluster = input.getCluster();
+    return new VectorizedAggregate(cluster,
+        cluster.traitSetOf(VectorizedConvention.INSTANCE), input, groupSet,
+        groupSets, aggCalls);
+  }
+
+  @Override public VectorizedAggregate copy(RelTraitSet traitSet,
+      RelNode input, ImmutableBitSet groupSet,
+      @Nullable List<ImmutableBitSet> groupSets, List<AggregateCall> aggCalls) {
+    return new VectorizedAggregate(getCluster(), traitSet, input, groupSet,
+        groupSets, aggCalls);
+  }
+
+  /** Returns whether an aggregate can be implemented in vectorized
+   * convention. */
+  public static boolean canImplement(Aggregate aggregate) {
+    if (aggregate.getGroupType() != Group.SIMPLE) {
+      return false;
+    }
+    final List<RelDataType> inputTypes =
+        RelOptUtil.getFieldTypeList(aggregate.getInput().getRowType());
+    for (AggregateCall aggCall : aggregate.getAggCallList()) {
+      if (aggCall.isDistinct()
+          || aggCall.isApproximate()
+          || aggCall.hasFilter()
+          || aggCall.distinctKeys != null
+          || !aggCall.collation.getFieldCollations().isEmpty()
+          || accumulatorKind(aggCall, inputTypes) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    return cost == null
+        ? null
+        : cost.multiplyBy(VectorizedConvention.COST_MULTIPLIER);
+  }
+
+  @Override public Enumerable<ColumnBatch> implement(Implementor implementor) {
+    final Enumerable<ColumnBatch> input = implementor.visitChild(getInput());
+    final List<VectorType> inputTypes =
+        ((VectorizedRel) getInput()).getVectorTypes();
+    final List<VectorType> outputTypes = getVectorTypes();
+    final int[] groupKeys = groupSet.toArray();
+    final VectorType[] keyTypes = new VectorType[groupKeys.length];
+    for (int i = 0; i < groupKeys.length; i++) {
+      keyTypes[i] = inputTypes.get(groupKeys[i]);
+    }
+    final List<RelDataType> inputRelTypes =
+        RelOptUtil.getFieldTypeList(getInput().getRowType());
+    final int batchSize = implementor.batchSize;
+    return new AbstractEnumerable<ColumnBatch>() {
+      @Override public Enumerator<ColumnBatch> enumerator() {
+        final List<Accumulator> accumulators = new ArrayList<>();
+        for (AggregateCall aggCall : aggCalls) {
+          accumulators.add(
+              createAccumulator(
+                  requireKind(accumulatorKind(aggCall, inputRelTypes)),
+                  aggCall));
+        }
+        return new AggregateEnumerator(input.enumerator(),
+            keyTypes, groupKeys, accumulators,
+            ColumnBatch.create(outputTypes, batchSize));
+      }
+    };
+  }
+
+  private static AccumulatorKind requireKind(@Nullable AccumulatorKind kind) {
+    if (kind == null) {
+      throw new AssertionError("aggregate function not supported");
+    }
+    return kind;
+  }
+
+  /** Returns the kind of accumulator that implements an aggregate call, or
+   * null if the call is not supported. */
+  private static @Nullable AccumulatorKind accumulatorKind(
+      AggregateCall aggCall, List<RelDataType> inputTypes) {
+    final VectorType outputType = VectorType.of(aggCall.getType());
+    final List<Integer> args = aggCall.getArgList();
+    switch (aggCall.getAggregation().getKind()) {
+    case COUNT:
+      return outputType.isLong() ? AccumulatorKind.COUNT : null;
+    case SUM:
+    case SUM0:
+    case MIN:
+    case MAX:
+      if (args.size() != 1) {
+        return null;
+      }
+      final RelDataType argType = inputTypes.get(args.get(0));
+      final VectorType type = VectorType.of(argType);
+      switch (aggCall.getAggregation().getKind()) {
+      case SUM:
+      case SUM0:
+        // Summing REAL values in double precision would give different
+        // results from the enumerable implementation.
+        if (type.isLong() && outputType.isLong()) {
+          return AccumulatorKind.LONG_SUM;
+        }
+        if (type == VectorType.DOUBLE && outputType == VectorType.DOUBLE) {
+          return AccumulatorKind.DOUBLE_SUM;
+        }
+        return null;
+      default:
+        if (type != outputType) {
+          return null;
+        }
+        if (type.isLong()) {
+          return AccumulatorKind.LONG_MIN_MAX;
+        }
+        if (type.isDouble()) {
+          return AccumulatorKind.DOUBLE_MIN_MAX;
+        }
+        return argType.getSqlTypeName().getFamily() == SqlTypeFamily.CHARACTER
+            ? AccumulatorKind.OBJECT_MIN_MAX
+            : null;
+      }
+    default:
+      return null;
+    }
+  }
+
+  private static Accumulator createAccumulator(AccumulatorKind kind,
+      AggregateCall aggCall) {
+    final List<Integer> args = aggCall.getArgList();
+    final boolean max;
+    switch (kind) {
+    case COUNT:
+      return args.isEmpty()
+          ? new CountStarAccumulator()
+          : new CountAccumulator(args.stream().mapToInt(i -> i).toArray());
+    case LONG_SUM:
+      return new LongSumAccumulator(args.get(0), isSum0(aggCall));
+    case DOUBLE_SUM:
+      return new DoubleSumAccumulator(args.get(0), isSum0(aggCall));
+    case LONG_MIN_MAX:
+      max = aggCall.getAggregation().getKind() == SqlKind.MAX;
+      return new LongMinMaxAccumulator(args.get(0), max);
+    case DOUBLE_MIN_MAX:
+      max = aggCall.getAggregation().getKind() == SqlKind.MAX;
+      return new DoubleMinMaxAccumulator(args.get(0), max);
+    case OBJECT_MIN_MAX:
+      max = aggCall.getAggregation().getKind() == SqlKind.MAX;
+      return new ObjectMinMaxAccumulator(args.get(0), max);
+    default:
+      throw new AssertionError(kind);
+    }
+  }
+
+  private static boolean isSum0(AggregateCall aggCall) {
+    return aggCall.getAggregation().getKind() == SqlKind.SUM0;
+  }
+
+  /** Kind of {@link Accumulator}. */
+  private enum AccumulatorKind {
+    COUNT,
+    LONG_SUM,
+    DOUBLE_SUM,
+    LONG_MIN_MAX,
+    DOUBLE_MIN_MAX,
+    OBJECT_MIN_MAX
+  }
+
+  /** Enumerator that reads all input batches, then returns one row per
+   * group. */
+  private static class AggregateEnumerator implements Enumerator<ColumnBatch> {
+    private final Enumerator<ColumnBatch> input;
+    private final VectorType[] keyTypes;
+    private final int[] groupKeys;
+    private final List<Accumulator> accumulators;
+    private final ColumnBatch output;
+    private KeyTable table;
+    private int[] ids = new int[0];
+    private boolean built;
+    private int groupCount;
+    private int nextGroup;
+    private boolean hasCurrent;
+
+    AggregateEnumerator(Enumerator<ColumnBatch> input, VectorType[] keyTypes,
+        int[] groupKeys, List<Accumulator> accumulators, ColumnBatch output) {
+      this.input = input;
+      this.keyTypes = keyTypes;
+      this.groupKeys = groupKeys;
+      this.accumulators = accumulators;
+      this.output = output;
+      this.table = new KeyTable(keyTypes, true);
+    }
+
+    @Override public ColumnBatch current() {
+      if (!hasCurrent) {
+        throw new NoSuchElementException();
+      }
+      return output;
+    }
+
+    @Override public boolean moveNext() {
+      if (!built) {
+        build();
+        built = true;
+      }
+      hasCurrent = nextGroup < groupCount;
+      if (!hasCurrent) {
+        return false;
+      }
+      output.clear();
+      final int n = Math.min(output.capacity, groupCount - nextGroup);
+      for (int k = 0; k < n; k++) {
+        final int id = nextGroup + k;
+        if (groupKeys.length > 0) {
+          table.write(id, output.columns, 0, k);
+        }
+        for (int a = 0; a < accumulators.size(); a++) {
+          accumulators.get(a).write(id, output.columns[groupKeys.length + a],
+              k);
+        }
+      }
+      output.size = n;
+      nextGroup += n;
+      return true;
+    }
+
+    private void build() {
+      if (groupKeys.length == 0) {
+        // Aggregate without GROUP BY returns one row, even if the input is
+        // empty.
+        groupCount = 1;
+        accumulators.forEach(a -> a.ensureCapacity(1));
+      }
+      while (input.moveNext()) {
+        final ColumnBatch batch = input.current();
+        final int n = batch.count();
+        if (n == 0) {
+          continue;
+        }
+        if (ids.length < batch.capacity) {
+          ids = new int[batch.capacity];
+        }
+        if (groupKeys.length == 0) {
+          Arrays.fill(ids, 0, batch.size, 0);
+        } else {
+          table.add(batch, groupKeys, ids);
+          groupCount = table.size();
+          for (Accumulator accumulator : accumulators) {
+            accumulator.ensureCapacity(groupCount);
+          }
+        }
+        for (Accumulator accumulator : accumulators) {
+          accumulator.add(batch, ids);
+        }
+      }
+    }
+
+    @Override public void reset() {
+      input.reset();
+      table = new KeyTable(keyTypes, true);
+      accumulators.forEach(Accumulator::clear);
+      built = false;
+      hasCurrent = false;
+      groupCount = 0;
+      nextGroup = 0;
+    }
+
+    @Override public void close() {
+      input.close();
+    }
+  }
+
+  /** State of an aggregate function for every group. */
+  private abstract static class Accumulator {
+    /** Number of groups for which space has been allocated. */
+    int capacity;
+
+    /** Ensures that there is space for at least {@code groupCount}
+     * groups. */
+    final void ensureCapacity(int groupCount) {
+      if (groupCount > capacity) {
+        capacity = Math.max(groupCount, Math.max(16, capacity * 2));
+        grow(capacity);
+      }
+    }
+
+    /** Resizes the arrays to hold {@code capacity} groups. */
+    abstract void grow(int capacity);
+
+    /** Discards all state. */
+    void clear() {
+      capacity = 0;
+      grow(0);
+    }
+
+    /** Adds the selected rows of a batch; {@code ids[i]} is the group of
+     * the row at position {@code i}. */
+    abstract void add(ColumnBatch batch, int[] ids);
+
+    /** Writes the result for a group into a row of a vector. */
+    abstract void write(int id, ColumnVector v, int row);
+
+    static void writeLong(ColumnVector v, int row, long value) {
+      ((LongVector) v).values[row] = value;
+      v.setNull(row, false);
+    }
+
+    static void writeDouble(ColumnVector v, int row, double value) {
+      ((DoubleVector) v).values[row] = value;
+      v.setNull(row, false);
+    }
+  }
+
+  /** Accumulator for {@code COUNT(*)}. */
+  private static class CountStarAccumulator extends Accumulator {
+    long[] counts = new long[0];
+
+    @Override void grow(int capacity) {
+      counts = Arrays.copyOf(counts, capacity);
+    }
+
+    @Override void add(ColumnBatch batch, int[] ids) {
+      final int n = batch.count();
+      final int @Nullable [] sel = batch.selection;
+      if (sel == null) {
+        for (int i = 0; i < n; i++) {
+          counts[ids[i]]++;
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          counts[ids[sel[j]]]++;
+        }
+      }
+    }
+
+    @Override void write(int id, ColumnVector v, int row) {
+      writeLong(v, row, counts[id]);
+    }
+  }
+
+  /** Accumulator for {@code COUNT(x, ...)}, which counts rows in which
+   * none of the arguments is null. */
+  private static class CountAccumulator extends CountStarAccumulator {
+    private final int[] args;
+
+    CountAccumulator(int[] args) {
+      this.args = args;
+    }
+
+    @Override void add(ColumnBatch batch, int[] ids) {
+      final int n = batch.count();
+      rows:
+      for (int j = 0; j < n; j++) {
+        final int i = batch.row(j);
+        for (int arg : args) {
+          if (batch.columns[arg].isNull(i)) {
+            continue rows;
+          }
+        }
+        counts[ids[i]]++;
+      }
+    }
+  }
+
+  /** Accumulator for {@code SUM} and {@code $SUM0} of integral values. */
+  private static class LongSumAccumulator extends Accumulator {
+    private final int arg;
+    private final boolean sum0;
+    private long[] sums = new long[0];
+    private long[] counts = new long[0];
+
+    LongSumAccumulator(int arg, boolean sum0) {
+      this.arg = arg;
+      this.sum0 = sum0;
+    }
+
+    @Override void grow(int capacity) {
+      sums = Arrays.copyOf(sums, capacity);
+      counts = Arrays.copyOf(counts, capacity);
+    }
+
+    @Override void add(ColumnBatch batch, int[] ids) {
+      final LongVector v = (LongVector) batch.columns[arg];
+      final long[] values = v.values;
+      final int n = batch.count();
+      final int @Nullable [] sel = batch.selection;
+      if (sel == null && !v.mayHaveNulls(batch.size)) {
+        for (int i = 0; i < n; i++) {
+          final int id = ids[i];
+          sums[id] += values[i];
+          counts[id]++;
+        }
+        return;
+      }
+      for (int j = 0; j < n; j++) {
+        final int i = sel == null ? j : sel[j];
+        if (!v.isNull(i)) {
+          final int id = ids[i];
+          sums[id] += values[i];
+          counts[id]++;
+        }
+      }
+    }
+
+    @Override void write(int id, ColumnVector v, int row) {
+      if (counts[id] == 0 && !sum0) {
+        v.setNull(row, true);
+      } else {
+        writeLong(v, row, sums[id]);
+      }
+    }
+  }
+
+  /** Accumulator for {@code SUM} and {@code $SUM0} of floating-point
+   * values. */
+  private static class DoubleSumAccumulator extends Accumulator {
+    private final int arg;
+    private final boolean sum0;
+    private double[] sums = new double[0];
+    private long[] counts = new long[0];
+
+    DoubleSumAccumulator(int arg, boolean sum0) {
+      this.arg = arg;
+      this.sum0 = sum0;
+    }
+
+    @Override void grow(int capacity) {
+      sums = Arrays.copyOf(sums, capacity);
+      counts = Arrays.copyOf(counts, capacity);
+    }
+
+    @Override void add(ColumnBatch batch, int[] ids) {
+      final DoubleVector v = (DoubleVector) batch.columns[arg];
+      final double[] values = v.values;
+      final int n = batch.count();
+      final int @Nullable [] sel = batch.selection;
+      if (sel == null && !v.mayHaveNulls(batch.size)) {
+        for (int i = 0; i < n; i++) {
+          final int id = ids[i];
+          sums[id] += values[i];
+          counts[id]++;
+        }
+        return;
+      }
+      for (int j = 0; j < n; j++) {
+        final int i = sel == null ? j : sel[j];
+        if (!v.isNull(i)) {
+          final int id = ids[i];
+          sums[id] += values[i];
+          counts[id]++;
+        }
+      }
+    }
+
+    @Override void write(int id, ColumnVector v, int row) {
+      if (counts[id] == 0 && !sum0) {
+        v.setNull(row, true);
+      } else {
+        writeDouble(v, row, sums[id]);
+      }
+    }
+  }
+
+  /** Accumulator for {@code MIN} and {@code MAX} of integral values. */
+  private static class LongMinMaxAccumulator extends Accumulator {
+    private final int arg;
+    private final boolean max;
+    private long[] values = new long[0];
+    private boolean[] seen = new boolean[0];
+
+    LongMinMaxAccumulator(int arg, boolean max) {
+      this.arg = arg;
+      this.max = max;
+    }
+
+    @Override void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+      seen = Arrays.copyOf(seen, capacity);
+    }
+
+    @Override void add(ColumnBatch batch, int[] ids) {
+      final LongVector v = (LongVector) batch.columns[arg];
+      final int n = batch.count();
+      for (int j = 0; j < n; j++) {
+        final int i = batch.row(j);
+        if (v.isNull(i)) {
+          continue;
+        }
+        final int id = ids[i];
+        final long value = v.values[i];
+        if (!seen[id]) {
+          seen[id] = true;
+          values[id] = value;
+        } else if (max ? value > values[id] : value < values[id]) {
+          values[id] = value;
+        }
+      }
+    }
+
+    @Override void write(int id, ColumnVector v, int row) {
+      if (seen[id]) {
+        writeLong(v, row, values[id]);
+      } else {
+        v.setNull(row, true);
+      }
+    }
+  }
+
+  /** Accumulator for {@code MIN} and {@code MAX} of floating-point
+   * values. */
+  private static class DoubleMinMaxAccumulator extends Accumulator {
+    private final int arg;
+    private final boolean max;
+    private double[] values = new double[0];
+    private boolean[] seen = new boolean[0];
+
+    DoubleMinMaxAccumulator(int arg, boolean max) {
+      this.arg = arg;
+      this.max = max;
+    }
+
+    @Override void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+      seen = Arrays.copyOf(seen, capacity);
+    }
+
+    @Override void add(ColumnBatch batch, int[] ids) {
+      final DoubleVector v = (DoubleVector) batch.columns[arg];
+      final int n = batch.count();
+      for (int j = 0; j < n; j++) {
+        final int i = batch.row(j);
+        if (v.isNull(i)) {
+          continue;
+        }
+        final int id = ids[i];
+        final double value = v.values[i];
+        if (!seen[id]) {
+          seen[id] = true;
+          values[id] = value;
+        } else if (max ? value > values[id] : value < values[id]) {
+          values[id] = value;
+        }
+      }
+    }
+
+    @Override void write(int id, ColumnVector v, int row) {
+      if (seen[id]) {
+        writeDouble(v, row, values[id]);
+      } else {
+        v.setNull(row, true);
+      }
+    }
+  }
+
+  /** Accumulator for {@code MIN} and {@code MAX} of character values. */
+  private static class ObjectMinMaxAccumulator extends Accumulator {
+    private final int arg;
+    private final boolean max;
+    private @Nullable Object[] values = new Object[0];
+
+    ObjectMinMaxAccumulator(int arg, boolean max) {
+      this.arg = arg;
+      this.max = max;
+    }
+
+    @Override void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Override void add(ColumnBatch batch, int[] ids) {
+      final ObjectVector v = (ObjectVector) batch.columns[arg];
+      final int n = batch.count();
+      for (int j = 0; j < n; j++) {
+        final int i = batch.row(j);
+        final Comparable value = (Comparable) v.values[i];
+        if (value == null) {
+          continue;
+        }
+        final int id = ids[i];
+        final Comparable current = (Comparable) values[id];
+        if (current == null) {
+          values[id] = value;
+        } else {
+          final int c = value.compareTo(current);
+          if (max ? c > 0 : c < 0) {
+            values[id] = value;
+          }
+        }
+      }
+    }
+
+    @Override void write(int id, ColumnVector v, int row) {
+      v.set(row, values[id]);
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexProgram;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Calc} in
+ * {@link VectorizedConvention vectorized calling convention}.
+ *
+ * <p>Each conjunct of the condition narrows the selection vector of the
+ * input batch; the projected expressions are then evaluated only for the
+ * selected rows. Batches in which no rows remain are skipped. */
+public class VectorizedCalc extends Calc implements VectorizedRel {
+  /** Creates a VectorizedCalc.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public VectorizedCalc(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RexProgram program) {
+    super(cluster, traitSet, ImmutableList.of(), input, program);
+    assert getConvention() instanceof VectorizedConvention;
+    assert !program.containsAggs();
+  }
+
+  /** Creates a VectorizedCalc. */
+  public static VectorizedCalc create(RelNode input, RexProgram program) {
+    final RelOptCluster cluster = input.getCluster();
+    return new VectorizedCalc(cluster,
+        cluster.traitSetOf(VectorizedConvention.INSTANCE), input, program);
+  }
+
+  @Override public VectorizedCalc copy(RelTraitSet traitSet, RelNode child,
+      RexProgram program) {
+    return new VectorizedCalc(getCluster(), traitSet, child, program);
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    return cost == null
+        ? null
+        : cost.multiplyBy(VectorizedConvention.COST_MULTIPLIER);
+  }
+
+  @Override public Enumerable<ColumnBatch> implement(Implementor implementor) {
+    final Enumerable<ColumnBatch> input = implementor.visitChild(getInput());
+    return new AbstractEnumerable<ColumnBatch>() {
+      @Override public Enumerator<ColumnBatch> enumerator() {
+        return new CalcEnumerator(input.enumerator(),
+            VectorExpression.compileCondition(program),
+            VectorExpression.compileProjects(program));
+      }
+    };
+  }
+
+  /** Enumerator that filters and projects batches. */
+  private static class CalcEnumerator implements Enumerator<ColumnBatch> {
+    private final Enumerator<ColumnBatch> input;
+    private final List<VectorExpression> conditions;
+    private final List<VectorExpression> projects;
+    private final ColumnVector[] columns;
+    private @Nullable ColumnBatch current;
+
+    CalcEnumerator(Enumerator<ColumnBatch> input,
+        List<VectorExpression> conditions, List<VectorExpression> projects) {
+      this.input = input;
+      this.conditions = conditions;
+      this.projects = projects;
+      this.columns = new ColumnVector[projects.size()];
+    }
+
+    @Override public ColumnBatch current() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    @Override public boolean moveNext() {
+      batches:
+      while (input.moveNext()) {
+        final ColumnBatch batch = input.current();
+        for (VectorExpression condition : conditions) {
+          VectorExpression.filter(batch, condition);
+          if (batch.count() == 0) {
+            continue batches;
+          }
+        }
+        for (int i = 0; i < columns.length; i++) {
+          columns[i] = projects.get(i).evaluate(batch);
+        }
+        ColumnBatch current = this.current;
+        if (current == null || current.capacity != batch.capacity) {
+          // The output batch shares its column array, which is updated for
+          // each input batch, with this enumerator.
+          current = ColumnBatch.of(columns, batch.capacity);
+          this.current = current;
+        }
+        current.size = batch.size;
+        current.selection = batch.selection;
+        current.selectedCount = batch.selectedCount;
+        return true;
+      }
+      current = null;
+      return false;
+    }
+
+    @Override public void reset() {
+      input.reset();
+      current = null;
+    }
+
+    @Override public void close() {
+      input.close();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTrait;
+import org.apache.calcite.plan.RelTraitDef;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Calling convention whose relational expressions exchange data a batch of
+ * rows at a time, each batch holding one {@link ColumnVector} per column.
+ *
+ * <p>The relational expressions need to implement {@link VectorizedRel}.
+ * Plans are connected to
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention} using
+ * {@link VectorizedToEnumerableConverter} and
+ * {@link EnumerableToVectorizedConverter}.
+ *
+ * @see VectorizedRules
+ */
+public enum VectorizedConvention implements Convention {
+  INSTANCE;
+
+  /** Cost of a vectorized node versus implementing an equivalent node in a
+   * "typical" calling convention. */
+  public static final double COST_MULTIPLIER = 0.5d;
+
+  @Override public String toString() {
+    return getName();
+  }
+
+  @Override public Class getInterface() {
+    return VectorizedRel.class;
+  }
+
+  @Override public String getName() {
+    return "VECTORIZED";
+  }
+
+  @Override public @Nullable RelNode enforce(RelNode input,
+      RelTraitSet required) {
+    return null;
+  }
+
+  @Override public RelTraitDef getTraitDef() {
+    return ConventionTraitDef.INSTANCE;
+  }
+
+  @Override public boolean satisfies(RelTrait trait) {
+    return this == trait;
+  }
+
+  @Override public void register(RelOptPlanner planner) {}
+
+  @Override public boolean canConvertConvention(Convention toConvention) {
+    return false;
+  }
+
+  @Override public boolean useAbstractConvertersForConversion(
+      RelTraitSet fromTraits, RelTraitSet toTraits) {
+    return false;
+  }
+}
@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelNodes;
+import org.apache.calcite.rel.core.CorrelationId;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Join} in
+ * {@link VectorizedConvention vectorized calling convention}.
+ *
+ * <p>Supports inner equi-joins. The right input is the build side: its rows
+ * are copied into column chunks, and rows with equal keys are chained
+ * together. The left input is the probe side: the keys of each batch are
+ * looked up together, and the matching rows of both inputs are gathered a
+ * column at a time into output batches. */
+public class VectorizedHashJoin extends Join implements VectorizedRel {
+  /** Creates a VectorizedHashJoin.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  protected VectorizedHashJoin(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode left, RelNode right, RexNode condition,
+      Set<CorrelationId> variablesSet, JoinRelType joinType) {
+    super(cluster, traitSet, ImmutableList.of(), left, right, condition,
+        variablesSet, joinType);
+    assert getConvention() instanceof VectorizedConvention;
+  }
+
+  /** Creates a VectorizedHashJoin. */
+  public static VectorizedHashJoin create(RelNode left, RelNode right,
+      RexNode condition, Set<CorrelationId> variablesSet,
+      JoinRelType joinType) {
+    final RelOptCluster cluster = left.getCluster();
+    return new VectorizedHashJoin(cluster,
+        cluster.traitSetOf(VectorizedConvention.INSTANCE), left, right,
+        condition, variablesSet, joinType);
+  }
+
+  @Override public VectorizedHashJoin copy(RelTraitSet traitSet,
+      RexNode condition, RelNode left, RelNode right, JoinRelType joinType,
+      boolean semiJoinDone) {
+    return new VectorizedHashJoin(getCluster(), traitSet, left, right,
+        condition, variablesSet, joinType);
+  }
+
+  /** Returns whether a join can be implemented in vectorized convention.
+   *
+   * <p>It must be an inner equi-join, and the keys on each side must have
+   * the same representation. */
+  public static boolean canImplement(Join join) {
+    if (join.getJoinType() != JoinRelType.INNER) {
+      return false;
+    }
+    final JoinInfo joinInfo = join.analyzeCondition();
+    if (!joinInfo.isEqui() || joinInfo.leftKeys.isEmpty()) {
+      return false;
+    }
+    final List<RelDataType> leftTypes =
+        RelOptUtil.getFieldTypeList(join.getLeft().getRowType());
+    final List<RelDataType> rightTypes =
+        RelOptUtil.getFieldTypeList(join.getRight().getRowType());
+    for (int k = 0; k < joinInfo.leftKeys.size(); k++) {
+      final RelDataType leftType = leftTypes.get(joinInfo.leftKeys.get(k));
+      final RelDataType rightType = rightTypes.get(joinInfo.rightKeys.get(k));
+      final VectorType left = VectorType.of(leftType);
+      final VectorType right = VectorType.of(rightType);
+      if (left.isLong() && right.isLong()) {
+        continue;
+      }
+      if (left != right
+          || left == VectorType.OBJECT
+          && leftType.getSqlTypeName() != rightType.getSqlTypeName()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    double rowCount = mq.getRowCount(this);
+
+    // As EnumerableHashJoin, make one of the two orders of the inputs
+    // slightly more expensive, to keep plans stable, and favor plans where
+    // the smaller number of rows comes from the LHS.
+    if (RelNodes.COMPARATOR.compare(left, right) > 0) {
+      rowCount = RelMdUtil.addEpsilon(rowCount);
+    }
+    final double rightRowCount = right.estimateRowCount(mq);
+    final double leftRowCount = left.estimateRowCount(mq);
+    if (Double.isInfinite(leftRowCount)) {
+      rowCount = leftRowCount;
+    } else {
+      rowCount += Util.nLogN(leftRowCount);
+    }
+    if (Double.isInfinite(rightRowCount)) {
+      rowCount = rightRowCount;
+    } else {
+      rowCount += rightRowCount;
+    }
+    return planner.getCostFactory().makeCost(rowCount, 0, 0)
+        .multiplyBy(VectorizedConvention.COST_MULTIPLIER);
+  }
+
+  @Override public Enumerable<ColumnBatch> implement(Implementor implementor) {
+    final Enumerable<ColumnBatch> leftInput = implementor.visitChild(left);
+    final Enumerable<ColumnBatch> rightInput = implementor.visitChild(right);
+    final List<VectorType> rightTypes =
+        ((VectorizedRel) right).getVectorTypes();
+    final List<VectorType> outputTypes = getVectorTypes();
+    final JoinInfo joinInfo = analyzeCondition();
+    final int[] leftKeys = joinInfo.leftKeys.toIntArray();
+    final int[] rightKeys = joinInfo.rightKeys.toIntArray();
+    final VectorType[] keyTypes = new VectorType[rightKeys.length];
+    for (int k = 0; k < rightKeys.length; k++) {
+      keyTypes[k] = rightTypes.get(rightKeys[k]);
+    }
+    final int batchSize = implementor.batchSize;
+    return new AbstractEnumerable<ColumnBatch>() {
+      @Override public Enumerator<ColumnBatch> enumerator() {
+        return new HashJoinEnumerator(leftInput.enumerator(),
+            rightInput.enumerator(), leftKeys, rightKeys, keyTypes,
+            rightTypes, ColumnBatch.create(outputTypes, batchSize));
+      }
+    };
+  }
+
+  /** Enumerator that builds a hash table on the right input, then probes it
+   * with batches of the left input. */
+  private static class HashJoinEnumerator implements Enumerator<ColumnBatch> {
+    private final Enumerator<ColumnBatch> leftInput;
+    private final Enumerator<ColumnBatch> rightInput;
+    private final int[] leftKeys;
+    private final int[] rightKeys;
+    private final VectorType[] keyTypes;
+    private final List<VectorType> rightTypes;
+    private final ColumnBatch output;
+
+    /** Rows of the right input are stored in chunks of
+     * {@code 1 << chunkBits} rows. */
+    private final int chunkBits;
+    private final List<ColumnVector[]> chunks = new ArrayList<>();
+    private int rightRowCount;
+
+    private KeyTable table;
+    /** For each key, the first and last right row with that key. */
+    private int[] head = new int[0];
+    private int[] tail = new int[0];
+    /** For each right row, the next right row with the same key, or -1. */
+    private int[] next = new int[0];
+    private int[] ids = new int[0];
+    private int[] identity = new int[0];
+    private boolean built;
+
+    /** Batch of the left input that is being probed, the position of the
+     * selected row in that batch, and the next right row that matches it
+     * (or -1 if the row's matches have not been looked up yet). */
+    private @Nullable ColumnBatch leftBatch;
+    private int leftPosition;
+    private int rightRow = -1;
+    private boolean leftDone;
+
+    private final int[] outputLeftRows;
+    private final int[] outputRightRows;
+    private int outputCount;
+    private boolean hasCurrent;
+
+    HashJoinEnumerator(Enumerator<ColumnBatch> leftInput,
+        Enumerator<ColumnBatch> rightInput, int[] leftKeys, int[] rightKeys,
+        VectorType[] keyTypes, List<VectorType> rightTypes,
+        ColumnBatch output) {
+      this.leftInput = leftInput;
+      this.rightInput = rightInput;
+      this.leftKeys = leftKeys;
+      this.rightKeys = rightKeys;
+      this.keyTypes = keyTypes;
+      this.rightTypes = rightTypes;
+      this.output = output;
+      this.chunkBits =
+          Integer.SIZE - Integer.numberOfLeadingZeros(output.capacity - 1);
+      this.table = new KeyTable(keyTypes, false);
+      this.outputLeftRows = new int[output.capacity];
+      this.outputRightRows = new int[output.capacity];
+    }
+
+    @Override public ColumnBatch current() {
+      if (!hasCurrent) {
+        throw new NoSuchElementException();
+      }
+      return output;
+    }
+
+    @Override public boolean moveNext() {
+      if (!built) {
+        build();
+        built = true;
+      }
+      hasCurrent = probe();
+      return hasCurrent;
+    }
+
+    private void build() {
+      final int chunkSize = 1 << chunkBits;
+      final int mask = chunkSize - 1;
+      while (rightInput.moveNext()) {
+        final ColumnBatch batch = rightInput.current();
+        final int n = batch.count();
+        if (n == 0) {
+          continue;
+        }
+        if (ids.length < batch.capacity) {
+          ids = new int[batch.capacity];
+          identity = new int[batch.capacity];
+          for (int i = 0; i < identity.length; i++) {
+            identity[i] = i;
+          }
+        }
+        final int[] rows = batch.selection == null ? identity : batch.selection;
+        table.add(batch, rightKeys, ids);
+        ensureKeyCapacity(table.size());
+        if (next.length < rightRowCount + n) {
+          next = Arrays.copyOf(next,
+              Math.max(rightRowCount + n, next.length * 2));
+        }
+        int start = 0;
+        while (start < n) {
+          final int offset = rightRowCount & mask;
+          if (offset == 0) {
+            final ColumnVector[] chunk = new ColumnVector[rightTypes.size()];
+            for (int c = 0; c < chunk.length; c++) {
+              chunk[c] = ColumnVector.create(rightTypes.get(c), chunkSize);
+            }
+            chunks.add(chunk);
+          }
+          final ColumnVector[] chunk = chunks.get(rightRowCount >> chunkBits);
+          final int m = Math.min(n - start, chunkSize - offset);
+          for (int c = 0; c < chunk.length; c++) {
+            chunk[c].gather(batch.columns[c], rows, start, m, offset);
+          }
+          for (int k = 0; k < m; k++) {
+            final int id = ids[rows[start + k]];
+            final int r = rightRowCount + k;
+            next[r] = -1;
+            if (id < 0) {
+              continue; // null key never matches
+            }
+            if (head[id] < 0) {
+              head[id] = r;
+            } else {
+              next[tail[id]] = r;
+            }
+            tail[id] = r;
+          }
+          start += m;
+          rightRowCount += m;
+        }
+      }
+    }
+
+    private void ensureKeyCapacity(int keyCount) {
+      if (head.length < keyCount) {
+        final int oldLength = head.length;
+        final int newLength = Math.max(keyCount, oldLength * 2);
+        head = Arrays.copyOf(head, newLength);
+        tail = Arrays.copyOf(tail, newLength);
+        Arrays.fill(head, oldLength, newLength, -1);
+      }
+    }
+
+    /** Fills the output batch with the next joined rows; returns whether
+     * there were any. */
+    private boolean probe() {
+      if (rightRowCount == 0) {
+        return false;
+      }
+      for (;;) {
+        final ColumnBatch leftBatch = this.leftBatch;
+        if (leftBatch != null) {
+          final int n = leftBatch.count();
+          while (leftPosition < n) {
+            final int i = leftBatch.row(leftPosition);
+            if (rightRow < 0) {
+              final int id = ids[i];
+              rightRow = id < 0 ? -1 : head[id];
+              if (rightRow < 0) {
+                ++leftPosition;
+                continue;
+              }
+            }
+            outputLeftRows[outputCount] = i;
+            outputRightRows[outputCount] = rightRow;
+            ++outputCount;
+            rightRow = next[rightRow];
+            if (rightRow < 0) {
+              ++leftPosition;
+            }
+            if (outputCount == output.capacity) {
+              flush(leftBatch);
+              return true;
+            }
+          }
+          // The left batch is only valid until the next call to moveNext,
+          // so emit the rows that refer to it now.
+          this.leftBatch = null;
+          if (outputCount > 0) {
+            flush(leftBatch);
+            return true;
+          }
+        }
+        if (leftDone || !leftInput.moveNext()) {
+          leftDone = true;
+          return false;
+        }
+        final ColumnBatch batch = leftInput.current();
+        if (ids.length < batch.capacity) {
+          ids = new int[batch.capacity];
+        }
+        table.lookup(batch, leftKeys, ids);
+        this.leftBatch = batch;
+        leftPosition = 0;
+        rightRow = -1;
+      }
+    }
+
+    private void flush(ColumnBatch leftBatch) {
+      output.clear();
+      final int leftCount = leftBatch.columns.length;
+      for (int c = 0; c < leftCount; c++) {
+        output.columns[c].gather(leftBatch.columns[c], outputLeftRows, 0,
+            outputCount, 0);
+      }
+      final int mask = (1 << chunkBits) - 1;
+      for (int c = 0; c < rightTypes.size(); c++) {
+        final ColumnVector v = output.columns[leftCount + c];
+        for (int k = 0; k < outputCount; k++) {
+          final int r = outputRightRows[k];
+          v.copy(k, chunks.get(r >> chunkBits)[c], r & mask);
+        }
+      }
+      output.size = outputCount;
+      outputCount = 0;
+    }
+
+    @Override public void reset() {
+      leftInput.reset();
+      rightInput.reset();
+      chunks.clear();
+      rightRowCount = 0;
+      table = new KeyTable(keyTypes, false);
+      head = new int[0];
+      tail = new int[0];
+      built = false;
+      leftBatch = null;
+      rightRow = -1;
+      leftDone = false;
+      outputCount = 0;
+      hasCurrent = false;
+    }
+
+    @Override public void close() {
+      leftInput.close();
+      rightInput.close();
+    }
+  }
+}
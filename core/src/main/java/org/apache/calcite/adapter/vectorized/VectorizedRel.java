@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.util.Util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Relational expression that uses the
+ * {@link VectorizedConvention vectorized calling convention}.
+ */
+public interface VectorizedRel extends RelNode {
+  /** Creates an enumerable that evaluates this relational expression and
+   * returns its results as a sequence of {@link ColumnBatch}es. */
+  Enumerable<ColumnBatch> implement(Implementor implementor);
+
+  /** Returns the representation of each column in the batches produced by
+   * this relational expression. */
+  default List<VectorType> getVectorTypes() {
+    return Util.transform(getRowType().getFieldList(),
+        (RelDataTypeField field) -> VectorType.of(field.getType()));
+  }
+
+  /** Context in which a tree of {@link VectorizedRel}s is converted into
+   * an executable enumerable. */
+  class Implementor {
+    public final DataContext dataContext;
+    public final int batchSize;
+    private final Map<RelNode, Enumerable<@Nullable Object[]>> inputs =
+        new IdentityHashMap<>();
+
+    public Implementor(DataContext dataContext, int batchSize) {
+      this.dataContext = dataContext;
+      this.batchSize = batchSize;
+    }
+
+    /** Implements a child relational expression. */
+    public Enumerable<ColumnBatch> visitChild(RelNode child) {
+      return ((VectorizedRel) child).implement(this);
+    }
+
+    /** Registers the rows that a converter from enumerable convention will
+     * read. */
+    public void registerInput(EnumerableToVectorizedConverter converter,
+        Enumerable<@Nullable Object[]> rows) {
+      inputs.put(converter, rows);
+    }
+
+    /** Returns the rows that a converter from enumerable convention reads. */
+    public Enumerable<@Nullable Object[]> getInput(
+        EnumerableToVectorizedConverter converter) {
+      return requireNonNull(inputs.get(converter),
+          () -> "no input registered for " + converter);
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.logical.LogicalAggregate;
+import org.apache.calcite.rel.logical.LogicalCalc;
+import org.apache.calcite.rel.logical.LogicalFilter;
+import org.apache.calcite.rel.logical.LogicalJoin;
+import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexProgramBuilder;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Rules and relational operators for the
+ * {@link VectorizedConvention vectorized calling convention}.
+ */
+public class VectorizedRules {
+  private VectorizedRules() {}
+
+  /** Rule that converts a {@link LogicalTableScan} of a
+   * {@link org.apache.calcite.schema.ScannableTable} to a
+   * {@link VectorizedTableScan}. */
+  public static final RelOptRule VECTORIZED_TABLE_SCAN_RULE =
+      VectorizedTableScanRule.DEFAULT_CONFIG
+          .toRule(VectorizedTableScanRule.class);
+
+  /** Rule that converts a {@link LogicalCalc} to a {@link VectorizedCalc}. */
+  public static final RelOptRule VECTORIZED_CALC_RULE =
+      VectorizedCalcRule.DEFAULT_CONFIG.toRule(VectorizedCalcRule.class);
+
+  /** Rule that converts a {@link LogicalFilter} to a
+   * {@link VectorizedCalc}. */
+  public static final RelOptRule VECTORIZED_FILTER_RULE =
+      VectorizedFilterRule.DEFAULT_CONFIG.toRule(VectorizedFilterRule.class);
+
+  /** Rule that converts a {@link LogicalProject} to a
+   * {@link VectorizedCalc}. */
+  public static final RelOptRule VECTORIZED_PROJECT_RULE =
+      VectorizedProjectRule.DEFAULT_CONFIG.toRule(VectorizedProjectRule.class);
+
+  /** Rule that converts a {@link LogicalAggregate} to a
+   * {@link VectorizedAggregate}. */
+  public static final RelOptRule VECTORIZED_AGGREGATE_RULE =
+      VectorizedAggregateRule.DEFAULT_CONFIG
+          .toRule(VectorizedAggregateRule.class);
+
+  /** Rule that converts a {@link LogicalJoin} to a
+   * {@link VectorizedHashJoin}. */
+  public static final RelOptRule VECTORIZED_JOIN_RULE =
+      VectorizedJoinRule.DEFAULT_CONFIG.toRule(VectorizedJoinRule.class);
+
+  /** Rule that converts a relational expression in enumerable convention to
+   * vectorized convention. */
+  public static final RelOptRule ENUMERABLE_TO_VECTORIZED_RULE =
+      EnumerableToVectorizedConverterRule.DEFAULT_CONFIG
+          .toRule(EnumerableToVectorizedConverterRule.class);
+
+  /** Rule that converts a relational expression in vectorized convention to
+   * enumerable convention. */
+  public static final RelOptRule VECTORIZED_TO_ENUMERABLE_RULE =
+      VectorizedToEnumerableConverterRule.DEFAULT_CONFIG
+          .toRule(VectorizedToEnumerableConverterRule.class);
+
+  /** All vectorized rules. */
+  public static final ImmutableList<RelOptRule> RULES =
+      ImmutableList.of(VECTORIZED_TABLE_SCAN_RULE,
+          VECTORIZED_CALC_RULE,
+          VECTORIZED_FILTER_RULE,
+          VECTORIZED_PROJECT_RULE,
+          VECTORIZED_AGGREGATE_RULE,
+          VECTORIZED_JOIN_RULE,
+          ENUMERABLE_TO_VECTORIZED_RULE,
+          VECTORIZED_TO_ENUMERABLE_RULE);
+
+  /** Creates a program that evaluates the condition of a filter. */
+  static RexProgram program(LogicalFilter filter) {
+    final RexBuilder rexBuilder = filter.getCluster().getRexBuilder();
+    final RexProgramBuilder programBuilder =
+        new RexProgramBuilder(filter.getInput().getRowType(), rexBuilder);
+    programBuilder.addIdentity();
+    programBuilder.addCondition(filter.getCondition());
+    return programBuilder.getProgram();
+  }
+
+  /** Creates a program that evaluates the expressions of a project. */
+  static RexProgram program(LogicalProject project) {
+    return RexProgram.create(project.getInput().getRowType(),
+        project.getProjects(), null, project.getRowType(),
+        project.getCluster().getRexBuilder());
+  }
+
+  /** Rule that converts a {@link LogicalTableScan} to vectorized
+   * convention.
+   *
+   * @see #VECTORIZED_TABLE_SCAN_RULE */
+  public static class VectorizedTableScanRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalTableScan.class,
+            scan -> VectorizedTableScan.canHandle(scan.getTable()),
+            Convention.NONE, VectorizedConvention.INSTANCE,
+            "VectorizedTableScanRule")
+        .withRuleFactory(VectorizedTableScanRule::new);
+
+    /** Called from the Config. */
+    protected VectorizedTableScanRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalTableScan scan = (LogicalTableScan) rel;
+      return VectorizedTableScan.create(scan.getCluster(), scan.getTable());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalCalc} to vectorized convention.
+   *
+   * @see #VECTORIZED_CALC_RULE */
+  public static class VectorizedCalcRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalCalc.class,
+            calc -> !calc.containsOver()
+                && VectorExpression.canCompile(calc.getProgram()),
+            Convention.NONE, VectorizedConvention.INSTANCE,
+            "VectorizedCalcRule")
+        .withRuleFactory(VectorizedCalcRule::new);
+
+    /** Called from the Config. */
+    protected VectorizedCalcRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalCalc calc = (LogicalCalc) rel;
+      return VectorizedCalc.create(
+          convert(calc.getInput(),
+              calc.getInput().getTraitSet()
+                  .replace(VectorizedConvention.INSTANCE)),
+          calc.getProgram());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalFilter} to vectorized convention.
+   *
+   * @see #VECTORIZED_FILTER_RULE */
+  public static class VectorizedFilterRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalFilter.class,
+            filter -> !filter.containsOver()
+                && VectorExpression.canCompile(program(filter)),
+            Convention.NONE, VectorizedConvention.INSTANCE,
+            "VectorizedFilterRule")
+        .withRuleFactory(VectorizedFilterRule::new);
+
+    /** Called from the Config. */
+    protected VectorizedFilterRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalFilter filter = (LogicalFilter) rel;
+      return VectorizedCalc.create(
+          convert(filter.getInput(),
+              filter.getInput().getTraitSet()
+                  .replace(VectorizedConvention.INSTANCE)),
+          program(filter));
+    }
+  }
+
+  /** Rule that converts a {@link LogicalProject} to vectorized convention.
+   *
+   * @see #VECTORIZED_PROJECT_RULE */
+  public static class VectorizedProjectRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalProject.class,
+            project -> !project.containsOver()
+                && VectorExpression.canCompile(program(project)),
+            Convention.NONE, VectorizedConvention.INSTANCE,
+            "VectorizedProjectRule")
+        .withRuleFactory(VectorizedProjectRule::new);
+
+    /** Called from the Config. */
+    protected VectorizedProjectRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalProject project = (LogicalProject) rel;
+      return VectorizedCalc.create(
+          convert(project.getInput(),
+              project.getInput().getTraitSet()
+                  .replace(VectorizedConvention.INSTANCE)),
+          program(project));
+    }
+  }
+
+  /** Rule that converts a {@link LogicalAggregate} to vectorized
+   * convention.
+   *
+   * @see #VECTORIZED_AGGREGATE_RULE */
+  public static class VectorizedAggregateRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalAggregate.class,
+            VectorizedAggregate::canImplement,
+            Convention.NONE, VectorizedConvention.INSTANCE,
+            "VectorizedAggregateRule")
+        .withRuleFactory(VectorizedAggregateRule::new);
+
+    /** Called from the Config. */
+    protected VectorizedAggregateRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalAggregate agg = (LogicalAggregate) rel;
+      return VectorizedAggregate.create(
+          convert(agg.getInput(),
+              agg.getInput().getTraitSet()
+                  .replace(VectorizedConvention.INSTANCE)),
+          agg.getGroupSet(), agg.getGroupSets(), agg.getAggCallList());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalJoin} to vectorized convention.
+   *
+   * @see #VECTORIZED_JOIN_RULE */
+  public static class VectorizedJoinRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalJoin.class,
+            VectorizedHashJoin::canImplement,
+            Convention.NONE, VectorizedConvention.INSTANCE,
+            "VectorizedJoinRule")
+        .withRuleFactory(VectorizedJoinRule::new);
+
+    /** Called from the Config. */
+    protected VectorizedJoinRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalJoin join = (LogicalJoin) rel;
+      return VectorizedHashJoin.create(
+          convert(join.getLeft(),
+              join.getLeft().getTraitSet()
+                  .replace(VectorizedConvention.INSTANCE)),
+          convert(join.getRight(),
+              join.getRight().getTraitSet()
+                  .replace(VectorizedConvention.INSTANCE)),
+          join.getCondition(), join.getVariablesSet(), join.getJoinType());
+    }
+  }
+
+  /** Rule that converts any enumerable relational expression to vectorized
+   * convention.
+   *
+   * @see #ENUMERABLE_TO_VECTORIZED_RULE */
+  public static class EnumerableToVectorizedConverterRule
+      extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(RelNode.class,
+            rel -> !(rel instanceof VectorizedToEnumerableConverter)
+                && VectorType.isSupported(rel.getRowType()),
+            EnumerableConvention.INSTANCE, VectorizedConvention.INSTANCE,
+            "EnumerableToVectorizedConverterRule")
+        .withRuleFactory(EnumerableToVectorizedConverterRule::new);
+
+    /** Called from the Config. */
+    protected EnumerableToVectorizedConverterRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      return new EnumerableToVectorizedConverter(rel.getCluster(),
+          rel.getTraitSet().replace(VectorizedConvention.INSTANCE), rel);
+    }
+  }
+
+  /** Rule that converts any vectorized relational expression to enumerable
+   * convention.
+   *
+   * @see #VECTORIZED_TO_ENUMERABLE_RULE */
+  public static class VectorizedToEnumerableConverterRule
+      extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(RelNode.class,
+            rel -> !(rel instanceof EnumerableToVectorizedConverter)
+                && VectorType.isSupported(rel.getRowType()),
+            VectorizedConvention.INSTANCE, EnumerableConvention.INSTANCE,
+            "VectorizedToEnumerableConverterRule")
+        .withRuleFactory(VectorizedToEnumerableConverterRule::new);
+
+    /** Called from the Config. */
+    protected VectorizedToEnumerableConverterRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      return new VectorizedToEnumerableConverter(rel.getCluster(),
+          rel.getTraitSet().replace(EnumerableConvention.INSTANCE), rel);
+    }
+  }
+}
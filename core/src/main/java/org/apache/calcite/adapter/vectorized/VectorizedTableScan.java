@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.schema.ScannableTable;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/** Implementation of {@link org.apache.calcite.rel.core.TableScan} in
+ * {@link VectorizedConvention vectorized calling convention}.
+ *
+ * <p>Reads rows from a {@link ScannableTable} and packs them into
+ * batches. */
+public class VectorizedTableScan extends TableScan implements VectorizedRel {
+  /** Creates a VectorizedTableScan.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  protected VectorizedTableScan(RelOptCluster cluster, RelTraitSet traitSet,
+      RelOptTable table) {
+    super(cluster, traitSet, ImmutableList.of(), table);
+    assert canHandle(table);
+  }
+
+  /** Creates a VectorizedTableScan. */
+  public static VectorizedTableScan create(RelOptCluster cluster,
+      RelOptTable table) {
+    return new VectorizedTableScan(cluster,
+        cluster.traitSetOf(VectorizedConvention.INSTANCE), table);
+  }
+
+  /** Returns whether a table can be scanned in vectorized convention. */
+  public static boolean canHandle(RelOptTable table) {
+    return table.maybeUnwrap(ScannableTable.class).isPresent()
+        && VectorType.isSupported(table.getRowType());
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    assert inputs.isEmpty();
+    return new VectorizedTableScan(getCluster(), traitSet, table);
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    return cost == null
+        ? null
+        : cost.multiplyBy(VectorizedConvention.COST_MULTIPLIER);
+  }
+
+  @Override public Enumerable<ColumnBatch> implement(Implementor implementor) {
+    final ScannableTable scannableTable =
+        requireNonNull(table.unwrap(ScannableTable.class),
+            () -> "not scannable: " + table);
+    return Batches.fromRows(scannableTable.scan(implementor.dataContext),
+        getVectorTypes(), implementor.batchSize);
+  }
+}
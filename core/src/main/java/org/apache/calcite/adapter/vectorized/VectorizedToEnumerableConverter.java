@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vectorized;
+
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.adapter.enumerable.JavaRowFormat;
+import org.apache.calcite.adapter.enumerable.PhysType;
+import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.util.BuiltInMethod;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relational expression that converts an input of
+ * {@link VectorizedConvention vectorized calling convention} into
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
+ *
+ * <p>The generated code implements each
+ * {@link EnumerableToVectorizedConverter} in the vectorized tree as an
+ * ordinary enumerable, then calls
+ * {@link Batches#execute(org.apache.calcite.DataContext, VectorizedRel, Enumerable[])}
+ * to run the tree over those inputs.
+ */
+public class VectorizedToEnumerableConverter extends ConverterImpl
+    implements EnumerableRel {
+  protected VectorizedToEnumerableConverter(RelOptCluster cluster,
+      RelTraitSet traits, RelNode input) {
+    super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new VectorizedToEnumerableConverter(getCluster(), traitSet,
+        sole(inputs));
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    return cost == null ? null : cost.multiplyBy(.1);
+  }
+
+  @Override public Result implement(EnumerableRelImplementor implementor,
+      Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final List<Expression> inputs = new ArrayList<>();
+    for (EnumerableToVectorizedConverter converter
+        : EnumerableToVectorizedConverter.collect(getInput())) {
+      final Result result =
+          ((EnumerableRel) converter.getInput())
+              .implement(implementor, Prefer.ARRAY);
+      final Expression input = builder.append("input", result.block);
+      inputs.add(
+          builder.append("rows",
+              result.physType.convertTo(input, JavaRowFormat.ARRAY)));
+    }
+    final PhysType physType =
+        PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(),
+            JavaRowFormat.ARRAY);
+    final Expression rows =
+        builder.append("vectorized",
+            Expressions.call(BuiltInMethod.VECTORIZED_EXECUTE.method,
+                implementor.getRootExpression(),
+                implementor.stash((VectorizedRel) getInput(),
+                    VectorizedRel.class),
+                Expressions.newArrayInit(Enumerable.class, inputs)));
+    builder.add(
+        getRowType().getFieldCount() == 1
+            ? Expressions.call(BuiltInMethod.SLICE0.method, rows)
+            : rows);
+    return implementor.result(physType, builder.toBlock());
+  }
+}
@@ -110,4 +110,30 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   boolean lenientOperatorLookup();
   /** Returns the value of {@link CalciteConnectionProperty#TOPDOWN_OPT}. */
   boolean topDownOpt();
+  /** Returns the value of {@link CalciteConnectionProperty#VECTORIZED}. */
+  boolean vectorized();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#HASH_JOIN_MEMORY_BUDGET}. */
+  long hashJoinMemoryBudget();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#SORT_MEMORY_BUDGET}. */
+  long sortMemoryBudget();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PARALLELISM}. */
+  int parallelism();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PLAN_CACHE_SIZE}. */
+  int planCacheSize();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PLANNER_PARALLELISM}. */
+  int plannerParallelism();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PLANNER_PROFILE}. */
+  boolean plannerProfile();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#REOPTIMIZE_THRESHOLD}. */
+  int reoptimizeThreshold();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#SUBPLAN_CACHE_SIZE}. */
+  int subplanCacheSize();
 }
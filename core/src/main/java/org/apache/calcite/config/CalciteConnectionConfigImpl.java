@@ -208,4 +208,46 @@ public boolean isSet(CalciteConnectionProperty property) {
   @Override public boolean topDownOpt() {
     return CalciteConnectionProperty.TOPDOWN_OPT.wrap(properties).getBoolean();
   }
+
+  @Override public boolean vectorized() {
+    return CalciteConnectionProperty.VECTORIZED.wrap(properties).getBoolean();
+  }
+
+  @Override public long hashJoinMemoryBudget() {
+    return CalciteConnectionProperty.HASH_JOIN_MEMORY_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  @Override public long sortMemoryBudget() {
+    return CalciteConnectionProperty.SORT_MEMORY_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  @Override public int parallelism() {
+    return CalciteConnectionProperty.PARALLELISM.wrap(properties).getInt();
+  }
+
+  @Override public int planCacheSize() {
+    return CalciteConnectionProperty.PLAN_CACHE_SIZE.wrap(properties).getInt();
+  }
+
+  @Override public int plannerParallelism() {
+    return CalciteConnectionProperty.PLANNER_PARALLELISM.wrap(properties)
+        .getInt();
+  }
+
+  @Override public boolean plannerProfile() {
+    return CalciteConnectionProperty.PLANNER_PROFILE.wrap(properties)
+        .getBoolean();
+  }
+
+  @Override public int reoptimizeThreshold() {
+    return CalciteConnectionProperty.REOPTIMIZE_THRESHOLD.wrap(properties)
+        .getInt();
+  }
+
+  @Override public int subplanCacheSize() {
+    return CalciteConnectionProperty.SUBPLAN_CACHE_SIZE.wrap(properties)
+        .getInt();
+  }
 }
@@ -178,7 +178,68 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
   LENIENT_OPERATOR_LOOKUP("lenientOperatorLookup", Type.BOOLEAN, false, false),
 
   /** Whether to enable top-down optimization in Volcano planner. */
-  TOPDOWN_OPT("topDownOpt", Type.BOOLEAN, CalciteSystemProperty.TOPDOWN_OPT.value(), false);
+  TOPDOWN_OPT("topDownOpt", Type.BOOLEAN, CalciteSystemProperty.TOPDOWN_OPT.value(), false),
+
+  /** Whether the planner may implement queries using the vectorized
+   * calling convention, which processes data a batch of rows at a time.
+   * Default false. */
+  VECTORIZED("vectorized", Type.BOOLEAN, false, false),
+
+  /** Estimated number of bytes of rows that a hash join may hold in memory
+   * for its build input; if the build input is larger, the join partitions
+   * both inputs to temporary files. Default 0, which means unlimited. */
+  HASH_JOIN_MEMORY_BUDGET("hashJoinMemoryBudget", Type.NUMBER, 0L, false),
+
+  /** Estimated number of bytes of rows that a sort may hold in memory; if
+   * its input is larger, the sort writes sorted runs to temporary files and
+   * merges them. Default 0, which means unlimited. */
+  SORT_MEMORY_BUDGET("sortMemoryBudget", Type.NUMBER, 0L, false),
+
+  /** Number of threads that may execute a query. If greater than 1,
+   * pipelines that scan a {@link org.apache.calcite.schema.SplittableTable}
+   * are split into morsels that are processed concurrently by the common
+   * fork-join pool, at most this many at a time. Default 0, which means that
+   * queries run in a single thread. */
+  PARALLELISM("parallelism", Type.NUMBER, 0, false),
+
+  /** Maximum number of prepared statements that the connection's plan cache
+   * holds. Statements that differ only in the values of literals in
+   * comparisons share a plan. Default 0, which means that plans are not
+   * cached. */
+  PLAN_CACHE_SIZE("planCacheSize", Type.NUMBER, 0, false),
+
+  /** Number of threads on which the Volcano planner fires rules. If greater
+   * than 1, and top-down optimization is disabled, the planner fires batches
+   * of rule matches concurrently, and applies their effects in a fixed
+   * order, so that the chosen plan does not depend on the number of threads;
+   * it may differ, however, from the plan chosen with 1 thread. Only rules
+   * that implement {@link org.apache.calcite.rel.rules.ThreadSafeRule} fire
+   * concurrently. Default 1. */
+  PLANNER_PARALLELISM("plannerParallelism", Type.NUMBER, 1, false),
+
+  /** Whether to profile the planner. If true, each time a statement is
+   * prepared, Calcite records the work done by each rule and each kind of
+   * metadata, and passes a {@link org.apache.calcite.plan.RelOptProfiler} to
+   * {@link org.apache.calcite.runtime.Hook#PLANNER_PROFILE}. Default
+   * false. */
+  PLANNER_PROFILE("plannerProfile", Type.BOOLEAN, false, false),
+
+  /** Ratio between the actual and the estimated row count of a join, a
+   * spool or an input of a join beyond which a query is re-planned, using
+   * actual row counts, the next time it is executed. If positive, the
+   * connection records the row counts of those expressions each time a query
+   * is executed, and the planner uses them instead of estimates. Queries
+   * that have dynamic parameters, including queries whose literals the plan
+   * cache replaces with parameters, do not record row counts. Default 0,
+   * which means that row counts are not recorded. */
+  REOPTIMIZE_THRESHOLD("reoptimizeThreshold", Type.NUMBER, 0, false),
+
+  /** Maximum number of distinct subtrees whose optimized plans the
+   * connection's subplan cache holds. A query that contains a join subtree
+   * that an earlier query optimized reuses that subtree's plans rather than
+   * exploring it again. Default 0, which means that subplans are not
+   * cached. */
+  SUBPLAN_CACHE_SIZE("subplanCacheSize", Type.NUMBER, 0, false);
 
   private final String camelName;
   private final Type type;
@@ -103,6 +103,14 @@
   public static final CalciteSystemProperty<Boolean> ENABLE_REX_DIGEST_NORMALIZE =
       booleanProperty("calcite.enable.rexnode.digest.normalize", true);
 
+  /**
+   * Whether {@link org.apache.calcite.rex.RexBuilder} interns the expressions
+   * it creates, so that structurally identical expressions are the same
+   * instance. This is the default for builders that do not specify it.
+   */
+  public static final CalciteSystemProperty<Boolean> REX_INTERN =
+      booleanProperty("calcite.rex.intern", false);
+
   /**
    *  Whether to follow the SQL standard strictly.
    */
@@ -334,6 +342,44 @@
   public static final CalciteSystemProperty<Integer> METADATA_HANDLER_CACHE_MAXIMUM_SIZE =
       intProperty("calcite.metadata.handler.cache.maximum.size", 1000);
 
+  /**
+   * The maximum number of relational expressions for which a
+   * {@link org.apache.calcite.rel.metadata.RelMetadataQuery} caches metadata.
+   *
+   * <p>When the limit is reached, the metadata of the least recently used
+   * relational expression is discarded.</p>
+   *
+   * <p>If the value is less than 0, there is no limit.</p>
+   */
+  public static final CalciteSystemProperty<Integer> METADATA_CACHE_MAXIMUM_SIZE =
+      intProperty("calcite.metadata.cache.maximum.size", 100_000);
+
+  /**
+   * The maximum number of compiled {@code LIKE}, {@code SIMILAR TO} and
+   * regular expression patterns held by
+   * {@link org.apache.calcite.runtime.StringMatcher}.
+   *
+   * <p>When the limit is reached, the least recently used pattern is
+   * discarded.</p>
+   *
+   * <p>If the value is less than 0, there is no limit.</p>
+   */
+  public static final CalciteSystemProperty<Integer> PATTERN_CACHE_MAXIMUM_SIZE =
+      intProperty("calcite.pattern.cache.maximum.size", 1000);
+
+  /**
+   * The maximum number of expressions whose observed row counts and
+   * versions are held by
+   * {@link org.apache.calcite.plan.volcano.CardinalityFeedback}.
+   *
+   * <p>When the limit is reached, the least recently used expression is
+   * discarded.</p>
+   *
+   * <p>If the value is less than 0, there is no limit.</p>
+   */
+  public static final CalciteSystemProperty<Integer> CARDINALITY_FEEDBACK_MAXIMUM_SIZE =
+      intProperty("calcite.cardinality.feedback.maximum.size", 10_000);
+
   /**
    * The maximum size of the cache used for storing Bindable objects, instantiated via
    * dynamically generated Java classes.
@@ -368,6 +414,19 @@
       intProperty("calcite.bindable.cache.concurrencyLevel", 1,
           v -> v >= 1 && v <= Integer.MAX_VALUE);
 
+  /**
+   * Directory in which the bytecode of classes generated for Bindable objects is persisted, so
+   * that it can be reused by later queries and by other JVMs without invoking the Java compiler.
+   *
+   * <p>Entries are keyed by a hash of the generated source code and the Calcite version, so
+   * entries written by a different version of Calcite are never read.</p>
+   *
+   * <p>The default value is null, which disables the on-disk cache.</p>
+   */
+  public static final CalciteSystemProperty<@Nullable String> BINDABLE_CACHE_DIRECTORY =
+      new CalciteSystemProperty<>("calcite.bindable.cache.directory",
+          Function.<@Nullable String>identity());
+
   private static CalciteSystemProperty<Boolean> booleanProperty(String key,
       boolean defaultValue) {
     // Note that "" -> true (convenient for command-lines flags like '-Dflag')
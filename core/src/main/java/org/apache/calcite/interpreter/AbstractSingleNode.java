@@ -24,6 +24,10 @@
  * @param <T> Type of relational expression
  */
 abstract class AbstractSingleNode<T extends SingleRel> implements Node {
+  /** Maximum number of rows that a node reads from its source at a time, so
+   * that it can evaluate expressions for a block of rows at once. */
+  static final int BLOCK_SIZE = 256;
+
   protected final Source source;
   protected final Sink sink;
   protected final T rel;
@@ -34,6 +38,20 @@
     this.sink = compiler.sink(rel);
   }
 
+  /** Reads rows from the source into an array, and returns the number of
+   * rows read.
+   *
+   * <p>If the result is less than the length of the array, the source is
+   * exhausted, and this method must not be called again. */
+  protected int receive(Row[] rows) {
+    int n = 0;
+    Row row;
+    while (n < rows.length && (row = source.receive()) != null) {
+      rows[n++] = row;
+    }
+    return n;
+  }
+
   @Override public void close() {
     source.close();
   }
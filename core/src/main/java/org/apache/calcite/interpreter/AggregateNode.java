@@ -66,7 +66,8 @@
  * Interpreter node that implements an
  * {@link org.apache.calcite.rel.core.Aggregate}.
  */
-public class AggregateNode extends AbstractSingleNode<Aggregate> {
+public class AggregateNode extends AbstractSingleNode<Aggregate>
+    implements PushNode {
   private final List<Grouping> groups = new ArrayList<>();
   private final ImmutableBitSet unionGroups;
   private final int outputRowLength;
@@ -100,9 +101,7 @@ public AggregateNode(Compiler compiler, Aggregate rel) {
   @Override public void run() throws InterruptedException {
     Row r;
     while ((r = source.receive()) != null) {
-      for (Grouping group : groups) {
-        group.send(r);
-      }
+      push(r);
     }
 
     for (Grouping group : groups) {
@@ -110,6 +109,17 @@ public AggregateNode(Compiler compiler, Aggregate rel) {
     }
   }
 
+  @Override public void push(Row row) {
+    for (Grouping group : groups) {
+      group.send(row);
+    }
+  }
+
+  @Override public boolean retainsRows() {
+    // Keys are copied, and accumulators keep only the values they compute
+    return false;
+  }
+
   private AccumulatorFactory getAccumulator(final AggregateCall call,
       boolean ignoreFilter) {
     if (call.filterArg >= 0 && !ignoreFilter) {
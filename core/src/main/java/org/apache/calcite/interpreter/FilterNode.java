@@ -20,13 +20,19 @@
 
 import com.google.common.collect.ImmutableList;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 /**
  * Interpreter node that implements a
  * {@link org.apache.calcite.rel.core.Filter}.
  */
-public class FilterNode extends AbstractSingleNode<Filter> {
+public class FilterNode extends AbstractSingleNode<Filter>
+    implements PushNode {
   private final Scalar condition;
   private final Context context;
+  private @Nullable Object[][] values = new Object[BLOCK_SIZE][];
+  private int[] selection = new int[BLOCK_SIZE];
+  private Row[] selectedRows = new Row[BLOCK_SIZE];
 
   public FilterNode(Compiler compiler, Filter rel) {
     super(compiler, rel);
@@ -37,13 +43,45 @@ public FilterNode(Compiler compiler, Filter rel) {
   }
 
   @Override public void run() throws InterruptedException {
-    Row row;
-    while ((row = source.receive()) != null) {
-      context.values = row.getValues();
-      Boolean b = (Boolean) condition.execute(context);
-      if (b != null && b) {
-        sink.send(row);
-      }
+    final Row[] rows = new Row[BLOCK_SIZE];
+    int count;
+    do {
+      count = receive(rows);
+      push(rows, count);
+    } while (count == rows.length);
+  }
+
+  @Override public void push(Row row) throws InterruptedException {
+    values[0] = row.getValues();
+    if (condition.executeFilter(context, values, 1, selection) == 1) {
+      sink.send(row);
+    }
+  }
+
+  @Override public void push(Row[] rows, int count)
+      throws InterruptedException {
+    if (count > values.length) {
+      values = new Object[count][];
+      selection = new int[count];
+      selectedRows = new Row[count];
     }
+    for (int i = 0; i < count; i++) {
+      values[i] = rows[i].getValues();
+    }
+    final int selectedCount =
+        condition.executeFilter(context, values, count, selection);
+    if (selectedCount == count) {
+      sink.send(rows, count);
+      return;
+    }
+    for (int j = 0; j < selectedCount; j++) {
+      selectedRows[j] = rows[selection[j]];
+    }
+    sink.send(selectedRows, selectedCount);
+  }
+
+  @Override public boolean retainsRows() {
+    // Rows are sent on unchanged
+    return sink.retainsRows();
   }
 }
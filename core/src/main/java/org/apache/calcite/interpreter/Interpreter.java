@@ -189,16 +189,39 @@ private static class EnumeratorSource implements Source {
     }
   }
 
-  /** Implementation of {@link Sink} using a {@link java.util.ArrayDeque}. */
+  /** Implementation of {@link Sink} using a {@link java.util.ArrayDeque}.
+   *
+   * <p>If the consumer is a {@link PushNode}, rows are pushed to it rather
+   * than added to the queue. */
   private static class ListSink implements Sink {
     final ArrayDeque<Row> list;
+    @Nullable PushNode consumer;
 
     private ListSink(ArrayDeque<Row> list) {
       this.list = list;
     }
 
     @Override public void send(Row row) throws InterruptedException {
-      list.add(row);
+      if (consumer != null) {
+        consumer.push(row);
+      } else {
+        list.add(row);
+      }
+    }
+
+    @Override public void send(Row[] rows, int count)
+        throws InterruptedException {
+      if (consumer != null) {
+        consumer.push(rows, count);
+      } else {
+        for (int i = 0; i < count; i++) {
+          list.add(rows[i]);
+        }
+      }
+    }
+
+    @Override public boolean retainsRows() {
+      return consumer == null || consumer.retainsRows();
     }
 
     @Override public void end() throws InterruptedException {
@@ -371,6 +394,11 @@ Pair<RelNode, Map<RelNode, NodeInfo>> visitRoot(RelNode p) {
       final NodeInfo nodeInfo = nodes.get(p);
       assert nodeInfo != null;
       nodeInfo.node = node;
+      if (node instanceof PushNode) {
+        final PushNode pushNode = (PushNode) node;
+        Ord.forEach(Util.first(inputs, p.getInputs()),
+            (input, i) -> fuse(input, new Edge(finalP, i), pushNode));
+      }
       if (inputs != null) {
         for (int i = 0; i < inputs.size(); i++) {
           final RelNode input = inputs.get(i);
@@ -379,6 +407,21 @@ Pair<RelNode, Map<RelNode, NodeInfo>> visitRoot(RelNode p) {
       }
     }
 
+    /** Connects the sink of an input directly to a node that consumes it, if
+     * the input has a sink and no other consumers. */
+    private void fuse(RelNode input, Edge edge, PushNode consumer) {
+      final NodeInfo nodeInfo = nodes.get(input);
+      if (nodeInfo == null
+          || nodeInfo.rowEnumerable != null
+          || nodeInfo.sinks.size() != 1) {
+        return;
+      }
+      final ListSink sink = nodeInfo.sinks.get(edge);
+      if (sink != null) {
+        sink.consumer = consumer;
+      }
+    }
+
     /** Fallback rewrite method.
      *
      * <p>Overriding methods (each with a different sub-class of {@link RelNode}
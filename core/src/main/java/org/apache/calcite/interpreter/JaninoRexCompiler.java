@@ -37,6 +37,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexProgram;
 import org.apache.calcite.rex.RexProgramBuilder;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.sql.validate.SqlConformance;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
 import org.apache.calcite.util.BuiltInMethod;
@@ -88,11 +89,8 @@ public JaninoRexCompiler(RexBuilder rexBuilder) {
 
     // public void execute(Context, Object[] outputValues)
     final RexToLixTranslator.InputGetter inputGetter =
-        new RexToLixTranslator.InputGetterImpl(
-            Expressions.field(context_,
-                BuiltInMethod.CONTEXT_VALUES.field),
-            PhysTypeImpl.of(javaTypeFactory, inputRowType,
-                JavaRowFormat.ARRAY, false));
+        inputGetter(javaTypeFactory, inputRowType,
+            Expressions.field(context_, BuiltInMethod.CONTEXT_VALUES.field));
     final Function1<String, RexToLixTranslator.InputGetter> correlates = a0 -> {
       throw new UnsupportedOperationException();
     };
@@ -110,8 +108,127 @@ public JaninoRexCompiler(RexBuilder rexBuilder) {
                     Expressions.arrayIndex(outputValues_,
                         Expressions.constant(i)),
                     expression))));
+
+    final List<MemberDeclaration> batchDeclarations = new ArrayList<>();
+    batchDeclarations.add(
+        executeBatch(program, javaTypeFactory, conformance, staticList,
+            context_, root, inputRowType, correlates));
+    if (nodes.size() == 1
+        && nodes.get(0).getType().getSqlTypeName() == SqlTypeName.BOOLEAN) {
+      final RexProgramBuilder conditionProgramBuilder =
+          new RexProgramBuilder(inputRowType, rexBuilder);
+      conditionProgramBuilder.addCondition(nodes.get(0));
+      batchDeclarations.add(
+          executeFilter(conditionProgramBuilder.getProgram(), javaTypeFactory,
+              conformance, context_, inputRowType, correlates));
+    }
     return baz(context_, outputValues_, list.toBlock(),
-        staticList.toBlock().statements);
+        staticList.toBlock().statements, batchDeclarations);
+  }
+
+  /** Generates a method that implements
+   * {@link Scalar#executeBatch(Context, Object[][], int, Object[][])},
+   * evaluating the expressions for each row of a block in one loop. */
+  private static MemberDeclaration executeBatch(RexProgram program,
+      JavaTypeFactoryImpl javaTypeFactory, SqlConformance conformance,
+      BlockBuilder staticList, ParameterExpression context_, Expression root,
+      RelDataType inputRowType,
+      Function1<String, RexToLixTranslator.InputGetter> correlates) {
+    final ParameterExpression rows_ =
+        Expressions.parameter(Object[][].class, "rows");
+    final ParameterExpression count_ =
+        Expressions.parameter(int.class, "count");
+    final ParameterExpression results_ =
+        Expressions.parameter(Object[][].class, "results");
+    final ParameterExpression i_ = Expressions.parameter(int.class, "i");
+
+    // for (int i = 0; i < count; i++) {
+    //   results[i][0] = <<expression 0 of rows[i]>>;
+    //   ...
+    // }
+    final BlockBuilder body = new BlockBuilder();
+    final List<Expression> expressionList =
+        RexToLixTranslator.translateProjects(program, javaTypeFactory,
+            conformance, body, staticList, null, root,
+            inputGetter(javaTypeFactory, inputRowType,
+                Expressions.arrayIndex(rows_, i_)),
+            correlates);
+    Ord.forEach(expressionList, (expression, i) ->
+        body.add(
+            Expressions.statement(
+                Expressions.assign(
+                    Expressions.arrayIndex(
+                        Expressions.arrayIndex(results_, i_),
+                        Expressions.constant(i)),
+                    expression))));
+    return Expressions.methodDecl(Modifier.PUBLIC, void.class,
+        BuiltInMethod.SCALAR_EXECUTE_BATCH.method.getName(),
+        ImmutableList.of(context_, rows_, count_, results_),
+        Expressions.block(loop(i_, count_, body.toBlock())));
+  }
+
+  /** Generates a method that implements
+   * {@link Scalar#executeFilter(Context, Object[][], int, int[])},
+   * evaluating a boolean expression for each row of a block in one loop and
+   * recording the positions of rows for which it is true. */
+  private static MemberDeclaration executeFilter(RexProgram program,
+      JavaTypeFactoryImpl javaTypeFactory, SqlConformance conformance,
+      ParameterExpression context_, RelDataType inputRowType,
+      Function1<String, RexToLixTranslator.InputGetter> correlates) {
+    final ParameterExpression rows_ =
+        Expressions.parameter(Object[][].class, "rows");
+    final ParameterExpression count_ =
+        Expressions.parameter(int.class, "count");
+    final ParameterExpression selection_ =
+        Expressions.parameter(int[].class, "selection");
+    final ParameterExpression i_ = Expressions.parameter(int.class, "i");
+    final ParameterExpression n_ = Expressions.parameter(int.class, "n");
+
+    // int n = 0;
+    // for (int i = 0; i < count; i++) {
+    //   if (<<condition on rows[i]>>) {
+    //     selection[n++] = i;
+    //   }
+    // }
+    // return n;
+    final BlockBuilder body = new BlockBuilder();
+    final Expression condition =
+        RexToLixTranslator.translateCondition(program, javaTypeFactory, body,
+            inputGetter(javaTypeFactory, inputRowType,
+                Expressions.arrayIndex(rows_, i_)),
+            correlates, conformance);
+    body.add(
+        Expressions.ifThen(condition,
+            Expressions.statement(
+                Expressions.assign(
+                    Expressions.arrayIndex(selection_,
+                        Expressions.postIncrementAssign(n_)),
+                    i_))));
+    return Expressions.methodDecl(Modifier.PUBLIC, int.class,
+        BuiltInMethod.SCALAR_EXECUTE_FILTER.method.getName(),
+        ImmutableList.of(context_, rows_, count_, selection_),
+        Expressions.block(
+            Expressions.declare(0, n_, Expressions.constant(0)),
+            loop(i_, count_, body.toBlock()),
+            Expressions.return_(null, n_)));
+  }
+
+  private static RexToLixTranslator.InputGetter inputGetter(
+      JavaTypeFactoryImpl javaTypeFactory, RelDataType inputRowType,
+      Expression values) {
+    return new RexToLixTranslator.InputGetterImpl(values,
+        PhysTypeImpl.of(javaTypeFactory, inputRowType, JavaRowFormat.ARRAY,
+            false));
+  }
+
+  /** Returns a statement {@code for (int i = 0; i < count; i++) body}. */
+  private static Statement loop(ParameterExpression i_,
+      ParameterExpression count_, BlockStatement body) {
+    return Expressions.for_(
+        Expressions.declare(0, i_, Expressions.constant(0)),
+        Expressions.lessThan(i_, count_),
+        Expressions.preIncrementAssign(i_),
+        body);
   }
 
   /** Given a method that implements {@link Scalar#execute(Context, Object[])},
@@ -120,6 +237,15 @@ public JaninoRexCompiler(RexBuilder rexBuilder) {
   static Scalar.Producer baz(ParameterExpression context_,
       ParameterExpression outputValues_, BlockStatement block,
       List<Statement> declList) {
+    return baz(context_, outputValues_, block, declList, ImmutableList.of());
+  }
+
+  /** Given a method that implements {@link Scalar#execute(Context, Object[])},
+   * adds a bridge method that implements {@link Scalar#execute(Context)},
+   * adds other methods of {@link Scalar}, and compiles. */
+  static Scalar.Producer baz(ParameterExpression context_,
+      ParameterExpression outputValues_, BlockStatement block,
+      List<Statement> declList, List<MemberDeclaration> extraDeclarations) {
     final List<MemberDeclaration> declarations = new ArrayList<>();
     final List<MemberDeclaration> innerDeclarations = new ArrayList<>();
 
@@ -182,6 +308,7 @@ static Scalar.Producer baz(ParameterExpression context_,
         Expressions.methodDecl(Modifier.PUBLIC, Object.class,
             BuiltInMethod.SCALAR_EXECUTE1.method.getName(),
             ImmutableList.of(context_), builder.toBlock()));
+    innerDeclarations.addAll(extraDeclarations);
 
     final ClassDeclaration classDeclaration =
         Expressions.classDecl(Modifier.PUBLIC, "Buzz", null,
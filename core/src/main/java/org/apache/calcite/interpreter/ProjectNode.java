@@ -18,14 +18,24 @@
 
 import org.apache.calcite.rel.core.Project;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 /**
  * Interpreter node that implements a
  * {@link org.apache.calcite.rel.core.Project}.
  */
-public class ProjectNode extends AbstractSingleNode<Project> {
+public class ProjectNode extends AbstractSingleNode<Project>
+    implements PushNode {
   private final Scalar scalar;
   private final Context context;
   private final int projectCount;
+  private @Nullable Object[][] values = new Object[BLOCK_SIZE][];
+  private @Nullable Object[][] results = new Object[BLOCK_SIZE][];
+  /** Rows that are overwritten and sent for each block of input rows, if the
+   * sink does not retain rows; created on first use, when all nodes are
+   * connected. */
+  private Row @Nullable [] reusableRows;
+  private boolean reusableRowsChecked;
 
   public ProjectNode(Compiler compiler, Project rel) {
     super(compiler, rel);
@@ -36,12 +46,64 @@ public ProjectNode(Compiler compiler, Project rel) {
   }
 
   @Override public void run() throws InterruptedException {
-    Row row;
-    while ((row = source.receive()) != null) {
-      context.values = row.getValues();
-      Object[] values = new Object[projectCount];
-      scalar.execute(context, values);
-      sink.send(new Row(values));
+    final Row[] rows = new Row[BLOCK_SIZE];
+    int count;
+    do {
+      count = receive(rows);
+      push(rows, count);
+    } while (count == rows.length);
+  }
+
+  @Override public void push(Row row) throws InterruptedException {
+    final Row[] reusableRows = reusableRows(1);
+    final Row output = reusableRows != null
+        ? reusableRows[0]
+        : new Row(new Object[projectCount]);
+    context.values = row.getValues();
+    scalar.execute(context, output.getValues());
+    sink.send(output);
+  }
+
+  @Override public void push(Row[] rows, int count)
+      throws InterruptedException {
+    if (count > values.length) {
+      values = new Object[count][];
+      results = new Object[count][];
+    }
+    final Row[] reusableRows = reusableRows(count);
+    final Row[] outputs = reusableRows != null ? reusableRows : new Row[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = rows[i].getValues();
+      if (reusableRows == null) {
+        outputs[i] = new Row(new Object[projectCount]);
+      }
+      results[i] = outputs[i].getValues();
     }
+    scalar.executeBatch(context, values, count, results);
+    sink.send(outputs, count);
+  }
+
+  /** Returns an array of at least {@code count} rows that can be
+   * overwritten, or null if the sink retains rows. */
+  private Row @Nullable [] reusableRows(int count) {
+    if (!reusableRowsChecked) {
+      reusableRowsChecked = true;
+      if (!sink.retainsRows()) {
+        reusableRows = new Row[0];
+      }
+    }
+    Row[] rows = reusableRows;
+    if (rows != null && rows.length < count) {
+      rows = new Row[Math.max(count, BLOCK_SIZE)];
+      for (int i = 0; i < rows.length; i++) {
+        rows[i] = new Row(new Object[projectCount]);
+      }
+      reusableRows = rows;
+    }
+    return rows;
+  }
+
+  @Override public boolean retainsRows() {
+    return false;
   }
 }
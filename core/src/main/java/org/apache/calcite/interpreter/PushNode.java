@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.interpreter;
+
+/**
+ * Relational expression that can be executed using an interpreter, and can
+ * process each row of its input as soon as the input produces it.
+ *
+ * <p>If the input of a {@code PushNode} has no other consumers, the
+ * interpreter fuses them: the sink of the input calls {@link #push(Row)}
+ * (or {@link #push(Row[], int)}, for a block of rows) directly, instead of
+ * storing rows in a queue for {@link #run()} to read later. A chain of such
+ * nodes processes each row to the end of the chain before the next row is
+ * produced, so memory use does not grow with the size of the intermediate
+ * results. Queues remain only at pipeline breakers, such as sort, aggregate
+ * and join, which are not {@code PushNode}s.
+ *
+ * <p>When a node is fused with its input, the {@link Source} it reads in
+ * {@link #run()} is empty.
+ */
+public interface PushNode extends Node {
+  /** Processes a row from the input. */
+  void push(Row row) throws InterruptedException;
+
+  /** Processes the first {@code count} rows of a block from the input, in
+   * order.
+   *
+   * <p>This node must not keep a reference to the array. The default
+   * implementation calls {@link #push(Row)} for each row.
+   *
+   * @see Sink#send(Row[], int) */
+  default void push(Row[] rows, int count) throws InterruptedException {
+    for (int i = 0; i < count; i++) {
+      push(rows[i]);
+    }
+  }
+
+  /** Returns whether this node may keep a reference to a row, or to its
+   * values, after {@link #push(Row)} returns.
+   *
+   * @see Sink#retainsRows() */
+  default boolean retainsRows() {
+    return true;
+  }
+}
@@ -29,6 +29,45 @@ public interface Scalar {
   @Nullable Object execute(Context context);
   void execute(Context context, @Nullable Object[] results);
 
+  /** Evaluates the expressions for each row of a block.
+   *
+   * <p>For each {@code i} less than {@code count}, evaluates the expressions
+   * for the row whose values are {@code rows[i]}, and writes the results into
+   * {@code results[i]}, as {@link #execute(Context, Object[])} would.
+   *
+   * <p>The default implementation calls
+   * {@link #execute(Context, Object[])} for each row; a compiled scalar
+   * evaluates the whole block in one generated loop. */
+  default void executeBatch(Context context, @Nullable Object[][] rows,
+      int count, @Nullable Object[][] results) {
+    for (int i = 0; i < count; i++) {
+      context.values = rows[i];
+      execute(context, results[i]);
+    }
+  }
+
+  /** Evaluates a boolean expression for each row of a block, and returns the
+   * number of rows for which it is true.
+   *
+   * <p>Writes the positions of those rows, in ascending order, into
+   * {@code selection}. Rows for which the expression is false or unknown are
+   * not selected.
+   *
+   * <p>The default implementation calls {@link #execute(Context)} for each
+   * row; a compiled scalar evaluates the whole block in one generated loop,
+   * without allocating an array for the result of each row. */
+  default int executeFilter(Context context, @Nullable Object[][] rows,
+      int count, int[] selection) {
+    int n = 0;
+    for (int i = 0; i < count; i++) {
+      context.values = rows[i];
+      if (Boolean.TRUE.equals(execute(context))) {
+        selection[n++] = i;
+      }
+    }
+    return n;
+  }
+
   /** Produces a {@link Scalar} when a query is executed.
    *
    * <p>Call {@code producer.apply(DataContext)} to get a Scalar. */
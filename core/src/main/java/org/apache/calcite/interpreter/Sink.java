@@ -28,6 +28,25 @@ public interface Sink {
 
   void end() throws InterruptedException;
 
+  /** Sends the first {@code count} rows of a block, in order.
+   *
+   * <p>The receiver must not keep a reference to the array. The default
+   * implementation calls {@link #send(Row)} for each row. */
+  default void send(Row[] rows, int count) throws InterruptedException {
+    for (int i = 0; i < count; i++) {
+      send(rows[i]);
+    }
+  }
+
+  /** Returns whether the receiver may keep a reference to a row, or to its
+   * values, after {@link #send(Row)} returns.
+   *
+   * <p>If false, the sender may overwrite the row's values and send the same
+   * row again, rather than allocating a new row for each row it sends. */
+  default boolean retainsRows() {
+    return true;
+  }
+
   /** This method is temporary. It will be removed without notice. */
   @Deprecated
   void setSourceEnumerable(Enumerable<Row> enumerable) throws InterruptedException;
@@ -134,6 +134,7 @@ private CachingCalciteSchema(@Nullable CalciteSchema parent, Schema schema,
     final CalciteSchema calciteSchema =
         new CachingCalciteSchema(this, schema, name);
     subSchemaMap.put(name, calciteSchema);
+    changed();
     return calciteSchema;
   }
 
@@ -45,7 +45,10 @@
 import org.apache.calcite.materialize.Lattice;
 import org.apache.calcite.materialize.MaterializationService;
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.volcano.CardinalityFeedback;
+import org.apache.calcite.plan.volcano.SubplanCache;
 import org.apache.calcite.prepare.CalciteCatalogReader;
+import org.apache.calcite.prepare.PlanCache;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.type.DelegatingTypeSystem;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
@@ -106,6 +109,9 @@
   final CalciteSchema rootSchema;
   final Function0<CalcitePrepare> prepareFactory;
   final CalciteServer server = new CalciteServerImpl();
+  final @Nullable PlanCache planCache;
+  final @Nullable SubplanCache subplanCache;
+  final @Nullable CardinalityFeedback cardinalityFeedback;
 
   // must be package-protected
   static final Trojan TROJAN = createTrojan();
@@ -153,6 +159,15 @@ protected CalciteConnectionImpl(Driver driver, AvaticaFactory factory,
     this.properties.put(InternalProperty.UNQUOTED_CASING, cfg.unquotedCasing());
     this.properties.put(InternalProperty.QUOTED_CASING, cfg.quotedCasing());
     this.properties.put(InternalProperty.QUOTING, cfg.quoting());
+    this.planCache = cfg.planCacheSize() > 0
+        ? new PlanCache(cfg.planCacheSize())
+        : null;
+    this.subplanCache = cfg.subplanCacheSize() > 0
+        ? new SubplanCache(cfg.subplanCacheSize())
+        : null;
+    this.cardinalityFeedback = cfg.reoptimizeThreshold() > 0
+        ? new CardinalityFeedback(cfg.reoptimizeThreshold())
+        : null;
   }
 
   CalciteMetaImpl meta() {
@@ -562,6 +577,18 @@ static class ContextImpl implements CalcitePrepare.Context {
       return null;
     }
 
+    @Override public @Nullable PlanCache getPlanCache() {
+      return connection.planCache;
+    }
+
+    @Override public @Nullable SubplanCache getSubplanCache() {
+      return connection.subplanCache;
+    }
+
+    @Override public @Nullable CardinalityFeedback getCardinalityFeedback() {
+      return connection.cardinalityFeedback;
+    }
+
     @Override public CalciteConnectionConfig config() {
       return connection.config();
     }
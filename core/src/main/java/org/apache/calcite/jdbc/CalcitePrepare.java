@@ -29,7 +29,10 @@
 import org.apache.calcite.linq4j.tree.ClassDeclaration;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.volcano.CardinalityFeedback;
+import org.apache.calcite.plan.volcano.SubplanCache;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
+import org.apache.calcite.prepare.PlanCache;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
@@ -133,6 +136,24 @@ interface Context {
 
     /** Gets a runner; it can execute a relational expression. */
     RelRunner getRelRunner();
+
+    /** Returns the cache of prepared statements, or null if statements are
+     * not cached. */
+    default @Nullable PlanCache getPlanCache() {
+      return null;
+    }
+
+    /** Returns the cache of optimized subplans, or null if subplans are not
+     * cached. */
+    default @Nullable SubplanCache getSubplanCache() {
+      return null;
+    }
+
+    /** Returns the row counts observed when previous queries were executed,
+     * or null if row counts are not recorded. */
+    default @Nullable CardinalityFeedback getCardinalityFeedback() {
+      return null;
+    }
   }
 
   /** Callback to register Spark as the main engine. */
@@ -28,6 +28,7 @@
 import org.apache.calcite.schema.SchemaVersion;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.TableMacro;
+import org.apache.calcite.schema.impl.LongSchemaVersion;
 import org.apache.calcite.schema.impl.MaterializedViewTable;
 import org.apache.calcite.schema.impl.StarTable;
 import org.apache.calcite.util.NameMap;
@@ -73,6 +74,9 @@ public abstract class CalciteSchema {
   protected final NameMap<FunctionEntry> nullaryFunctionMap;
   protected final NameMap<CalciteSchema> subSchemaMap;
   private @Nullable List<? extends List<String>> path;
+  /** Number of times that this schema or one of its descendants has been
+   * modified; see {@link #getVersion()}. */
+  private long modificationCount;
 
   protected CalciteSchema(@Nullable CalciteSchema parent, Schema schema,
       String name,
@@ -199,6 +203,7 @@ public TableEntry add(String tableName, Table table,
     final TableEntryImpl entry =
         new TableEntryImpl(this, tableName, table, sqls);
     tableMap.put(tableName, entry);
+    changed();
     return entry;
   }
 
@@ -207,6 +212,7 @@ public TypeEntry add(String name, RelProtoDataType type) {
     final TypeEntry entry =
         new TypeEntryImpl(this, name, type);
     typeMap.put(name, entry);
+    changed();
     return entry;
   }
 
@@ -218,6 +224,7 @@ private FunctionEntry add(String name, Function function) {
     if (function.getParameters().isEmpty()) {
       nullaryFunctionMap.put(name, entry);
     }
+    changed();
     return entry;
   }
 
@@ -227,9 +234,29 @@ private LatticeEntry add(String name, Lattice lattice) {
     }
     final LatticeEntryImpl entry = new LatticeEntryImpl(this, name, lattice);
     latticeMap.put(name, entry);
+    changed();
     return entry;
   }
 
+  /** Returns the version of the contents of this schema.
+   *
+   * <p>The version changes each time that a table, type, function, lattice
+   * or sub-schema is added to or removed from this schema or one of its
+   * descendants using the methods of this class or {@link SchemaPlus}.
+   * It does not track changes to the objects that the underlying
+   * {@link Schema} defines implicitly. */
+  public SchemaVersion getVersion() {
+    return new LongSchemaVersion(modificationCount);
+  }
+
+  /** Records that this schema has been modified, and therefore so have its
+   * ancestors. */
+  protected void changed() {
+    for (CalciteSchema s = this; s != null; s = s.parent) {
+      ++s.modificationCount;
+    }
+  }
+
   public CalciteSchema root() {
     for (CalciteSchema schema = this;;) {
       if (schema.parent == null) {
@@ -530,12 +557,12 @@ public static CalciteSchema createRootSchema(boolean addMetadataSchema,
 
   @Experimental
   public boolean removeSubSchema(String name) {
-    return subSchemaMap.remove(name) != null;
+    return removed(subSchemaMap.remove(name) != null);
   }
 
   @Experimental
   public boolean removeTable(String name) {
-    return tableMap.remove(name) != null;
+    return removed(tableMap.remove(name) != null);
   }
 
   @Experimental
@@ -545,12 +572,19 @@ public boolean removeFunction(String name) {
       return false;
     }
     functionMap.remove(name, remove);
-    return true;
+    return removed(true);
   }
 
   @Experimental
   public boolean removeType(String name) {
-    return typeMap.remove(name) != null;
+    return removed(typeMap.remove(name) != null);
+  }
+
+  private boolean removed(boolean removed) {
+    if (removed) {
+      changed();
+    }
+    return removed;
   }
 
   /**
@@ -340,6 +340,7 @@ protected void fireRule(
       listener.ruleAttempted(event);
     }
 
+    final long start = listener == null ? 0L : System.nanoTime();
     ruleCall.getRule().onMatch(ruleCall);
 
     if (listener != null) {
@@ -348,7 +349,8 @@ protected void fireRule(
               this,
               ruleCall.rel(0),
               ruleCall,
-              false);
+              false,
+              System.nanoTime() - start);
       listener.ruleAttempted(event);
     }
   }
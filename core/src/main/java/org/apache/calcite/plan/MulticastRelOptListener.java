@@ -69,6 +69,13 @@ public void addListener(RelOptListener listener) {
     }
   }
 
+  // implement RelOptListener
+  @Override public void ruleMatchQueued(RuleMatchQueuedEvent event) {
+    for (RelOptListener listener : listeners) {
+      listener.ruleMatchQueued(event);
+    }
+  }
+
   // implement RelOptListener
   @Override public void relChosen(RelChosenEvent event) {
     for (RelOptListener listener : listeners) {
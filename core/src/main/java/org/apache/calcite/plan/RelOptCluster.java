@@ -61,6 +61,8 @@ public class RelOptCluster {
   private final RelTraitSet emptyTraitSet;
   private @Nullable RelMetadataQuery mq;
   private Supplier<RelMetadataQuery> mqSupplier;
+  private final ThreadLocal<@Nullable RelMetadataQuery> threadMq =
+      new ThreadLocal<>();
 
   //~ Constructors -----------------------------------------------------------
 
@@ -194,12 +196,32 @@ public void setMetadataQuerySupplier(
    * for example if you are in a {@link RelOptRule#onMatch(RelOptRuleCall)}
    * method, then use {@link RelOptRuleCall#getMetadataQuery()} instead. */
   public RelMetadataQuery getMetadataQuery() {
+    final RelMetadataQuery threadMq = this.threadMq.get();
+    if (threadMq != null) {
+      return threadMq;
+    }
     if (mq == null) {
       mq = castNonNull(mqSupplier).get();
     }
     return mq;
   }
 
+  /**
+   * Sets the RelMetadataQuery that {@link #getMetadataQuery()} returns to the
+   * current thread, or, if {@code mq} is null, reverts the current thread to
+   * the instance shared by all threads.
+   *
+   * <p>A RelMetadataQuery caches results and is not thread-safe, so a planner
+   * that fires rules on several threads gives each thread its own instance.
+   */
+  public void setThreadMetadataQuery(@Nullable RelMetadataQuery mq) {
+    if (mq == null) {
+      threadMq.remove();
+    } else {
+      threadMq.set(mq);
+    }
+  }
+
   /**
    * Returns the supplier of RelMetadataQuery.
    */
@@ -81,6 +81,19 @@ public interface RelOptListener extends EventListener {
    */
   void relChosen(RelChosenEvent event);
 
+  /**
+   * Notifies this listener that an optimizer rule has matched a relational
+   * expression, and the match has been queued to be fired later. Planners
+   * that fire each rule as soon as it matches, such as
+   * {@link org.apache.calcite.plan.hep.HepPlanner}, do not call this method.
+   *
+   * <p>The default implementation does nothing.
+   *
+   * @param event details about the event
+   */
+  default void ruleMatchQueued(RuleMatchQueuedEvent event) {
+  }
+
   //~ Inner Classes ----------------------------------------------------------
 
   /**
@@ -159,19 +172,53 @@ public RelOptRuleCall getRuleCall() {
   /** Event indicating that a planner rule has been attempted. */
   class RuleAttemptedEvent extends RuleEvent {
     private final boolean before;
+    private final long elapsedNanos;
 
     public RuleAttemptedEvent(
         Object eventSource,
         RelNode rel,
         RelOptRuleCall ruleCall,
         boolean before) {
+      this(eventSource, rel, ruleCall, before, -1L);
+    }
+
+    /** Creates a RuleAttemptedEvent.
+     *
+     * @param elapsedNanos Time, in nanoseconds, taken by the rule's
+     *                     {@link RelOptRule#onMatch} method, or -1 if not
+     *                     known or if this is the event before the rule is
+     *                     invoked */
+    public RuleAttemptedEvent(
+        Object eventSource,
+        RelNode rel,
+        RelOptRuleCall ruleCall,
+        boolean before,
+        long elapsedNanos) {
       super(eventSource, rel, ruleCall);
       this.before = before;
+      this.elapsedNanos = elapsedNanos;
     }
 
     public boolean isBefore() {
       return before;
     }
+
+    /** Returns the time, in nanoseconds, that the rule took, or -1 if not
+     * known. */
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+  }
+
+  /** Event indicating that a planner rule has matched, and the match has
+   * been queued. The rule call is the queued match. */
+  class RuleMatchQueuedEvent extends RuleEvent {
+    public RuleMatchQueuedEvent(
+        Object eventSource,
+        RelNode rel,
+        RelOptRuleCall ruleCall) {
+      super(eventSource, rel, ruleCall);
+    }
   }
 
   /** Event indicating that a planner rule has produced a result. */
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan;
+
+import org.apache.calcite.rel.metadata.MetadataCache;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Listener that profiles the work done by a planner.
+ *
+ * <p>For each rule, it records how many matches were queued, how many times
+ * the rule was fired, how many relational expressions it produced, and how
+ * long its {@link RelOptRule#onMatch} method took. For each kind of
+ * metadata, it records how many times it was requested, how many of those
+ * requests were answered from the cache, and how long it took to compute.
+ *
+ * <p>Use {@link #register(RelOptCluster)} to start profiling. When a
+ * statement is prepared with the
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#PLANNER_PROFILE}
+ * connection property, Calcite does so, and passes the profiler to
+ * {@link org.apache.calcite.runtime.Hook#PLANNER_PROFILE} after
+ * optimization.
+ *
+ * <p>Rule times are measured by the planner and include the time spent in
+ * metadata requests made by the rule; metadata times exclude the time spent
+ * computing other metadata.
+ */
+public class RelOptProfiler implements RelOptListener {
+  private final Map<RelOptRule, long[]> ruleCounts = new HashMap<>();
+  private final List<MetadataCache> metadataCaches = new ArrayList<>();
+  private final long startNanos = System.nanoTime();
+  private long elapsedNanos = -1L;
+
+  private static final int QUEUED = 0;
+  private static final int ATTEMPTS = 1;
+  private static final int PRODUCTIONS = 2;
+  private static final int NANOS = 3;
+
+  /** Creates a RelOptProfiler. To collect metadata statistics, use
+   * {@link #register(RelOptCluster)} instead. */
+  public RelOptProfiler() {
+  }
+
+  /** Creates a profiler, adds it as a listener to the planner of a cluster,
+   * and records the metadata requests of every {@link RelMetadataQuery} that
+   * the cluster creates from now on. */
+  public static RelOptProfiler register(RelOptCluster cluster) {
+    final RelOptProfiler profiler = new RelOptProfiler();
+    cluster.getPlanner().addListener(profiler);
+    final Supplier<RelMetadataQuery> supplier =
+        cluster.getMetadataQuerySupplier();
+    cluster.setMetadataQuerySupplier(() -> {
+      final RelMetadataQuery mq = supplier.get();
+      profiler.addMetadataCache(mq.cache());
+      return mq;
+    });
+    cluster.invalidateMetadataQuery();
+    return profiler;
+  }
+
+  private synchronized void addMetadataCache(MetadataCache cache) {
+    cache.startProfiling(Ticker.systemTicker());
+    metadataCaches.add(cache);
+  }
+
+  /** Stops the clock. Events received afterwards are still counted. */
+  public void stop() {
+    if (elapsedNanos < 0) {
+      elapsedNanos = System.nanoTime() - startNanos;
+    }
+  }
+
+  /** Returns the time, in nanoseconds, between the creation of this profiler
+   * and the call to {@link #stop()}, or until now if it has not been
+   * stopped. */
+  public long elapsedNanos() {
+    return elapsedNanos < 0 ? System.nanoTime() - startNanos : elapsedNanos;
+  }
+
+  private long[] counts(RelOptRuleCall call) {
+    return ruleCounts.computeIfAbsent(call.getRule(), r -> new long[4]);
+  }
+
+  @Override public void relEquivalenceFound(RelEquivalenceEvent event) {
+  }
+
+  @Override public synchronized void ruleAttempted(RuleAttemptedEvent event) {
+    final long[] counts = counts(event.getRuleCall());
+    if (event.isBefore()) {
+      ++counts[ATTEMPTS];
+    } else if (event.getElapsedNanos() > 0) {
+      counts[NANOS] += event.getElapsedNanos();
+    }
+  }
+
+  @Override public synchronized void ruleProductionSucceeded(RuleProductionEvent event) {
+    if (event.isBefore()) {
+      ++counts(event.getRuleCall())[PRODUCTIONS];
+    }
+  }
+
+  @Override public synchronized void ruleMatchQueued(RuleMatchQueuedEvent event) {
+    ++counts(event.getRuleCall())[QUEUED];
+  }
+
+  @Override public void relDiscarded(RelDiscardedEvent event) {
+  }
+
+  @Override public void relChosen(RelChosenEvent event) {
+  }
+
+  /** Returns the profile of each rule that has matched, in descending order
+   * of time taken. */
+  public synchronized List<RuleProfile> rules() {
+    final List<RuleProfile> list = new ArrayList<>();
+    ruleCounts.forEach((rule, counts) ->
+        list.add(
+            new RuleProfile(rule.toString(), counts[QUEUED], counts[ATTEMPTS],
+                counts[PRODUCTIONS], counts[NANOS])));
+    list.sort(
+        Comparator.comparingLong((RuleProfile p) -> p.nanos).reversed()
+            .thenComparing(p -> p.rule));
+    return ImmutableList.copyOf(list);
+  }
+
+  /** Returns the profile of each kind of metadata that has been requested,
+   * in descending order of time taken. */
+  public synchronized List<MetadataProfile> metadata() {
+    final Map<String, long[]> map = new TreeMap<>();
+    for (MetadataCache cache : metadataCaches) {
+      for (MetadataCache.Statistic statistic : cache.statistics()) {
+        final long[] total =
+            map.computeIfAbsent(statistic.kind, k -> new long[3]);
+        total[0] += statistic.hitCount;
+        total[1] += statistic.missCount;
+        total[2] += statistic.nanos;
+      }
+    }
+    final List<MetadataProfile> list = new ArrayList<>();
+    map.forEach((kind, total) ->
+        list.add(new MetadataProfile(kind, total[0], total[1], total[2])));
+    list.sort(
+        Comparator.comparingLong((MetadataProfile p) -> p.nanos).reversed());
+    return ImmutableList.copyOf(list);
+  }
+
+  /** Returns the profile as a structure of maps and lists, suitable for
+   * converting to JSON. Times are in microseconds. */
+  public Map<String, Object> toMap() {
+    final Map<String, Object> map = new LinkedHashMap<>();
+    map.put("elapsedMicros", micros(elapsedNanos()));
+    final List<Object> ruleList = new ArrayList<>();
+    for (RuleProfile p : rules()) {
+      final Map<String, Object> m = new LinkedHashMap<>();
+      m.put("rule", p.rule);
+      m.put("queued", p.queued);
+      m.put("attempts", p.attempts);
+      m.put("productions", p.productions);
+      m.put("micros", micros(p.nanos));
+      ruleList.add(m);
+    }
+    map.put("rules", ruleList);
+    final List<Object> metadataList = new ArrayList<>();
+    for (MetadataProfile p : metadata()) {
+      final Map<String, Object> m = new LinkedHashMap<>();
+      m.put("kind", p.kind);
+      m.put("calls", p.calls());
+      m.put("hits", p.hitCount);
+      m.put("micros", micros(p.nanos));
+      metadataList.add(m);
+    }
+    map.put("metadata", metadataList);
+    return map;
+  }
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  @Override public String toString() {
+    final StringBuilder b = new StringBuilder();
+    b.append("Planning took ").append(micros(elapsedNanos()))
+        .append(" us\n");
+    b.append("Rules (queued, attempts, productions, us):\n");
+    for (RuleProfile p : rules()) {
+      b.append("  ").append(p.rule).append(": ")
+          .append(p.queued).append(", ")
+          .append(p.attempts).append(", ")
+          .append(p.productions).append(", ")
+          .append(micros(p.nanos)).append('\n');
+    }
+    b.append("Metadata (calls, hits, us):\n");
+    for (MetadataProfile p : metadata()) {
+      b.append("  ").append(p.kind).append(": ")
+          .append(p.calls()).append(", ")
+          .append(p.hitCount).append(", ")
+          .append(micros(p.nanos)).append('\n');
+    }
+    return b.toString();
+  }
+
+  /** Work done by a rule. */
+  public static class RuleProfile {
+    public final String rule;
+    /** Number of matches queued to be fired later. */
+    public final long queued;
+    /** Number of times the rule was fired. */
+    public final long attempts;
+    /** Number of relational expressions that the rule produced. */
+    public final long productions;
+    /** Time, in nanoseconds, spent in the rule. */
+    public final long nanos;
+
+    RuleProfile(String rule, long queued, long attempts, long productions,
+        long nanos) {
+      this.rule = rule;
+      this.queued = queued;
+      this.attempts = attempts;
+      this.productions = productions;
+      this.nanos = nanos;
+    }
+
+    @Override public String toString() {
+      return rule + ": queued " + queued + ", attempts " + attempts
+          + ", productions " + productions + ", nanos " + nanos;
+    }
+  }
+
+  /** Work done computing a kind of metadata. */
+  public static class MetadataProfile {
+    public final String kind;
+    /** Number of requests answered from the cache. */
+    public final long hitCount;
+    /** Number of requests that had to be computed. */
+    public final long missCount;
+    /** Time, in nanoseconds, spent computing this kind of metadata. */
+    public final long nanos;
+
+    MetadataProfile(String kind, long hitCount, long missCount, long nanos) {
+      this.kind = kind;
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.nanos = nanos;
+    }
+
+    /** Returns the number of requests. */
+    public long calls() {
+      return hitCount + missCount;
+    }
+
+    @Override public String toString() {
+      return kind + ": calls " + calls() + ", hits " + hitCount
+          + ", nanos " + nanos;
+    }
+  }
+}
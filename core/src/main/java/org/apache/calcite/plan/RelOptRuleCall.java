@@ -304,6 +304,24 @@ public final void transformTo(RelNode rel, RelHintsPropagator handler) {
     transformTo(rel, ImmutableMap.of(), handler);
   }
 
+  /**
+   * Registers that a relational expression is equivalent to another, neither
+   * of which need be equivalent to the root relational expression of the
+   * rule call.
+   *
+   * <p>Has the same effect as
+   * {@link RelOptPlanner#ensureRegistered(RelNode, RelNode)}, but a planner
+   * may defer it, as it may defer {@link #transformTo}, until the rule has
+   * finished firing. Use this method rather than the planner's if you do
+   * not need the subset that it returns.
+   *
+   * @param rel      Relational expression
+   * @param equivRel Relational expression it is equivalent to
+   */
+  public void registerEquivalence(RelNode rel, RelNode equivRel) {
+    planner.ensureRegistered(rel, equivRel);
+  }
+
   /** Creates a {@link org.apache.calcite.tools.RelBuilder} to be used by
    * code within the call. The {@link RelOptRule#relBuilderFactory} argument contains policies
    * such as what implementation of {@link Filter} to create. */
@@ -899,21 +899,25 @@ private void contractVertices(
   /**
    * Clears metadata cache for the RelNode and its ancestors.
    *
+   * <p>The metadata query is not discarded when a rule transforms an
+   * expression, so this method must clear every ancestor, not just those
+   * that have cached metadata for their immediate inputs.
+   *
    * @param vertex relnode
    */
   private void clearCache(HepRelVertex vertex) {
-    RelMdUtil.clearCache(vertex.getCurrentRel());
-    if (!RelMdUtil.clearCache(vertex)) {
-      return;
-    }
-    Queue<DefaultEdge> queue =
-        new ArrayDeque<>(graph.getInwardEdges(vertex));
+    final Set<HepRelVertex> visited = new HashSet<>();
+    final Queue<HepRelVertex> queue = new ArrayDeque<>();
+    queue.add(vertex);
     while (!queue.isEmpty()) {
-      DefaultEdge edge = queue.remove();
-      HepRelVertex source = (HepRelVertex) edge.source;
-      RelMdUtil.clearCache(source.getCurrentRel());
-      if (RelMdUtil.clearCache(source)) {
-        queue.addAll(graph.getInwardEdges(source));
+      final HepRelVertex v = queue.remove();
+      if (!visited.add(v)) {
+        continue;
+      }
+      RelMdUtil.clearCache(v.getCurrentRel());
+      RelMdUtil.clearCache(v);
+      for (DefaultEdge edge : graph.getInwardEdges(v)) {
+        queue.add((HepRelVertex) edge.source);
       }
     }
   }
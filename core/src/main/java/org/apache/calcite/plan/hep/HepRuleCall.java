@@ -60,7 +60,6 @@ public class HepRuleCall extends RelOptRuleCall {
     RelOptUtil.verifyTypeEquivalence(rel0, rel, rel0);
     rel = handler.propagate(rel0, rel);
     results.add(rel);
-    rel0.getCluster().invalidateMetadataQuery();
   }
 
   List<RelNode> getResults() {
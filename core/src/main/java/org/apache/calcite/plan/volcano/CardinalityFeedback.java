@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.config.CalciteSystemProperty;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.DelegatingEnumerator;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelVisitor;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.Spool;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.util.Util;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Row counts observed while executing plans, which the
+ * {@link VolcanoPlanner} uses instead of its estimates the next time it
+ * plans the same expressions.
+ *
+ * <p>Observation points are joins and spools, which are where an Enumerable
+ * plan materializes rows, and the inputs of joins. Each is identified by a
+ * key: the explain string of the expression, as it was in the tree given to
+ * {@link VolcanoPlanner#setRoot}, that is in the same equivalence set.
+ *
+ * <p>Generated code wraps the output of each observation point in a
+ * {@link Probe}, which counts rows and calls {@link #record} when the output
+ * has been fully read. If the actual row count differs from the row count
+ * that the planner used by more than a factor of {@code threshold}, the
+ * {@link #version(String) version} of the key changes. A cached plan (for
+ * example in a {@link org.apache.calcite.prepare.PlanCache}) remembers the
+ * versions of the keys in the tree it was planned from, and is re-planned on
+ * its next execution only if one of those versions has changed.
+ *
+ * <p>A tree that has dynamic parameters has no observation points, because
+ * its row counts depend on the values of the parameters; the planner neither
+ * uses nor records row counts for it.
+ *
+ * <p>A plan that is executing is never re-planned; the generated code is
+ * a single program, and there is no point at which the rest of the plan
+ * could be replaced.
+ *
+ * <p>Row counts and versions are held for a limited number of keys; when
+ * the limit is reached, the least recently used key is discarded. A
+ * discarded key has version 0, and versions are never reused, so a cached
+ * plan that depends on a discarded key is re-planned.
+ *
+ * <p>This class is thread-safe.
+ */
+public class CardinalityFeedback {
+  private final double threshold;
+  private final ConcurrentMap<String, Double> rowCounts;
+  private final ConcurrentMap<String, Long> versions;
+  /** Source of versions; a key that changes version gets the next value,
+   * so that a key that is discarded and recorded again does not repeat a
+   * version that a cached plan remembers. */
+  private final AtomicLong sequence = new AtomicLong();
+
+  /** Creates a CardinalityFeedback that holds at most
+   * {@link CalciteSystemProperty#CARDINALITY_FEEDBACK_MAXIMUM_SIZE} keys.
+   *
+   * @param threshold Ratio between actual and expected row count beyond
+   *                  which the version changes; must be at least 1
+   */
+  public CardinalityFeedback(double threshold) {
+    this(threshold,
+        CalciteSystemProperty.CARDINALITY_FEEDBACK_MAXIMUM_SIZE.value());
+  }
+
+  /** Creates a CardinalityFeedback.
+   *
+   * @param threshold Ratio between actual and expected row count beyond
+   *                  which the version changes; must be at least 1
+   * @param maximumSize Maximum number of keys whose row counts and versions
+   *                    are held; if negative, there is no limit
+   */
+  public CardinalityFeedback(double threshold, int maximumSize) {
+    if (!(threshold >= 1D)) {
+      throw new IllegalArgumentException("threshold must be at least 1: "
+          + threshold);
+    }
+    this.threshold = threshold;
+    this.rowCounts = maxSize(CacheBuilder.newBuilder(), maximumSize)
+        .<String, Double>build().asMap();
+    this.versions = maxSize(CacheBuilder.newBuilder(), maximumSize)
+        .<String, Long>build().asMap();
+  }
+
+  private static CacheBuilder<Object, Object> maxSize(
+      CacheBuilder<Object, Object> builder, int size) {
+    if (size >= 0) {
+      builder.maximumSize(size);
+    }
+    return builder;
+  }
+
+  /** Returns the key of an observation point in a tree given to the
+   * planner. */
+  static String key(RelNode rel) {
+    return RelOptUtil.toString(rel, SqlExplainLevel.DIGEST_ATTRIBUTES);
+  }
+
+  /** Returns whether a relational expression is an observation point. */
+  static boolean isProbed(RelNode rel) {
+    return rel instanceof Join || rel instanceof Spool;
+  }
+
+  /** Computes the keys of the observation points of a tree given to the
+   * planner, and of their inputs. */
+  static void addKeys(RelNode rel, Map<RelNode, String> keys) {
+    if (isProbed(rel)) {
+      keys.put(rel, key(rel));
+      for (RelNode input : rel.getInputs()) {
+        keys.put(input, key(input));
+      }
+    }
+    for (RelNode input : rel.getInputs()) {
+      addKeys(input, keys);
+    }
+  }
+
+  /** Returns whether a tree contains dynamic parameters. */
+  static boolean isParameterized(RelNode rel) {
+    final RexShuttle shuttle = new RexShuttle() {
+      @Override public RexNode visitDynamicParam(RexDynamicParam dynamicParam) {
+        throw Util.FoundOne.NULL;
+      }
+    };
+    try {
+      new RelVisitor() {
+        @Override public void visit(RelNode node, int ordinal,
+            @Nullable RelNode parent) {
+          node.accept(shuttle);
+          super.visit(node, ordinal, parent);
+        }
+      }.go(rel);
+      return false;
+    } catch (Util.FoundOne e) {
+      return true;
+    }
+  }
+
+  /** Returns the observed row count of an expression, or null. */
+  public @Nullable Double getRowCount(String key) {
+    return rowCounts.get(key);
+  }
+
+  /** Returns the observed row counts, by key. */
+  public Map<String, Double> rowCounts() {
+    return ImmutableMap.copyOf(rowCounts);
+  }
+
+  /** Returns the version of a key, which increases each time the observed
+   * row count of the key diverges from the row count that the planner
+   * expected; 0 if the key has never diverged or has been discarded. */
+  public long version(String key) {
+    return versions.getOrDefault(key, 0L);
+  }
+
+  /** Returns the current versions of some keys. */
+  public ImmutableMap<String, Long> versions(Iterable<String> keys) {
+    final Map<String, Long> map = new LinkedHashMap<>();
+    for (String key : keys) {
+      map.put(key, version(key));
+    }
+    return ImmutableMap.copyOf(map);
+  }
+
+  /** Returns whether keys still have the versions that a plan was planned
+   * with; see {@link #versions(Iterable)}. */
+  public boolean isCurrent(Map<String, Long> versions) {
+    for (Map.Entry<String, Long> entry : versions.entrySet()) {
+      if (version(entry.getKey()) != entry.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Records the actual row count of an expression. */
+  public void record(String key, double expected, long actual) {
+    rowCounts.put(key, (double) actual);
+    final double ratio = Math.max(actual, 1D) / Math.max(expected, 1D);
+    if (ratio > threshold || ratio * threshold < 1D) {
+      versions.put(key, sequence.incrementAndGet());
+    }
+  }
+
+  /** Returns the probes of the observation points in the best plan of a
+   * planner, in pre-order. Each element contains the probe of the point and
+   * then the probes of its inputs; a probe is null if its expression has no
+   * key. */
+  static List<@Nullable Probe[]> probes(CardinalityFeedback feedback,
+      RelSubset root, RelMetadataQuery mq) {
+    final List<@Nullable Probe[]> list = new ArrayList<>();
+    addProbes(feedback, root, mq, list);
+    return list;
+  }
+
+  private static void addProbes(CardinalityFeedback feedback, RelSubset subset,
+      RelMetadataQuery mq, List<@Nullable Probe[]> list) {
+    final RelNode best = subset.best;
+    if (best == null) {
+      return;
+    }
+    if (best instanceof SubplanSeed) {
+      // The expansion of a cached subplan has no keys, but its observation
+      // points still count.
+      addUnkeyed(((SubplanSeed) best).entry.rel, list);
+      return;
+    }
+    if (isProbed(best)) {
+      final @Nullable Probe[] probes = new Probe[best.getInputs().size() + 1];
+      probes[0] = probe(feedback, subset, mq);
+      for (int i = 0; i < best.getInputs().size(); i++) {
+        probes[i + 1] = probe(feedback, (RelSubset) best.getInput(i), mq);
+      }
+      list.add(probes);
+    }
+    for (RelNode input : best.getInputs()) {
+      addProbes(feedback, (RelSubset) input, mq, list);
+    }
+  }
+
+  private static void addUnkeyed(RelNode rel, List<@Nullable Probe[]> list) {
+    if (isProbed(rel)) {
+      list.add(new Probe[rel.getInputs().size() + 1]);
+    }
+    for (RelNode input : rel.getInputs()) {
+      addUnkeyed(input, list);
+    }
+  }
+
+  private static @Nullable Probe probe(CardinalityFeedback feedback,
+      RelSubset subset, RelMetadataQuery mq) {
+    final String key = subset.set.feedbackKey;
+    if (key == null) {
+      return null;
+    }
+    final Double rowCount = mq.getRowCount(subset);
+    return new Probe(feedback, key, rowCount == null ? 1D : rowCount);
+  }
+
+  /** Assigns probes to the expressions of a plan, given the probes that
+   * were computed for the best plan of a planner.
+   *
+   * <p>The plan may have been rewritten since the planner produced it, but
+   * if its observation points are the same, in the same order, then their
+   * outputs and the outputs of their inputs are the same. Otherwise,
+   * returns an empty map. */
+  static Map<RelNode, Probe> assign(RelNode plan,
+      List<@Nullable Probe[]> probes) {
+    final List<RelNode> points = new ArrayList<>();
+    addPoints(plan, points);
+    if (points.size() != probes.size()) {
+      return ImmutableMap.of();
+    }
+    final Map<RelNode, Probe> map = new IdentityHashMap<>();
+    for (int i = 0; i < points.size(); i++) {
+      final RelNode point = points.get(i);
+      final @Nullable Probe[] pointProbes = probes.get(i);
+      if (pointProbes.length != point.getInputs().size() + 1) {
+        return ImmutableMap.of();
+      }
+      for (int j = 0; j < pointProbes.length; j++) {
+        final Probe probe = pointProbes[j];
+        if (probe != null) {
+          map.put(j == 0 ? point : point.getInput(j - 1), probe);
+        }
+      }
+    }
+    return map;
+  }
+
+  private static void addPoints(RelNode rel, List<RelNode> points) {
+    if (isProbed(rel)) {
+      points.add(rel);
+    }
+    for (RelNode input : rel.getInputs()) {
+      addPoints(input, points);
+    }
+  }
+
+  /** Counts the rows produced by an observation point, and records them in
+   * a {@link CardinalityFeedback}. */
+  public static class Probe {
+    private final CardinalityFeedback feedback;
+    public final String key;
+    /** Row count that the planner used. */
+    public final double expected;
+
+    Probe(CardinalityFeedback feedback, String key, double expected) {
+      this.feedback = feedback;
+      this.key = key;
+      this.expected = expected;
+    }
+
+    /** Returns an enumerable that returns the same rows as {@code source}
+     * and records the count each time they have all been read. */
+    public <T> Enumerable<T> wrap(Enumerable<T> source) {
+      return new AbstractEnumerable<T>() {
+        @Override public Enumerator<T> enumerator() {
+          return new DelegatingEnumerator<T>(source.enumerator()) {
+            long count;
+            boolean done;
+
+            @Override public boolean moveNext() {
+              if (delegate.moveNext()) {
+                ++count;
+                return true;
+              }
+              if (!done) {
+                done = true;
+                feedback.record(key, expected, count);
+              }
+              return false;
+            }
+
+            @Override public void reset() {
+              super.reset();
+              count = 0;
+              done = false;
+            }
+          };
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.metadata.JaninoRelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.metadata.RelMetadataQueryBase;
+import org.apache.calcite.rel.rules.ThreadSafeRule;
+import org.apache.calcite.util.Util;
+import org.apache.calcite.util.trace.CalciteTrace;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+
+import static java.util.Objects.requireNonNull;
+
+/***
+ * Rule driver that fires rules on several threads.
+ *
+ * <p>Like {@link IterativeRuleDriver}, the driver repeatedly takes rule
+ * matches from an {@link IterativeRuleQueue} until the queue is empty, but it
+ * takes them in batches. It fires the rules of a batch that implement
+ * {@link ThreadSafeRule} concurrently, with deferred effects (see
+ * {@link VolcanoRuleCall#fireDeferred()}), while the state of the planner
+ * does not change; when all have finished, it applies their effects, and
+ * fires the other rules of the batch, in the order that the matches were
+ * taken from the queue.
+ *
+ * <p>The size of a batch does not depend on the number of threads, so
+ * the planner makes the same decisions, and chooses the same plan, whatever
+ * the number of threads. But because the effects of the rules in a batch
+ * are deferred, a rule may see a different state of the planner than it
+ * would with {@link IterativeRuleDriver}, and so the plan may differ from
+ * the one chosen when the parallelism is 1.
+ *
+ * <p>The state of the planner does not change while a batch fires, so
+ * metadata computed for one match is valid for the others. Each thread has
+ * one {@link RelMetadataQuery}, and therefore one cache, per batch, which
+ * the matches that it fires in that batch share.
+ *
+ * <p>The threads belong to a fork-join pool that the driver creates when
+ * {@link #drive()} first needs it, and shuts down when {@link #drive()}
+ * returns.
+ *
+ * @see VolcanoPlanner#setParallelism(int)
+ */
+class ParallelRuleDriver implements RuleDriver {
+
+  private static final Logger LOGGER = CalciteTrace.getPlannerTracer();
+
+  /** Maximum number of rule matches in a batch. */
+  static final int BATCH_SIZE = 32;
+
+  private final VolcanoPlanner planner;
+  private final IterativeRuleQueue ruleQueue;
+  private final int parallelism;
+  /** Pool that fires rules; created on demand, and shut down at the end of
+   * {@link #drive()}. */
+  private @Nullable ForkJoinPool pool;
+
+  ParallelRuleDriver(VolcanoPlanner planner, int parallelism) {
+    this.planner = planner;
+    this.parallelism = parallelism;
+    ruleQueue = new IterativeRuleQueue(planner);
+  }
+
+  @Override public IterativeRuleQueue getRuleQueue() {
+    return ruleQueue;
+  }
+
+  @Override public void drive() {
+    try {
+      drive2();
+    } finally {
+      shutdown();
+    }
+  }
+
+  private void drive2() {
+    final List<VolcanoRuleMatch> batch = new ArrayList<>();
+    while (true) {
+      LOGGER.debug("PLANNER = {}; COST = {}", this,
+          requireNonNull(planner.root, "planner.root").bestCost);
+
+      batch.clear();
+      while (batch.size() < BATCH_SIZE) {
+        VolcanoRuleMatch match = ruleQueue.popMatch();
+        if (match == null) {
+          break;
+        }
+        assert match.getRule().matches(match);
+        batch.add(match);
+      }
+      if (batch.isEmpty()) {
+        break;
+      }
+
+      final boolean[] deferred = fire(batch);
+      try {
+        for (int i = 0; i < batch.size(); i++) {
+          final VolcanoRuleMatch match = batch.get(i);
+          if (i > 0 && ruleQueue.skipMatch(match)) {
+            // Applying an earlier match in the batch has made this match
+            // redundant; the queue would have skipped it
+            LOGGER.debug("Skip match: {}", match);
+          } else if (deferred[i]) {
+            match.applyDeferred();
+          } else {
+            match.onMatch();
+          }
+
+          // The root may have been merged with another
+          // subset. Find the new root subset.
+          planner.canonize();
+        }
+      } catch (VolcanoTimeoutException e) {
+        LOGGER.warn("Volcano planning times out, cancels the subsequent optimization.");
+        planner.canonize();
+        break;
+      }
+    }
+  }
+
+  /** Fires the thread-safe rules of a batch concurrently, with deferred
+   * effects. Returns, for each match, whether its effects were deferred
+   * successfully; false for a match whose rule is not thread-safe. */
+  private boolean[] fire(List<VolcanoRuleMatch> batch) {
+    final boolean[] deferred = new boolean[batch.size()];
+    final List<Integer> ordinals = new ArrayList<>();
+    for (int i = 0; i < batch.size(); i++) {
+      if (batch.get(i).getRule() instanceof ThreadSafeRule) {
+        ordinals.add(i);
+      }
+    }
+    if (ordinals.size() <= 1) {
+      // Nothing to gain from firing on another thread; the matches will fire
+      // with immediate effects
+      return deferred;
+    }
+    final @Nullable JaninoRelMetadataProvider metadataProvider =
+        RelMetadataQueryBase.THREAD_PROVIDERS.get();
+    final Map<Thread, RelMetadataQuery> metadataQueries =
+        new ConcurrentHashMap<>();
+    final List<FutureTask<Boolean>> tasks = new ArrayList<>();
+    ForkJoinPool pool = this.pool;
+    if (pool == null) {
+      pool = new ForkJoinPool(parallelism);
+      this.pool = pool;
+    }
+    for (int i : ordinals) {
+      final VolcanoRuleMatch match = batch.get(i);
+      final FutureTask<Boolean> task =
+          new FutureTask<>(() ->
+              fireDeferred(match, metadataProvider, metadataQueries));
+      tasks.add(task);
+      pool.execute(task);
+    }
+    for (int j = 0; j < tasks.size(); j++) {
+      final int i = ordinals.get(j);
+      try {
+        deferred[i] = tasks.get(j).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Util.throwAsRuntime(e);
+      } catch (ExecutionException e) {
+        // The match will fire again, and reproduce the error
+        deferred[i] = false;
+      }
+    }
+    return deferred;
+  }
+
+  /** Fires a rule with deferred effects, on a worker thread.
+   *
+   * @param match Rule match
+   * @param metadataProvider Metadata provider of the planner's thread
+   * @param metadataQueries Metadata query of each thread that has fired a
+   *                        match in the current batch
+   */
+  private static boolean fireDeferred(VolcanoRuleMatch match,
+      @Nullable JaninoRelMetadataProvider metadataProvider,
+      Map<Thread, RelMetadataQuery> metadataQueries) {
+    final RelOptCluster cluster = match.rels[0].getCluster();
+    final @Nullable JaninoRelMetadataProvider previousProvider =
+        RelMetadataQueryBase.THREAD_PROVIDERS.get();
+    RelMetadataQueryBase.THREAD_PROVIDERS.set(metadataProvider);
+    try {
+      // The metadata query must be created after the metadata provider has
+      // been set
+      cluster.setThreadMetadataQuery(
+          metadataQueries.computeIfAbsent(Thread.currentThread(), t ->
+              cluster.getMetadataQuerySupplier().get()));
+      return match.fireDeferred();
+    } finally {
+      cluster.setThreadMetadataQuery(null);
+      RelMetadataQueryBase.THREAD_PROVIDERS.set(previousProvider);
+    }
+  }
+
+  @Override public void onProduce(RelNode rel, RelSubset subset) {
+  }
+
+  @Override public void onSetMerged(RelSet set) {
+  }
+
+  /** Shuts down the pool, if there is one. */
+  private void shutdown() {
+    final ForkJoinPool pool = this.pool;
+    if (pool != null) {
+      this.pool = null;
+      pool.shutdown();
+    }
+  }
+
+  @Override public void clear() {
+    ruleQueue.clear();
+    shutdown();
+  }
+}
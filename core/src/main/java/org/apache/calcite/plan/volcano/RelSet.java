@@ -27,6 +27,7 @@
 import org.apache.calcite.rel.convert.Converter;
 import org.apache.calcite.rel.core.CorrelationId;
 import org.apache.calcite.rel.core.Spool;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.trace.CalciteTrace;
 
@@ -105,6 +106,16 @@ class RelSet {
    */
   boolean inMetadataQuery;
 
+  /**
+   * Key of this set in the planner's {@link CardinalityFeedback}, or null.
+   */
+  @Nullable String feedbackKey;
+
+  /**
+   * Row count observed when a previous plan was executed, or null.
+   */
+  @Nullable Double observedRowCount;
+
   //~ Constructors -----------------------------------------------------------
 
   RelSet(
@@ -341,6 +352,17 @@ void addInternal(RelNode rel) {
     }
   }
 
+  /** Removes cached metadata of this set's subsets and of the relational
+   * expressions that use them. */
+  void clearMetadataCache(RelMetadataQuery mq) {
+    for (RelSubset subset : subsets) {
+      mq.clearCache(subset);
+    }
+    for (RelNode parent : parents) {
+      mq.clearCache(parent);
+    }
+  }
+
   /**
    * Merges <code>otherSet</code> into this RelSet.
    *
@@ -365,6 +387,16 @@ void mergeWith(
     otherSet.equivalentSet = this;
     RelOptCluster cluster = castNonNull(rel).getCluster();
 
+    // Metadata of both sets, and of the expressions that use them, may
+    // change as a result of the merge
+    final RelMetadataQuery mq = cluster.getMetadataQuery();
+    clearMetadataCache(mq);
+    otherSet.clearMetadataCache(mq);
+    if (feedbackKey == null) {
+      feedbackKey = otherSet.feedbackKey;
+      observedRowCount = otherSet.observedRowCount;
+    }
+
     // remove from table
     boolean existed = planner.allSets.remove(otherSet);
     assert existed : "merging with a dead otherSet";
@@ -227,6 +227,12 @@ boolean isEnforceDisabled() {
     return set.rel;
   }
 
+  /** Returns the row count of this subset that was observed when a previous
+   * plan was executed, or null; see {@link CardinalityFeedback}. */
+  public @Nullable Double getObservedRowCount() {
+    return set.observedRowCount;
+  }
+
   @API(since = "1.27", status = API.Status.INTERNAL)
   public RelNode getBestOrOriginal() {
     RelNode result = getBest();
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelVisitor;
+import org.apache.calcite.rex.RexCorrelVariable;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.rex.RexSubQuery;
+import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of optimized subplans, shared by the {@link VolcanoPlanner}s that
+ * plan successive queries.
+ *
+ * <p>When a planner that has a cache (see
+ * {@link VolcanoPlanner#setSubplanCache}) registers the tree that it is to
+ * optimize, it looks up each subtree that contains a join, outermost first.
+ * The key is the subtree's explain string and row type, so subtrees that
+ * are structurally identical share an entry even though they belong to
+ * different clusters. If the subtree is found, the planner does not
+ * register it; instead it registers a leaf for each cached physical plan
+ * of the subtree, with the plan's traits, cost and row count. Rules never
+ * see the subtree's operators, so planning is cheaper, and the leaves are
+ * replaced by the cached plans when the planner returns its best plan.
+ *
+ * <p>After finding the best plan, the planner stores in the cache, for each
+ * subset on that plan that is equivalent to such a subtree, the cheapest
+ * plan of the subset with the subset's traits.
+ *
+ * <p>Subtrees that contain dynamic parameters, correlation variables or
+ * sub-queries are not cached, because their meaning depends on the
+ * enclosing query.
+ *
+ * <p>If the planner uses a {@link CardinalityFeedback}, each cached plan
+ * records the versions of the observation points in its subtree, and is
+ * discarded when it is looked up after one of those versions has changed;
+ * plans of other subtrees are unaffected.
+ *
+ * <p>A cached plan is only valid for planners that have the same rules, cost
+ * model and trait definitions as the planner that produced it, and while the
+ * schema is unchanged; call {@link #setVersion} with the schema version
+ * before each use. Cached plans retain their cluster, and therefore the
+ * memo of the planner that produced them, until they are evicted, so a
+ * cache should be small.
+ */
+public class SubplanCache {
+  private final int maximumSize;
+  private final Map<String, List<Entry>> map;
+  private @Nullable Object version;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /** Creates a SubplanCache.
+   *
+   * @param maximumSize Maximum number of distinct subtrees */
+  public SubplanCache(int maximumSize) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("maximumSize must be positive");
+    }
+    this.maximumSize = maximumSize;
+    this.map = new LinkedHashMap<String, List<Entry>>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(
+          Map.Entry<String, List<Entry>> eldest) {
+        if (size() > SubplanCache.this.maximumSize) {
+          ++evictionCount;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /** Returns the number of distinct subtrees in the cache. */
+  public synchronized int size() {
+    return map.size();
+  }
+
+  /** Returns the number of subtrees that have been replaced by cached
+   * plans. */
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of subtrees that were looked up and not found. */
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  /** Returns the number of subtrees that have been evicted because the cache
+   * was full. */
+  public synchronized long evictionCount() {
+    return evictionCount;
+  }
+
+  /** Removes all entries. */
+  public synchronized void clear() {
+    map.clear();
+  }
+
+  /** Sets the version of the schema that subsequent queries are planned
+   * against; if it differs from the previous version, removes all
+   * entries. */
+  public synchronized void setVersion(Object version) {
+    if (!version.equals(this.version)) {
+      map.clear();
+      this.version = version;
+    }
+  }
+
+  /** Returns the cached plans of a subtree, one per trait set, and records a
+   * hit or a miss. Removes plans that were chosen using row counts that
+   * {@code feedback} has since found to be wrong. */
+  synchronized List<Entry> get(String key,
+      @Nullable CardinalityFeedback feedback) {
+    final List<Entry> entries = map.get(key);
+    if (entries != null && feedback != null) {
+      entries.removeIf(e -> !feedback.isCurrent(e.feedbackVersions));
+    }
+    if (entries == null || entries.isEmpty()) {
+      ++missCount;
+      return ImmutableList.of();
+    }
+    ++hitCount;
+    return ImmutableList.copyOf(entries);
+  }
+
+  /** Stores a plan of a subtree, replacing any plan with the same traits. */
+  synchronized void put(String key, Entry entry) {
+    final List<Entry> entries =
+        map.computeIfAbsent(key, k -> new ArrayList<>());
+    entries.removeIf(e -> e.traitSet.equals(entry.traitSet));
+    entries.add(entry);
+  }
+
+  @Override public synchronized String toString() {
+    return "SubplanCache(size: " + map.size() + ", hits: " + hitCount
+        + ", misses: " + missCount + ", evictions: " + evictionCount + ")";
+  }
+
+  /** Returns the key of a subtree, or null if the subtree has no joins or
+   * cannot be cached. */
+  static @Nullable String key(RelNode rel) {
+    if (RelOptUtil.countJoins(rel) == 0 || !isCacheable(rel)) {
+      return null;
+    }
+    return RelOptUtil.toString(rel, SqlExplainLevel.DIGEST_ATTRIBUTES)
+        + rel.getRowType().getFullTypeString();
+  }
+
+  /** Returns whether a subtree means the same in any query, that is, has no
+   * dynamic parameters, correlation variables or sub-queries. */
+  private static boolean isCacheable(RelNode rel) {
+    final RexShuttle shuttle = new RexShuttle() {
+      @Override public RexNode visitDynamicParam(RexDynamicParam dynamicParam) {
+        throw Util.FoundOne.NULL;
+      }
+
+      @Override public RexNode visitCorrelVariable(
+          RexCorrelVariable correlVariable) {
+        throw Util.FoundOne.NULL;
+      }
+
+      @Override public RexNode visitSubQuery(RexSubQuery subQuery) {
+        throw Util.FoundOne.NULL;
+      }
+    };
+    try {
+      new RelVisitor() {
+        @Override public void visit(RelNode node, int ordinal,
+            @Nullable RelNode parent) {
+          if (!node.getVariablesSet().isEmpty()) {
+            throw Util.FoundOne.NULL;
+          }
+          node.accept(shuttle);
+          super.visit(node, ordinal, parent);
+        }
+      }.go(rel);
+      return true;
+    } catch (Util.FoundOne e) {
+      return false;
+    }
+  }
+
+  /** Optimized plan of a subtree for a particular trait set. */
+  static class Entry {
+    final RelNode rel;
+    final RelTraitSet traitSet;
+    final RelOptCost cost;
+    final double rowCount;
+    /** Versions in the {@link CardinalityFeedback} of the keys in the
+     * subtree when the plan was chosen. */
+    final ImmutableMap<String, Long> feedbackVersions;
+
+    Entry(RelNode rel, RelTraitSet traitSet, RelOptCost cost,
+        double rowCount, ImmutableMap<String, Long> feedbackVersions) {
+      this.rel = requireNonNull(rel, "rel");
+      this.traitSet = requireNonNull(traitSet, "traitSet");
+      this.cost = requireNonNull(cost, "cost");
+      this.rowCount = rowCount;
+      this.feedbackVersions =
+          requireNonNull(feedbackVersions, "feedbackVersions");
+    }
+  }
+}
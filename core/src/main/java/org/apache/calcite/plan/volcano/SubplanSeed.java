@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.AbstractRelNode;
+import org.apache.calcite.rel.RelHomogeneousShuttle;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+
+/**
+ * Leaf relational expression that stands in for a subtree whose optimized
+ * plan was found in a {@link SubplanCache}.
+ *
+ * <p>Its cost and row count are those of the cached plan. Like
+ * {@link AbstractConverter}, it is never implemented: before returning the
+ * best plan, {@link VolcanoPlanner#findBestExp()} replaces it with the cached
+ * plan.
+ */
+class SubplanSeed extends AbstractRelNode {
+  final SubplanCache.Entry entry;
+
+  SubplanSeed(RelOptCluster cluster, RelTraitSet traitSet,
+      RelDataType rowType, SubplanCache.Entry entry) {
+    super(cluster, traitSet);
+    this.rowType = rowType;
+    this.entry = entry;
+  }
+
+  @Override protected RelDataType deriveRowType() {
+    throw new AssertionError("row type is set in constructor");
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return entry.cost;
+  }
+
+  @Override public double estimateRowCount(RelMetadataQuery mq) {
+    return entry.rowCount;
+  }
+
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    return super.explainTerms(pw)
+        .item("subplan",
+            entry.rel.getRelTypeName() + "#" + entry.rel.getId());
+  }
+
+  /** Replaces each seed in a plan with the cached plan that it stands
+   * for. */
+  static RelNode expand(RelNode rel) {
+    return rel.accept(
+        new RelHomogeneousShuttle() {
+          @Override public RelNode visit(RelNode other) {
+            if (other instanceof SubplanSeed) {
+              return ((SubplanSeed) other).entry.rel;
+            }
+            return super.visit(other);
+          }
+        });
+  }
+}
@@ -26,6 +26,7 @@
 import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptCostFactory;
 import org.apache.calcite.plan.RelOptLattice;
+import org.apache.calcite.plan.RelOptListener;
 import org.apache.calcite.plan.RelOptMaterialization;
 import org.apache.calcite.plan.RelOptMaterializations;
 import org.apache.calcite.plan.RelOptPlanner;
@@ -57,6 +58,7 @@
 import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 
@@ -198,6 +200,64 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
    */
   boolean topDownOpt = CalciteSystemProperty.TOPDOWN_OPT.value();
 
+  /**
+   * Number of threads on which to fire rules; see {@link #setParallelism}.
+   */
+  int parallelism = 1;
+
+  /**
+   * Cache of optimized subplans shared with other planners, or null; see
+   * {@link #setSubplanCache}.
+   */
+  private @Nullable SubplanCache subplanCache;
+
+  /**
+   * Keys in {@link #subplanCache} of the relational expressions registered
+   * before the root was set; null if an expression has no key.
+   */
+  private final Map<RelNode, @Nullable String> subplanKeys =
+      new IdentityHashMap<>();
+
+  /**
+   * Subsets of the relational expressions that have a key in
+   * {@link #subplanCache} and were not found there.
+   */
+  private final List<Pair<String, RelSubset>> subplanSubsets =
+      new ArrayList<>();
+
+  /**
+   * Versions in {@link #cardinalityFeedback} of the keys in the subtrees that
+   * have a key in {@link #subplanCache} and were not found there, by
+   * subtree key.
+   */
+  private final Map<String, ImmutableMap<String, Long>>
+      subplanFeedbackVersions = new HashMap<>();
+
+  /**
+   * Row counts observed when previous plans were executed, or null; see
+   * {@link #setCardinalityFeedback}.
+   */
+  private @Nullable CardinalityFeedback cardinalityFeedback;
+
+  /**
+   * Keys in {@link #cardinalityFeedback} of the relational expressions in
+   * the tree to be optimized that have not been registered yet.
+   */
+  private final Map<RelNode, String> feedbackKeys = new IdentityHashMap<>();
+
+  /**
+   * Versions in {@link #cardinalityFeedback} of the keys in the tree to be
+   * optimized, as they were before the tree was registered.
+   */
+  private ImmutableMap<String, Long> feedbackVersions = ImmutableMap.of();
+
+  /**
+   * Probes of the observation points in the best plan, in pre-order; set by
+   * {@link #findBestExp()}.
+   */
+  private List<CardinalityFeedback.@Nullable Probe[]> feedbackProbes =
+      ImmutableList.of();
+
   /**
    * Extra roots for explorations.
    */
@@ -243,6 +303,8 @@ public VolcanoPlanner(@Nullable RelOptCostFactory costFactory,
   private void initRuleQueue() {
     if (topDownOpt) {
       ruleDriver = new TopDownRuleDriver(this);
+    } else if (parallelism > 1) {
+      ruleDriver = new ParallelRuleDriver(this, parallelism);
     } else {
       ruleDriver = new IterativeRuleDriver(this);
     }
@@ -264,12 +326,108 @@ public void setTopDownOpt(boolean value) {
     initRuleQueue();
   }
 
+  /**
+   * Sets the number of threads on which to fire rules.
+   *
+   * <p>If greater than 1, and top-down optimization is disabled, the planner
+   * takes rule matches from its queue in batches and fires the rules in each
+   * batch that implement {@link org.apache.calcite.rel.rules.ThreadSafeRule}
+   * concurrently, on threads that it creates for each call to
+   * {@link #findBestExp()}; it fires other rules on its own thread. A
+   * thread-safe rule fires with deferred effects:
+   * {@link RelOptRuleCall#transformTo} and {@link #prune} do not change the
+   * state of the planner until every call in the batch has finished firing,
+   * and the planner then applies each call's effects in the order that the
+   * matches were queued. The chosen plan therefore does not depend on the
+   * number of threads or how they are scheduled. If a rule needs a change to
+   * happen immediately (for instance, to register an expression and use the
+   * subset that results) the planner fires that call again, on its own
+   * thread, when the call's turn comes.
+   *
+   * <p>Because a rule does not see the effects of the rules that fire in
+   * the same batch, the chosen plan may differ from the plan chosen with a
+   * parallelism of 1, which applies the effects of each call before it
+   * fires the next.
+   *
+   * <p>A rule that implements {@code ThreadSafeRule} must not modify shared
+   * state in its {@code matches} and {@code onMatch} methods without
+   * synchronization. The same applies to the metadata handlers that it
+   * calls, although each thread has its own
+   * {@link org.apache.calcite.rel.metadata.RelMetadataQuery}.
+   *
+   * <p>Thread-local {@link org.apache.calcite.runtime.Hook hooks} do not
+   * apply to rules that fire on other threads.
+   */
+  public void setParallelism(int parallelism) {
+    if (this.parallelism == parallelism) {
+      return;
+    }
+    this.parallelism = parallelism;
+    initRuleQueue();
+  }
+
+  /**
+   * Sets a cache of optimized subplans that this planner shares with the
+   * planners of other queries.
+   *
+   * <p>When the tree to be optimized is registered, each subtree that is in
+   * the cache is replaced by its cached plans, so the planner does not
+   * explore it again; after {@link #findBestExp()}, the cheapest plans of
+   * the other subtrees are added to the cache. See {@link SubplanCache}.
+   */
+  public void setSubplanCache(@Nullable SubplanCache subplanCache) {
+    this.subplanCache = subplanCache;
+  }
+
+  /**
+   * Sets the row counts observed when previous plans were executed.
+   *
+   * <p>When the tree to be optimized is registered, each join, spool and
+   * input of a join whose row count has been observed has that row count,
+   * rather than an estimate, in every plan that is equivalent to it. After
+   * {@link #findBestExp()}, {@link #getCardinalityProbes} returns probes
+   * with which the executor can observe those row counts. If the tree has
+   * dynamic parameters, the planner neither uses nor observes row counts.
+   * See {@link CardinalityFeedback}.
+   */
+  public void setCardinalityFeedback(
+      @Nullable CardinalityFeedback cardinalityFeedback) {
+    this.cardinalityFeedback = cardinalityFeedback;
+  }
+
+  /**
+   * Returns the probes that record the row counts of the observation points
+   * of a plan, which is the plan returned by {@link #findBestExp()}, possibly
+   * rewritten by rules that do not add, remove or reorder joins and spools.
+   * Returns an empty map if there is no {@link CardinalityFeedback} or if the
+   * plan does not match.
+   */
+  public Map<RelNode, CardinalityFeedback.Probe> getCardinalityProbes(
+      RelNode plan) {
+    return CardinalityFeedback.assign(plan, feedbackProbes);
+  }
+
+  /**
+   * Returns the versions in the {@link CardinalityFeedback} of the keys in
+   * the tree to be optimized, as they were when the root was set. A plan
+   * produced by this planner is out of date if
+   * {@link CardinalityFeedback#isCurrent} returns false for them.
+   */
+  public ImmutableMap<String, Long> getCardinalityFeedbackVersions() {
+    return feedbackVersions;
+  }
+
   // implement RelOptPlanner
   @Override public boolean isRegistered(RelNode rel) {
     return mapRel2Subset.get(rel) != null;
   }
 
   @Override public void setRoot(RelNode rel) {
+    if (cardinalityFeedback != null && root == null
+        && !CardinalityFeedback.isParameterized(rel)) {
+      CardinalityFeedback.addKeys(rel, feedbackKeys);
+      feedbackVersions = cardinalityFeedback.versions(feedbackKeys.values());
+    }
     this.root = registerImpl(rel, null);
     if (this.originalRoot == null) {
       this.originalRoot = rel;
@@ -408,6 +566,11 @@ protected void registerMaterializations() {
     this.materializations.clear();
     this.latticeByName.clear();
     this.provenanceMap.clear();
+    this.subplanKeys.clear();
+    this.subplanSubsets.clear();
+    this.subplanFeedbackVersions.clear();
+    this.feedbackKeys.clear();
+    this.feedbackProbes = ImmutableList.of();
   }
 
   @Override public boolean addRule(RelOptRule rule) {
@@ -500,6 +663,16 @@ protected void registerMaterializations() {
       return rel2;
     }
 
+    final VolcanoRuleCall deferringCall = VolcanoRuleCall.deferringCall();
+    if (deferringCall != null) {
+      final RelSubset subset = rel2.set.getSubset(toTraits);
+      if (subset == null
+          || !subset.isRequired() && subset.getConvention() != Convention.NONE) {
+        throw deferringCall.cannotDefer();
+      }
+      return subset;
+    }
+
     return rel2.set.getOrCreateSubset(
         rel.getCluster(), toTraits, true);
   }
@@ -531,6 +704,15 @@ protected void registerMaterializations() {
     }
     dumpRuleAttemptsInfo();
     RelNode cheapest = root.buildCheapestPlan(this);
+    if (cardinalityFeedback != null) {
+      feedbackProbes =
+          CardinalityFeedback.probes(cardinalityFeedback, root,
+              root.getCluster().getMetadataQuery());
+    }
+    if (subplanCache != null) {
+      cacheSubplans(subplanCache);
+      cheapest = SubplanSeed.expand(cheapest);
+    }
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug(
           "Cheapest plan:\n{}", RelOptUtil.toString(cheapest, SqlExplainLevel.ALL_ATTRIBUTES));
@@ -580,6 +762,10 @@ void ensureRootConverters() {
       RelNode rel,
       @Nullable RelNode equivRel) {
     assert !isRegistered(rel) : "pre: isRegistered(rel)";
+    final VolcanoRuleCall deferringCall = VolcanoRuleCall.deferringCall();
+    if (deferringCall != null) {
+      throw deferringCall.cannotDefer();
+    }
     final RelSet set;
     if (equivRel == null) {
       set = null;
@@ -601,6 +787,16 @@ void ensureRootConverters() {
   @Override public RelSubset ensureRegistered(RelNode rel, @Nullable RelNode equivRel) {
     RelSubset result;
     final RelSubset subset = getSubset(rel);
+    final VolcanoRuleCall deferringCall = VolcanoRuleCall.deferringCall();
+    if (deferringCall != null) {
+      // Succeed only if there is nothing to do
+      if (subset == null
+          || subset.set.equivalentSet != null
+          || equivRel != null && getSet(equivRel) != subset.set) {
+        throw deferringCall.cannotDefer();
+      }
+      return subset;
+    }
     if (subset != null) {
       if (equivRel != null) {
         final RelSubset equivSubset = getSubsetNonNull(equivRel);
@@ -685,6 +881,13 @@ public void registerAbstractRelationalRules() {
   }
 
   @Override public void registerSchema(RelOptSchema schema) {
+    final VolcanoRuleCall deferringCall = VolcanoRuleCall.deferringCall();
+    if (deferringCall != null) {
+      if (!registeredSchemas.contains(schema)) {
+        throw deferringCall.cannotDefer();
+      }
+      return;
+    }
     if (registeredSchemas.add(schema)) {
       try {
         schema.registerRules(this);
@@ -836,6 +1039,11 @@ public RelSubset getSubsetNonNull(RelNode rel) {
   }
 
   @Override public void prune(RelNode rel) {
+    final VolcanoRuleCall deferringCall = VolcanoRuleCall.deferringCall();
+    if (deferringCall != null) {
+      deferringCall.defer(() -> prune(rel));
+      return;
+    }
     prunedNodes.add(rel);
   }
 
@@ -1242,6 +1450,23 @@ private RelSubset registerImpl(
       return registerSubset(set, (RelSubset) rel);
     }
 
+    if (subplanCache != null
+        && root == null
+        && set == null
+        && !(rel instanceof SubplanSeed)
+        && !subplanKeys.containsKey(rel)) {
+      return registerSubplan(rel, subplanCache);
+    }
+
+    if (cardinalityFeedback != null && set == null) {
+      final String key = feedbackKeys.remove(rel);
+      if (key != null) {
+        final RelSubset subset = canonize(registerImpl(rel, null));
+        observe(subset, key, cardinalityFeedback);
+        return subset;
+      }
+    }
+
     assert !isRegistered(rel) : "already been registered: " + rel;
     if (rel.getCluster().getPlanner() != this) {
       throw new AssertionError("Relational expression " + rel
@@ -1254,7 +1479,8 @@ private RelSubset registerImpl(
     final Convention convention = traits.getTrait(ConventionTraitDef.INSTANCE);
     assert convention != null;
     if (!convention.getInterface().isInstance(rel)
-        && !(rel instanceof Converter)) {
+        && !(rel instanceof Converter)
+        && !(rel instanceof SubplanSeed)) {
       throw new AssertionError("Relational expression " + rel
           + " has calling-convention " + convention
           + " but does not implement the required interface '"
@@ -1394,6 +1620,104 @@ private RelSubset registerImpl(
     return subset;
   }
 
+  /**
+   * Registers a relational expression that is part of the tree to be
+   * optimized. If the subtree is in {@link #subplanCache}, registers its
+   * cached plans instead.
+   */
+  private RelSubset registerSubplan(RelNode rel, SubplanCache subplanCache) {
+    final String key = SubplanCache.key(rel);
+    subplanKeys.put(rel, key);
+    if (key == null) {
+      return registerImpl(rel, null);
+    }
+    final List<SubplanCache.Entry> entries =
+        subplanCache.get(key, cardinalityFeedback);
+    if (entries.isEmpty()) {
+      if (cardinalityFeedback != null) {
+        final Map<RelNode, String> keys = new IdentityHashMap<>();
+        CardinalityFeedback.addKeys(rel, keys);
+        subplanFeedbackVersions.put(key,
+            cardinalityFeedback.versions(keys.values()));
+      }
+      final RelSubset subset = registerImpl(rel, null);
+      subplanSubsets.add(Pair.of(key, subset));
+      return subset;
+    }
+    RelSet set = null;
+    for (SubplanCache.Entry entry : entries) {
+      RelTraitSet traitSet = rel.getTraitSet();
+      for (RelTrait trait : entry.traitSet) {
+        traitSet = traitSet.replace(trait);
+      }
+      final SubplanSeed seed =
+          new SubplanSeed(rel.getCluster(), traitSet, rel.getRowType(), entry);
+      set = registerImpl(seed, set).set;
+    }
+    return canonize(
+        requireNonNull(set, "set")
+            .getOrCreateSubset(rel.getCluster(), rel.getTraitSet(), false));
+  }
+
+  /**
+   * Assigns a key in {@link #cardinalityFeedback} to the set of a subset,
+   * and uses the row count observed for that key, if any, from now on.
+   */
+  private static void observe(RelSubset subset, String key,
+      CardinalityFeedback cardinalityFeedback) {
+    final RelSet set = subset.set;
+    if (set.feedbackKey != null) {
+      return;
+    }
+    set.feedbackKey = key;
+    set.observedRowCount = cardinalityFeedback.getRowCount(key);
+    if (set.observedRowCount != null) {
+      set.clearMetadataCache(subset.getCluster().getMetadataQuery());
+    }
+  }
+
+  /**
+   * Adds to {@link #subplanCache} the cheapest plans of the subsets on the
+   * best plan that are equivalent to subtrees that were not in the cache.
+   */
+  private void cacheSubplans(SubplanCache subplanCache) {
+    final Map<RelSet, List<String>> keys = new HashMap<>();
+    for (Pair<String, RelSubset> pair : subplanSubsets) {
+      keys.computeIfAbsent(canonize(pair.right).set, set -> new ArrayList<>())
+          .add(pair.left);
+    }
+    if (keys.isEmpty()) {
+      return;
+    }
+    final RelMetadataQuery mq = requireNonNull(root, "root")
+        .getCluster().getMetadataQuery();
+    final Set<RelSubset> visited = new HashSet<>();
+    final Deque<RelSubset> queue = new ArrayDeque<>();
+    queue.add(root);
+    while (!queue.isEmpty()) {
+      final RelSubset subset = queue.pop();
+      final RelNode best = subset.best;
+      if (best == null || !visited.add(subset)) {
+        continue;
+      }
+      final List<String> setKeys = keys.get(subset.set);
+      if (setKeys != null && !(best instanceof SubplanSeed)) {
+        final RelNode plan = SubplanSeed.expand(subset.buildCheapestPlan(this));
+        final double rowCount = mq.getRowCount(subset);
+        for (String key : setKeys) {
+          subplanCache.put(key,
+              new SubplanCache.Entry(plan, subset.getTraitSet(),
+                  subset.bestCost, rowCount,
+                  subplanFeedbackVersions.getOrDefault(key,
+                      ImmutableMap.of())));
+        }
+      }
+      for (RelNode input : best.getInputs()) {
+        queue.add((RelSubset) input);
+      }
+    }
+  }
+
   private RelSubset addRelToSet(RelNode rel, RelSet set) {
     RelSubset subset = set.add(rel);
     mapRel2Subset.put(rel, subset);
@@ -1606,6 +1930,12 @@ private static class DeferringRuleCall extends VolcanoRuleCall {
               rels,
               nodeInputs);
       volcanoPlanner.ruleDriver.getRuleQueue().addMatch(match);
+      final RelOptListener listener = volcanoPlanner.getListener();
+      if (listener != null) {
+        listener.ruleMatchQueued(
+            new RelOptListener.RuleMatchQueuedEvent(volcanoPlanner,
+                match.rels[0], match));
+      }
     }
   }
 
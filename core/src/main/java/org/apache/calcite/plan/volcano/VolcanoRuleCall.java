@@ -25,6 +25,7 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.rules.SubstitutionRule;
 import org.apache.calcite.rel.rules.TransformationRule;
+import org.apache.calcite.util.ControlFlowException;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -36,6 +37,7 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -59,6 +61,24 @@ public class VolcanoRuleCall extends RelOptRuleCall {
    */
   private @Nullable List<RelNode> generatedRelList;
 
+  /**
+   * Effects on the planner that have been deferred until
+   * {@link #applyDeferred()}, or null if effects are applied immediately.
+   */
+  private @Nullable List<Runnable> deferredActions;
+
+  /**
+   * Whether the rule, while firing with deferred effects, needed an effect
+   * to happen immediately.
+   */
+  private boolean deferralFailed;
+
+  /**
+   * Call that is firing with deferred effects on the current thread.
+   */
+  private static final ThreadLocal<@Nullable VolcanoRuleCall> DEFERRING_CALL =
+      new ThreadLocal<>();
+
   //~ Constructors -----------------------------------------------------------
 
   /**
@@ -105,6 +125,13 @@ protected VolcanoRuleCall(
           rel + " is a PhysicalNode, which is not allowed in " + rule);
     }
 
+    if (deferredActions != null) {
+      final RelNode rel0 = rel;
+      final Map<RelNode, RelNode> equiv0 = new LinkedHashMap<>(equiv);
+      deferredActions.add(() -> transformTo(rel0, equiv0, handler));
+      return;
+    }
+
     rel = handler.propagate(rels[0], rel);
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("Transform to: rel#{} via {}{}", rel.getId(), getRule(),
@@ -168,6 +195,14 @@ protected VolcanoRuleCall(
     }
   }
 
+  @Override public void registerEquivalence(RelNode rel, RelNode equivRel) {
+    if (deferredActions != null) {
+      deferredActions.add(() -> registerEquivalence(rel, equivRel));
+      return;
+    }
+    super.registerEquivalence(rel, equivRel);
+  }
+
   /**
    * Called when all operands have matched.
    */
@@ -185,33 +220,8 @@ protected void onMatch() {
         return;
       }
 
-      for (int i = 0; i < rels.length; i++) {
-        RelNode rel = rels[i];
-        RelSubset subset = volcanoPlanner.getSubset(rel);
-
-        if (subset == null) {
-          LOGGER.debug(
-              "Rule [{}] not fired because operand #{} ({}) has no subset",
-              getRule(), i, rel);
-          return;
-        }
-
-        if ((subset.set.equivalentSet != null)
-            // When rename RelNode via VolcanoPlanner#rename(RelNode rel),
-            // we may remove rel from its subset: "subset.set.rels.remove(rel)".
-            // Skip rule match when the rel has been removed from set.
-            || (subset != rel && !subset.contains(rel))) {
-          LOGGER.debug(
-              "Rule [{}] not fired because operand #{} ({}) belongs to obsolete set",
-              getRule(), i, rel);
-          return;
-        }
-
-        if (volcanoPlanner.prunedNodes.contains(rel)) {
-          LOGGER.debug("Rule [{}] not fired because operand #{} ({}) has importance=0",
-              getRule(), i, rel);
-          return;
-        }
+      if (!operandsAreValid()) {
+        return;
       }
 
       if (LOGGER.isDebugEnabled()) {
@@ -220,25 +230,32 @@ protected void onMatch() {
             id, getRule(), Arrays.toString(rels));
       }
 
-      if (volcanoPlanner.getListener() != null) {
+      final RelOptListener listener = volcanoPlanner.getListener();
+      if (listener != null) {
         RelOptListener.RuleAttemptedEvent event =
             new RelOptListener.RuleAttemptedEvent(
                 volcanoPlanner,
                 rels[0],
                 this,
                 true);
-        volcanoPlanner.getListener().ruleAttempted(event);
+        perform(() -> listener.ruleAttempted(event));
       }
 
       if (LOGGER.isDebugEnabled()) {
         this.generatedRelList = new ArrayList<>();
       }
 
-      volcanoPlanner.ruleCallStack.push(this);
-      try {
+      final long start = listener == null ? 0L : System.nanoTime();
+      if (deferredActions != null) {
+        // applyDeferred() will push this call onto the stack
         getRule().onMatch(this);
-      } finally {
-        volcanoPlanner.ruleCallStack.pop();
+      } else {
+        volcanoPlanner.ruleCallStack.push(this);
+        try {
+          getRule().onMatch(this);
+        } finally {
+          volcanoPlanner.ruleCallStack.pop();
+        }
       }
 
       if (generatedRelList != null) {
@@ -252,14 +269,15 @@ protected void onMatch() {
         this.generatedRelList = null;
       }
 
-      if (volcanoPlanner.getListener() != null) {
+      if (listener != null) {
         RelOptListener.RuleAttemptedEvent event =
             new RelOptListener.RuleAttemptedEvent(
                 volcanoPlanner,
                 rels[0],
                 this,
-                false);
-        volcanoPlanner.getListener().ruleAttempted(event);
+                false,
+                System.nanoTime() - start);
+        perform(() -> listener.ruleAttempted(event));
       }
     } catch (Exception e) {
       throw new RuntimeException("Error while applying rule " + getRule()
@@ -267,6 +285,134 @@ protected void onMatch() {
     }
   }
 
+  /**
+   * Returns whether every matched relational expression still belongs to a
+   * current subset and has not been pruned.
+   */
+  private boolean operandsAreValid() {
+    for (int i = 0; i < rels.length; i++) {
+      RelNode rel = rels[i];
+      RelSubset subset = volcanoPlanner.getSubset(rel);
+
+      if (subset == null) {
+        LOGGER.debug(
+            "Rule [{}] not fired because operand #{} ({}) has no subset",
+            getRule(), i, rel);
+        return false;
+      }
+
+      if ((subset.set.equivalentSet != null)
+          // When rename RelNode via VolcanoPlanner#rename(RelNode rel),
+          // we may remove rel from its subset: "subset.set.rels.remove(rel)".
+          // Skip rule match when the rel has been removed from set.
+          || (subset != rel && !subset.contains(rel))) {
+        LOGGER.debug(
+            "Rule [{}] not fired because operand #{} ({}) belongs to obsolete set",
+            getRule(), i, rel);
+        return false;
+      }
+
+      if (volcanoPlanner.prunedNodes.contains(rel)) {
+        LOGGER.debug("Rule [{}] not fired because operand #{} ({}) has importance=0",
+            getRule(), i, rel);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Performs an action on the planner now or, if effects are deferred,
+   * later. */
+  private void perform(Runnable action) {
+    if (deferredActions != null) {
+      deferredActions.add(action);
+    } else {
+      action.run();
+    }
+  }
+
+  /**
+   * Returns the call that is firing with deferred effects on the current
+   * thread, or null.
+   *
+   * <p>The planner calls this method to decide whether to defer a change,
+   * such as pruning a relational expression, that a rule asks for.
+   */
+  static @Nullable VolcanoRuleCall deferringCall() {
+    return DEFERRING_CALL.get();
+  }
+
+  /** Defers an action until {@link #applyDeferred()}. */
+  void defer(Runnable action) {
+    requireNonNull(deferredActions, "deferredActions").add(action);
+  }
+
+  /**
+   * Records that the rule needs a change to the planner to happen
+   * immediately, and returns an exception that abandons the call.
+   */
+  RuntimeException cannotDefer() {
+    deferralFailed = true;
+    return new CannotDeferException();
+  }
+
+  /**
+   * Fires this call, deferring its effects on the planner.
+   *
+   * <p>Called on a worker thread while the state of the planner is not
+   * changing. Returns whether the effects were deferred successfully; if so,
+   * the planner will later call {@link #applyDeferred()}; if not, it will
+   * fire the call again, with immediate effects, using {@link #onMatch()}.
+   */
+  boolean fireDeferred() {
+    deferredActions = new ArrayList<>();
+    deferralFailed = false;
+    boolean success = false;
+    DEFERRING_CALL.set(this);
+    try {
+      onMatch();
+      success = !deferralFailed;
+    } catch (RuntimeException | Error e) {
+      // If the error is genuine, firing the call again will reproduce it on
+      // the planner's thread
+      LOGGER.debug("call#{}: Rule [{}] cannot fire with deferred effects",
+          id, getRule(), e);
+    } finally {
+      DEFERRING_CALL.remove();
+      if (!success) {
+        deferredActions = null;
+      }
+    }
+    return success;
+  }
+
+  /**
+   * Applies the effects that were deferred by {@link #fireDeferred()},
+   * unless some of the matched relational expressions have become obsolete
+   * in the meantime.
+   */
+  void applyDeferred() {
+    final List<Runnable> actions =
+        requireNonNull(deferredActions, "deferredActions");
+    deferredActions = null;
+    if (!operandsAreValid()) {
+      return;
+    }
+    volcanoPlanner.ruleCallStack.push(this);
+    try {
+      for (Runnable action : actions) {
+        action.run();
+      }
+    } catch (VolcanoTimeoutException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException("Error while applying rule " + getRule()
+          + ", args " + Arrays.toString(rels), e);
+    } finally {
+      volcanoPlanner.ruleCallStack.pop();
+    }
+  }
+
   /**
    * Applies this rule, with a given relational expression in the first slot.
    */
@@ -427,4 +573,9 @@ private void matchRecurse(int solve) {
       }
     }
   }
+
+  /** Thrown when a rule that is firing with deferred effects needs a change
+   * to the planner to happen immediately. */
+  private static class CannotDeferException extends ControlFlowException {
+  }
 }
@@ -23,6 +23,7 @@
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.adapter.enumerable.RexToLixTranslator;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.adapter.vectorized.VectorizedRules;
 import org.apache.calcite.avatica.AvaticaParameter;
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.avatica.Meta;
@@ -58,6 +59,8 @@
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.volcano.CardinalityFeedback;
+import org.apache.calcite.plan.volcano.SubplanCache;
 import org.apache.calcite.plan.volcano.VolcanoPlanner;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollationTraitDef;
@@ -79,6 +82,7 @@
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.Typed;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.SchemaVersion;
 import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.server.CalciteServerStatement;
@@ -106,6 +110,7 @@
 import org.apache.calcite.sql2rel.StandardConvertletTable;
 import org.apache.calcite.tools.FrameworkConfig;
 import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.util.Holder;
 import org.apache.calcite.util.ImmutableIntList;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
@@ -446,9 +451,24 @@ protected RelOptPlanner createPlanner(
       planner.addRelTraitDef(RelCollationTraitDef.INSTANCE);
     }
     planner.setTopDownOpt(prepareContext.config().topDownOpt());
+    planner.setParallelism(prepareContext.config().plannerParallelism());
+    final CardinalityFeedback cardinalityFeedback =
+        prepareContext.getCardinalityFeedback();
+    if (cardinalityFeedback != null) {
+      planner.setCardinalityFeedback(cardinalityFeedback);
+      Hook.CARDINALITY_FEEDBACK.run(cardinalityFeedback);
+    }
+    final SubplanCache subplanCache = prepareContext.getSubplanCache();
+    if (subplanCache != null) {
+      subplanCache.setVersion(prepareContext.getMutableRootSchema().getVersion());
+      planner.setSubplanCache(subplanCache);
+    }
     RelOptUtil.registerDefaultRules(planner,
         prepareContext.config().materializationsEnabled(),
         enableBindable);
+    if (prepareContext.config().vectorized()) {
+      VectorizedRules.RULES.forEach(planner::addRule);
+    }
 
     final CalcitePrepare.SparkHandler spark = prepareContext.spark();
     if (spark.enabled()) {
@@ -491,6 +511,107 @@ <T> CalciteSignature<T> prepare_(
     if (SIMPLE_SQLS.contains(query.sql)) {
       return simplePrepare(context, castNonNull(query.sql));
     }
+    final PlanCache planCache = context.getPlanCache();
+    if (planCache != null && query.sql != null) {
+      return prepareCached(context, query.sql, elementType, maxRowCount,
+          planCache);
+    }
+    return prepare1_(context, query, elementType, maxRowCount, null);
+  }
+
+  /** Prepares a SQL query using a plan cache.
+   *
+   * <p>Looks for a plan of the query with its literals replaced by dynamic
+   * parameters, then for a plan of the query as written; if neither is in
+   * the cache, plans the query and adds it. */
+  private <T> CalciteSignature<T> prepareCached(
+      Context context,
+      String sql,
+      Type elementType,
+      long maxRowCount,
+      PlanCache planCache) {
+    final SqlNode sqlNode;
+    try {
+      sqlNode = createParser(sql, parserConfig(context.config())).parseStmt();
+    } catch (SqlParseException e) {
+      throw new RuntimeException("parse failed: " + e.getMessage(), e);
+    }
+    if (!sqlNode.isA(SqlKind.QUERY)) {
+      return prepare1_(context, Query.of(sql), elementType, maxRowCount, null);
+    }
+    final CalciteSchema rootSchema = context.getRootSchema();
+    final SchemaVersion schemaVersion =
+        context.getMutableRootSchema().getVersion();
+    final CardinalityFeedback cardinalityFeedback =
+        context.getCardinalityFeedback();
+    final PlanCache.Normalized exact =
+        PlanCache.normalize(sql, sqlNode, false);
+    final PlanCache.Normalized normalized =
+        PlanCache.normalize(sql, sqlNode, true);
+    boolean hit = true;
+    CalciteSignature<T> signature = null;
+    if (!normalized.literals.isEmpty()) {
+      final PlanCache.Key key =
+          new PlanCache.Key(normalized, schemaVersion,
+              context.getDefaultSchemaPath(), elementType, enableBindable);
+      PlanCache.Entry entry = planCache.get(key);
+      if (entry == null || !entry.isCurrent(cardinalityFeedback)) {
+        hit = false;
+        entry = prepareEntry(context, normalized, elementType, true);
+        planCache.put(key, entry);
+      }
+      signature = entry.bind(normalized, sql, rootSchema, maxRowCount);
+    }
+    if (signature == null) {
+      final PlanCache.Key key =
+          new PlanCache.Key(exact, schemaVersion,
+              context.getDefaultSchemaPath(), elementType, enableBindable);
+      PlanCache.Entry entry = planCache.get(key);
+      if (entry == null || !entry.isCurrent(cardinalityFeedback)) {
+        hit = false;
+        entry = prepareEntry(context, exact, elementType, false);
+        planCache.put(key, entry);
+      }
+      signature = Objects.requireNonNull(
+          entry.bind(exact, sql, rootSchema, maxRowCount), "signature");
+    }
+    planCache.record(hit);
+    Hook.PLAN_CACHE.run(planCache);
+    return signature;
+  }
+
+  /** Plans a query for a plan cache.
+   *
+   * <p>If {@code lenient}, returns {@link PlanCache.Entry#UNUSABLE} if the
+   * query cannot be planned; otherwise, throws. */
+  private PlanCache.Entry prepareEntry(Context context,
+      PlanCache.Normalized normalized, Type elementType, boolean lenient) {
+    final Holder<@Nullable RelNode> plan = Holder.empty();
+    final CalciteSignature<Object> signature;
+    try {
+      signature =
+          prepare1_(context, Query.of(normalized.sql), elementType, -1, plan);
+    } catch (RuntimeException | AssertionError e) {
+      if (lenient) {
+        return PlanCache.Entry.UNUSABLE;
+      }
+      throw e;
+    }
+    final RelNode rel = plan.get();
+    final RelOptPlanner planner =
+        rel == null ? null : rel.getCluster().getPlanner();
+    return PlanCache.Entry.create(normalized, signature, rel,
+        planner instanceof VolcanoPlanner
+            ? ((VolcanoPlanner) planner).getCardinalityFeedbackVersions()
+            : ImmutableMap.of());
+  }
+
+  private <T> CalciteSignature<T> prepare1_(
+      Context context,
+      Query<T> query,
+      Type elementType,
+      long maxRowCount,
+      @Nullable Holder<@Nullable RelNode> plan) {
     final JavaTypeFactory typeFactory = context.getTypeFactory();
     CalciteCatalogReader catalogReader =
         new CalciteCatalogReader(
@@ -511,7 +632,7 @@ <T> CalciteSignature<T> prepare_(
       }
       try {
         return prepare2_(context, query, elementType, maxRowCount,
-            catalogReader, planner);
+            catalogReader, planner, plan);
       } catch (RelOptPlanner.CannotPlanException e) {
         exception = e;
       }
@@ -587,6 +708,18 @@ <T> CalciteSignature<T> prepare2_(
       long maxRowCount,
       CalciteCatalogReader catalogReader,
       RelOptPlanner planner) {
+    return prepare2_(context, query, elementType, maxRowCount, catalogReader,
+        planner, null);
+  }
+
+  private <T> CalciteSignature<T> prepare2_(
+      Context context,
+      Query<T> query,
+      Type elementType,
+      long maxRowCount,
+      CalciteCatalogReader catalogReader,
+      RelOptPlanner planner,
+      @Nullable Holder<@Nullable RelNode> plan) {
     final JavaTypeFactory typeFactory = context.getTypeFactory();
     final EnumerableRel.Prefer prefer;
     if (elementType == Object[].class) {
@@ -606,19 +739,8 @@ <T> CalciteSignature<T> prepare2_(
     final Prepare.PreparedResult preparedResult;
     final Meta.StatementType statementType;
     if (query.sql != null) {
-      final CalciteConnectionConfig config = context.config();
-      SqlParser.Config parserConfig = parserConfig()
-          .withQuotedCasing(config.quotedCasing())
-          .withUnquotedCasing(config.unquotedCasing())
-          .withQuoting(config.quoting())
-          .withConformance(config.conformance())
-          .withCaseSensitive(config.caseSensitive());
-      final SqlParserImplFactory parserFactory =
-          config.parserFactory(SqlParserImplFactory.class, null);
-      if (parserFactory != null) {
-        parserConfig = parserConfig.withParserFactory(parserFactory);
-      }
-      SqlParser parser = createParser(query.sql,  parserConfig);
+      SqlParser parser =
+          createParser(query.sql, parserConfig(context.config()));
       SqlNode sqlNode;
       try {
         sqlNode = parser.parseStmt();
@@ -698,6 +820,9 @@ <T> CalciteSignature<T> prepare2_(
             : Meta.CursorFactory.deduce(columns, resultClazz);
     //noinspection unchecked
     final Bindable<T> bindable = preparedResult.getBindable(cursorFactory);
+    if (plan != null && preparedResult instanceof Prepare.PreparedResultImpl) {
+      plan.set(((Prepare.PreparedResultImpl) preparedResult).rootRel);
+    }
     return new CalciteSignature<>(
         query.sql,
         parameters,
@@ -714,6 +839,22 @@ <T> CalciteSignature<T> prepare2_(
         statementType);
   }
 
+  /** Creates a parser configuration from a connection's properties. */
+  private SqlParser.Config parserConfig(CalciteConnectionConfig config) {
+    SqlParser.Config parserConfig = parserConfig()
+        .withQuotedCasing(config.quotedCasing())
+        .withUnquotedCasing(config.unquotedCasing())
+        .withQuoting(config.quoting())
+        .withConformance(config.conformance())
+        .withCaseSensitive(config.caseSensitive());
+    final SqlParserImplFactory parserFactory =
+        config.parserFactory(SqlParserImplFactory.class, null);
+    if (parserFactory != null) {
+      parserConfig = parserConfig.withParserFactory(parserFactory);
+    }
+    return parserConfig;
+  }
+
   private static SqlValidator createSqlValidator(Context context,
       CalciteCatalogReader catalogReader) {
     final SqlOperatorTable opTab0 =
@@ -1127,9 +1268,13 @@ protected SqlValidator createSqlValidator(CatalogReader catalogReader) {
           CatalogReader.THREAD_LOCAL.set(catalogReader);
           final SqlConformance conformance = context.config().conformance();
           internalParameters.put("_conformance", conformance);
+          final RelOptPlanner planner = root.rel.getCluster().getPlanner();
           bindable = EnumerableInterpretable.toBindable(internalParameters,
               context.spark(), enumerable,
-              Objects.requireNonNull(prefer, "EnumerableRel.Prefer prefer"));
+              Objects.requireNonNull(prefer, "EnumerableRel.Prefer prefer"),
+              planner instanceof VolcanoPlanner
+                  ? ((VolcanoPlanner) planner).getCardinalityProbes(enumerable)
+                  : ImmutableMap.of());
         } finally {
           CatalogReader.THREAD_LOCAL.remove();
         }
@@ -0,0 +1,578 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.avatica.AvaticaParameter;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.jdbc.CalcitePrepare.CalciteSignature;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.linq4j.QueryProvider;
+import org.apache.calcite.plan.volcano.CardinalityFeedback;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.SchemaVersion;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlCharStringLiteral;
+import org.apache.calcite.sql.SqlDynamicParam;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNumericLiteral;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+import org.apache.calcite.util.ImmutableIntList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of prepared SQL queries.
+ *
+ * <p>A connection has a plan cache if its
+ * {@link CalciteConnectionProperty#PLAN_CACHE_SIZE} is positive, and
+ * {@link CalcitePrepareImpl} looks up each query in it before preparing it.
+ *
+ * <p>Before the lookup, numeric and character literals that are compared
+ * with an expression that is not a literal (operands of {@code =},
+ * {@code <>}, {@code <}, {@code <=}, {@code >}, {@code >=} and
+ * {@code BETWEEN}) are replaced with dynamic parameters, so that queries
+ * that differ only in the values of those literals share an entry; the
+ * values are bound when the query is executed. If the query cannot be
+ * prepared with parameters in place of its literals, or the type that the
+ * validator deduces for a parameter cannot hold a literal's value exactly,
+ * the query is cached under its original text instead.
+ *
+ * <p>An entry is keyed by the normalized SQL, the
+ * {@link CalciteSchema#getVersion() version} of the connection's root
+ * schema, the default schema path and the options that affect the plan;
+ * it holds the optimized relational expression and the {@link Bindable}
+ * generated from it. If there are more than the maximum number of entries,
+ * the least recently used entry is evicted.
+ *
+ * <p>If the connection records row counts in a {@link CardinalityFeedback},
+ * an entry also holds the versions of the observation points of its query;
+ * when one of them changes, the query is planned again and the entry is
+ * replaced. Entries of other queries are unaffected.
+ *
+ * <p>After each query is prepared using the cache, {@link Hook#PLAN_CACHE}
+ * is called with the cache, whose counters include that query.
+ */
+public class PlanCache {
+  private final int maximumSize;
+  private final Map<Key, Entry> map;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /** Creates a PlanCache.
+   *
+   * @param maximumSize Maximum number of entries */
+  public PlanCache(int maximumSize) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("maximumSize must be positive");
+    }
+    this.maximumSize = maximumSize;
+    this.map = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(
+          Map.Entry<Key, Entry> eldest) {
+        if (size() > PlanCache.this.maximumSize) {
+          ++evictionCount;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /** Returns the number of entries. */
+  public synchronized int size() {
+    return map.size();
+  }
+
+  /** Returns the number of queries that have been prepared using a cached
+   * plan. */
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of queries that have been planned and added to the
+   * cache. */
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  /** Returns the number of entries that have been evicted because the cache
+   * was full. */
+  public synchronized long evictionCount() {
+    return evictionCount;
+  }
+
+  /** Removes all entries. */
+  public synchronized void clear() {
+    map.clear();
+  }
+
+  synchronized @Nullable Entry get(Key key) {
+    return map.get(key);
+  }
+
+  synchronized void put(Key key, Entry entry) {
+    map.put(key, entry);
+  }
+
+  synchronized void record(boolean hit) {
+    if (hit) {
+      ++hitCount;
+    } else {
+      ++missCount;
+    }
+  }
+
+  @Override public synchronized String toString() {
+    return "PlanCache(size: " + map.size() + ", hits: " + hitCount
+        + ", misses: " + missCount + ", evictions: " + evictionCount + ")";
+  }
+
+  /** Replaces literals in a query with dynamic parameters.
+   *
+   * @param sql SQL text
+   * @param node Parse tree of {@code sql}
+   * @param literals Whether to replace literals; if false, the result
+   *                 describes just the query's own dynamic parameters
+   */
+  static Normalized normalize(String sql, SqlNode node, boolean literals) {
+    final List<SqlNode> nodes = new ArrayList<>();
+    node.accept(new ParameterFinder(nodes, literals));
+    final int[] lineStarts = lineStarts(sql);
+    final List<int[]> spans = new ArrayList<>();
+    final List<SqlNode> spanNodes = new ArrayList<>();
+    final Map<SqlNode, Boolean> seen = new IdentityHashMap<>();
+    for (SqlNode n : nodes) {
+      if (seen.put(n, true) != null) {
+        // Parameters in FETCH and OFFSET appear twice in the tree
+        continue;
+      }
+      final SqlParserPos pos = n.getParserPosition();
+      final int start = offset(lineStarts, pos.getLineNum(), pos.getColumnNum());
+      final int end =
+          offset(lineStarts, pos.getEndLineNum(), pos.getEndColumnNum()) + 1;
+      if (start < 0 || end <= start || end > sql.length()) {
+        if (n instanceof SqlDynamicParam) {
+          // Cannot locate the parameter, so cannot tell where literals lie
+          // relative to it
+          return normalize(sql, node, false);
+        }
+        continue;
+      }
+      if (n instanceof SqlLiteral && !plain((SqlLiteral) n, sql, start)) {
+        continue;
+      }
+      spans.add(new int[] {start, end});
+      spanNodes.add(n);
+    }
+    final List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < spans.size(); i++) {
+      order.add(i);
+    }
+    order.sort(Comparator.comparingInt(i -> spans.get(i)[0]));
+
+    final StringBuilder b = new StringBuilder();
+    final ImmutableList.Builder<SqlLiteral> literalList =
+        ImmutableList.builder();
+    final int[] slots = new int[spans.size()];
+    int previous = 0;
+    int slot = 0;
+    for (int i : order) {
+      final int[] span = spans.get(i);
+      if (span[0] < previous) {
+        // Overlapping spans; should not happen
+        return literals ? normalize(sql, node, false)
+            : new Normalized(sql, ImmutableList.of(), new int[0]);
+      }
+      final SqlNode n = spanNodes.get(i);
+      if (n instanceof SqlDynamicParam) {
+        slots[slot++] = ((SqlDynamicParam) n).getIndex();
+      } else {
+        b.append(sql, previous, span[0]).append('?');
+        previous = span[1];
+        literalList.add((SqlLiteral) n);
+        slots[slot++] = -1;
+      }
+    }
+    b.append(sql, previous, sql.length());
+    return new Normalized(b.toString(), literalList.build(), slots);
+  }
+
+  /** Returns whether a literal is a simple numeric or character literal
+   * whose text starts at a given offset; that is, it does not have a
+   * character set, national or Unicode prefix. */
+  private static boolean plain(SqlLiteral literal, String sql, int start) {
+    final char c = sql.charAt(start);
+    if (literal instanceof SqlCharStringLiteral) {
+      return c == '\'';
+    }
+    return c == '.' || c == '-' || c == '+' || c >= '0' && c <= '9';
+  }
+
+  /** Returns the offsets at which each line of a string starts, line
+   * breaks being "\n", "\r" or "\r\n" as in the parser. */
+  private static int[] lineStarts(String sql) {
+    final List<Integer> list = new ArrayList<>();
+    list.add(0);
+    for (int i = 0; i < sql.length(); i++) {
+      final char c = sql.charAt(i);
+      if (c == '\n'
+          || c == '\r' && (i + 1 == sql.length() || sql.charAt(i + 1) != '\n')) {
+        list.add(i + 1);
+      }
+    }
+    return ImmutableIntList.copyOf(list).toIntArray();
+  }
+
+  /** Converts a 1-based line and column to an offset, or returns -1. */
+  private static int offset(int[] lineStarts, int line, int column) {
+    if (line < 1 || line > lineStarts.length || column < 1) {
+      return -1;
+    }
+    return lineStarts[line - 1] + column - 1;
+  }
+
+  /** Converts the value of a literal to the Java representation of a
+   * parameter of a given JDBC type, or returns null if the type cannot
+   * hold the value exactly. */
+  static @Nullable Object value(SqlLiteral literal, int type) {
+    if (literal instanceof SqlCharStringLiteral) {
+      return type == Types.VARCHAR ? literal.getValueAs(String.class) : null;
+    }
+    if (!(literal instanceof SqlNumericLiteral)) {
+      return null;
+    }
+    final BigDecimal v = literal.getValueAs(BigDecimal.class);
+    switch (type) {
+    case Types.REAL:
+      return v.floatValue();
+    case Types.DOUBLE:
+    case Types.FLOAT:
+      return v.doubleValue();
+    case Types.DECIMAL:
+      return ((SqlNumericLiteral) literal).isExact() ? v : null;
+    case Types.TINYINT:
+    case Types.SMALLINT:
+    case Types.INTEGER:
+    case Types.BIGINT:
+      if (!((SqlNumericLiteral) literal).isExact()) {
+        return null;
+      }
+      final long x;
+      try {
+        x = v.longValueExact();
+      } catch (ArithmeticException e) {
+        return null;
+      }
+      switch (type) {
+      case Types.TINYINT:
+        return x == (byte) x ? (Object) (byte) x : null;
+      case Types.SMALLINT:
+        return x == (short) x ? (Object) (short) x : null;
+      case Types.INTEGER:
+        return x == (int) x ? (Object) (int) x : null;
+      default:
+        return x;
+      }
+    default:
+      return null;
+    }
+  }
+
+  /** Visitor that finds the dynamic parameters in a parse tree and the
+   * literals that could be replaced by dynamic parameters. */
+  private static class ParameterFinder extends SqlBasicVisitor<Void> {
+    private final List<SqlNode> nodes;
+    private final boolean literals;
+
+    ParameterFinder(List<SqlNode> nodes, boolean literals) {
+      this.nodes = nodes;
+      this.literals = literals;
+    }
+
+    @Override public Void visit(SqlDynamicParam param) {
+      nodes.add(param);
+      return null;
+    }
+
+    @Override public Void visit(SqlCall call) {
+      if (literals) {
+        switch (call.getKind()) {
+        case EQUALS:
+        case NOT_EQUALS:
+        case LESS_THAN:
+        case LESS_THAN_OR_EQUAL:
+        case GREATER_THAN:
+        case GREATER_THAN_OR_EQUAL:
+          if (call.operandCount() == 2) {
+            final SqlNode left = call.operand(0);
+            final SqlNode right = call.operand(1);
+            if (isConstant(left) != isConstant(right)) {
+              add(left);
+              add(right);
+            }
+          }
+          break;
+        case BETWEEN:
+          if (call.operandCount() == 3 && !isConstant(call.operand(0))) {
+            add(call.operand(1));
+            add(call.operand(2));
+          }
+          break;
+        default:
+          break;
+        }
+      }
+      return super.visit(call);
+    }
+
+    private static boolean isConstant(@Nullable SqlNode node) {
+      return node instanceof SqlLiteral || node instanceof SqlDynamicParam;
+    }
+
+    private void add(SqlNode node) {
+      if (node instanceof SqlNumericLiteral
+          || node instanceof SqlCharStringLiteral) {
+        nodes.add(node);
+      }
+    }
+  }
+
+  /** Query in which literals have been replaced with dynamic parameters. */
+  static class Normalized {
+    final String sql;
+    /** Literals that have been replaced, in the order they occurred. */
+    final ImmutableList<SqlLiteral> literals;
+    /** For each dynamic parameter of {@link #sql}, the ordinal of the
+     * parameter of the original query, or -1 if it replaces a literal. */
+    final ImmutableIntList slots;
+
+    Normalized(String sql, ImmutableList<SqlLiteral> literals, int[] slots) {
+      this.sql = sql;
+      this.literals = literals;
+      this.slots = ImmutableIntList.of(slots);
+    }
+  }
+
+  /** Key of an entry in the cache. */
+  static class Key {
+    final String sql;
+    final ImmutableIntList slots;
+    final SchemaVersion schemaVersion;
+    final ImmutableList<String> defaultSchemaPath;
+    final Type elementType;
+    final boolean bindable;
+
+    Key(Normalized normalized, SchemaVersion schemaVersion,
+        List<String> defaultSchemaPath, Type elementType, boolean bindable) {
+      this.sql = normalized.sql;
+      this.slots = normalized.slots;
+      this.schemaVersion = schemaVersion;
+      this.defaultSchemaPath = ImmutableList.copyOf(defaultSchemaPath);
+      this.elementType = elementType;
+      this.bindable = bindable;
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(sql, slots, schemaVersion, defaultSchemaPath,
+          elementType, bindable);
+    }
+
+    @Override public boolean equals(@Nullable Object o) {
+      return o == this
+          || o instanceof Key
+          && sql.equals(((Key) o).sql)
+          && slots.equals(((Key) o).slots)
+          && schemaVersion.equals(((Key) o).schemaVersion)
+          && defaultSchemaPath.equals(((Key) o).defaultSchemaPath)
+          && elementType.equals(((Key) o).elementType)
+          && bindable == ((Key) o).bindable;
+    }
+  }
+
+  /** Entry in the cache. */
+  static class Entry {
+    /** Entry for a query whose literals cannot be replaced by dynamic
+     * parameters. */
+    static final Entry UNUSABLE =
+        new Entry(null, null, ImmutableList.of(), ImmutableMap.of());
+
+    /** Signature of the normalized query, or null. */
+    final @Nullable CalciteSignature<?> signature;
+    /** Optimized plan, or null. */
+    final @Nullable RelNode rel;
+    /** Parameters of the original query. */
+    final ImmutableList<AvaticaParameter> parameters;
+    /** Versions in the {@link CardinalityFeedback} of the observation points
+     * of the query when it was planned. */
+    final ImmutableMap<String, Long> feedbackVersions;
+
+    private Entry(@Nullable CalciteSignature<?> signature,
+        @Nullable RelNode rel, ImmutableList<AvaticaParameter> parameters,
+        ImmutableMap<String, Long> feedbackVersions) {
+      this.signature = signature;
+      this.rel = rel;
+      this.parameters = parameters;
+      this.feedbackVersions = feedbackVersions;
+    }
+
+    /** Creates an entry for a normalized query that has been prepared. */
+    static Entry create(Normalized normalized, CalciteSignature<?> signature,
+        @Nullable RelNode rel, ImmutableMap<String, Long> feedbackVersions) {
+      if (signature.parameters.size() != normalized.slots.size()) {
+        return UNUSABLE;
+      }
+      final ImmutableList.Builder<AvaticaParameter> parameters =
+          ImmutableList.builder();
+      for (int i = 0; i < normalized.slots.size(); i++) {
+        final AvaticaParameter p = signature.parameters.get(i);
+        final int slot = normalized.slots.get(i);
+        if (slot >= 0) {
+          parameters.add(
+              new AvaticaParameter(p.signed, p.precision, p.scale,
+                  p.parameterType, p.typeName, p.className, "?" + slot));
+        } else {
+          switch (p.parameterType) {
+          case Types.TINYINT:
+          case Types.SMALLINT:
+          case Types.INTEGER:
+          case Types.BIGINT:
+          case Types.DECIMAL:
+          case Types.REAL:
+          case Types.FLOAT:
+          case Types.DOUBLE:
+          case Types.VARCHAR:
+            break;
+          default:
+            return UNUSABLE;
+          }
+        }
+      }
+      return new Entry(signature, rel, parameters.build(), feedbackVersions);
+    }
+
+    /** Returns whether the row counts with which the query was planned are
+     * still current. */
+    boolean isCurrent(@Nullable CardinalityFeedback feedback) {
+      return feedback == null || feedback.isCurrent(feedbackVersions);
+    }
+
+    /** Creates a signature for a query, or returns null if this entry cannot
+     * be used for it. */
+    <T> @Nullable CalciteSignature<T> bind(Normalized normalized, String sql,
+        CalciteSchema rootSchema, long maxRowCount) {
+      if (signature == null) {
+        return null;
+      }
+      @SuppressWarnings("unchecked")
+      final CalciteSignature<T> template = (CalciteSignature<T>) signature;
+      final Bindable<T> bindable;
+      if (normalized.literals.isEmpty()) {
+        bindable = template::enumerable;
+      } else {
+        final @Nullable Object[] values =
+            new Object[normalized.slots.size()];
+        int j = 0;
+        for (int i = 0; i < values.length; i++) {
+          if (normalized.slots.get(i) < 0) {
+            final AvaticaParameter p = template.parameters.get(i);
+            final Object value =
+                value(normalized.literals.get(j++), p.parameterType);
+            if (value == null
+                || value instanceof String && p.precision > 0
+                && ((String) value).length() > p.precision) {
+              return null;
+            }
+            values[i] = value;
+          }
+        }
+        bindable = dataContext ->
+            template.enumerable(
+                new ParameterContext(dataContext, normalized.slots, values));
+      }
+      return new CalciteSignature<>(sql, parameters,
+          template.internalParameters, template.rowType, template.columns,
+          template.cursorFactory, rootSchema, template.getCollationList(),
+          maxRowCount, bindable, template.statementType);
+    }
+  }
+
+  /** Data context that supplies the values of the dynamic parameters of a
+   * normalized query: either the value of a parameter of the original query,
+   * or the value of the literal that the parameter replaced. */
+  private static class ParameterContext implements DataContext {
+    private final DataContext parent;
+    private final ImmutableIntList slots;
+    private final @Nullable Object[] values;
+
+    ParameterContext(DataContext parent, ImmutableIntList slots,
+        @Nullable Object[] values) {
+      this.parent = parent;
+      this.slots = slots;
+      this.values = values;
+    }
+
+    @Override public @Nullable SchemaPlus getRootSchema() {
+      return parent.getRootSchema();
+    }
+
+    @Override public JavaTypeFactory getTypeFactory() {
+      return parent.getTypeFactory();
+    }
+
+    @Override public QueryProvider getQueryProvider() {
+      return parent.getQueryProvider();
+    }
+
+    @Override public @Nullable Object get(String name) {
+      if (name.startsWith("?")) {
+        final int i;
+        try {
+          i = Integer.parseInt(name.substring(1));
+        } catch (NumberFormatException e) {
+          return parent.get(name);
+        }
+        if (i >= 0 && i < slots.size()) {
+          final int slot = slots.get(i);
+          return slot >= 0 ? parent.get("?" + slot) : values[i];
+        }
+      }
+      return parent.get(name);
+    }
+  }
+}
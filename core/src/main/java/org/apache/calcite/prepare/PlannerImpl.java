@@ -28,6 +28,7 @@
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptCostFactory;
 import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptProfiler;
 import org.apache.calcite.plan.RelOptTable.ViewExpander;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.plan.RelTraitDef;
@@ -370,9 +371,18 @@ private RexBuilder createRexBuilder() {
             requireNonNull(rel.getCluster().getMetadataProvider(), "metadataProvider"),
             rel.getCluster().getPlanner()));
     Program program = programs.get(ruleSetIndex);
-    return program.run(requireNonNull(planner, "planner"),
-        rel, requiredOutputTraits, ImmutableList.of(),
-        ImmutableList.of());
+    final RelOptProfiler profiler = connectionConfig.plannerProfile()
+        ? RelOptProfiler.register(rel.getCluster())
+        : null;
+    final RelNode optimized =
+        program.run(requireNonNull(planner, "planner"),
+            rel, requiredOutputTraits, ImmutableList.of(),
+            ImmutableList.of());
+    if (profiler != null) {
+      profiler.stop();
+      Hook.PLANNER_PROFILE.run(profiler);
+    }
+    return optimized;
   }
 
   /** Stage of a statement in the query-preparation lifecycle. */
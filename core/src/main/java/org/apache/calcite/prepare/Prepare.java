@@ -26,6 +26,7 @@
 import org.apache.calcite.plan.RelOptLattice;
 import org.apache.calcite.plan.RelOptMaterialization;
 import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptProfiler;
 import org.apache.calcite.plan.RelOptSchema;
 import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelOptUtil;
@@ -174,8 +175,15 @@ protected RelRoot optimize(RelRoot root,
     final RelTraitSet desiredTraits = getDesiredRootTraitSet(root);
 
     final Program program = getProgram();
+    final RelOptProfiler profiler = context.config().plannerProfile()
+        ? RelOptProfiler.register(root.rel.getCluster())
+        : null;
     final RelNode rootRel4 = program.run(
         planner, root.rel, desiredTraits, materializationList, latticeList);
+    if (profiler != null) {
+      profiler.stop();
+      Hook.PLANNER_PROFILE.run(profiler);
+    }
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("Plan after physical tweaks: {}",
           RelOptUtil.toString(rootRel4, SqlExplainLevel.ALL_ATTRIBUTES));
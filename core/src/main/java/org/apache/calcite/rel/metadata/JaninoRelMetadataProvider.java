@@ -127,6 +127,10 @@ private static <MH extends MetadataHandler<?>> MH generateCompileAndInstantiate(
     final List<? extends MetadataHandler<? extends Metadata>> uniqueHandlers = handlers.stream()
         .distinct()
         .collect(Collectors.toList());
+    final MH precompiled = instantiatePrecompiled(handlerClass, uniqueHandlers);
+    if (precompiled != null) {
+      return precompiled;
+    }
     RelMetadataHandlerGeneratorUtil.HandlerNameAndGeneratedCode handlerNameAndGeneratedCode =
         RelMetadataHandlerGeneratorUtil.generateHandler(handlerClass, uniqueHandlers);
 
@@ -139,6 +143,53 @@ private static <MH extends MetadataHandler<?>> MH generateCompileAndInstantiate(
     }
   }
 
+  /** Returns an instance of the handler class that was generated and
+   * compiled at build time, or null if there is no such class or if its
+   * providers are not of the same classes as {@code handlers}.
+   *
+   * <p>Handlers of {@link DefaultRelMetadataProvider} are generated by
+   * {@link RelMetadataHandlerGeneratorUtil#main}, and therefore never need
+   * Janino; handler lists that include user-registered providers fall back to
+   * generating and compiling code at run time. */
+  private static <MH extends MetadataHandler<?>> @Nullable MH instantiatePrecompiled(
+      Class<MH> handlerClass,
+      List<? extends MetadataHandler<? extends Metadata>> handlers) {
+    final Class<?> clazz;
+    try {
+      clazz =
+          Class.forName(
+              RelMetadataHandlerGeneratorUtil.precompiledHandlerName(handlerClass),
+              true, JaninoRelMetadataProvider.class.getClassLoader());
+    } catch (ClassNotFoundException | LinkageError e) {
+      return null;
+    }
+    if (!handlerClass.isAssignableFrom(clazz)) {
+      return null;
+    }
+    for (Constructor<?> constructor : clazz.getConstructors()) {
+      final Class<?>[] parameterTypes = constructor.getParameterTypes();
+      if (parameterTypes.length != handlers.size()) {
+        continue;
+      }
+      boolean match = true;
+      for (int i = 0; i < parameterTypes.length; i++) {
+        if (parameterTypes[i] != handlers.get(i).getClass()) {
+          match = false;
+          break;
+        }
+      }
+      if (match) {
+        try {
+          return handlerClass.cast(constructor.newInstance(handlers.toArray()));
+        } catch (InstantiationException
+            | IllegalAccessException
+            | InvocationTargetException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+    return null;
+  }
 
   static  <MH extends MetadataHandler<?>> MH compile(String className,
       String generatedCode, Class<MH> handlerClass,
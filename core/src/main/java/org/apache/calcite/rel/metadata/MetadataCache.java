@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.rel.RelNode;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ForwardingTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Table;
+import com.google.common.collect.Tables;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cache of metadata results, held by a {@link RelMetadataQuery}.
+ *
+ * <p>Results are stored by relational expression (row) and key (column);
+ * the key identifies the kind of metadata and its arguments. If the cache
+ * holds more than the maximum number of relational expressions, the results
+ * for the least recently used expressions are discarded until it is within
+ * the maximum; expressions that have a result still being computed are
+ * skipped. The cache exceeds the maximum only if all but the most recently
+ * added expression have a computation in progress.
+ *
+ * <p>After {@link #startProfiling(Ticker)}, the cache also counts, for each
+ * kind of metadata, how many lookups found a result and how many did not,
+ * and how long it took to compute results; see {@link #statistics()}.
+ * Without a profiler, lookups and computations are not measured.
+ */
+public class MetadataCache extends ForwardingTable<RelNode, Object, Object> {
+  private final Table<RelNode, Object, Object> table;
+  private final Map<Object, long[]> counts = new IdentityHashMap<>();
+  /** Computations in progress; the innermost is first. */
+  private final Deque<Frame> frames = new ArrayDeque<>();
+  /** Source of time if profiling, otherwise null. */
+  private @Nullable Ticker ticker;
+  private long evictionCount;
+
+  /** Creates a MetadataCache.
+   *
+   * @param maximumSize Maximum number of relational expressions; if
+   *                    negative, there is no limit */
+  public MetadataCache(int maximumSize) {
+    final Map<RelNode, Map<Object, Object>> rows;
+    if (maximumSize < 0) {
+      rows = new HashMap<>();
+    } else {
+      rows = new LinkedHashMap<RelNode, Map<Object, Object>>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(
+            Map.Entry<RelNode, Map<Object, Object>> eldest) {
+          // Remove the least recently used expressions that have no active
+          // computation, but never the one that has just been added.
+          int remaining = size() - 1;
+          for (Iterator<Map<Object, Object>> iterator = values().iterator();
+               size() > maximumSize && remaining > 0; --remaining) {
+            if (!iterator.next().containsValue(NullSentinel.ACTIVE)) {
+              iterator.remove();
+              ++evictionCount;
+            }
+          }
+          return false;
+        }
+      };
+    }
+    this.table = Tables.newCustomTable(rows, HashMap::new);
+  }
+
+  @Override protected Table<RelNode, Object, Object> delegate() {
+    return table;
+  }
+
+  /** Starts counting lookups and timing computations.
+   *
+   * @param ticker Source of time, in nanoseconds */
+  public void startProfiling(Ticker ticker) {
+    this.ticker = ticker;
+  }
+
+  @Override public @Nullable Object get(@Nullable Object rowKey,
+      @Nullable Object columnKey) {
+    final Object v = table.get(rowKey, columnKey);
+    if (ticker != null && v != NullSentinel.ACTIVE) {
+      ++counts(columnKey)[v == null ? 1 : 0];
+    }
+    return v;
+  }
+
+  /** {@inheritDoc}
+   *
+   * <p>A handler puts {@link NullSentinel#ACTIVE} before it computes a
+   * result, and calls {@link #finish} when the computation has succeeded or
+   * failed; if profiling, the cache measures the time between the two. */
+  @Override public @Nullable Object put(RelNode rowKey, Object columnKey,
+      Object value) {
+    if (value == NullSentinel.ACTIVE && ticker != null) {
+      frames.push(new Frame(rowKey, columnKey, ticker.read()));
+    }
+    return table.put(rowKey, columnKey, value);
+  }
+
+  /** Records the time taken by the computation of a result, which has
+   * either succeeded or failed. A handler calls this method in a
+   * {@code finally} block after putting {@link NullSentinel#ACTIVE}, so
+   * computations finish in the reverse of the order they started. */
+  public void finish(RelNode rowKey, Object columnKey) {
+    final Frame frame = frames.peek();
+    if (ticker == null
+        || frame == null
+        || frame.rel != rowKey
+        || !frame.key.equals(columnKey)) {
+      return;
+    }
+    frames.pop();
+    final long elapsed = ticker.read() - frame.start;
+    counts(columnKey)[2] += elapsed - frame.childNanos;
+    final Frame parent = frames.peek();
+    if (parent != null) {
+      parent.childNanos += elapsed;
+    }
+  }
+
+  private long[] counts(@Nullable Object columnKey) {
+    return counts.computeIfAbsent(kind(columnKey), k -> new long[3]);
+  }
+
+  /** Returns the kind of metadata that a key represents. Keys of metadata
+   * that has arguments are lists whose first element identifies the
+   * method. */
+  private static @Nullable Object kind(@Nullable Object columnKey) {
+    if (columnKey instanceof List && !((List) columnKey).isEmpty()) {
+      return ((List) columnKey).get(0);
+    }
+    return columnKey;
+  }
+
+  /** Returns the number of relational expressions whose results have been
+   * discarded because the cache was full. */
+  public long evictionCount() {
+    return evictionCount;
+  }
+
+  /** Returns the hit and miss counts and the computation time for each
+   * kind of metadata, ordered by the name of the kind; empty unless
+   * {@link #startProfiling profiling}. */
+  public List<Statistic> statistics() {
+    final Map<String, long[]> map = new TreeMap<>();
+    counts.forEach((kind, count) -> {
+      final long[] total =
+          map.computeIfAbsent(String.valueOf(kind), k -> new long[3]);
+      for (int i = 0; i < total.length; i++) {
+        total[i] += count[i];
+      }
+    });
+    final List<Statistic> list = new ArrayList<>();
+    map.forEach((kind, count) ->
+        list.add(new Statistic(kind, count[0], count[1], count[2])));
+    return ImmutableList.copyOf(list);
+  }
+
+  /** Hit and miss counts and computation time for a kind of metadata. */
+  public static class Statistic {
+    public final String kind;
+    public final long hitCount;
+    public final long missCount;
+    /** Time, in nanoseconds, spent computing results of this kind,
+     * excluding time spent computing other metadata that they needed. */
+    public final long nanos;
+
+    Statistic(String kind, long hitCount, long missCount, long nanos) {
+      this.kind = kind;
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.nanos = nanos;
+    }
+
+    /** Returns the fraction of lookups that found a result, or 0 if there
+     * have been no lookups. */
+    public double hitRate() {
+      final long total = hitCount + missCount;
+      return total == 0 ? 0d : (double) hitCount / total;
+    }
+
+    @Override public String toString() {
+      return kind + ": hits " + hitCount + ", misses " + missCount;
+    }
+  }
+
+  /** Computation of a result that is in progress. */
+  private static class Frame {
+    final RelNode rel;
+    final Object key;
+    final long start;
+    long childNanos;
+
+    Frame(RelNode rel, Object key, long start) {
+      this.rel = rel;
+      this.key = key;
+      this.start = start;
+    }
+  }
+}
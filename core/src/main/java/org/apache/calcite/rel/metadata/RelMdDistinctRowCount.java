@@ -26,6 +26,7 @@
 import org.apache.calcite.rel.core.Project;
 import org.apache.calcite.rel.core.Sort;
 import org.apache.calcite.rel.core.TableModify;
+import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.core.Union;
 import org.apache.calcite.rel.core.Values;
 import org.apache.calcite.rex.RexBuilder;
@@ -297,6 +298,24 @@ public Double getDistinctRowCount(Values rel, RelMetadataQuery mq,
     return RelMdUtil.numDistinctVals(distinctRowCount, mq.getRowCount(rel));
   }
 
+  public @Nullable Double getDistinctRowCount(TableScan rel, RelMetadataQuery mq,
+      ImmutableBitSet groupKey, @Nullable RexNode predicate) {
+    final Double distinctCount =
+        RelMdUtil.estimateDistinctCount(rel.getTable(), groupKey);
+    if (distinctCount == null) {
+      return getDistinctRowCount((RelNode) rel, mq, groupKey, predicate);
+    }
+    final Double rowCount = mq.getRowCount(rel);
+    final double populationSize = rowCount == null
+        ? distinctCount
+        : Math.min(distinctCount, rowCount);
+    if (predicate == null || predicate.isAlwaysTrue()) {
+      return populationSize;
+    }
+    return RelMdUtil.numDistinctVals(populationSize,
+        NumberUtil.multiply(rowCount, mq.getSelectivity(rel, predicate)));
+  }
+
   public @Nullable Double getDistinctRowCount(RelSubset rel, RelMetadataQuery mq,
       ImmutableBitSet groupKey, @Nullable RexNode predicate) {
     final RelNode best = rel.getBest();
@@ -17,7 +17,11 @@
 package org.apache.calcite.rel.metadata;
 
 import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.Calc;
 import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Project;
 import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.core.Values;
 
@@ -74,8 +78,41 @@ public Boolean isPhaseTransition(Exchange rel, RelMetadataQuery mq) {
    * invoked using reflection.
    *
    * @see org.apache.calcite.rel.metadata.RelMetadataQuery#splitCount
+   * @see SplittableRel
    */
   public Integer splitCount(RelNode rel, RelMetadataQuery mq) {
+    if (rel instanceof SplittableRel) {
+      return ((SplittableRel) rel).getSplitCount();
+    }
     return 1;
   }
+
+  public Integer splitCount(Calc rel, RelMetadataQuery mq) {
+    return mq.splitCount(rel.getInput());
+  }
+
+  public Integer splitCount(Filter rel, RelMetadataQuery mq) {
+    return mq.splitCount(rel.getInput());
+  }
+
+  public Integer splitCount(Project rel, RelMetadataQuery mq) {
+    return mq.splitCount(rel.getInput());
+  }
+
+  public Integer splitCount(Aggregate rel, RelMetadataQuery mq) {
+    return mq.splitCount(rel.getInput());
+  }
+
+  public Integer splitCount(Exchange rel, RelMetadataQuery mq) {
+    if (rel instanceof SplittableRel) {
+      return ((SplittableRel) rel).getSplitCount();
+    }
+    switch (rel.getDistribution().getType()) {
+    case SINGLETON:
+    case BROADCAST_DISTRIBUTED:
+      return 1;
+    default:
+      return mq.splitCount(rel.getInput());
+    }
+  }
 }
@@ -24,6 +24,7 @@
 import org.apache.calcite.rel.core.Project;
 import org.apache.calcite.rel.core.Sort;
 import org.apache.calcite.rel.core.TableModify;
+import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.core.Union;
 import org.apache.calcite.rel.core.Values;
 import org.apache.calcite.rex.RexNode;
@@ -153,6 +154,17 @@ public Double getPopulationSize(Values rel, RelMetadataQuery mq,
     return RelMdUtil.numDistinctVals(population, mq.getRowCount(rel));
   }
 
+  public @Nullable Double getPopulationSize(TableScan rel, RelMetadataQuery mq,
+      ImmutableBitSet groupKey) {
+    final Double distinctCount =
+        RelMdUtil.estimateDistinctCount(rel.getTable(), groupKey);
+    if (distinctCount == null) {
+      return getPopulationSize((RelNode) rel, mq, groupKey);
+    }
+    final Double rowCount = mq.getRowCount(rel);
+    return rowCount == null ? distinctCount : Math.min(distinctCount, rowCount);
+  }
+
   /** Catch-all implementation for
    * {@link BuiltInMetadata.PopulationSize#getPopulationSize(ImmutableBitSet)},
    * invoked using reflection.
@@ -70,6 +70,10 @@
 
   @SuppressWarnings("CatchAndPrintStackTrace")
   public @Nullable Double getRowCount(RelSubset subset, RelMetadataQuery mq) {
+    final Double observed = subset.getObservedRowCount();
+    if (observed != null) {
+      return observed;
+    }
     if (!Bug.CALCITE_1048_FIXED) {
       return mq.getRowCount(subset.getBestOrOriginal());
     }
@@ -17,6 +17,7 @@
 package org.apache.calcite.rel.metadata;
 
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.volcano.RelSubset;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Aggregate;
 import org.apache.calcite.rel.core.Calc;
@@ -25,6 +26,7 @@
 import org.apache.calcite.rel.core.Project;
 import org.apache.calcite.rel.core.Sort;
 import org.apache.calcite.rel.core.TableModify;
+import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.core.Union;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexLocalRef;
@@ -37,7 +39,9 @@
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * RelMdSelectivity supplies a default implementation of
@@ -216,6 +220,65 @@ protected RelMdSelectivity() {
     }
   }
 
+  public @Nullable Double getSelectivity(RelSubset rel, RelMetadataQuery mq,
+      @Nullable RexNode predicate) {
+    // Look through the subset only if column statistics can improve the
+    // estimate; otherwise guess, as for any other expression, so that plans
+    // over tables that have not been analyzed do not change.
+    final RelNode best = rel.getBestOrOriginal();
+    if (!scansAnalyzedTable(best, new HashSet<>())) {
+      return RelMdUtil.guessSelectivity(predicate);
+    }
+    return mq.getSelectivity(best, predicate);
+  }
+
+  /** Returns whether a relational expression, or any of its inputs, scans a
+   * table that has column statistics. */
+  private static boolean scansAnalyzedTable(RelNode rel, Set<RelNode> visited) {
+    if (rel instanceof RelSubset) {
+      rel = ((RelSubset) rel).getBestOrOriginal();
+    }
+    if (!visited.add(rel)) {
+      return false;
+    }
+    if (rel instanceof TableScan) {
+      return RelMdUtil.hasColumnStatistics(((TableScan) rel).getTable());
+    }
+    for (RelNode input : rel.getInputs()) {
+      if (scansAnalyzedTable(input, visited)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public @Nullable Double getSelectivity(TableScan rel, RelMetadataQuery mq,
+      @Nullable RexNode predicate) {
+    if (predicate == null) {
+      return 1.0;
+    }
+    // Use column statistics for the conjuncts they can estimate, and guess
+    // the rest.
+    final List<RexNode> conjunctions = RelOptUtil.conjunctions(predicate);
+    final List<RexNode> unknown = new ArrayList<>();
+    double selectivity = 1.0;
+    for (RexNode conjunction : conjunctions) {
+      final Double s =
+          RelMdUtil.estimateSelectivity(rel.getTable(), conjunction);
+      if (s == null) {
+        unknown.add(conjunction);
+      } else {
+        selectivity *= s;
+      }
+    }
+    if (unknown.size() == conjunctions.size()) {
+      return RelMdUtil.guessSelectivity(predicate);
+    }
+    final RexBuilder rexBuilder = rel.getCluster().getRexBuilder();
+    return selectivity * RelMdUtil.guessSelectivity(
+        RexUtil.composeConjunction(rexBuilder, unknown, true));
+  }
+
   // Catch-all rule when none of the others apply.
   public Double getSelectivity(RelNode rel, RelMetadataQuery mq,
       @Nullable RexNode predicate) {
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.rel.metadata;
 
+import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelNode;
@@ -33,20 +34,31 @@
 import org.apache.calcite.rex.RexLocalRef;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexUnknownAs;
 import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.rex.RexVisitorImpl;
+import org.apache.calcite.schema.ColumnStatistics;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlFunction;
 import org.apache.calcite.sql.SqlFunctionCategory;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.type.OperandTypes;
 import org.apache.calcite.sql.type.ReturnTypes;
+import org.apache.calcite.util.DateString;
 import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.NlsString;
 import org.apache.calcite.util.NumberUtil;
+import org.apache.calcite.util.RangeSets;
+import org.apache.calcite.util.Sarg;
+import org.apache.calcite.util.TimeString;
+import org.apache.calcite.util.TimestampString;
 import org.apache.calcite.util.Util;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.BoundType;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.nullness.qual.PolyNull;
@@ -59,6 +71,8 @@
 
 import static org.apache.calcite.util.NumberUtil.multiply;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * RelMdUtil provides utility methods used by the metadata provider methods.
  */
@@ -422,6 +436,221 @@ public static double guessSelectivity(
     }
   }
 
+  /**
+   * Returns statistics about a column of a table, or null if the table has
+   * not been analyzed.
+   *
+   * @see org.apache.calcite.schema.Statistic#getColumnStatistics(int)
+   */
+  public static @Nullable ColumnStatistics getColumnStatistics(
+      RelOptTable table, int ordinal) {
+    final Table t = table.unwrap(Table.class);
+    return t == null ? null : t.getStatistic().getColumnStatistics(ordinal);
+  }
+
+  /**
+   * Returns whether any column of a table has been analyzed.
+   *
+   * @see #getColumnStatistics(RelOptTable, int)
+   */
+  public static boolean hasColumnStatistics(RelOptTable table) {
+    for (int i = 0; i < table.getRowType().getFieldCount(); i++) {
+      if (getColumnStatistics(table, i) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Estimates the number of distinct combinations of values of a set of
+   * columns of a table from the statistics of each column, assuming the
+   * columns are independent. Null counts as a value.
+   *
+   * @return estimated number of distinct values, not capped by the number of
+   * rows in the table; or null if any column has not been analyzed, or if
+   * the set of columns is empty and no column of the table has been analyzed
+   */
+  public static @Nullable Double estimateDistinctCount(RelOptTable table,
+      ImmutableBitSet columns) {
+    if (columns.isEmpty()) {
+      // An empty key has one value, but without statistics the caller's
+      // default estimate applies
+      return hasColumnStatistics(table) ? 1d : null;
+    }
+    double distinctCount = 1d;
+    for (int column : columns) {
+      final ColumnStatistics statistics = getColumnStatistics(table, column);
+      if (statistics == null) {
+        return null;
+      }
+      distinctCount *= statistics.distinctCount
+          + (statistics.nullFraction > 0d ? 1d : 0d);
+    }
+    return distinctCount;
+  }
+
+  /**
+   * Estimates the selectivity of a predicate on the rows of a table using the
+   * statistics of its columns.
+   *
+   * <p>Handles comparisons between a column and a literal,
+   * {@code IS [NOT] NULL}, {@code SEARCH}, and {@code AND}, {@code OR} and
+   * {@code NOT} of such predicates.
+   *
+   * @param table     table whose columns the predicate references
+   * @param predicate predicate
+   * @return estimated selectivity, or null if the predicate has a form that is
+   * not handled or references a column that has not been analyzed
+   */
+  public static @Nullable Double estimateSelectivity(RelOptTable table,
+      RexNode predicate) {
+    if (!(predicate instanceof RexCall)) {
+      return null;
+    }
+    final RexCall call = (RexCall) predicate;
+    switch (call.getKind()) {
+    case AND:
+    case OR:
+      double sel = 1d;
+      for (RexNode operand : call.getOperands()) {
+        final Double s = estimateSelectivity(table, operand);
+        if (s == null) {
+          return null;
+        }
+        // For OR, multiply the probabilities that each operand is false.
+        sel *= call.getKind() == SqlKind.AND ? s : 1d - s;
+      }
+      return call.getKind() == SqlKind.AND ? sel : 1d - sel;
+    case NOT:
+      final Double s = estimateSelectivity(table, call.getOperands().get(0));
+      return s == null ? null : 1d - s;
+    case IS_NULL:
+    case IS_NOT_NULL:
+      final ColumnStatistics statistics =
+          columnStatistics(table, call.getOperands().get(0));
+      if (statistics == null) {
+        return null;
+      }
+      return call.getKind() == SqlKind.IS_NULL
+          ? statistics.nullFraction
+          : 1d - statistics.nullFraction;
+    case SEARCH:
+      return estimateSearchSelectivity(table, call);
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      return estimateComparisonSelectivity(table, call);
+    default:
+      return null;
+    }
+  }
+
+  private static @Nullable Double estimateComparisonSelectivity(
+      RelOptTable table, RexCall call) {
+    SqlKind kind = call.getKind();
+    RexNode ref = call.getOperands().get(0);
+    RexNode literal = call.getOperands().get(1);
+    if (ref instanceof RexLiteral) {
+      ref = call.getOperands().get(1);
+      literal = call.getOperands().get(0);
+      kind = kind.reverse();
+    }
+    final ColumnStatistics statistics = columnStatistics(table, ref);
+    if (statistics == null || !(literal instanceof RexLiteral)) {
+      return null;
+    }
+    final Object value = ((RexLiteral) literal).getValue3();
+    if (!(value instanceof Comparable)
+        || !statistics.isComparable((Comparable) value)) {
+      return null;
+    }
+    final Comparable c = (Comparable) value;
+    switch (kind) {
+    case EQUALS:
+      return statistics.selectivityEquals(c);
+    case NOT_EQUALS:
+      return Math.max(0d,
+          1d - statistics.nullFraction - statistics.selectivityEquals(c));
+    case LESS_THAN:
+      return statistics.selectivityLessThan(c, false);
+    case LESS_THAN_OR_EQUAL:
+      return statistics.selectivityLessThan(c, true);
+    case GREATER_THAN:
+      return statistics.selectivityGreaterThan(c, false);
+    case GREATER_THAN_OR_EQUAL:
+      return statistics.selectivityGreaterThan(c, true);
+    default:
+      return null;
+    }
+  }
+
+  @SuppressWarnings({"BetaApi", "rawtypes", "unchecked"})
+  private static @Nullable Double estimateSearchSelectivity(RelOptTable table,
+      RexCall call) {
+    final ColumnStatistics statistics =
+        columnStatistics(table, call.getOperands().get(0));
+    final RexNode literal = call.getOperands().get(1);
+    if (statistics == null || !(literal instanceof RexLiteral)) {
+      return null;
+    }
+    final Sarg<?> sarg =
+        requireNonNull(((RexLiteral) literal).getValueAs(Sarg.class), "sarg");
+    double sel = sarg.nullAs == RexUnknownAs.TRUE ? statistics.nullFraction : 0d;
+    for (Range range : sarg.rangeSet.asRanges()) {
+      final Comparable lower =
+          range.hasLowerBound() ? statisticValue(range.lowerEndpoint()) : null;
+      final Comparable upper =
+          range.hasUpperBound() ? statisticValue(range.upperEndpoint()) : null;
+      if (lower != null && !statistics.isComparable(lower)
+          || upper != null && !statistics.isComparable(upper)) {
+        return null;
+      }
+      if (lower != null && upper != null && RangeSets.isPoint(range)) {
+        sel += statistics.selectivityEquals(lower);
+        continue;
+      }
+      final double below = lower == null ? 0d
+          : statistics.selectivityLessThan(lower,
+              range.lowerBoundType() == BoundType.OPEN);
+      final double upTo = upper == null ? 1d - statistics.nullFraction
+          : statistics.selectivityLessThan(upper,
+              range.upperBoundType() == BoundType.CLOSED);
+      sel += Math.max(0d, upTo - below);
+    }
+    return Math.min(sel, 1d);
+  }
+
+  /** Returns the statistics of the column that an expression references, or
+   * null if the expression is not a column reference or the column has not
+   * been analyzed. */
+  private static @Nullable ColumnStatistics columnStatistics(RelOptTable table,
+      RexNode e) {
+    if (!(e instanceof RexInputRef)) {
+      return null;
+    }
+    return getColumnStatistics(table, ((RexInputRef) e).getIndex());
+  }
+
+  /** Converts a value in a {@link Sarg} to the representation used by
+   * {@link RexLiteral#getValue3()}, which is also the representation of
+   * values in {@link ColumnStatistics}. */
+  private static Comparable statisticValue(Comparable value) {
+    if (value instanceof NlsString) {
+      return ((NlsString) value).getValue();
+    } else if (value instanceof DateString) {
+      return ((DateString) value).getDaysSinceEpoch();
+    } else if (value instanceof TimeString) {
+      return ((TimeString) value).getMillisOfDay();
+    } else if (value instanceof TimestampString) {
+      return ((TimestampString) value).getMillisSinceEpoch();
+    }
+    return value;
+  }
+
   /**
    * AND's two predicates together, either of which may be null, removing
    * redundant filters.
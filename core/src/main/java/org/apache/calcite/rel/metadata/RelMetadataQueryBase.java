@@ -16,9 +16,9 @@
  */
 package org.apache.calcite.rel.metadata;
 
+import org.apache.calcite.config.CalciteSystemProperty;
 import org.apache.calcite.rel.RelNode;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -64,8 +64,18 @@
 public class RelMetadataQueryBase {
   //~ Instance fields --------------------------------------------------------
 
-  /** Set of active metadata queries, and cache of previous results. */
-  public final Table<RelNode, Object, Object> map = HashBasedTable.create();
+  private final MetadataCache cache =
+      new MetadataCache(
+          CalciteSystemProperty.METADATA_CACHE_MAXIMUM_SIZE.value());
+
+  /** Set of active metadata queries, and cache of previous results.
+   * Its size is limited by
+   * {@link CalciteSystemProperty#METADATA_CACHE_MAXIMUM_SIZE}.
+   *
+   * <p>The value is the {@link MetadataCache} that {@link #cache()} returns;
+   * the field has type {@link Table} for compatibility with code that was
+   * compiled against earlier versions. */
+  public final Table<RelNode, Object, Object> map = cache;
 
   public final @Nullable JaninoRelMetadataProvider metadataProvider;
 
@@ -91,6 +101,12 @@ protected static <H> H initialHandler(Class<H> handlerClass) {
 
   //~ Methods ----------------------------------------------------------------
 
+  /** Returns the cache of metadata results, which also provides statistics
+   * about how effective it has been. */
+  public MetadataCache cache() {
+    return cache;
+  }
+
   /** Re-generates the handler for a given kind of metadata, adding support for
    * {@code class_} if it is not already present. */
   @Deprecated // to be removed before 2.0
@@ -104,6 +104,8 @@ static void cachedMethod(StringBuilder buff, Method method, int methodIndex) {
         .append(" e) {\n")
         .append("      mq.map.row(r).clear();\n")
         .append("      throw e;\n")
+        .append("    } finally {\n")
+        .append("      mq.cache().finish(r, key);\n")
         .append("    }\n")
         .append("  }\n")
         .append("\n");
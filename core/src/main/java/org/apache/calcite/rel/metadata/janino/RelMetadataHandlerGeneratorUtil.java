@@ -16,18 +16,28 @@
  */
 package org.apache.calcite.rel.metadata.janino;
 
+import org.apache.calcite.rel.metadata.BuiltInMetadata;
+import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
 import org.apache.calcite.rel.metadata.MetadataDef;
 import org.apache.calcite.rel.metadata.MetadataHandler;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.immutables.value.Value;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.apache.calcite.linq4j.Nullness.castNonNull;
 
@@ -52,16 +62,90 @@ public class RelMetadataHandlerGeneratorUtil {
       + " * limitations under the License.\n"
       + " */\n";
 
+  /** Package of the handlers that are generated at build time, by
+   * {@link #main}, for the handlers of {@link DefaultRelMetadataProvider}.
+   *
+   * <p>It differs from the package of handlers generated at run time, so that
+   * a class generated by Janino never clashes with a pre-compiled class of the
+   * same name in a parent class loader. */
+  public static final String PRECOMPILED_PACKAGE =
+      "org.apache.calcite.rel.metadata.generated";
+
   private RelMetadataHandlerGeneratorUtil() {
   }
 
+  /** Generates the source code of the handler classes for the built-in
+   * metadata providers, and writes them under a directory.
+   *
+   * <p>The build calls this method to generate sources that it compiles
+   * ahead of time; {@link org.apache.calcite.rel.metadata.JaninoRelMetadataProvider}
+   * uses those classes, and only invokes Janino for handlers whose providers
+   * do not match.
+   *
+   * @param args Output directory, for example
+   *             "build/generated/sources/metadata"
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      throw new IllegalArgumentException("usage: "
+          + RelMetadataHandlerGeneratorUtil.class.getName() + " directory");
+    }
+    final Path dir = Paths.get(args[0]);
+    for (Class<? extends MetadataHandler<?>> handlerClass : builtInHandlerClasses()) {
+      final List<MetadataHandler<?>> handlers =
+          DefaultRelMetadataProvider.INSTANCE.handlers(handlerClass)
+              .stream()
+              .distinct()
+              .collect(Collectors.toList());
+      final HandlerNameAndGeneratedCode nameAndGeneratedCode =
+          generateHandler(handlerClass, handlers, PRECOMPILED_PACKAGE);
+      final Path file =
+          dir.resolve(nameAndGeneratedCode.getHandlerName().replace('.', '/')
+              + ".java");
+      Files.createDirectories(castNonNull(file.getParent()));
+      try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        w.write(nameAndGeneratedCode.getGeneratedCode());
+      }
+    }
+  }
+
+  /** Returns the handler classes declared in {@link BuiltInMetadata},
+   * sorted by name. */
+  public static List<Class<? extends MetadataHandler<?>>> builtInHandlerClasses() {
+    final List<Class<? extends MetadataHandler<?>>> list = new ArrayList<>();
+    for (Class<?> metadataClass : BuiltInMetadata.class.getClasses()) {
+      for (Class<?> c : metadataClass.getClasses()) {
+        if (c.getSimpleName().equals("Handler")
+            && MetadataHandler.class.isAssignableFrom(c)) {
+          //noinspection unchecked
+          list.add((Class<? extends MetadataHandler<?>>) c);
+        }
+      }
+    }
+    list.sort(Comparator.comparing(Class::getName));
+    return list;
+  }
+
+  /** Returns the fully-qualified name of the class that {@link #main}
+   * generates ahead of time for a given handler class. */
+  public static String precompiledHandlerName(
+      Class<? extends MetadataHandler<?>> handlerClass) {
+    return PRECOMPILED_PACKAGE + "." + handlerName(handlerClass);
+  }
+
   public static HandlerNameAndGeneratedCode generateHandler(
       Class<? extends MetadataHandler<?>> handlerClass,
       List<? extends MetadataHandler<?>> handlers) {
-    final String classPackage = castNonNull(RelMetadataHandlerGeneratorUtil.class.getPackage())
-        .getName();
-    final String name =
-        "GeneratedMetadata_" + simpleNameForHandler(handlerClass);
+    return generateHandler(handlerClass, handlers,
+        castNonNull(RelMetadataHandlerGeneratorUtil.class.getPackage())
+            .getName());
+  }
+
+  /** Generates the code of a handler class in a given package. */
+  public static HandlerNameAndGeneratedCode generateHandler(
+      Class<? extends MetadataHandler<?>> handlerClass,
+      List<? extends MetadataHandler<?>> handlers, String classPackage) {
+    final String name = handlerName(handlerClass);
     final Method[] declaredMethods = handlerClass.getDeclaredMethods();
     Arrays.sort(declaredMethods, Comparator.comparing(Method::getName));
 
@@ -85,7 +169,7 @@ public static HandlerNameAndGeneratedCode generateHandler(
       CacheGeneratorUtil.cacheProperties(buff, declaredMethods[i], i);
     }
     for (Map.Entry<MetadataHandler<?>, String> handlerAndName : handlerToName.entrySet()) {
-      buff.append("  public final ").append(handlerAndName.getKey().getClass().getName())
+      buff.append("  public final ").append(typeName(handlerAndName.getKey().getClass()))
           .append(' ').append(handlerAndName.getValue()).append(";\n");
     }
 
@@ -93,7 +177,7 @@ public static HandlerNameAndGeneratedCode generateHandler(
     buff.append("  public ").append(name).append("(\n");
     for (Map.Entry<MetadataHandler<?>, String> handlerAndName : handlerToName.entrySet()) {
       buff.append("      ")
-          .append(handlerAndName.getKey().getClass().getName())
+          .append(typeName(handlerAndName.getKey().getClass()))
           .append(' ')
           .append(handlerAndName.getValue())
           .append(",\n");
@@ -110,7 +194,7 @@ public static HandlerNameAndGeneratedCode generateHandler(
 
     //METHODS
     getDefMethod(buff,
-        handlerToName.values()
+        handlerToName.entrySet()
             .stream()
             .findFirst()
             .orElse(null));
@@ -128,21 +212,51 @@ public static HandlerNameAndGeneratedCode generateHandler(
         .build();
   }
 
-  private static void getDefMethod(StringBuilder buff, @Nullable String handlerName) {
+  private static void getDefMethod(StringBuilder buff,
+      Map.@Nullable Entry<MetadataHandler<?>, String> handlerAndName) {
+    if (handlerAndName != null && isGetDefDeprecated(handlerAndName.getKey())) {
+      // Calling a deprecated method would cause a warning, which the build
+      // treats as an error, when the class is compiled ahead of time
+      buff.append("  @SuppressWarnings(\"deprecation\")\n");
+    }
     buff.append("  public ")
         .append(MetadataDef.class.getName())
         .append(" getDef() {\n");
 
-    if (handlerName == null) {
+    if (handlerAndName == null) {
       buff.append("    return null;");
     } else {
       buff.append("    return ")
-          .append(handlerName)
+          .append(handlerAndName.getValue())
           .append(".getDef();\n");
     }
     buff.append("  }\n");
   }
 
+  /** Returns whether the {@code getDef} method of a handler is
+   * deprecated. */
+  private static boolean isGetDefDeprecated(MetadataHandler<?> handler) {
+    try {
+      return handler.getClass().getMethod("getDef")
+          .isAnnotationPresent(Deprecated.class);
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /** Returns the name by which generated code refers to a class: its
+   * canonical name (which javac, unlike Janino, requires for nested classes)
+   * or, for local and anonymous classes, its binary name. */
+  private static String typeName(Class<?> clazz) {
+    final String canonicalName = clazz.getCanonicalName();
+    return canonicalName != null ? canonicalName : clazz.getName();
+  }
+
+  private static String handlerName(
+      Class<? extends MetadataHandler<?>> handlerClass) {
+    return "GeneratedMetadata_" + simpleNameForHandler(handlerClass);
+  }
+
   private static String simpleNameForHandler(Class<? extends MetadataHandler<?>> clazz) {
     String simpleName = clazz.getSimpleName();
     //Previously the pattern was to have a nested in class named Handler
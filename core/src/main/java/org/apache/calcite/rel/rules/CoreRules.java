@@ -627,6 +627,17 @@ private CoreRules() {}
   public static final MultiJoinOptimizeBushyRule MULTI_JOIN_OPTIMIZE_BUSHY =
       MultiJoinOptimizeBushyRule.Config.DEFAULT.toRule();
 
+  /** Rule that finds an optimal ordering for join operators using dynamic
+   * programming (DPhyp), and can produce bushy joins.
+   *
+   * <p>It is triggered by the pattern {@link MultiJoin} and applies only if
+   * all joins are inner joins.
+   *
+   * @see #MULTI_JOIN_OPTIMIZE_BUSHY
+   */
+  public static final MultiJoinOptimizeDphypRule MULTI_JOIN_OPTIMIZE_DPHYP =
+      MultiJoinOptimizeDphypRule.Config.DEFAULT.toRule();
+
   /** Rule that matches a {@link LogicalJoin} whose inputs are both a
    * {@link MultiJoin} with intervening {@link LogicalProject}s,
    * and pulls the Projects up above the Join. */
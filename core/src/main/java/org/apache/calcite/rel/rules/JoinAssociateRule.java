@@ -50,7 +50,7 @@
 @Value.Enclosing
 public class JoinAssociateRule
     extends RelRule<JoinAssociateRule.Config>
-    implements TransformationRule {
+    implements TransformationRule, ThreadSafeRule {
 
   /** Creates a JoinAssociateRule. */
   protected JoinAssociateRule(Config config) {
@@ -56,7 +56,7 @@
 @Value.Enclosing
 public class JoinCommuteRule
     extends RelRule<JoinCommuteRule.Config>
-    implements TransformationRule {
+    implements TransformationRule, ThreadSafeRule {
 
   /** Creates a JoinCommuteRule. */
   protected JoinCommuteRule(Config config) {
@@ -177,7 +177,7 @@ public JoinCommuteRule(Class<? extends Join> clazz,
     relBuilder.push(swapped)
         .project(exps, newJoin.getRowType().getFieldNames());
 
-    call.getPlanner().ensureRegistered(relBuilder.build(), newJoin);
+    call.registerEquivalence(relBuilder.build(), newJoin);
   }
 
   //~ Inner Classes ----------------------------------------------------------
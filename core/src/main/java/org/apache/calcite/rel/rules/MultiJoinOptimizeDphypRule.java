@@ -0,0 +1,557 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelRule;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexPermuteInputsShuttle;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+import org.apache.calcite.util.mapping.Mappings;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.immutables.value.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Planner rule that finds an optimal ordering for the inputs of a
+ * {@link MultiJoin} using dynamic programming over connected sub-graphs of
+ * the join graph.
+ *
+ * <p>The enumeration is the DPhyp algorithm described in "Dynamic Programming
+ * Strikes Back" by Moerkotte and Neumann (SIGMOD 2008). It only considers
+ * pairs of sub-plans that are each connected and are connected to each
+ * other, so it never introduces a cartesian product, and it produces bushy
+ * trees as well as left-deep trees. A join condition that references more
+ * than two inputs is treated as a hyper-edge.
+ *
+ * <p>The cost of a plan is the sum of the estimated number of rows of its
+ * intermediate results. The number of rows of each set of inputs is
+ * computed once and memoized. The selectivity of an equi-join condition
+ * between two inputs is the reciprocal of the larger number of distinct
+ * values of its two sides; other conditions use
+ * {@link RelMdUtil#guessSelectivity(RexNode)}.
+ *
+ * <p>For dense join graphs the number of sub-plans grows exponentially with
+ * the number of inputs. If the MultiJoin has more than
+ * {@link Config#maxDpFactorCount()} inputs, if the enumeration considers more
+ * than {@link Config#maxDpPairCount()} pairs of sub-plans, or if the join
+ * graph is not connected, the rule instead uses a greedy algorithm that
+ * repeatedly joins the pair of sub-plans with the fewest result rows.
+ *
+ * <p>The rule only applies to a MultiJoin that contains only inner joins.
+ *
+ * @see CoreRules#MULTI_JOIN_OPTIMIZE_DPHYP
+ * @see org.apache.calcite.tools.Programs#dphypJoinOrder
+ */
+@Value.Enclosing
+public class MultiJoinOptimizeDphypRule
+    extends RelRule<MultiJoinOptimizeDphypRule.Config>
+    implements TransformationRule {
+
+  /** Creates a MultiJoinOptimizeDphypRule. */
+  protected MultiJoinOptimizeDphypRule(Config config) {
+    super(config);
+  }
+
+  @Override public void onMatch(RelOptRuleCall call) {
+    final MultiJoin multiJoinRel = call.rel(0);
+    final RexBuilder rexBuilder = multiJoinRel.getCluster().getRexBuilder();
+    final RelBuilder relBuilder = call.builder();
+    final RelMetadataQuery mq = call.getMetadataQuery();
+
+    final LoptMultiJoin multiJoin = new LoptMultiJoin(multiJoinRel);
+    final int factorCount = multiJoin.getNumJoinFactors();
+    if (factorCount > Long.SIZE) {
+      return;
+    }
+
+    final double[] rowCounts = new double[factorCount];
+    for (int i = 0; i < factorCount; i++) {
+      rowCounts[i] = mq.getRowCount(multiJoin.getJoinFactor(i));
+    }
+    final JoinEnumerator enumerator = new JoinEnumerator(rowCounts);
+    final List<LoptMultiJoin.Edge> edges = new ArrayList<>();
+    for (RexNode condition : multiJoin.getJoinFilters()) {
+      final LoptMultiJoin.Edge edge = multiJoin.createEdge(condition);
+      edges.add(edge);
+      enumerator.addEdge(toLong(edge.factors),
+          selectivity(multiJoin, mq, edge));
+    }
+
+    JoinPlan plan = null;
+    if (factorCount <= config.maxDpFactorCount()) {
+      plan = enumerator.dphyp(config.maxDpPairCount());
+    }
+    if (plan == null) {
+      plan = enumerator.greedy();
+    }
+
+    final Pair<RelNode, Mappings.TargetMapping> top =
+        toRel(plan, multiJoin, edges, relBuilder, rexBuilder);
+    final List<RexNode> residue = new ArrayList<>();
+    for (LoptMultiJoin.Edge edge : edges) {
+      if (edge.factors.isEmpty()) {
+        residue.add(edge.condition);
+      }
+    }
+    final RexNode postJoinFilter = multiJoinRel.getPostJoinFilter();
+    if (postJoinFilter != null) {
+      residue.add(postJoinFilter);
+    }
+    relBuilder.push(top.left)
+        .project(relBuilder.fields(top.right),
+            multiJoinRel.getRowType().getFieldNames())
+        .filter(residue);
+    call.transformTo(relBuilder.build());
+  }
+
+  /** Converts a plan to a relational expression, and returns it with a
+   * mapping from the fields of the MultiJoin to its fields. */
+  private static Pair<RelNode, Mappings.TargetMapping> toRel(JoinPlan plan,
+      LoptMultiJoin multiJoin, List<LoptMultiJoin.Edge> edges,
+      RelBuilder relBuilder, RexBuilder rexBuilder) {
+    final JoinPlan left = plan.left;
+    final JoinPlan right = plan.right;
+    if (left == null || right == null) {
+      final int factor = Long.numberOfTrailingZeros(plan.factors);
+      final RelNode rel = multiJoin.getJoinFactor(factor);
+      final Mappings.TargetMapping mapping =
+          Mappings.offsetSource(
+              Mappings.createIdentity(rel.getRowType().getFieldCount()),
+              multiJoin.getJoinStart(factor),
+              multiJoin.getNumTotalFields());
+      // Apply conditions that reference only this factor.
+      final RexPermuteInputsShuttle shuttle =
+          new RexPermuteInputsShuttle(mapping, rel);
+      final List<RexNode> conditions = new ArrayList<>();
+      for (LoptMultiJoin.Edge edge : edges) {
+        if (toLong(edge.factors) == plan.factors) {
+          conditions.add(edge.condition.accept(shuttle));
+        }
+      }
+      return Pair.of(relBuilder.push(rel).filter(conditions).build(),
+          mapping);
+    }
+    final Pair<RelNode, Mappings.TargetMapping> leftPair =
+        toRel(left, multiJoin, edges, relBuilder, rexBuilder);
+    final Pair<RelNode, Mappings.TargetMapping> rightPair =
+        toRel(right, multiJoin, edges, relBuilder, rexBuilder);
+    final Mappings.TargetMapping mapping =
+        Mappings.merge(leftPair.right,
+            Mappings.offsetTarget(rightPair.right,
+                leftPair.left.getRowType().getFieldCount()));
+
+    // Apply conditions whose factors are all present for the first time.
+    final List<RexNode> conditions = new ArrayList<>();
+    for (LoptMultiJoin.Edge edge : edges) {
+      final long factors = toLong(edge.factors);
+      if (factors != 0
+          && (factors & ~plan.factors) == 0
+          && (factors & ~left.factors) != 0
+          && (factors & ~right.factors) != 0) {
+        conditions.add(edge.condition);
+      }
+    }
+    final RexNode condition =
+        RexUtil.composeConjunction(rexBuilder, conditions)
+            .accept(
+                new RexPermuteInputsShuttle(mapping, leftPair.left,
+                    rightPair.left));
+    final RelNode join = relBuilder.push(leftPair.left)
+        .push(rightPair.left)
+        .join(JoinRelType.INNER, condition)
+        .build();
+    return Pair.of(join, mapping);
+  }
+
+  /** Estimates the selectivity of a join condition. */
+  private static double selectivity(LoptMultiJoin multiJoin,
+      RelMetadataQuery mq, LoptMultiJoin.Edge edge) {
+    if (edge.factors.cardinality() == 2
+        && edge.condition.isA(SqlKind.EQUALS)) {
+      final List<RexNode> operands = ((RexCall) edge.condition).getOperands();
+      if (operands.get(0) instanceof RexInputRef
+          && operands.get(1) instanceof RexInputRef) {
+        final Double distinctCount0 =
+            distinctCount(multiJoin, mq, (RexInputRef) operands.get(0));
+        final Double distinctCount1 =
+            distinctCount(multiJoin, mq, (RexInputRef) operands.get(1));
+        if (distinctCount0 != null || distinctCount1 != null) {
+          return 1d / Math.max(1d,
+              Math.max(Util.first(distinctCount0, 1d),
+                  Util.first(distinctCount1, 1d)));
+        }
+      }
+    }
+    return RelMdUtil.guessSelectivity(edge.condition);
+  }
+
+  private static @Nullable Double distinctCount(LoptMultiJoin multiJoin,
+      RelMetadataQuery mq, RexInputRef ref) {
+    final int factor = multiJoin.findRef(ref.getIndex());
+    return mq.getDistinctRowCount(multiJoin.getJoinFactor(factor),
+        ImmutableBitSet.of(ref.getIndex() - multiJoin.getJoinStart(factor)),
+        null);
+  }
+
+  private static long toLong(ImmutableBitSet bitSet) {
+    long bits = 0;
+    for (int i : bitSet) {
+      bits |= 1L << i;
+    }
+    return bits;
+  }
+
+  /** Plan that joins a set of factors; either a single factor, or a join of
+   * two plans. */
+  static class JoinPlan {
+    /** Set of factors, as a bit mask. */
+    final long factors;
+    final @Nullable JoinPlan left;
+    final @Nullable JoinPlan right;
+    final double rowCount;
+    /** Sum of the row counts of this plan and its sub-plans, excluding
+     * factors. */
+    final double cost;
+
+    JoinPlan(long factors, @Nullable JoinPlan left, @Nullable JoinPlan right,
+        double rowCount, double cost) {
+      this.factors = factors;
+      this.left = left;
+      this.right = right;
+      this.rowCount = rowCount;
+      this.cost = cost;
+    }
+
+    @Override public String toString() {
+      if (left == null || right == null) {
+        return Integer.toString(Long.numberOfTrailingZeros(factors));
+      }
+      return "(" + left + " " + right + ")";
+    }
+  }
+
+  /** Enumerates join orders for a graph whose vertices are factors and
+   * whose edges are join conditions. */
+  static class JoinEnumerator {
+    private final int factorCount;
+    private final double[] rowCounts;
+    /** For each factor, the factors that it shares a simple edge with. */
+    private final long[] neighbors;
+    /** Edges that connect more than two factors. */
+    private final List<Long> hyperEdges = new ArrayList<>();
+    private final List<Long> edgeFactors = new ArrayList<>();
+    private final List<Double> edgeSelectivities = new ArrayList<>();
+    private final Map<Long, Double> rowCountCache = new HashMap<>();
+    private final Map<Long, JoinPlan> dpTable = new HashMap<>();
+    private long maxPairCount;
+    /** Number of pairs of sub-plans considered by {@link #dphyp(long)}. */
+    long pairCount;
+
+    JoinEnumerator(double[] rowCounts) {
+      this.factorCount = rowCounts.length;
+      this.rowCounts = rowCounts.clone();
+      this.neighbors = new long[factorCount];
+    }
+
+    /** Adds a join condition that references a given set of factors. */
+    void addEdge(long factors, double selectivity) {
+      switch (Long.bitCount(factors)) {
+      case 0:
+        // Condition does not reference any factor, so does not affect the
+        // relative cost of plans.
+        return;
+      case 1:
+        rowCounts[Long.numberOfTrailingZeros(factors)] *= selectivity;
+        return;
+      case 2:
+        final int f0 = Long.numberOfTrailingZeros(factors);
+        final int f1 = Long.numberOfTrailingZeros(factors & ~(1L << f0));
+        neighbors[f0] |= 1L << f1;
+        neighbors[f1] |= 1L << f0;
+        break;
+      default:
+        hyperEdges.add(factors);
+      }
+      edgeFactors.add(factors);
+      edgeSelectivities.add(selectivity);
+    }
+
+    /** Returns the estimated number of rows of the join of a set of
+     * factors. */
+    double rowCount(long factors) {
+      final Double cached = rowCountCache.get(factors);
+      if (cached != null) {
+        return cached;
+      }
+      double rowCount = 1d;
+      for (long f = factors; f != 0; f &= f - 1) {
+        rowCount *= rowCounts[Long.numberOfTrailingZeros(f)];
+      }
+      for (int i = 0; i < edgeFactors.size(); i++) {
+        if ((edgeFactors.get(i) & ~factors) == 0) {
+          rowCount *= edgeSelectivities.get(i);
+        }
+      }
+      rowCount = Math.max(rowCount, 1d);
+      rowCountCache.put(factors, rowCount);
+      return rowCount;
+    }
+
+    private JoinPlan leaf(int factor) {
+      final long factors = 1L << factor;
+      return new JoinPlan(factors, null, null, rowCount(factors), 0d);
+    }
+
+    /** Finds the optimal plan using the DPhyp algorithm. Returns null if the
+     * join graph is not connected or if more than {@code maxPairCount} pairs
+     * of sub-plans would be considered. */
+    @Nullable JoinPlan dphyp(long maxPairCount) {
+      this.maxPairCount = maxPairCount;
+      dpTable.clear();
+      pairCount = 0;
+      for (int i = 0; i < factorCount; i++) {
+        dpTable.put(1L << i, leaf(i));
+      }
+      try {
+        for (int v = factorCount - 1; v >= 0; v--) {
+          final long s = 1L << v;
+          emitCsg(s);
+          enumerateCsgRec(s, upTo(v));
+        }
+      } catch (Util.FoundOne e) {
+        return null;
+      }
+      return dpTable.get(upTo(factorCount - 1));
+    }
+
+    /** Extends a connected sub-graph {@code s1} by subsets of its
+     * neighborhood, avoiding factors in {@code x}. */
+    private void enumerateCsgRec(long s1, long x) {
+      final long neighborhood = neighborhood(s1, x);
+      for (long n = nextSubset(0, neighborhood); n != 0;
+           n = nextSubset(n, neighborhood)) {
+        if (dpTable.containsKey(s1 | n)) {
+          emitCsg(s1 | n);
+        }
+      }
+      final long x2 = x | neighborhood;
+      for (long n = nextSubset(0, neighborhood); n != 0;
+           n = nextSubset(n, neighborhood)) {
+        enumerateCsgRec(s1 | n, x2);
+      }
+    }
+
+    /** Finds the complements of connected sub-graph {@code s1}, that is,
+     * connected sub-graphs that are connected to it and contain only factors
+     * greater than the least factor of {@code s1}. */
+    private void emitCsg(long s1) {
+      final long x = s1 | upTo(Long.numberOfTrailingZeros(s1));
+      final long neighborhood = neighborhood(s1, x);
+      for (long n = neighborhood; n != 0; n &= ~Long.highestOneBit(n)) {
+        final int v = 63 - Long.numberOfLeadingZeros(n);
+        final long s2 = 1L << v;
+        if (isConnected(s1, s2)) {
+          emitCsgCmp(s1, s2);
+        }
+        enumerateCmpRec(s1, s2, x | (neighborhood & upTo(v)));
+      }
+    }
+
+    private void enumerateCmpRec(long s1, long s2, long x) {
+      final long neighborhood = neighborhood(s2, x);
+      for (long n = nextSubset(0, neighborhood); n != 0;
+           n = nextSubset(n, neighborhood)) {
+        if (dpTable.containsKey(s2 | n) && isConnected(s1, s2 | n)) {
+          emitCsgCmp(s1, s2 | n);
+        }
+      }
+      final long x2 = x | neighborhood;
+      for (long n = nextSubset(0, neighborhood); n != 0;
+           n = nextSubset(n, neighborhood)) {
+        enumerateCmpRec(s1, s2 | n, x2);
+      }
+    }
+
+    /** Considers the join of the best plans for two disjoint, connected
+     * sets of factors. */
+    private void emitCsgCmp(long s1, long s2) {
+      if (++pairCount > maxPairCount) {
+        throw Util.FoundOne.NULL;
+      }
+      final JoinPlan p1 = requireNonNull(dpTable.get(s1), "p1");
+      final JoinPlan p2 = requireNonNull(dpTable.get(s2), "p2");
+      final JoinPlan plan = join(p1, p2);
+      final JoinPlan best = dpTable.get(plan.factors);
+      if (best == null || plan.cost < best.cost) {
+        dpTable.put(plan.factors, plan);
+      }
+    }
+
+    /** Joins two plans. The input with more rows goes on the left, because
+     * the right input is usually the build side of a hash join. */
+    private JoinPlan join(JoinPlan p1, JoinPlan p2) {
+      final long factors = p1.factors | p2.factors;
+      final double rowCount = rowCount(factors);
+      final double cost = rowCount + p1.cost + p2.cost;
+      return p1.rowCount >= p2.rowCount
+          ? new JoinPlan(factors, p1, p2, rowCount, cost)
+          : new JoinPlan(factors, p2, p1, rowCount, cost);
+    }
+
+    /** Returns the factors adjacent to {@code s}, excluding those in
+     * {@code s} and {@code x}. For a hyper-edge, only the least of its
+     * factors outside {@code s} is included. */
+    private long neighborhood(long s, long x) {
+      final long excluded = s | x;
+      long n = 0;
+      for (long f = s; f != 0; f &= f - 1) {
+        n |= neighbors[Long.numberOfTrailingZeros(f)];
+      }
+      n &= ~excluded;
+      for (long h : hyperEdges) {
+        final long outside = h & ~s;
+        if ((h & s) != 0 && outside != 0 && (outside & excluded) == 0) {
+          n |= Long.lowestOneBit(outside);
+        }
+      }
+      return n;
+    }
+
+    /** Returns whether there is an edge between two disjoint sets of factors
+     * that references only factors in those sets. */
+    private boolean isConnected(long s1, long s2) {
+      for (long f = s1; f != 0; f &= f - 1) {
+        if ((neighbors[Long.numberOfTrailingZeros(f)] & s2) != 0) {
+          return true;
+        }
+      }
+      for (long h : hyperEdges) {
+        if ((h & ~(s1 | s2)) == 0 && (h & s1) != 0 && (h & s2) != 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** Finds a plan using a greedy algorithm. Starting with one plan per
+     * factor, repeatedly joins the two plans whose join has the fewest rows,
+     * preferring pairs that are connected by an edge. */
+    JoinPlan greedy() {
+      final List<JoinPlan> plans = new ArrayList<>();
+      for (int i = 0; i < factorCount; i++) {
+        plans.add(leaf(i));
+      }
+      while (plans.size() > 1) {
+        int bestI = -1;
+        int bestJ = -1;
+        boolean bestConnected = false;
+        double bestRowCount = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < plans.size(); i++) {
+          for (int j = i + 1; j < plans.size(); j++) {
+            final long s1 = plans.get(i).factors;
+            final long s2 = plans.get(j).factors;
+            final boolean connected = isConnected(s1, s2);
+            if (bestConnected && !connected) {
+              continue;
+            }
+            final double rowCount = rowCount(s1 | s2);
+            if (connected && !bestConnected || rowCount < bestRowCount) {
+              bestI = i;
+              bestJ = j;
+              bestConnected = connected;
+              bestRowCount = rowCount;
+            }
+          }
+        }
+        final JoinPlan plan = join(plans.get(bestI), plans.get(bestJ));
+        plans.remove(bestJ);
+        plans.set(bestI, plan);
+      }
+      return plans.get(0);
+    }
+
+    /** Returns the set of factors 0 to {@code v}, inclusive. */
+    private static long upTo(int v) {
+      return -1L >>> (63 - v);
+    }
+
+    /** Returns the next non-empty subset of {@code mask} in increasing
+     * order after {@code subset}, or 0 if there are no more. */
+    private static long nextSubset(long subset, long mask) {
+      return (subset - mask) & mask;
+    }
+  }
+
+  /** Rule configuration. */
+  @Value.Immutable
+  public interface Config extends RelRule.Config {
+    Config DEFAULT = ImmutableMultiJoinOptimizeDphypRule.Config.of()
+        .withOperandSupplier(b ->
+            b.operand(MultiJoin.class)
+                .predicate(MultiJoinOptimizeDphypRule::isInnerOnly)
+                .anyInputs());
+
+    @Override default MultiJoinOptimizeDphypRule toRule() {
+      return new MultiJoinOptimizeDphypRule(this);
+    }
+
+    /** Maximum number of inputs for which to use dynamic programming;
+     * larger joins use the greedy algorithm. */
+    @Value.Default default int maxDpFactorCount() {
+      return 20;
+    }
+
+    /** Sets {@link #maxDpFactorCount()}. */
+    Config withMaxDpFactorCount(int maxDpFactorCount);
+
+    /** Maximum number of pairs of sub-plans that dynamic programming may
+     * consider before giving up and using the greedy algorithm. */
+    @Value.Default default long maxDpPairCount() {
+      return 10_000_000L;
+    }
+
+    /** Sets {@link #maxDpPairCount()}. */
+    Config withMaxDpPairCount(long maxDpPairCount);
+  }
+
+  /** Returns whether a MultiJoin contains only inner joins. */
+  private static boolean isInnerOnly(MultiJoin multiJoin) {
+    return !multiJoin.isFullOuterJoin()
+        && multiJoin.getJoinTypes().stream()
+            .allMatch(joinType -> joinType == JoinRelType.INNER);
+  }
+}
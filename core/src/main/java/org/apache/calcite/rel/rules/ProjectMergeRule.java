@@ -42,7 +42,7 @@
 @Value.Enclosing
 public class ProjectMergeRule
     extends RelRule<ProjectMergeRule.Config>
-    implements TransformationRule {
+    implements TransformationRule, ThreadSafeRule {
   /** Default amount by which complexity is allowed to increase.
    *
    * @see Config#bloat() */
@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+/**
+ * A rule that implements this interface indicates that it may fire on
+ * several threads at the same time.
+ *
+ * <p>If the parallelism of a
+ * {@link org.apache.calcite.plan.volcano.VolcanoPlanner} is greater than 1
+ * (see {@link org.apache.calcite.plan.volcano.VolcanoPlanner#setParallelism}),
+ * the planner fires the matches of such rules concurrently; it fires the
+ * matches of other rules on its own thread, one at a time.
+ *
+ * <p>A rule that implements this interface must not modify shared state in
+ * its {@code matches} and {@code onMatch} methods without synchronization,
+ * and nor may the metadata handlers that it calls.
+ */
+public interface ThreadSafeRule {
+}
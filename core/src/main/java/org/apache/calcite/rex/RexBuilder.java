@@ -20,6 +20,7 @@
 import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.avatica.util.Spaces;
 import org.apache.calcite.avatica.util.TimeUnit;
+import org.apache.calcite.config.CalciteSystemProperty;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.AggregateCall;
 import org.apache.calcite.rel.core.CorrelationId;
@@ -107,17 +108,39 @@ public class RexBuilder {
   private final RexLiteral charEmpty;
   private final RexLiteral constantNull;
   private final SqlStdOperatorTable opTab = SqlStdOperatorTable.instance();
+  private final @Nullable RexInterner interner;
 
   //~ Constructors -----------------------------------------------------------
 
   /**
    * Creates a RexBuilder.
    *
+   * <p>The builder interns expressions if the
+   * {@link CalciteSystemProperty#REX_INTERN} property is set.
+   *
    * @param typeFactory Type factory
    */
-  @SuppressWarnings("method.invocation.invalid")
   public RexBuilder(RelDataTypeFactory typeFactory) {
+    this(typeFactory, CalciteSystemProperty.REX_INTERN.value());
+  }
+
+  /**
+   * Creates a RexBuilder, specifying whether it interns expressions.
+   *
+   * <p>An interning builder returns the same instance for structurally
+   * identical calls, input references, literals, local references, dynamic
+   * parameters and field accesses, by looking them up in a weak table shared
+   * by all interning builders. Since types are canonical too, equal
+   * sub-trees are usually identical, and {@link RexNode#equals} succeeds on
+   * its {@code this == o} check without traversing operands.
+   *
+   * @param typeFactory Type factory
+   * @param intern      Whether to intern expressions
+   */
+  @SuppressWarnings("method.invocation.invalid")
+  public RexBuilder(RelDataTypeFactory typeFactory, boolean intern) {
     this.typeFactory = typeFactory;
+    this.interner = intern ? RexInterner.INSTANCE : null;
     this.booleanTrue =
         makeLiteral(
             Boolean.TRUE,
@@ -144,7 +167,7 @@ public RexBuilder(RelDataTypeFactory typeFactory) {
    * projecting the fields of a given record type. */
   public List<RexNode> identityProjects(final RelDataType rowType) {
     return Util.transform(rowType.getFieldList(),
-        input -> new RexInputRef(input.getIndex(), input.getType()));
+        input -> inputRef(input.getIndex(), input.getType()));
   }
 
   //~ Methods ----------------------------------------------------------------
@@ -158,6 +181,22 @@ public RelDataTypeFactory getTypeFactory() {
     return typeFactory;
   }
 
+  /** Returns whether this RexBuilder interns the expressions it creates.
+   *
+   * @see #RexBuilder(RelDataTypeFactory, boolean) */
+  public boolean isInterning() {
+    return interner != null;
+  }
+
+  /** Returns the canonical instance of an expression, or the expression
+   * itself if this RexBuilder does not intern expressions.
+   *
+   * <p>Use this method for expressions that were not created by this
+   * builder, for example by {@link RexCall#clone}. */
+  public RexNode intern(RexNode node) {
+    return interner == null ? node : interner.intern(node);
+  }
+
   /**
    * Returns this RexBuilder's operator table.
    *
@@ -234,11 +273,23 @@ private RexNode makeFieldAccessInternal(
                 expr,
                 makeLiteral(field.getName())));
       }
-      return new RexInputRef(
+      return inputRef(
           range.getOffset() + field.getIndex(),
           field.getType());
     }
-    return new RexFieldAccess(expr, field);
+    return interner == null ? new RexFieldAccess(expr, field)
+        : interner.fieldAccess(expr, field);
+  }
+
+  private RexInputRef inputRef(int index, RelDataType type) {
+    return interner == null ? new RexInputRef(index, type)
+        : interner.inputRef(index, type);
+  }
+
+  private RexNode call(RelDataType type, SqlOperator op,
+      List<? extends RexNode> exprs) {
+    return interner == null ? new RexCall(type, op, exprs)
+        : interner.call(type, op, exprs);
   }
 
   /**
@@ -248,7 +299,7 @@ public RexNode makeCall(
       RelDataType returnType,
       SqlOperator op,
       List<RexNode> exprs) {
-    return new RexCall(returnType, op, exprs);
+    return call(returnType, op, exprs);
   }
 
   /**
@@ -262,7 +313,7 @@ public RexNode makeCall(
       SqlOperator op,
       List<? extends RexNode> exprs) {
     final RelDataType type = deriveReturnType(op, exprs);
-    return new RexCall(type, op, exprs);
+    return call(type, op, exprs);
   }
 
   /**
@@ -516,7 +567,7 @@ public RexNode makeCorrel(
   public RexNode makeNewInvocation(
       RelDataType type,
       List<RexNode> exprs) {
-    return new RexCall(
+    return call(
         type,
         SqlStdOperatorTable.NEW,
         exprs);
@@ -783,7 +834,7 @@ public RexNode decodeIntervalOrDecimal(RexNode node) {
   public RexNode makeAbstractCast(
       RelDataType type,
       RexNode exp) {
-    return new RexCall(
+    return call(
         type,
         SqlStdOperatorTable.CAST,
         ImmutableList.of(exp));
@@ -807,7 +858,7 @@ public RexNode makeReinterpretCast(
     } else {
       args = ImmutableList.of(exp);
     }
-    return new RexCall(
+    return call(
         type,
         SqlStdOperatorTable.REINTERPRET,
         args);
@@ -872,7 +923,7 @@ public RexInputRef makeInputRef(
       RelDataType type,
       int i) {
     type = SqlTypeUtil.addCharsetAndCollation(type, typeFactory);
-    return new RexInputRef(i, type);
+    return inputRef(i, type);
   }
 
   /**
@@ -910,7 +961,8 @@ public RexPatternFieldRef makePatternFieldRef(String alpha, RelDataType type, in
    */
   public RexLocalRef makeLocalRef(RelDataType type, int i) {
     type = SqlTypeUtil.addCharsetAndCollation(type, typeFactory);
-    return new RexLocalRef(i, type);
+    return interner == null ? new RexLocalRef(i, type)
+        : interner.localRef(i, type);
   }
 
   /**
@@ -990,7 +1042,8 @@ protected RexLiteral makeLiteral(
       throw new IllegalArgumentException(
           "Cannot convert " + o + " to " + type  + " due to overflow");
     }
-    return new RexLiteral(o, type, typeName);
+    return interner == null ? new RexLiteral(o, type, typeName)
+        : interner.literal(o, type, typeName);
   }
 
   /**
@@ -1287,7 +1340,8 @@ public RexLiteral makeIntervalLiteral(
   public RexDynamicParam makeDynamicParam(
       RelDataType type,
       int index) {
-    return new RexDynamicParam(type, index);
+    return interner == null ? new RexDynamicParam(type, index)
+        : interner.dynamicParam(type, index);
   }
 
   /**
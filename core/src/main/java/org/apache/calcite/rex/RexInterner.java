@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rex;
+
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.type.SqlTypeName;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Weak, concurrent table of canonical row expressions.
+ *
+ * <p>Used by a {@link RexBuilder} that has interning enabled. Two
+ * expressions are structurally identical if they are of the same class, have
+ * the same type, and have identical (interned) operands; for such
+ * expressions the table returns the same instance, so that comparing them
+ * with {@link Object#equals} succeeds on the {@code this == o} check.
+ *
+ * <p>The test is stricter than {@link RexNode#equals}: for example,
+ * {@link RexInputRef#equals} ignores the type, and {@link RexCall#equals}
+ * treats {@code =($0, $1)} and {@code =($1, $0)} as equal; interning either
+ * pair to one instance would change the type or the digest of an expression.
+ *
+ * <p>Entries hold their expression weakly, and are removed when the
+ * expression is garbage-collected. Only {@link RexCall} (but not its
+ * sub-classes), {@link RexInputRef}, {@link RexLocalRef}, {@link RexLiteral},
+ * {@link RexDynamicParam} and {@link RexFieldAccess} are interned; other
+ * expressions are returned unchanged.
+ */
+final class RexInterner {
+  /** Table shared by all interning {@link RexBuilder}s. Types are already
+   * canonical across type factories, so expressions can be too. */
+  static final RexInterner INSTANCE = new RexInterner();
+
+  private final ConcurrentMap<Key, Ref> map = new ConcurrentHashMap<>();
+  private final ReferenceQueue<RexNode> queue = new ReferenceQueue<>();
+
+  /** Returns the number of entries in this table, including entries whose
+   * expression has been collected but not yet removed. */
+  int size() {
+    expunge();
+    return map.size();
+  }
+
+  /** Returns the canonical instance of an expression. */
+  RexNode intern(RexNode node) {
+    if (node.interned) {
+      return node;
+    }
+    final Class<? extends RexNode> clazz = node.getClass();
+    if (clazz == RexCall.class) {
+      final RexCall call = (RexCall) node;
+      final List<RexNode> operands = internList(call.operands);
+      final Key key =
+          new Key(RexCall.class, call.op, null, call.type, operands);
+      final RexNode existing = get(key);
+      return existing != null ? existing
+          : register(key,
+              operands == call.operands ? call
+                  : new RexCall(call.type, call.op, operands));
+    } else if (clazz == RexInputRef.class) {
+      final RexInputRef ref = (RexInputRef) node;
+      return register(
+          new Key(RexInputRef.class, ref.getIndex(), null, ref.getType(),
+              ImmutableList.of()),
+          ref);
+    } else if (clazz == RexLocalRef.class) {
+      final RexLocalRef ref = (RexLocalRef) node;
+      return register(
+          new Key(RexLocalRef.class, ref.getIndex(), null, ref.getType(),
+              ImmutableList.of()),
+          ref);
+    } else if (clazz == RexLiteral.class) {
+      final RexLiteral literal = (RexLiteral) node;
+      return register(
+          new Key(RexLiteral.class, literal.getValueRaw(),
+              literal.getTypeName(), literal.getType(), ImmutableList.of()),
+          literal);
+    } else if (clazz == RexDynamicParam.class) {
+      final RexDynamicParam param = (RexDynamicParam) node;
+      return register(
+          new Key(RexDynamicParam.class, param.getIndex(), null,
+              param.getType(), ImmutableList.of()),
+          param);
+    } else if (clazz == RexFieldAccess.class) {
+      final RexFieldAccess access = (RexFieldAccess) node;
+      final RexNode expr = intern(access.getReferenceExpr());
+      final Key key =
+          new Key(RexFieldAccess.class, access.getField(), null,
+              access.getType(), ImmutableList.of(expr));
+      final RexNode existing = get(key);
+      return existing != null ? existing
+          : register(key,
+              expr == access.getReferenceExpr() ? access
+                  : new RexFieldAccess(expr, access.getField()));
+    } else {
+      return node;
+    }
+  }
+
+  /** Returns the canonical call to an operator, creating it only if there
+   * is not one already. */
+  RexCall call(RelDataType type, SqlOperator op,
+      List<? extends RexNode> operands) {
+    final List<RexNode> list = internList(operands);
+    final Key key = new Key(RexCall.class, op, null, type, list);
+    final RexCall existing = get(key);
+    return existing != null ? existing
+        : register(key, new RexCall(type, op, list));
+  }
+
+  /** Returns the canonical reference to an input field. */
+  RexInputRef inputRef(int index, RelDataType type) {
+    final Key key =
+        new Key(RexInputRef.class, index, null, type, ImmutableList.of());
+    final RexInputRef existing = get(key);
+    return existing != null ? existing
+        : register(key, new RexInputRef(index, type));
+  }
+
+  /** Returns the canonical reference to a local variable. */
+  RexLocalRef localRef(int index, RelDataType type) {
+    final Key key =
+        new Key(RexLocalRef.class, index, null, type, ImmutableList.of());
+    final RexLocalRef existing = get(key);
+    return existing != null ? existing
+        : register(key, new RexLocalRef(index, type));
+  }
+
+  /** Returns the canonical literal. */
+  RexLiteral literal(@Nullable Comparable value, RelDataType type,
+      SqlTypeName typeName) {
+    final Key key =
+        new Key(RexLiteral.class, value, typeName, type, ImmutableList.of());
+    final RexLiteral existing = get(key);
+    return existing != null ? existing
+        : register(key, new RexLiteral(value, type, typeName));
+  }
+
+  /** Returns the canonical reference to a dynamic parameter. */
+  RexDynamicParam dynamicParam(RelDataType type, int index) {
+    final Key key =
+        new Key(RexDynamicParam.class, index, null, type, ImmutableList.of());
+    final RexDynamicParam existing = get(key);
+    return existing != null ? existing
+        : register(key, new RexDynamicParam(type, index));
+  }
+
+  /** Returns the canonical access to a field of a record. */
+  RexFieldAccess fieldAccess(RexNode expr, RelDataTypeField field) {
+    final RexNode expr2 = intern(expr);
+    final Key key =
+        new Key(RexFieldAccess.class, field, null, field.getType(),
+            ImmutableList.of(expr2));
+    final RexFieldAccess existing = get(key);
+    return existing != null ? existing
+        : register(key, new RexFieldAccess(expr2, field));
+  }
+
+  /** Interns each element of a list. Returns the list itself if every
+   * element is already canonical. */
+  private List<RexNode> internList(List<? extends RexNode> nodes) {
+    ImmutableList.Builder<RexNode> builder = null;
+    for (int i = 0; i < nodes.size(); i++) {
+      final RexNode node = nodes.get(i);
+      final RexNode node2 = intern(node);
+      if (builder == null && node2 != node) {
+        builder = ImmutableList.builder();
+        builder.addAll(nodes.subList(0, i));
+      }
+      if (builder != null) {
+        builder.add(node2);
+      }
+    }
+    if (builder != null) {
+      return builder.build();
+    }
+    //noinspection unchecked
+    return (List<RexNode>) nodes;
+  }
+
+  /** Returns the expression registered for a key, or null. */
+  @SuppressWarnings("unchecked")
+  private <E extends RexNode> @Nullable E get(Key key) {
+    final Ref ref = map.get(key);
+    // The key includes the class, so the cast is safe.
+    return ref == null ? null : (E) ref.get();
+  }
+
+  /** Registers an expression for a key, and returns it; or, if there is
+   * already an expression for the key, returns that. */
+  @SuppressWarnings("unchecked")
+  private <E extends RexNode> E register(Key key, E node) {
+    expunge();
+    for (;;) {
+      final Ref ref = map.get(key);
+      if (ref != null) {
+        final RexNode existing = ref.get();
+        if (existing != null) {
+          return (E) existing;
+        }
+        map.remove(key, ref);
+      }
+      if (map.putIfAbsent(key, new Ref(key, node, queue)) == null) {
+        node.interned = true;
+        return node;
+      }
+      // Another thread registered an equivalent expression; use that.
+    }
+  }
+
+  /** Removes entries whose expression has been garbage-collected. */
+  private void expunge() {
+    for (;;) {
+      final Ref ref = (Ref) queue.poll();
+      if (ref == null) {
+        return;
+      }
+      map.remove(ref.key, ref);
+    }
+  }
+
+  /** Weak reference to an interned expression, that remembers its key so
+   * that its entry can be removed after the expression has been
+   * collected. */
+  private static class Ref extends WeakReference<RexNode> {
+    final Key key;
+
+    Ref(Key key, RexNode node, ReferenceQueue<RexNode> queue) {
+      super(node, queue);
+      this.key = key;
+    }
+  }
+
+  /** Structural description of an expression. Operands are compared by
+   * identity, because they are canonical. Operators are compared by
+   * identity too, because {@link SqlOperator#equals} considers only the name
+   * and kind, and distinct functions may share those. */
+  private static class Key {
+    final Class<? extends RexNode> clazz;
+    final @Nullable Object a;
+    final @Nullable Object b;
+    final RelDataType type;
+    final List<RexNode> operands;
+    final int hash;
+
+    Key(Class<? extends RexNode> clazz, @Nullable Object a,
+        @Nullable Object b, RelDataType type, List<RexNode> operands) {
+      this.clazz = clazz;
+      this.a = a;
+      this.b = b;
+      this.type = type;
+      this.operands = operands;
+      int h = clazz.hashCode();
+      h = h * 31 + (a instanceof SqlOperator ? System.identityHashCode(a)
+          : Objects.hashCode(a));
+      h = h * 31 + Objects.hashCode(b);
+      h = h * 31 + type.hashCode();
+      for (RexNode operand : operands) {
+        h = h * 31 + System.identityHashCode(operand);
+      }
+      this.hash = h;
+    }
+
+    @Override public int hashCode() {
+      return hash;
+    }
+
+    @Override public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key that = (Key) obj;
+      if (hash != that.hash
+          || clazz != that.clazz
+          || operands.size() != that.operands.size()
+          || !(a instanceof SqlOperator ? a == that.a
+              : Objects.equals(a, that.a))
+          || !Objects.equals(b, that.b)
+          || !type.equals(that.type)) {
+        return false;
+      }
+      for (int i = 0; i < operands.size(); i++) {
+        if (operands.get(i) != that.operands.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
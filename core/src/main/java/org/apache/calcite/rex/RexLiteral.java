@@ -939,6 +939,12 @@ public boolean isNull() {
     }
   }
 
+  /** Returns the value of this literal as stored, without the conversions
+   * done by {@link #getValue()}. */
+  @Nullable Comparable getValueRaw() {
+    return value;
+  }
+
   /**
    * Returns the value of this literal, in the form that the calculator
    * program builder wants it.
@@ -47,6 +47,10 @@ public abstract class RexNode {
   // Effectively final. Set in each sub-class constructor, and never re-set.
   protected @MonotonicNonNull String digest;
 
+  /** Whether this expression is the canonical instance in
+   * {@link RexInterner}. Set when the expression is registered. */
+  boolean interned;
+
   //~ Methods ----------------------------------------------------------------
 
   public abstract RelDataType getType();
@@ -0,0 +1,494 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sort whose input may exceed the memory available to it.
+ *
+ * <p>The sort reads its input into arrays. Whenever the estimated size of
+ * the rows read exceeds a budget, it sorts them (a "run") and writes them to
+ * a {@link SpillFile}. At the end of the input, it merges the runs, plus the
+ * final run, which stays in memory, using a priority queue. So that the
+ * merge does not open too many files at once, it merges at most
+ * {@link #MERGE_FACTOR} runs at a time; if there are more, intermediate
+ * passes merge groups of runs into longer runs until few enough remain.
+ *
+ * <p>If the sort has a fetch, it only needs to keep the first
+ * {@code offset + fetch} rows; it keeps them in a bounded heap, and only
+ * writes runs to disk if the rows in the heap exceed the budget. Each run
+ * then contains at most {@code offset + fetch} rows.
+ *
+ * <p>If the input fits within the budget, nothing is written to disk.
+ * Either way, the sort is stable, so the result is the same as that of
+ * {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator)}.
+ *
+ * <p>Each time the sort writes runs to disk, it calls
+ * {@link Hook#SORT_SPILL} with the number of runs written.
+ */
+public class ExternalSort {
+  /** Initial capacity of the arrays that hold a run. */
+  private static final int INITIAL_CAPACITY = 256;
+
+  /** Maximum number of runs that are merged at a time, and therefore the
+   * maximum number of spill files that are open at a time. */
+  static final int MERGE_FACTOR = 64;
+
+  private ExternalSort() {}
+
+  /**
+   * Sorts the elements of a sequence according to a key, then applies an
+   * offset and fetch, spilling to disk if the sequence does not fit in a
+   * memory budget.
+   *
+   * @param source Input
+   * @param keySelector Extracts the sort key from each row
+   * @param comparator Compares keys; if null, keys are {@link Comparable}
+   * @param offset Number of rows to skip
+   * @param fetch Maximum number of rows to return
+   * @param memoryBudget Estimated number of bytes of rows to hold in memory
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      @Nullable Comparator<TKey> comparator, int offset, int fetch,
+      long memoryBudget) {
+    return orderBy(source, keySelector, comparator, offset, fetch,
+        memoryBudget, MERGE_FACTOR);
+  }
+
+  /** As {@link #orderBy(Enumerable, Function1, Comparator, int, int, long)},
+   * with a given merge factor; for testing. */
+  static <TSource, TKey> Enumerable<TSource> orderBy(
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      @Nullable Comparator<TKey> comparator, int offset, int fetch,
+      long memoryBudget, int mergeFactor) {
+    if (mergeFactor < 2) {
+      throw new IllegalArgumentException("merge factor must be at least 2");
+    }
+    final Comparator<TKey> keyComparator = comparator != null
+        ? comparator
+        : ExternalSort::compareNatural;
+    final int limit = fetch == Integer.MAX_VALUE
+        ? Integer.MAX_VALUE
+        : (int) Math.min((long) offset + fetch, Integer.MAX_VALUE);
+    final Enumerable<TSource> sorted = new AbstractEnumerable<TSource>() {
+      @Override public Enumerator<TSource> enumerator() {
+        if (limit == Integer.MAX_VALUE) {
+          return sort(ImmutableList.of(), source.enumerator(), keySelector,
+              keyComparator, limit, memoryBudget, mergeFactor);
+        }
+        return topN(source.enumerator(), keySelector, keyComparator, limit,
+            memoryBudget, mergeFactor);
+      }
+    };
+    if (offset == 0 && fetch == Integer.MAX_VALUE) {
+      return sorted;
+    }
+    return sorted.skip(offset).take(fetch);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <TKey> int compareNatural(TKey k0, TKey k1) {
+    return ((Comparable) k0).compareTo(k1);
+  }
+
+  /** Returns the first {@code limit} rows of the input, in sorted order,
+   * keeping them in a heap. If the rows in the heap exceed the memory budget,
+   * sorts the rows in the heap and the rest of the input externally, and
+   * returns a superset of the first {@code limit} rows. */
+  private static <TSource, TKey> Enumerator<TSource> topN(
+      Enumerator<TSource> enumerator, Function1<TSource, TKey> keySelector,
+      Comparator<TKey> comparator, int limit, long memoryBudget,
+      int mergeFactor) {
+    final Comparator<Entry<TSource, TKey>> entryComparator = (e0, e1) -> {
+      final int c = comparator.compare(e0.key, e1.key);
+      return c != 0 ? c : Long.compare(e0.ordinal, e1.ordinal);
+    };
+    // The head of the heap is the greatest row, which is the first to be
+    // evicted
+    final PriorityQueue<Entry<TSource, TKey>> heap =
+        new PriorityQueue<>(Math.min(limit, INITIAL_CAPACITY) + 1,
+            entryComparator.reversed());
+    boolean delegated = false;
+    try {
+      long size = 0;
+      long ordinal = 0;
+      while (limit > 0 && enumerator.moveNext()) {
+        final TSource row = enumerator.current();
+        final TKey key = keySelector.apply(row);
+        if (heap.size() == limit) {
+          final Entry<TSource, TKey> greatest = requireNonNull(heap.peek());
+          if (comparator.compare(key, greatest.key) >= 0) {
+            // Not among the first rows; if the keys are equal, the row
+            // that was read first comes first
+            ++ordinal;
+            continue;
+          }
+          heap.poll();
+          size -= greatest.size;
+        }
+        final Entry<TSource, TKey> entry =
+            new Entry<>(row, key, ordinal++, SpillFile.estimateSize(row) + 16);
+        heap.add(entry);
+        size += entry.size;
+        if (size > memoryBudget) {
+          // A row that has been evicted is preceded by at least "limit"
+          // rows, so the first rows of the input are among the rows in the
+          // heap and the rows not yet read. Sort those externally, feeding
+          // the rows in the heap in the order that they were read, so that
+          // the sort remains stable.
+          final List<Entry<TSource, TKey>> entries = new ArrayList<>(heap);
+          entries.sort(Comparator.comparingLong(e -> e.ordinal));
+          heap.clear();
+          delegated = true;
+          return sort(Util.transform(entries, e -> e.row), enumerator,
+              keySelector, comparator, limit, memoryBudget, mergeFactor);
+        }
+      }
+    } finally {
+      if (!delegated) {
+        enumerator.close();
+      }
+    }
+    final List<Entry<TSource, TKey>> entries = new ArrayList<>(heap);
+    entries.sort(entryComparator);
+    return Linq4j.enumerator(Util.transform(entries, e -> e.row));
+  }
+
+  /** Sorts some rows followed by the rows of an enumerator, which it
+   * closes. If {@code limit} is less than {@link Integer#MAX_VALUE}, the
+   * result contains at least the first {@code limit} rows. */
+  private static <TSource, TKey> Enumerator<TSource> sort(
+      List<TSource> prefix, Enumerator<TSource> input,
+      Function1<TSource, TKey> keySelector, Comparator<TKey> comparator,
+      int limit, long memoryBudget, int mergeFactor) {
+    List<SpillFile> files = new ArrayList<>();
+    final Run<TKey> run = new Run<>();
+    boolean success = false;
+    try {
+      try (Enumerator<TSource> enumerator = input) {
+        for (TSource row : prefix) {
+          if (run.add(row, keySelector.apply(row)) > memoryBudget) {
+            files.add(run.spill(comparator, limit));
+          }
+        }
+        while (enumerator.moveNext()) {
+          final TSource row = enumerator.current();
+          if (run.add(row, keySelector.apply(row)) > memoryBudget) {
+            files.add(run.spill(comparator, limit));
+          }
+        }
+      }
+      final int[] order = run.sort(comparator);
+      if (!files.isEmpty()) {
+        Hook.SORT_SPILL.run(files.size());
+      }
+      // Leave room in the final merge for the run that is in memory
+      while (files.size() >= mergeFactor) {
+        files = mergePass(files, keySelector, comparator, limit, mergeFactor);
+      }
+      final List<Enumerator<TSource>> enumerators = new ArrayList<>();
+      for (SpillFile file : files) {
+        enumerators.add(file.<TSource>asEnumerable().enumerator());
+      }
+      enumerators.add(run.enumerator(order));
+      success = true;
+      if (enumerators.size() == 1) {
+        return enumerators.get(0);
+      }
+      return new MergeEnumerator<>(enumerators, files, keySelector,
+          comparator);
+    } finally {
+      if (!success) {
+        files.forEach(SpillFile::close);
+      }
+    }
+  }
+
+  /** Merges each group of {@code mergeFactor} consecutive runs into a single
+   * run, and returns the merged runs, in the same order. Deletes the files of
+   * the runs that it has merged. */
+  private static <TSource, TKey> List<SpillFile> mergePass(
+      List<SpillFile> files, Function1<TSource, TKey> keySelector,
+      Comparator<TKey> comparator, int limit, int mergeFactor) {
+    final List<SpillFile> mergedFiles = new ArrayList<>();
+    boolean success = false;
+    try {
+      for (int i = 0; i < files.size(); i += mergeFactor) {
+        final List<SpillFile> group =
+            files.subList(i, Math.min(i + mergeFactor, files.size()));
+        if (group.size() == 1) {
+          mergedFiles.add(group.get(0));
+          continue;
+        }
+        final List<Enumerator<TSource>> enumerators = new ArrayList<>();
+        for (SpillFile file : group) {
+          enumerators.add(file.<TSource>asEnumerable().enumerator());
+        }
+        final SpillFile mergedFile = SpillFile.create();
+        mergedFiles.add(mergedFile);
+        try (Enumerator<TSource> enumerator =
+                 new MergeEnumerator<>(enumerators, group, keySelector,
+                     comparator)) {
+          for (int j = 0; j < limit && enumerator.moveNext(); j++) {
+            mergedFile.add(enumerator.current());
+          }
+        }
+        mergedFile.finish();
+      }
+      success = true;
+      return mergedFiles;
+    } finally {
+      if (!success) {
+        mergedFiles.forEach(SpillFile::close);
+      }
+    }
+  }
+
+  /** Rows and their keys, held in arrays, that are sorted together.
+   *
+   * @param <TKey> key type */
+  private static class Run<TKey> {
+    @Nullable Object[] rows = new Object[INITIAL_CAPACITY];
+    @Nullable Object[] keys = new Object[INITIAL_CAPACITY];
+    int size;
+    long byteSize;
+
+    /** Adds a row, and returns the estimated number of bytes of the rows in
+     * this run. */
+    long add(@Nullable Object row, @Nullable TKey key) {
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, size * 2);
+        keys = Arrays.copyOf(keys, size * 2);
+      }
+      rows[size] = row;
+      keys[size] = key;
+      ++size;
+      byteSize += SpillFile.estimateSize(row) + 16;
+      return byteSize;
+    }
+
+    /** Sorts the rows, writes at most {@code limit} of them to a spill file,
+     * and clears this run. */
+    SpillFile spill(Comparator<TKey> comparator, int limit) {
+      final int[] order = sort(comparator);
+      final SpillFile file = SpillFile.create();
+      try {
+        for (int i = 0; i < Math.min(limit, order.length); i++) {
+          file.add(rows[order[i]]);
+        }
+        file.finish();
+      } catch (RuntimeException | Error e) {
+        file.close();
+        throw e;
+      }
+      clear();
+      return file;
+    }
+
+    void clear() {
+      Arrays.fill(rows, 0, size, null);
+      Arrays.fill(keys, 0, size, null);
+      size = 0;
+      byteSize = 0;
+    }
+
+    /** Returns the positions of the rows, in sorted order. The sort is a
+     * stable merge sort over an array of ints, so that no per-row object is
+     * created. */
+    @SuppressWarnings("unchecked")
+    int[] sort(Comparator<TKey> comparator) {
+      int[] order = new int[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+      }
+      int[] buffer = new int[size];
+      for (int width = 1; width < size; width *= 2) {
+        for (int lo = 0; lo < size; lo += 2 * width) {
+          final int mid = Math.min(lo + width, size);
+          final int hi = Math.min(lo + 2 * width, size);
+          int i = lo;
+          int j = mid;
+          int k = lo;
+          while (i < mid && j < hi) {
+            if (comparator.compare((TKey) keys[order[j]],
+                (TKey) keys[order[i]]) < 0) {
+              buffer[k++] = order[j++];
+            } else {
+              buffer[k++] = order[i++];
+            }
+          }
+          while (i < mid) {
+            buffer[k++] = order[i++];
+          }
+          while (j < hi) {
+            buffer[k++] = order[j++];
+          }
+        }
+        final int[] t = order;
+        order = buffer;
+        buffer = t;
+      }
+      return order;
+    }
+
+    @SuppressWarnings("unchecked")
+    <TSource> Enumerator<TSource> enumerator(int[] order) {
+      final List<TSource> list = new ArrayList<>(order.length);
+      for (int i : order) {
+        list.add((TSource) rows[i]);
+      }
+      return Linq4j.enumerator(list);
+    }
+  }
+
+  /** Enumerator that merges sorted runs.
+   *
+   * <p>Runs are numbered in the order they were read; if two rows have
+   * equal keys, the row from the earlier run is returned first, which
+   * keeps the sort stable.
+   *
+   * <p>The files of the runs are deleted when the enumerator is closed, not
+   * when they have been read, so that {@link #reset()} can merge them again
+   * from the start.
+   *
+   * @param <TSource> row type
+   * @param <TKey> key type */
+  private static class MergeEnumerator<TSource, TKey>
+      implements Enumerator<TSource> {
+    private final List<Enumerator<TSource>> enumerators;
+    private final List<SpillFile> files;
+    private final Function1<TSource, TKey> keySelector;
+    private final PriorityQueue<Cursor<TSource, TKey>> queue;
+    private @Nullable Cursor<TSource, TKey> current;
+    private boolean started;
+
+    MergeEnumerator(List<Enumerator<TSource>> enumerators,
+        List<SpillFile> files, Function1<TSource, TKey> keySelector,
+        Comparator<TKey> comparator) {
+      this.enumerators = enumerators;
+      this.files = files;
+      this.keySelector = keySelector;
+      this.queue =
+          new PriorityQueue<>(enumerators.size(), (c0, c1) -> {
+            final int c = comparator.compare(c0.key, c1.key);
+            return c != 0 ? c : Integer.compare(c0.ordinal, c1.ordinal);
+          });
+    }
+
+    @Override public TSource current() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return current.row;
+    }
+
+    @Override public boolean moveNext() {
+      if (!started) {
+        started = true;
+        for (int i = 0; i < enumerators.size(); i++) {
+          advance(new Cursor<>(enumerators.get(i), i));
+        }
+      } else if (current != null) {
+        advance(current);
+      }
+      current = queue.poll();
+      return current != null;
+    }
+
+    /** Moves a cursor to its next row and, unless it is exhausted, puts it
+     * back in the queue. */
+    private void advance(Cursor<TSource, TKey> cursor) {
+      if (cursor.enumerator.moveNext()) {
+        cursor.row = cursor.enumerator.current();
+        cursor.key = keySelector.apply(cursor.row);
+        queue.add(cursor);
+      } else {
+        // Release the run's reader, but keep its file until this enumerator
+        // is closed, in case it is reset
+        cursor.enumerator.close();
+      }
+    }
+
+    @Override public void reset() {
+      queue.clear();
+      current = null;
+      started = false;
+      enumerators.forEach(Enumerator::reset);
+    }
+
+    @Override public void close() {
+      enumerators.forEach(Enumerator::close);
+      files.forEach(SpillFile::close);
+    }
+  }
+
+  /** Row in the heap of a sort with a fetch.
+   *
+   * @param <TSource> row type
+   * @param <TKey> key type */
+  private static class Entry<TSource, TKey> {
+    final TSource row;
+    final TKey key;
+    final long ordinal;
+    final long size;
+
+    Entry(TSource row, TKey key, long ordinal, long size) {
+      this.row = row;
+      this.key = key;
+      this.ordinal = ordinal;
+      this.size = size;
+    }
+  }
+
+  /** Position in a sorted run.
+   *
+   * @param <TSource> row type
+   * @param <TKey> key type */
+  @SuppressWarnings("initialization.fields.uninitialized")
+  private static class Cursor<TSource, TKey> {
+    final Enumerator<TSource> enumerator;
+    final int ordinal;
+    TSource row;
+    TKey key;
+
+    Cursor(Enumerator<TSource> enumerator, int ordinal) {
+      this.enumerator = enumerator;
+      this.ordinal = ordinal;
+    }
+  }
+}
@@ -92,6 +92,33 @@ public enum Hook {
   /** Called when materialization is created. */
   CREATE_MATERIALIZATION,
 
+  /** Called each time a hash join exceeds its memory budget and partitions
+   * its inputs to disk. The hook supplies a
+   * {@link SpillableHashJoin.Spill} as an argument. */
+  HASH_JOIN_SPILL,
+
+  /** Called each time a sort exceeds its memory budget and writes sorted
+   * runs to disk. The hook supplies the number of runs written as an
+   * argument. */
+  SORT_SPILL,
+
+  /** Called each time a statement is prepared using a plan cache. The hook
+   * supplies the {@link org.apache.calcite.prepare.PlanCache} as an
+   * argument; its counters include the statement. */
+  PLAN_CACHE,
+
+  /** Called each time a statement is planned using row counts observed when
+   * previous statements were executed. The hook supplies the
+   * {@link org.apache.calcite.plan.volcano.CardinalityFeedback} as an
+   * argument. */
+  CARDINALITY_FEEDBACK,
+
+  /** Called each time a statement has been optimized, if the
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#PLANNER_PROFILE}
+   * connection property is set. The hook supplies a
+   * {@link org.apache.calcite.plan.RelOptProfiler} as an argument. */
+  PLANNER_PROFILE,
+
   /** Called with a query that has been generated to send to a back-end system.
    * The query might be a SQL string (for the JDBC adapter), a list of Mongo
    * pipeline expressions (for the MongoDB adapter), et cetera. */
@@ -69,7 +69,7 @@ static String sqlToRegexLike(
     } else {
       escapeChar = 0;
     }
-    return sqlToRegexLike(sqlPattern, escapeChar);
+    return sqlToRegexLike(sqlPattern, escapeStr != null, escapeChar);
   }
 
   /**
@@ -77,6 +77,7 @@ static String sqlToRegexLike(
    */
   static String sqlToRegexLike(
       String sqlPattern,
+      boolean hasEscape,
       char escapeChar) {
     int i;
     final int len = sqlPattern.length();
@@ -86,7 +87,7 @@ static String sqlToRegexLike(
       if (JAVA_REGEX_SPECIALS.indexOf(c) >= 0) {
         javaPattern.append('\\');
       }
-      if (c == escapeChar) {
+      if (hasEscape && c == escapeChar) {
         if (i == (sqlPattern.length() - 1)) {
           throw invalidEscapeSequence(sqlPattern, i);
         }
@@ -110,13 +111,13 @@ static String sqlToRegexLike(
     return javaPattern.toString();
   }
 
-  private static RuntimeException invalidEscapeCharacter(String s) {
-    return new RuntimeException(
+  private static IllegalArgumentException invalidEscapeCharacter(String s) {
+    return new IllegalArgumentException(
         "Invalid escape character '" + s + "'");
   }
 
-  private static RuntimeException invalidEscapeSequence(String s, int i) {
-    return new RuntimeException(
+  private static IllegalArgumentException invalidEscapeSequence(String s, int i) {
+    return new IllegalArgumentException(
         "Invalid escape sequence '" + s + "', " + i);
   }
 
@@ -156,9 +157,9 @@ private static void similarEscapeRuleChecking(
     }
   }
 
-  private static RuntimeException invalidRegularExpression(
+  private static IllegalArgumentException invalidRegularExpression(
       String pattern, int i) {
-    return new RuntimeException(
+    return new IllegalArgumentException(
         "Invalid regular expression '" + pattern + "', index " + i);
   }
 
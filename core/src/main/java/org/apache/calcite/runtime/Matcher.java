@@ -21,22 +21,21 @@
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * Workspace that partialMatches patterns against an automaton.
@@ -44,7 +43,26 @@
  */
 public class Matcher<E> {
   private final DeterministicAutomaton dfa;
-  private final ImmutableMap<String, Predicate<MemoryFactory.Memory<E>>> predicates;
+
+  /** Names of symbols, indexed by symbol id. */
+  private final List<String> symbolNames;
+
+  /** Predicates, indexed by symbol id. */
+  private final List<Predicate<MemoryFactory.Memory<E>>> symbolPredicates;
+
+  /** States of the DFA, numbered; state 0 is the start state. */
+  private final List<DeterministicAutomaton.MultiState> states;
+
+  /** Transition table: {@code nextStates[state][symbol]} is the state reached
+   * from {@code state} on {@code symbol}, or -1 if there is no transition. */
+  private final int[][] nextStates;
+
+  /** Whether each state is an end state. */
+  private final boolean[] endStates;
+
+  /** Whether each state has at least one outgoing transition; a partial match
+   * in a state that has none can never be extended, and is discarded. */
+  private final boolean[] liveStates;
 
   // The following members are work space. They can be shared among partitions,
   // but only one thread can use them at a time. Putting them here saves the
@@ -53,12 +71,22 @@
   @SuppressWarnings("unused")
   private final ImmutableBitSet startSet;
 
+  /** Symbols whose predicates have been evaluated for the current row. */
+  private final BitSet evaluatedSymbols = new BitSet();
+
+  /** Symbols whose predicates are true for the current row; valid only for
+   * symbols in {@link #evaluatedSymbols}. */
+  private final BitSet matchedSymbols = new BitSet();
+
   /**
    * Creates a Matcher; use {@link #builder}.
    */
   private Matcher(Automaton automaton,
       ImmutableMap<String, Predicate<MemoryFactory.Memory<E>>> predicates) {
-    this.predicates = Objects.requireNonNull(predicates, "predicates");
+    this.symbolNames = automaton.symbolNames;
+    this.symbolPredicates =
+        ImmutableList.copyOf(
+            Objects.requireNonNull(predicates, "predicates").values());
     final ImmutableBitSet.Builder startSetBuilder =
         ImmutableBitSet.builder();
     startSetBuilder.set(automaton.startState.id);
@@ -66,6 +94,31 @@ private Matcher(Automaton automaton,
     startSet = startSetBuilder.build();
     // Build the DFA
     dfa = new DeterministicAutomaton(automaton);
+
+    // Number the states of the DFA, and build a transition table
+    final Map<DeterministicAutomaton.MultiState, Integer> stateIds =
+        new LinkedHashMap<>();
+    stateIds.put(dfa.getStartState(), 0);
+    for (DeterministicAutomaton.Transition transition : dfa.getTransitions()) {
+      stateIds.putIfAbsent(transition.fromState, stateIds.size());
+      stateIds.putIfAbsent(transition.toState, stateIds.size());
+    }
+    states = ImmutableList.copyOf(stateIds.keySet());
+    nextStates = new int[states.size()][symbolPredicates.size()];
+    for (int[] next : nextStates) {
+      Arrays.fill(next, -1);
+    }
+    endStates = new boolean[states.size()];
+    liveStates = new boolean[states.size()];
+    for (DeterministicAutomaton.Transition transition : dfa.getTransitions()) {
+      final int fromState = stateIds.get(transition.fromState);
+      nextStates[fromState][transition.symbolId] =
+          stateIds.get(transition.toState);
+      liveStates[fromState] = true;
+    }
+    for (DeterministicAutomaton.MultiState endState : dfa.getEndStates()) {
+      endStates[stateIds.get(endState)] = true;
+    }
   }
 
   public static <E> Builder<E> builder(Automaton automaton) {
@@ -99,69 +152,61 @@ public PartitionState<E> createPartitionState(int history, int future) {
    */
   protected void matchOne(MemoryFactory.Memory<E> rows,
       PartitionState<E> partitionState, Consumer<PartialMatch<E>> resultMatches) {
-    List<PartialMatch<E>> matches = matchOneWithSymbols(rows, partitionState);
-    for (PartialMatch<E> pm : matches) {
-      resultMatches.accept(pm);
+    final E row = rows.get();
+    final List<Run<E>> runs = partitionState.runs;
+    final List<Run<E>> nextRuns = partitionState.nextRuns;
+    evaluatedSymbols.clear();
+
+    // Extend each live partial match, oldest first, by each symbol whose
+    // predicate is true for this row; then start new partial matches.
+    // Each predicate is evaluated at most once per row.
+    for (Run<E> run : runs) {
+      advance(run, run.state, rows, row, nextRuns);
     }
+    advance(null, 0, rows, row, nextRuns);
+
+    // Partial matches that were not extended are dropped, and with them any
+    // rows that are not part of a live partial match.
+    runs.clear();
+    for (Run<E> run : nextRuns) {
+      if (endStates[run.state]) {
+        resultMatches.accept(
+            run.toPartialMatch(symbolNames, states.get(run.state)));
+      }
+      if (liveStates[run.state]) {
+        runs.add(run);
+      }
+    }
+    nextRuns.clear();
   }
 
-  protected List<PartialMatch<E>> matchOneWithSymbols(MemoryFactory.Memory<E> rows,
-      PartitionState<E> partitionState) {
-    final HashSet<PartialMatch<E>> newMatches = new HashSet<>();
-    for (Map.Entry<String, Predicate<MemoryFactory.Memory<E>>> predicate
-        : predicates.entrySet()) {
-      for (PartialMatch<E> pm : partitionState.getPartialMatches()) {
-        // Remove this match
-        if (predicate.getValue().test(rows)) {
-          // Check if we have transitions from here
-          final List<DeterministicAutomaton.Transition> transitions =
-              dfa.getTransitions().stream()
-                  .filter(t -> predicate.getKey().equals(t.symbol))
-                  .filter(t -> pm.currentState.equals(t.fromState))
-                  .collect(Collectors.toList());
-
-          for (DeterministicAutomaton.Transition transition : transitions) {
-            // System.out.println("Append new transition to ");
-            final PartialMatch<E> newMatch = pm.append(transition.symbol,
-                rows.get(), transition.toState);
-            newMatches.add(newMatch);
-          }
-        }
-      }
-      // Check if a new Match starts here
-      if (predicate.getValue().test(rows)) {
-        final List<DeterministicAutomaton.Transition> transitions =
-            dfa.getTransitions().stream()
-                .filter(t -> predicate.getKey().equals(t.symbol))
-                .filter(t -> dfa.startState.equals(t.fromState))
-                .collect(Collectors.toList());
-
-        for (DeterministicAutomaton.Transition transition : transitions) {
-          final PartialMatch<E> newMatch = new PartialMatch<>(-1L,
-              ImmutableList.of(transition.symbol), ImmutableList.of(rows.get()),
-              transition.toState);
-          newMatches.add(newMatch);
-        }
+  /** Adds to {@code nextRuns} a partial match for each transition out of
+   * {@code state} whose symbol's predicate is true for the current row. */
+  private void advance(@Nullable Run<E> run, int state,
+      MemoryFactory.Memory<E> rows, E row, List<Run<E>> nextRuns) {
+    final int[] next = nextStates[state];
+    for (int symbol = 0; symbol < next.length; symbol++) {
+      if (next[symbol] >= 0 && test(symbol, rows)) {
+        nextRuns.add(new Run<>(run, symbol, row, next[symbol]));
       }
     }
+  }
+
+  /** Returns whether the predicate of a symbol is true for the current row,
+   * evaluating it only the first time it is needed for that row. */
+  private boolean test(int symbol, MemoryFactory.Memory<E> rows) {
+    if (!evaluatedSymbols.get(symbol)) {
+      evaluatedSymbols.set(symbol);
+      matchedSymbols.set(symbol, symbolPredicates.get(symbol).test(rows));
+    }
+    return matchedSymbols.get(symbol);
+  }
 
-    // Remove all current partitions
-    partitionState.clearPartitions();
-    // Add all partial matches
-    partitionState.addPartialMatches(newMatches);
-    // Check if one of the new Matches is in a final state, otherwise add them
-    // and go on
+  protected List<PartialMatch<E>> matchOneWithSymbols(MemoryFactory.Memory<E> rows,
+      PartitionState<E> partitionState) {
     final ImmutableList.Builder<PartialMatch<E>> builder =
         ImmutableList.builder();
-    for (PartialMatch<E> match : newMatches) {
-      if (dfa.getEndStates().contains(match.currentState)) {
-        // This is the match, handle all "open" partial matches with a suitable
-        // strategy
-        // TODO add strategy
-        // Return it!
-        builder.add(match);
-      }
-    }
+    matchOne(rows, partitionState, builder::add);
     return builder.build();
   }
 
@@ -171,35 +216,65 @@ protected List<PartialMatch<E>> matchOneWithSymbols(MemoryFactory.Memory<E> rows
    * @param <E> Row type
    */
   static class PartitionState<E> {
-    private final Set<PartialMatch<E>> partialMatches = new HashSet<>();
+    /** Live partial matches, oldest first. */
+    private final List<Run<E>> runs = new ArrayList<>();
+    /** Work space for the partial matches after the current row. */
+    private final List<Run<E>> nextRuns = new ArrayList<>();
     private final MemoryFactory<E> memoryFactory;
 
     PartitionState(int history, int future) {
       this.memoryFactory = new MemoryFactory<>(history, future);
     }
 
-    public void addPartialMatches(Collection<PartialMatch<E>> matches) {
-      partialMatches.addAll(matches);
-    }
-
-    public Set<PartialMatch<E>> getPartialMatches() {
-      return ImmutableSet.copyOf(partialMatches);
+    public MemoryFactory.Memory<E> getRows() {
+      return memoryFactory.create();
     }
 
-    public void removePartialMatch(PartialMatch<E> pm) {
-      partialMatches.remove(pm);
+    public MemoryFactory<E> getMemoryFactory() {
+      return this.memoryFactory;
     }
+  }
 
-    public void clearPartitions() {
-      partialMatches.clear();
-    }
+  /**
+   * Live partial match: a path through the DFA that started at some row and
+   * has consumed every row since.
+   *
+   * <p>Rows and symbols are held as a linked list, most recent first, whose
+   * tails are shared between partial matches that have a common prefix.
+   * Extending a partial match by one row is therefore constant time, and a
+   * row is retained only while some live partial match contains it.
+   * A {@link PartialMatch} is created only when a match is complete.
+   *
+   * @param <E> Row type
+   */
+  private static class Run<E> {
+    final @Nullable Run<E> previous;
+    final int symbol;
+    final E row;
+    final int state;
+    final int length;
 
-    public MemoryFactory.Memory<E> getRows() {
-      return memoryFactory.create();
+    Run(@Nullable Run<E> previous, int symbol, E row, int state) {
+      this.previous = previous;
+      this.symbol = symbol;
+      this.row = row;
+      this.state = state;
+      this.length = previous == null ? 1 : previous.length + 1;
     }
 
-    public MemoryFactory<E> getMemoryFactory() {
-      return this.memoryFactory;
+    @SuppressWarnings("unchecked")
+    PartialMatch<E> toPartialMatch(List<String> symbolNames,
+        DeterministicAutomaton.MultiState state) {
+      final Object[] rows = new Object[length];
+      final String[] symbols = new String[length];
+      int i = length;
+      for (Run<E> run = this; run != null; run = run.previous) {
+        --i;
+        rows[i] = run.row;
+        symbols[i] = symbolNames.get(run.symbol);
+      }
+      return new PartialMatch<>(-1L, ImmutableList.copyOf(symbols),
+          (ImmutableList<E>) ImmutableList.copyOf(rows), state);
     }
   }
 
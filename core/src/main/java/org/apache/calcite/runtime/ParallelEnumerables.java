@@ -0,0 +1,506 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.QueryProvider;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.SplittableTable;
+import org.apache.calcite.util.Util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Runtime support for parallel execution of enumerable plans.
+ *
+ * <p>A fragment of a plan that can run in parallel is compiled into a
+ * function from a {@link DataContext} to an {@link Enumerable}. Each
+ * invocation of the function receives a {@link SplitContext} that says which
+ * split of the data it should process; a scan of a {@link SplittableTable}
+ * reads only that split (see {@link #scan}).
+ *
+ * <p>{@link #gather} runs a fragment once per split, as tasks in the
+ * {@link ForkJoinPool#commonPool() common fork-join pool}, and concatenates
+ * the results in split order. Because there are typically several splits
+ * (morsels) per thread, the pool balances the load if some morsels take
+ * longer than others. The results are streamed: each task reads
+ * {@link #CHUNK_SIZE} rows at a time, and stops once {@link #MAX_CHUNKS}
+ * chunks are waiting to be consumed; and at most {@code parallelism} splits
+ * are in progress at a time. No task waits for the consumer, so a query
+ * never holds a thread of the shared pool while it is idle.
+ *
+ * <p>{@link #repartition} redistributes the rows of a fragment among the
+ * splits of an enclosing {@link #gather} by the hash of a key; it is
+ * computed once, by whichever split asks for it first, and each split reads
+ * its own bucket.
+ */
+public class ParallelEnumerables {
+  /** Number of rows that a split reads before it hands them to the
+   * consumer. */
+  static final int CHUNK_SIZE = 1024;
+
+  /** Number of chunks of a split that may wait to be consumed before the
+   * split stops reading. */
+  static final int MAX_CHUNKS = 4;
+
+  private ParallelEnumerables() {}
+
+  /** Returns the rows of a table that belong to the current split; or, if
+   * not executing within a split, all of the rows of the table. */
+  public static Enumerable<@Nullable Object[]> scan(DataContext root,
+      SplittableTable table) {
+    if (root instanceof SplitContext) {
+      final SplitContext context = (SplitContext) root;
+      return table.scan(root, context.split, context.splitCount);
+    }
+    return table.scan(root);
+  }
+
+  /** Evaluates a fragment for each of {@code splitCount} splits, in parallel,
+   * and returns the concatenation of the results.
+   *
+   * @param root Execution context
+   * @param parallelism Maximum number of splits in progress at a time
+   * @param splitCount Number of splits
+   * @param fragment Function that evaluates the fragment for one split
+   */
+  public static <T> Enumerable<T> gather(DataContext root, int parallelism,
+      int splitCount, Function1<DataContext, Enumerable<T>> fragment) {
+    return new AbstractEnumerable<T>() {
+      @Override public Enumerator<T> enumerator() {
+        final ConcurrentMap<Object, ForkJoinTask<?>> exchanges =
+            new ConcurrentHashMap<>();
+        final ForkJoinPool pool = ForkJoinPool.commonPool();
+        final List<SplitProducer<T>> producers = new ArrayList<>();
+        for (int i = 0; i < splitCount; i++) {
+          producers.add(
+              new SplitProducer<>(pool, fragment,
+                  new SplitContext(root, i, splitCount, exchanges)));
+        }
+        return new GatherEnumerator<>(producers, Math.max(parallelism, 1));
+      }
+    };
+  }
+
+  /** Returns the rows of a fragment whose key hashes to the current split.
+   *
+   * <p>The fragment is evaluated for each of {@code splitCount} splits of
+   * its own; this is independent of the number of splits of the enclosing
+   * {@link #gather}, which determines the number of buckets. If not executing
+   * within a split, returns all rows of the fragment.
+   *
+   * @param root Execution context
+   * @param exchange Object that identifies the exchange within the plan
+   * @param splitCount Number of splits in which to evaluate the fragment
+   * @param fragment Function that evaluates the fragment for one split
+   * @param keySelector Function that computes the key of a row
+   */
+  public static <T, K> Enumerable<T> repartition(DataContext root,
+      Object exchange, int splitCount,
+      Function1<DataContext, Enumerable<T>> fragment,
+      Function1<T, K> keySelector) {
+    if (!(root instanceof SplitContext)) {
+      return fragment.apply(root);
+    }
+    final SplitContext context = (SplitContext) root;
+    return new AbstractEnumerable<T>() {
+      @Override public Enumerator<T> enumerator() {
+        final ForkJoinTask<?> task =
+            context.exchanges.computeIfAbsent(exchange, k ->
+                task(() -> shuffle(context, splitCount, fragment, keySelector))
+                    .fork());
+        @SuppressWarnings("unchecked")
+        final Outcome<List<List<T>>> outcome =
+            (Outcome<List<List<T>>>) task.join();
+        return Linq4j.enumerator(outcome.get().get(context.split));
+      }
+    };
+  }
+
+  private static <T, K> List<List<T>> shuffle(SplitContext context,
+      int splitCount, Function1<DataContext, Enumerable<T>> fragment,
+      Function1<T, K> keySelector) {
+    final int bucketCount = context.splitCount;
+    final ConcurrentMap<Object, ForkJoinTask<?>> exchanges =
+        new ConcurrentHashMap<>();
+    final List<Callable<List<List<T>>>> callables = new ArrayList<>();
+    for (int i = 0; i < splitCount; i++) {
+      final SplitContext splitContext =
+          new SplitContext(context.parent, i, splitCount, exchanges);
+      callables.add(() -> {
+        final List<List<T>> buckets = new ArrayList<>();
+        for (int b = 0; b < bucketCount; b++) {
+          buckets.add(new ArrayList<>());
+        }
+        try (Enumerator<T> enumerator =
+                 fragment.apply(splitContext).enumerator()) {
+          while (enumerator.moveNext()) {
+            final T row = enumerator.current();
+            buckets.get(bucket(keySelector.apply(row), bucketCount))
+                .add(row);
+          }
+        }
+        return buckets;
+      });
+    }
+    final List<List<List<T>>> results = invokeAll(callables);
+    final List<List<T>> buckets = new ArrayList<>();
+    for (int b = 0; b < bucketCount; b++) {
+      final List<T> bucket = new ArrayList<>();
+      for (List<List<T>> result : results) {
+        bucket.addAll(result.get(b));
+      }
+      buckets.add(bucket);
+    }
+    return buckets;
+  }
+
+  private static int bucket(@Nullable Object key, int bucketCount) {
+    final int h = Objects.hashCode(key);
+    return Math.floorMod(h ^ (h >>> 16), bucketCount);
+  }
+
+  /** Runs several computations in parallel in the current pool, and returns
+   * their results; if any fails, rethrows the exception of the first that
+   * failed. */
+  private static <E> List<E> invokeAll(List<Callable<E>> callables) {
+    final List<ForkJoinTask<Outcome<E>>> tasks = new ArrayList<>();
+    for (Callable<E> callable : callables) {
+      tasks.add(task(callable));
+    }
+    ForkJoinTask.invokeAll(tasks);
+    final List<E> results = new ArrayList<>();
+    for (ForkJoinTask<Outcome<E>> task : tasks) {
+      results.add(task.join().get());
+    }
+    return results;
+  }
+
+  /** Creates a task that never completes abnormally. If the task's
+   * computation throws, the task's {@link Outcome} holds the exception, so
+   * that it can be rethrown as is; {@link ForkJoinTask#join()} would wrap an
+   * exception thrown in another thread in a copy. */
+  private static <E> ForkJoinTask<Outcome<E>> task(Callable<E> callable) {
+    return ForkJoinTask.adapt(() -> {
+      try {
+        return new Outcome<>(callable.call(), null);
+      } catch (Throwable e) {
+        return new Outcome<>(null, e);
+      }
+    });
+  }
+
+  /** Result of a computation, or the exception that it threw.
+   *
+   * @param <E> Result type */
+  private static class Outcome<E> {
+    private final @Nullable E value;
+    private final @Nullable Throwable throwable;
+
+    Outcome(@Nullable E value, @Nullable Throwable throwable) {
+      this.value = value;
+      this.throwable = throwable;
+    }
+
+    E get() {
+      if (throwable != null) {
+        throw Util.throwAsRuntime(throwable);
+      }
+      return castNonNull(value);
+    }
+  }
+
+  /** Rows read by a split, or the exception that stopped it.
+   *
+   * @param <T> Row type */
+  private static class Chunk<T> {
+    final List<T> rows;
+    final boolean last;
+    final @Nullable Throwable throwable;
+
+    Chunk(List<T> rows, boolean last, @Nullable Throwable throwable) {
+      this.rows = rows;
+      this.last = last;
+      this.throwable = throwable;
+    }
+  }
+
+  /** Evaluates a fragment for one split, as a series of tasks in a pool, each
+   * of which reads a chunk of rows.
+   *
+   * <p>After it reads a chunk, a task schedules the next, unless the
+   * consumer has not yet taken {@link #MAX_CHUNKS} chunks; in that case,
+   * {@link #take()} schedules it. So, no thread of the pool ever waits for
+   * the consumer.
+   *
+   * @param <T> Row type */
+  private static class SplitProducer<T> {
+    private final ForkJoinPool pool;
+    private final Function1<DataContext, Enumerable<T>> fragment;
+    private final SplitContext context;
+    private final BlockingQueue<Chunk<T>> chunks = new LinkedBlockingQueue<>();
+    private @Nullable Enumerator<T> enumerator;
+    /** Whether a task is scheduled or running. Guarded by {@code this}. */
+    private boolean running;
+    /** Whether the split has read its last row, or has been closed.
+     * Guarded by {@code this}. */
+    private boolean done;
+    /** Whether the consumer has closed the split. Guarded by {@code this}. */
+    private boolean closed;
+
+    SplitProducer(ForkJoinPool pool,
+        Function1<DataContext, Enumerable<T>> fragment, SplitContext context) {
+      this.pool = pool;
+      this.fragment = fragment;
+      this.context = context;
+    }
+
+    /** Schedules a task to read the next chunk, if none is scheduled and
+     * the consumer is not too far behind. */
+    synchronized void schedule() {
+      if (!running && !done && chunks.size() < MAX_CHUNKS) {
+        running = true;
+        pool.execute(this::produce);
+      }
+    }
+
+    private void produce() {
+      final List<T> rows = new ArrayList<>();
+      boolean last = false;
+      Throwable throwable = null;
+      try {
+        Enumerator<T> enumerator = this.enumerator;
+        if (enumerator == null) {
+          enumerator = fragment.apply(context).enumerator();
+          this.enumerator = enumerator;
+        }
+        while (rows.size() < CHUNK_SIZE && !isClosed()) {
+          if (!enumerator.moveNext()) {
+            last = true;
+            break;
+          }
+          rows.add(enumerator.current());
+        }
+      } catch (Throwable e) {
+        last = true;
+        throwable = e;
+      }
+      synchronized (this) {
+        running = false;
+        if (last || closed) {
+          done = true;
+          closeEnumerator();
+        }
+        if (!closed) {
+          chunks.add(new Chunk<>(rows, last, throwable));
+          schedule();
+        }
+      }
+    }
+
+    private synchronized boolean isClosed() {
+      return closed;
+    }
+
+    /** Returns the next chunk, waiting until it has been read. */
+    Chunk<T> take() {
+      final Chunk<T> chunk;
+      try {
+        final Taker<T> taker = new Taker<>(chunks);
+        ForkJoinPool.managedBlock(taker);
+        chunk = castNonNull(taker.chunk);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Util.throwAsRuntime(e);
+      }
+      schedule();
+      return chunk;
+    }
+
+    /** Stops reading, and closes the fragment's enumerator, now if no task
+     * is running, otherwise when the task finishes. */
+    synchronized void close() {
+      closed = true;
+      done = true;
+      chunks.clear();
+      if (!running) {
+        closeEnumerator();
+      }
+    }
+
+    private void closeEnumerator() {
+      final Enumerator<T> enumerator = this.enumerator;
+      if (enumerator != null) {
+        this.enumerator = null;
+        enumerator.close();
+      }
+    }
+  }
+
+  /** Waits for a chunk in a way that allows a {@link ForkJoinPool} to
+   * compensate, if the consumer is itself running in the pool.
+   *
+   * @param <T> Row type */
+  private static class Taker<T> implements ForkJoinPool.ManagedBlocker {
+    private final BlockingQueue<Chunk<T>> chunks;
+    @Nullable Chunk<T> chunk;
+
+    Taker(BlockingQueue<Chunk<T>> chunks) {
+      this.chunks = chunks;
+    }
+
+    @Override public boolean block() throws InterruptedException {
+      if (chunk == null) {
+        chunk = chunks.take();
+      }
+      return true;
+    }
+
+    @Override public boolean isReleasable() {
+      if (chunk == null) {
+        chunk = chunks.poll();
+      }
+      return chunk != null;
+    }
+  }
+
+  /** Enumerator that returns the rows of several splits, in split order,
+   * starting each split a few splits before it is needed.
+   *
+   * @param <T> Row type */
+  private static class GatherEnumerator<T> implements Enumerator<T> {
+    private final List<SplitProducer<T>> producers;
+    private final int window;
+    private int split = -1;
+    private @Nullable Chunk<T> chunk;
+    private int index;
+    private @Nullable T current;
+
+    GatherEnumerator(List<SplitProducer<T>> producers, int window) {
+      this.producers = producers;
+      this.window = window;
+      for (int i = 0; i < Math.min(window, producers.size()); i++) {
+        producers.get(i).schedule();
+      }
+    }
+
+    @Override public T current() {
+      return castNonNull(current);
+    }
+
+    @Override public boolean moveNext() {
+      for (;;) {
+        final Chunk<T> chunk = this.chunk;
+        if (chunk != null && ++index < chunk.rows.size()) {
+          current = chunk.rows.get(index);
+          return true;
+        }
+        if (chunk == null || chunk.last) {
+          if (++split >= producers.size()) {
+            this.chunk = null;
+            current = null;
+            return false;
+          }
+          if (split + window - 1 < producers.size()) {
+            producers.get(split + window - 1).schedule();
+          }
+        }
+        final Chunk<T> next = producers.get(split).take();
+        if (next.throwable != null) {
+          close();
+          throw Util.throwAsRuntime(next.throwable);
+        }
+        this.chunk = next;
+        index = -1;
+      }
+    }
+
+    @Override public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public void close() {
+      producers.forEach(SplitProducer::close);
+    }
+  }
+
+  /** Context in which a fragment of a plan processes one split of its
+   * data. */
+  public static class SplitContext implements DataContext {
+    private final DataContext parent;
+    private final int split;
+    private final int splitCount;
+    /** Exchanges that have been started by splits of the enclosing gather,
+     * keyed by the object that identifies each exchange. */
+    private final ConcurrentMap<Object, ForkJoinTask<?>> exchanges;
+
+    SplitContext(DataContext parent, int split, int splitCount,
+        ConcurrentMap<Object, ForkJoinTask<?>> exchanges) {
+      this.parent = parent instanceof SplitContext
+          ? ((SplitContext) parent).parent
+          : parent;
+      this.split = split;
+      this.splitCount = splitCount;
+      this.exchanges = exchanges;
+    }
+
+    /** Returns the ordinal of the split. */
+    public int split() {
+      return split;
+    }
+
+    /** Returns the number of splits. */
+    public int splitCount() {
+      return splitCount;
+    }
+
+    @Override public @Nullable SchemaPlus getRootSchema() {
+      return parent.getRootSchema();
+    }
+
+    @Override public JavaTypeFactory getTypeFactory() {
+      return parent.getTypeFactory();
+    }
+
+    @Override public QueryProvider getQueryProvider() {
+      return parent.getQueryProvider();
+    }
+
+    @Override public @Nullable Object get(String name) {
+      return parent.get(name);
+    }
+  }
+}
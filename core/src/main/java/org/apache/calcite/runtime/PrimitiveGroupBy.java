@@ -0,0 +1,510 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.DoubleFunction1;
+import org.apache.calcite.linq4j.function.LongFunction1;
+import org.apache.calcite.linq4j.function.Predicate1;
+import org.apache.calcite.linq4j.tree.Primitive;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Hash aggregation whose keys are one or two integral columns.
+ *
+ * <p>Unlike {@link EnumerableDefaults#groupBy}, which stores a boxed key and
+ * an accumulator object per group in a {@link java.util.HashMap}, the keys
+ * are stored in a {@code long[]} indexed by open addressing with linear
+ * probing, and the state of each aggregate function is stored in a
+ * {@code long[]} or {@code double[]} indexed by group. The only objects
+ * allocated per group are the output rows.
+ *
+ * <p>Supports {@code COUNT}, {@code SUM}, {@code $SUM0}, {@code MIN} and
+ * {@code MAX}; see {@link Kind}. Groups are returned in the order that their
+ * first row was read.
+ */
+public class PrimitiveGroupBy {
+  private PrimitiveGroupBy() {}
+
+  /** Creates a column whose values are held in a {@code long}.
+   *
+   * @param selector   Returns the value of the column in a row; not called
+   *                   if the value is null
+   * @param isNull     Returns whether the value of the column in a row is
+   *                   null, or null if the column is not nullable
+   * @param primitive  Java type of the value, for example {@link Primitive#INT}
+   */
+  public static <T> Column<T> longColumn(LongFunction1<T> selector,
+      @Nullable Predicate1<T> isNull, Primitive primitive) {
+    return new Column<>(selector, null, isNull, primitive);
+  }
+
+  /** Creates a column whose values are held in a {@code double}; parameters
+   * are as {@link #longColumn}. */
+  public static <T> Column<T> doubleColumn(DoubleFunction1<T> selector,
+      @Nullable Predicate1<T> isNull, Primitive primitive) {
+    return new Column<>(null, selector, isNull, primitive);
+  }
+
+  /** Creates an aggregate function.
+   *
+   * @param kind      Aggregate function
+   * @param arg       Argument, or null for {@code COUNT(*)}
+   * @param primitive Java type of the result
+   */
+  public static <T> Agg<T> agg(Kind kind, @Nullable Column<T> arg,
+      Primitive primitive) {
+    if (arg == null && kind != Kind.COUNT) {
+      throw new IllegalArgumentException(kind + " requires an argument");
+    }
+    return new Agg<>(kind, arg, primitive);
+  }
+
+  /** Groups the rows of a sequence by the values of one or two integral key
+   * columns, and computes aggregate functions over each group.
+   *
+   * <p>Each result row is an array consisting of the values of the keys
+   * followed by the values of the aggregate functions.
+   *
+   * @param source Input rows
+   * @param keys   Key columns; there must be one or two, and their values
+   *               must be held in a {@code long}
+   * @param aggs   Aggregate functions
+   */
+  public static <T> Enumerable<@Nullable Object[]> groupBy(
+      Enumerable<T> source, List<Column<T>> keys, List<Agg<T>> aggs) {
+    if (keys.isEmpty() || keys.size() > 2) {
+      throw new IllegalArgumentException("expected 1 or 2 keys: " + keys);
+    }
+    for (Column<T> key : keys) {
+      if (key.longSelector == null) {
+        throw new IllegalArgumentException("key must be integral");
+      }
+    }
+    final Table table = new Table(keys.size());
+    final List<Accumulator<T>> accumulators = new ArrayList<>();
+    for (Agg<T> agg : aggs) {
+      accumulators.add(agg.accumulator());
+    }
+    final Column<T> key0 = keys.get(0);
+    final @Nullable Column<T> key1 = keys.size() > 1 ? keys.get(1) : null;
+    try (Enumerator<T> enumerator = source.enumerator()) {
+      while (enumerator.moveNext()) {
+        final T row = enumerator.current();
+        int nulls = 0;
+        long k0 = 0;
+        long k1 = 0;
+        if (key0.isNull(row)) {
+          nulls = 1;
+        } else {
+          k0 = key0.longValue(row);
+        }
+        if (key1 != null) {
+          if (key1.isNull(row)) {
+            nulls |= 2;
+          } else {
+            k1 = key1.longValue(row);
+          }
+        }
+        final int group = table.add(k0, k1, nulls);
+        if (group == table.size - 1) {
+          for (Accumulator<T> accumulator : accumulators) {
+            accumulator.ensureCapacity(table.size);
+          }
+        }
+        for (Accumulator<T> accumulator : accumulators) {
+          accumulator.add(group, row);
+        }
+      }
+    }
+    final List<@Nullable Object[]> rows = new ArrayList<>(table.size);
+    final int keyCount = keys.size();
+    for (int g = 0; g < table.size; g++) {
+      final @Nullable Object[] values =
+          new Object[keyCount + accumulators.size()];
+      values[0] = (table.nulls[g] & 1) != 0 ? null
+          : box(key0.primitive, table.keys0[g]);
+      if (key1 != null) {
+        values[1] = (table.nulls[g] & 2) != 0 ? null
+            : box(key1.primitive, table.keys1[g]);
+      }
+      for (int i = 0; i < accumulators.size(); i++) {
+        values[keyCount + i] = accumulators.get(i).result(g);
+      }
+      rows.add(values);
+    }
+    return Linq4j.asEnumerable(rows);
+  }
+
+  /** Converts a {@code long} to an object of a given Java type, wrapping
+   * as the Java type's arithmetic would. */
+  static Object box(Primitive primitive, long v) {
+    switch (primitive) {
+    case BYTE:
+      return (byte) v;
+    case SHORT:
+      return (short) v;
+    case INT:
+      return (int) v;
+    case LONG:
+      return v;
+    case FLOAT:
+      return (float) v;
+    case DOUBLE:
+      return (double) v;
+    default:
+      throw new AssertionError(primitive);
+    }
+  }
+
+  /** Converts a {@code double} to an object of a given Java type. */
+  static Object box(Primitive primitive, double v) {
+    switch (primitive) {
+    case FLOAT:
+      return (float) v;
+    case DOUBLE:
+      return v;
+    default:
+      throw new AssertionError(primitive);
+    }
+  }
+
+  /** Aggregate function supported by {@link #groupBy}. */
+  public enum Kind {
+    /** {@code COUNT(*)}, or {@code COUNT(x)} which ignores null values. */
+    COUNT,
+    /** {@code SUM(x)}; null if there are no non-null values. */
+    SUM,
+    /** {@code $SUM0(x)}; zero if there are no non-null values. */
+    SUM0,
+    MIN,
+    MAX
+  }
+
+  /** Column of the input rows, with its value held in a primitive.
+   *
+   * @param <T> Row type */
+  public static class Column<T> {
+    final @Nullable LongFunction1<T> longSelector;
+    final @Nullable DoubleFunction1<T> doubleSelector;
+    final @Nullable Predicate1<T> isNull;
+    final Primitive primitive;
+
+    Column(@Nullable LongFunction1<T> longSelector,
+        @Nullable DoubleFunction1<T> doubleSelector,
+        @Nullable Predicate1<T> isNull, Primitive primitive) {
+      this.longSelector = longSelector;
+      this.doubleSelector = doubleSelector;
+      this.isNull = isNull;
+      this.primitive = primitive;
+    }
+
+    boolean isNull(T row) {
+      return isNull != null && isNull.apply(row);
+    }
+
+    long longValue(T row) {
+      return castNonNull(longSelector).apply(row);
+    }
+
+    double doubleValue(T row) {
+      return castNonNull(doubleSelector).apply(row);
+    }
+  }
+
+  /** Aggregate function call.
+   *
+   * @param <T> Row type */
+  public static class Agg<T> {
+    final Kind kind;
+    final @Nullable Column<T> arg;
+    final Primitive primitive;
+
+    Agg(Kind kind, @Nullable Column<T> arg, Primitive primitive) {
+      this.kind = kind;
+      this.arg = arg;
+      this.primitive = primitive;
+    }
+
+    Accumulator<T> accumulator() {
+      if (arg == null) {
+        return new CountStarAccumulator<>(primitive);
+      }
+      if (kind == Kind.COUNT) {
+        return new CountAccumulator<>(arg, primitive);
+      }
+      if (arg.longSelector != null) {
+        return new LongAccumulator<>(kind, arg, primitive);
+      }
+      return new DoubleAccumulator<>(kind, arg, primitive);
+    }
+  }
+
+  /** Open-addressing hash table that assigns a dense id to each distinct
+   * key. A key consists of one or two {@code long} values and a bit mask of
+   * which values are null. */
+  static class Table {
+    private final int keyCount;
+    /** Group id plus one of the key in each slot; 0 if the slot is empty. */
+    private int[] slots;
+    private int mask;
+
+    long[] keys0;
+    long[] keys1;
+    byte[] nulls;
+    int size;
+
+    Table(int keyCount) {
+      this.keyCount = keyCount;
+      this.slots = new int[64];
+      this.mask = slots.length - 1;
+      this.keys0 = new long[32];
+      this.keys1 = keyCount > 1 ? new long[32] : new long[0];
+      this.nulls = new byte[32];
+    }
+
+    private static int hash(long k0, long k1, int nulls) {
+      long h = k0 * 0x9E3779B97F4A7C15L;
+      h = (h ^ (h >>> 32) ^ k1) * 0x9E3779B97F4A7C15L + nulls;
+      return (int) (h ^ (h >>> 32));
+    }
+
+    /** Returns the id of a key, adding it if it is not present; the id of
+     * a new key is {@code size - 1}. */
+    int add(long k0, long k1, int nullBits) {
+      int i = hash(k0, k1, nullBits) & mask;
+      for (;;) {
+        final int slot = slots[i];
+        if (slot == 0) {
+          break;
+        }
+        final int g = slot - 1;
+        if (keys0[g] == k0
+            && nulls[g] == nullBits
+            && (keyCount == 1 || keys1[g] == k1)) {
+          return g;
+        }
+        i = (i + 1) & mask;
+      }
+      final int g = size++;
+      if (g == keys0.length) {
+        keys0 = Arrays.copyOf(keys0, g * 2);
+        nulls = Arrays.copyOf(nulls, g * 2);
+        if (keyCount > 1) {
+          keys1 = Arrays.copyOf(keys1, g * 2);
+        }
+      }
+      keys0[g] = k0;
+      if (keyCount > 1) {
+        keys1[g] = k1;
+      }
+      nulls[g] = (byte) nullBits;
+      slots[i] = g + 1;
+      if (size * 2 > slots.length) {
+        rehash();
+      }
+      return g;
+    }
+
+    private void rehash() {
+      slots = new int[slots.length * 2];
+      mask = slots.length - 1;
+      for (int g = 0; g < size; g++) {
+        int i = hash(keys0[g], keyCount > 1 ? keys1[g] : 0, nulls[g]) & mask;
+        while (slots[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        slots[i] = g + 1;
+      }
+    }
+  }
+
+  /** State of an aggregate function for every group.
+   *
+   * @param <T> Row type */
+  abstract static class Accumulator<T> {
+    final Primitive primitive;
+    /** Number of rows (or non-null values) of each group. */
+    long[] counts = new long[0];
+
+    Accumulator(Primitive primitive) {
+      this.primitive = primitive;
+    }
+
+    /** Ensures that there is space for the state of a given number of
+     * groups. */
+    void ensureCapacity(int groupCount) {
+      if (groupCount > counts.length) {
+        final int capacity = Math.max(32, counts.length * 2);
+        counts = Arrays.copyOf(counts, capacity);
+        grow(capacity);
+      }
+    }
+
+    void grow(int capacity) {
+    }
+
+    abstract void add(int group, T row);
+
+    abstract @Nullable Object result(int group);
+  }
+
+  /** Accumulator for {@code COUNT(*)}.
+   *
+   * @param <T> Row type */
+  private static class CountStarAccumulator<T> extends Accumulator<T> {
+    CountStarAccumulator(Primitive primitive) {
+      super(primitive);
+    }
+
+    @Override void add(int group, T row) {
+      ++counts[group];
+    }
+
+    @Override Object result(int group) {
+      return box(primitive, counts[group]);
+    }
+  }
+
+  /** Accumulator for {@code COUNT(x)}.
+   *
+   * @param <T> Row type */
+  private static class CountAccumulator<T> extends Accumulator<T> {
+    private final Column<T> arg;
+
+    CountAccumulator(Column<T> arg, Primitive primitive) {
+      super(primitive);
+      this.arg = arg;
+    }
+
+    @Override void add(int group, T row) {
+      if (!arg.isNull(row)) {
+        ++counts[group];
+      }
+    }
+
+    @Override Object result(int group) {
+      return box(primitive, counts[group]);
+    }
+  }
+
+  /** Accumulator for {@code SUM}, {@code $SUM0}, {@code MIN} and
+   * {@code MAX} of an integral argument.
+   *
+   * @param <T> Row type */
+  private static class LongAccumulator<T> extends Accumulator<T> {
+    private final Kind kind;
+    private final Column<T> arg;
+    private long[] values = new long[0];
+
+    LongAccumulator(Kind kind, Column<T> arg, Primitive primitive) {
+      super(primitive);
+      this.kind = kind;
+      this.arg = arg;
+    }
+
+    @Override void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override void add(int group, T row) {
+      if (arg.isNull(row)) {
+        return;
+      }
+      final long v = arg.longValue(row);
+      if (counts[group]++ == 0) {
+        values[group] = v;
+        return;
+      }
+      switch (kind) {
+      case MIN:
+        values[group] = Math.min(values[group], v);
+        break;
+      case MAX:
+        values[group] = Math.max(values[group], v);
+        break;
+      default:
+        values[group] += v;
+      }
+    }
+
+    @Override @Nullable Object result(int group) {
+      if (counts[group] == 0) {
+        return kind == Kind.SUM0 ? box(primitive, 0L) : null;
+      }
+      return box(primitive, values[group]);
+    }
+  }
+
+  /** Accumulator for {@code SUM}, {@code $SUM0}, {@code MIN} and
+   * {@code MAX} of a floating-point argument.
+   *
+   * @param <T> Row type */
+  private static class DoubleAccumulator<T> extends Accumulator<T> {
+    private final Kind kind;
+    private final Column<T> arg;
+    private double[] values = new double[0];
+
+    DoubleAccumulator(Kind kind, Column<T> arg, Primitive primitive) {
+      super(primitive);
+      this.kind = kind;
+      this.arg = arg;
+    }
+
+    @Override void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override void add(int group, T row) {
+      if (arg.isNull(row)) {
+        return;
+      }
+      final double v = arg.doubleValue(row);
+      if (counts[group]++ == 0) {
+        values[group] = v;
+        return;
+      }
+      switch (kind) {
+      case MIN:
+        values[group] = Math.min(values[group], v);
+        break;
+      case MAX:
+        values[group] = Math.max(values[group], v);
+        break;
+      default:
+        values[group] += v;
+      }
+    }
+
+    @Override @Nullable Object result(int group) {
+      if (counts[group] == 0) {
+        return kind == Kind.SUM0 ? box(primitive, 0D) : null;
+      }
+      return box(primitive, values[group]);
+    }
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.BitSet;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Segment tree that computes an associative aggregate function, such as
+ * {@code MIN} or {@code MAX}, over any contiguous range of an array of values.
+ *
+ * <p>Building the tree takes time proportional to the number of values, and
+ * each query takes time proportional to the logarithm of the number of
+ * values, regardless of the width of the range. This allows a windowed
+ * aggregate whose frame moves, and which cannot remove rows from its
+ * accumulator, to be computed without rescanning the frame for every row.
+ *
+ * <p>Null values are ignored, as by a strict SQL aggregate function; the
+ * result for a range that contains only null values is null. The combining
+ * function is never called with a null argument.
+ *
+ * <p>This class stores values as objects. For values of integer and
+ * floating-point types, use {@link OfLong} and {@link OfDouble}, which store
+ * them in primitive arrays.
+ */
+public class SegmentTree {
+  /** Combining function for {@code MIN}. If values are equal, returns the
+   * first, as does {@link SqlFunctions#lesser(Comparable, Comparable)}. */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public static final BinaryOperator<Object> MIN = (v0, v1) ->
+      ((Comparable) v0).compareTo(v1) > 0 ? v1 : v0;
+
+  /** Combining function for {@code MAX}. If values are equal, returns the
+   * first, as does {@link SqlFunctions#greater(Comparable, Comparable)}. */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public static final BinaryOperator<Object> MAX = (v0, v1) ->
+      ((Comparable) v0).compareTo(v1) < 0 ? v1 : v0;
+
+  private final int size;
+  private final @Nullable Object[] nodes;
+  private final BinaryOperator<Object> combiner;
+
+  /** Creates a segment tree.
+   *
+   * @param values Values; not modified, and may be reused after the call
+   * @param combiner Associative function that combines two non-null values
+   */
+  public SegmentTree(@Nullable Object[] values,
+      BinaryOperator<Object> combiner) {
+    this.size = values.length;
+    this.combiner = combiner;
+    // Leaves are at [size, 2 * size); the parent of node k is node k / 2.
+    this.nodes = new Object[2 * size];
+    System.arraycopy(values, 0, nodes, size, size);
+    for (int k = size - 1; k > 0; k--) {
+      nodes[k] = combine(nodes[2 * k], nodes[2 * k + 1]);
+    }
+  }
+
+  private @Nullable Object combine(@Nullable Object v0, @Nullable Object v1) {
+    return v0 == null ? v1
+        : v1 == null ? v0
+        : combiner.apply(v0, v1);
+  }
+
+  /** Returns the aggregate of the values whose indexes are between
+   * {@code start} and {@code end}, inclusive; or null if the range is empty
+   * or contains only nulls. */
+  public @Nullable Object query(int start, int end) {
+    if (start < 0 || start > end) {
+      return null;
+    }
+    // Combine nodes from the left and from the right separately, so that
+    // values are combined in their original order.
+    @Nullable Object left = null;
+    @Nullable Object right = null;
+    for (int lo = start + size, hi = end + size + 1; lo < hi;
+         lo >>= 1, hi >>= 1) {
+      if ((lo & 1) == 1) {
+        left = combine(left, nodes[lo++]);
+      }
+      if ((hi & 1) == 1) {
+        right = combine(nodes[--hi], right);
+      }
+    }
+    return combine(left, right);
+  }
+
+  /** Segment tree whose values are stored in a {@code long} array.
+   *
+   * <p>Suitable for values of any integer type, and of types, such as
+   * {@code DATE} and {@code TIMESTAMP}, that are represented as integers. */
+  public static class OfLong {
+    /** Combining function for {@code MIN}. */
+    public static final LongBinaryOperator MIN = SqlFunctions::lesser;
+
+    /** Combining function for {@code MAX}. */
+    public static final LongBinaryOperator MAX = SqlFunctions::greater;
+
+    private final int size;
+    private final long[] nodes;
+    /** Whether each node has at least one non-null value below it. */
+    private final BitSet present;
+    private final LongBinaryOperator combiner;
+
+    /** Creates a segment tree of {@code long} values.
+     *
+     * @param values Values; not modified, and may be reused after the call
+     * @param nulls Indexes of values that are null
+     * @param combiner Associative function that combines two values
+     */
+    public OfLong(long[] values, BitSet nulls, LongBinaryOperator combiner) {
+      this.size = values.length;
+      this.combiner = combiner;
+      this.nodes = new long[2 * size];
+      this.present = new BitSet(2 * size);
+      System.arraycopy(values, 0, nodes, size, size);
+      present.set(size, 2 * size);
+      for (int i = nulls.nextSetBit(0); i >= 0 && i < size;
+           i = nulls.nextSetBit(i + 1)) {
+        present.clear(size + i);
+      }
+      for (int k = size - 1; k > 0; k--) {
+        final boolean p0 = present.get(2 * k);
+        final boolean p1 = present.get(2 * k + 1);
+        if (p0 || p1) {
+          present.set(k);
+          nodes[k] = !p1 ? nodes[2 * k]
+              : !p0 ? nodes[2 * k + 1]
+              : combiner.applyAsLong(nodes[2 * k], nodes[2 * k + 1]);
+        }
+      }
+    }
+
+    /** Returns the aggregate of the values whose indexes are between
+     * {@code start} and {@code end}, inclusive; or null if the range is
+     * empty or contains only nulls. */
+    public @Nullable Long query(int start, int end) {
+      if (start < 0 || start > end) {
+        return null;
+      }
+      long left = 0;
+      long right = 0;
+      boolean hasLeft = false;
+      boolean hasRight = false;
+      for (int lo = start + size, hi = end + size + 1; lo < hi;
+           lo >>= 1, hi >>= 1) {
+        if ((lo & 1) == 1) {
+          if (present.get(lo)) {
+            left = hasLeft ? combiner.applyAsLong(left, nodes[lo]) : nodes[lo];
+            hasLeft = true;
+          }
+          ++lo;
+        }
+        if ((hi & 1) == 1) {
+          --hi;
+          if (present.get(hi)) {
+            right = hasRight ? combiner.applyAsLong(nodes[hi], right)
+                : nodes[hi];
+            hasRight = true;
+          }
+        }
+      }
+      return !hasRight ? (hasLeft ? Long.valueOf(left) : null)
+          : !hasLeft ? Long.valueOf(right)
+          : Long.valueOf(combiner.applyAsLong(left, right));
+    }
+  }
+
+  /** Segment tree whose values are stored in a {@code double} array.
+   *
+   * <p>Suitable for values of type {@code REAL}, {@code FLOAT} and
+   * {@code DOUBLE}. */
+  public static class OfDouble {
+    /** Combining function for {@code MIN}. */
+    public static final DoubleBinaryOperator MIN = SqlFunctions::lesser;
+
+    /** Combining function for {@code MAX}. */
+    public static final DoubleBinaryOperator MAX = SqlFunctions::greater;
+
+    private final int size;
+    private final double[] nodes;
+    /** Whether each node has at least one non-null value below it. */
+    private final BitSet present;
+    private final DoubleBinaryOperator combiner;
+
+    /** Creates a segment tree of {@code double} values.
+     *
+     * @param values Values; not modified, and may be reused after the call
+     * @param nulls Indexes of values that are null
+     * @param combiner Associative function that combines two values
+     */
+    public OfDouble(double[] values, BitSet nulls,
+        DoubleBinaryOperator combiner) {
+      this.size = values.length;
+      this.combiner = combiner;
+      this.nodes = new double[2 * size];
+      this.present = new BitSet(2 * size);
+      System.arraycopy(values, 0, nodes, size, size);
+      present.set(size, 2 * size);
+      for (int i = nulls.nextSetBit(0); i >= 0 && i < size;
+           i = nulls.nextSetBit(i + 1)) {
+        present.clear(size + i);
+      }
+      for (int k = size - 1; k > 0; k--) {
+        final boolean p0 = present.get(2 * k);
+        final boolean p1 = present.get(2 * k + 1);
+        if (p0 || p1) {
+          present.set(k);
+          nodes[k] = !p1 ? nodes[2 * k]
+              : !p0 ? nodes[2 * k + 1]
+              : combiner.applyAsDouble(nodes[2 * k], nodes[2 * k + 1]);
+        }
+      }
+    }
+
+    /** Returns the aggregate of the values whose indexes are between
+     * {@code start} and {@code end}, inclusive; or null if the range is
+     * empty or contains only nulls. */
+    public @Nullable Double query(int start, int end) {
+      if (start < 0 || start > end) {
+        return null;
+      }
+      double left = 0;
+      double right = 0;
+      boolean hasLeft = false;
+      boolean hasRight = false;
+      for (int lo = start + size, hi = end + size + 1; lo < hi;
+           lo >>= 1, hi >>= 1) {
+        if ((lo & 1) == 1) {
+          if (present.get(lo)) {
+            left = hasLeft ? combiner.applyAsDouble(left, nodes[lo])
+                : nodes[lo];
+            hasLeft = true;
+          }
+          ++lo;
+        }
+        if ((hi & 1) == 1) {
+          --hi;
+          if (present.get(hi)) {
+            right = hasRight ? combiner.applyAsDouble(nodes[hi], right)
+                : nodes[hi];
+            hasRight = true;
+          }
+        }
+      }
+      return !hasRight ? (hasLeft ? Double.valueOf(left) : null)
+          : !hasLeft ? Double.valueOf(right)
+          : Double.valueOf(combiner.applyAsDouble(left, right));
+    }
+  }
+}
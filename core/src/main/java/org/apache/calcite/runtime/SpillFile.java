@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.util.Util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Temporary file to which operators that exceed their memory budget write
+ * rows, and from which they read them back.
+ *
+ * <p>Rows are written in a compact binary format. Arrays, and values of the
+ * primitive wrapper types and {@link String}, are written as a tag byte
+ * followed by their raw value; other values are written using Java
+ * serialization, so they must be {@link Serializable}. In practice, rows are
+ * arrays or scalars of the types that Calcite uses to represent SQL values.
+ *
+ * <p>The file is deleted when the spill file is closed.
+ */
+public class SpillFile implements AutoCloseable {
+  /** Number of rows after which the writer forgets the objects it has
+   * written; otherwise it would hold a reference to every row. */
+  private static final int RESET_INTERVAL = 1024;
+
+  private static final byte NULL = 0;
+  private static final byte ARRAY = 1;
+  private static final byte FALSE = 2;
+  private static final byte TRUE = 3;
+  private static final byte BYTE = 4;
+  private static final byte SHORT = 5;
+  private static final byte INT = 6;
+  private static final byte LONG = 7;
+  private static final byte FLOAT = 8;
+  private static final byte DOUBLE = 9;
+  private static final byte STRING = 10;
+  private static final byte OBJECT = 11;
+
+  private final Path path;
+  private @Nullable ObjectOutputStream out;
+  private int count;
+
+  private SpillFile(Path path) throws IOException {
+    this.path = path;
+    this.out =
+        new ObjectOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(path)));
+  }
+
+  /** Creates a spill file in the default temporary-file directory. */
+  public static SpillFile create() {
+    try {
+      return new SpillFile(Files.createTempFile("calcite-spill", ".tmp"));
+    } catch (IOException e) {
+      throw Util.toUnchecked(e);
+    }
+  }
+
+  /** Returns the number of rows written. */
+  public int count() {
+    return count;
+  }
+
+  /** Appends a row. */
+  public void add(@Nullable Object row) {
+    final ObjectOutputStream out = this.out;
+    if (out == null) {
+      throw new IllegalStateException("spill file is finished");
+    }
+    try {
+      write(out, row);
+      if (++count % RESET_INTERVAL == 0) {
+        out.reset();
+      }
+    } catch (IOException e) {
+      throw Util.toUnchecked(e);
+    }
+  }
+
+  private static void write(ObjectOutputStream out, @Nullable Object o)
+      throws IOException {
+    if (o == null) {
+      out.writeByte(NULL);
+    } else if (o.getClass() == Object[].class) {
+      final Object[] objects = (Object[]) o;
+      out.writeByte(ARRAY);
+      out.writeInt(objects.length);
+      for (Object object : objects) {
+        write(out, object);
+      }
+    } else if (o instanceof Boolean) {
+      out.writeByte((Boolean) o ? TRUE : FALSE);
+    } else if (o instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) o);
+    } else if (o instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) o);
+    } else if (o instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) o);
+    } else if (o instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) o);
+    } else if (o instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) o);
+    } else if (o instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) o);
+    } else if (o instanceof String) {
+      final byte[] bytes = ((String) o).getBytes(StandardCharsets.UTF_8);
+      out.writeByte(STRING);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    } else {
+      out.writeByte(OBJECT);
+      out.writeObject(o);
+    }
+  }
+
+  private static @Nullable Object read(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+    final byte tag = in.readByte();
+    switch (tag) {
+    case NULL:
+      return null;
+    case ARRAY:
+      final @Nullable Object[] objects = new Object[in.readInt()];
+      for (int i = 0; i < objects.length; i++) {
+        objects[i] = read(in);
+      }
+      return objects;
+    case FALSE:
+      return false;
+    case TRUE:
+      return true;
+    case BYTE:
+      return in.readByte();
+    case SHORT:
+      return in.readShort();
+    case INT:
+      return in.readInt();
+    case LONG:
+      return in.readLong();
+    case FLOAT:
+      return in.readFloat();
+    case DOUBLE:
+      return in.readDouble();
+    case STRING:
+      final byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      return StandardCharsets.UTF_8.decode(ByteBuffer.wrap(bytes)).toString();
+    case OBJECT:
+      return in.readObject();
+    default:
+      throw new IllegalStateException("unknown tag " + tag);
+    }
+  }
+
+  /** Finishes writing. After this method, no more rows can be added, and
+   * the rows can be read. */
+  public void finish() {
+    final ObjectOutputStream out = this.out;
+    if (out != null) {
+      this.out = null;
+      try {
+        out.close();
+      } catch (IOException e) {
+        throw Util.toUnchecked(e);
+      }
+    }
+  }
+
+  /** Returns the rows, in the order they were written. Each enumerator
+   * reads the file from the start. Calls {@link #finish()} if necessary. */
+  public <E> Enumerable<E> asEnumerable() {
+    finish();
+    return new AbstractEnumerable<E>() {
+      @Override public Enumerator<E> enumerator() {
+        return new SpillEnumerator<>(path, count);
+      }
+    };
+  }
+
+  /** Finishes writing and deletes the file. */
+  @Override public void close() {
+    try {
+      finish();
+    } finally {
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException e) {
+        // Not much we can do; the file is in a temporary directory
+        Util.discard(e);
+      }
+    }
+  }
+
+  /** Estimates the number of bytes of heap occupied by a row.
+   *
+   * <p>The estimate is approximate, but is cheap to compute and is of the
+   * right order of magnitude for the types that Calcite uses to represent
+   * SQL values. */
+  public static long estimateSize(@Nullable Object o) {
+    if (o == null) {
+      return 0;
+    } else if (o instanceof Object[]) {
+      final Object[] objects = (Object[]) o;
+      long size = 16 + 8L * objects.length;
+      for (Object object : objects) {
+        size += estimateSize(object);
+      }
+      return size;
+    } else if (o instanceof List) {
+      final List<?> list = (List<?>) o;
+      long size = 24 + 8L * list.size();
+      for (Object object : list) {
+        size += estimateSize(object);
+      }
+      return size;
+    } else if (o instanceof String) {
+      return 40 + 2L * ((String) o).length();
+    } else if (o instanceof ByteString) {
+      return 32 + ((ByteString) o).length();
+    } else if (o instanceof BigDecimal) {
+      return 64;
+    } else {
+      return 16;
+    }
+  }
+
+  /** Enumerator that reads rows from a spill file.
+   *
+   * @param <E> row type */
+  private static class SpillEnumerator<E> implements Enumerator<E> {
+    private final Path path;
+    private final int count;
+    private @Nullable ObjectInputStream in;
+    private int index = -1;
+    private @Nullable E current;
+
+    SpillEnumerator(Path path, int count) {
+      this.path = path;
+      this.count = count;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public E current() {
+      if (index < 0 || index >= count) {
+        throw new NoSuchElementException();
+      }
+      return (E) current;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public boolean moveNext() {
+      if (index + 1 >= count) {
+        index = count;
+        close();
+        return false;
+      }
+      try {
+        ObjectInputStream in = this.in;
+        if (in == null) {
+          in = new ObjectInputStream(
+              new BufferedInputStream(Files.newInputStream(path)));
+          this.in = in;
+        }
+        current = (E) read(in);
+        ++index;
+        return true;
+      } catch (IOException | ClassNotFoundException e) {
+        throw Util.toUnchecked(e);
+      }
+    }
+
+    @Override public void reset() {
+      close();
+      index = -1;
+      current = null;
+    }
+
+    @Override public void close() {
+      final ObjectInputStream in = this.in;
+      if (in != null) {
+        this.in = null;
+        try {
+          in.close();
+        } catch (IOException e) {
+          throw Util.toUnchecked(e);
+        }
+      }
+    }
+  }
+}
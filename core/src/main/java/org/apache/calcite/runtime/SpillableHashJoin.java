@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash join whose build side may exceed the memory available to it.
+ *
+ * <p>The join reads the inner (build) input into memory. If the estimated
+ * size of the inner rows stays within a budget, it joins in memory, exactly
+ * as {@link EnumerableDefaults#hashJoin}. Otherwise it performs a grace hash
+ * join: it partitions both inputs by the hash of their key into
+ * {@link SpillFile}s and joins each pair of partitions in turn, partitioning
+ * again if a partition is still too large.
+ *
+ * <p>All rows with a given key are in the same partition, so the result is
+ * the same as that of an in-memory join, except that the order of the rows
+ * is not preserved. Rows of both inputs must be {@link java.io.Serializable}.
+ *
+ * <p>Each time the join partitions its inputs, it calls
+ * {@link Hook#HASH_JOIN_SPILL} with a {@link Spill}.
+ */
+public class SpillableHashJoin {
+  /** Number of partitions each time an input is partitioned. */
+  static final int PARTITION_COUNT = 16;
+
+  /** Maximum number of times a partition is partitioned again. A partition
+   * that is still too large (because a single key has too many rows) is
+   * joined in memory. */
+  static final int MAX_DEPTH = 3;
+
+  private SpillableHashJoin() {}
+
+  /**
+   * Correlates the elements of two sequences based on matching keys,
+   * spilling to disk if the inner sequence does not fit in a memory budget.
+   *
+   * <p>The parameters are as
+   * {@link EnumerableDefaults#hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2)},
+   * plus:
+   *
+   * @param memoryBudget Estimated number of bytes of inner rows to hold in
+   *                     memory; if zero or negative, the join never spills
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+      Enumerable<TSource> outer, Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      @Nullable EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+      boolean generateNullsOnRight,
+      @Nullable Predicate2<TSource, TInner> predicate, long memoryBudget) {
+    final Join<TSource, TInner, TKey, TResult> join =
+        new Join<>(outerKeySelector, innerKeySelector, resultSelector, comparer,
+            generateNullsOnLeft, generateNullsOnRight, predicate, memoryBudget);
+    return memoryBudget <= 0
+        ? join.inMemory(outer, inner)
+        : join.join(outer, inner, 0);
+  }
+
+  /** Describes an occasion on which a join partitioned its inputs to disk.
+   * Passed to {@link Hook#HASH_JOIN_SPILL}. */
+  public static class Spill {
+    /** Number of times the rows have already been partitioned; 0 if the
+     * inputs of the join are being partitioned. */
+    public final int depth;
+    public final int partitionCount;
+    public final long innerRowCount;
+    public final long outerRowCount;
+
+    Spill(int depth, int partitionCount, long innerRowCount,
+        long outerRowCount) {
+      this.depth = depth;
+      this.partitionCount = partitionCount;
+      this.innerRowCount = innerRowCount;
+      this.outerRowCount = outerRowCount;
+    }
+
+    @Override public String toString() {
+      return "Spill(depth: " + depth
+          + ", partitions: " + partitionCount
+          + ", inner rows: " + innerRowCount
+          + ", outer rows: " + outerRowCount + ")";
+    }
+  }
+
+  /** Parameters of a join.
+   *
+   * @param <TSource> outer row type
+   * @param <TInner> inner row type
+   * @param <TKey> key type
+   * @param <TResult> result row type */
+  private static class Join<TSource, TInner, TKey, TResult> {
+    final Function1<TSource, TKey> outerKeySelector;
+    final Function1<TInner, TKey> innerKeySelector;
+    final Function2<TSource, TInner, TResult> resultSelector;
+    final @Nullable EqualityComparer<TKey> comparer;
+    final boolean generateNullsOnLeft;
+    final boolean generateNullsOnRight;
+    final @Nullable Predicate2<TSource, TInner> predicate;
+    final long memoryBudget;
+
+    Join(Function1<TSource, TKey> outerKeySelector,
+        Function1<TInner, TKey> innerKeySelector,
+        Function2<TSource, TInner, TResult> resultSelector,
+        @Nullable EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+        boolean generateNullsOnRight,
+        @Nullable Predicate2<TSource, TInner> predicate, long memoryBudget) {
+      this.outerKeySelector = outerKeySelector;
+      this.innerKeySelector = innerKeySelector;
+      this.resultSelector = resultSelector;
+      this.comparer = comparer;
+      this.generateNullsOnLeft = generateNullsOnLeft;
+      this.generateNullsOnRight = generateNullsOnRight;
+      this.predicate = predicate;
+      this.memoryBudget = memoryBudget;
+    }
+
+    Enumerable<TResult> inMemory(Enumerable<TSource> outer,
+        Enumerable<TInner> inner) {
+      return EnumerableDefaults.hashJoin(outer, inner, outerKeySelector,
+          innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+          generateNullsOnRight, predicate);
+    }
+
+    /** Returns the partition of a key. The hash is mixed with the depth,
+     * so that rows that were in the same partition at one depth are spread
+     * over several partitions at the next. */
+    int partition(@Nullable TKey key, int depth) {
+      if (key == null) {
+        return 0;
+      }
+      int h = comparer == null ? key.hashCode() : comparer.hashCode(key);
+      h = (h ^ (depth * 0x9E3779B9)) * 0x85EBCA6B;
+      h ^= h >>> 16;
+      return Math.floorMod(h, PARTITION_COUNT);
+    }
+
+    Enumerable<TResult> join(Enumerable<TSource> outer,
+        Enumerable<TInner> inner, int depth) {
+      return new AbstractEnumerable<TResult>() {
+        @Override public Enumerator<TResult> enumerator() {
+          final List<TInner> buffer = new ArrayList<>();
+          final Enumerator<TInner> inners = inner.enumerator();
+          long size = 0;
+          boolean spill = false;
+          while (inners.moveNext()) {
+            final TInner row = inners.current();
+            buffer.add(row);
+            size += SpillFile.estimateSize(row);
+            if (size > memoryBudget && depth < MAX_DEPTH) {
+              spill = true;
+              break;
+            }
+          }
+          if (!spill) {
+            inners.close();
+            return inMemory(outer, Linq4j.asEnumerable(buffer)).enumerator();
+          }
+          return new PartitionEnumerator(
+              partition(buffer, inners, outer, depth), depth);
+        }
+      };
+    }
+
+    /** Partitions both inputs; the inner input has been partly read into
+     * {@code buffer}. Returns a list of pairs of (outer, inner) spill
+     * files. */
+    private List<SpillFile[]> partition(List<TInner> buffer,
+        Enumerator<TInner> inners, Enumerable<TSource> outer, int depth) {
+      final List<SpillFile[]> partitions = new ArrayList<>();
+      boolean success = false;
+      try {
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+          partitions.add(new SpillFile[] {SpillFile.create(), SpillFile.create()});
+        }
+        long innerRowCount = 0;
+        for (TInner row : buffer) {
+          partitions.get(partition(innerKeySelector.apply(row), depth))[1]
+              .add(row);
+          ++innerRowCount;
+        }
+        buffer.clear();
+        try (Enumerator<TInner> e = inners) {
+          while (e.moveNext()) {
+            final TInner row = e.current();
+            partitions.get(partition(innerKeySelector.apply(row), depth))[1]
+                .add(row);
+            ++innerRowCount;
+          }
+        }
+        long outerRowCount = 0;
+        try (Enumerator<TSource> e = outer.enumerator()) {
+          while (e.moveNext()) {
+            final TSource row = e.current();
+            final int p =
+                row == null ? 0 : partition(outerKeySelector.apply(row), depth);
+            partitions.get(p)[0].add(row);
+            ++outerRowCount;
+          }
+        }
+        for (SpillFile[] files : partitions) {
+          files[0].finish();
+          files[1].finish();
+        }
+        Hook.HASH_JOIN_SPILL.run(
+            new Spill(depth, PARTITION_COUNT, innerRowCount, outerRowCount));
+        success = true;
+        return partitions;
+      } finally {
+        if (!success) {
+          close(partitions);
+        }
+      }
+    }
+
+    static void close(List<SpillFile[]> partitions) {
+      for (SpillFile[] files : partitions) {
+        files[0].close();
+        files[1].close();
+      }
+    }
+
+    /** Enumerator that joins each pair of partitions in turn.
+     * Each pair is joined recursively, so if the inner partition is still
+     * too large, it is partitioned again.
+     *
+     * <p>The files of the partitions are deleted when the enumerator is
+     * closed, not when they have been joined, so that {@link #reset()} can
+     * join them again from the start. */
+    private class PartitionEnumerator implements Enumerator<TResult> {
+      final List<SpillFile[]> partitions;
+      final int depth;
+      int i = -1;
+      Enumerator<TResult> current = Linq4j.emptyEnumerator();
+
+      PartitionEnumerator(List<SpillFile[]> partitions, int depth) {
+        this.partitions = partitions;
+        this.depth = depth;
+      }
+
+      @Override public TResult current() {
+        return current.current();
+      }
+
+      @Override public boolean moveNext() {
+        for (;;) {
+          if (current.moveNext()) {
+            return true;
+          }
+          current.close();
+          if (i + 1 >= partitions.size()) {
+            i = partitions.size();
+            current = Linq4j.emptyEnumerator();
+            return false;
+          }
+          ++i;
+          final SpillFile[] files = partitions.get(i);
+          if (files[0].count() == 0 && files[1].count() == 0) {
+            continue;
+          }
+          current =
+              join(files[0].<TSource>asEnumerable(),
+                  files[1].<TInner>asEnumerable(), depth + 1).enumerator();
+        }
+      }
+
+      @Override public void reset() {
+        current.close();
+        current = Linq4j.emptyEnumerator();
+        i = -1;
+      }
+
+      @Override public void close() {
+        current.close();
+        Join.close(partitions);
+      }
+    }
+  }
+}
@@ -236,7 +236,7 @@ public static String regexpReplace(String s, String regex, String replacement,
     }
 
     final int flags = makeRegexpFlags(matchType);
-    final Pattern pattern = Pattern.compile(regex, flags);
+    final Pattern pattern = StringMatcher.regex(regex, flags);
 
     return Unsafe.regexpReplace(s, pattern, replacement, pos, occurrence);
   }
@@ -610,48 +610,41 @@ public static ByteString overlay(ByteString s, ByteString r, int start,
 
   /** SQL {@code LIKE} function. */
   public static boolean like(String s, String pattern) {
-    final String regex = Like.sqlToRegexLike(pattern, null);
-    return Pattern.matches(regex, s);
+    return StringMatcher.like(pattern).matches(s);
   }
 
   /** SQL {@code LIKE} function with escape. */
   public static boolean like(String s, String pattern, String escape) {
-    final String regex = Like.sqlToRegexLike(pattern, escape);
-    return Pattern.matches(regex, s);
+    return StringMatcher.like(pattern, escape).matches(s);
   }
 
   /** SQL {@code ILIKE} function. */
   public static boolean ilike(String s, String pattern) {
-    final String regex = Like.sqlToRegexLike(pattern, null);
-    return Pattern.compile(regex, Pattern.CASE_INSENSITIVE).matcher(s).matches();
+    return StringMatcher.ilike(pattern).matches(s);
   }
 
   /** SQL {@code ILIKE} function with escape. */
   public static boolean ilike(String s, String pattern, String escape) {
-    final String regex = Like.sqlToRegexLike(pattern, escape);
-    return Pattern.compile(regex, Pattern.CASE_INSENSITIVE).matcher(s).matches();
+    return StringMatcher.ilike(pattern, escape).matches(s);
   }
 
   /** SQL {@code RLIKE} function. */
   public static boolean rlike(String s, String pattern) {
-    return Pattern.compile(pattern).matcher(s).find();
+    return StringMatcher.rlike(pattern).matches(s);
   }
 
   /** SQL {@code SIMILAR} function. */
   public static boolean similar(String s, String pattern) {
-    final String regex = Like.sqlToRegexSimilar(pattern, null);
-    return Pattern.matches(regex, s);
+    return StringMatcher.similar(pattern).matches(s);
   }
 
   /** SQL {@code SIMILAR} function with escape. */
   public static boolean similar(String s, String pattern, String escape) {
-    final String regex = Like.sqlToRegexSimilar(pattern, escape);
-    return Pattern.matches(regex, s);
+    return StringMatcher.similar(pattern, escape).matches(s);
   }
 
   public static boolean posixRegex(String s, String regex, boolean caseSensitive) {
-    final Pattern pattern = Like.posixRegexToPattern(regex, caseSensitive);
-    return pattern.matcher(s).find();
+    return StringMatcher.posixRegex(regex, caseSensitive).matches(s);
   }
 
   // =
@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.config.CalciteSystemProperty;
+import org.apache.calcite.linq4j.function.Deterministic;
+import org.apache.calcite.util.Util;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled form of a SQL {@code LIKE}, {@code ILIKE} or {@code SIMILAR TO}
+ * pattern, or of a regular expression.
+ *
+ * <p>Matchers are immutable and thread-safe. The factory methods return
+ * matchers from a bounded, least-recently-used cache (see
+ * {@link CalciteSystemProperty#PATTERN_CACHE_MAXIMUM_SIZE}), so a pattern that
+ * varies from row to row is compiled once per distinct value. Because the
+ * class is {@link Deterministic}, generated code that calls a factory method
+ * with a constant pattern stores the matcher in a static field.
+ *
+ * <p>A {@code LIKE} pattern whose only wildcard is {@code %} does not use a
+ * regular expression. For example, {@code 'abc'} is evaluated using
+ * {@link String#equals}, {@code 'abc%'} using {@link String#startsWith},
+ * {@code '%abc'} using {@link String#endsWith}, and {@code '%abc%'} using
+ * {@link String#indexOf}.
+ */
+@Deterministic
+public abstract class StringMatcher {
+  private static final LoadingCache<Key, StringMatcher> CACHE =
+      maxSize(CacheBuilder.newBuilder(),
+          CalciteSystemProperty.PATTERN_CACHE_MAXIMUM_SIZE.value())
+          .build(CacheLoader.from(Key::compile));
+
+  StringMatcher() {
+  }
+
+  /** Returns whether a string matches this pattern. */
+  public abstract boolean matches(String s);
+
+  /** Returns a matcher for a SQL {@code LIKE} pattern.
+   *
+   * @throws IllegalArgumentException if the pattern is not valid */
+  public static StringMatcher like(String pattern) {
+    return get(Kind.LIKE, pattern, null, 0);
+  }
+
+  /** Returns a matcher for a SQL {@code LIKE} pattern with escape.
+   *
+   * @throws IllegalArgumentException if the pattern or escape is not valid */
+  public static StringMatcher like(String pattern, String escape) {
+    return get(Kind.LIKE, pattern, escape, 0);
+  }
+
+  /** Returns a matcher for a SQL {@code ILIKE} pattern.
+   *
+   * @throws IllegalArgumentException if the pattern is not valid */
+  public static StringMatcher ilike(String pattern) {
+    return get(Kind.ILIKE, pattern, null, 0);
+  }
+
+  /** Returns a matcher for a SQL {@code ILIKE} pattern with escape.
+   *
+   * @throws IllegalArgumentException if the pattern or escape is not valid */
+  public static StringMatcher ilike(String pattern, String escape) {
+    return get(Kind.ILIKE, pattern, escape, 0);
+  }
+
+  /** Returns a matcher for a SQL {@code SIMILAR TO} pattern.
+   *
+   * @throws IllegalArgumentException if the pattern is not valid */
+  public static StringMatcher similar(String pattern) {
+    return get(Kind.SIMILAR, pattern, null, 0);
+  }
+
+  /** Returns a matcher for a SQL {@code SIMILAR TO} pattern with escape.
+   *
+   * @throws IllegalArgumentException if the pattern or escape is not valid */
+  public static StringMatcher similar(String pattern, String escape) {
+    return get(Kind.SIMILAR, pattern, escape, 0);
+  }
+
+  /** Returns a matcher for an {@code RLIKE} regular expression; the string
+   * matches if the expression matches any part of it.
+   *
+   * @throws IllegalArgumentException if the expression is not valid */
+  public static StringMatcher rlike(String regex) {
+    return get(Kind.REGEX, regex, null, 0);
+  }
+
+  /** Returns a matcher for a POSIX regular expression ({@code ~} and
+   * {@code ~*} operators).
+   *
+   * @throws IllegalArgumentException if the expression is not valid */
+  public static StringMatcher posixRegex(String regex, boolean caseSensitive) {
+    return get(Kind.POSIX_REGEX, regex, null, caseSensitive ? 1 : 0);
+  }
+
+  /** Returns a compiled regular expression. */
+  public static Pattern regex(String regex, int flags) {
+    return ((RegexMatcher) get(Kind.REGEX, regex, null, flags)).pattern;
+  }
+
+  private static StringMatcher get(Kind kind, String pattern,
+      @Nullable String escape, int flags) {
+    try {
+      return CACHE.getUnchecked(new Key(kind, pattern, escape, flags));
+    } catch (UncheckedExecutionException e) {
+      throw Util.throwAsRuntime(Util.causeOrSelf(e));
+    }
+  }
+
+  private static <K, V> CacheBuilder<K, V> maxSize(CacheBuilder<K, V> builder,
+      int size) {
+    if (size >= 0) {
+      builder.maximumSize(size);
+    }
+    return builder;
+  }
+
+  /** Compiles a {@code LIKE} pattern. Returns a matcher that does not use
+   * a regular expression if the pattern contains no {@code _} wildcard. */
+  static StringMatcher compileLike(String pattern, @Nullable String escape) {
+    // Validates the pattern and escape, and throws the same errors as before
+    final String regex = Like.sqlToRegexLike(pattern, escape);
+    final boolean hasEscape = escape != null;
+    final char escapeChar = escape == null ? 0 : escape.charAt(0);
+    final List<String> segments = new ArrayList<>();
+    final StringBuilder b = new StringBuilder();
+    for (int i = 0; i < pattern.length(); i++) {
+      final char c = pattern.charAt(i);
+      if (hasEscape && c == escapeChar) {
+        b.append(pattern.charAt(++i));
+      } else if (c == '_') {
+        return new RegexMatcher(Pattern.compile(regex), true);
+      } else if (c == '%') {
+        segments.add(b.toString());
+        b.setLength(0);
+      } else {
+        b.append(c);
+      }
+    }
+    segments.add(b.toString());
+    final int n = segments.size();
+    if (n == 1) {
+      return new ExactMatcher(segments.get(0));
+    }
+    final String prefix = segments.get(0);
+    final String suffix = segments.get(n - 1);
+    final List<String> middle = new ArrayList<>();
+    for (String segment : segments.subList(1, n - 1)) {
+      if (!segment.isEmpty()) {
+        middle.add(segment);
+      }
+    }
+    if (middle.isEmpty()) {
+      if (suffix.isEmpty()) {
+        return new PrefixMatcher(prefix);
+      }
+      if (prefix.isEmpty()) {
+        return new SuffixMatcher(suffix);
+      }
+    } else if (middle.size() == 1 && prefix.isEmpty() && suffix.isEmpty()) {
+      return new ContainsMatcher(middle.get(0));
+    }
+    return new SegmentMatcher(prefix, middle.toArray(new String[0]), suffix);
+  }
+
+  /** Kind of pattern. */
+  private enum Kind {
+    LIKE, ILIKE, SIMILAR, REGEX, POSIX_REGEX
+  }
+
+  /** Cache key. */
+  private static class Key {
+    final Kind kind;
+    final String pattern;
+    final @Nullable String escape;
+    final int flags;
+
+    Key(Kind kind, String pattern, @Nullable String escape, int flags) {
+      this.kind = kind;
+      this.pattern = pattern;
+      this.escape = escape;
+      this.flags = flags;
+    }
+
+    @Override public int hashCode() {
+      return (kind.hashCode() * 31 + pattern.hashCode()) * 31
+          + Objects.hashCode(escape) + flags;
+    }
+
+    @Override public boolean equals(@Nullable Object obj) {
+      return obj == this
+          || obj instanceof Key
+          && kind == ((Key) obj).kind
+          && pattern.equals(((Key) obj).pattern)
+          && Objects.equals(escape, ((Key) obj).escape)
+          && flags == ((Key) obj).flags;
+    }
+
+    StringMatcher compile() {
+      switch (kind) {
+      case LIKE:
+        return compileLike(pattern, escape);
+      case ILIKE:
+        return new RegexMatcher(
+            Pattern.compile(Like.sqlToRegexLike(pattern, escape),
+                Pattern.CASE_INSENSITIVE), true);
+      case SIMILAR:
+        return new RegexMatcher(
+            Pattern.compile(Like.sqlToRegexSimilar(pattern, escape)), true);
+      case POSIX_REGEX:
+        return new RegexMatcher(Like.posixRegexToPattern(pattern, flags != 0),
+            false);
+      case REGEX:
+        return new RegexMatcher(Pattern.compile(pattern, flags), false);
+      default:
+        throw new AssertionError(kind);
+      }
+    }
+  }
+
+  /** Matcher that uses a regular expression. */
+  private static class RegexMatcher extends StringMatcher {
+    final Pattern pattern;
+    /** Whether the whole string must match; otherwise any substring. */
+    final boolean whole;
+
+    RegexMatcher(Pattern pattern, boolean whole) {
+      this.pattern = pattern;
+      this.whole = whole;
+    }
+
+    @Override public boolean matches(String s) {
+      return whole
+          ? pattern.matcher(s).matches()
+          : pattern.matcher(s).find();
+    }
+  }
+
+  /** Matcher for a {@code LIKE} pattern without wildcards, such as
+   * {@code 'abc'}. */
+  private static class ExactMatcher extends StringMatcher {
+    final String literal;
+
+    ExactMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    @Override public boolean matches(String s) {
+      return s.equals(literal);
+    }
+  }
+
+  /** Matcher for a {@code LIKE} pattern such as {@code 'abc%'}. */
+  private static class PrefixMatcher extends StringMatcher {
+    final String prefix;
+
+    PrefixMatcher(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override public boolean matches(String s) {
+      return s.startsWith(prefix);
+    }
+  }
+
+  /** Matcher for a {@code LIKE} pattern such as {@code '%abc'}. */
+  private static class SuffixMatcher extends StringMatcher {
+    final String suffix;
+
+    SuffixMatcher(String suffix) {
+      this.suffix = suffix;
+    }
+
+    @Override public boolean matches(String s) {
+      return s.endsWith(suffix);
+    }
+  }
+
+  /** Matcher for a {@code LIKE} pattern such as {@code '%abc%'}. */
+  private static class ContainsMatcher extends StringMatcher {
+    final String literal;
+
+    ContainsMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    @Override public boolean matches(String s) {
+      return s.contains(literal);
+    }
+  }
+
+  /** Matcher for a {@code LIKE} pattern consisting of literals separated by
+   * {@code %}, such as {@code 'a%b%c'}.
+   *
+   * <p>Because {@code %} matches any sequence of characters, it is sufficient
+   * to find each middle literal at its earliest position after the previous
+   * one. */
+  private static class SegmentMatcher extends StringMatcher {
+    final String prefix;
+    final String[] middle;
+    final String suffix;
+
+    SegmentMatcher(String prefix, String[] middle, String suffix) {
+      this.prefix = prefix;
+      this.middle = middle;
+      this.suffix = suffix;
+    }
+
+    @Override public boolean matches(String s) {
+      final int end = s.length() - suffix.length();
+      if (end < prefix.length()
+          || !s.startsWith(prefix)
+          || !s.endsWith(suffix)) {
+        return false;
+      }
+      int i = prefix.length();
+      for (String literal : middle) {
+        final int j = s.indexOf(literal, i);
+        if (j < 0 || j + literal.length() > end) {
+          return false;
+        }
+        i = j + literal.length();
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableList;
+import com.yahoo.sketches.hll.HllSketch;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Statistics about the values in one column of a table.
+ *
+ * <p>Holds the fraction of null values, the number of distinct values,
+ * the most common values and their frequencies, and an equi-depth histogram
+ * of the other non-null values. The histogram is a list of bounds; each pair
+ * of adjacent bounds delimits a bucket that holds the same fraction of
+ * rows.
+ *
+ * <p>Instances are usually created by a {@link Collector}, for example via
+ * {@link Statistics#analyze(ScannableTable, org.apache.calcite.DataContext, int)},
+ * and are returned by {@link Statistic#getColumnStatistics(int)}. They can be
+ * persisted and restored using {@link #toMap()} and {@link #fromMap(Map)}.
+ */
+public class ColumnStatistics {
+  /** Fraction of rows in which the column is null. */
+  public final double nullFraction;
+  /** Estimated number of distinct non-null values. */
+  public final double distinctCount;
+  /** Most common values, in ascending order. */
+  public final List<Comparable> mostCommonValues;
+  /** Fraction of rows that have each of the most common values. */
+  public final List<Double> mostCommonFrequencies;
+  /** Bounds of the equi-depth histogram, in ascending order; empty if there
+   * are no values other than the most common values. */
+  public final List<Comparable> histogram;
+
+  /** Creates a ColumnStatistics. */
+  public ColumnStatistics(double nullFraction, double distinctCount,
+      List<Comparable> mostCommonValues, List<Double> mostCommonFrequencies,
+      List<Comparable> histogram) {
+    checkArgument(nullFraction >= 0d && nullFraction <= 1d,
+        "nullFraction out of range: %s", nullFraction);
+    checkArgument(mostCommonValues.size() == mostCommonFrequencies.size(),
+        "values and frequencies differ in length");
+    checkArgument(histogram.size() != 1,
+        "histogram must have zero or at least two bounds");
+    this.nullFraction = nullFraction;
+    this.distinctCount = distinctCount;
+    this.mostCommonValues = ImmutableList.copyOf(mostCommonValues);
+    this.mostCommonFrequencies = ImmutableList.copyOf(mostCommonFrequencies);
+    this.histogram = ImmutableList.copyOf(histogram);
+  }
+
+  @Override public String toString() {
+    return toMap().toString();
+  }
+
+  /** Returns the fraction of rows whose value is described by the histogram,
+   * that is, is neither null nor one of the most common values. */
+  public double histogramFraction() {
+    double f = 1d - nullFraction;
+    for (Double frequency : mostCommonFrequencies) {
+      f -= frequency;
+    }
+    return Math.max(f, 0d);
+  }
+
+  /** Returns whether the values of this column can be compared with a given
+   * value. Numeric values are comparable with each other; other values are
+   * comparable with values of the same class. */
+  public boolean isComparable(Comparable value) {
+    final Comparable sample = !mostCommonValues.isEmpty()
+        ? mostCommonValues.get(0)
+        : !histogram.isEmpty() ? histogram.get(0)
+        : null;
+    return sample == null
+        || sample instanceof Number && value instanceof Number
+        || sample.getClass() == value.getClass();
+  }
+
+  /** Returns the estimated fraction of rows in which the column equals a
+   * given value. */
+  public double selectivityEquals(Comparable value) {
+    for (int i = 0; i < mostCommonValues.size(); i++) {
+      if (compare(mostCommonValues.get(i), value) == 0) {
+        return mostCommonFrequencies.get(i);
+      }
+    }
+    if (!histogram.isEmpty()
+        && (compare(value, histogram.get(0)) < 0
+            || compare(value, Util.last(histogram)) > 0)) {
+      return 0d;
+    }
+    final double otherCount =
+        Math.max(distinctCount - mostCommonValues.size(), 1d);
+    return histogramFraction() / otherCount;
+  }
+
+  /** Returns the estimated fraction of rows in which the column is less than
+   * (or, if {@code inclusive}, less than or equal to) a given value. */
+  public double selectivityLessThan(Comparable value, boolean inclusive) {
+    double f = 0d;
+    for (int i = 0; i < mostCommonValues.size(); i++) {
+      final int c = compare(mostCommonValues.get(i), value);
+      if (c < 0 || inclusive && c == 0) {
+        f += mostCommonFrequencies.get(i);
+      }
+    }
+    if (!histogram.isEmpty()) {
+      f += histogramFraction() * histogramPosition(value);
+    }
+    return Math.min(f, 1d - nullFraction);
+  }
+
+  /** Returns the estimated fraction of rows in which the column is greater
+   * than (or, if {@code inclusive}, greater than or equal to) a given
+   * value. */
+  public double selectivityGreaterThan(Comparable value, boolean inclusive) {
+    return Math.max(0d,
+        1d - nullFraction - selectivityLessThan(value, !inclusive));
+  }
+
+  /** Returns the fraction of histogram values that are less than a given
+   * value, interpolating linearly within a bucket if the values are
+   * numeric. */
+  private double histogramPosition(Comparable value) {
+    final int last = histogram.size() - 1;
+    if (compare(value, histogram.get(0)) <= 0) {
+      return 0d;
+    }
+    if (compare(value, histogram.get(last)) >= 0) {
+      return 1d;
+    }
+    // Find the bucket [lo, hi) that contains the value.
+    int lo = 0;
+    int hi = last;
+    while (hi - lo > 1) {
+      final int mid = (lo + hi) >>> 1;
+      if (compare(histogram.get(mid), value) <= 0) {
+        lo = mid;
+      } else {
+        hi = mid;
+      }
+    }
+    final Comparable lower = histogram.get(lo);
+    final Comparable upper = histogram.get(hi);
+    double fraction = 0.5d;
+    if (lower instanceof Number
+        && upper instanceof Number
+        && value instanceof Number) {
+      final double l = ((Number) lower).doubleValue();
+      final double u = ((Number) upper).doubleValue();
+      if (u > l) {
+        fraction = (((Number) value).doubleValue() - l) / (u - l);
+      }
+    }
+    return (lo + fraction) / last;
+  }
+
+  /** Compares two values, comparing numbers of different classes by their
+   * numeric value. */
+  @SuppressWarnings("unchecked")
+  static int compare(Comparable v0, Comparable v1) {
+    if (v0 instanceof Number
+        && v1 instanceof Number
+        && v0.getClass() != v1.getClass()) {
+      return Double.compare(((Number) v0).doubleValue(),
+          ((Number) v1).doubleValue());
+    }
+    return v0.compareTo(v1);
+  }
+
+  /** Converts these statistics to a map of lists and primitive values,
+   * suitable for serializing as JSON. */
+  public Map<String, Object> toMap() {
+    final Map<String, Object> map = new LinkedHashMap<>();
+    map.put("nullFraction", nullFraction);
+    map.put("distinctCount", distinctCount);
+    map.put("mostCommonValues", mostCommonValues);
+    map.put("mostCommonFrequencies", mostCommonFrequencies);
+    map.put("histogram", histogram);
+    return map;
+  }
+
+  /** Creates statistics from a map created by {@link #toMap()}. */
+  @SuppressWarnings("unchecked")
+  public static ColumnStatistics fromMap(Map<String, Object> map) {
+    final List<Double> frequencies = new ArrayList<>();
+    for (Object o : (List<Object>) get(map, "mostCommonFrequencies")) {
+      frequencies.add(((Number) o).doubleValue());
+    }
+    return new ColumnStatistics(
+        ((Number) get(map, "nullFraction")).doubleValue(),
+        ((Number) get(map, "distinctCount")).doubleValue(),
+        (List<Comparable>) get(map, "mostCommonValues"),
+        frequencies,
+        (List<Comparable>) get(map, "histogram"));
+  }
+
+  private static Object get(Map<String, Object> map, String key) {
+    return requireNonNull(map.get(key), () -> "missing " + key);
+  }
+
+  /** Accumulates the values of a column and computes its statistics.
+   *
+   * <p>Distinct values are counted exactly until there are more than
+   * {@link #SKETCH_THRESHOLD} of them, then estimated using a HyperLogLog
+   * sketch. The most common values and the histogram are computed from a
+   * uniform random sample of the non-null values (reservoir sampling), so
+   * memory use is bounded regardless of the size of the table. */
+  public static class Collector {
+    /** Number of distinct values above which the collector switches from an
+     * exact count to a HyperLogLog sketch. */
+    public static final int SKETCH_THRESHOLD = 10_000;
+
+    private final int sampleSize;
+    private final Random random;
+    private final List<Comparable> sample = new ArrayList<>();
+    private @Nullable Set<Object> values = new HashSet<>();
+    private @Nullable HllSketch sketch;
+    private long rowCount;
+    private long nullCount;
+    private long sampledCount;
+    private boolean comparable = true;
+
+    /** Creates a Collector that keeps a sample of at most
+     * {@code sampleSize} values. */
+    public Collector(int sampleSize, Random random) {
+      checkArgument(sampleSize > 0, "sampleSize must be positive");
+      this.sampleSize = sampleSize;
+      this.random = requireNonNull(random, "random");
+    }
+
+    /** Adds a value. */
+    public void add(@Nullable Object value) {
+      ++rowCount;
+      if (value == null) {
+        ++nullCount;
+        return;
+      }
+      count(value);
+      if (!(value instanceof Comparable)) {
+        comparable = false;
+        return;
+      }
+      final Comparable c = (Comparable) value;
+      if (!sample.isEmpty()
+          && !(sample.get(0) instanceof Number && c instanceof Number)
+          && sample.get(0).getClass() != c.getClass()) {
+        comparable = false;
+        return;
+      }
+      ++sampledCount;
+      if (sample.size() < sampleSize) {
+        sample.add(c);
+      } else {
+        final long i = (long) (random.nextDouble() * sampledCount);
+        if (i < sampleSize) {
+          sample.set((int) i, c);
+        }
+      }
+    }
+
+    private void count(Object value) {
+      final Set<Object> values = this.values;
+      if (values != null) {
+        if (values.add(value) && values.size() > SKETCH_THRESHOLD) {
+          // Too many values. Switch to a sketch.
+          final HllSketch sketch = HllSketch.builder().build();
+          for (Object v : values) {
+            update(sketch, v);
+          }
+          this.sketch = sketch;
+          this.values = null;
+        }
+      } else {
+        update(requireNonNull(sketch, "sketch"), value);
+      }
+    }
+
+    private static void update(HllSketch sketch, Object value) {
+      if (value instanceof String) {
+        sketch.update((String) value);
+      } else if (value instanceof Double) {
+        sketch.update((Double) value);
+      } else if (value instanceof Float) {
+        sketch.update((Float) value);
+      } else if (value instanceof Long) {
+        sketch.update((Long) value);
+      } else if (value instanceof Number) {
+        sketch.update(((Number) value).longValue());
+      } else {
+        sketch.update(value.toString());
+      }
+    }
+
+    /** Returns the number of distinct non-null values seen so far; exact
+     * below {@link #SKETCH_THRESHOLD}, otherwise estimated. */
+    public double distinctCount() {
+      final Set<Object> values = this.values;
+      if (values != null) {
+        return values.size();
+      }
+      return requireNonNull(sketch, "sketch").getEstimate();
+    }
+
+    /** Computes statistics from the values added so far.
+     *
+     * @param mostCommonCount Maximum number of most common values
+     * @param bucketCount Maximum number of histogram buckets
+     */
+    public ColumnStatistics finish(int mostCommonCount, int bucketCount) {
+      final double distinctCount = distinctCount();
+      final double nullFraction =
+          rowCount == 0 ? 0d : (double) nullCount / rowCount;
+      if (!comparable || sample.isEmpty()) {
+        return new ColumnStatistics(nullFraction, distinctCount,
+            ImmutableList.of(), ImmutableList.of(), ImmutableList.of());
+      }
+      final List<Comparable> sorted = new ArrayList<>(sample);
+      sorted.sort(ColumnStatistics::compare);
+
+      // Count the occurrences of each value in the sample.
+      final List<Comparable> distinct = new ArrayList<>();
+      final List<Integer> counts = new ArrayList<>();
+      for (Comparable c : sorted) {
+        if (!distinct.isEmpty() && compare(Util.last(distinct), c) == 0) {
+          counts.set(counts.size() - 1, Util.last(counts) + 1);
+        } else {
+          distinct.add(c);
+          counts.add(1);
+        }
+      }
+
+      // If the sample contains every value of the column, and there are few
+      // enough of them, all of them are "most common". Otherwise only values
+      // that occur more often than average qualify.
+      final List<Integer> candidates = new ArrayList<>();
+      final boolean complete = distinct.size() >= distinctCount;
+      for (int i = 0; i < distinct.size(); i++) {
+        if (complete && distinct.size() <= mostCommonCount
+            || counts.get(i) > 1
+            && (long) counts.get(i) * distinct.size() > sorted.size()) {
+          candidates.add(i);
+        }
+      }
+      candidates.sort(
+          Comparator.<Integer>comparingInt(counts::get).reversed()
+              .thenComparingInt(i -> i));
+      final List<Integer> mostCommon =
+          new ArrayList<>(candidates.subList(0,
+              Math.min(mostCommonCount, candidates.size())));
+      mostCommon.sort(null);
+
+      final double nonNullFraction = 1d - nullFraction;
+      final List<Comparable> mostCommonValues = new ArrayList<>();
+      final List<Double> mostCommonFrequencies = new ArrayList<>();
+      for (int i : mostCommon) {
+        mostCommonValues.add(distinct.get(i));
+        mostCommonFrequencies.add(
+            nonNullFraction * counts.get(i) / sorted.size());
+      }
+
+      // Build an equi-depth histogram from the remaining values.
+      final List<Comparable> rest = new ArrayList<>();
+      for (Comparable c : sorted) {
+        if (!contains(mostCommonValues, c)) {
+          rest.add(c);
+        }
+      }
+      final List<Comparable> histogram = new ArrayList<>();
+      if (bucketCount > 0 && rest.size() >= 2) {
+        final int buckets = Math.min(bucketCount, rest.size() - 1);
+        for (int i = 0; i <= buckets; i++) {
+          histogram.add(rest.get((int) ((long) i * (rest.size() - 1) / buckets)));
+        }
+      }
+      return new ColumnStatistics(nullFraction, distinctCount,
+          mostCommonValues, mostCommonFrequencies, histogram);
+    }
+
+    private static boolean contains(List<Comparable> sortedValues,
+        Comparable value) {
+      return Collections.binarySearch(sortedValues, value,
+          ColumnStatistics::compare) >= 0;
+    }
+  }
+}
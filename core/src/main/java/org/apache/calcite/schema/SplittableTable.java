@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Table that can be scanned in several disjoint pieces, called splits, which
+ * can be read concurrently.
+ *
+ * <p>Splits must be contiguous ranges of the rows returned by
+ * {@link #scan(DataContext)}: concatenating splits {@code 0} to
+ * {@code splitCount - 1} in order returns the same rows in the same order as
+ * a full scan. Therefore a parallel scan preserves any collation that the
+ * table declares in its {@link Statistic}.
+ *
+ * @see org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM
+ */
+public interface SplittableTable extends ScannableTable {
+  /** Returns an enumerable over the rows in one split of this table.
+   *
+   * @param root Execution context
+   * @param split Ordinal of the split, between 0 and {@code splitCount - 1}
+   * @param splitCount Number of splits; may be greater than the number of
+   *                   rows, in which case some splits are empty
+   */
+  Enumerable<@Nullable Object[]> scan(DataContext root, int split,
+      int splitCount);
+}
@@ -65,4 +65,14 @@ default boolean isKey(ImmutableBitSet columns) {
   default @Nullable RelDistribution getDistribution()  {
     return null;
   }
+
+  /** Returns statistics about the values of a given column, or null if the
+   * column has not been analyzed.
+   *
+   * @param ordinal Ordinal of the column
+   * @see Statistics#analyze
+   */
+  default @Nullable ColumnStatistics getColumnStatistics(int ordinal) {
+    return null;
+  }
 }
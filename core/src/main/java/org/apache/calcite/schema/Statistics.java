@@ -16,15 +16,28 @@
  */
 package org.apache.calcite.schema;
 
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelReferentialConstraint;
 import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.JsonBuilder;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * Utility functions regarding {@link Statistic}.
@@ -33,6 +46,14 @@ public class Statistics {
   private Statistics() {
   }
 
+  /** Maximum number of most common values that {@link #analyze} records
+   * for each column. */
+  public static final int MOST_COMMON_COUNT = 20;
+
+  /** Maximum number of histogram buckets that {@link #analyze} records for
+   * each column. */
+  public static final int HISTOGRAM_BUCKET_COUNT = 100;
+
   /** Returns a {@link Statistic} that knows nothing about a table. */
   public static final Statistic UNKNOWN =
       new Statistic() {
@@ -65,11 +86,24 @@ public static Statistic of(final @Nullable Double rowCount,
       final @Nullable List<ImmutableBitSet> keys,
       final @Nullable List<RelReferentialConstraint> referentialConstraints,
       final @Nullable List<RelCollation> collations) {
+    return of(rowCount, keys, referentialConstraints, collations, null);
+  }
+
+  /** Returns a statistic with a given row count, set of unique keys,
+   * referential constraints, collations, and statistics for each column. */
+  public static Statistic of(final @Nullable Double rowCount,
+      final @Nullable List<ImmutableBitSet> keys,
+      final @Nullable List<RelReferentialConstraint> referentialConstraints,
+      final @Nullable List<RelCollation> collations,
+      final @Nullable List<@Nullable ColumnStatistics> columnStatistics) {
     List<ImmutableBitSet> keysCopy = keys == null ? ImmutableList.of() : ImmutableList.copyOf(keys);
     List<RelReferentialConstraint> referentialConstraintsCopy =
         referentialConstraints == null ? null : ImmutableList.copyOf(referentialConstraints);
     List<RelCollation> collationsCopy =
         collations == null ? null : ImmutableList.copyOf(collations);
+    List<@Nullable ColumnStatistics> columnStatisticsCopy =
+        columnStatistics == null ? ImmutableList.of()
+            : Collections.unmodifiableList(new ArrayList<>(columnStatistics));
 
     return new Statistic() {
       @Override public @Nullable Double getRowCount() {
@@ -96,6 +130,111 @@ public static Statistic of(final @Nullable Double rowCount,
       @Override public @Nullable List<RelCollation> getCollations() {
         return collationsCopy;
       }
+
+      @Override public @Nullable ColumnStatistics getColumnStatistics(
+          int ordinal) {
+        return ordinal < columnStatisticsCopy.size()
+            ? columnStatisticsCopy.get(ordinal)
+            : null;
+      }
     };
   }
+
+  /** Analyzes a table by scanning it, and returns a statistic that contains
+   * its exact row count and statistics for each column.
+   *
+   * <p>The unique keys, referential constraints and collations are copied
+   * from the table's current statistic.
+   *
+   * <p>The most common values and histograms are computed from a random
+   * sample of at most {@code sampleSize} values per column; the number of
+   * distinct values is computed from all rows.
+   *
+   * @param table Table
+   * @param root Data context in which to scan the table
+   * @param sampleSize Maximum number of values to sample per column
+   */
+  public static Statistic analyze(ScannableTable table, DataContext root,
+      int sampleSize) {
+    final int columnCount =
+        table.getRowType(root.getTypeFactory()).getFieldCount();
+    final Random random = new Random(0);
+    final List<ColumnStatistics.Collector> collectors = new ArrayList<>();
+    for (int i = 0; i < columnCount; i++) {
+      collectors.add(new ColumnStatistics.Collector(sampleSize, random));
+    }
+    long rowCount = 0;
+    try (Enumerator<@Nullable Object[]> enumerator =
+             table.scan(root).enumerator()) {
+      while (enumerator.moveNext()) {
+        final @Nullable Object[] row = enumerator.current();
+        ++rowCount;
+        for (int i = 0; i < columnCount; i++) {
+          collectors.get(i).add(row[i]);
+        }
+      }
+    }
+    final List<@Nullable ColumnStatistics> columnStatistics =
+        new ArrayList<>();
+    for (ColumnStatistics.Collector collector : collectors) {
+      columnStatistics.add(
+          collector.finish(MOST_COMMON_COUNT, HISTOGRAM_BUCKET_COUNT));
+    }
+    final Statistic statistic = table.getStatistic();
+    return of((double) rowCount, statistic.getKeys(),
+        statistic.getReferentialConstraints(), statistic.getCollations(),
+        columnStatistics);
+  }
+
+  /** Serializes a statistic's row count, unique keys and column statistics
+   * as JSON, so that the result of {@link #analyze} can be persisted.
+   *
+   * @param statistic Statistic
+   * @param columnCount Number of columns in the table
+   * @see #fromJson(String)
+   */
+  public static String toJson(Statistic statistic, int columnCount) {
+    final JsonBuilder jsonBuilder = new JsonBuilder();
+    final Map<String, @Nullable Object> map = jsonBuilder.map();
+    map.put("rowCount", statistic.getRowCount());
+    final List<@Nullable Object> keys = jsonBuilder.list();
+    final List<ImmutableBitSet> statisticKeys = statistic.getKeys();
+    for (ImmutableBitSet key
+        : statisticKeys == null ? ImmutableList.<ImmutableBitSet>of() : statisticKeys) {
+      keys.add(key.asList());
+    }
+    map.put("keys", keys);
+    final List<@Nullable Object> columns = jsonBuilder.list();
+    for (int i = 0; i < columnCount; i++) {
+      final ColumnStatistics columnStatistics =
+          statistic.getColumnStatistics(i);
+      columns.add(columnStatistics == null ? null : columnStatistics.toMap());
+    }
+    map.put("columns", columns);
+    return jsonBuilder.toJsonString(map);
+  }
+
+  /** Creates a statistic from a JSON string produced by
+   * {@link #toJson(Statistic, int)}. */
+  @SuppressWarnings("unchecked")
+  public static Statistic fromJson(String json) throws IOException {
+    final Map<String, Object> map = new ObjectMapper()
+        .readValue(json, new TypeReference<LinkedHashMap<String, Object>>() {
+        });
+    final Number rowCount = (Number) map.get("rowCount");
+    final List<ImmutableBitSet> keys = new ArrayList<>();
+    for (List<Integer> key
+        : (List<List<Integer>>) requireNonNull(map.get("keys"), "keys")) {
+      keys.add(ImmutableBitSet.of(key));
+    }
+    final List<@Nullable ColumnStatistics> columnStatistics =
+        new ArrayList<>();
+    for (Map<String, Object> column : (List<Map<String, Object>>)
+        requireNonNull(map.get("columns"), "columns")) {
+      columnStatistics.add(
+          column == null ? null : ColumnStatistics.fromMap(column));
+    }
+    return of(rowCount == null ? null : rowCount.doubleValue(), keys, null,
+        null, columnStatistics);
+  }
 }
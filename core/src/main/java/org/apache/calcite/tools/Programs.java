@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.tools;
 
+import org.apache.calcite.adapter.enumerable.EnumerableParallelizer;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.config.CalciteSystemProperty;
@@ -186,6 +187,29 @@ public static Program of(final HepProgram hepProgram, final boolean noDag,
   public static Program heuristicJoinOrder(
       final Iterable<? extends RelOptRule> rules,
       final boolean bushy, final int minJoinCount) {
+    return joinOrder(rules,
+        bushy
+            ? CoreRules.MULTI_JOIN_OPTIMIZE_BUSHY
+            : CoreRules.MULTI_JOIN_OPTIMIZE,
+        minJoinCount);
+  }
+
+  /** Creates a program that orders joins using dynamic programming
+   * (via {@link org.apache.calcite.rel.rules.JoinToMultiJoinRule},
+   * {@link org.apache.calcite.rel.rules.MultiJoin} and
+   * {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDphypRule})
+   * if there are {@code minJoinCount} or more joins.
+   *
+   * <p>Dynamic programming finds the cheapest bushy join order, and falls back
+   * to a greedy algorithm for very large or dense join graphs; see
+   * {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDphypRule.Config}. */
+  public static Program dphypJoinOrder(
+      final Iterable<? extends RelOptRule> rules, final int minJoinCount) {
+    return joinOrder(rules, CoreRules.MULTI_JOIN_OPTIMIZE_DPHYP, minJoinCount);
+  }
+
+  private static Program joinOrder(final Iterable<? extends RelOptRule> rules,
+      final RelOptRule multiJoinRule, final int minJoinCount) {
     return (planner, rel, requiredOutputTraits, materializations, lattices) -> {
       final int joinCount = RelOptUtil.countJoins(rel);
       final Program program;
@@ -202,7 +226,7 @@ public static Program heuristicJoinOrder(
             of(hep, false, DefaultRelMetadataProvider.INSTANCE);
 
         // Create a program that contains a rule to expand a MultiJoin
-        // into heuristically ordered joins.
+        // into ordered joins.
         // We use the rule set passed in, but remove JoinCommuteRule and
         // JoinPushThroughJoinRule, because they cause exhaustive search.
         final List<RelOptRule> list = Lists.newArrayList(rules);
@@ -212,9 +236,7 @@ public static Program heuristicJoinOrder(
                 CoreRules.JOIN_ASSOCIATE,
                 JoinPushThroughJoinRule.LEFT,
                 JoinPushThroughJoinRule.RIGHT));
-        list.add(bushy
-            ? CoreRules.MULTI_JOIN_OPTIMIZE_BUSHY
-            : CoreRules.MULTI_JOIN_OPTIMIZE);
+        list.add(multiJoinRule);
         final Program program2 = ofRules(list);
 
         program = sequence(program1, program2);
@@ -285,7 +307,8 @@ public static Program standard(RelMetadataProvider metadataProvider) {
 
         // Second planner pass to do physical "tweaks". This the first time
         // that EnumerableCalcRel is introduced.
-        calc(metadataProvider));
+        calc(metadataProvider),
+        new ParallelProgram());
   }
 
   /** Program backed by a {@link RuleSet}. */
@@ -364,6 +387,20 @@ private static class DecorrelateProgram implements Program {
     }
   }
 
+  /** Program that rewrites an enumerable plan to run in parallel, if the
+   * connection's {@link CalciteConnectionConfig#parallelism()} is greater
+   * than 1.
+   *
+   * @see EnumerableParallelizer */
+  private static class ParallelProgram implements Program {
+    @Override public RelNode run(RelOptPlanner planner, RelNode rel,
+        RelTraitSet requiredOutputTraits,
+        List<RelOptMaterialization> materializations,
+        List<RelOptLattice> lattices) {
+      return EnumerableParallelizer.parallelize(rel);
+    }
+  }
+
   /** Program that trims fields. */
   private static class TrimFieldsProgram implements Program {
     @Override public RelNode run(RelOptPlanner planner, RelNode rel,
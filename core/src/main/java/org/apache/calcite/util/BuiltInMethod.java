@@ -26,6 +26,8 @@
 import org.apache.calcite.adapter.enumerable.SourceSorter;
 import org.apache.calcite.adapter.java.ReflectiveSchema;
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
+import org.apache.calcite.adapter.vectorized.Batches;
+import org.apache.calcite.adapter.vectorized.VectorizedRel;
 import org.apache.calcite.avatica.util.ByteString;
 import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.avatica.util.TimeUnitRange;
@@ -42,16 +44,19 @@
 import org.apache.calcite.linq4j.MemoryFactory;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
+import org.apache.calcite.linq4j.function.DoubleFunction1;
 import org.apache.calcite.linq4j.function.EqualityComparer;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.FunctionExpression;
 import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.linq4j.tree.Types;
+import org.apache.calcite.plan.volcano.CardinalityFeedback;
 import org.apache.calcite.plan.volcano.VolcanoPlanner;
 import org.apache.calcite.rel.metadata.BuiltInMetadata.AllPredicates;
 import org.apache.calcite.rel.metadata.BuiltInMetadata.Collation;
@@ -85,17 +90,23 @@
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.runtime.CompressionFunctions;
 import org.apache.calcite.runtime.Enumerables;
+import org.apache.calcite.runtime.ExternalSort;
 import org.apache.calcite.runtime.FlatLists;
 import org.apache.calcite.runtime.FunctionContexts;
 import org.apache.calcite.runtime.GeoFunctions;
 import org.apache.calcite.runtime.JsonFunctions;
 import org.apache.calcite.runtime.Matcher;
+import org.apache.calcite.runtime.ParallelEnumerables;
 import org.apache.calcite.runtime.Pattern;
+import org.apache.calcite.runtime.PrimitiveGroupBy;
 import org.apache.calcite.runtime.RandomFunction;
 import org.apache.calcite.runtime.ResultSetEnumerable;
+import org.apache.calcite.runtime.SegmentTree;
 import org.apache.calcite.runtime.SortedMultiMap;
+import org.apache.calcite.runtime.SpillableHashJoin;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.runtime.SqlFunctions.FlatProductInputType;
+import org.apache.calcite.runtime.StringMatcher;
 import org.apache.calcite.runtime.Utilities;
 import org.apache.calcite.runtime.XmlFunctions;
 import org.apache.calcite.schema.FilterableTable;
@@ -106,6 +117,7 @@
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.SplittableTable;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.sql.SqlJsonConstructorNullClause;
 import org.apache.calcite.sql.SqlJsonQueryEmptyOrErrorBehavior;
@@ -184,6 +196,11 @@ public enum BuiltInMethod {
       Function1.class,
       Function1.class, Function2.class, EqualityComparer.class,
       boolean.class, boolean.class, Predicate2.class),
+  SPILLABLE_HASH_JOIN(SpillableHashJoin.class, "hashJoin", Enumerable.class,
+      Enumerable.class, Function1.class, Function1.class, Function2.class,
+      EqualityComparer.class, boolean.class, boolean.class, Predicate2.class,
+      long.class),
+  CARDINALITY_PROBE(CardinalityFeedback.Probe.class, "wrap", Enumerable.class),
   MATCH(Enumerables.class, "match", Enumerable.class, Function1.class,
       Matcher.class, Enumerables.Emitter.class, int.class, int.class),
   PATTERN_BUILDER(Utilities.class, "patternBuilder"),
@@ -203,6 +220,8 @@ public enum BuiltInMethod {
       Enumerable.class, Function1.class, Function1.class, Predicate2.class, Function2.class,
       JoinType.class, Comparator.class),
   SLICE0(Enumerables.class, "slice0", Enumerable.class),
+  VECTORIZED_EXECUTE(Batches.class, "execute", DataContext.class,
+      VectorizedRel.class, Enumerable[].class),
   SEMI_JOIN(EnumerableDefaults.class, "semiJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class,
       EqualityComparer.class, Predicate2.class),
@@ -231,12 +250,30 @@ public enum BuiltInMethod {
   GROUP_BY_MULTIPLE(EnumerableDefaults.class, "groupByMultiple",
       Enumerable.class, List.class, Function0.class, Function2.class,
       Function2.class),
+  PRIMITIVE_GROUP_BY(PrimitiveGroupBy.class, "groupBy", Enumerable.class,
+      List.class, List.class),
+  PRIMITIVE_GROUP_BY_LONG_COLUMN(PrimitiveGroupBy.class, "longColumn",
+      LongFunction1.class, Predicate1.class, Primitive.class),
+  PRIMITIVE_GROUP_BY_DOUBLE_COLUMN(PrimitiveGroupBy.class, "doubleColumn",
+      DoubleFunction1.class, Predicate1.class, Primitive.class),
+  PRIMITIVE_GROUP_BY_AGG(PrimitiveGroupBy.class, "agg",
+      PrimitiveGroupBy.Kind.class, PrimitiveGroupBy.Column.class,
+      Primitive.class),
   AGGREGATE(ExtendedEnumerable.class, "aggregate", Object.class,
       Function2.class, Function1.class),
   ORDER_BY(ExtendedEnumerable.class, "orderBy", Function1.class,
       Comparator.class),
   ORDER_BY_WITH_FETCH_AND_OFFSET(EnumerableDefaults.class, "orderBy", Enumerable.class,
       Function1.class, Comparator.class, int.class, int.class),
+  EXTERNAL_ORDER_BY(ExternalSort.class, "orderBy", Enumerable.class,
+      Function1.class, Comparator.class, int.class, int.class, long.class),
+  PARALLEL_SCAN(ParallelEnumerables.class, "scan", DataContext.class,
+      SplittableTable.class),
+  PARALLEL_GATHER(ParallelEnumerables.class, "gather", DataContext.class,
+      int.class, int.class, Function1.class),
+  PARALLEL_REPARTITION(ParallelEnumerables.class, "repartition",
+      DataContext.class, Object.class, int.class, Function1.class,
+      Function1.class),
   UNION(ExtendedEnumerable.class, "union", Enumerable.class),
   CONCAT(ExtendedEnumerable.class, "concat", Enumerable.class),
   REPEAT_UNION(EnumerableDefaults.class, "repeatUnion", Enumerable.class,
@@ -320,6 +357,11 @@ public enum BuiltInMethod {
   SORTED_MULTI_MAP_PUT_MULTI(SortedMultiMap.class, "putMulti", Object.class,
       Object.class),
   SORTED_MULTI_MAP_ARRAYS(SortedMultiMap.class, "arrays", Comparator.class),
+  SEGMENT_TREE_QUERY(SegmentTree.class, "query", int.class, int.class),
+  SEGMENT_TREE_LONG_QUERY(SegmentTree.OfLong.class, "query", int.class,
+      int.class),
+  SEGMENT_TREE_DOUBLE_QUERY(SegmentTree.OfDouble.class, "query", int.class,
+      int.class),
   SORTED_MULTI_MAP_SINGLETON(SortedMultiMap.class, "singletonArrayIterator",
       Comparator.class, List.class),
   BINARY_SEARCH5_LOWER(BinarySearch.class, "lowerBound", Object[].class,
@@ -430,6 +472,7 @@ public enum BuiltInMethod {
   RLIKE(SqlFunctions.class, "rlike", String.class, String.class),
   SIMILAR(SqlFunctions.class, "similar", String.class, String.class),
   POSIX_REGEX(SqlFunctions.class, "posixRegex", String.class, String.class, boolean.class),
+  STRING_MATCHER_MATCHES(StringMatcher.class, "matches", String.class),
   REGEXP_REPLACE3(SqlFunctions.class, "regexpReplace", String.class,
       String.class, String.class),
   REGEXP_REPLACE4(SqlFunctions.class, "regexpReplace", String.class,
@@ -607,6 +650,10 @@ public enum BuiltInMethod {
       SqlExplainLevel.class),
   SCALAR_EXECUTE1(Scalar.class, "execute", Context.class),
   SCALAR_EXECUTE2(Scalar.class, "execute", Context.class, Object[].class),
+  SCALAR_EXECUTE_BATCH(Scalar.class, "executeBatch", Context.class,
+      Object[][].class, int.class, Object[][].class),
+  SCALAR_EXECUTE_FILTER(Scalar.class, "executeFilter", Context.class,
+      Object[][].class, int.class, int[].class),
   CONTEXT_VALUES(Context.class, "values", true),
   CONTEXT_ROOT(Context.class, "root", true),
   FUNCTION_CONTEXTS_OF(FunctionContexts.class, "of", DataContext.class,
@@ -16,16 +16,31 @@
  */
 package org.apache.calcite.adapter.clone;
 
+import org.apache.calcite.DataContexts;
+import org.apache.calcite.avatica.util.ByteString;
 import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
 import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeImpl;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -353,6 +368,175 @@ class ArrayTableTest {
         "Column(representation=ObjectArray(ordinal=2), value=[Bill, Sebastian, Theodore, Eric])");
   }
 
+  /** Tests that the splits of an {@link ArrayTable}, concatenated, contain
+   * the same rows in the same order as a full scan, even if there are more
+   * splits than rows. */
+  @Test void testSplit() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("empid", typeFactory.createType(int.class))
+            .add("name", typeFactory.createType(String.class))
+            .build();
+    final Enumerable<Object[]> enumerable =
+        Linq4j.asEnumerable(
+            Arrays.asList(
+                new Object[]{100, "Bill"},
+                new Object[]{200, "Eric"},
+                new Object[]{150, "Sebastian"},
+                new Object[]{160, "Theodore"},
+                new Object[]{110, "Sam"}));
+    final ArrayTable table = (ArrayTable)
+        CloneSchema.createCloneTable(typeFactory,
+            RelDataTypeImpl.proto(rowType), ImmutableList.of(), null,
+            enumerable);
+    final String expected =
+        table.scan(DataContexts.EMPTY).select(Arrays::toString).toList()
+            .toString();
+    for (int splitCount : new int[] {1, 2, 3, 5, 8}) {
+      final List<String> rows = new ArrayList<>();
+      for (int split = 0; split < splitCount; split++) {
+        rows.addAll(
+            table.scan(DataContexts.EMPTY, split, splitCount)
+                .select(Arrays::toString).toList());
+      }
+      assertEquals(expected, rows.toString(), "splitCount=" + splitCount);
+    }
+    assertEquals("[[100, Bill], [110, Sam]]",
+        table.scan(DataContexts.EMPTY, 0, 2).select(Arrays::toString)
+            .toList().toString());
+  }
+
+  /** Tests that {@link OffHeapStore#toDirect} moves each kind of column
+   * into a direct buffer, and that the table's rows do not change. */
+  @Test void testOffHeap() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType = offHeapRowType(typeFactory);
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<>(typeFactory, offHeapRows(3000),
+            RelDataTypeImpl.proto(rowType), null);
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            ImmutableList.of());
+    final ArrayTable.Content direct = OffHeapStore.toDirect(content);
+    assertEquals(
+        "[BitSlicedPrimitiveBuffer(ordinal=0, bitCount=12, primitive=INT, "
+            + "signed=false), "
+            + "PrimitiveBuffer(ordinal=1, primitive=LONG, p=LONG, "
+            + "nullable=false), "
+            + "PrimitiveBuffer(ordinal=2, primitive=DOUBLE, p=DOUBLE, "
+            + "nullable=false), "
+            + "PrimitiveBuffer(ordinal=3, primitive=INT, p=INT, "
+            + "nullable=true), "
+            + "StringDictionary(), "
+            + "ObjectDictionary(ordinal=5, representation="
+            + "BitSlicedPrimitiveBuffer(ordinal=-1, bitCount=2, "
+            + "primitive=INT, signed=false)), "
+            + "ObjectDictionary(ordinal=6, representation="
+            + "Constant(ordinal=-1)), "
+            + "ByteStringDictionary()]",
+        Util.transform(direct.columns, c -> c.representation).toString());
+    for (Ord<ArrayTable.Column> column : Ord.zip(direct.columns)) {
+      if (column.i == 6) {
+        continue; // a dictionary whose codes are constant has no buffer
+      }
+      final Object dataSet = column.e.dataSet instanceof Pair
+          ? ((Pair) column.e.dataSet).left
+          : column.e.dataSet;
+      assertTrue(((ByteBuffer) dataSet).isDirect(), column.e::toString);
+    }
+    assertEquals(rows(content.arrayEnumerator()),
+        rows(direct.arrayEnumerator()));
+    assertEquals(rows(content.arrayEnumerator(1000, 1010)),
+        rows(direct.arrayEnumerator(1000, 1010)));
+  }
+
+  /** Tests that a clone table is persisted to a file, and that another
+   * table maps the file rather than reading its source. */
+  @Test void testOffHeapFile(@TempDir File tempDir) {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType = offHeapRowType(typeFactory);
+    final File file = new File(tempDir, "T.clone");
+    final ArrayTable table = (ArrayTable)
+        CloneSchema.createCloneTable(typeFactory,
+            RelDataTypeImpl.proto(rowType), ImmutableList.of(), null,
+            offHeapRows(3000), file);
+    final List<String> expected =
+        table.scan(DataContexts.EMPTY).select(Arrays::toString).toList();
+    assertEquals(3000, expected.size());
+    assertTrue(file.exists());
+
+    // The source of the second table is empty; if it were read, the table
+    // would be empty.
+    final ArrayTable table2 = (ArrayTable)
+        CloneSchema.createCloneTable(typeFactory,
+            RelDataTypeImpl.proto(rowType), ImmutableList.of(), null,
+            offHeapRows(0), file);
+    assertEquals(expected,
+        table2.scan(DataContexts.EMPTY).select(Arrays::toString).toList());
+    assertEquals(table.getStatistic().getRowCount(),
+        table2.getStatistic().getRowCount());
+    assertEquals(table.getStatistic().getCollations(),
+        table2.getStatistic().getCollations());
+
+    // The row type of the third table is different, so the file is stale,
+    // and the table reads its source.
+    final RelDataType rowType3 =
+        typeFactory.builder()
+            .addAll(rowType.getFieldList())
+            .add("extra", typeFactory.createType(int.class))
+            .build();
+    final ArrayTable table3 = (ArrayTable)
+        CloneSchema.createCloneTable(typeFactory,
+            RelDataTypeImpl.proto(rowType3), ImmutableList.of(), null,
+            Linq4j.asEnumerable(
+                Collections.singletonList(
+                    new Object[] {1, 2L, 3D, null, "a", "b", "c",
+                        new ByteString(new byte[] {1}), 4})),
+            file);
+    assertEquals("[[1, 2, 3.0, null, a, b, c, 01, 4]]",
+        table3.scan(DataContexts.EMPTY).select(Arrays::toString).toList()
+            .toString());
+  }
+
+  private static RelDataType offHeapRowType(JavaTypeFactoryImpl typeFactory) {
+    return typeFactory.builder()
+        .add("id", typeFactory.createType(int.class))
+        .add("big", typeFactory.createType(long.class))
+        .add("d", typeFactory.createType(double.class))
+        .add("nullableInt", typeFactory.createType(Integer.class))
+        .add("name", typeFactory.createType(String.class))
+        .add("color", typeFactory.createType(String.class))
+        .add("constant", typeFactory.createType(String.class))
+        .add("bytes", typeFactory.createType(ByteString.class))
+        .build();
+  }
+
+  /** Returns rows whose columns have a variety of representations. */
+  private static Enumerable<Object[]> offHeapRows(int n) {
+    final String[] colors = {"red", "green", "blue"};
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      rows.add(
+          new Object[] {n - i, (long) i << 40, i / 4D,
+              i % 7 == 0 ? null : i, i % 5 == 0 ? null : "name " + i,
+              colors[i % 3], "constant",
+              new ByteString(new byte[] {(byte) i, (byte) (i >> 8)})});
+    }
+    return Linq4j.asEnumerable(rows);
+  }
+
+  private static List<String> rows(Enumerator<@Nullable Object[]> enumerator) {
+    final List<String> list = new ArrayList<>();
+    while (enumerator.moveNext()) {
+      list.add(Arrays.toString(enumerator.current()));
+    }
+    return list;
+  }
+
   private void checkColumn(ArrayTable.Column x,
       ArrayTable.RepresentationType expectedRepresentationType,
       String expectedString) {
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.runtime.Typed;
+import org.apache.calcite.runtime.Utilities;
+import org.apache.calcite.test.CalciteAssert;
+
+import com.google.common.collect.ImmutableList;
+
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tests for {@link BindableCodeCache}.
+ */
+class BindableCodeCacheTest {
+  /** Body of a generated class that has a static field and an anonymous
+   * inner class, and therefore compiles to more than one class file. */
+  private static final String SOURCE = "static int count = 0;\n"
+      + "public org.apache.calcite.linq4j.Enumerable bind(\n"
+      + "    org.apache.calcite.DataContext root) {\n"
+      + "  final java.util.function.Supplier s = new java.util.function.Supplier() {\n"
+      + "    public Object get() {\n"
+      + "      return \"x\" + (++count);\n"
+      + "    }\n"
+      + "  };\n"
+      + "  return org.apache.calcite.linq4j.Linq4j.asEnumerable(\n"
+      + "      new Object[] {s.get(), s.get()});\n"
+      + "}\n"
+      + "public Class getElementType() {\n"
+      + "  return String.class;\n"
+      + "}\n";
+
+  @TempDir Path directory;
+
+  @Test void testPersist() throws Exception {
+    final ClassLoader classLoader =
+        requireNonNull(getClass().getClassLoader(), "classLoader");
+    final BindableCodeCache cache = new BindableCodeCache(directory);
+    final Bindable bindable =
+        cache.get(evaluator(classLoader), "Baz", SOURCE, 1, classLoader);
+    assertThat(cache.missCount(), is(1L));
+    assertThat(cache.hitCount(), is(0L));
+    assertThat(rows(bindable), is(ImmutableList.of("x1", "x2")));
+    assertThat(entryCount(), is(1L));
+
+    // A new cache over the same directory, as if in a new JVM, loads the
+    // classes without compiling them. Static state is not shared.
+    final BindableCodeCache cache2 = new BindableCodeCache(directory);
+    final Bindable bindable2 =
+        cache2.get(evaluator(classLoader), "Baz", SOURCE, 1, classLoader);
+    assertThat(cache2.missCount(), is(0L));
+    assertThat(cache2.hitCount(), is(1L));
+    assertThat(bindable2.getClass(), not(sameInstance(bindable.getClass())));
+    assertThat(rows(bindable2), is(ImmutableList.of("x1", "x2")));
+
+    // A different source is a different entry.
+    cache2.get(evaluator(classLoader), "Baz", SOURCE + "\n", 1, classLoader);
+    assertThat(cache2.missCount(), is(1L));
+    assertThat(entryCount(), is(2L));
+  }
+
+  @Test void testCorruptEntry() throws Exception {
+    final ClassLoader classLoader =
+        requireNonNull(getClass().getClassLoader(), "classLoader");
+    final String key = BindableCodeCache.key("Baz", 1, SOURCE);
+    Files.write(directory.resolve(key + ".jar"), new byte[] {1, 2, 3});
+    final BindableCodeCache cache = new BindableCodeCache(directory);
+    final Bindable bindable =
+        cache.get(evaluator(classLoader), "Baz", SOURCE, 1, classLoader);
+    assertThat(cache.missCount(), is(1L));
+    assertThat(rows(bindable), is(ImmutableList.of("x1", "x2")));
+
+    // The corrupt entry has been replaced.
+    final BindableCodeCache cache2 = new BindableCodeCache(directory);
+    cache2.get(evaluator(classLoader), "Baz", SOURCE, 1, classLoader);
+    assertThat(cache2.hitCount(), is(1L));
+    assertThat(entryCount(), is(1L));
+  }
+
+  /** Tests that a query succeeds if its classes cannot be written to the
+   * cache; here, because the directory of the cache is a regular file. */
+  @Test void testUnwritableDirectory() throws Exception {
+    final ClassLoader classLoader =
+        requireNonNull(getClass().getClassLoader(), "classLoader");
+    final Path file = directory.resolve("file");
+    Files.write(file, new byte[] {1});
+    final BindableCodeCache cache = new BindableCodeCache(file);
+    final Bindable bindable =
+        cache.get(evaluator(classLoader), "Baz", SOURCE, 1, classLoader);
+    assertThat(cache.missCount(), is(1L));
+    assertThat(rows(bindable), is(ImmutableList.of("x1", "x2")));
+  }
+
+  @Test void testWarmUp() throws Exception {
+    try (Connection connection = CalciteAssert.hr().connect()) {
+      final int count =
+          BindableCodeCache.warmUp(connection,
+              ImmutableList.of("select * from \"hr\".\"emps\"",
+                  "select count(*) from \"hr\".\"depts\""));
+      assertThat(count, is(2));
+    }
+  }
+
+  private static IClassBodyEvaluator evaluator(ClassLoader classLoader)
+      throws Exception {
+    final IClassBodyEvaluator cbe =
+        CompilerFactoryFactory.getDefaultCompilerFactory(classLoader)
+            .newClassBodyEvaluator();
+    cbe.setClassName("Baz");
+    cbe.setExtendedClass(Utilities.class);
+    cbe.setImplementedInterfaces(new Class[] {Bindable.class, Typed.class});
+    cbe.setParentClassLoader(classLoader);
+    return cbe;
+  }
+
+  private static List<Object> rows(Bindable bindable) {
+    @SuppressWarnings("unchecked")
+    final List<Object> list = bindable.bind(null).toList();
+    return list;
+  }
+
+  private long entryCount() throws Exception {
+    try (Stream<Path> paths = Files.list(directory)) {
+      return paths.count();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.test.schemata.hr.HrSchema;
+import org.apache.calcite.util.Holder;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit test for {@link RelOptProfiler}.
+ */
+class RelOptProfilerTest {
+  private static final String SQL = "select e.\"name\", d.\"name\"\n"
+      + "from \"hr\".\"emps\" as e\n"
+      + "join \"hr\".\"depts\" as d on e.\"deptno\" = d.\"deptno\"\n"
+      + "where e.\"salary\" > 1000\n"
+      + "order by e.\"name\"";
+
+  private static Connection connect(boolean plannerProfile)
+      throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(CalciteConnectionProperty.PLANNER_PROFILE.camelName(),
+        Boolean.toString(plannerProfile));
+    final Connection connection =
+        DriverManager.getConnection("jdbc:calcite:", info);
+    final SchemaPlus rootSchema =
+        connection.unwrap(CalciteConnection.class).getRootSchema();
+    rootSchema.add("hr", new ReflectiveSchema(new HrSchema()));
+    return connection;
+  }
+
+  private static void execute(Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(SQL)) {
+      while (resultSet.next()) {
+        resultSet.getString(1);
+      }
+    }
+  }
+
+  /** Tests that a statement prepared with the {@code plannerProfile}
+   * property passes a profile of rules and metadata to the hook. */
+  @Test void testProfile() throws SQLException {
+    final Holder<RelOptProfiler> profiler = Holder.empty();
+    try (Hook.Closeable ignored =
+             Hook.PLANNER_PROFILE.addThread(profiler::set);
+         Connection connection = connect(true)) {
+      execute(connection);
+    }
+    final RelOptProfiler p = profiler.get();
+    assertThat(p.elapsedNanos() > 0, is(true));
+
+    final List<RelOptProfiler.RuleProfile> rules = p.rules();
+    final long queued = rules.stream().mapToLong(r -> r.queued).sum();
+    final long attempts = rules.stream().mapToLong(r -> r.attempts).sum();
+    final long productions =
+        rules.stream().mapToLong(r -> r.productions).sum();
+    final long nanos = rules.stream().mapToLong(r -> r.nanos).sum();
+    assertThat(queued > 0, is(true));
+    assertThat(attempts > 0, is(true));
+    assertThat(productions > 0, is(true));
+    assertThat(nanos > 0, is(true));
+    assertThat(rules.get(0).nanos >= rules.get(rules.size() - 1).nanos,
+        is(true));
+    assertThat(
+        rules.stream()
+            .anyMatch(r -> r.rule.startsWith("EnumerableJoinRule")
+                && r.queued > 0 && r.attempts > 0 && r.productions > 0),
+        is(true));
+
+    final List<RelOptProfiler.MetadataProfile> metadata = p.metadata();
+    assertThat(
+        metadata.stream()
+            .anyMatch(m -> m.kind.contains("getRowCount")
+                && m.missCount > 0 && m.hitCount > 0 && m.nanos > 0),
+        is(true));
+
+    final Map<String, Object> map = p.toMap();
+    assertThat(map.keySet(), hasItems("elapsedMicros", "rules", "metadata"));
+    assertThat(p.toString().startsWith("Planning took "), is(true));
+  }
+
+  /** Tests that the hook is not called if the property is not set. */
+  @Test void testNoProfile() throws SQLException {
+    final Holder<RelOptProfiler> profiler = Holder.empty();
+    try (Hook.Closeable ignored =
+             Hook.PLANNER_PROFILE.addThread(profiler::set);
+         Connection connection = connect(false)) {
+      execute(connection);
+    }
+    assertThat(profiler.get(), nullValue());
+  }
+}
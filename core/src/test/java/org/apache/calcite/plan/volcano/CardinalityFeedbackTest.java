@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.prepare.PlanCache;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.test.schemata.hr.HrSchema;
+import org.apache.calcite.util.Holder;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit test for {@link CardinalityFeedback}.
+ */
+class CardinalityFeedbackTest {
+  /** Joins each employee with the employees in the same department; the
+   * planner estimates 2.4 rows but there are 10. */
+  private static final String SQL = "select e1.\"name\", e2.\"name\"\n"
+      + "from \"hr\".\"emps\" as e1\n"
+      + "join \"hr\".\"emps\" as e2 on e1.\"deptno\" = e2.\"deptno\"";
+
+  /** Joins each employee with the employees that have the same commission,
+   * a different query whose row counts also diverge. */
+  private static final String SQL2 = "select e1.\"name\", e2.\"name\"\n"
+      + "from \"hr\".\"emps\" as e1\n"
+      + "join \"hr\".\"emps\" as e2 on e1.\"commission\" = e2.\"commission\"";
+
+  private static Connection connect(int reoptimizeThreshold,
+      int planCacheSize) throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(CalciteConnectionProperty.REOPTIMIZE_THRESHOLD.camelName(),
+        Integer.toString(reoptimizeThreshold));
+    info.setProperty(CalciteConnectionProperty.PLAN_CACHE_SIZE.camelName(),
+        Integer.toString(planCacheSize));
+    final Connection connection =
+        DriverManager.getConnection("jdbc:calcite:", info);
+    final SchemaPlus rootSchema =
+        connection.unwrap(CalciteConnection.class).getRootSchema();
+    rootSchema.add("hr", new ReflectiveSchema(new HrSchema()));
+    return connection;
+  }
+
+  private static int count(Connection connection, String sql)
+      throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(sql)) {
+      int n = 0;
+      while (resultSet.next()) {
+        ++n;
+      }
+      return n;
+    }
+  }
+
+  /** Tests that the row counts of a join and its inputs are recorded, and
+   * that the planner uses them the next time, so that they no longer
+   * diverge from its expectations. */
+  @Test void testRecord() throws SQLException {
+    final Holder<CardinalityFeedback> feedback = Holder.empty();
+    try (Hook.Closeable ignored =
+             Hook.CARDINALITY_FEEDBACK.addThread(feedback::set);
+         Connection connection = connect(2, 0)) {
+      assertThat(count(connection, SQL), is(10));
+      assertThat(feedback.get().rowCounts().values(), hasItems(4D, 10D));
+      final Map<String, Long> versions =
+          feedback.get().versions(feedback.get().rowCounts().keySet());
+      assertThat(versions.values().stream().anyMatch(v -> v > 0), is(true));
+
+      assertThat(count(connection, SQL), is(10));
+      assertThat(feedback.get().isCurrent(versions), is(true));
+    }
+  }
+
+  /** Tests that row counts are neither recorded nor used for a query that
+   * has dynamic parameters, because they depend on the parameter values. */
+  @Test void testParameterized() throws SQLException {
+    final Holder<CardinalityFeedback> feedback = Holder.empty();
+    try (Hook.Closeable ignored =
+             Hook.CARDINALITY_FEEDBACK.addThread(feedback::set);
+         Connection connection = connect(2, 0);
+         PreparedStatement statement =
+             connection.prepareStatement(SQL + " where e1.\"empid\" > ?")) {
+      statement.setInt(1, 0);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        int n = 0;
+        while (resultSet.next()) {
+          ++n;
+        }
+        assertThat(n, is(10));
+      }
+      assertThat(feedback.get().rowCounts().isEmpty(), is(true));
+    }
+  }
+
+  /** Tests that a plan in the plan cache is re-planned after its row counts
+   * diverge from the planner's expectations, and then reused. */
+  @Test void testPlanCache() throws SQLException {
+    final Holder<PlanCache> cache = Holder.empty();
+    try (Hook.Closeable ignored = Hook.PLAN_CACHE.addThread(cache::set);
+         Connection connection = connect(2, 10)) {
+      assertThat(count(connection, SQL), is(10));
+      assertThat(count(connection, SQL), is(10));
+      assertThat(cache.get().missCount(), is(2L));
+      assertThat(count(connection, SQL), is(10));
+      assertThat(cache.get().missCount(), is(2L));
+      assertThat(cache.get().hitCount(), is(1L));
+    }
+  }
+
+  /** Tests that when the row counts of one query diverge, the plans of other
+   * queries in the plan cache are still used. */
+  @Test void testPlanCacheOtherQuery() throws SQLException {
+    final Holder<PlanCache> cache = Holder.empty();
+    try (Hook.Closeable ignored = Hook.PLAN_CACHE.addThread(cache::set);
+         Connection connection = connect(2, 10)) {
+      assertThat(count(connection, SQL), is(10));
+      assertThat(count(connection, SQL), is(10));
+      assertThat(cache.get().missCount(), is(2L));
+      assertThat(count(connection, SQL2), is(3));
+      assertThat(count(connection, SQL2), is(3));
+      assertThat(cache.get().missCount(), is(4L));
+      assertThat(count(connection, SQL), is(10));
+      assertThat(cache.get().missCount(), is(4L));
+      assertThat(cache.get().hitCount(), is(1L));
+    }
+  }
+
+  /** Tests that row counts are not recorded by default. */
+  @Test void testDisabled() throws SQLException {
+    final Holder<CardinalityFeedback> feedback = Holder.empty();
+    try (Hook.Closeable ignored =
+             Hook.CARDINALITY_FEEDBACK.addThread(feedback::set);
+         Connection connection = connect(0, 0)) {
+      assertThat(count(connection, SQL), is(10));
+      assertThat(feedback.get(), nullValue());
+    }
+  }
+
+  /** Tests that row counts and versions are held for a limited number of
+   * keys, and that a plan that depends on a discarded key is no longer
+   * current, even if the key diverges again. */
+  @Test void testMaximumSize() {
+    final CardinalityFeedback feedback = new CardinalityFeedback(2, 2);
+    feedback.record("a", 1, 10);
+    final Map<String, Long> versions = feedback.versions(ImmutableList.of("a"));
+    assertThat(feedback.isCurrent(versions), is(true));
+    for (int i = 0; i < 10; i++) {
+      feedback.record("b" + i, 1, 10);
+      assertThat(feedback.rowCounts().size() <= 2, is(true));
+    }
+    assertThat(feedback.getRowCount("a"), nullValue());
+    assertThat(feedback.version("a"), is(0L));
+    assertThat(feedback.isCurrent(versions), is(false));
+
+    feedback.record("a", 1, 10);
+    assertThat(feedback.getRowCount("a"), is(10D));
+    assertThat(feedback.isCurrent(versions), is(false));
+  }
+}
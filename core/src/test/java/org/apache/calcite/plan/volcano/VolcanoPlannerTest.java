@@ -21,8 +21,11 @@
 import org.apache.calcite.adapter.enumerable.EnumerableUnion;
 import org.apache.calcite.plan.Convention;
 import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.MulticastRelOptListener;
 import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptListener;
+import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptRuleCall;
 import org.apache.calcite.plan.RelOptUtil;
@@ -36,9 +39,14 @@
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.RelFactories;
 import org.apache.calcite.rel.externalize.RelDotWriter;
+import org.apache.calcite.rel.logical.LogicalJoin;
 import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.rules.CoreRules;
+import org.apache.calcite.rel.rules.JoinAssociateRule;
+import org.apache.calcite.rel.rules.ThreadSafeRule;
 import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.test.RelBuilderTest;
 import org.apache.calcite.tools.RelBuilder;
 import org.apache.calcite.util.Pair;
 
@@ -54,6 +62,11 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.apache.calcite.plan.volcano.PlannerTests.AssertOperandsDifferentRule;
 import static org.apache.calcite.plan.volcano.PlannerTests.GoodSingleRule;
@@ -73,6 +86,7 @@
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -731,6 +745,130 @@ private void removeTrivialProject(boolean useRule) {
     assertThat(setA.equivalentSet, sameInstance(setB));
   }
 
+  /** Tests a planner that fires rules on several threads. It should find a
+   * plan as cheap as a single-threaded planner finds, and the same plan
+   * whatever the number of threads. */
+  @Test void testParallelism() {
+    final Pair<String, RelOptCost> sequential = planJoins(1);
+    final Pair<String, RelOptCost> parallel = planJoins(4);
+    assertThat(parallel.right.isLe(sequential.right), is(true));
+    assertThat(planJoins(2).left, is(parallel.left));
+    assertThat(planJoins(4).left, is(parallel.left));
+    assertThat(planJoins(8).left, is(parallel.left));
+  }
+
+  /** Tests that a planner fires concurrently only the rules that implement
+   * {@link ThreadSafeRule}, and fires other rules on its own thread. */
+  @Test void testParallelismOnlyThreadSafeRules() {
+    final Thread plannerThread = Thread.currentThread();
+    final Set<Thread> threadSafeThreads = ConcurrentHashMap.newKeySet();
+    final Set<Thread> otherThreads = ConcurrentHashMap.newKeySet();
+    planJoins(4, null, false, rel -> {
+      final RelOptPlanner planner = rel.getCluster().getPlanner();
+      planner.addRule(ThreadRecordingRule.config(threadSafeThreads::add)
+          .withThreadSafe(true).toRule());
+      planner.addRule(ThreadRecordingRule.config(otherThreads::add).toRule());
+    });
+    assertThat(threadSafeThreads.isEmpty(), is(false));
+    assertThat(threadSafeThreads.contains(plannerThread), is(false));
+    assertThat(otherThreads, is(Collections.singleton(plannerThread)));
+  }
+
+  /** Tests that the rule matches that a thread fires in a batch share a
+   * metadata query, and therefore its cache. */
+  @Test void testParallelismSharesMetadataQuery() {
+    final AtomicInteger queryCount = new AtomicInteger();
+    final AtomicInteger ruleCount = new AtomicInteger();
+    final Pair<String, RelOptCost> parallel =
+        planJoins(4, null, false, rel -> {
+          final RelOptCluster cluster = rel.getCluster();
+          final Supplier<RelMetadataQuery> supplier =
+              cluster.getMetadataQuerySupplier();
+          cluster.setMetadataQuerySupplier(() -> {
+            queryCount.incrementAndGet();
+            return supplier.get();
+          });
+          cluster.getPlanner().addListener(new MulticastRelOptListener() {
+            @Override public void ruleAttempted(RuleAttemptedEvent event) {
+              if (event.isBefore()) {
+                ruleCount.incrementAndGet();
+              }
+            }
+          });
+        });
+    assertThat(parallel.left, is(planJoins(4).left));
+    assertThat(queryCount.get() * 4 < ruleCount.get(), is(true));
+  }
+
+  /** Tests that a planner reuses the plans of subtrees that an earlier
+   * planner optimized, and finds the same plan. */
+  @Test void testSubplanCache() {
+    final SubplanCache cache = new SubplanCache(10);
+    final String plan = planJoins(1, cache, false).left;
+    assertThat(plan, is(planJoins(1).left));
+    assertThat(cache.hitCount(), is(0L));
+    assertThat(cache.size(), is(1));
+
+    // The whole tree is in the cache
+    assertThat(planJoins(1, cache, false).left, is(plan));
+    assertThat(cache.hitCount(), is(1L));
+
+    // The tree below the Sort is in the cache
+    final String plan2 = planJoins(1, null, true).left;
+    assertThat(planJoins(1, cache, true).left, is(plan2));
+    assertThat(cache.hitCount(), is(2L));
+    assertThat(cache.size(), is(2));
+
+    cache.setVersion(1);
+    assertThat(cache.size(), is(0));
+  }
+
+  private static Pair<String, RelOptCost> planJoins(int parallelism) {
+    return planJoins(parallelism, null, false);
+  }
+
+  private static Pair<String, RelOptCost> planJoins(int parallelism,
+      SubplanCache subplanCache, boolean sort) {
+    return planJoins(parallelism, subplanCache, sort, rel -> { });
+  }
+
+  /** Plans a three-way join, optionally followed by a sort, exploring
+   * join orders, and returns the plan and its cost. */
+  private static Pair<String, RelOptCost> planJoins(int parallelism,
+      SubplanCache subplanCache, boolean sort, Consumer<RelNode> consumer) {
+    final RelBuilder b = RelBuilder.create(RelBuilderTest.config().build());
+    b.scan("EMP").as("e")
+        .scan("DEPT").as("d")
+        .join(JoinRelType.INNER,
+            b.equals(b.field(2, "e", "DEPTNO"), b.field(2, "d", "DEPTNO")))
+        .scan("BONUS").as("b")
+        .join(JoinRelType.INNER,
+            b.equals(b.field(2, "e", "ENAME"), b.field(2, "b", "ENAME")))
+        .filter(b.equals(b.field("d", "LOC"), b.literal("CHICAGO")))
+        .project(b.field("e", "ENAME"), b.field("b", "COMM"));
+    if (sort) {
+      b.sort(0);
+    }
+    final RelNode rel = b.build();
+    final VolcanoPlanner planner =
+        (VolcanoPlanner) rel.getCluster().getPlanner();
+    planner.setParallelism(parallelism);
+    planner.setSubplanCache(subplanCache);
+    planner.addRule(CoreRules.JOIN_COMMUTE);
+    planner.addRule(
+        JoinAssociateRule.Config.DEFAULT.withOperandFor(LogicalJoin.class)
+            .toRule());
+    planner.addRule(CoreRules.PROJECT_MERGE);
+    consumer.accept(rel);
+    planner.setRoot(
+        planner.changeTraits(rel,
+            rel.getTraitSet().replace(EnumerableConvention.INSTANCE)));
+    final RelNode best = planner.findBestExp();
+    final RelOptCost cost =
+        planner.getCost(best, best.getCluster().getMetadataQuery());
+    return Pair.of(RelOptUtil.toString(best), cost);
+  }
+
   private void checkEvent(
       List<RelOptListener.RelEvent> eventList,
       int iEvent,
@@ -778,6 +916,56 @@ public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
     }
   }
 
+  /** Rule that matches a {@link LogicalJoin}, records the thread on which
+   * it fires, and does nothing else. */
+  public static class ThreadRecordingRule
+      extends RelRule<ThreadRecordingRule.Config> {
+    static Config config(Consumer<Thread> onFire) {
+      return ImmutableThreadRecordingRuleConfig.builder()
+          .withOperandSupplier(b -> b.operand(LogicalJoin.class).anyInputs())
+          .withOnFire(onFire)
+          .build();
+    }
+
+    protected ThreadRecordingRule(Config config) {
+      super(config);
+    }
+
+    @Override public void onMatch(RelOptRuleCall call) {
+      config.onFire().accept(Thread.currentThread());
+    }
+
+    /** Rule configuration. */
+    @Value.Immutable
+    @Value.Style(init = "with*",
+        typeImmutable = "ImmutableThreadRecordingRuleConfig")
+    public interface Config extends RelRule.Config {
+      /** Called with the thread on which the rule fires. */
+      Consumer<Thread> onFire();
+
+      /** Whether the rule implements {@link ThreadSafeRule}. */
+      @Value.Default default boolean threadSafe() {
+        return false;
+      }
+
+      /** Sets {@link #threadSafe()}. */
+      Config withThreadSafe(boolean threadSafe);
+
+      @Override default ThreadRecordingRule toRule() {
+        return threadSafe() ? new ThreadSafeRecordingRule(this)
+            : new ThreadRecordingRule(this);
+      }
+    }
+  }
+
+  /** Thread-safe variant of {@link ThreadRecordingRule}. */
+  public static class ThreadSafeRecordingRule extends ThreadRecordingRule
+      implements ThreadSafeRule {
+    protected ThreadSafeRecordingRule(Config config) {
+      super(config);
+    }
+  }
+
   /** Rule that matches a {@link RelSubset}. */
   public static class SubsetRule extends RelRule<SubsetRule.Config> {
     static Config config(List<String> buf) {
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.test.schemata.hr.HrSchema;
+import org.apache.calcite.util.Holder;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit test for {@link PlanCache}.
+ */
+class PlanCacheTest {
+  private static Connection connect(int planCacheSize) throws SQLException {
+    final Properties info = new Properties();
+    info.setProperty(CalciteConnectionProperty.PLAN_CACHE_SIZE.camelName(),
+        Integer.toString(planCacheSize));
+    final Connection connection =
+        DriverManager.getConnection("jdbc:calcite:", info);
+    final SchemaPlus rootSchema =
+        connection.unwrap(CalciteConnection.class).getRootSchema();
+    rootSchema.add("hr", new ReflectiveSchema(new HrSchema()));
+    return connection;
+  }
+
+  private static List<String> query(Connection connection, String sql)
+      throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(sql)) {
+      return toList(resultSet);
+    }
+  }
+
+  private static List<String> toList(ResultSet resultSet)
+      throws SQLException {
+    final List<String> list = new ArrayList<>();
+    final int columnCount = resultSet.getMetaData().getColumnCount();
+    while (resultSet.next()) {
+      final StringBuilder b = new StringBuilder();
+      for (int i = 1; i <= columnCount; i++) {
+        if (i > 1) {
+          b.append("; ");
+        }
+        b.append(resultSet.getString(i));
+      }
+      list.add(b.toString());
+    }
+    return list;
+  }
+
+  /** Tests that queries that differ only in literals share a plan, and
+   * that each query sees its own literals. */
+  @Test void testLiterals() throws SQLException {
+    final Holder<PlanCache> cache = Holder.empty();
+    try (Hook.Closeable ignored = Hook.PLAN_CACHE.addThread(cache::set);
+         Connection connection = connect(10)) {
+      assertThat(
+          query(connection, "select \"name\" from \"hr\".\"emps\"\n"
+              + "where \"deptno\" = 10 and \"salary\" > 8000\n"
+              + "order by \"name\""),
+          is(ImmutableList.of("Bill", "Theodore")));
+      assertThat(cache.get(), notNullValue());
+      assertThat(cache.get().missCount(), is(1L));
+      assertThat(cache.get().hitCount(), is(0L));
+      assertThat(
+          query(connection, "select \"name\" from \"hr\".\"emps\"\n"
+              + "where \"deptno\" = 10 and \"salary\" > 10000\n"
+              + "order by \"name\""),
+          is(ImmutableList.of("Theodore")));
+      assertThat(
+          query(connection, "select \"name\" from \"hr\".\"emps\"\n"
+              + "where \"deptno\" = 20 and \"salary\" > -1\n"
+              + "order by \"name\""),
+          is(ImmutableList.of("Eric")));
+      assertThat(cache.get().missCount(), is(1L));
+      assertThat(cache.get().hitCount(), is(2L));
+      assertThat(cache.get().size(), is(1));
+
+      // Character literals, and a BETWEEN
+      assertThat(
+          query(connection, "select \"empid\" from \"hr\".\"emps\"\n"
+              + "where \"name\" = 'Theodore'"),
+          is(ImmutableList.of("110")));
+      assertThat(
+          query(connection, "select \"empid\" from \"hr\".\"emps\"\n"
+              + "where \"name\" = 'Eric'"),
+          is(ImmutableList.of("200")));
+      assertThat(
+          query(connection, "select count(*) from \"hr\".\"emps\"\n"
+              + "where \"empid\" between 100 and 150"),
+          is(ImmutableList.of("3")));
+      assertThat(
+          query(connection, "select count(*) from \"hr\".\"emps\"\n"
+              + "where \"empid\" between 150 and 250"),
+          is(ImmutableList.of("2")));
+      assertThat(cache.get().missCount(), is(3L));
+      assertThat(cache.get().hitCount(), is(4L));
+    }
+  }
+
+  /** Tests a query whose literals cannot be replaced by parameters of the
+   * type that the validator deduces; it is cached under its own text. */
+  @Test void testLiteralOfWrongType() throws SQLException {
+    final Holder<PlanCache> cache = Holder.empty();
+    try (Hook.Closeable ignored = Hook.PLAN_CACHE.addThread(cache::set);
+         Connection connection = connect(10)) {
+      final String sql = "select count(*) from \"hr\".\"emps\"\n"
+          + "where \"deptno\" = %s";
+      assertThat(query(connection, String.format(sql, "10.5")),
+          is(ImmutableList.of("0")));
+      assertThat(query(connection, String.format(sql, "10.5")),
+          is(ImmutableList.of("0")));
+      assertThat(query(connection, String.format(sql, "10")),
+          is(ImmutableList.of("3")));
+      assertThat(cache.get().missCount(), is(1L));
+      assertThat(cache.get().hitCount(), is(2L));
+    }
+  }
+
+  /** Tests a query that has both literals and dynamic parameters. */
+  @Test void testDynamicParameters() throws SQLException {
+    final Holder<PlanCache> cache = Holder.empty();
+    try (Hook.Closeable ignored = Hook.PLAN_CACHE.addThread(cache::set);
+         Connection connection = connect(10)) {
+      final String sql = "select \"name\" from \"hr\".\"emps\"\n"
+          + "where \"empid\" > ? and \"deptno\" = %d and \"salary\" < ?\n"
+          + "order by \"name\"";
+      try (PreparedStatement statement =
+               connection.prepareStatement(String.format(sql, 10))) {
+        statement.setInt(1, 100);
+        statement.setFloat(2, 10000f);
+        try (ResultSet resultSet = statement.executeQuery()) {
+          assertThat(toList(resultSet), is(ImmutableList.of("Sebastian")));
+        }
+      }
+      try (PreparedStatement statement =
+               connection.prepareStatement(String.format(sql, 20))) {
+        statement.setInt(1, 0);
+        statement.setFloat(2, 10000f);
+        try (ResultSet resultSet = statement.executeQuery()) {
+          assertThat(toList(resultSet), is(ImmutableList.of("Eric")));
+        }
+      }
+      assertThat(cache.get().missCount(), is(1L));
+      assertThat(cache.get().hitCount(), is(1L));
+    }
+  }
+
+  /** Tests that a change to the schema invalidates the cache. */
+  @Test void testSchemaChange() throws SQLException {
+    final Holder<PlanCache> cache = Holder.empty();
+    try (Hook.Closeable ignored = Hook.PLAN_CACHE.addThread(cache::set);
+         Connection connection = connect(10)) {
+      final String sql = "select count(*) from \"hr\".\"emps\"";
+      assertThat(query(connection, sql), is(ImmutableList.of("4")));
+      assertThat(query(connection, sql), is(ImmutableList.of("4")));
+      assertThat(cache.get().hitCount(), is(1L));
+
+      final SchemaPlus rootSchema =
+          connection.unwrap(CalciteConnection.class).getRootSchema();
+      rootSchema.add("t", new AbstractTable() {
+        @Override public RelDataType getRowType(RelDataTypeFactory f) {
+          return f.builder().add("x", SqlTypeName.INTEGER).build();
+        }
+      });
+      assertThat(query(connection, sql), is(ImmutableList.of("4")));
+      assertThat(cache.get().hitCount(), is(1L));
+      assertThat(cache.get().missCount(), is(2L));
+    }
+  }
+
+  /** Tests that the least recently used entry is evicted. */
+  @Test void testEviction() throws SQLException {
+    final Holder<PlanCache> cache = Holder.empty();
+    try (Hook.Closeable ignored = Hook.PLAN_CACHE.addThread(cache::set);
+         Connection connection = connect(2)) {
+      final String sql0 = "select count(*) from \"hr\".\"emps\"";
+      final String sql1 = "select count(*) from \"hr\".\"depts\"";
+      final String sql2 = "select count(*) from \"hr\".\"emps\"\n"
+          + "where \"deptno\" = 10";
+      assertThat(query(connection, sql0), is(ImmutableList.of("4")));
+      assertThat(query(connection, sql1), is(ImmutableList.of("3")));
+      assertThat(query(connection, sql0), is(ImmutableList.of("4")));
+      assertThat(query(connection, sql2), is(ImmutableList.of("3")));
+      assertThat(cache.get().size(), is(2));
+      assertThat(cache.get().evictionCount(), is(1L));
+      assertThat(cache.get().hitCount(), is(1L));
+      // sql1 was least recently used
+      assertThat(query(connection, sql0), is(ImmutableList.of("4")));
+      assertThat(query(connection, sql1), is(ImmutableList.of("3")));
+      assertThat(cache.get().hitCount(), is(2L));
+      assertThat(cache.get().missCount(), is(4L));
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.metadata.janino.RelMetadataHandlerGeneratorUtil;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit test for {@link JaninoRelMetadataProvider}.
+ */
+class JaninoRelMetadataProviderTest {
+  private static String packageOf(Object o) {
+    final String name = o.getClass().getName();
+    return name.substring(0, name.lastIndexOf('.'));
+  }
+
+  /** Tests that every handler of the default provider is compiled ahead of
+   * time, so that Janino is not needed. */
+  @Test void testBuiltInHandlersArePrecompiled() {
+    final List<Class<? extends MetadataHandler<?>>> handlerClasses =
+        RelMetadataHandlerGeneratorUtil.builtInHandlerClasses();
+    assertThat(handlerClasses.size(), is(24));
+    for (Class<? extends MetadataHandler<?>> handlerClass : handlerClasses) {
+      final MetadataHandler<?> handler =
+          JaninoRelMetadataProvider.DEFAULT.revise(handlerClass);
+      assertThat(handlerClass.getName(), packageOf(handler),
+          is(RelMetadataHandlerGeneratorUtil.PRECOMPILED_PACKAGE));
+    }
+  }
+
+  /** Tests that a provider that registers its own handler falls back to
+   * Janino for that kind of metadata, and uses pre-compiled handlers for
+   * other kinds. */
+  @Test void testUserHandlerUsesJanino() {
+    final JaninoRelMetadataProvider provider =
+        JaninoRelMetadataProvider.of(
+            ChainedRelMetadataProvider.of(
+                ImmutableList.of(
+                    ReflectiveRelMetadataProvider.reflectiveSource(
+                        new MyRowCount(), BuiltInMetadata.RowCount.Handler.class),
+                    DefaultRelMetadataProvider.INSTANCE)));
+    assertThat(packageOf(provider.revise(BuiltInMetadata.RowCount.Handler.class)),
+        is("org.apache.calcite.rel.metadata.janino"));
+    assertThat(packageOf(provider.revise(BuiltInMetadata.MaxRowCount.Handler.class)),
+        is(RelMetadataHandlerGeneratorUtil.PRECOMPILED_PACKAGE));
+  }
+
+  /** Row count handler that is registered by the user. */
+  public static class MyRowCount
+      implements MetadataHandler<BuiltInMetadata.RowCount> {
+    @Override public MetadataDef<BuiltInMetadata.RowCount> getDef() {
+      return BuiltInMetadata.RowCount.DEF;
+    }
+
+    public @Nullable Double getRowCount(RelNode rel, RelMetadataQuery mq) {
+      return 42D;
+    }
+  }
+}
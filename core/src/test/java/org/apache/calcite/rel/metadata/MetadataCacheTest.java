@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.test.RelBuilderTest;
+import org.apache.calcite.tools.RelBuilder;
+
+import com.google.common.base.Ticker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test cases for {@link MetadataCache}.
+ */
+class MetadataCacheTest {
+  private static RelNode values(RelBuilder b, int i) {
+    return b.values(new String[] {"x"}, i).build();
+  }
+
+  /** Tests that the least recently used expression is evicted, unless it
+   * has a result that is being computed. */
+  @Test void testEviction() {
+    final RelBuilder b = RelBuilder.create(RelBuilderTest.config().build());
+    final RelNode r1 = values(b, 1);
+    final RelNode r2 = values(b, 2);
+    final RelNode r3 = values(b, 3);
+    final RelNode r4 = values(b, 4);
+    final MetadataCache cache = new MetadataCache(2);
+    cache.put(r1, "a", 1);
+    cache.put(r2, "a", 2);
+    assertThat(cache.get(r1, "a"), is(1));
+    cache.put(r3, "a", 3);
+    assertThat(cache.containsRow(r1), is(true));
+    assertThat(cache.containsRow(r2), is(false));
+    assertThat(cache.containsRow(r3), is(true));
+    assertThat(cache.evictionCount(), is(1L));
+
+    // r1 is now the most recently used, so r3 is evicted
+    cache.put(r1, "b", NullSentinel.ACTIVE);
+    cache.put(r4, "a", 4);
+    assertThat(cache.containsRow(r3), is(false));
+    assertThat(cache.evictionCount(), is(2L));
+
+    // r1 is the least recently used, but it is not evicted while it has an
+    // active computation; r4, the next least recently used, is evicted
+    cache.put(r3, "a", 3);
+    assertThat(cache.containsRow(r1), is(true));
+    assertThat(cache.containsRow(r4), is(false));
+    assertThat(cache.rowKeySet().size(), is(2));
+    assertThat(cache.evictionCount(), is(3L));
+
+    // Removing the active result uses r1, so r3 is evicted
+    cache.remove(r1, "b");
+    cache.put(r2, "a", 2);
+    assertThat(cache.containsRow(r1), is(true));
+    assertThat(cache.containsRow(r3), is(false));
+    assertThat(cache.evictionCount(), is(4L));
+  }
+
+  /** Tests that the cache stays within its maximum size while it is being
+   * filled during an active computation. */
+  @Test void testEvictionWhileActive() {
+    final RelBuilder b = RelBuilder.create(RelBuilderTest.config().build());
+    final RelNode r0 = values(b, 0);
+    final MetadataCache cache = new MetadataCache(3);
+    cache.put(r0, "a", NullSentinel.ACTIVE);
+    for (int i = 1; i <= 10; i++) {
+      cache.put(values(b, i), "a", i);
+      assertThat(cache.rowKeySet().size() <= 3, is(true));
+      assertThat(cache.containsRow(r0), is(true));
+    }
+    assertThat(cache.rowKeySet().size(), is(3));
+    assertThat(cache.evictionCount(), is(8L));
+
+    // If every other expression is active, the cache holds one more than
+    // its maximum, rather than discard the expression just added
+    final MetadataCache cache2 = new MetadataCache(1);
+    cache2.put(r0, "a", NullSentinel.ACTIVE);
+    final RelNode r1 = values(b, 1);
+    cache2.put(r1, "a", 1);
+    assertThat(cache2.containsRow(r0), is(true));
+    assertThat(cache2.containsRow(r1), is(true));
+    assertThat(cache2.evictionCount(), is(0L));
+
+    // When r0 finishes, the next insertion brings the cache within bounds
+    cache2.put(r0, "a", 0);
+    cache2.put(values(b, 2), "a", 2);
+    assertThat(cache2.rowKeySet().size(), is(1));
+    assertThat(cache2.evictionCount(), is(2L));
+  }
+
+  /** Tests that a metadata query counts hits and misses for each kind of
+   * metadata, but only while profiling. */
+  @Test void testStatistics() {
+    final RelBuilder b = RelBuilder.create(RelBuilderTest.config().build());
+    final RelNode rel = b.scan("EMP").filter(b.isNull(b.field("COMM")))
+        .build();
+    final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
+    assertThat(mq.getRowCount(rel), is(mq.getRowCount(rel)));
+    assertThat(mq.cache().statistics().isEmpty(), is(true));
+
+    final RelMetadataQuery mq2 = RelMetadataQuery.instance();
+    mq2.cache().startProfiling(Ticker.systemTicker());
+    assertThat(mq2.getRowCount(rel), is(mq2.getRowCount(rel)));
+    final List<MetadataCache.Statistic> statistics = mq2.cache().statistics();
+    final MetadataCache.Statistic rowCount = statistics.stream()
+        .filter(s -> s.kind.contains("getRowCount"))
+        .findFirst().get();
+    assertThat(rowCount.hitCount, is(1L));
+    assertThat(rowCount.missCount, is(2L));
+    assertThat(rowCount.hitRate(), is(1d / 3d));
+  }
+
+  /** Tests that the time to compute a result excludes the time to compute
+   * the results that it needs, including results whose computation
+   * failed. */
+  @Test void testTime() {
+    final RelBuilder b = RelBuilder.create(RelBuilderTest.config().build());
+    final RelNode r1 = values(b, 1);
+    final RelNode r2 = values(b, 2);
+    final RelNode r3 = values(b, 3);
+    final long[] nanos = {0};
+    final MetadataCache cache = new MetadataCache(-1);
+    cache.startProfiling(new Ticker() {
+      @Override public long read() {
+        return nanos[0];
+      }
+    });
+    cache.put(r1, "a", NullSentinel.ACTIVE);
+    nanos[0] += 1;
+    cache.put(r2, "b", NullSentinel.ACTIVE);
+    nanos[0] += 10;
+    cache.put(r3, "c", NullSentinel.ACTIVE);
+    nanos[0] += 100;
+    // Computation of "c" fails, and its row is cleared
+    cache.row(r3).clear();
+    cache.finish(r3, "c");
+    nanos[0] += 1000;
+    cache.put(r2, "b", 2);
+    cache.finish(r2, "b");
+    nanos[0] += 10000;
+    cache.put(r1, "a", 1);
+    cache.finish(r1, "a");
+
+    final List<MetadataCache.Statistic> statistics = cache.statistics();
+    assertThat(statistics.size(), is(3));
+    assertThat(statistics.get(0).kind, is("a"));
+    assertThat(statistics.get(0).nanos, is(10001L));
+    assertThat(statistics.get(1).kind, is("b"));
+    assertThat(statistics.get(1).nanos, is(1010L));
+    assertThat(statistics.get(2).kind, is("c"));
+    assertThat(statistics.get(2).nanos, is(100L));
+
+    // No computation is left in progress, so the next is timed on its own
+    cache.put(r3, "c", NullSentinel.ACTIVE);
+    nanos[0] += 100000;
+    cache.put(r3, "c", 3);
+    cache.finish(r3, "c");
+    assertThat(cache.statistics().get(2).nanos, is(100100L));
+    assertThat(cache.statistics().get(0).nanos, is(10001L));
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+import org.apache.calcite.plan.hep.HepMatchOrder;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
+import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.test.RelBuilderTest;
+import org.apache.calcite.tools.RelBuilder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.apache.calcite.test.Matchers.hasTree;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+
+/**
+ * Test cases for {@link MultiJoinOptimizeDphypRule}.
+ */
+class MultiJoinOptimizeDphypRuleTest {
+  /** Tests that dynamic programming finds the same cost as an exhaustive
+   * search over all bushy trees without cartesian products, on random
+   * connected graphs. */
+  @Test void testOptimal() {
+    final Random random = new Random(1);
+    for (int iteration = 0; iteration < 50; iteration++) {
+      final int n = 2 + random.nextInt(6);
+      final double[] rowCounts = new double[n];
+      for (int i = 0; i < n; i++) {
+        rowCounts[i] = 1 + random.nextInt(10_000);
+      }
+      final MultiJoinOptimizeDphypRule.JoinEnumerator enumerator =
+          new MultiJoinOptimizeDphypRule.JoinEnumerator(rowCounts);
+      final List<Long> edges = new ArrayList<>();
+      for (int i = 1; i < n; i++) {
+        // A random spanning tree, plus random extra edges
+        edges.add(1L << i | 1L << random.nextInt(i));
+        if (random.nextInt(3) == 0) {
+          edges.add(1L << i | 1L << random.nextInt(n));
+        }
+      }
+      for (long edge : edges) {
+        if (Long.bitCount(edge) == 2) {
+          enumerator.addEdge(edge, 1d / (1 + random.nextInt(1_000)));
+        }
+      }
+      final MultiJoinOptimizeDphypRule.JoinPlan plan =
+          enumerator.dphyp(Long.MAX_VALUE);
+      assertThat(plan, notNullValue());
+      assertThat(plan.factors, is((1L << n) - 1));
+      final double bestCost =
+          exhaustiveCost(enumerator, edges, (1L << n) - 1, new HashMap<>());
+      assertThat(plan.cost, closeTo(bestCost, bestCost * 1e-9));
+      assertThat(plan.cost, lessThanOrEqualTo(enumerator.greedy().cost));
+    }
+  }
+
+  /** Returns the cost of the cheapest plan for a set of factors, considering
+   * every split into two connected sets that are connected to each other. */
+  private static double exhaustiveCost(
+      MultiJoinOptimizeDphypRule.JoinEnumerator enumerator, List<Long> edges,
+      long factors, Map<Long, Double> memo) {
+    if (Long.bitCount(factors) == 1) {
+      return 0d;
+    }
+    final Double cached = memo.get(factors);
+    if (cached != null) {
+      return cached;
+    }
+    double best = Double.POSITIVE_INFINITY;
+    for (long s1 = (factors - 1) & factors; s1 != 0;
+         s1 = (s1 - 1) & factors) {
+      final long s2 = factors & ~s1;
+      if (connected(edges, s1) && connected(edges, s2)
+          && connected(edges, s1, s2)) {
+        best = Math.min(best,
+            enumerator.rowCount(factors)
+                + exhaustiveCost(enumerator, edges, s1, memo)
+                + exhaustiveCost(enumerator, edges, s2, memo));
+      }
+    }
+    memo.put(factors, best);
+    return best;
+  }
+
+  private static boolean connected(List<Long> edges, long s1, long s2) {
+    for (long edge : edges) {
+      if ((edge & s1) != 0 && (edge & s2) != 0 && (edge & ~(s1 | s2)) == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean connected(List<Long> edges, long s) {
+    long reached = Long.lowestOneBit(s);
+    for (boolean changed = true; changed;) {
+      changed = false;
+      for (long edge : edges) {
+        if ((edge & ~s) == 0 && (edge & reached) != 0
+            && (edge & ~reached) != 0) {
+          reached |= edge;
+          changed = true;
+        }
+      }
+    }
+    return reached == s;
+  }
+
+  /** Tests that a star join of 20 tables is optimized by dynamic
+   * programming, and the fact table ends up being joined to the most
+   * selective dimensions first. */
+  @Test void testStar() {
+    final int n = 20;
+    final double[] rowCounts = new double[n];
+    rowCounts[0] = 1_000_000d;
+    for (int i = 1; i < n; i++) {
+      rowCounts[i] = 100d * i;
+    }
+    final MultiJoinOptimizeDphypRule.JoinEnumerator enumerator =
+        new MultiJoinOptimizeDphypRule.JoinEnumerator(rowCounts);
+    for (int i = 1; i < n; i++) {
+      // Dimension i filters the fact table down to 1 / (i + 1) of its rows.
+      enumerator.addEdge(1L | 1L << i, 1d / (100d * i) / (i + 1));
+    }
+    final MultiJoinOptimizeDphypRule.JoinPlan plan =
+        enumerator.dphyp(Long.MAX_VALUE);
+    assertThat(plan, notNullValue());
+    // DPhyp considers each pair of connected sub-graphs once: a star with 19
+    // dimensions has 19 * 2^18 of them
+    assertThat(enumerator.pairCount, is(19L << 18));
+    assertThat(plan.cost, lessThanOrEqualTo(enumerator.greedy().cost));
+    assertThat(plan.toString(), containsString("(((0 19) 18) 17)"));
+  }
+
+  /** Tests that if there are too many pairs, or the graph is not connected,
+   * dynamic programming gives up and the greedy algorithm finds a plan. */
+  @Test void testFallback() {
+    final double[] rowCounts = {10d, 20d, 30d, 40d, 50d, 60d};
+    final MultiJoinOptimizeDphypRule.JoinEnumerator clique =
+        new MultiJoinOptimizeDphypRule.JoinEnumerator(rowCounts);
+    for (int i = 0; i < rowCounts.length; i++) {
+      for (int j = i + 1; j < rowCounts.length; j++) {
+        clique.addEdge(1L << i | 1L << j, 0.1d);
+      }
+    }
+    assertThat(clique.dphyp(100), nullValue());
+    assertThat(clique.dphyp(Long.MAX_VALUE), notNullValue());
+
+    final MultiJoinOptimizeDphypRule.JoinEnumerator disconnected =
+        new MultiJoinOptimizeDphypRule.JoinEnumerator(rowCounts);
+    disconnected.addEdge(0b000011, 0.1d);
+    disconnected.addEdge(0b000110, 0.1d);
+    disconnected.addEdge(0b110000, 0.1d);
+    assertThat(disconnected.dphyp(Long.MAX_VALUE), nullValue());
+    final MultiJoinOptimizeDphypRule.JoinPlan plan = disconnected.greedy();
+    assertThat(plan.factors, is(0b111111L));
+    // Connected pairs are joined first; factor 3 has no edges, so it is
+    // joined to the smaller of the other two components
+    assertThat(plan.toString(), is("(((2 (1 0)) 3) (5 4))"));
+  }
+
+  /** Tests the rule on a join of three tables. EMP is joined first, and a
+   * Project restores the original field order. */
+  @Test void testRule() {
+    final RelBuilder b = RelBuilder.create(RelBuilderTest.config().build());
+    final RelNode rel = b.scan("BONUS")
+        .scan("EMP")
+        .join(JoinRelType.INNER,
+            b.equals(b.field(2, 0, "ENAME"), b.field(2, 1, "ENAME")))
+        .scan("DEPT")
+        .join(JoinRelType.INNER,
+            b.equals(b.field(2, 0, "DEPTNO"), b.field(2, 1, "DEPTNO")))
+        .filter(b.equals(b.field("DNAME"), b.literal("SALES")))
+        .build();
+    final HepProgram program = new HepProgramBuilder()
+        .addRuleInstance(CoreRules.FILTER_INTO_JOIN)
+        .addMatchOrder(HepMatchOrder.BOTTOM_UP)
+        .addRuleInstance(CoreRules.JOIN_TO_MULTI_JOIN)
+        .addRuleInstance(CoreRules.MULTI_JOIN_OPTIMIZE_DPHYP)
+        .build();
+    final HepPlanner planner = new HepPlanner(program);
+    planner.setRoot(rel);
+    final RelNode result = planner.findBestExp();
+    final String expected = ""
+        + "LogicalProject(ENAME=[$8], JOB=[$9], SAL=[$10], COMM=[$11], "
+        + "EMPNO=[$0], ENAME0=[$1], JOB0=[$2], MGR=[$3], HIREDATE=[$4], "
+        + "SAL0=[$5], COMM0=[$6], DEPTNO=[$7], DEPTNO0=[$12], DNAME=[$13], "
+        + "LOC=[$14])\n"
+        + "  LogicalJoin(condition=[=($7, $12)], joinType=[inner])\n"
+        + "    LogicalJoin(condition=[=($8, $1)], joinType=[inner])\n"
+        + "      LogicalTableScan(table=[[scott, EMP]])\n"
+        + "      LogicalTableScan(table=[[scott, BONUS]])\n"
+        + "    LogicalFilter(condition=[=($1, 'SALES')])\n"
+        + "      LogicalTableScan(table=[[scott, DEPT]])\n";
+    assertThat(result, hasTree(expected));
+    assertThat(result.getRowType(), is(rel.getRowType()));
+  }
+}
@@ -26,9 +26,13 @@
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 import org.apache.calcite.rel.type.RelDataTypeSystemImpl;
 import org.apache.calcite.sql.SqlCollation;
+import org.apache.calcite.sql.SqlFunction;
+import org.apache.calcite.sql.SqlFunctionCategory;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.type.BasicSqlType;
+import org.apache.calcite.sql.type.OperandTypes;
+import org.apache.calcite.sql.type.ReturnTypes;
 import org.apache.calcite.sql.type.SqlTypeFactoryImpl;
 import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.DateString;
@@ -794,6 +798,94 @@ private void checkBigDecimalLiteral(RexBuilder builder, String val) {
     assertThat(fieldAccess.accept(checker), is(true));
   }
 
+  /** Tests a {@link RexBuilder} that interns expressions. */
+  @Test void testIntern() {
+    final RelDataTypeFactory typeFactory =
+        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RexBuilder builder = new RexBuilder(typeFactory, true);
+    final RexBuilder builder2 = new RexBuilder(typeFactory, true);
+    assertThat(builder.isInterning(), is(true));
+    final RelDataType intType =
+        typeFactory.createSqlType(SqlTypeName.INTEGER);
+    final RelDataType nullableIntType =
+        typeFactory.createTypeWithNullability(intType, true);
+
+    // Structurally identical expressions are the same instance, even if
+    // created by different builders
+    final RexNode e1 =
+        builder.makeCall(SqlStdOperatorTable.PLUS,
+            builder.makeInputRef(intType, 0),
+            builder.makeExactLiteral(BigDecimal.ONE));
+    final RexNode e2 =
+        builder2.makeCall(SqlStdOperatorTable.PLUS,
+            builder2.makeInputRef(intType, 0),
+            builder2.makeExactLiteral(BigDecimal.ONE));
+    assertThat(e1 == e2, is(true));
+    assertThat(builder.makeLiteral("abc") == builder2.makeLiteral("abc"),
+        is(true));
+
+    // RexInputRef.equals ignores the type, but interning does not
+    final RexInputRef ref = builder.makeInputRef(intType, 0);
+    final RexInputRef nullableRef = builder.makeInputRef(nullableIntType, 0);
+    assertThat(ref.equals(nullableRef), is(true));
+    assertThat(ref == nullableRef, is(false));
+    assertThat(nullableRef.getType().isNullable(), is(true));
+
+    // RexCall.equals normalizes operand order, but interning does not
+    final RexInputRef ref1 = builder.makeInputRef(intType, 1);
+    final RexNode eq01 =
+        builder.makeCall(SqlStdOperatorTable.EQUALS, ref, ref1);
+    final RexNode eq10 =
+        builder.makeCall(SqlStdOperatorTable.EQUALS, ref1, ref);
+    assertThat(eq01 == eq10, is(false));
+    assertThat(eq10.toString(), is("=($1, $0)"));
+
+    // Expressions created elsewhere are interned on request, operands first
+    final RexNode e3 =
+        ((RexCall) e1).clone(e1.getType(),
+            ImmutableList.of(new RexInputRef(0, intType),
+                ((RexCall) e1).operands.get(1)));
+    assertThat(e3 == e1, is(false));
+    assertThat(builder.intern(e3) == e1, is(true));
+
+    // A builder that does not intern creates new instances
+    final RexBuilder plainBuilder = new RexBuilder(typeFactory, false);
+    assertThat(plainBuilder.isInterning(), is(false));
+    assertThat(
+        plainBuilder.makeInputRef(intType, 0)
+            == plainBuilder.makeInputRef(intType, 0),
+        is(false));
+    assertThat(plainBuilder.intern(e3) == e3, is(true));
+  }
+
+  /** Tests that an interning {@link RexBuilder} does not share a call
+   * between distinct functions that have the same name. */
+  @Test void testInternSameNamedFunctions() {
+    final RelDataTypeFactory typeFactory =
+        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RexBuilder builder = new RexBuilder(typeFactory, true);
+    final RelDataType intType =
+        typeFactory.createSqlType(SqlTypeName.INTEGER);
+    final SqlFunction f1 = udf();
+    final SqlFunction f2 = udf();
+    assertThat(f1.equals(f2), is(true));
+
+    final RexNode ref = builder.makeInputRef(intType, 0);
+    final RexNode call1 = builder.makeCall(f1, ref);
+    final RexNode call2 = builder.makeCall(f2, ref);
+    assertThat(call1 == call2, is(false));
+    assertThat(((RexCall) call1).getOperator() == f1, is(true));
+    assertThat(((RexCall) call2).getOperator() == f2, is(true));
+    assertThat(builder.makeCall(f2, ref) == call2, is(true));
+  }
+
+  /** Creates a user-defined function called "MY_FUN". */
+  private static SqlFunction udf() {
+    return new SqlFunction("MY_FUN", SqlKind.OTHER_FUNCTION,
+        ReturnTypes.INTEGER, null, OperandTypes.NUMERIC,
+        SqlFunctionCategory.USER_DEFINED_FUNCTION);
+  }
+
   /** Emulate a user defined type. */
   private static class UDT extends RelDataTypeImpl {
     UDT() {
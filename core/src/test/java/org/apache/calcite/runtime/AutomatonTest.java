@@ -26,6 +26,7 @@
 
 import java.util.AbstractList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -88,8 +89,8 @@ class AutomatonTest {
             .add("a", s -> s.get().contains("a"))
             .add("b", s -> s.get().contains("b"))
             .build();
-    final String expected = "[[b], [ab], [ab], [ab, a, ab], [a, ab], [b], [ab, b], [ab, a, ab, b], "
-        + "[a, ab, b], [b]]";
+    final String expected = "[[b], [ab], [ab, a, ab], [a, ab], [ab], [ab, a, ab, b], [a, ab, b], "
+        + "[ab, b], [b], [b]]";
     assertThat(matcher.match(rows), isMatchList(expected));
   }
 
@@ -106,7 +107,7 @@ class AutomatonTest {
             .add("a", s -> s.get().contains("a"))
             .add("b", s -> s.get().contains("b"))
             .build();
-    final String expected = "[[ab, a, ab], [a, ab], [ab, b], [ab, a, ab, b], [a, ab, b]]";
+    final String expected = "[[ab, a, ab], [a, ab], [ab, a, ab, b], [a, ab, b], [ab, b]]";
     assertThat(matcher.match(rows), isMatchList(expected));
   }
 
@@ -201,7 +202,7 @@ private void checkRepeat(int minRepeat, int maxRepeat, String pattern,
             .add("c", s -> s.get() == 'c')
             .build();
     assertThat(matcher.match(chars(rows)),
-        isMatchList("[[a, b, a, c], [a, b, a, c], [a, b, a, b, a, c]]"));
+        isMatchList("[[a, b, a, c], [a, b, a, b, a, c], [a, b, a, c]]"));
   }
 
   @Test void testResultWithLabels() {
@@ -232,6 +233,37 @@ private void checkRepeat(int minRepeat, int maxRepeat, String pattern,
         is("[[(A, a), (B, ab)], [(A, a), (B, b)]]"));
   }
 
+  /** Tests a long partition in which every row extends every live partial
+   * match. Each predicate must be evaluated at most once per row, however
+   * many partial matches are live. */
+  @Test void testLongPartition() {
+    // pattern(a+ b)
+    final Pattern p = Pattern.builder()
+        .symbol("a").plus()
+        .symbol("b").seq().build();
+
+    final int n = 1_000;
+    final StringBuilder buf = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      buf.append('a');
+    }
+    final String rows = buf.append('b').toString();
+    final AtomicInteger aCount = new AtomicInteger();
+    final AtomicInteger bCount = new AtomicInteger();
+    final Matcher<Character> matcher =
+        Matcher.<Character>builder(p.toAutomaton())
+            .add("a", s -> aCount.incrementAndGet() > 0 && s.get() == 'a')
+            .add("b", s -> bCount.incrementAndGet() > 0 && s.get() == 'b')
+            .build();
+    final List<Matcher.PartialMatch<Character>> matches =
+        matcher.match(chars(rows));
+    assertThat(matches.size(), is(n));
+    assertThat(matches.get(0).rows.size(), is(n + 1));
+    assertThat(matches.get(n - 1).rows.size(), is(2));
+    assertThat(aCount.get() <= n + 1, is(true));
+    assertThat(bCount.get() <= n + 1, is(true));
+  }
+
   /** Converts a string into an iterable collection of its characters. */
   private static Iterable<Character> chars(String s) {
     return new AbstractList<Character>() {
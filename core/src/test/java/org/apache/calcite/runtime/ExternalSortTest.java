@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit tests for {@link ExternalSort}.
+ */
+class ExternalSortTest {
+  private static final Function1<@Nullable Object[], Integer> KEY =
+      row -> (Integer) row[0];
+
+  /** Generates rows {@code [key, id, name]}; keys repeat, so that the test
+   * can check that the sort is stable. */
+  private static Enumerable<@Nullable Object[]> rows(int n, int keyCount) {
+    final Random random = new Random(n);
+    final List<@Nullable Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      rows.add(new Object[] {random.nextInt(keyCount), i, "name" + i});
+    }
+    return Linq4j.asEnumerable(rows);
+  }
+
+  private static List<String> toStrings(Enumerable<@Nullable Object[]> rows) {
+    try (Enumerator<@Nullable Object[]> enumerator = rows.enumerator()) {
+      return toStrings(enumerator);
+    }
+  }
+
+  private static List<String> toStrings(
+      Enumerator<@Nullable Object[]> enumerator) {
+    final List<String> list = new ArrayList<>();
+    while (enumerator.moveNext()) {
+      final @Nullable Object[] row = enumerator.current();
+      list.add(row[0] + ":" + row[1] + ":" + row[2]);
+    }
+    return list;
+  }
+
+  /** Sorts with a given budget and checks that the result is the same as an
+   * in-memory sort; returns the number of runs written to disk. */
+  private static int check(Enumerable<@Nullable Object[]> rows,
+      @Nullable Comparator<Integer> comparator, int offset, int fetch,
+      long memoryBudget) {
+    return check(rows, comparator, offset, fetch, memoryBudget,
+        ExternalSort.MERGE_FACTOR);
+  }
+
+  private static int check(Enumerable<@Nullable Object[]> rows,
+      @Nullable Comparator<Integer> comparator, int offset, int fetch,
+      long memoryBudget, int mergeFactor) {
+    final int[] runCount = {0};
+    try (Hook.Closeable ignore =
+             Hook.SORT_SPILL.addThread(
+                 (Consumer<Integer>) n -> runCount[0] += n)) {
+      final Enumerable<@Nullable Object[]> expected = comparator == null
+          ? EnumerableDefaults.orderBy(rows, KEY, Comparator.naturalOrder(),
+              offset, fetch)
+          : EnumerableDefaults.orderBy(rows, KEY, comparator, offset, fetch);
+      final Enumerable<@Nullable Object[]> actual =
+          ExternalSort.orderBy(rows, KEY, comparator, offset, fetch,
+              memoryBudget, mergeFactor);
+      assertThat(toStrings(actual), is(toStrings(expected)));
+    }
+    return runCount[0];
+  }
+
+  @Test void testInMemory() {
+    final Enumerable<@Nullable Object[]> rows = rows(1000, 100);
+    assertThat(check(rows, null, 0, Integer.MAX_VALUE, 10_000_000L), is(0));
+  }
+
+  @Test void testSpill() {
+    final Enumerable<@Nullable Object[]> rows = rows(5000, 100);
+    assertThat(check(rows, null, 0, Integer.MAX_VALUE, 20_000L) > 1, is(true));
+    assertThat(
+        check(rows, Comparator.reverseOrder(), 0, Integer.MAX_VALUE, 20_000L)
+            > 1,
+        is(true));
+  }
+
+  /** Tests a sort that writes more runs than it can merge at a time, and
+   * therefore needs intermediate merge passes. */
+  @Test void testMultiPassMerge() {
+    final Enumerable<@Nullable Object[]> rows = rows(5000, 100);
+    assertThat(check(rows, null, 0, Integer.MAX_VALUE, 2_000L, 2) > 2,
+        is(true));
+    assertThat(check(rows, null, 0, Integer.MAX_VALUE, 2_000L, 3) > 3,
+        is(true));
+    assertThat(
+        check(rows, Comparator.reverseOrder(), 0, Integer.MAX_VALUE, 5_000L,
+            4) > 4,
+        is(true));
+    assertThat(check(rows, null, 4000, 500, 2_000L, 3) > 3, is(true));
+  }
+
+  /** Tests that a sort with a fetch keeps only the first rows, and does not
+   * write to disk if they fit in the budget. */
+  @Test void testOffsetAndFetchInMemory() {
+    final Enumerable<@Nullable Object[]> rows = rows(5000, 1000);
+    assertThat(check(rows, null, 10, 50, 20_000L), is(0));
+    assertThat(check(rows, Comparator.reverseOrder(), 0, 100, 20_000L),
+        is(0));
+    assertThat(check(rows, null, 0, 0, 20_000L), is(0));
+  }
+
+  /** Tests that keys that are equal keep their order in a sort with a fetch,
+   * in which later rows replace rows in the heap. */
+  @Test void testFetchStable() {
+    final Enumerable<@Nullable Object[]> rows = rows(5000, 3);
+    assertThat(check(rows, null, 0, 100, 20_000L), is(0));
+    assertThat(check(rows, null, 1500, 100, 20_000L) > 1, is(true));
+  }
+
+  @Test void testSpillWithOffsetAndFetch() {
+    final Enumerable<@Nullable Object[]> rows = rows(5000, 1000);
+    assertThat(check(rows, null, 1000, 50, 20_000L) > 1, is(true));
+    assertThat(check(rows, null, 4990, 50, 20_000L) > 1, is(true));
+  }
+
+  /** Tests that the enumerator of a sort that has spilled can be reset
+   * part-way through, and then returns all rows again. */
+  @Test void testReset() {
+    final Enumerable<@Nullable Object[]> rows = rows(5000, 100);
+    final List<String> expected =
+        toStrings(
+            EnumerableDefaults.orderBy(rows, KEY, Comparator.naturalOrder(),
+                0, Integer.MAX_VALUE));
+    for (int mergeFactor : new int[] {ExternalSort.MERGE_FACTOR, 2}) {
+      final Enumerable<@Nullable Object[]> sorted =
+          ExternalSort.orderBy(rows, KEY, null, 0, Integer.MAX_VALUE,
+              2_000L, mergeFactor);
+      try (Enumerator<@Nullable Object[]> enumerator = sorted.enumerator()) {
+        for (int i = 0; i < 10; i++) {
+          assertThat(enumerator.moveNext(), is(true));
+        }
+        enumerator.reset();
+        assertThat(toStrings(enumerator), is(expected));
+        enumerator.reset();
+        assertThat(toStrings(enumerator), is(expected));
+      }
+    }
+  }
+
+  @Test void testEmpty() {
+    final Enumerable<@Nullable Object[]> rows = rows(0, 1);
+    assertThat(check(rows, null, 0, Integer.MAX_VALUE, 1L), is(0));
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.DataContexts;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link ParallelEnumerables}.
+ */
+class ParallelEnumerablesTest {
+  /** Returns a fragment that generates the integers in a range that belong
+   * to the current split. Every fragment it returns has the same class. */
+  private static Function1<DataContext, Enumerable<Integer>> range(int from,
+      int to) {
+    return root -> {
+      final ParallelEnumerables.SplitContext context =
+          (ParallelEnumerables.SplitContext) root;
+      final List<Integer> list = new ArrayList<>();
+      for (int i = from; i < to; i++) {
+        if (i % context.splitCount() == context.split()) {
+          list.add(i);
+        }
+      }
+      return Linq4j.asEnumerable(list);
+    };
+  }
+
+  @Test void testGatherInSplitOrder() {
+    final Enumerable<Integer> gathered =
+        ParallelEnumerables.gather(DataContexts.EMPTY, 2, 5,
+            root -> {
+              final int split =
+                  ((ParallelEnumerables.SplitContext) root).split();
+              final List<Integer> list = new ArrayList<>();
+              for (int i = 0; i < 2_000 * split; i++) {
+                list.add(split);
+              }
+              return Linq4j.asEnumerable(list);
+            });
+    final int[] counts = new int[5];
+    int previous = 0;
+    for (int split : gathered) {
+      assertThat(split >= previous, is(true));
+      previous = split;
+      counts[split]++;
+    }
+    assertThat(counts, is(new int[] {0, 2_000, 4_000, 6_000, 8_000}));
+  }
+
+  /** Tests that a gather streams its rows, so that a consumer that reads a
+   * few rows does not cause each split to read all of its rows. */
+  @Test void testGatherStreams() {
+    final int splitCount = 8;
+    final AtomicLong rowCount = new AtomicLong();
+    final Enumerable<Long> gathered =
+        ParallelEnumerables.gather(DataContexts.EMPTY, 2, splitCount,
+            root -> new AbstractEnumerable<Long>() {
+              @Override public Enumerator<Long> enumerator() {
+                return new Enumerator<Long>() {
+                  long i = -1;
+
+                  @Override public Long current() {
+                    return i;
+                  }
+
+                  @Override public boolean moveNext() {
+                    rowCount.incrementAndGet();
+                    return ++i < 1_000_000L;
+                  }
+
+                  @Override public void reset() {
+                    i = -1;
+                  }
+
+                  @Override public void close() {
+                  }
+                };
+              }
+            });
+    try (Enumerator<Long> enumerator = gathered.enumerator()) {
+      for (long i = 0; i < 10; i++) {
+        assertThat(enumerator.moveNext(), is(true));
+        assertThat(enumerator.current(), is(i));
+      }
+    }
+    // At most 2 splits are in progress (the parallelism), and each reads at
+    // most one chunk beyond those waiting to be consumed
+    final long maxRowCount = 2L * (ParallelEnumerables.MAX_CHUNKS + 1)
+        * (ParallelEnumerables.CHUNK_SIZE + 1);
+    assertThat(rowCount.get(), lessThanOrEqualTo(maxRowCount));
+  }
+
+  /** Tests that two exchanges in the same gather whose fragments have the
+   * same class are evaluated separately. */
+  @Test void testRepartitionTwoExchanges() {
+    final Function1<Integer, Integer> key = i -> i;
+    final Enumerable<Integer> gathered =
+        ParallelEnumerables.gather(DataContexts.EMPTY, 2, 3,
+            root -> ParallelEnumerables.repartition(root, "a", 2,
+                    range(0, 10), key)
+                .concat(
+                    ParallelEnumerables.repartition(root, "b", 2,
+                        range(100, 110), key)));
+    final List<Integer> list = new ArrayList<>(gathered.toList());
+    list.sort(null);
+    assertThat(list.toString(),
+        is("[0, 1, 2, 3, 4, 5, 6, 7, 8, 9, "
+            + "100, 101, 102, 103, 104, 105, 106, 107, 108, 109]"));
+  }
+
+  /** Tests that an exception thrown by a split is rethrown to the
+   * consumer. */
+  @Test void testGatherRethrows() {
+    final Enumerable<Integer> gathered =
+        ParallelEnumerables.gather(DataContexts.EMPTY, 2, 4,
+            root -> {
+              if (((ParallelEnumerables.SplitContext) root).split() == 2) {
+                throw new IllegalStateException("split 2 failed");
+              }
+              return Linq4j.asEnumerable(new Integer[] {1});
+            });
+    final IllegalStateException e =
+        assertThrows(IllegalStateException.class, gathered::toList);
+    assertThat(e.getMessage(), is("split 2 failed"));
+  }
+}
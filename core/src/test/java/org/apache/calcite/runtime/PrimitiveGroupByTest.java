@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.runtime.PrimitiveGroupBy.Column;
+import org.apache.calcite.runtime.PrimitiveGroupBy.Kind;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link PrimitiveGroupBy}.
+ */
+class PrimitiveGroupByTest {
+  /** Column 0 of a row {@code [Integer, Long, Double]}, which may be null. */
+  private static final Column<@Nullable Object[]> C0 =
+      PrimitiveGroupBy.longColumn(row -> (Integer) row[0],
+          row -> row[0] == null, Primitive.INT);
+
+  /** Column 1, a not-null {@code Long}. */
+  private static final Column<@Nullable Object[]> C1 =
+      PrimitiveGroupBy.longColumn(row -> (Long) row[1], null,
+          Primitive.LONG);
+
+  /** Column 2, a {@code Double} which may be null. */
+  private static final Column<@Nullable Object[]> C2 =
+      PrimitiveGroupBy.doubleColumn(row -> (Double) row[2],
+          row -> row[2] == null, Primitive.DOUBLE);
+
+  private static List<String> toStrings(Enumerable<@Nullable Object[]> rows) {
+    final List<String> list = new ArrayList<>();
+    for (@Nullable Object[] row : rows) {
+      list.add(Arrays.toString(row));
+    }
+    return list;
+  }
+
+  @Test void testOneKey() {
+    final Enumerable<@Nullable Object[]> rows =
+        Linq4j.asEnumerable(
+            Arrays.<@Nullable Object[]>asList(
+                new Object[] {20, 5L, 1.5},
+                new Object[] {10, 3L, null},
+                new Object[] {null, 7L, 2.5},
+                new Object[] {20, -4L, null},
+                new Object[] {10, 6L, null},
+                new Object[] {null, 1L, -1D}));
+    final Enumerable<@Nullable Object[]> result =
+        PrimitiveGroupBy.groupBy(rows, ImmutableList.of(C0),
+            ImmutableList.of(
+                PrimitiveGroupBy.agg(Kind.COUNT, null, Primitive.LONG),
+                PrimitiveGroupBy.agg(Kind.COUNT, C2, Primitive.LONG),
+                PrimitiveGroupBy.agg(Kind.SUM, C1, Primitive.LONG),
+                PrimitiveGroupBy.agg(Kind.MIN, C1, Primitive.LONG),
+                PrimitiveGroupBy.agg(Kind.MAX, C2, Primitive.DOUBLE),
+                PrimitiveGroupBy.agg(Kind.SUM, C2, Primitive.DOUBLE),
+                PrimitiveGroupBy.agg(Kind.SUM0, C2, Primitive.DOUBLE)));
+    // Groups are in order of their first row; a null key is a group;
+    // SUM and MAX of no values are null, $SUM0 is zero.
+    assertThat(toStrings(result),
+        is(
+            Arrays.asList("[20, 2, 1, 1, -4, 1.5, 1.5, 1.5]",
+                "[10, 2, 0, 9, 3, null, null, 0.0]",
+                "[null, 2, 2, 8, 1, 2.5, 1.5, 1.5]")));
+  }
+
+  @Test void testTwoKeys() {
+    final Enumerable<@Nullable Object[]> rows =
+        Linq4j.asEnumerable(
+            Arrays.<@Nullable Object[]>asList(
+                new Object[] {1, 2L, null},
+                new Object[] {2, 1L, null},
+                new Object[] {null, 2L, null},
+                new Object[] {1, 2L, null},
+                new Object[] {0, 2L, null}));
+    final Enumerable<@Nullable Object[]> result =
+        PrimitiveGroupBy.groupBy(rows, ImmutableList.of(C0, C1),
+            ImmutableList.of(
+                PrimitiveGroupBy.agg(Kind.COUNT, null, Primitive.LONG)));
+    // [null, 2] and [0, 2] are different keys, even though a null key is
+    // stored as 0.
+    assertThat(toStrings(result),
+        is(
+            Arrays.asList("[1, 2, 2]", "[2, 1, 1]", "[null, 2, 1]",
+                "[0, 2, 1]")));
+  }
+
+  /** Tests that a sum wraps exactly as arithmetic on the result type
+   * would. */
+  @Test void testSumOverflow() {
+    final Enumerable<@Nullable Object[]> rows =
+        Linq4j.asEnumerable(
+            Arrays.<@Nullable Object[]>asList(
+                new Object[] {Integer.MAX_VALUE, 0L, null},
+                new Object[] {Integer.MAX_VALUE, 0L, null}));
+    final Enumerable<@Nullable Object[]> result =
+        PrimitiveGroupBy.groupBy(rows, ImmutableList.of(C1),
+            ImmutableList.of(
+                PrimitiveGroupBy.agg(Kind.SUM, C0, Primitive.INT)));
+    assertThat(toStrings(result), is(Arrays.asList("[0, -2]")));
+  }
+
+  /** Tests many groups, so that the table and the accumulators grow, and
+   * compares with a {@link HashMap}. */
+  @Test void testManyGroups() {
+    final Random random = new Random(0);
+    final List<@Nullable Object[]> list = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      final int k = random.nextInt(10_000);
+      list.add(new Object[] {k % 7 == 0 ? null : k, (long) (k * 31L) << 32,
+          (double) i});
+    }
+    final Map<List<@Nullable Object>, long[]> expected = new LinkedHashMap<>();
+    for (@Nullable Object[] row : list) {
+      expected.computeIfAbsent(Arrays.asList(row[0], row[1]),
+          k -> new long[2]);
+      final long[] acc = expected.get(Arrays.asList(row[0], row[1]));
+      acc[0]++;
+      acc[1] += (long) (double) (Double) row[2];
+    }
+    final Enumerable<@Nullable Object[]> result =
+        PrimitiveGroupBy.groupBy(Linq4j.asEnumerable(list),
+            ImmutableList.of(C0, C1),
+            ImmutableList.of(
+                PrimitiveGroupBy.agg(Kind.COUNT, null, Primitive.LONG),
+                PrimitiveGroupBy.agg(Kind.SUM, C2, Primitive.DOUBLE)));
+    final List<String> expectedStrings = new ArrayList<>();
+    expected.forEach((k, acc) ->
+        expectedStrings.add(
+            Arrays.toString(new Object[] {k.get(0), k.get(1), acc[0],
+                (double) acc[1]})));
+    assertThat(toStrings(result), is(expectedStrings));
+  }
+
+  @Test void testInvalid() {
+    assertThrows(IllegalArgumentException.class, () ->
+        PrimitiveGroupBy.agg(Kind.SUM, null, Primitive.LONG));
+    assertThrows(IllegalArgumentException.class, () ->
+        PrimitiveGroupBy.groupBy(Linq4j.emptyEnumerable(),
+            ImmutableList.of(C2), ImmutableList.of()));
+    assertThrows(IllegalArgumentException.class, () ->
+        PrimitiveGroupBy.groupBy(Linq4j.emptyEnumerable(),
+            ImmutableList.of(C0, C1, C0), ImmutableList.of()));
+  }
+}
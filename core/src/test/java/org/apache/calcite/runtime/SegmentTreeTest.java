@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.BinaryOperator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests {@link SegmentTree}.
+ */
+class SegmentTreeTest {
+  @Test void testEmpty() {
+    final SegmentTree tree = new SegmentTree(new Object[0], SegmentTree.MIN);
+    assertThat(tree.query(0, -1), nullValue());
+  }
+
+  @Test void testSimple() {
+    final Object[] values = {5, null, 3, 8, null, 3, 1};
+    final SegmentTree min = new SegmentTree(values, SegmentTree.MIN);
+    final SegmentTree max = new SegmentTree(values, SegmentTree.MAX);
+    assertThat(min.query(0, 6), is(1));
+    assertThat(max.query(0, 6), is(8));
+    assertThat(min.query(1, 1), nullValue());
+    assertThat(min.query(4, 4), nullValue());
+    assertThat(min.query(1, 2), is(3));
+    assertThat(max.query(4, 6), is(3));
+    // Empty range
+    assertThat(min.query(3, 2), nullValue());
+    assertThat(min.query(-1, 2), nullValue());
+  }
+
+  /** Tests that if values are equal, the first is returned, as
+   * {@link SqlFunctions#lesser} and {@link SqlFunctions#greater} do. */
+  @Test void testTies() {
+    // Equal according to compareTo, but not the same instance
+    final BigDecimal a0 = new BigDecimal("1.0");
+    final BigDecimal a1 = new BigDecimal("1.00");
+    final Object[] values = {a0, a1, a0};
+    final SegmentTree min = new SegmentTree(values, SegmentTree.MIN);
+    final SegmentTree max = new SegmentTree(values, SegmentTree.MAX);
+    assertThat(min.query(0, 2), sameInstance(a0));
+    assertThat(min.query(1, 2), sameInstance(a1));
+    assertThat(max.query(1, 2), sameInstance(a1));
+  }
+
+  /** Tests that the combining function is applied to values in their
+   * original order, by concatenating strings, which is associative but not
+   * commutative. */
+  @Test void testOrder() {
+    final String[] values = "abcdefghijk".split("");
+    final SegmentTree tree = new SegmentTree(values, (s0, s1) -> s0 + "" + s1);
+    for (int start = 0; start < values.length; start++) {
+      for (int end = start; end < values.length; end++) {
+        assertThat(tree.query(start, end),
+            is(String.join("", values).substring(start, end + 1)));
+      }
+    }
+  }
+
+  /** Compares every range of random arrays with a brute-force scan. */
+  @Test void testRandom() {
+    final Random random = new Random(1);
+    for (int n = 1; n < 40; n++) {
+      final @Nullable Object[] values = new Object[n];
+      for (int i = 0; i < n; i++) {
+        values[i] = random.nextInt(5) == 0 ? null : random.nextInt(100);
+      }
+      checkAll(values, SegmentTree.MIN);
+      checkAll(values, SegmentTree.MAX);
+    }
+  }
+
+  /** Tests {@link SegmentTree.OfLong} and {@link SegmentTree.OfDouble}
+   * against the object tree, over random arrays with nulls. */
+  @Test void testPrimitive() {
+    final Random random = new Random(2);
+    for (int n = 0; n < 40; n++) {
+      final @Nullable Object[] values = new Object[n];
+      final long[] longValues = new long[n];
+      final double[] doubleValues = new double[n];
+      final BitSet nulls = new BitSet();
+      for (int i = 0; i < n; i++) {
+        if (random.nextInt(5) == 0) {
+          nulls.set(i);
+          // Garbage that the tree must ignore
+          longValues[i] = Long.MIN_VALUE;
+          doubleValues[i] = Double.MAX_VALUE;
+        } else {
+          final long v = random.nextInt(100) - 50;
+          values[i] = v;
+          longValues[i] = v;
+          doubleValues[i] = v;
+        }
+      }
+      final SegmentTree min = new SegmentTree(values, SegmentTree.MIN);
+      final SegmentTree max = new SegmentTree(values, SegmentTree.MAX);
+      final SegmentTree.OfLong longMin =
+          new SegmentTree.OfLong(longValues, nulls, SegmentTree.OfLong.MIN);
+      final SegmentTree.OfLong longMax =
+          new SegmentTree.OfLong(longValues, nulls, SegmentTree.OfLong.MAX);
+      final SegmentTree.OfDouble doubleMin =
+          new SegmentTree.OfDouble(doubleValues, nulls,
+              SegmentTree.OfDouble.MIN);
+      final SegmentTree.OfDouble doubleMax =
+          new SegmentTree.OfDouble(doubleValues, nulls,
+              SegmentTree.OfDouble.MAX);
+      for (int start = -1; start <= n; start++) {
+        for (int end = start - 1; end < n; end++) {
+          assertThat(longMin.query(start, end), is(min.query(start, end)));
+          assertThat(longMax.query(start, end), is(max.query(start, end)));
+          assertThat(doubleMin.query(start, end),
+              is(toDouble(min.query(start, end))));
+          assertThat(doubleMax.query(start, end),
+              is(toDouble(max.query(start, end))));
+        }
+      }
+    }
+  }
+
+  private static @Nullable Double toDouble(@Nullable Object o) {
+    return o == null ? null : ((Long) o).doubleValue();
+  }
+
+  private static void checkAll(@Nullable Object[] values,
+      BinaryOperator<Object> combiner) {
+    final SegmentTree tree = new SegmentTree(values, combiner);
+    for (int start = 0; start < values.length; start++) {
+      for (int end = start; end < values.length; end++) {
+        @Nullable Object expected = null;
+        for (int i = start; i <= end; i++) {
+          if (values[i] != null) {
+            expected = expected == null ? values[i]
+                : combiner.apply(expected, values[i]);
+          }
+        }
+        assertThat(tree.query(start, end), is(expected));
+      }
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit tests for {@link SpillableHashJoin}.
+ */
+class SpillableHashJoinTest {
+  private static final Function2<@Nullable Object[], @Nullable Object[], String>
+      RESULT_SELECTOR = (o, i) -> Arrays.toString(o) + Arrays.toString(i);
+
+  private static final Predicate2<@Nullable Object[], @Nullable Object[]>
+      PREDICATE = (o, i) -> ((Integer) o[1] + (Integer) i[1]) % 3 != 0;
+
+  /** Generates rows {@code [key, id]}; about 1 in 20 keys is null. */
+  private static Enumerable<@Nullable Object[]> rows(Random random, int n,
+      int keyCount) {
+    final List<@Nullable Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final Integer key = random.nextInt(20) == 0 ? null : random.nextInt(keyCount);
+      rows.add(new Object[] {key, i});
+    }
+    return Linq4j.asEnumerable(rows);
+  }
+
+  private static List<String> sorted(Enumerable<String> enumerable) {
+    return enumerable.toList().stream().sorted().collect(Collectors.toList());
+  }
+
+  private static List<String> sorted(Enumerator<String> enumerator) {
+    final List<String> list = new ArrayList<>();
+    while (enumerator.moveNext()) {
+      list.add(enumerator.current());
+    }
+    list.sort(null);
+    return list;
+  }
+
+  /** Checks that, for every join type, with and without a predicate, a join
+   * that spills returns the same rows as a join in memory. */
+  private static int checkJoins(Enumerable<@Nullable Object[]> outer,
+      Enumerable<@Nullable Object[]> inner, long memoryBudget) {
+    final int[] spillCount = {0};
+    try (Hook.Closeable ignore =
+             Hook.HASH_JOIN_SPILL.addThread(
+                 (Consumer<SpillableHashJoin.Spill>) spill -> ++spillCount[0])) {
+      for (boolean nullsOnLeft : new boolean[] {false, true}) {
+        for (boolean nullsOnRight : new boolean[] {false, true}) {
+          for (Predicate2<@Nullable Object[], @Nullable Object[]> predicate
+              : Arrays.asList(null, PREDICATE)) {
+            final Enumerable<String> expected =
+                EnumerableDefaults.hashJoin(outer, inner, o -> o[0], i -> i[0],
+                    RESULT_SELECTOR, null, nullsOnLeft, nullsOnRight, predicate);
+            final Enumerable<String> actual =
+                SpillableHashJoin.hashJoin(outer, inner, o -> o[0], i -> i[0],
+                    RESULT_SELECTOR, null, nullsOnLeft, nullsOnRight, predicate,
+                    memoryBudget);
+            assertThat(sorted(actual), is(sorted(expected)));
+          }
+        }
+      }
+    }
+    return spillCount[0];
+  }
+
+  @Test void testInMemory() {
+    final Random random = new Random(1);
+    final Enumerable<@Nullable Object[]> outer = rows(random, 200, 50);
+    final Enumerable<@Nullable Object[]> inner = rows(random, 100, 50);
+    assertThat(checkJoins(outer, inner, 1_000_000L), is(0));
+    assertThat(checkJoins(outer, inner, 0L), is(0));
+  }
+
+  @Test void testSpill() {
+    final Random random = new Random(2);
+    final Enumerable<@Nullable Object[]> outer = rows(random, 2000, 500);
+    final Enumerable<@Nullable Object[]> inner = rows(random, 1000, 500);
+    assertThat(checkJoins(outer, inner, 10_000L) > 0, is(true));
+  }
+
+  /** Tests that the enumerator of a join that has spilled can be reset
+   * part-way through, and then returns all rows again, without partitioning
+   * its inputs again. */
+  @Test void testReset() {
+    final Random random = new Random(4);
+    final Enumerable<@Nullable Object[]> outer = rows(random, 2000, 500);
+    final Enumerable<@Nullable Object[]> inner = rows(random, 1000, 500);
+    final List<String> expected =
+        sorted(
+            EnumerableDefaults.hashJoin(outer, inner, o -> o[0], i -> i[0],
+                RESULT_SELECTOR, null, false, false, null));
+    final List<SpillableHashJoin.Spill> spills = new ArrayList<>();
+    try (Hook.Closeable ignore =
+             Hook.HASH_JOIN_SPILL.addThread(
+                 (Consumer<SpillableHashJoin.Spill>) spills::add)) {
+      final Enumerable<String> join =
+          SpillableHashJoin.hashJoin(outer, inner, o -> o[0], i -> i[0],
+              RESULT_SELECTOR, null, false, false, null, 10_000L);
+      try (Enumerator<String> enumerator = join.enumerator()) {
+        for (int i = 0; i < 10; i++) {
+          assertThat(enumerator.moveNext(), is(true));
+        }
+        enumerator.reset();
+        assertThat(sorted(enumerator), is(expected));
+        enumerator.reset();
+        assertThat(sorted(enumerator), is(expected));
+      }
+    }
+    assertThat(spills.stream().filter(spill -> spill.depth == 0).count(),
+        is(1L));
+  }
+
+  /** Tests a join in which every inner row has the same key, so partitioning
+   * never makes a partition small enough; after
+   * {@link SpillableHashJoin#MAX_DEPTH} levels, the join gives up and joins in
+   * memory. */
+  @Test void testSkew() {
+    final Random random = new Random(3);
+    final Enumerable<@Nullable Object[]> outer = rows(random, 100, 2);
+    final Enumerable<@Nullable Object[]> inner = rows(random, 500, 1);
+    assertThat(checkJoins(outer, inner, 1_000L) > 0, is(true));
+  }
+}
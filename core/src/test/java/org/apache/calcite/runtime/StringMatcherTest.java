@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link StringMatcher}.
+ */
+class StringMatcherTest {
+  /** Returns all strings of up to {@code maxLength} characters drawn from
+   * {@code chars}. */
+  private static List<String> strings(String chars, int maxLength) {
+    final List<String> list = new ArrayList<>();
+    list.add("");
+    for (int i = 0; i < list.size(); i++) {
+      final String s = list.get(i);
+      if (s.length() < maxLength) {
+        for (char c : chars.toCharArray()) {
+          list.add(s + c);
+        }
+      }
+    }
+    return list;
+  }
+
+  @Test void testLike() {
+    final StringMatcher prefix = StringMatcher.like("ab%");
+    assertThat(prefix.matches("abc"), is(true));
+    assertThat(prefix.matches("ab"), is(true));
+    assertThat(prefix.matches("xab"), is(false));
+    final StringMatcher suffix = StringMatcher.like("%ab");
+    assertThat(suffix.matches("xab"), is(true));
+    assertThat(suffix.matches("abx"), is(false));
+    final StringMatcher contains = StringMatcher.like("%ab%");
+    assertThat(contains.matches("xaby"), is(true));
+    assertThat(contains.matches("xa\nby"), is(false));
+    final StringMatcher exact = StringMatcher.like("a!%b", "!");
+    assertThat(exact.matches("a%b"), is(true));
+    assertThat(exact.matches("axb"), is(false));
+    // Middle literals must not overlap the suffix
+    final StringMatcher segments = StringMatcher.like("a%ba%ab");
+    assertThat(segments.matches("abab"), is(false));
+    assertThat(segments.matches("abaab"), is(true));
+    assertThat(StringMatcher.like("%").matches("a\nb"), is(true));
+    // Without an escape, NUL is an ordinary character
+    assertThat(StringMatcher.like("a\u0000b").matches("a\u0000b"), is(true));
+    assertThat(StringMatcher.like("a\u0000b").matches("ab"), is(false));
+    assertThat(StringMatcher.like("%\u0000").matches("a\u0000"), is(true));
+  }
+
+  /** Checks that matchers that do not use a regular expression give the same
+   * result as the regular expression generated for the pattern. */
+  @Test void testLikeAgreesWithRegex() {
+    final List<String> values = strings("ab\n%", 4);
+    for (String pattern : strings("ab%_!", 4)) {
+      final String regex;
+      try {
+        regex = Like.sqlToRegexLike(pattern, "!");
+      } catch (RuntimeException e) {
+        assertThrows(RuntimeException.class,
+            () -> StringMatcher.like(pattern, "!"));
+        continue;
+      }
+      final StringMatcher matcher = StringMatcher.like(pattern, "!");
+      for (String value : values) {
+        assertEquals(Pattern.matches(regex, value), matcher.matches(value),
+            () -> "'" + value + "' LIKE '" + pattern + "' ESCAPE '!'");
+      }
+    }
+  }
+
+  @Test void testCache() {
+    assertThat(StringMatcher.like("a%c"),
+        sameInstance(StringMatcher.like("a%c")));
+    assertThat(StringMatcher.regex("a.c", Pattern.CASE_INSENSITIVE),
+        sameInstance(StringMatcher.regex("a.c", Pattern.CASE_INSENSITIVE)));
+    assertThat(StringMatcher.regex("a.c", 0).flags(), is(0));
+  }
+
+  @Test void testOther() {
+    assertThat(StringMatcher.ilike("A%c").matches("abC"), is(true));
+    assertThat(StringMatcher.similar("(a|b)%").matches("bcd"), is(true));
+    assertThat(StringMatcher.similar("(a|b)%").matches("cd"), is(false));
+    assertThat(StringMatcher.rlike("b+").matches("abbc"), is(true));
+    assertThat(StringMatcher.posixRegex("^B", false).matches("bc"), is(true));
+    assertThat(StringMatcher.posixRegex("^B", true).matches("bc"), is(false));
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.DataContexts;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.plan.volcano.RelSubset;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+/**
+ * Test cases for {@link ColumnStatistics} and
+ * {@link Statistics#analyze(ScannableTable, DataContext, int)}.
+ */
+class ColumnStatisticsTest {
+  /** Creates a table whose first column has the values 0 to 999 plus 500
+   * extra occurrences of 7, and whose second column is null in every fourth
+   * row and otherwise one of 5 strings. */
+  private static AnalyzableTable skewedTable() {
+    final List<@Nullable Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 1500; i++) {
+      rows.add(
+          new Object[] {i < 1000 ? i : 7, i % 4 == 0 ? null : "s" + i % 5});
+    }
+    return new AnalyzableTable(rows);
+  }
+
+  private static Statistic analyze(AnalyzableTable table) throws SQLException {
+    try (Connection connection = DriverManager.getConnection("jdbc:calcite:")) {
+      final CalciteConnection calciteConnection =
+          connection.unwrap(CalciteConnection.class);
+      final DataContext root =
+          DataContexts.of(calciteConnection, calciteConnection.getRootSchema());
+      return Statistics.analyze(table, root, 1000);
+    }
+  }
+
+  @Test void testCollector() {
+    final ColumnStatistics.Collector collector =
+        new ColumnStatistics.Collector(100, new Random(0));
+    for (int i = 0; i < 10; i++) {
+      collector.add(null);
+      collector.add("a");
+      collector.add("a");
+      collector.add("b");
+      collector.add("c");
+    }
+    final ColumnStatistics statistics = collector.finish(10, 10);
+    assertThat(statistics.nullFraction, is(0.2d));
+    assertThat(statistics.distinctCount, is(3d));
+    assertThat(statistics.mostCommonValues,
+        is(ImmutableList.<Comparable>of("a", "b", "c")));
+    assertThat(statistics.mostCommonFrequencies, is(ImmutableList.of(0.4d, 0.2d, 0.2d)));
+    assertThat(statistics.histogram.isEmpty(), is(true));
+    assertThat(statistics.selectivityEquals("a"), is(0.4d));
+    assertThat(statistics.selectivityEquals("z"), is(0d));
+    assertThat(statistics.selectivityLessThan("b", true), closeTo(0.6d, 1e-9));
+    assertThat(statistics.selectivityGreaterThan("b", false),
+        closeTo(0.2d, 1e-9));
+  }
+
+  @Test void testAnalyze() throws SQLException {
+    final Statistic statistic = analyze(skewedTable());
+    assertThat(statistic.getRowCount(), is(1500d));
+
+    final ColumnStatistics c0 = statistic.getColumnStatistics(0);
+    assertThat(c0, notNullValue());
+    assertThat(c0.nullFraction, is(0d));
+    assertThat(c0.distinctCount, is(1000d));
+    assertThat(c0.mostCommonValues, is(ImmutableList.<Comparable>of(7)));
+    assertThat(c0.mostCommonFrequencies.get(0), closeTo(501d / 1500d, 0.05d));
+    assertThat(c0.histogram.size(), is(Statistics.HISTOGRAM_BUCKET_COUNT + 1));
+    assertThat(c0.selectivityEquals(7), closeTo(501d / 1500d, 0.05d));
+    assertThat(c0.selectivityEquals(8), closeTo(1d / 1500d, 0.001d));
+    assertThat(c0.selectivityEquals(5000), is(0d));
+    assertThat(c0.selectivityLessThan(500, false),
+        closeTo(1000d / 1500d, 0.05d));
+    assertThat(c0.selectivityGreaterThan(900, true),
+        closeTo(100d / 1500d, 0.05d));
+
+    final ColumnStatistics c1 = statistic.getColumnStatistics(1);
+    assertThat(c1, notNullValue());
+    assertThat(c1.nullFraction, closeTo(0.25d, 0.01d));
+    assertThat(c1.distinctCount, is(5d));
+    assertThat(c1.mostCommonValues.size(), is(5));
+    assertThat(c1.selectivityEquals("s1"), closeTo(0.15d, 0.05d));
+    assertThat(statistic.getColumnStatistics(2), nullValue());
+  }
+
+  /** Tests that statistics survive a round trip through JSON. */
+  @Test void testJson() throws Exception {
+    final Statistic statistic = analyze(skewedTable());
+    final String json = Statistics.toJson(statistic, 2);
+    final Statistic statistic2 = Statistics.fromJson(json);
+    assertThat(statistic2.getRowCount(), is(1500d));
+    assertThat(Statistics.toJson(statistic2, 2), is(json));
+    final ColumnStatistics c0 = statistic2.getColumnStatistics(0);
+    assertThat(c0, notNullValue());
+    assertThat(c0.selectivityLessThan(500, false),
+        is(statistic.getColumnStatistics(0).selectivityLessThan(500, false)));
+  }
+
+  /** Tests that metadata handlers use column statistics to estimate
+   * selectivity, distinct row count and population size. */
+  @Test void testMetadata() throws SQLException {
+    final AnalyzableTable table = skewedTable();
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    rootSchema.add("T", table);
+    final FrameworkConfig config =
+        Frameworks.newConfigBuilder().defaultSchema(rootSchema).build();
+    final RelBuilder b = RelBuilder.create(config);
+    final RelNode scan = b.scan("T").build();
+    final RelMetadataQuery mq = scan.getCluster().getMetadataQuery();
+
+    // Without statistics, the estimates are guesses.
+    final RelNode filter7 =
+        b.push(scan).filter(b.equals(b.field("I"), b.literal(7))).build();
+    assertThat(mq.getRowCount(filter7), is(100d * 0.15d));
+    assertThat(mq.getPopulationSize(scan, ImmutableBitSet.of(1)), nullValue());
+    assertThat(
+        RelMdUtil.estimateDistinctCount(scan.getTable(), ImmutableBitSet.of()),
+        nullValue());
+
+    // Analyze the table, and use a new cluster so that no metadata is cached.
+    table.statistic = analyze(table);
+    final RelBuilder b2 = RelBuilder.create(config);
+    final RelNode scan2 = b2.scan("T").build();
+    final RelNode filter7b =
+        b2.push(scan2).filter(b2.equals(b2.field("I"), b2.literal(7))).build();
+    final RelNode filter8 =
+        b2.push(scan2).filter(b2.equals(b2.field("I"), b2.literal(8))).build();
+    final RelNode filterRange =
+        b2.push(scan2)
+            .filter(b2.between(b2.field("I"), b2.literal(100), b2.literal(299)))
+            .build();
+    final RelNode filterNull =
+        b2.push(scan2).filter(b2.isNull(b2.field("S"))).build();
+    final RelMetadataQuery mq2 = filter7b.getCluster().getMetadataQuery();
+    assertThat(mq2.getRowCount(filter7b), closeTo(501d, 75d));
+    assertThat(mq2.getRowCount(filter8), closeTo(1d, 0.5d));
+    assertThat(mq2.getRowCount(filterRange), closeTo(200d, 30d));
+    assertThat(mq2.getRowCount(filterNull), closeTo(375d, 15d));
+    assertThat(mq2.getDistinctRowCount(scan2, ImmutableBitSet.of(1), null),
+        is(6d));
+    assertThat(mq2.getPopulationSize(scan2, ImmutableBitSet.of(0, 1)),
+        is(1500d));
+    assertThat(
+        RelMdUtil.estimateDistinctCount(scan2.getTable(), ImmutableBitSet.of()),
+        is(1d));
+  }
+
+  /** Tests that the selectivity of a {@link RelSubset} is a guess, as for
+   * any other expression, unless it scans a table that has column
+   * statistics, in which case the subset's best or original expression
+   * estimates it. */
+  @Test void testSelectivityOfSubset() throws SQLException {
+    final AnalyzableTable table = skewedTable();
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    rootSchema.add("T", table);
+    final FrameworkConfig config =
+        Frameworks.newConfigBuilder().defaultSchema(rootSchema).build();
+    for (boolean analyzed : new boolean[] {false, true}) {
+      if (analyzed) {
+        table.statistic = analyze(table);
+      }
+      // Use a new cluster each time, so that no metadata is cached.
+      final RelBuilder b = RelBuilder.create(config);
+      final RexNode condition =
+          b.scan("T").equals(b.field("I"), b.literal(7));
+      final RelNode filter = b.filter(condition).build();
+      final RelSubset subset =
+          (RelSubset) filter.getCluster().getPlanner()
+              .ensureRegistered(filter, null);
+      final RelMetadataQuery mq = filter.getCluster().getMetadataQuery();
+
+      // The filter knows that its rows satisfy its own condition, but
+      // without statistics the subset does not look at the filter.
+      assertThat(mq.getSelectivity(filter, condition), is(1d));
+      assertThat(mq.getSelectivity(subset, condition),
+          is(analyzed ? 1d : RelMdUtil.guessSelectivity(condition)));
+    }
+  }
+
+  /** Table whose statistic can be replaced by the result of analyzing
+   * it. */
+  private static class AnalyzableTable extends AbstractTable
+      implements ScannableTable {
+    final List<@Nullable Object[]> rows;
+    Statistic statistic = Statistics.UNKNOWN;
+
+    AnalyzableTable(List<@Nullable Object[]> rows) {
+      this.rows = rows;
+    }
+
+    @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("I", SqlTypeName.INTEGER)
+          .add("S", SqlTypeName.VARCHAR).nullable(true)
+          .build();
+    }
+
+    @Override public Statistic getStatistic() {
+      return statistic;
+    }
+
+    @Override public Enumerable<@Nullable Object[]> scan(DataContext root) {
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+}
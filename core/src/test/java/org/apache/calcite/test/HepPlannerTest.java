@@ -18,6 +18,8 @@
 
 import org.apache.calcite.plan.RelOptListener;
 import org.apache.calcite.plan.RelOptMaterialization;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelRule;
 import org.apache.calcite.plan.hep.HepMatchOrder;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
@@ -26,6 +28,7 @@
 import org.apache.calcite.rel.RelRoot;
 import org.apache.calcite.rel.externalize.RelDotWriter;
 import org.apache.calcite.rel.logical.LogicalIntersect;
+import org.apache.calcite.rel.logical.LogicalProject;
 import org.apache.calcite.rel.logical.LogicalUnion;
 import org.apache.calcite.rel.rules.CoerceInputsRule;
 import org.apache.calcite.rel.rules.CoreRules;
@@ -33,10 +36,14 @@
 
 import com.google.common.collect.ImmutableList;
 
+import org.immutables.value.Value;
 import org.junit.jupiter.api.Test;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.apache.calcite.test.Matchers.isLinux;
 
@@ -341,6 +348,28 @@ private void assertIncludesExactlyOnce(String message, String digest, String sub
     assertThat(applyTimes2, is(87L));
   }
 
+  /** Tests that a rule sees up-to-date metadata after an earlier rule has
+   * changed an input. The planner keeps its metadata query between
+   * transformations, so it must clear the metadata of the ancestors of
+   * each expression that changes. */
+  @Test void testMetadataAfterTransformation() {
+    final List<Double> rowCounts = new ArrayList<>();
+    final RowCountRule rowCountRule =
+        new RowCountRule(RowCountRule.Config.DEFAULT, rowCounts);
+    final HepProgramBuilder programBuilder = HepProgram.builder();
+    programBuilder.addRuleInstance(rowCountRule);
+    programBuilder.addRuleInstance(CoreRules.FILTER_REDUCE_EXPRESSIONS);
+    programBuilder.addRuleInstance(rowCountRule);
+
+    final HepPlanner planner = new HepPlanner(programBuilder.build());
+    planner.setRoot(
+        tester.convertSqlToRel("select name from dept where 1 = 1").rel);
+    planner.findBestExp();
+    // Before FILTER_REDUCE_EXPRESSIONS, the filter is estimated to return 1
+    // of the 4 rows of DEPT; after, there is no filter
+    assertThat(rowCounts, is(Arrays.asList(1d, 4d)));
+  }
+
   @Test void testMaterialization() {
     HepPlanner planner = new HepPlanner(HepProgram.builder().build());
     RelNode tableRel = tester.convertSqlToRel("select * from dept").rel;
@@ -368,6 +397,34 @@ private long checkRuleApplyCount(HepMatchOrder matchOrder) {
     return listener.getApplyTimes();
   }
 
+  /** Rule that records the row count of each {@link LogicalProject} that it
+   * matches. */
+  public static class RowCountRule extends RelRule<RowCountRule.Config> {
+    private final List<Double> rowCounts;
+
+    RowCountRule(Config config, List<Double> rowCounts) {
+      super(config);
+      this.rowCounts = rowCounts;
+    }
+
+    @Override public void onMatch(RelOptRuleCall call) {
+      final LogicalProject project = call.rel(0);
+      rowCounts.add(call.getMetadataQuery().getRowCount(project));
+    }
+
+    /** Rule configuration. */
+    @Value.Immutable
+    @Value.Style(typeImmutable = "ImmutableRowCountRuleConfig")
+    public interface Config extends RelRule.Config {
+      Config DEFAULT = ImmutableRowCountRuleConfig.builder().build()
+          .withOperandSupplier(b -> b.operand(LogicalProject.class).anyInputs());
+
+      @Override default RowCountRule toRule() {
+        return new RowCountRule(this, new ArrayList<>());
+      }
+    }
+  }
+
   /** Listener for HepPlannerTest; counts how many times rules fire. */
   private static class HepTestListener implements RelOptListener {
     private long applyTimes;
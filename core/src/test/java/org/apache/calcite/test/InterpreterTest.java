@@ -38,8 +38,10 @@
 import org.apache.calcite.schema.impl.ScalarFunctionImpl;
 import org.apache.calcite.schema.impl.TableFunctionImpl;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.tools.FrameworkConfig;
 import org.apache.calcite.tools.Frameworks;
 import org.apache.calcite.tools.Planner;
@@ -56,6 +58,7 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -208,6 +211,78 @@ private void reset() {
     sql(sql).returnsRows("[b, 2]", "[c, 3]");
   }
 
+  /** Tests a chain of projects and filters, which the interpreter fuses so
+   * that each row is pushed from one node to the next without being queued.
+   * The inner project reuses its output row, because the filter and the
+   * outer project do not retain rows; the outer project must not, because
+   * the sort retains rows. */
+  @Test void testInterpretProjectFilterPipeline() {
+    final String sql = "select x * 10 as a, y\n"
+        + "from (\n"
+        + "  select x + 1 as x, upper(y) as y\n"
+        + "  from (values (1, 'a'), (2, 'b'), (3, 'c'), (4, 'd')) as t(x, y)\n"
+        + "  where x <> 2)\n"
+        + "where x > 2\n"
+        + "order by a desc";
+    sql(sql).withProject(true).returnsRows("[50, D]", "[40, C]");
+  }
+
+  /** Tests a filter whose output is read by two consumers, and therefore is
+   * not fused with either of them. */
+  @Test void testInterpretSharedFilter() {
+    sql("?")
+        .withRel(b -> {
+          final RelNode filter = b.values(new String[] {"x", "y"},
+              1, "a", 2, "b", 3, "c")
+              .filter(
+                  b.greaterThan(b.field("x"), b.literal(1)))
+              .build();
+          return b.push(filter)
+              .project(b.field("y"))
+              .push(filter)
+              .project(b.field("y"))
+              .union(true)
+              .build();
+        })
+        .returnsRowsUnordered("[b]", "[b]", "[c]", "[c]");
+  }
+
+  /** Tests filters and projects that read a shared input in blocks of rows.
+   * The input has more rows than a block, and the filter condition is
+   * unknown for some rows. */
+  @Test void testInterpretFilterProjectBlocks() {
+    sql("?")
+        .withRel(b -> {
+          final RelDataType intType =
+              b.getTypeFactory().createTypeWithNullability(
+                  b.getTypeFactory().createSqlType(SqlTypeName.INTEGER),
+                  true);
+          final List<List<RexLiteral>> tuples = new ArrayList<>();
+          for (int i = 0; i < 600; i++) {
+            tuples.add(
+                ImmutableList.of(i % 7 == 0
+                    ? b.getRexBuilder().makeNullLiteral(intType)
+                    : b.getRexBuilder().makeExactLiteral(
+                        BigDecimal.valueOf(i), intType)));
+          }
+          final RelNode values =
+              b.values(tuples,
+                  b.getTypeFactory().builder().add("x", intType).build())
+                  .build();
+          return b.push(values)
+              .filter(b.greaterThan(b.field("x"), b.literal(100)))
+              .project(b.alias(b.call(SqlStdOperatorTable.MULTIPLY,
+                  b.field("x"), b.literal(2)), "x"))
+              .push(values)
+              .filter(b.lessThan(b.field("x"), b.literal(50)))
+              .project(b.field("x"))
+              .union(true)
+              .aggregate(b.groupKey(), b.countStar("c"), b.sum(b.field("x")))
+              .build();
+        })
+        .returnsRows("[470, 300629]");
+  }
+
   /** Tests NULLIF operator. (NULLIF is an example of an operator that
    * is implemented by expanding to simpler operators - in this case, CASE.) */
   @Test void testInterpretNullif() {
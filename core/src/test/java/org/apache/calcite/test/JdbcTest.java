@@ -104,6 +104,7 @@
 import org.hsqldb.jdbcDriver;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
@@ -140,6 +141,7 @@
 import java.util.TimeZone;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.sql.DataSource;
@@ -1046,6 +1048,40 @@ private void checkResultSetMetaData(Connection connection, String sql)
     connection.close();
   }
 
+  /** Tests a {@link CloneSchema} that persists its tables to files and
+   * memory-maps them; a second schema over the same directory should
+   * give the same results. */
+  @Test void testCloneSchemaOffHeap(@TempDir File tempDir)
+      throws SQLException {
+    final Connection connection =
+        CalciteAssert.that(CalciteAssert.Config.JDBC_FOODMART).connect();
+    final CalciteConnection calciteConnection =
+        connection.unwrap(CalciteConnection.class);
+    final SchemaPlus rootSchema = calciteConnection.getRootSchema();
+    final SchemaPlus foodmart = rootSchema.getSubSchema("foodmart");
+    rootSchema.add("heap", new CloneSchema(foodmart));
+    rootSchema.add("mapped", new CloneSchema(foodmart, false, tempDir));
+    rootSchema.add("mapped2", new CloneSchema(foodmart, false, tempDir));
+    final String sql = "select \"the_month\", count(*) as c,\n"
+        + " sum(\"day_of_month\") as s, min(\"the_date\") as d\n"
+        + "from \"%s\".\"time_by_day\"\n"
+        + "group by \"the_month\"\n"
+        + "order by \"the_month\"";
+    final List<String> results = new ArrayList<>();
+    for (String schema : new String[] {"heap", "mapped", "mapped2"}) {
+      try (Statement statement = connection.createStatement();
+           ResultSet resultSet =
+               statement.executeQuery(String.format(Locale.ROOT, sql, schema))) {
+        results.add(CalciteAssert.toString(resultSet));
+      }
+    }
+    assertTrue(new File(tempDir, "time_by_day.clone").exists());
+    assertThat(results.get(0), containsString("the_month=April; C=60"));
+    assertThat(results.get(1), equalTo(results.get(0)));
+    assertThat(results.get(2), equalTo(results.get(0)));
+    connection.close();
+  }
+
   @Test void testJdbcTableScan() throws SQLException {
     final Connection connection =
         CalciteAssert.that(CalciteAssert.Config.JDBC_FOODMART).connect();
@@ -1862,12 +1898,51 @@ private void checkResultSetMetaData(Connection connection, String sql)
     //   11    19
     //   12    36
     //   13   116 - OOM did not complete
-    checkJoinNWay(1);
-    checkJoinNWay(3);
-    checkJoinNWay(13);
+    checkJoinNWay(1, 1);
+    checkJoinNWay(3, 1);
+    checkJoinNWay(13, 1);
+  }
+
+  /** As {@link #testJoinManyWay()}, but the planner fires rules on several
+   * threads. */
+  @Test void testJoinManyWayParallelPlanner() {
+    checkJoinNWay(3, 4);
+    checkJoinNWay(13, 4);
+  }
+
+  /** Tests a connection whose queries share the optimized plans of join
+   * subtrees. The second query contains the first, and the third is the same
+   * as the first. */
+  @Test void testSubplanCache() throws Exception {
+    final String join = "select e.\"name\", d.\"name\" as \"dname\"\n"
+        + "from \"hr\".\"emps\" as e\n"
+        + "join \"hr\".\"depts\" as d on e.\"deptno\" = d.\"deptno\"";
+    CalciteAssert.hr()
+        .with(CalciteConnectionProperty.SUBPLAN_CACHE_SIZE, 10)
+        .doWithConnection(connection -> {
+          try (Statement statement = connection.createStatement()) {
+            final String expected = "name=Bill; dname=Sales\n"
+                + "name=Sebastian; dname=Sales\n"
+                + "name=Theodore; dname=Sales\n";
+            ResultSet resultSet =
+                statement.executeQuery(join + "\norder by 1");
+            assertThat(CalciteAssert.toString(resultSet), is(expected));
+            resultSet =
+                statement.executeQuery("select * from (" + join + ")\n"
+                    + "where \"name\" <> 'Bill'\n"
+                    + "order by 1 desc");
+            assertThat(CalciteAssert.toString(resultSet),
+                is("name=Theodore; dname=Sales\n"
+                    + "name=Sebastian; dname=Sales\n"));
+            resultSet = statement.executeQuery(join + "\norder by 1");
+            assertThat(CalciteAssert.toString(resultSet), is(expected));
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
   }
 
-  private static void checkJoinNWay(int n) {
+  private static void checkJoinNWay(int n, int plannerParallelism) {
     assert n > 0;
     final StringBuilder buf = new StringBuilder();
     buf.append("select count(*)");
@@ -1881,6 +1956,7 @@ private static void checkJoinNWay(int n) {
           .append(i - 1).append(".\"deptno\"");
     }
     CalciteAssert.hr()
+        .with(CalciteConnectionProperty.PLANNER_PARALLELISM, plannerParallelism)
         .query(buf.toString())
         .returns("EXPR$0=3\n");
   }
@@ -3907,11 +3983,10 @@ void testOrderByOnSortedTable2(String format) {
    * primitives are properly boxed and un-boxed.
    */
   @Test void testWinAggScalarNonNullPhysType() {
-    String planLine =
-        "a0s0w0 = org.apache.calcite.runtime.SqlFunctions.lesser(a0s0w0, org.apache.calcite.runtime.SqlFunctions.toFloat(_rows[j]));";
-    if (CalciteSystemProperty.DEBUG.value()) {
-      planLine = planLine.replace("a0s0w0", "MINa0s0w0");
-    }
+    // MIN over a moving frame is computed using a segment tree, which stores
+    // REAL values unboxed
+    final String planLine =
+        "_doubleValues[k] = (double) org.apache.calcite.runtime.SqlFunctions.toFloat(_rows[k]);";
     CalciteAssert.hr()
         .query("select min(\"salary\"+1) over w as m\n"
             + "from \"hr\".\"emps\"\n"
@@ -3932,11 +4007,10 @@ void testOrderByOnSortedTable2(String format) {
    * {@link org.apache.calcite.rel.logical.LogicalWindow} and literal.
    */
   @Test void testWinAggScalarNonNullPhysTypePlusOne() {
-    String planLine =
-        "a0s0w0 = org.apache.calcite.runtime.SqlFunctions.lesser(a0s0w0, org.apache.calcite.runtime.SqlFunctions.toFloat(_rows[j]));";
-    if (CalciteSystemProperty.DEBUG.value()) {
-      planLine = planLine.replace("a0s0w0", "MINa0s0w0");
-    }
+    // MIN over a moving frame is computed using a segment tree, which stores
+    // REAL values unboxed
+    final String planLine =
+        "_doubleValues[k] = (double) org.apache.calcite.runtime.SqlFunctions.toFloat(_rows[k]);";
     CalciteAssert.hr()
         .query("select 1+min(\"salary\"+1) over w as m\n"
             + "from \"hr\".\"emps\"\n"
@@ -4837,6 +4911,25 @@ public boolean moveNext() {
             + "empid=150; deptno=10; name=Sebastian; salary=7000.0; commission=null\n");
   }
 
+  /** Tests that an invalid constant pattern is an error only if a row is
+   * matched against it. */
+  @Test void testSimilarInvalidPattern() {
+    final CalciteAssert.AssertThat with =
+        CalciteAssert.that().with(CalciteAssert.Config.REGULAR);
+    with.query("select \"name\" similar to '((' from \"hr\".\"emps\"\n"
+            + "where \"empid\" < 0")
+        .returnsCount(0);
+    with.query("select \"name\" similar to '((' from \"hr\".\"emps\"")
+        .returns(resultSet -> {
+          try {
+            final boolean next = resultSet.next();
+            fail("expected error, got " + next);
+          } catch (SQLException | PatternSyntaxException e) {
+            assertThat(e.getMessage(), containsString("Unclosed group"));
+          }
+        });
+  }
+
   /** Tests array index. */
   @Test void testArrayIndexing() {
     CalciteAssert.that()
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+
+/**
+ * Tests for the vectorized calling convention,
+ * {@link org.apache.calcite.adapter.vectorized.VectorizedConvention}.
+ */
+class VectorizedTest {
+  /** Number of rows in {@link NumbersTable}; more than fit in one batch. */
+  private static final int N = 3000;
+
+  private static CalciteAssert.AssertThat hr() {
+    return CalciteAssert.that()
+        .with(CalciteAssert.Config.REGULAR)
+        .with(CalciteConnectionProperty.VECTORIZED, true);
+  }
+
+  private static CalciteAssert.AssertThat numbers() {
+    return CalciteAssert.that()
+        .withSchema("s", new AbstractSchema() {
+          @Override protected Map<String, Table> getTableMap() {
+            return ImmutableMap.of("numbers", new NumbersTable());
+          }
+        })
+        .with(CalciteConnectionProperty.VECTORIZED, true);
+  }
+
+  /** Value of the "m" column of {@link NumbersTable} in row {@code i}. */
+  private static @Nullable Integer m(int i) {
+    return i % 10 == 0 ? null : i % 7;
+  }
+
+  @Test void testFilterProject() {
+    final String sql = "select \"empid\", \"deptno\" + 1 as \"d\"\n"
+        + "from \"hr\".\"emps\"\n"
+        + "where \"empid\" > 100 and \"commission\" is not null";
+    hr().query(sql)
+        .explainContains("VectorizedCalc")
+        .returnsUnordered("empid=110; d=11",
+            "empid=200; d=21");
+  }
+
+  /** Tests that the vectorized convention is not used unless the
+   * {@code vectorized} connection property is set. */
+  @Test void testDisabledByDefault() {
+    final String sql = "select \"empid\" from \"hr\".\"emps\"\n"
+        + "where \"empid\" > 100";
+    CalciteAssert.that()
+        .with(CalciteAssert.Config.REGULAR)
+        .query(sql)
+        .explainHookMatches(not(containsString("Vectorized")))
+        .returnsUnordered("empid=110", "empid=150", "empid=200");
+  }
+
+  @Test void testAggregate() {
+    final String sql = "select \"deptno\", count(*) as c,\n"
+        + "  count(\"commission\") as cc, sum(\"commission\") as sc,\n"
+        + "  min(\"name\") as mn, max(\"empid\") as me\n"
+        + "from \"hr\".\"emps\"\n"
+        + "group by \"deptno\"";
+    hr().query(sql)
+        .explainContains("VectorizedAggregate")
+        .returnsUnordered(
+            "deptno=10; C=3; CC=2; SC=1250; MN=Bill; ME=150",
+            "deptno=20; C=1; CC=1; SC=500; MN=Eric; ME=200");
+  }
+
+  /** Tests that an aggregate without GROUP BY returns one row even if its
+   * input is empty. */
+  @Test void testAggregateEmpty() {
+    final String sql = "select count(*) as c, sum(\"empid\") as s\n"
+        + "from \"hr\".\"emps\"\n"
+        + "where \"empid\" < 0";
+    hr().query(sql)
+        .explainContains("VectorizedAggregate")
+        .returns("C=0; S=null\n");
+  }
+
+  @Test void testJoin() {
+    final String sql = "select e.\"empid\", d.\"name\"\n"
+        + "from \"hr\".\"emps\" as e\n"
+        + "join \"hr\".\"depts\" as d on e.\"deptno\" = d.\"deptno\"";
+    hr().query(sql)
+        .explainContains("VectorizedHashJoin")
+        .returnsUnordered("empid=100; name=Sales",
+            "empid=110; name=Sales",
+            "empid=150; name=Sales");
+  }
+
+  /** Tests filter and aggregate over a table that spans several batches,
+   * with null values and several types of column. */
+  @Test void testAggregateManyBatches() {
+    final String sql = "select \"m\", count(*) as c, sum(\"i\") as s,\n"
+        + "  max(\"s\") as ms\n"
+        + "from \"s\".\"numbers\"\n"
+        + "where \"d\" > 100.5 and \"i\" <> 2001\n"
+        + "group by \"m\"";
+    final Map<String, long[]> groups = new TreeMap<>();
+    for (int i = 0; i < N; i++) {
+      if (i / 2.0 > 100.5 && i != 2001) {
+        final long[] g =
+            groups.computeIfAbsent(String.valueOf(m(i)), k -> new long[2]);
+        g[0]++;
+        g[1] += i;
+      }
+    }
+    final List<String> expected = new ArrayList<>();
+    groups.forEach((m, g) ->
+        expected.add("m=" + m + "; C=" + g[0] + "; S=" + g[1] + "; MS=s2"));
+    numbers().query(sql)
+        .explainContains("VectorizedAggregate")
+        .returnsUnordered(expected.toArray(new String[0]));
+  }
+
+  /** Tests a join whose build and probe sides, and output, span several
+   * batches, and whose key has null values. */
+  @Test void testJoinManyBatches() {
+    final String sql = "select count(*) as c, sum(a.\"i\") as s\n"
+        + "from \"s\".\"numbers\" as a\n"
+        + "join \"s\".\"numbers\" as b on a.\"m\" = b.\"m\"\n"
+        + "where a.\"i\" < 1500";
+    final long[] counts = new long[7];
+    for (int i = 0; i < N; i++) {
+      final Integer m = m(i);
+      if (m != null) {
+        counts[m]++;
+      }
+    }
+    long c = 0;
+    long s = 0;
+    for (int i = 0; i < 1500; i++) {
+      final Integer m = m(i);
+      if (m != null) {
+        c += counts[m];
+        s += counts[m] * i;
+      }
+    }
+    numbers().query(sql)
+        .explainContains("VectorizedHashJoin")
+        .returns("C=" + c + "; S=" + s + "\n");
+  }
+
+  /** Table with {@link #N} rows whose columns are computed from the row
+   * number. */
+  private static class NumbersTable extends AbstractTable
+      implements ScannableTable {
+    @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("i", SqlTypeName.INTEGER)
+          .add("m", SqlTypeName.INTEGER).nullable(true)
+          .add("d", SqlTypeName.DOUBLE)
+          .add("s", SqlTypeName.VARCHAR, 10)
+          .build();
+    }
+
+    @Override public Enumerable<@Nullable Object[]> scan(DataContext root) {
+      final List<@Nullable Object[]> rows = new ArrayList<>();
+      for (int i = 0; i < N; i++) {
+        rows.add(new Object[] {i, m(i), i / 2.0, "s" + i % 3});
+      }
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.schemata.hr.HrSchema;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/** Test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableAggregate}. */
+class EnumerableAggregateTest {
+  /** Tests that a GROUP BY on an {@code int} column uses
+   * {@link org.apache.calcite.runtime.PrimitiveGroupBy}. */
+  @Test void testPrimitiveGroupBy() {
+    tester()
+        .query("select deptno, count(*) as c, count(commission) as cc,\n"
+            + "  sum(commission) as s, min(empid) as mi, max(empid) as ma\n"
+            + "from emps group by deptno")
+        .planContains("PrimitiveGroupBy.groupBy(")
+        .returnsUnordered(
+            "deptno=10; c=3; cc=2; s=1250; mi=100; ma=150",
+            "deptno=20; c=1; cc=1; s=500; mi=200; ma=200");
+  }
+
+  /** Tests a GROUP BY on two columns, one of which is nullable. */
+  @Test void testPrimitiveGroupByTwoKeys() {
+    tester()
+        .query("select deptno, commission, count(*) as c\n"
+            + "from emps group by deptno, commission")
+        .planContains("PrimitiveGroupBy.groupBy(")
+        .returnsUnordered(
+            "deptno=10; commission=1000; c=1",
+            "deptno=10; commission=250; c=1",
+            "deptno=10; commission=null; c=1",
+            "deptno=20; commission=500; c=1");
+  }
+
+  /** Tests that SUM of no non-null values is null. */
+  @Test void testPrimitiveGroupByEmptySum() {
+    tester()
+        .query("select deptno, sum(commission) as s, min(commission) as m\n"
+            + "from emps where commission is null group by deptno")
+        .planContains("PrimitiveGroupBy.groupBy(")
+        .returnsUnordered("deptno=10; s=null; m=null");
+  }
+
+  /** Tests that SUM of a {@code REAL} column, which is held in a
+   * {@code float}, does not use
+   * {@link org.apache.calcite.runtime.PrimitiveGroupBy}. */
+  @Test void testGroupBySumReal() {
+    tester()
+        .query("select deptno, sum(salary) as s from emps group by deptno")
+        .withHook(Hook.JAVA_PLAN, (Consumer<String>) code ->
+            assertThat(code, not(containsString("PrimitiveGroupBy"))))
+        .returnsUnordered("deptno=10; s=28500.0", "deptno=20; s=8000.0");
+  }
+
+  private static CalciteAssert.AssertThat tester() {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new ReflectiveSchema(new HrSchema()));
+  }
+}
@@ -22,14 +22,20 @@
 import org.apache.calcite.config.Lex;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.runtime.SpillableHashJoin;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.test.CalciteAssert;
 import org.apache.calcite.test.schemata.hr.HrSchema;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
 /**
  * Unit test for
  * {@link org.apache.calcite.adapter.enumerable.EnumerableHashJoin}.
@@ -158,6 +164,77 @@ class EnumerableHashJoinTest {
             "empid=null; name=null; dept=HR");
   }
 
+  /** Tests a join whose build input exceeds its memory budget, and is
+   * therefore partitioned to disk. */
+  @Test void fullOuterJoinSpill() {
+    final List<SpillableHashJoin.Spill> spills = new ArrayList<>();
+    tester(false, new HrSchema())
+        .with(CalciteConnectionProperty.HASH_JOIN_MEMORY_BUDGET, 100)
+        .query(
+            "select e.empid, e.name, d.name as dept from emps e full outer "
+                + "join depts d on e.deptno=d.deptno")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .withHook(Hook.HASH_JOIN_SPILL,
+            (Consumer<SpillableHashJoin.Spill>) spills::add)
+        .explainContains("EnumerableHashJoin(condition=[=($1, $3)], "
+            + "joinType=[full])")
+        .returnsUnordered(
+            "empid=100; name=Bill; dept=Sales",
+            "empid=110; name=Theodore; dept=Sales",
+            "empid=150; name=Sebastian; dept=Sales",
+            "empid=200; name=Eric; dept=null",
+            "empid=null; name=null; dept=Marketing",
+            "empid=null; name=null; dept=HR");
+    assertThat(spills.isEmpty(), is(false));
+    assertThat(spills.get(0).depth, is(0));
+    assertThat(spills.get(0).innerRowCount, is(3L));
+    assertThat(spills.get(0).outerRowCount, is(4L));
+  }
+
+  /** Tests a join whose inputs are table scans whose rows are Java objects;
+   * the join converts them to arrays so that it can spill. */
+  @Test void fullOuterJoinSpillObjectRows() {
+    final List<SpillableHashJoin.Spill> spills = new ArrayList<>();
+    tester(false, new HrSchema())
+        .with(CalciteConnectionProperty.HASH_JOIN_MEMORY_BUDGET, 100)
+        .query(
+            "select e.empid, f.name from emps e full outer "
+                + "join emps f on e.empid=f.empid + 50")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .withHook(Hook.HASH_JOIN_SPILL,
+            (Consumer<SpillableHashJoin.Spill>) spills::add)
+        .returnsUnordered(
+            "empid=100; name=null",
+            "empid=110; name=null",
+            "empid=150; name=Bill",
+            "empid=200; name=Sebastian",
+            "empid=null; name=Eric",
+            "empid=null; name=Theodore");
+    assertThat(spills.isEmpty(), is(false));
+  }
+
+  /** Tests that a join whose rows cannot be written to disk runs in memory,
+   * despite a memory budget. */
+  @Test void innerJoinNotSpillable() {
+    final List<SpillableHashJoin.Spill> spills = new ArrayList<>();
+    tester(false, new HrSchema())
+        .with(CalciteConnectionProperty.HASH_JOIN_MEMORY_BUDGET, 100)
+        .query(
+            "select e.empid, d.location from emps e "
+                + "join depts d on e.deptno=d.deptno")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .withHook(Hook.HASH_JOIN_SPILL,
+            (Consumer<SpillableHashJoin.Spill>) spills::add)
+        .explainContains("EnumerableHashJoin")
+        .returnsUnordered(
+            "empid=100; location={-122, 38}",
+            "empid=110; location={-122, 38}",
+            "empid=150; location={-122, 38}");
+    assertThat(spills.isEmpty(), is(true));
+  }
 
   @Test void semiJoin() {
     tester(false, new HrSchema())
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.clone.CloneSchema;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataTypeImpl;
+import org.apache.calcite.schema.Schema;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.test.CalciteAssert;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+
+/**
+ * Unit test for parallel execution of enumerable plans; see
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableParallelizer}.
+ */
+class EnumerableParallelTest {
+  /** Number of rows in table "t"; each of the 4 splits has 5,000 rows. */
+  private static final int ROW_COUNT = 20_000;
+
+  @Test void parallelFilter() {
+    tester(4)
+        .query("select id, name from t where mod(id, 2000) = 7")
+        .explainContains("EnumerableExchange(distribution=[single])\n"
+            + "  EnumerableCalc(")
+        .explainContains("EnumerableSplitTableScan(table=[[s, t]], "
+            + "splits=[4])")
+        // Rows are in the same order as a serial scan
+        .returnsOrdered(
+            "id=7; name=n1",
+            "id=2007; name=n0",
+            "id=4007; name=n2",
+            "id=6007; name=n1",
+            "id=8007; name=n0",
+            "id=10007; name=n2",
+            "id=12007; name=n1",
+            "id=14007; name=n0",
+            "id=16007; name=n2",
+            "id=18007; name=n1");
+  }
+
+  @Test void parallelAggregate() {
+    final String sql = "select k, count(*) as c, sum(id) as s,\n"
+        + "  min(name) as n\n"
+        + "from t\n"
+        + "where id >= 10\n"
+        + "group by k";
+    final String[] expected = {
+        "k=0; c=3998; s=39989995; n=n0",
+        "k=1; c=3998; s=39993993; n=n0",
+        "k=2; c=3998; s=39997991; n=n0",
+        "k=3; c=3998; s=40001989; n=n0",
+        "k=4; c=3998; s=40005987; n=n0"};
+    tester(4)
+        .query(sql)
+        .explainContains("EnumerableExchange(distribution=[single])\n"
+            + "  EnumerableAggregate(group=[{0}], c=[$SUM0($1)], s=[$SUM0($2)], "
+            + "n=[MIN($3)])\n"
+            + "    EnumerableExchange(distribution=[hash[0]])\n"
+            + "      EnumerableAggregate(group=[{1}], c=[COUNT()], "
+            + "s=[$SUM0($0)], n=[MIN($2)])\n")
+        .returnsUnordered(expected);
+    tester(0)
+        .query(sql)
+        .explainContains("EnumerableTableScan(table=[[s, t]])")
+        .returnsUnordered(expected);
+  }
+
+  @Test void parallelGlobalAggregate() {
+    tester(3)
+        .query("select count(*) as c, sum(k) as s, max(id) as m\n"
+            + "from t where name = 'n2'")
+        .explainContains("EnumerableAggregate(group=[{}], c=[$SUM0($0)], "
+            + "s=[SUM($1)], m=[MAX($2)])\n"
+            + "  EnumerableExchange(distribution=[single])\n")
+        .returnsUnordered("c=6666; s=13332; m=19997");
+  }
+
+  @Test void parallelEmptyResult() {
+    tester(4)
+        .query("select count(*) as c, sum(k) as s from t where id < 0")
+        .explainContains("EnumerableExchange(distribution=[single])")
+        .returnsUnordered("c=0; s=null");
+  }
+
+  @Test void serialByDefault() {
+    tester(0)
+        .query("select id from t where id < 3")
+        .explainHookMatches(not(containsString("EnumerableExchange")))
+        .returnsOrdered("id=0", "id=1", "id=2");
+  }
+
+  private static CalciteAssert.AssertThat tester(int parallelism) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.PARALLELISM, parallelism)
+        .withSchema("s", schema());
+  }
+
+  /** Creates a schema with an in-memory table "t" (id, k, name), where
+   * {@code k = id % 5} and {@code name = 'n' || id % 3}. */
+  private static Schema schema() {
+    final JavaTypeFactory typeFactory = new JavaTypeFactoryImpl();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < ROW_COUNT; i++) {
+      rows.add(new Object[] {i, i % 5, "n" + i % 3});
+    }
+    final Table table =
+        CloneSchema.createCloneTable(typeFactory,
+            RelDataTypeImpl.proto(
+                typeFactory.builder()
+                    .add("id", SqlTypeName.INTEGER)
+                    .add("k", SqlTypeName.INTEGER)
+                    .add("name", SqlTypeName.VARCHAR, 10)
+                    .build()),
+            ImmutableList.of(), null, Linq4j.asEnumerable(rows));
+    return new AbstractSchema() {
+      @Override protected Map<String, Table> getTableMap() {
+        return ImmutableMap.of("t", table);
+      }
+    };
+  }
+}
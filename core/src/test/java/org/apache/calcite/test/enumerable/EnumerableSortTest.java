@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.enumerable.EnumerableRules;
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.schemata.hr.HrSchema;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableSort} and
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableLimitSort}
+ * when their input exceeds their memory budget.
+ */
+class EnumerableSortTest {
+
+  @Test void sortSpill() {
+    final List<Integer> spills = new ArrayList<>();
+    tester(100)
+        .query("select empid, name from emps order by salary desc")
+        .withHook(Hook.SORT_SPILL, (Consumer<Integer>) spills::add)
+        .explainContains("EnumerableSort(sort0=[$2], dir0=[DESC])")
+        .returnsOrdered(
+            "empid=110; name=Theodore",
+            "empid=100; name=Bill",
+            "empid=200; name=Eric",
+            "empid=150; name=Sebastian");
+    assertThat(spills.size(), is(1));
+    assertThat(spills.get(0) > 1, is(true));
+  }
+
+  @Test void limitSortSpill() {
+    final List<Integer> spills = new ArrayList<>();
+    tester(10)
+        .query("select empid from (\n"
+            + "  select empid, commission * 2 as c from emps)\n"
+            + "order by c nulls first\n"
+            + "limit 2 offset 1")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner -> {
+          planner.removeRule(EnumerableRules.ENUMERABLE_LIMIT_RULE);
+          planner.addRule(EnumerableRules.ENUMERABLE_LIMIT_SORT_RULE);
+        })
+        .withHook(Hook.SORT_SPILL, (Consumer<Integer>) spills::add)
+        .explainContains("EnumerableLimitSort(sort0=[$1], dir0=[ASC-nulls-first], "
+            + "offset=[1], fetch=[2])")
+        .returnsOrdered(
+            "empid=110",
+            "empid=200");
+    assertThat(spills.size(), is(1));
+  }
+
+  private CalciteAssert.AssertThat tester(long sortMemoryBudget) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.SORT_MEMORY_BUDGET, sortMemoryBudget)
+        .withSchema("s", new ReflectiveSchema(new HrSchema()));
+  }
+}
@@ -1008,9 +1008,31 @@ private void checkJoinNWay(int n) throws Exception {
     checkHeuristic(sql, expected);
   }
 
+  /** Tests that {@link Programs#dphypJoinOrder} orders a 3-way join. */
+  @Test void testDphypJoinOrder() throws Exception {
+    final String sql = "select * from \"emps\" as e\n"
+        + "join \"depts\" as d on e.\"deptno\" = d.\"deptno\"\n"
+        + "join \"dependents\" as p on e.\"empid\" = p.\"empid\"";
+    final String expected = ""
+        + "EnumerableProject(empid=[$0], deptno=[$1], name=[$2], salary=[$3], commission=[$4], deptno0=[$5], name0=[$6], employees=[$7], location=[ROW($8, $9)], empid0=[$10], name1=[$11])\n"
+        + "  EnumerableHashJoin(condition=[=($0, $10)], joinType=[inner])\n"
+        + "    EnumerableHashJoin(condition=[=($1, $5)], joinType=[inner])\n"
+        + "      EnumerableTableScan(table=[[hr, emps]])\n"
+        + "      EnumerableProject(deptno=[$0], name=[$1], employees=[$2], x=[$3.x], y=[$3.y])\n"
+        + "        EnumerableTableScan(table=[[hr, depts]])\n"
+        + "    EnumerableTableScan(table=[[hr, dependents]])";
+    checkJoinOrder(Programs.dphypJoinOrder(Programs.RULE_SET, 0), sql,
+        expected);
+  }
+
   private void checkHeuristic(String sql, String expected) throws Exception {
-    Planner planner = getPlanner(null,
-        Programs.heuristicJoinOrder(Programs.RULE_SET, false, 0));
+    checkJoinOrder(Programs.heuristicJoinOrder(Programs.RULE_SET, false, 0),
+        sql, expected);
+  }
+
+  private void checkJoinOrder(Program program, String sql, String expected)
+      throws Exception {
+    Planner planner = getPlanner(null, program);
     SqlNode parse = planner.parse(sql);
     SqlNode validate = planner.validate(parse);
     RelNode convert = planner.rel(validate).rel;
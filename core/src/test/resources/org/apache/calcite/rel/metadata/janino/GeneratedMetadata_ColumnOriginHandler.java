@@ -61,6 +61,8 @@ public java.util.Set getColumnOrigins(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
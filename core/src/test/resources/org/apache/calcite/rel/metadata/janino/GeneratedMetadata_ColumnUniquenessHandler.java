@@ -56,6 +56,8 @@ public java.lang.Boolean areColumnsUnique(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
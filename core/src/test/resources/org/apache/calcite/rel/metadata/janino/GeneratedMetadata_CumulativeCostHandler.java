@@ -20,11 +20,12 @@
   implements org.apache.calcite.rel.metadata.BuiltInMetadata.CumulativeCost.Handler {
   private final Object methodKey0 =
       new org.apache.calcite.rel.metadata.janino.DescriptiveCacheKey("RelOptCost Handler.getCumulativeCost()");
-  public final org.apache.calcite.rel.metadata.RelMdPercentageOriginalRows$RelMdCumulativeCost provider0;
+  public final org.apache.calcite.rel.metadata.RelMdPercentageOriginalRows.RelMdCumulativeCost provider0;
   public GeneratedMetadata_CumulativeCostHandler(
-      org.apache.calcite.rel.metadata.RelMdPercentageOriginalRows$RelMdCumulativeCost provider0) {
+      org.apache.calcite.rel.metadata.RelMdPercentageOriginalRows.RelMdCumulativeCost provider0) {
     this.provider0 = provider0;
   }
+  @SuppressWarnings("deprecation")
   public org.apache.calcite.rel.metadata.MetadataDef getDef() {
     return provider0.getDef();
   }
@@ -54,6 +55,8 @@ public org.apache.calcite.plan.RelOptCost getCumulativeCost(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
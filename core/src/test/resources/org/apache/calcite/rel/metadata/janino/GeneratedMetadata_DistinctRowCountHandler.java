@@ -56,6 +56,8 @@ public java.lang.Double getDistinctRowCount(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
@@ -80,6 +82,8 @@ private java.lang.Double getDistinctRowCount_(
       return provider0.getDistinctRowCount((org.apache.calcite.rel.core.Sort) r, mq, a2, a3);
     } else if (r instanceof org.apache.calcite.rel.core.TableModify) {
       return provider0.getDistinctRowCount((org.apache.calcite.rel.core.TableModify) r, mq, a2, a3);
+    } else if (r instanceof org.apache.calcite.rel.core.TableScan) {
+      return provider0.getDistinctRowCount((org.apache.calcite.rel.core.TableScan) r, mq, a2, a3);
     } else if (r instanceof org.apache.calcite.rel.core.Union) {
       return provider0.getDistinctRowCount((org.apache.calcite.rel.core.Union) r, mq, a2, a3);
     } else if (r instanceof org.apache.calcite.rel.core.Values) {
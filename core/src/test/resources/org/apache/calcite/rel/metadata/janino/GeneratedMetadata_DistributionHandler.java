@@ -54,6 +54,8 @@ public org.apache.calcite.rel.RelDistribution distribution(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
@@ -55,6 +55,8 @@ public java.util.Set getExpressionLineage(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
@@ -55,6 +55,8 @@ public org.apache.calcite.plan.RelOptCost getLowerBoundCost(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
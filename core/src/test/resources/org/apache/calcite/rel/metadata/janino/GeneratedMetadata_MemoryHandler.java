@@ -58,6 +58,8 @@ public java.lang.Double cumulativeMemoryWithinPhase(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
@@ -96,6 +98,8 @@ public java.lang.Double cumulativeMemoryWithinPhaseSplit(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
@@ -134,6 +138,8 @@ public java.lang.Double memory(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
@@ -54,6 +54,8 @@ public com.google.common.collect.Multimap getNodeTypes(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
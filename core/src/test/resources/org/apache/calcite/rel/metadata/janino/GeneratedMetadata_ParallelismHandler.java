@@ -56,6 +56,8 @@ public java.lang.Boolean isPhaseTransition(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
@@ -100,13 +102,25 @@ public java.lang.Integer splitCount(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
   private java.lang.Integer splitCount_(
       org.apache.calcite.rel.RelNode r,
       org.apache.calcite.rel.metadata.RelMetadataQuery mq) {
-    if (r instanceof org.apache.calcite.rel.RelNode) {
+    if (r instanceof org.apache.calcite.rel.core.Aggregate) {
+      return provider1.splitCount((org.apache.calcite.rel.core.Aggregate) r, mq);
+    } else if (r instanceof org.apache.calcite.rel.core.Calc) {
+      return provider1.splitCount((org.apache.calcite.rel.core.Calc) r, mq);
+    } else if (r instanceof org.apache.calcite.rel.core.Exchange) {
+      return provider1.splitCount((org.apache.calcite.rel.core.Exchange) r, mq);
+    } else if (r instanceof org.apache.calcite.rel.core.Filter) {
+      return provider1.splitCount((org.apache.calcite.rel.core.Filter) r, mq);
+    } else if (r instanceof org.apache.calcite.rel.core.Project) {
+      return provider1.splitCount((org.apache.calcite.rel.core.Project) r, mq);
+    } else if (r instanceof org.apache.calcite.rel.RelNode) {
       return provider1.splitCount((org.apache.calcite.rel.RelNode) r, mq);
     } else {
             throw new java.lang.IllegalArgumentException("No handler for method [public abstract java.lang.Integer org.apache.calcite.rel.metadata.BuiltInMetadata$Parallelism$Handler.splitCount(org.apache.calcite.rel.RelNode,org.apache.calcite.rel.metadata.RelMetadataQuery)] applied to argument of type [" + r.getClass() + "]; we recommend you create a catch-all (RelNode) handler");
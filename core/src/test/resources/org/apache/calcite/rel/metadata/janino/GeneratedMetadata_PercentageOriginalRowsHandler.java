@@ -20,11 +20,12 @@
   implements org.apache.calcite.rel.metadata.BuiltInMetadata.PercentageOriginalRows.Handler {
   private final Object methodKey0 =
       new org.apache.calcite.rel.metadata.janino.DescriptiveCacheKey("Double Handler.getPercentageOriginalRows()");
-  public final org.apache.calcite.rel.metadata.RelMdPercentageOriginalRows$RelMdPercentageOriginalRowsHandler provider0;
+  public final org.apache.calcite.rel.metadata.RelMdPercentageOriginalRows.RelMdPercentageOriginalRowsHandler provider0;
   public GeneratedMetadata_PercentageOriginalRowsHandler(
-      org.apache.calcite.rel.metadata.RelMdPercentageOriginalRows$RelMdPercentageOriginalRowsHandler provider0) {
+      org.apache.calcite.rel.metadata.RelMdPercentageOriginalRows.RelMdPercentageOriginalRowsHandler provider0) {
     this.provider0 = provider0;
   }
+  @SuppressWarnings("deprecation")
   public org.apache.calcite.rel.metadata.MetadataDef getDef() {
     return provider0.getDef();
   }
@@ -54,6 +55,8 @@ public java.lang.Double getPercentageOriginalRows(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
@@ -55,6 +55,8 @@ public java.lang.Double getPopulationSize(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
@@ -76,6 +78,8 @@ private java.lang.Double getPopulationSize_(
       return provider0.getPopulationSize((org.apache.calcite.rel.core.Sort) r, mq, a2);
     } else if (r instanceof org.apache.calcite.rel.core.TableModify) {
       return provider0.getPopulationSize((org.apache.calcite.rel.core.TableModify) r, mq, a2);
+    } else if (r instanceof org.apache.calcite.rel.core.TableScan) {
+      return provider0.getPopulationSize((org.apache.calcite.rel.core.TableScan) r, mq, a2);
     } else if (r instanceof org.apache.calcite.rel.core.Union) {
       return provider0.getPopulationSize((org.apache.calcite.rel.core.Union) r, mq, a2);
     } else if (r instanceof org.apache.calcite.rel.core.Values) {
@@ -55,6 +55,8 @@ public java.lang.Double getSelectivity(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
@@ -62,7 +64,9 @@ private java.lang.Double getSelectivity_(
       org.apache.calcite.rel.RelNode r,
       org.apache.calcite.rel.metadata.RelMetadataQuery mq,
       org.apache.calcite.rex.RexNode a2) {
-    if (r instanceof org.apache.calcite.rel.core.Aggregate) {
+    if (r instanceof org.apache.calcite.plan.volcano.RelSubset) {
+      return provider0.getSelectivity((org.apache.calcite.plan.volcano.RelSubset) r, mq, a2);
+    } else if (r instanceof org.apache.calcite.rel.core.Aggregate) {
       return provider0.getSelectivity((org.apache.calcite.rel.core.Aggregate) r, mq, a2);
     } else if (r instanceof org.apache.calcite.rel.core.Calc) {
       return provider0.getSelectivity((org.apache.calcite.rel.core.Calc) r, mq, a2);
@@ -76,6 +80,8 @@ private java.lang.Double getSelectivity_(
       return provider0.getSelectivity((org.apache.calcite.rel.core.Sort) r, mq, a2);
     } else if (r instanceof org.apache.calcite.rel.core.TableModify) {
       return provider0.getSelectivity((org.apache.calcite.rel.core.TableModify) r, mq, a2);
+    } else if (r instanceof org.apache.calcite.rel.core.TableScan) {
+      return provider0.getSelectivity((org.apache.calcite.rel.core.TableScan) r, mq, a2);
     } else if (r instanceof org.apache.calcite.rel.core.Union) {
       return provider0.getSelectivity((org.apache.calcite.rel.core.Union) r, mq, a2);
     } else if (r instanceof org.apache.calcite.rel.RelNode) {
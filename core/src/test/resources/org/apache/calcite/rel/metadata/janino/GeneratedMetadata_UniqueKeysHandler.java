@@ -57,6 +57,8 @@ public java.util.Set getUniqueKeys(
     } catch (java.lang.Exception e) {
       mq.map.row(r).clear();
       throw e;
+    } finally {
+      mq.cache().finish(r, key);
     }
   }
 
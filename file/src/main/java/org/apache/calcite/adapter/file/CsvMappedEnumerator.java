@@ -0,0 +1,708 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.file;
+
+import org.apache.calcite.avatica.util.DateTimeUtils;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.util.ImmutableIntList;
+import org.apache.calcite.util.ImmutableNullableList;
+import org.apache.calcite.util.Source;
+import org.apache.calcite.util.Util;
+
+import au.com.bytecode.opencsv.CSVParser;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/** Enumerator that reads a CSV file by memory-mapping it and parsing chunks
+ * of it in parallel.
+ *
+ * <p>The file is cut into chunks of roughly {@link #DEFAULT_CHUNK_SIZE}
+ * bytes at record boundaries. The consumer thread finds the boundaries,
+ * tracking whether each line break is inside a quoted field, and tasks in
+ * the common {@link ForkJoinPool} parse the chunks; rows are returned in
+ * file order.
+ *
+ * <p>Lines that contain neither quotes nor backslashes are split at commas
+ * without creating a {@link String} per line, and only the projected fields
+ * are decoded; numeric, boolean, date, time and timestamp values in the
+ * usual formats are parsed directly from bytes. Other lines, and values in
+ * other formats, go through the same {@link CSVParser} and
+ * {@link CsvEnumerator.RowConverter} as {@link CsvEnumerator}, so both
+ * enumerators return the same rows.
+ *
+ * @param <E> Row type
+ */
+class CsvMappedEnumerator<E> implements Enumerator<E> {
+  /** Nominal size of a chunk. */
+  static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+  private static final double[] DOUBLE_POWERS = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+      1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private static final float[] FLOAT_POWERS = {
+      1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+
+  private final FileChannel channel;
+  private final long size;
+  private final AtomicBoolean cancelFlag;
+  /** Field types. List must not be null, but any element may be null. */
+  private final List<CsvFieldType> fieldTypes;
+  private final ImmutableIntList fields;
+  private final int chunkSize;
+  private final ForkJoinPool pool;
+  private final Deque<FutureTask<List<E>>> tasks = new ArrayDeque<>();
+
+  /** Offset of the first record that has not been assigned to a chunk. */
+  private long position;
+  /** State of the parser at {@link #position}. */
+  private boolean inField;
+  private Iterator<E> rows = Collections.emptyIterator();
+  private @Nullable E current;
+
+  CsvMappedEnumerator(File file, AtomicBoolean cancelFlag,
+      List<CsvFieldType> fieldTypes, List<Integer> fields) {
+    this(file, cancelFlag, fieldTypes, fields, DEFAULT_CHUNK_SIZE);
+  }
+
+  CsvMappedEnumerator(File file, AtomicBoolean cancelFlag,
+      List<CsvFieldType> fieldTypes, List<Integer> fields, int chunkSize) {
+    this.cancelFlag = cancelFlag;
+    this.fieldTypes = ImmutableNullableList.copyOf(fieldTypes);
+    this.fields = ImmutableIntList.copyOf(fields);
+    this.chunkSize = chunkSize;
+    this.pool = ForkJoinPool.commonPool();
+    try {
+      this.channel = new RandomAccessFile(file, "r").getChannel();
+      this.size = channel.size();
+    } catch (IOException e) {
+      throw Util.throwAsRuntime("Error opening " + file, e);
+    }
+  }
+
+  /** Returns whether a source can be read by this enumerator; it must be
+   * an uncompressed local file. */
+  static boolean canRead(Source source) {
+    return "file".equals(source.protocol())
+        && !source.path().endsWith(".gz");
+  }
+
+  @Override public E current() {
+    return castNonNull(current);
+  }
+
+  @Override public boolean moveNext() {
+    for (;;) {
+      if (cancelFlag.get()) {
+        return false;
+      }
+      if (rows.hasNext()) {
+        current = rows.next();
+        return true;
+      }
+      submit();
+      final FutureTask<List<E>> task = tasks.poll();
+      if (task == null) {
+        current = null;
+        return false;
+      }
+      rows = join(task).iterator();
+    }
+  }
+
+  /** Keeps enough chunks in flight to occupy every thread of the pool. */
+  private void submit() {
+    final int window = 2 * pool.getParallelism();
+    while (tasks.size() < window && position < size) {
+      final boolean first = position == 0;
+      final boolean chunkInField = inField;
+      final long start = position;
+      final ByteBuffer buffer;
+      final int end;
+      try {
+        long length = Math.min(size - start, 2L * chunkSize);
+        for (;;) {
+          final boolean eof = start + length == size;
+          if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("CSV record at offset " + start
+                + " is too long");
+          }
+          final ByteBuffer b =
+              channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+          if (eof && length <= chunkSize) {
+            buffer = b;
+            end = (int) length;
+            break;
+          }
+          final Scanner scanner = new Scanner(chunkInField);
+          final int boundary = scanner.scan(b, 0, (int) length, chunkSize, eof);
+          if (boundary >= 0) {
+            buffer = b;
+            end = boundary;
+            inField = scanner.inField;
+            break;
+          }
+          if (eof) {
+            buffer = b;
+            end = (int) length;
+            break;
+          }
+          length = Math.min(size - start, 2L * length);
+        }
+      } catch (IOException e) {
+        throw Util.throwAsRuntime("Error mapping CSV file", e);
+      }
+      position = start + end;
+      // Use FutureTask rather than ForkJoinTask, so that get() throws the
+      // task's exception rather than a copy
+      final FutureTask<List<E>> task =
+          new FutureTask<>(new ChunkParser(buffer, end, chunkInField, first));
+      pool.execute(task);
+      tasks.add(task);
+    }
+  }
+
+  private List<E> join(FutureTask<List<E>> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = castNonNull(e.getCause());
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  @Override public void reset() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override public void close() {
+    for (FutureTask<List<E>> task : tasks) {
+      task.cancel(false);
+    }
+    tasks.clear();
+    rows = Collections.emptyIterator();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new RuntimeException("Error closing CSV file", e);
+    }
+  }
+
+  /** Tracks the state of {@link CSVParser} over a sequence of bytes.
+   *
+   * <p>The parser decides whether a line break ends a record based on
+   * whether it is inside a quoted field. Whether a quote or backslash is an
+   * escape depends also on the "in field" flag, which the parser does not
+   * reset between lines. The separator, quote, escape and line break
+   * characters are all ASCII, so the state can be computed from UTF-8
+   * bytes. */
+  private static class Scanner {
+    boolean inQuotes;
+    boolean inField;
+
+    Scanner(boolean inField) {
+      this.inField = inField;
+    }
+
+    /** Scans bytes from {@code from} to {@code to}, and returns the offset
+     * just after the first line break at or after {@code limit} that ends a
+     * record, or -1. */
+    int scan(ByteBuffer buffer, int from, int to, int limit, boolean eof) {
+      for (int i = from; i < to; i++) {
+        final byte c = buffer.get(i);
+        switch (c) {
+        case '\\':
+          if ((inQuotes || inField) && i + 1 < to) {
+            final byte next = buffer.get(i + 1);
+            if (next == '"' || next == '\\') {
+              ++i;
+            }
+          }
+          break;
+        case '"':
+          if ((inQuotes || inField) && i + 1 < to
+              && buffer.get(i + 1) == '"') {
+            ++i;
+          } else {
+            inQuotes = !inQuotes;
+          }
+          inField = !inField;
+          break;
+        case ',':
+          inField = inQuotes;
+          break;
+        case '\r':
+        case '\n':
+          if (c == '\r') {
+            if (i + 1 == to && !eof) {
+              // Cannot tell whether the next byte is '\n'
+              return -1;
+            }
+            if (i + 1 < to && buffer.get(i + 1) == '\n') {
+              ++i;
+            }
+          }
+          if (!inQuotes && i + 1 >= limit) {
+            return i + 1;
+          }
+          break;
+        default:
+          inField = true;
+          break;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /** Task that converts the records in a chunk to rows. */
+  private class ChunkParser implements Callable<List<E>> {
+    private final ByteBuffer buffer;
+    private final int end;
+    private boolean inField;
+    private boolean skipHeader;
+    private final int maxField;
+    private final CsvEnumerator.ArrayRowConverter converter;
+    private final CSVParser parser = new CSVParser();
+    /** Offsets of the commas in the current line; element {@code i} is the
+     * end of field {@code i}. */
+    private final int[] ends;
+    private int commaCount;
+    private boolean special;
+    private int lineEnd;
+    private int nextLine;
+    /** Result of the most recent call to a method that parses a value. */
+    private long longValue;
+    private int exponent;
+    private boolean negative;
+
+    ChunkParser(ByteBuffer buffer, int end, boolean inField,
+        boolean skipHeader) {
+      this.buffer = buffer;
+      this.end = end;
+      this.inField = inField;
+      this.skipHeader = skipHeader;
+      int max = -1;
+      for (int field : fields) {
+        max = Math.max(max, field);
+      }
+      this.maxField = max;
+      this.ends = new int[max + 1];
+      this.converter = new CsvEnumerator.ArrayRowConverter(fieldTypes, fields,
+          false);
+    }
+
+    @Override public List<E> call() throws IOException {
+      final List<E> list = new ArrayList<>();
+      int start = 0;
+      while (start < end) {
+        if (cancelFlag.get()) {
+          break;
+        }
+        line(start);
+        if (special || commaCount < maxField) {
+          // Quoted, escaped or short line; the parser reproduces what
+          // CsvEnumerator would return or throw.
+          final @Nullable String[] strings = parseRecord(start);
+          if (strings == null) {
+            break;
+          }
+          if (!skipHeader) {
+            list.add(row(strings));
+          }
+        } else {
+          if (!skipHeader) {
+            list.add(row(start));
+          }
+          if (lineEnd > start) {
+            inField = buffer.get(lineEnd - 1) != ',';
+          }
+        }
+        skipHeader = false;
+        start = nextLine;
+      }
+      return list;
+    }
+
+    /** Scans the line that starts at {@code start}, recording the offsets
+     * of the first commas, whether it contains quotes or backslashes, and
+     * where it ends. */
+    private void line(int start) {
+      commaCount = 0;
+      special = false;
+      int i = start;
+      for (; i < end; i++) {
+        final byte c = buffer.get(i);
+        if (c == ',') {
+          if (commaCount < ends.length) {
+            ends[commaCount] = i;
+          }
+          ++commaCount;
+        } else if (c == '"' || c == '\\') {
+          special = true;
+        } else if (c == '\n' || c == '\r') {
+          break;
+        }
+      }
+      lineEnd = i;
+      if (i < end && buffer.get(i) == '\r' && i + 1 < end
+          && buffer.get(i + 1) == '\n') {
+        ++i;
+      }
+      nextLine = Math.min(i + 1, end);
+    }
+
+    /** Parses the record that starts at {@code start} the same way as
+     * {@link au.com.bytecode.opencsv.CSVReader#readNext()}, and sets
+     * {@link #nextLine} to the start of the following record. */
+    private @Nullable String[] parseRecord(int start) throws IOException {
+      // Bring the parser's "in field" flag into line with the bytes before
+      // this record.
+      parser.parseLineMulti(inField ? "x" : ",");
+      @Nullable String[] result = null;
+      int p = start;
+      do {
+        if (p >= end) {
+          break;
+        }
+        line(p);
+        final String[] r = parser.parseLineMulti(decode(p, lineEnd));
+        p = nextLine;
+        if (r.length > 0) {
+          if (result == null) {
+            result = r;
+          } else {
+            final String[] t = new String[result.length + r.length];
+            System.arraycopy(result, 0, t, 0, result.length);
+            System.arraycopy(r, 0, t, result.length, r.length);
+            result = t;
+          }
+        }
+      } while (parser.isPending());
+      final Scanner scanner = new Scanner(inField);
+      scanner.scan(buffer, start, p, Integer.MAX_VALUE, true);
+      inField = scanner.inField;
+      nextLine = p;
+      return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E row(@Nullable String[] strings) {
+      final @Nullable Object[] values = converter.convertNormalRow(strings);
+      return (E) (values.length == 1 ? values[0] : values);
+    }
+
+    /** Converts the projected fields of a line that has no quotes or
+     * backslashes. */
+    @SuppressWarnings("unchecked")
+    private E row(int start) {
+      final @Nullable Object[] values = new Object[fields.size()];
+      for (int i = 0; i < values.length; i++) {
+        final int field = fields.get(i);
+        final int fieldStart = field == 0 ? start : ends[field - 1] + 1;
+        final int fieldEnd = field < commaCount ? ends[field] : lineEnd;
+        values[i] = value(fieldTypes.get(field), fieldStart, fieldEnd);
+      }
+      return (E) (values.length == 1 ? values[0] : values);
+    }
+
+    private @Nullable Object value(@Nullable CsvFieldType fieldType,
+        int start, int end) {
+      if (fieldType == null) {
+        return decode(start, end);
+      }
+      if (start == end) {
+        return fieldType == CsvFieldType.STRING
+            || fieldType == CsvFieldType.CHAR ? "" : null;
+      }
+      switch (fieldType) {
+      case BOOLEAN:
+        return end - start == 4
+            && (buffer.get(start) | 0x20) == 't'
+            && (buffer.get(start + 1) | 0x20) == 'r'
+            && (buffer.get(start + 2) | 0x20) == 'u'
+            && (buffer.get(start + 3) | 0x20) == 'e';
+      case BYTE:
+        if (parseLong(start, end, Byte.MIN_VALUE, Byte.MAX_VALUE)) {
+          return (byte) longValue;
+        }
+        break;
+      case SHORT:
+        if (parseLong(start, end, Short.MIN_VALUE, Short.MAX_VALUE)) {
+          return (short) longValue;
+        }
+        break;
+      case INT:
+        if (parseLong(start, end, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+          return (int) longValue;
+        }
+        break;
+      case LONG:
+        if (parseLong(start, end, Long.MIN_VALUE, Long.MAX_VALUE)) {
+          return longValue;
+        }
+        break;
+      case FLOAT:
+        if (parseDecimal(start, end, 7, FLOAT_POWERS.length - 1)) {
+          final float f = (float) longValue;
+          final float v = exponent >= 0
+              ? f * FLOAT_POWERS[exponent]
+              : f / FLOAT_POWERS[-exponent];
+          return negative ? -v : v;
+        }
+        break;
+      case DOUBLE:
+        if (parseDecimal(start, end, 15, DOUBLE_POWERS.length - 1)) {
+          final double d = (double) longValue;
+          final double v = exponent >= 0
+              ? d * DOUBLE_POWERS[exponent]
+              : d / DOUBLE_POWERS[-exponent];
+          return negative ? -v : v;
+        }
+        break;
+      case DATE:
+        if (end - start == 10 && parseDate(start)) {
+          return (int) longValue;
+        }
+        break;
+      case TIME:
+        if (end - start == 8 && parseTime(start)) {
+          return (int) longValue;
+        }
+        break;
+      case TIMESTAMP:
+        if (end - start == 19 && buffer.get(start + 10) == ' '
+            && parseDate(start)) {
+          final long date = longValue;
+          if (parseTime(start + 11)) {
+            return date * DateTimeUtils.MILLIS_PER_DAY + longValue;
+          }
+        }
+        break;
+      default:
+        return decode(start, end);
+      }
+      // Not in a format that we can parse from bytes; let the row converter
+      // handle it, including any exception.
+      return converter.convert(fieldType, decode(start, end));
+    }
+
+    /** Parses an integer of at most 18 digits, with optional sign, into
+     * {@link #longValue}. */
+    private boolean parseLong(int start, int end, long min, long max) {
+      int i = start;
+      final byte first = buffer.get(i);
+      final boolean minus = first == '-';
+      if (minus || first == '+') {
+        ++i;
+      }
+      if (i == end || end - i > 18) {
+        return false;
+      }
+      long v = 0;
+      for (; i < end; i++) {
+        final int digit = buffer.get(i) - '0';
+        if (digit < 0 || digit > 9) {
+          return false;
+        }
+        v = v * 10 + digit;
+      }
+      if (minus) {
+        v = -v;
+      }
+      if (v < min || v > max) {
+        return false;
+      }
+      longValue = v;
+      return true;
+    }
+
+    /** Parses a decimal number of the form {@code [+-]digits[.digits][e[+-]
+     * digits]} into {@link #negative}, {@link #longValue} and
+     * {@link #exponent}, such that the value is exactly
+     * {@code longValue * 10 ^ exponent}; returns false if it has more
+     * digits than {@code maxDigits} or the exponent's magnitude exceeds
+     * {@code maxExponent}, in which case multiplying or dividing would not
+     * be correctly rounded. */
+    private boolean parseDecimal(int start, int end, int maxDigits,
+        int maxExponent) {
+      int i = start;
+      final byte first = buffer.get(i);
+      negative = first == '-';
+      if (negative || first == '+') {
+        ++i;
+      }
+      long v = 0;
+      int digits = 0;
+      int scale = 0;
+      boolean point = false;
+      for (; i < end; i++) {
+        final byte c = buffer.get(i);
+        if (c >= '0' && c <= '9') {
+          if (++digits > maxDigits) {
+            return false;
+          }
+          v = v * 10 + (c - '0');
+          if (point) {
+            ++scale;
+          }
+        } else if (c == '.' && !point) {
+          point = true;
+        } else {
+          break;
+        }
+      }
+      if (digits == 0) {
+        return false;
+      }
+      int e = 0;
+      if (i < end) {
+        final byte c = buffer.get(i);
+        if (c != 'e' && c != 'E') {
+          return false;
+        }
+        ++i;
+        boolean negativeExponent = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+          negativeExponent = buffer.get(i) == '-';
+          ++i;
+        }
+        if (i == end || end - i > 3) {
+          return false;
+        }
+        for (; i < end; i++) {
+          final int digit = buffer.get(i) - '0';
+          if (digit < 0 || digit > 9) {
+            return false;
+          }
+          e = e * 10 + digit;
+        }
+        if (negativeExponent) {
+          e = -e;
+        }
+      }
+      e -= scale;
+      if (e < -maxExponent || e > maxExponent) {
+        return false;
+      }
+      longValue = v;
+      exponent = e;
+      return true;
+    }
+
+    /** Parses a date of the form {@code yyyy-MM-dd} into the number of days
+     * since the epoch in {@link #longValue}. Returns false if the date is
+     * out of range, which {@link java.text.SimpleDateFormat} would treat
+     * leniently, or is before the Gregorian calendar. */
+    private boolean parseDate(int start) {
+      final int year = digits(start, 4);
+      final int month = digits(start + 5, 2);
+      final int day = digits(start + 8, 2);
+      if (year < 1583 || month < 1 || month > 12 || day < 1
+          || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+        return false;
+      }
+      final boolean leap =
+          year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+      final int days = month == 2 ? (leap ? 29 : 28)
+          : month == 4 || month == 6 || month == 9 || month == 11 ? 30
+          : 31;
+      if (day > days) {
+        return false;
+      }
+      longValue = DateTimeUtils.ymdToUnixDate(year, month, day);
+      return true;
+    }
+
+    /** Parses a time of the form {@code HH:mm:ss} into milliseconds since
+     * midnight in {@link #longValue}. */
+    private boolean parseTime(int start) {
+      final int hour = digits(start, 2);
+      final int minute = digits(start + 3, 2);
+      final int second = digits(start + 6, 2);
+      if (hour < 0 || hour > 23 || minute < 0 || minute > 59
+          || second < 0 || second > 59
+          || buffer.get(start + 2) != ':' || buffer.get(start + 5) != ':') {
+        return false;
+      }
+      longValue = ((hour * 60L + minute) * 60L + second) * 1000L;
+      return true;
+    }
+
+    /** Returns the value of {@code n} decimal digits, or -1. */
+    private int digits(int start, int n) {
+      int v = 0;
+      for (int i = start; i < start + n; i++) {
+        final int digit = buffer.get(i) - '0';
+        if (digit < 0 || digit > 9) {
+          return -1;
+        }
+        v = v * 10 + digit;
+      }
+      return v;
+    }
+
+    /** Decodes UTF-8 bytes into a string. */
+    private String decode(int start, int end) {
+      final char[] chars = new char[end - start];
+      for (int i = start; i < end; i++) {
+        final byte b = buffer.get(i);
+        if (b < 0) {
+          final byte[] bytes = new byte[end - start];
+          for (int j = start; j < end; j++) {
+            bytes[j - start] = buffer.get(j);
+          }
+          return StandardCharsets.UTF_8.decode(ByteBuffer.wrap(bytes))
+              .toString();
+        }
+        chars[i - start] = (char) b;
+      }
+      return String.valueOf(chars);
+    }
+  }
+}
@@ -54,7 +54,11 @@ public class CsvTranslatableTable extends CsvTable
     return "CsvTranslatableTable";
   }
 
-  /** Returns an enumerable over a given projection of the fields. */
+  /** Returns an enumerable over a given projection of the fields.
+   *
+   * <p>If the source is an uncompressed local file, reads it using a
+   * {@link CsvMappedEnumerator}, which parses chunks of the file in parallel
+   * and converts only the projected fields. */
   @SuppressWarnings("unused") // called from generated code
   public Enumerable<Object> project(final DataContext root,
       final int[] fields) {
@@ -62,6 +66,10 @@ public Enumerable<Object> project(final DataContext root,
     return new AbstractEnumerable<Object>() {
       @Override public Enumerator<Object> enumerator() {
         JavaTypeFactory typeFactory = root.getTypeFactory();
+        if (CsvMappedEnumerator.canRead(source)) {
+          return new CsvMappedEnumerator<>(source.file(), cancelFlag,
+              getFieldTypes(typeFactory), ImmutableIntList.of(fields));
+        }
         return new CsvEnumerator<>(source, cancelFlag,
             getFieldTypes(typeFactory), ImmutableIntList.of(fields));
       }
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.file;
+
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.util.ImmutableIntList;
+import org.apache.calcite.util.Sources;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link CsvMappedEnumerator} by comparing it with
+ * {@link CsvEnumerator}.
+ */
+class CsvMappedEnumeratorTest {
+  private static final String HEADER = "ID:int,NAME:string,AMOUNT:double,"
+      + "RATE:float,FLAG:boolean,D:date,T:time,TS:timestamp,BIG:long,"
+      + "SMALL:short,TINY:byte,OTHER";
+
+  private static final String[] STRINGS = {
+      "", "a", "hello world", "\"with, comma\"", "\"quote \"\" inside\"",
+      "\"multi\nline\"", "\"multi\r\nline, with comma\"", "back\\\\slash",
+      "\"esc\\\"aped\"", "café", "中文", "  padded  ",
+      "\"\"",
+  };
+
+  private static final String[] DOUBLES = {
+      "", "0", "-0.0", "1.5", "-2.25", "1e3", "1.0E-5", "123456789012345",
+      "1234567890123456789", "0.1", "3.4028235E38", "1e-320", "NaN",
+      "Infinity", ".5", "7.", "00012.50", "+4",
+  };
+
+  private static final String[] INTEGERS = {
+      "", "0", "-1", "+7", "2147483647", "-2147483648", "00042",
+  };
+
+  private static final String[] DATES = {
+      "", "2021-03-14", "1970-01-01", "1969-12-31", "2000-02-29",
+      "2021-02-30", "1500-06-01", "9999-12-31", "2021-3-4",
+  };
+
+  private static final String[] TIMES = {
+      "", "00:00:00", "23:59:59", "12:34:56", "25:00:00", "1:2:3",
+  };
+
+  /** Writes a CSV file with values that exercise both the fast path and
+   * the fallback to {@link au.com.bytecode.opencsv.CSVParser}. */
+  private static File write(File dir, int rowCount, String lineSeparator)
+      throws IOException {
+    final File file = new File(dir, "t.csv");
+    final Random random = new Random(rowCount);
+    try (Writer w =
+             new OutputStreamWriter(Files.newOutputStream(file.toPath()),
+                 StandardCharsets.UTF_8)) {
+      w.write(HEADER);
+      for (int i = 0; i < rowCount; i++) {
+        w.write(lineSeparator);
+        final String date = pick(random, DATES);
+        final String time = pick(random, TIMES);
+        w.write((random.nextInt(10) == 0 ? "" : Integer.toString(i)) + ","
+            + pick(random, STRINGS) + ","
+            + (random.nextBoolean() ? pick(random, DOUBLES)
+                : Double.toString(random.nextGaussian() * 1000)) + ","
+            + (random.nextBoolean() ? pick(random, DOUBLES)
+                : Float.toString(random.nextFloat())) + ","
+            + pick(random, "", "true", "TRUE", "false", "yes") + ","
+            + date + ","
+            + time + ","
+            + (date.isEmpty() || time.isEmpty() ? "" : date + " " + time) + ","
+            + (random.nextBoolean() ? pick(random, INTEGERS)
+                : Long.toString(random.nextLong())) + ","
+            + pick(random, "", "12", "-32768", "32767") + ","
+            + pick(random, "", "1", "-128", "127") + ","
+            + pick(random, STRINGS));
+      }
+      if (rowCount % 2 == 0) {
+        w.write(lineSeparator);
+      }
+    }
+    return file;
+  }
+
+  private static String pick(Random random, String... values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private static List<Object> read(Enumerator<Object> enumerator) {
+    final List<Object> list = new ArrayList<>();
+    try (Enumerator<Object> e = enumerator) {
+      while (e.moveNext()) {
+        final Object o = e.current();
+        list.add(o instanceof Object[] ? Arrays.asList((Object[]) o) : o);
+      }
+    }
+    return list;
+  }
+
+  private static void check(File file, int... fields) {
+    final List<CsvFieldType> fieldTypes = new ArrayList<>();
+    CsvEnumerator.deduceRowType(new JavaTypeFactoryImpl(),
+        Sources.of(file), fieldTypes, false);
+    final AtomicBoolean cancelFlag = new AtomicBoolean();
+    final List<Object> expected =
+        read(
+            new CsvEnumerator<>(Sources.of(file), cancelFlag, fieldTypes,
+                ImmutableIntList.of(fields)));
+    for (int chunkSize : new int[] {1, 7, 64, 1000,
+        CsvMappedEnumerator.DEFAULT_CHUNK_SIZE}) {
+      final List<Object> actual =
+          read(
+              new CsvMappedEnumerator<>(file, cancelFlag, fieldTypes,
+                  ImmutableIntList.of(fields), chunkSize));
+      assertThat("chunkSize " + chunkSize, actual, is(expected));
+    }
+  }
+
+  @Test void testAllFields(@TempDir File dir) throws IOException {
+    final File file = write(dir, 2000, "\n");
+    check(file, CsvEnumerator.identityList(12));
+  }
+
+  @Test void testProjectedFields(@TempDir File dir) throws IOException {
+    final File file = write(dir, 1001, "\r\n");
+    check(file, 7, 2, 0);
+    check(file, 1);
+    check(file, 11);
+    check(file, 5, 5);
+  }
+
+  @Test void testCarriageReturn(@TempDir File dir) throws IOException {
+    final File file = write(dir, 500, "\r");
+    check(file, 0, 1, 11);
+  }
+
+  @Test void testEmpty(@TempDir File dir) throws IOException {
+    final File file = new File(dir, "t.csv");
+    Files.write(file.toPath(), new byte[0]);
+    check(file, 0);
+    Files.write(file.toPath(), "ID:int".getBytes(StandardCharsets.UTF_8));
+    check(file, 0);
+    Files.write(file.toPath(), "\"ID\nX\":int\n1\n".getBytes(StandardCharsets.UTF_8));
+    check(file, 0);
+  }
+
+  /** Tests that an exception thrown while parsing a chunk reaches the
+   * consumer unchanged. */
+  @Test void testShortLine(@TempDir File dir) throws IOException {
+    final File file = new File(dir, "t.csv");
+    Files.write(file.toPath(),
+        "A:int,B:int\n1,2\n3\n".getBytes(StandardCharsets.UTF_8));
+    final List<CsvFieldType> fieldTypes =
+        Arrays.asList(CsvFieldType.INT, CsvFieldType.INT);
+    assertThrows(ArrayIndexOutOfBoundsException.class, () ->
+        read(
+            new CsvMappedEnumerator<>(file, new AtomicBoolean(), fieldTypes,
+                ImmutableIntList.of(1))));
+  }
+}
@@ -22,10 +22,13 @@
     jmhImplementation(platform(project(":bom")))
     jmhImplementation(project(":core"))
     jmhImplementation(project(":linq4j"))
+    jmhImplementation(project(":plus"))
     jmhImplementation("com.google.guava:guava")
+    jmhImplementation("net.hydromatic:tpcds")
     jmhImplementation("org.codehaus.janino:commons-compiler")
     jmhImplementation("org.openjdk.jmh:jmh-core")
     jmhImplementation("org.openjdk.jmh:jmh-generator-annprocess")
+    jmhRuntimeOnly("org.apache.logging.log4j:log4j-slf4j-impl")
 }
 
 // See https://github.com/melix/jmh-gradle-plugin
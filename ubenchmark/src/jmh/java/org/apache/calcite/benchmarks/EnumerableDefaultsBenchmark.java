@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.JoinType;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the join, aggregation and sort operators of
+ * {@link EnumerableDefaults}, which are what enumerable plans spend most of
+ * their time in.
+ *
+ * <p>The data is synthetic: a "fact" input of {@code rowCount} rows
+ * {@code [key, id]} whose keys are uniformly distributed over
+ * {@code keyCount} values, and a "dimension" input with one row
+ * {@code [key, name]} per key. Joins are between fact and dimension, so
+ * every join returns {@code rowCount} rows.
+ *
+ * <p>Rows are arrays, and keys are boxed {@link Integer}s, as in the code
+ * that {@link org.apache.calcite.adapter.enumerable.EnumerableRel} operators
+ * generate.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EnumerableDefaultsBenchmark {
+  private static final Function1<Object[], Integer> KEY =
+      row -> (Integer) row[0];
+
+  private static final Function2<Object[], Object[], Object[]> CONCAT =
+      (left, right) -> new Object[] {left[0], left[1], right[1]};
+
+  private static final Comparator<Integer> COMPARATOR =
+      Comparator.naturalOrder();
+
+  @Param({"1000", "100000"})
+  int rowCount;
+
+  @Param({"10", "1000"})
+  int keyCount;
+
+  /** Number of rows returned by the benchmarks of sort with fetch. */
+  @Param({"100"})
+  int fetch;
+
+  Enumerable<Object[]> facts;
+  Enumerable<Object[]> sortedFacts;
+  Enumerable<Object[]> dimension;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(rowCount * 31 + keyCount);
+    final List<Object[]> factList = new ArrayList<>();
+    for (int i = 0; i < rowCount; i++) {
+      factList.add(new Object[] {random.nextInt(keyCount), i});
+    }
+    final List<Object[]> dimensionList = new ArrayList<>();
+    for (int k = 0; k < keyCount; k++) {
+      dimensionList.add(new Object[] {k, "name" + k});
+    }
+    final List<Object[]> sortedFactList = new ArrayList<>(factList);
+    sortedFactList.sort(Comparator.comparing(KEY::apply));
+    facts = Linq4j.asEnumerable(factList);
+    sortedFacts = Linq4j.asEnumerable(sortedFactList);
+    dimension = Linq4j.asEnumerable(dimensionList);
+  }
+
+  /** Reads every row of a result. */
+  private static <T> void consume(Enumerable<T> enumerable, Blackhole bh) {
+    try (Enumerator<T> enumerator = enumerable.enumerator()) {
+      while (enumerator.moveNext()) {
+        bh.consume(enumerator.current());
+      }
+    }
+  }
+
+  @Benchmark
+  public void hashJoin(Blackhole bh) {
+    consume(
+        EnumerableDefaults.hashJoin(facts, dimension, KEY, KEY, CONCAT), bh);
+  }
+
+  /** Merge join of inputs that are already sorted; compare with
+   * {@link #hashJoin}. The dimension input is sorted because it was
+   * generated in key order. */
+  @Benchmark
+  public void mergeJoin(Blackhole bh) {
+    consume(
+        EnumerableDefaults.mergeJoin(sortedFacts, dimension, KEY, KEY,
+            CONCAT, JoinType.INNER, COMPARATOR), bh);
+  }
+
+  /** Nested-loop join; evaluates the predicate
+   * {@code rowCount * keyCount} times. */
+  @Benchmark
+  public void nestedLoopJoin(Blackhole bh) {
+    consume(
+        EnumerableDefaults.nestedLoopJoin(facts, dimension,
+            (left, right) -> left[0].equals(right[0]), CONCAT,
+            JoinType.INNER), bh);
+  }
+
+  /** Batched correlate join, as generated by
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableBatchNestedLoopJoin};
+   * for each batch of 100 outer rows, the inner input returns the dimension
+   * rows whose key is in the batch. */
+  @Benchmark
+  public void correlateBatchJoin(Blackhole bh) {
+    consume(
+        EnumerableDefaults.correlateBatchJoin(JoinType.INNER, facts,
+            batch -> {
+              final Set<Integer> keys = new HashSet<>();
+              for (Object[] row : batch) {
+                keys.add(KEY.apply(row));
+              }
+              return dimension.where(row -> keys.contains(KEY.apply(row)));
+            },
+            CONCAT, (left, right) -> left[0].equals(right[0]), 100), bh);
+  }
+
+  /** Computes {@code COUNT(*)} and {@code SUM(id)} for each key, with
+   * accumulators as in the code generated by
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableAggregate}. */
+  @Benchmark
+  public void groupBy(Blackhole bh) {
+    consume(
+        EnumerableDefaults.groupBy(facts, KEY, () -> new long[2],
+            (long[] acc, Object[] row) -> {
+              acc[0]++;
+              acc[1] += (Integer) row[1];
+              return acc;
+            },
+            (Integer key, long[] acc) -> new Object[] {key, acc[0], acc[1]}),
+        bh);
+  }
+
+  /** As {@link #groupBy}, but over input that is already sorted by key. */
+  @Benchmark
+  public void sortedGroupBy(Blackhole bh) {
+    consume(
+        EnumerableDefaults.sortedGroupBy(sortedFacts, KEY, () -> new long[2],
+            (long[] acc, Object[] row) -> {
+              acc[0]++;
+              acc[1] += (Integer) row[1];
+              return acc;
+            },
+            (Integer key, long[] acc) -> new Object[] {key, acc[0], acc[1]},
+            COMPARATOR),
+        bh);
+  }
+
+  @Benchmark
+  public void orderBy(Blackhole bh) {
+    consume(EnumerableDefaults.orderBy(facts, KEY, COMPARATOR), bh);
+  }
+
+  /** Sort that returns only the first {@code fetch} rows; compare with
+   * {@link #orderBy}. */
+  @Benchmark
+  public void orderByWithFetch(Blackhole bh) {
+    consume(EnumerableDefaults.orderBy(facts, KEY, COMPARATOR, 0, fetch), bh);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(EnumerableDefaultsBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}
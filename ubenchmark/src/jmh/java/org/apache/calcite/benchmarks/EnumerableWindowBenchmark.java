@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.jdbc.CalciteConnection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks window aggregation in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableWindow}.
+ *
+ * <p>Window aggregation is not a method of
+ * {@link org.apache.calcite.linq4j.EnumerableDefaults}; its code is generated
+ * for each query. So this benchmark executes prepared statements, and
+ * measures the generated code plus the sort that precedes it, but not
+ * planning.
+ *
+ * <p>The data is the same as in {@link EnumerableDefaultsBenchmark}:
+ * {@code rowCount} rows whose keys are uniformly distributed over
+ * {@code keyCount} values.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EnumerableWindowBenchmark {
+  @Param({"1000", "100000"})
+  int rowCount;
+
+  @Param({"10", "1000"})
+  int keyCount;
+
+  Connection connection;
+  PreparedStatement rowsWindow;
+  PreparedStatement rangeWindow;
+  PreparedStatement rankWindow;
+  PreparedStatement minMaxWindow;
+
+  /** Schema of the benchmark, used via {@link ReflectiveSchema}. */
+  public static class Facts {
+    public final Fact[] facts;
+
+    Facts(Fact[] facts) {
+      this.facts = facts;
+    }
+  }
+
+  /** Row of the benchmark table. */
+  public static class Fact {
+    public final int key;
+    public final int id;
+    public final long val;
+
+    Fact(int key, int id, long val) {
+      this.key = key;
+      this.id = id;
+      this.val = val;
+    }
+  }
+
+  @Setup
+  public void setup() throws SQLException {
+    final Random random = new Random(rowCount * 31 + keyCount);
+    final Fact[] facts = new Fact[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      facts[i] = new Fact(random.nextInt(keyCount), i, random.nextInt(1000));
+    }
+    final Properties info = new Properties();
+    info.put("lex", "JAVA");
+    connection = DriverManager.getConnection("jdbc:calcite:", info);
+    final CalciteConnection calciteConnection =
+        connection.unwrap(CalciteConnection.class);
+    calciteConnection.getRootSchema()
+        .add("s", new ReflectiveSchema(new Facts(facts)));
+    // Moving sum over a window of a fixed number of rows
+    rowsWindow =
+        connection.prepareStatement("select key, id,\n"
+            + "  sum(val) over (partition by key order by id\n"
+            + "    rows 10 preceding) as s\n"
+            + "from s.facts");
+    // Running total and count
+    rangeWindow =
+        connection.prepareStatement("select key, id,\n"
+            + "  sum(val) over w as s, count(*) over w as c\n"
+            + "from s.facts\n"
+            + "window w as (partition by key order by id\n"
+            + "  range between unbounded preceding and current row)");
+    rankWindow =
+        connection.prepareStatement("select key, id,\n"
+            + "  rank() over (partition by key order by val) as r\n"
+            + "from s.facts");
+    // Moving minimum and maximum over a wide window
+    minMaxWindow =
+        connection.prepareStatement("select key, id,\n"
+            + "  min(val) over w as mi, max(val) over w as ma\n"
+            + "from s.facts\n"
+            + "window w as (partition by key order by id\n"
+            + "  rows between 100 preceding and 100 following)");
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    connection.close();
+  }
+
+  private static void consume(PreparedStatement statement, Blackhole bh)
+      throws SQLException {
+    try (ResultSet resultSet = statement.executeQuery()) {
+      while (resultSet.next()) {
+        bh.consume(resultSet.getLong(3));
+      }
+    }
+  }
+
+  @Benchmark
+  public void rowsWindow(Blackhole bh) throws SQLException {
+    consume(rowsWindow, bh);
+  }
+
+  @Benchmark
+  public void rangeWindow(Blackhole bh) throws SQLException {
+    consume(rangeWindow, bh);
+  }
+
+  @Benchmark
+  public void rankWindow(Blackhole bh) throws SQLException {
+    consume(rankWindow, bh);
+  }
+
+  @Benchmark
+  public void minMaxWindow(Blackhole bh) throws SQLException {
+    consume(minMaxWindow, bh);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(EnumerableWindowBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}
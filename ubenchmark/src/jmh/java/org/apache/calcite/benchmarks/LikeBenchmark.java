@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.runtime.StringMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks evaluation of SQL {@code LIKE}, measuring the cost per row.
+ *
+ * <ul>
+ * <li>{@link #compilePerRow} compiles the regular expression for every row,
+ * as {@code SqlFunctions.like} used to;
+ * <li>{@link #compiledRegex} uses a regular expression compiled once;
+ * <li>{@link #constantPattern} uses a {@link StringMatcher} created once, as
+ * generated code does when the pattern is a literal;
+ * <li>{@link #variablePattern} calls {@link StringMatcher#like(String)} for
+ * every row, as generated code does when the pattern is not constant, and
+ * therefore includes the cost of the cache lookup.
+ * </ul>
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1024m")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LikeBenchmark {
+  private static final int ROWS = 1000;
+
+  @Param({"abc", "abc%", "%abc", "%abc%", "a%b%c", "a_c%"})
+  String pattern;
+
+  private String[] values;
+  private Pattern regex;
+  private StringMatcher matcher;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(0);
+    values = new String[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      final StringBuilder b = new StringBuilder();
+      final int length = 5 + random.nextInt(30);
+      for (int j = 0; j < length; j++) {
+        b.append((char) ('a' + random.nextInt(4)));
+      }
+      values[i] = b.toString();
+    }
+    regex = Pattern.compile(toRegex(pattern));
+    matcher = StringMatcher.like(pattern);
+  }
+
+  /** Converts a LIKE pattern without escapes to a regular expression. */
+  private static String toRegex(String pattern) {
+    final StringBuilder b = new StringBuilder();
+    for (char c : pattern.toCharArray()) {
+      switch (c) {
+      case '%':
+        b.append("(?s:.*)");
+        break;
+      case '_':
+        b.append('.');
+        break;
+      default:
+        b.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return b.toString();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public int compilePerRow() {
+    int n = 0;
+    for (String value : values) {
+      if (Pattern.matches(toRegex(pattern), value)) {
+        ++n;
+      }
+    }
+    return n;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public int compiledRegex() {
+    int n = 0;
+    for (String value : values) {
+      if (regex.matcher(value).matches()) {
+        ++n;
+      }
+    }
+    return n;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public int constantPattern() {
+    int n = 0;
+    for (String value : values) {
+      if (matcher.matches(value)) {
+        ++n;
+      }
+    }
+    return n;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public int variablePattern() {
+    int n = 0;
+    for (String value : values) {
+      if (StringMatcher.like(pattern).matches(value)) {
+        ++n;
+      }
+    }
+    return n;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(LikeBenchmark.class.getSimpleName())
+        .build();
+
+    new Runner(opt).run();
+  }
+}
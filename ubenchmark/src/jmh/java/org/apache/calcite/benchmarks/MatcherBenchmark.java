@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.runtime.Matcher;
+import org.apache.calcite.runtime.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Matcher}, which implements {@code MATCH_RECOGNIZE}, on a
+ * single long partition.
+ *
+ * <p>Each row is the change in price of a random walk, so the predicates are
+ * cheap, and the benchmark measures the cost of tracking partial matches.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MatcherBenchmark {
+  @Param({"1000", "100000"})
+  int rowCount;
+
+  List<Integer> rows;
+  Matcher<Integer> vShape;
+  Matcher<Integer> longRun;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(rowCount);
+    rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(random.nextInt(3) - 1);
+    }
+
+    // pattern (down+ up+): a fall in price followed by a rise
+    final Pattern vShapePattern = Pattern.builder()
+        .symbol("down").plus()
+        .symbol("up").plus().seq()
+        .build();
+    vShape = Matcher.<Integer>builder(vShapePattern.toAutomaton())
+        .add("down", s -> s.get() < 0)
+        .add("up", s -> s.get() > 0)
+        .build();
+
+    // pattern (any{1, 50} up): up to 50 rows of any kind, then a rise; many
+    // partial matches are live at a time
+    final Pattern longRunPattern = Pattern.builder()
+        .symbol("any").repeat(1, 50)
+        .symbol("up").seq()
+        .build();
+    longRun = Matcher.<Integer>builder(longRunPattern.toAutomaton())
+        .add("up", s -> s.get() > 0)
+        .build();
+  }
+
+  @Benchmark
+  public int vShape() {
+    return vShape.match(rows).size();
+  }
+
+  @Benchmark
+  public int longRun() {
+    return longRun.match(rows).size();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(MatcherBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.linq4j.tree.ClassDeclaration;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.Contexts;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptListener;
+import org.apache.calcite.plan.RelOptPredicateList;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.Planner;
+import org.apache.calcite.tools.Programs;
+import org.apache.calcite.tools.RelConversionException;
+import org.apache.calcite.tools.ValidationException;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the phases of preparing a query: parse, validate, conversion
+ * to relational algebra, optimization and generation of Java code.
+ *
+ * <p>Each phase is a separate benchmark. Before each invocation, the state
+ * is prepared by running all phases (which is not measured), so that each
+ * benchmark starts from a fresh result of the previous phase.
+ *
+ * <ul>
+ * <li>{@link #parse} uses {@link SqlParser};
+ * <li>{@link #validate} uses {@link org.apache.calcite.sql.validate.SqlValidatorImpl};
+ * <li>{@link #sqlToRel} uses
+ * {@link org.apache.calcite.sql2rel.SqlToRelConverter} and then
+ * decorrelates;
+ * <li>{@link #optimize} runs {@link Programs#standard()}, which uses a
+ * {@link org.apache.calcite.plan.volcano.VolcanoPlanner} and several
+ * {@link org.apache.calcite.plan.hep.HepPlanner}s;
+ * <li>{@link #codegen} generates (but does not compile) the Java code of an
+ * enumerable plan.
+ * </ul>
+ *
+ * <p>When a trial ends, it logs, at INFO level, the number of rules attempted
+ * and fired in the Volcano planner, and the number of metadata calls, during
+ * the most recent optimization. These do not depend on timing, so a change in them
+ * is a reliable sign that planning has changed.
+ *
+ * <p>Sub-classes provide the schema and the queries.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx2g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public abstract class PlannerBenchmark {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(PlannerBenchmark.class);
+
+  private FrameworkConfig config;
+  private String sql;
+
+  private SqlNode parsed;
+  private Planner parsedPlanner;
+  private SqlNode validated;
+  private Planner validatedPlanner;
+  private RelRoot root;
+  private Planner convertedPlanner;
+  private RelNode optimized;
+
+  private final PlannerCounts counts = new PlannerCounts();
+  private Hook.Closeable profileEvents = Hook.Closeable.EMPTY;
+
+  /** Adds the benchmark's schema to a root schema, and returns the schema
+   * that unqualified table names in the query are resolved against. */
+  protected abstract SchemaPlus addSchema(SchemaPlus rootSchema);
+
+  /** Returns the SQL of the query being benchmarked. */
+  protected abstract String sql();
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    final SchemaPlus defaultSchema = addSchema(rootSchema);
+    final Frameworks.ConfigBuilder configBuilder = Frameworks.newConfigBuilder()
+        .parserConfig(SqlParser.Config.DEFAULT)
+        .defaultSchema(defaultSchema)
+        .programs(Programs.standard());
+    if (PlannerProfileEvents.isRecording()) {
+      // Running under FlightRecorderProfiler; add the planner's profile to
+      // the recording
+      configBuilder.context(
+          Contexts.of(
+              CalciteConnectionConfig.DEFAULT.set(
+                  CalciteConnectionProperty.PLANNER_PROFILE, "true")));
+      profileEvents = PlannerProfileEvents.enable();
+    }
+    config = configBuilder.build();
+    sql = sql();
+  }
+
+  @Setup(Level.Invocation)
+  public void setupInvocation() throws Exception {
+    parsedPlanner = Frameworks.getPlanner(config);
+    parsed = parsedPlanner.parse(sql);
+
+    validatedPlanner = Frameworks.getPlanner(config);
+    validated = validatedPlanner.validate(validatedPlanner.parse(sql));
+
+    convertedPlanner = Frameworks.getPlanner(config);
+    root = convertedPlanner.rel(
+        convertedPlanner.validate(convertedPlanner.parse(sql)));
+
+    final Planner planner = Frameworks.getPlanner(config);
+    final RelRoot root2 = planner.rel(planner.validate(planner.parse(sql)));
+    counts.clear();
+    counts.register(root2.rel);
+    optimized = planner.transform(0, desiredTraits(root2), root2.rel);
+  }
+
+  @TearDown(Level.Invocation)
+  public void tearDownInvocation() {
+    parsedPlanner.close();
+    validatedPlanner.close();
+    convertedPlanner.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() {
+    profileEvents.close();
+    LOGGER.info("{}: {}", getClass().getSimpleName(), counts);
+  }
+
+  private static RelTraitSet desiredTraits(RelRoot root) {
+    return root.rel.getTraitSet()
+        .replace(EnumerableConvention.INSTANCE)
+        .replace(root.collation)
+        .simplify();
+  }
+
+  @Benchmark
+  public SqlNode parse() throws SqlParseException {
+    return SqlParser.create(sql, config.getParserConfig()).parseQuery();
+  }
+
+  @Benchmark
+  public SqlNode validate() throws ValidationException {
+    return parsedPlanner.validate(parsed);
+  }
+
+  @Benchmark
+  public RelRoot sqlToRel() throws RelConversionException {
+    return validatedPlanner.rel(validated);
+  }
+
+  @Benchmark
+  public RelNode optimize() throws RelConversionException {
+    return convertedPlanner.transform(0, desiredTraits(root), root.rel);
+  }
+
+  @Benchmark
+  public String codegen() {
+    final EnumerableRelImplementor implementor =
+        new EnumerableRelImplementor(optimized.getCluster().getRexBuilder(),
+            new HashMap<>());
+    final ClassDeclaration classDeclaration =
+        implementor.implementRoot((EnumerableRel) optimized,
+            EnumerableRel.Prefer.ARRAY);
+    return Expressions.toString(classDeclaration.memberDeclarations, "\n",
+        false);
+  }
+
+  /** Counts rule attempts and metadata calls during planning. */
+  static class PlannerCounts implements RelOptListener {
+    int ruleAttempts;
+    int ruleProductions;
+    final Map<String, Integer> metadataCalls = new TreeMap<>();
+
+    void clear() {
+      ruleAttempts = 0;
+      ruleProductions = 0;
+      metadataCalls.clear();
+    }
+
+    /** Starts counting events in the planner and metadata queries of a
+     * relational expression's cluster. */
+    void register(RelNode rel) {
+      final RelOptCluster cluster = rel.getCluster();
+      cluster.getPlanner().addListener(this);
+      cluster.setMetadataQuerySupplier(() ->
+          new CountingRelMetadataQuery(metadataCalls));
+      cluster.invalidateMetadataQuery();
+    }
+
+    @Override public void relEquivalenceFound(RelEquivalenceEvent event) {
+    }
+
+    @Override public void ruleAttempted(RuleAttemptedEvent event) {
+      if (event.isBefore()) {
+        ++ruleAttempts;
+      }
+    }
+
+    @Override public void ruleProductionSucceeded(RuleProductionEvent event) {
+      if (event.isBefore()) {
+        ++ruleProductions;
+      }
+    }
+
+    @Override public void relDiscarded(RelDiscardedEvent event) {
+    }
+
+    @Override public void relChosen(RelChosenEvent event) {
+    }
+
+    @Override public String toString() {
+      final Map<String, Object> map = new LinkedHashMap<>();
+      map.put("ruleAttempts", ruleAttempts);
+      map.put("ruleProductions", ruleProductions);
+      map.put("metadataCalls",
+          metadataCalls.values().stream().mapToInt(i -> i).sum());
+      map.putAll(metadataCalls);
+      return map.toString();
+    }
+  }
+
+  /** Metadata query that counts calls to the most frequently used kinds of
+   * metadata.
+   *
+   * <p>Overloads that delegate to another overload (such as
+   * {@link RelMetadataQuery#getUniqueKeys(RelNode)}) are not overridden, so
+   * that each call is counted once. */
+  private static class CountingRelMetadataQuery extends RelMetadataQuery {
+    private final Map<String, Integer> calls;
+
+    CountingRelMetadataQuery(Map<String, Integer> calls) {
+      this.calls = calls;
+    }
+
+    private void count(String name) {
+      calls.merge(name, 1, Integer::sum);
+    }
+
+    @Override public Double getRowCount(RelNode rel) {
+      count("rowCount");
+      return super.getRowCount(rel);
+    }
+
+    @Override public @Nullable Double getMaxRowCount(RelNode rel) {
+      count("maxRowCount");
+      return super.getMaxRowCount(rel);
+    }
+
+    @Override public @Nullable Double getMinRowCount(RelNode rel) {
+      count("minRowCount");
+      return super.getMinRowCount(rel);
+    }
+
+    @Override public @Nullable RelOptCost getCumulativeCost(RelNode rel) {
+      count("cumulativeCost");
+      return super.getCumulativeCost(rel);
+    }
+
+    @Override public @Nullable RelOptCost getNonCumulativeCost(RelNode rel) {
+      count("nonCumulativeCost");
+      return super.getNonCumulativeCost(rel);
+    }
+
+    @Override public @Nullable Double getSelectivity(RelNode rel,
+        @Nullable RexNode predicate) {
+      count("selectivity");
+      return super.getSelectivity(rel, predicate);
+    }
+
+    @Override public @Nullable Set<ImmutableBitSet> getUniqueKeys(RelNode rel,
+        boolean ignoreNulls) {
+      count("uniqueKeys");
+      return super.getUniqueKeys(rel, ignoreNulls);
+    }
+
+    @Override public @Nullable Boolean areColumnsUnique(RelNode rel,
+        ImmutableBitSet columns, boolean ignoreNulls) {
+      count("columnsUnique");
+      return super.areColumnsUnique(rel, columns, ignoreNulls);
+    }
+
+    @Override public @Nullable Double getDistinctRowCount(RelNode rel,
+        ImmutableBitSet groupKey, @Nullable RexNode predicate) {
+      count("distinctRowCount");
+      return super.getDistinctRowCount(rel, groupKey, predicate);
+    }
+
+    @Override public RelOptPredicateList getPulledUpPredicates(RelNode rel) {
+      count("pulledUpPredicates");
+      return super.getPulledUpPredicates(rel);
+    }
+
+    @Override public @Nullable ImmutableList<RelCollation> collations(
+        RelNode rel) {
+      count("collations");
+      return super.collations(rel);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.plan.RelOptProfiler;
+import org.apache.calcite.runtime.Hook;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits the planner profile of each statement as Java Flight Recorder
+ * events.
+ *
+ * <p>When {@link FlightRecorderProfiler} records a benchmark,
+ * {@link PlannerBenchmark} prepares statements with the
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#PLANNER_PROFILE}
+ * property, and the recording contains a {@code org.apache.calcite.Planning}
+ * event for each statement, and {@code org.apache.calcite.RuleProfile} and
+ * {@code org.apache.calcite.MetadataProfile} events for each rule and each
+ * kind of metadata.
+ */
+public class PlannerProfileEvents {
+  private PlannerProfileEvents() {
+  }
+
+  /** Returns whether Flight Recorder is recording. */
+  public static boolean isRecording() {
+    return FlightRecorder.isInitialized()
+        && !FlightRecorder.getFlightRecorder().getRecordings().isEmpty();
+  }
+
+  /** Starts emitting events for the statements that the current thread
+   * prepares. */
+  public static Hook.Closeable enable() {
+    return Hook.PLANNER_PROFILE.addThread(PlannerProfileEvents::emit);
+  }
+
+  private static void emit(RelOptProfiler profiler) {
+    final PlanningEvent planningEvent = new PlanningEvent();
+    if (planningEvent.shouldCommit()) {
+      planningEvent.elapsed = profiler.elapsedNanos();
+      planningEvent.commit();
+    }
+    for (RelOptProfiler.RuleProfile p : profiler.rules()) {
+      final RuleEvent event = new RuleEvent();
+      if (event.shouldCommit()) {
+        event.rule = p.rule;
+        event.queued = p.queued;
+        event.attempts = p.attempts;
+        event.productions = p.productions;
+        event.time = p.nanos;
+        event.commit();
+      }
+    }
+    for (RelOptProfiler.MetadataProfile p : profiler.metadata()) {
+      final MetadataEvent event = new MetadataEvent();
+      if (event.shouldCommit()) {
+        event.kind = p.kind;
+        event.calls = p.calls();
+        event.hits = p.hitCount;
+        event.time = p.nanos;
+        event.commit();
+      }
+    }
+  }
+
+  /** Event emitted when a statement has been planned. */
+  @Name("org.apache.calcite.Planning")
+  @Label("Planning")
+  @Category("Calcite")
+  @Description("Statement planned")
+  public static class PlanningEvent extends Event {
+    @Label("Elapsed")
+    @Timespan
+    public long elapsed;
+  }
+
+  /** Event that describes the work done by a rule while planning a
+   * statement. */
+  @Name("org.apache.calcite.RuleProfile")
+  @Label("Rule Profile")
+  @Category("Calcite")
+  @Description("Work done by a planner rule")
+  public static class RuleEvent extends Event {
+    @Label("Rule")
+    public String rule;
+
+    @Label("Queued")
+    public long queued;
+
+    @Label("Attempts")
+    public long attempts;
+
+    @Label("Productions")
+    public long productions;
+
+    @Label("Time")
+    @Timespan
+    public long time;
+  }
+
+  /** Event that describes the work done computing a kind of metadata while
+   * planning a statement. */
+  @Name("org.apache.calcite.MetadataProfile")
+  @Label("Metadata Profile")
+  @Category("Calcite")
+  @Description("Work done computing a kind of metadata")
+  public static class MetadataEvent extends Event {
+    @Label("Kind")
+    public String kind;
+
+    @Label("Calls")
+    public long calls;
+
+    @Label("Hits")
+    public long hits;
+
+    @Label("Time")
+    @Timespan
+    public long time;
+  }
+}
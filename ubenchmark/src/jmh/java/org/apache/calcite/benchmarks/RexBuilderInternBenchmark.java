@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.plan.RelOptPredicateList;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeSystem;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexProgramBuilder;
+import org.apache.calcite.rex.RexSimplify;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeFactoryImpl;
+import org.apache.calcite.sql.type.SqlTypeName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link RexBuilder} with and without interning of expressions.
+ *
+ * <p>The workload mimics what rules do during planning: the same
+ * expressions are derived repeatedly, by different rules, from the same
+ * inputs, and are then compared, hashed and simplified.
+ *
+ * <ul>
+ * <li>{@link #build} creates the expressions; run with {@code -prof gc} and
+ * compare {@code gc.alloc.rate.norm} to see the allocation saved when
+ * interning;
+ * <li>{@link #program} registers the expressions in a
+ * {@link RexProgramBuilder}, which de-duplicates them using
+ * {@link RexNode#equals} and {@link RexNode#hashCode};
+ * <li>{@link #simplify} simplifies a disjunction of the expressions.
+ * </ul>
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1024m")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RexBuilderInternBenchmark {
+  /** Whether the builder interns expressions. */
+  @Param({"false", "true"})
+  boolean intern;
+
+  /** Number of fields in the input row. */
+  @Param({"20"})
+  int fieldCount;
+
+  /** Number of times each expression is derived. */
+  @Param({"5"})
+  int repeat;
+
+  private RexBuilder rexBuilder;
+  private RelDataType rowType;
+  private List<RexNode> exprs;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final RelDataTypeFactory typeFactory =
+        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    rexBuilder = new RexBuilder(typeFactory, intern);
+    final RelDataTypeFactory.Builder builder = typeFactory.builder();
+    for (int i = 0; i < fieldCount; i++) {
+      builder.add("f" + i, SqlTypeName.INTEGER).nullable(true);
+    }
+    rowType = builder.build();
+    exprs = build();
+  }
+
+  /** Creates, {@link #repeat} times over, an expression for each field. */
+  @Benchmark
+  public List<RexNode> build() {
+    final List<RexNode> list = new ArrayList<>();
+    for (int r = 0; r < repeat; r++) {
+      for (int i = 0; i < fieldCount; i++) {
+        list.add(expr(i));
+      }
+    }
+    return list;
+  }
+
+  /** Registers each expression in a program; duplicates are detected by
+   * the program builder. */
+  @Benchmark
+  public RexProgram program() {
+    final RexProgramBuilder builder =
+        new RexProgramBuilder(rowType, rexBuilder);
+    for (RexNode expr : exprs) {
+      builder.addProject(expr, null);
+    }
+    return builder.getProgram();
+  }
+
+  /** Simplifies a disjunction of the expressions' conditions. */
+  @Benchmark
+  public RexNode simplify() {
+    final List<RexNode> conditions = new ArrayList<>();
+    for (RexNode expr : exprs) {
+      conditions.add(
+          rexBuilder.makeCall(SqlStdOperatorTable.GREATER_THAN, expr,
+              rexBuilder.makeExactLiteral(BigDecimal.ZERO)));
+    }
+    return new RexSimplify(rexBuilder, RelOptPredicateList.EMPTY,
+        RexUtil.EXECUTOR)
+        .simplifyUnknownAsFalse(
+            RexUtil.composeDisjunction(rexBuilder, conditions));
+  }
+
+  /** Returns
+   * {@code CASE WHEN $i > 10 AND $i < 100 THEN $i + 1 ELSE $j * 2 END},
+   * where {@code j} is the next field. */
+  private RexNode expr(int i) {
+    final RexNode ref = ref(i);
+    final RexNode next = ref((i + 1) % fieldCount);
+    return rexBuilder.makeCall(SqlStdOperatorTable.CASE,
+        rexBuilder.makeCall(SqlStdOperatorTable.AND,
+            rexBuilder.makeCall(SqlStdOperatorTable.GREATER_THAN, ref,
+                literal(10)),
+            rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN, ref,
+                literal(100))),
+        rexBuilder.makeCall(SqlStdOperatorTable.PLUS, ref, literal(1)),
+        rexBuilder.makeCall(SqlStdOperatorTable.MULTIPLY, next, literal(2)));
+  }
+
+  private RexNode ref(int i) {
+    return rexBuilder.makeInputRef(rowType.getFieldList().get(i).getType(), i);
+  }
+
+  private RexNode literal(int i) {
+    return rexBuilder.makeExactLiteral(BigDecimal.valueOf(i));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(RexBuilderInternBenchmark.class.getSimpleName())
+        .addProfiler("gc")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.tpcds.TpcdsSchema;
+import org.apache.calcite.schema.SchemaPlus;
+
+import net.hydromatic.tpcds.query.Query;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+
+/**
+ * Benchmarks preparing queries of the TPC-DS benchmark.
+ *
+ * @see PlannerBenchmark
+ */
+public class TpcdsPlannerBenchmark extends PlannerBenchmark {
+  /** Ordinal of the query, 1-based, per the TPC-DS specification.
+   *
+   * <p>Omits queries whose generated SQL Calcite cannot parse or validate
+   * (for example, templates that use {@code define} or {@code + 30 days}),
+   * and queries 64 and 72, which take too long to optimize. */
+  @Param({"1", "2", "3", "4", "6", "7", "10", "11", "13", "17", "22", "25",
+      "26", "27", "29", "31", "34", "35", "36", "38", "41", "42", "44", "46",
+      "47", "48", "49", "50", "51", "52", "53", "54", "55", "57", "59", "61",
+      "63", "65", "67", "68", "69", "70", "71", "73", "76", "78", "81", "83",
+      "84", "86", "87", "89", "93", "95", "97"})
+  int query;
+
+  @Override protected SchemaPlus addSchema(SchemaPlus rootSchema) {
+    return rootSchema.add("TPCDS", new TpcdsSchema(1D));
+  }
+
+  @Override protected String sql() {
+    String sql = Query.of(query).sql(new Random(0));
+    if (query == 95) {
+      // Same work-around as TpcdsTest
+      sql = sql.replace("60 days", "interval '60' day");
+      sql = sql.replace("d_date between '", "d_date between date '");
+    }
+    return sql;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(TpcdsPlannerBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}
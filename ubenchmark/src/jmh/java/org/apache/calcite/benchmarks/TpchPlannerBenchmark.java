@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.tpch.TpchQueries;
+import org.apache.calcite.adapter.tpch.TpchSchema;
+import org.apache.calcite.schema.SchemaPlus;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks preparing the 22 queries of the TPC-H benchmark.
+ *
+ * @see PlannerBenchmark
+ */
+public class TpchPlannerBenchmark extends PlannerBenchmark {
+  /** Ordinal of the query, 1-based, per the TPC-H specification. */
+  @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12",
+      "13", "14", "15", "16", "17", "18", "19", "20", "21", "22"})
+  int query;
+
+  @Override protected SchemaPlus addSchema(SchemaPlus rootSchema) {
+    rootSchema.add("TPCH", new TpchSchema(1D, 1, 1, false));
+    return rootSchema;
+  }
+
+  @Override protected String sql() {
+    return TpchQueries.QUERIES.get(query - 1);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(TpchPlannerBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}